@@ -219,8 +219,8 @@ public class FOIL {
 		for (Literal l : clause.getLiterals()) {
 			vars.addAll(l.getAtomicSentence().getArgs());
 		}
-		for (String s : kb.getIndexFacts().keySet()) {
-			Literal l = kb.getIndexFacts().get(s).get(0);
+		for (List<Literal> facts : kb.getIndexFacts().values()) {
+			Literal l = facts.get(0);
 			int r = l.getAtomicSentence().getArgs().size();
 			HashSet<Term> arg = new HashSet<>();
 			arg.addAll(vars);
@@ -7,8 +7,6 @@ import aima.core.probability.mdp.PolicyEvaluation;
 import aima.core.probability.mdp.RewardFunction;
 import aima.core.probability.mdp.TransitionProbabilityFunction;
 import aima.core.probability.mdp.impl.MDP;
-import aima.core.util.FrequencyCounter;
-import aima.core.util.datastructure.Pair;
 
 import java.util.*;
 
@@ -38,7 +36,13 @@ import java.util.*;
  *
  * Figure 21.2 A passive reinforcement learning agent based on adaptive dynamic
  * programming. The POLICY-EVALUATION function solves the fixed-policy Bellman
- * equations, as described on page 657.
+ * equations, as described on page 657.<br>
+ * <br>
+ * <b>Note:</b> N<sub>sa</sub> and N<sub>s'|sa</sub> are kept in a
+ * {@link StateActionTable}. Instead of storing P(t|s,a) for every outcome t
+ * after each step, the transition model of the mdp computes
+ * N<sub>s'|sa</sub>[t,s,a] / N<sub>sa</sub>[s,a] on demand, which yields
+ * the same values.
  *
  * @param <S>
  *            the state type.
@@ -55,19 +59,17 @@ public class PassiveADPAgent<S, A extends Action> extends ReinforcementAgent<S,
 	private Map<S, A> pi = new HashMap<>();
 	// mdp, an MDP with model P, rewards R, discount &gamma;
 	private MDP<S, A> mdp = null;
-	private Map<Pair<S, Pair<S, A>>, Double> P = new HashMap<>();
 	private Map<S, Double> R = new HashMap<>();
 	private PolicyEvaluation<S, A> policyEvaluation = null;
 	// U, a table of utilities, initially empty
 	private Map<S, Double> U = new HashMap<>();
 	// N<sub>sa</sub>, a table of frequencies for state-action pairs, initially
 	// zero
-	private FrequencyCounter<Pair<S, A>> Nsa = new FrequencyCounter<>();
 	// N<sub>s'|sa</sub>, a table of outcome frequencies give state-action
 	// pairs, initially zero
-	private FrequencyCounter<Pair<S, Pair<S, A>>> NsDelta_sa = new FrequencyCounter<>();
-	// s, a, the previous state and action, initially null
-	private S s = null;
+	private final StateActionTable<S, A> table = new StateActionTable<S, A>();
+	// s, a, the previous state and action, initially null (-1)
+	private int s = -1;
 	private A a = null;
 
 	/**
@@ -91,7 +93,7 @@ public class PassiveADPAgent<S, A extends Action> extends ReinforcementAgent<S,
 		RewardFunction<S> rewardfn = (s) -> R.get(s);
 
 		this.mdp = new MDP<>(states, initialState, actionsFunction,
-				(sDelta, s, a) -> Optional.ofNullable(P.get(new Pair<>(sDelta, new Pair<>(s, a)))).orElse(0.0),
+				this::transitionProbability,
 				rewardfn);
 		this.policyEvaluation = policyEvaluation;
 	}
@@ -114,30 +116,25 @@ public class PassiveADPAgent<S, A extends Action> extends ReinforcementAgent<S,
 			R.put(sDelta, rDelta);
 		}
 		// if s is not null then
-		if (s != null) {
+		if (s != -1) {
 			// increment N<sub>sa</sub>[s,a] and N<sub>s'|sa</sub>[s',s,a]
-			Pair<S, A> sa = new Pair<>(s, a);
-			Nsa.incrementFor(sa);
-			NsDelta_sa.incrementFor(new Pair<>(sDelta, sa));
+			int sPrime = table.stateId(sDelta);
+			int column = table.column(table.actionId(a));
+			table.incrementNsa(s, column);
+			table.incrementOutcome(sPrime, s, column);
 			// for each t such that N<sub>s'|sa</sub>[t,s,a] is nonzero do
-			for (S t : mdp.states()) {
-				Pair<S, Pair<S, A>> t_sa = new Pair<>(t, sa);
-				if (NsDelta_sa.getCount(t_sa) != 0) {
-					// P(t|s,a) <- N<sub>s'|sa</sub>[t,s,a] /
-					// N<sub>sa</sub>[s,a]
-					P.put(t_sa, NsDelta_sa.getCount(t_sa).doubleValue() / Nsa.getCount(sa).doubleValue());
-				}
-			}
+			// P(t|s,a) <- N<sub>s'|sa</sub>[t,s,a] / N<sub>sa</sub>[s,a]
+			// (computed on demand by transitionProbability)
 		}
 		// U <- POLICY-EVALUATION(&pi;, U, mdp)
 		U = policyEvaluation.evaluate(pi, U, mdp);
 		// if s'.TERMINAL? then s,a <- null else s,a <- s',&pi;[s']
 		if (isTerminal(sDelta)) {
-			s = null;
+			s = -1;
 			a = null;
 
 		} else {
-			s = sDelta;
+			s = table.stateId(sDelta);
 			a = pi.get(sDelta);
 		}
 		// return a
@@ -151,18 +148,28 @@ public class PassiveADPAgent<S, A extends Action> extends ReinforcementAgent<S,
 
 	@Override
 	public void reset() {
-		P.clear();
 		R.clear();
 		U = new HashMap<>();
-		Nsa.clear();
-		NsDelta_sa.clear();
-		s = null;
+		table.clear();
+		s = -1;
 		a = null;
 	}
 
 	//
 	// PRIVATE METHODS
 	//
+	private double transitionProbability(S sDelta, S s, A a) {
+		int sid = table.indexOfState(s);
+		int tid = table.indexOfState(sDelta);
+		int aid = table.indexOfAction(a);
+		if (sid == -1 || tid == -1 || aid == -1) {
+			return 0.0;
+		}
+		int column = table.column(aid);
+		int n = table.getNsa(sid, column);
+		return n == 0 ? 0.0 : (double) table.getOutcome(tid, sid, column) / n;
+	}
+
 	private boolean isTerminal(S s) {
 		// A state with no possible actions is considered terminal.
 		return mdp.actions(s).isEmpty();
@@ -1,7 +1,6 @@
 package aima.core.learning.reinforcement.agent;
 
 import aima.core.learning.reinforcement.PerceptStateReward;
-import aima.core.util.FrequencyCounter;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -29,7 +28,9 @@ import java.util.Optional;
  * 
  * Figure 21.4 A passive reinforcement learning agent that learns utility
  * estimates using temporal differences. The step-size function &alpha;(n) is
- * chosen to ensure convergence, as described in the text.
+ * chosen to ensure convergence, as described in the text.<br>
+ * <br>
+ * <b>Note:</b> U and N<sub>s</sub> are kept in a {@link StateActionTable}.
  * 
  * @param <S>
  *            the state type.
@@ -45,13 +46,12 @@ public class PassiveTDAgent<S, A> extends ReinforcementAgent<S, A> {
 	// persistent: &pi;, a fixed policy
 	private Map<S, A> pi = new HashMap<>();
 	// U, a table of utilities, initially empty
-	private Map<S, Double> U = new HashMap<>();
 	// N<sub>s</sub>, a table of frequencies for states, initially zero
-	private FrequencyCounter<S> Ns = new FrequencyCounter<S>();
-	// s,a,r, the previous state, action, and reward, initially null
-	private S s = null;
+	private final StateActionTable<S, A> table;
+	// s,a,r, the previous state, action, and reward, initially null (-1)
+	private int s = -1;
 	private A a = null;
-	private Double r = null;
+	private double r = 0.0;
 	//
 	private double alpha = 0.0;
 	private double gamma = 0.0;
@@ -67,9 +67,33 @@ public class PassiveTDAgent<S, A> extends ReinforcementAgent<S, A> {
 	 *            discount to be used.
 	 */
 	public PassiveTDAgent(Map<S, A> fixedPolicy, double alpha, double gamma) {
+		this(fixedPolicy, alpha, gamma, new StateActionTable<S, A>());
+	}
+
+	/**
+	 * Constructor for an agent working on an existing table.
+	 * 
+	 * @param fixedPolicy
+	 *            &pi; a fixed policy.
+	 * @param alpha
+	 *            a fixed learning rate.
+	 * @param gamma
+	 *            discount to be used.
+	 * @param table
+	 *            the storage for U and N<sub>s</sub>.
+	 */
+	public PassiveTDAgent(Map<S, A> fixedPolicy, double alpha, double gamma, StateActionTable<S, A> table) {
 		this.pi.putAll(fixedPolicy);
 		this.alpha = alpha;
 		this.gamma = gamma;
+		this.table = table;
+	}
+
+	/**
+	 * @return the storage of U and N<sub>s</sub>.
+	 */
+	public StateActionTable<S, A> getTable() {
+		return table;
 	}
 
 	/**
@@ -85,25 +109,25 @@ public class PassiveTDAgent<S, A> extends ReinforcementAgent<S, A> {
 	public Optional<A> act(PerceptStateReward<S> percept) {
 		// if s' is new then U[s'] <- r'
 		S sDelta = percept.state();
+		int sPrime = table.stateId(sDelta);
 		double rDelta = percept.reward();
-		if (!U.containsKey(sDelta)) {
-			U.put(sDelta, rDelta);
+		if (Double.isNaN(table.getU(sPrime))) {
+			table.setU(sPrime, rDelta);
 		}
 		// if s is not null then
-		if (null != s) {
+		if (-1 != s) {
 			// increment N<sub>s</sub>[s]
-			Ns.incrementFor(s);
+			int n = table.incrementNs(s);
 			// U[s] <- U[s] + &alpha;(N<sub>s</sub>[s])(r + &gamma;U[s'] - U[s])
-			double U_s = U.get(s);
-			U.put(s, U_s + alpha(Ns, s) * (r + gamma * U.get(sDelta) - U_s));
+			double U_s = table.getU(s);
+			table.setU(s, U_s + alpha(n, table.getState(s)) * (r + gamma * table.getU(sPrime) - U_s));
 		}
 		// if s'.TERMINAL? then s,a,r <- null else s,a,r <- s',&pi;[s'],r'
 		if (isTerminal(sDelta)) {
-			s = null;
+			s = -1;
 			a = null;
-			r = null;
 		} else {
-			s = sDelta;
+			s = sPrime;
 			a = pi.get(sDelta);
 			r = rDelta;
 		}
@@ -114,16 +138,14 @@ public class PassiveTDAgent<S, A> extends ReinforcementAgent<S, A> {
 
 	@Override
 	public Map<S, Double> getUtility() {
-		return new HashMap<S, Double>(U);
+		return table.getUtility();
 	}
 
 	@Override
 	public void reset() {
-		U = new HashMap<>();
-		Ns.clear();
-		s = null;
+		table.clear();
+		s = -1;
 		a = null;
-		r = null;
 	}
 
 	//
@@ -137,13 +159,13 @@ public class PassiveTDAgent<S, A> extends ReinforcementAgent<S, A> {
 	 * <b>Note:</b> override this method to obtain the desired behavior.
 	 * 
 	 * @param Ns
-	 *            a frequency counter of observed states.
+	 *            the number of times the state has been observed.
 	 * @param s
 	 *            the current state.
 	 * @return the learning rate to use based on the frequency of the state
 	 *         passed in.
 	 */
-	protected double alpha(FrequencyCounter<S> Ns, S s) {
+	protected double alpha(int Ns, S s) {
 		// Default implementation is just to return a fixed parameter value
 		// irrespective of the # of times a state has been encountered
 		return alpha;
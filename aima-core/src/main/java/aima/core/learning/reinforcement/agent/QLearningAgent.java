@@ -1,14 +1,12 @@
 package aima.core.learning.reinforcement.agent;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
 import aima.core.agent.Action;
 import aima.core.learning.reinforcement.PerceptStateReward;
 import aima.core.probability.mdp.ActionsFunction;
-import aima.core.util.FrequencyCounter;
-import aima.core.util.datastructure.Pair;
+import aima.core.util.Randomizer;
 
 /**
  * Artificial Intelligence A Modern Approach (3rd Edition): page 844.<br>
@@ -54,7 +52,13 @@ import aima.core.util.datastructure.Pair;
  * terminal state and is what will be updated in Q[s,a], which appears not to be
  * correct as you did not perform an action in the terminal state and the
  * initial state is not reachable from the prior terminal state. Comments
- * welcome.
+ * welcome.<br>
+ * <br>
+ * <b>Note:</b> Q and N<sub>sa</sub> are kept in a {@link StateActionTable},
+ * which interns states and actions to integer ids, so that no keys are
+ * allocated per step. Optionally, the agent stores the observed transitions
+ * in a ring buffer and replays a random batch of them after each step
+ * (experience replay).
  * 
  * @param <S>
  *            the state type.
@@ -69,20 +73,28 @@ import aima.core.util.datastructure.Pair;
 public class QLearningAgent<S, A extends Action> extends ReinforcementAgent<S, A> {
 	// persistent: Q, a table of action values indexed by state and action,
 	// initially zero
-	private Map<Pair<S, A>, Double> Q = new HashMap<>();
 	// N<sub>sa</sub>, a table of frequencies for state-action pairs, initially
 	// zero
-	private FrequencyCounter<Pair<S, A>> Nsa = new FrequencyCounter<>();
-	// s,a,r, the previous state, action, and reward, initially null
-	private S s = null;
-	private A a = null;
-	private Double r = null;
+	private final StateActionTable<S, A> table;
+	// s,a,r, the previous state, action, and reward, initially null (-1)
+	private int s = -1;
+	private int a = -1;
+	private double r = 0.0;
 	//
 	private ActionsFunction<S, A> actionsFunction;
 	private double alpha = 0.0;
 	private double gamma = 0.0;
 	private int Ne = 0;
 	private double Rplus = 0.0;
+	// experience replay
+	private int replayBatchSize = 0;
+	private Randomizer replayRandomizer = null;
+	private int[] replayS = new int[0];
+	private int[] replayA = new int[0];
+	private double[] replayR = new double[0];
+	private int[] replaySPrime = new int[0];
+	private int replaySize = 0;
+	private int replayNext = 0;
 
 	/**
 	 * Constructor.
@@ -100,11 +112,84 @@ public class QLearningAgent<S, A extends Action> extends ReinforcementAgent<S, A
 	 *            obtainable in any state, which is used in the method f(u, n).
 	 */
 	public QLearningAgent(ActionsFunction<S, A> actionsFunction, double alpha, double gamma, int Ne, double Rplus) {
+		this(actionsFunction, alpha, gamma, Ne, Rplus, new StateActionTable<S, A>(actionsFunction::actions));
+	}
+
+	/**
+	 * Constructor for an agent working on existing tables.
+	 * 
+	 * @param actionsFunction
+	 *            a function that lists the legal actions from a state.
+	 * @param alpha
+	 *            a fixed learning rate.
+	 * @param gamma
+	 *            discount to be used.
+	 * @param Ne
+	 *            is fixed parameter for use in the method f(u, n).
+	 * @param Rplus
+	 *            R+ is an optimistic estimate of the best possible reward
+	 *            obtainable in any state, which is used in the method f(u, n).
+	 * @param table
+	 *            the storage for Q and N<sub>sa</sub>, which must cache the
+	 *            legal actions of the states.
+	 */
+	public QLearningAgent(ActionsFunction<S, A> actionsFunction, double alpha, double gamma, int Ne, double Rplus,
+			StateActionTable<S, A> table) {
 		this.actionsFunction = actionsFunction;
 		this.alpha = alpha;
 		this.gamma = gamma;
 		this.Ne = Ne;
 		this.Rplus = Rplus;
+		this.table = table;
+	}
+
+	/**
+	 * Enables experience replay. Every observed transition (s, a, r, s') is
+	 * stored in a ring buffer and after each step a batch of randomly chosen
+	 * stored transitions is used for additional Q updates.
+	 * 
+	 * @param capacity
+	 *            the number of transitions to remember.
+	 * @param batchSize
+	 *            the number of transitions replayed per step.
+	 * @param randomizer
+	 *            used to choose the transitions.
+	 */
+	public void enableExperienceReplay(int capacity, int batchSize, Randomizer randomizer) {
+		replayS = new int[capacity];
+		replayA = new int[capacity];
+		replayR = new double[capacity];
+		replaySPrime = new int[capacity];
+		replaySize = 0;
+		replayNext = 0;
+		replayBatchSize = batchSize;
+		replayRandomizer = randomizer;
+	}
+
+	/**
+	 * Disables experience replay.
+	 */
+	public void disableExperienceReplay() {
+		replayBatchSize = 0;
+	}
+
+	/**
+	 * @return the storage of Q and N<sub>sa</sub>.
+	 */
+	public StateActionTable<S, A> getTable() {
+		return table;
+	}
+
+	/**
+	 * Creates an agent with the same parameters working on a copy of the
+	 * tables of this agent, see {@link StateActionTable#copy()}. Subclasses
+	 * that override {@code alpha} or {@code f} should override this method as
+	 * well.
+	 * 
+	 * @return an agent for a worker thread.
+	 */
+	public QLearningAgent<S, A> createWorker() {
+		return new QLearningAgent<S, A>(actionsFunction, alpha, gamma, Ne, Rplus, table.copy());
 	}
 
 	/**
@@ -122,34 +207,30 @@ public class QLearningAgent<S, A extends Action> extends ReinforcementAgent<S, A
 	@Override
 	public Optional<A> act(PerceptStateReward<S> percept) {
 
-		S sPrime = percept.state();
+		int sPrime = table.stateId(percept.state());
 		double rPrime = percept.reward();
 
 		// if TERMAINAL?(s') then Q[s',None] <- r'
 		if (isTerminal(sPrime)) {
-			Q.put(new Pair<>(sPrime, null), rPrime);
+			table.setQ(sPrime, StateActionTable.NONE, rPrime);
 		}
 
 		// if s is not null then
-		if (null != s) {
+		if (-1 != s) {
 			// increment N<sub>sa</sub>[s,a]
-			Pair<S, A> sa = new Pair<>(s, a);
-			Nsa.incrementFor(sa);
+			table.incrementNsa(s, a);
 			// Q[s,a] <- Q[s,a] + &alpha;(N<sub>sa</sub>[s,a])(r +
 			// &gamma;max<sub>a'</sub>Q[s',a'] - Q[s,a])
-			Double Q_sa = Q.get(sa);
-			if (null == Q_sa) {
-				Q_sa = 0.0;
+			update(s, a, r, sPrime);
+			if (replayBatchSize > 0) {
+				replay(s, a, r, sPrime);
 			}
-			Q.put(sa, Q_sa + alpha(Nsa, s, a)
-					* (r + gamma * maxAPrime(sPrime) - Q_sa));
 		}
 		// if s'.TERMINAL? then s,a,r <- null else
 		// s,a,r <- s',argmax<sub>a'</sub>f(Q[s',a'],N<sub>sa</sub>[s',a']),r'
 		if (isTerminal(sPrime)) {
-			s = null;
-			a = null;
-			r = null;
+			s = -1;
+			a = -1;
 		} else {
 			s = sPrime;
 			a = argmaxAPrime(sPrime);
@@ -157,16 +238,16 @@ public class QLearningAgent<S, A extends Action> extends ReinforcementAgent<S, A
 		}
 
 		// return a
-		return Optional.ofNullable(a);
+		return Optional.ofNullable(-1 == a ? null : table.getAction(a));
 	}
 
 	@Override
 	public void reset() {
-		Q.clear();
-		Nsa.clear();
-		s = null;
-		a = null;
-		r = null;
+		table.clear();
+		s = -1;
+		a = -1;
+		replaySize = 0;
+		replayNext = 0;
 	}
 
 	@Override
@@ -174,16 +255,7 @@ public class QLearningAgent<S, A extends Action> extends ReinforcementAgent<S, A
 		// Q-values are directly related to utility values as follows
 		// (AIMA3e pg. 843 - 21.6) :
 		// U(s) = max<sub>a</sub>Q(s,a).
-		Map<S, Double> U = new HashMap<>();
-		for (Pair<S, A> sa : Q.keySet()) {
-			Double q = Q.get(sa);
-			Double u = U.get(sa.getFirst());
-			if (null == u || u < q) {
-				U.put(sa.getFirst(), q);
-			}
-		}
-
-		return U;
+		return table.getUtilityFromQ();
 	}
 
 	//
@@ -199,14 +271,14 @@ public class QLearningAgent<S, A extends Action> extends ReinforcementAgent<S, A
 	 * <b>Note:</b> override this method to obtain the desired behavior.
 	 * 
 	 * @param Nsa
-	 *            a frequency counter of observed state action pairs.
+	 *            the number of times the state action pair has been observed.
 	 * @param s
 	 *            the current state.
 	 * @param a the current action.
 	 * @return the learning rate to use based on the frequency of the state
 	 *         passed in.
 	 */
-	protected double alpha(FrequencyCounter<Pair<S, A>> Nsa, S s, A a) {
+	protected double alpha(int Nsa, S s, A a) {
 		// Default implementation is just to return a fixed parameter value
 		// irrespective of the # of times a state action has been encountered
 		return alpha;
@@ -223,14 +295,14 @@ public class QLearningAgent<S, A extends Action> extends ReinforcementAgent<S, A
 	 * <b>Note:</b> Override this method to obtain desired behavior.
 	 * 
 	 * @param u
-	 *            the currently estimated utility.
+	 *            the currently estimated utility, NaN if unknown.
 	 * @param n
 	 *            the number of times this situation has been encountered.
 	 * @return the exploration value.
 	 */
-	protected double f(Double u, int n) {
+	protected double f(double u, int n) {
 		// A Simple definition of f(u, n):
-		if (null == u || n < Ne) {
+		if (Double.isNaN(u) || n < Ne) {
 			return Rplus;
 		}
 		return u;
@@ -239,29 +311,48 @@ public class QLearningAgent<S, A extends Action> extends ReinforcementAgent<S, A
 	//
 	// PRIVATE METHODS
 	//
-	private boolean isTerminal(S s) {
-		boolean terminal = false;
-		if (null != s && actionsFunction.actions(s).size() == 0) {
-			// No actions possible in state is considered terminal.
-			terminal = true;
+	private boolean isTerminal(int s) {
+		// No actions possible in state is considered terminal.
+		return table.getActionColumns(s).length == 0;
+	}
+
+	private void update(int s, int a, double r, int sPrime) {
+		double Q_sa = table.getQ(s, a);
+		if (Double.isNaN(Q_sa)) {
+			Q_sa = 0.0;
+		}
+		double learningRate = alpha(table.getNsa(s, a), table.getState(s), table.getAction(a));
+		table.setQ(s, a, Q_sa + learningRate * (r + gamma * maxAPrime(sPrime) - Q_sa));
+	}
+
+	private void replay(int s, int a, double r, int sPrime) {
+		replayS[replayNext] = s;
+		replayA[replayNext] = a;
+		replayR[replayNext] = r;
+		replaySPrime[replayNext] = sPrime;
+		replayNext = (replayNext + 1) % replayS.length;
+		replaySize = Math.min(replaySize + 1, replayS.length);
+		for (int k = 0; k < replayBatchSize; k++) {
+			int i = (int) (replayRandomizer.nextDouble() * replaySize);
+			update(replayS[i], replayA[i], replayR[i], replaySPrime[i]);
 		}
-		return terminal;
 	}
 
-	private double maxAPrime(S sPrime) {
+	private double maxAPrime(int sPrime) {
 		double max = Double.NEGATIVE_INFINITY;
-		if (actionsFunction.actions(sPrime).size() == 0) {
+		int[] actions = table.getActionColumns(sPrime);
+		if (actions.length == 0) {
 			// a terminal state
-			max = Q.get(new Pair<>(sPrime, null));
+			max = table.getQ(sPrime, StateActionTable.NONE);
 		} else {
-			for (A aPrime : actionsFunction.actions(sPrime)) {
-				Double Q_sPrimeAPrime = Q.get(new Pair<>(sPrime, aPrime));
-				if (null != Q_sPrimeAPrime && Q_sPrimeAPrime > max) {
+			for (int aPrime : actions) {
+				double Q_sPrimeAPrime = table.getQ(sPrime, aPrime);
+				if (Q_sPrimeAPrime > max) {
 					max = Q_sPrimeAPrime;
 				}
 			}
 		}
-		if (max == Double.NEGATIVE_INFINITY) {
+		if (max == Double.NEGATIVE_INFINITY || Double.isNaN(max)) {
 			// Assign 0 as the mimics Q being initialized to 0 up front.
 			max = 0.0;
 		}
@@ -269,13 +360,11 @@ public class QLearningAgent<S, A extends Action> extends ReinforcementAgent<S, A
 	}
 
 	// argmax<sub>a'</sub>f(Q[s',a'],N<sub>sa</sub>[s',a'])
-	private A argmaxAPrime(S sPrime) {
-		A a = null;
+	private int argmaxAPrime(int sPrime) {
+		int a = -1;
 		double max = Double.NEGATIVE_INFINITY;
-		for (A aPrime : actionsFunction.actions(sPrime)) {
-			Pair<S, A> sPrimeAPrime = new Pair<>(sPrime, aPrime);
-			double explorationValue = f(Q.get(sPrimeAPrime), Nsa
-					.getCount(sPrimeAPrime));
+		for (int aPrime : table.getActionColumns(sPrime)) {
+			double explorationValue = f(table.getQ(sPrime, aPrime), table.getNsa(sPrime, aPrime));
 			if (explorationValue > max) {
 				max = explorationValue;
 				a = aPrime;
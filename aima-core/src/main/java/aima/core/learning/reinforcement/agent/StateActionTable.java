@@ -0,0 +1,454 @@
+package aima.core.learning.reinforcement.agent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Tabular storage for reinforcement learning agents.<br>
+ * <br>
+ * States and actions are interned to integer ids when they are seen for the
+ * first time. The tables of the agents are then kept in flat arrays:
+ * <ul>
+ * <li>Q[s,a] and N<sub>sa</sub>[s,a] in rows of {@code getColumns()} entries
+ * per state. Column {@link #NONE} is the <i>None</i> action of terminal
+ * states, action id k is stored in column k + 1;</li>
+ * <li>U[s] and N<sub>s</sub>[s] with one entry per state;</li>
+ * <li>optionally N<sub>s'|sa</sub>[t,s,a], one row of state counts per
+ * state-action pair that has been tried.</li>
+ * </ul>
+ * Values that have not been set yet are {@code NaN}, which corresponds to a
+ * missing entry in the map based tables of AIMA. If an actions function is
+ * given, the legal actions of each state are computed once and cached as
+ * columns.<br>
+ * <br>
+ * A table is not thread-safe. For parallel training, all states can be
+ * registered up-front and {@link #copy()} creates worker tables that share
+ * the ids but have their own values. The workers' updates are combined by
+ * {@link #merge(List)}.
+ *
+ * @param <S>
+ *            the state type.
+ * @param <A>
+ *            the action type.
+ */
+public class StateActionTable<S, A> {
+	/** The column of the None action, which is used by terminal states. */
+	public static final int NONE = 0;
+
+	private final Function<S, ? extends Collection<A>> actionsFunction;
+	private final Map<S, Integer> stateIds;
+	private final List<S> states;
+	private final Map<A, Integer> actionIds;
+	private final List<A> actions;
+	private final boolean frozen;
+	private int[][] stateActions;
+	private int capacity;
+	private int columns;
+	private double[] Q;
+	private int[] Nsa;
+	private double[] U;
+	private int[] Ns;
+	private int[][] outcomes;
+
+	/**
+	 * Creates a table without cached actions.
+	 */
+	public StateActionTable() {
+		this((Function<S, ? extends Collection<A>>) null);
+	}
+
+	/**
+	 * @param actionsFunction
+	 *            a function that lists the legal actions from a state, may be
+	 *            null.
+	 */
+	public StateActionTable(Function<S, ? extends Collection<A>> actionsFunction) {
+		this.actionsFunction = actionsFunction;
+		stateIds = new HashMap<S, Integer>();
+		states = new ArrayList<S>();
+		actionIds = new HashMap<A, Integer>();
+		actions = new ArrayList<A>();
+		frozen = false;
+		allocate(16, 1);
+	}
+
+	/**
+	 * Returns the id of a state, registering the state if it is new.
+	 *
+	 * @param s
+	 *            the state.
+	 * @return its id.
+	 */
+	public int stateId(S s) {
+		Integer id = stateIds.get(s);
+		if (null != id) {
+			return id;
+		}
+		if (frozen) {
+			throw new IllegalStateException("State " + s
+					+ " was not registered before the table was copied.");
+		}
+		int sid = states.size();
+		int[] legal = null;
+		if (null != actionsFunction) {
+			Collection<A> as = actionsFunction.apply(s);
+			legal = new int[as.size()];
+			int i = 0;
+			for (A a : as) {
+				legal[i++] = column(actionId(a));
+			}
+		}
+		if (sid == capacity) {
+			grow(2 * capacity, columns);
+		}
+		stateIds.put(s, sid);
+		states.add(s);
+		stateActions[sid] = legal;
+		return sid;
+	}
+
+	/**
+	 * Registers a collection of states.
+	 *
+	 * @param ss
+	 *            the states.
+	 */
+	public void registerStates(Collection<? extends S> ss) {
+		for (S s : ss) {
+			stateId(s);
+		}
+	}
+
+	/**
+	 * @param s
+	 *            a state.
+	 * @return the id of the state or -1 if it has not been seen yet.
+	 */
+	public int indexOfState(S s) {
+		Integer id = stateIds.get(s);
+		return null == id ? -1 : id;
+	}
+
+	public S getState(int sid) {
+		return states.get(sid);
+	}
+
+	public int getStateCount() {
+		return states.size();
+	}
+
+	/**
+	 * Returns the id of an action, registering the action if it is new.
+	 *
+	 * @param a
+	 *            the action.
+	 * @return its id.
+	 */
+	public int actionId(A a) {
+		Integer id = actionIds.get(a);
+		if (null != id) {
+			return id;
+		}
+		if (frozen) {
+			throw new IllegalStateException("Action " + a
+					+ " was not registered before the table was copied.");
+		}
+		int aid = actions.size();
+		if (aid + 1 >= columns) {
+			grow(capacity, 2 * columns);
+		}
+		actionIds.put(a, aid);
+		actions.add(a);
+		return aid;
+	}
+
+	/**
+	 * @param a
+	 *            an action.
+	 * @return the id of the action or -1 if it has not been seen yet.
+	 */
+	public int indexOfAction(A a) {
+		Integer id = actionIds.get(a);
+		return null == id ? -1 : id;
+	}
+
+	/**
+	 * @param column
+	 *            a column of the Q table.
+	 * @return the action stored in the column, null for {@link #NONE}.
+	 */
+	public A getAction(int column) {
+		return column == NONE ? null : actions.get(column - 1);
+	}
+
+	/**
+	 * @param actionId
+	 *            the id of an action.
+	 * @return the column of the action in the Q table.
+	 */
+	public int column(int actionId) {
+		return actionId + 1;
+	}
+
+	/**
+	 * @return the number of entries per state in the Q and N<sub>sa</sub>
+	 *         tables.
+	 */
+	public int getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @param sid
+	 *            the id of a state.
+	 * @return the columns of the legal actions in the state. Empty for terminal
+	 *         states, null if the table has no actions function.
+	 */
+	public int[] getActionColumns(int sid) {
+		return stateActions[sid];
+	}
+
+	public double getQ(int sid, int column) {
+		return Q[sid * columns + column];
+	}
+
+	public void setQ(int sid, int column, double value) {
+		Q[sid * columns + column] = value;
+	}
+
+	public int getNsa(int sid, int column) {
+		return Nsa[sid * columns + column];
+	}
+
+	/**
+	 * @return the incremented count.
+	 */
+	public int incrementNsa(int sid, int column) {
+		return ++Nsa[sid * columns + column];
+	}
+
+	public double getU(int sid) {
+		return U[sid];
+	}
+
+	public void setU(int sid, double value) {
+		U[sid] = value;
+	}
+
+	public int getNs(int sid) {
+		return Ns[sid];
+	}
+
+	/**
+	 * @return the incremented count.
+	 */
+	public int incrementNs(int sid) {
+		return ++Ns[sid];
+	}
+
+	/**
+	 * Increments N<sub>s'|sa</sub>[t,s,a].
+	 */
+	public void incrementOutcome(int tid, int sid, int column) {
+		int sa = sid * columns + column;
+		int[] row = outcomes[sa];
+		if (null == row || row.length <= tid) {
+			row = Arrays.copyOf(null == row ? new int[0] : row, capacity);
+			outcomes[sa] = row;
+		}
+		row[tid]++;
+	}
+
+	/**
+	 * @return N<sub>s'|sa</sub>[t,s,a].
+	 */
+	public int getOutcome(int tid, int sid, int column) {
+		int[] row = outcomes[sid * columns + column];
+		return null == row || row.length <= tid ? 0 : row[tid];
+	}
+
+	/**
+	 * Computes U(s) = max<sub>a</sub>Q(s,a) (AIMA3e pg. 843 - 21.6) for all
+	 * states with a known Q-value.
+	 *
+	 * @return the utilities.
+	 */
+	public Map<S, Double> getUtilityFromQ() {
+		Map<S, Double> result = new HashMap<S, Double>();
+		for (int sid = 0; sid < states.size(); sid++) {
+			double max = Double.NEGATIVE_INFINITY;
+			boolean known = false;
+			for (int i = sid * columns; i < (sid + 1) * columns; i++) {
+				if (!Double.isNaN(Q[i])) {
+					known = true;
+					max = Math.max(max, Q[i]);
+				}
+			}
+			if (known) {
+				result.put(states.get(sid), max);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the states with known utility U and their utilities.
+	 */
+	public Map<S, Double> getUtility() {
+		Map<S, Double> result = new HashMap<S, Double>();
+		for (int sid = 0; sid < states.size(); sid++) {
+			if (!Double.isNaN(U[sid])) {
+				result.put(states.get(sid), U[sid]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Forgets all values and counts. The ids of states and actions are kept.
+	 */
+	public void clear() {
+		Arrays.fill(Q, Double.NaN);
+		Arrays.fill(Nsa, 0);
+		Arrays.fill(U, Double.NaN);
+		Arrays.fill(Ns, 0);
+		Arrays.fill(outcomes, null);
+	}
+
+	/**
+	 * Creates a table with the same states, actions and values for a worker
+	 * thread. The copy cannot register new states or actions.
+	 *
+	 * @return a copy of this table.
+	 */
+	public StateActionTable<S, A> copy() {
+		return new StateActionTable<S, A>(this);
+	}
+
+	/**
+	 * Combines the updates of worker tables, which were copied from this table
+	 * and trained independently, into this table. Q and U become the averages
+	 * of the workers' values weighted by the number of updates each worker
+	 * made to the entry, the counts are summed up. Entries which this table
+	 * does not know yet (e.g. the None action of terminal states) are taken
+	 * from the workers.
+	 *
+	 * @param workers
+	 *            the worker tables.
+	 */
+	public void merge(List<StateActionTable<S, A>> workers) {
+		int n = states.size();
+		for (int i = 0; i < n * columns; i++) {
+			double sum = 0.0;
+			int updates = 0;
+			double value = Q[i];
+			for (StateActionTable<S, A> w : workers) {
+				int dn = w.Nsa[i] - Nsa[i];
+				if (dn > 0) {
+					sum += dn * w.Q[i];
+					updates += dn;
+				} else if (Double.isNaN(value)) {
+					value = w.Q[i];
+				}
+			}
+			Q[i] = updates > 0 ? sum / updates : value;
+			Nsa[i] += updates;
+			if (null != outcomes[i] || updates > 0) {
+				int[] row = new int[capacity];
+				for (StateActionTable<S, A> w : workers) {
+					if (null != w.outcomes[i]) {
+						for (int t = 0; t < w.outcomes[i].length; t++) {
+							row[t] += w.outcomes[i][t];
+						}
+					}
+				}
+				if (null != outcomes[i]) {
+					// the workers started from this table's counts
+					for (int t = 0; t < outcomes[i].length; t++) {
+						row[t] -= (workers.size() - 1) * outcomes[i][t];
+					}
+				}
+				outcomes[i] = row;
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			double sum = 0.0;
+			int updates = 0;
+			double value = U[i];
+			for (StateActionTable<S, A> w : workers) {
+				int dn = w.Ns[i] - Ns[i];
+				if (dn > 0) {
+					sum += dn * w.U[i];
+					updates += dn;
+				} else if (Double.isNaN(value)) {
+					value = w.U[i];
+				}
+			}
+			U[i] = updates > 0 ? sum / updates : value;
+			Ns[i] += updates;
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private StateActionTable(StateActionTable<S, A> other) {
+		actionsFunction = other.actionsFunction;
+		stateIds = other.stateIds;
+		states = other.states;
+		actionIds = other.actionIds;
+		actions = other.actions;
+		frozen = true;
+		stateActions = other.stateActions;
+		capacity = other.capacity;
+		columns = other.columns;
+		Q = other.Q.clone();
+		Nsa = other.Nsa.clone();
+		U = other.U.clone();
+		Ns = other.Ns.clone();
+		outcomes = new int[other.outcomes.length][];
+		for (int i = 0; i < outcomes.length; i++) {
+			if (null != other.outcomes[i]) {
+				outcomes[i] = other.outcomes[i].clone();
+			}
+		}
+	}
+
+	private void allocate(int capacity, int columns) {
+		this.capacity = capacity;
+		this.columns = columns;
+		stateActions = new int[capacity][];
+		Q = new double[capacity * columns];
+		Arrays.fill(Q, Double.NaN);
+		Nsa = new int[capacity * columns];
+		U = new double[capacity];
+		Arrays.fill(U, Double.NaN);
+		Ns = new int[capacity];
+		outcomes = new int[capacity * columns][];
+	}
+
+	private void grow(int newCapacity, int newColumns) {
+		int[][] oldStateActions = stateActions;
+		double[] oldQ = Q;
+		int[] oldNsa = Nsa;
+		double[] oldU = U;
+		int[] oldNs = Ns;
+		int[][] oldOutcomes = outcomes;
+		int oldColumns = columns;
+		int n = states.size();
+		allocate(newCapacity, newColumns);
+		System.arraycopy(oldStateActions, 0, stateActions, 0, n);
+		System.arraycopy(oldU, 0, U, 0, n);
+		System.arraycopy(oldNs, 0, Ns, 0, n);
+		for (int sid = 0; sid < n; sid++) {
+			System.arraycopy(oldQ, sid * oldColumns, Q, sid * columns, oldColumns);
+			System.arraycopy(oldNsa, sid * oldColumns, Nsa, sid * columns, oldColumns);
+			System.arraycopy(oldOutcomes, sid * oldColumns, outcomes, sid * columns, oldColumns);
+		}
+	}
+}
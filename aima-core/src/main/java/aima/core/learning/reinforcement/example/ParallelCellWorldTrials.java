@@ -0,0 +1,98 @@
+package aima.core.learning.reinforcement.example;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import aima.core.environment.cellworld.Cell;
+import aima.core.environment.cellworld.CellWorldAction;
+import aima.core.learning.reinforcement.agent.QLearningAgent;
+import aima.core.learning.reinforcement.agent.StateActionTable;
+import aima.core.probability.mdp.TransitionProbabilityFunction;
+import aima.core.util.JavaRandomizer;
+
+/**
+ * Executes trials of a Q-learning agent in several independent
+ * {@link CellWorldEnvironment}s in parallel.<br>
+ * <br>
+ * Training proceeds in rounds. At the beginning of a round every worker gets
+ * its own agent working on a copy of the agent's {@link StateActionTable} and
+ * its own environment with a separately seeded randomizer. The workers then
+ * execute their trials without any synchronization. At the end of the round
+ * their tables are merged into the table of the trained agent (see
+ * {@link StateActionTable#merge(List)}). Shorter rounds propagate what the
+ * workers learned more often, longer rounds reduce the merging overhead.
+ */
+public class ParallelCellWorldTrials {
+	private final Cell<Double> startingCell;
+	private final Set<Cell<Double>> allStates = new LinkedHashSet<>();
+	private final TransitionProbabilityFunction<Cell<Double>, CellWorldAction> tpf;
+	private final int workers;
+	private final Random seeds;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param startingCell
+	 *            the cell that agents are to start from at the beginning of
+	 *            each trial.
+	 * @param allStates
+	 *            all the possible states in the environment.
+	 * @param tpf
+	 *            the transition probability function of the environment.
+	 * @param workers
+	 *            the number of environments run in parallel.
+	 * @param seed
+	 *            the seed of the randomizers of the environments.
+	 */
+	public ParallelCellWorldTrials(Cell<Double> startingCell, Set<Cell<Double>> allStates,
+			TransitionProbabilityFunction<Cell<Double>, CellWorldAction> tpf, int workers, long seed) {
+		this.startingCell = startingCell;
+		this.allStates.addAll(allStates);
+		this.tpf = tpf;
+		this.workers = workers;
+		this.seeds = new Random(seed);
+	}
+
+	/**
+	 * Executes n trials, distributed over the workers.
+	 *
+	 * @param agent
+	 *            the agent to be trained.
+	 * @param n
+	 *            the total number of trials.
+	 * @param trialsPerRound
+	 *            the number of trials each worker executes between two merges.
+	 */
+	public void executeTrials(QLearningAgent<Cell<Double>, CellWorldAction> agent, int n, int trialsPerRound) {
+		// ids must be fixed before the tables are copied
+		agent.getTable().registerStates(allStates);
+		int done = 0;
+		while (done < n) {
+			List<QLearningAgent<Cell<Double>, CellWorldAction>> agents = new ArrayList<>();
+			List<CellWorldEnvironment> environments = new ArrayList<>();
+			List<Integer> trials = new ArrayList<>();
+			for (int w = 0; w < workers && done < n; w++) {
+				int t = Math.min(trialsPerRound, n - done);
+				done += t;
+				QLearningAgent<Cell<Double>, CellWorldAction> worker = agent.createWorker();
+				CellWorldEnvironment cwe = new CellWorldEnvironment(startingCell, allStates, tpf,
+						new JavaRandomizer(new Random(seeds.nextLong())));
+				cwe.addAgent(worker);
+				agents.add(worker);
+				environments.add(cwe);
+				trials.add(t);
+			}
+			IntStream.range(0, environments.size()).parallel()
+					.forEach(i -> environments.get(i).executeTrials(trials.get(i)));
+			List<StateActionTable<Cell<Double>, CellWorldAction>> tables = new ArrayList<>();
+			for (QLearningAgent<Cell<Double>, CellWorldAction> worker : agents) {
+				tables.add(worker.getTable());
+			}
+			agent.getTable().merge(tables);
+		}
+	}
+}
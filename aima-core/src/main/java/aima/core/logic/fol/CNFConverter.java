@@ -1,16 +1,22 @@
 package aima.core.logic.fol;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
+import aima.core.logic.fol.domain.FOLDomain;
 import aima.core.logic.fol.kb.data.CNF;
 import aima.core.logic.fol.kb.data.Clause;
 import aima.core.logic.fol.parsing.FOLParser;
 import aima.core.logic.fol.parsing.FOLVisitor;
+import aima.core.logic.fol.parsing.ast.AtomicSentence;
 import aima.core.logic.fol.parsing.ast.ConnectedSentence;
 import aima.core.logic.fol.parsing.ast.Constant;
 import aima.core.logic.fol.parsing.ast.Function;
@@ -31,7 +37,20 @@ import aima.core.logic.fol.parsing.ast.Variable;
  * <b>Note:</b> Transformation rules extracted from 346 and 347, which are
  * essentially the INSEADO method outlined in: <a
  * href="http://logic.stanford.edu/classes/cs157/2008/lectures/lecture09.pdf"
- * >INSEADO Rules</a>
+ * >INSEADO Rules</a><br>
+ * <br>
+ * <b>Note:</b> Distributing V over ^ can make the CNF exponentially larger
+ * than the sentence. In definitional mode, a conjunction nested in a
+ * disjunction is instead replaced by an atom Def<sub>n</sub>(x<sub>1</sub>,
+ * ..., x<sub>k</sub>) over the variables x<sub>i</sub> of the conjunction,
+ * with a new predicate from {@link FOLDomain#addDefinitionPredicate()}, and
+ * clauses &not;Def<sub>n</sub>(x<sub>1</sub>, ..., x<sub>k</sub>) V
+ * C<sub>j</sub> for each conjunct C<sub>j</sub> are added (Tseitin's
+ * transformation, only the direction required after N)egations In, as
+ * proposed by Plaisted and Greenbaum). The result grows linearly with the
+ * sentence and is satisfiable if and only if the sentence is, which is what
+ * resolution refutation needs, but it is not equivalent to it. Equal
+ * conjunctions share one definition.
  * 
  * @author Ciaran O'Reilly
  * @author Mike Stampone
@@ -40,13 +59,34 @@ public class CNFConverter {
 
 	private FOLParser parser = null;
 	private SubstVisitor substVisitor;
+	private boolean definitional = false;
 
 	public CNFConverter(FOLParser parser) {
+		this(parser, false);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param parser
+	 *            the parser whose domain receives the Skolem functions and
+	 *            definition predicates.
+	 * @param definitional
+	 *            true if conjunctions nested in disjunctions are to be
+	 *            replaced by definition atoms instead of distributing the
+	 *            disjunctions over them.
+	 */
+	public CNFConverter(FOLParser parser, boolean definitional) {
 		this.parser = parser;
+		this.definitional = definitional;
 
 		this.substVisitor = new SubstVisitor();
 	}
 
+	public boolean isDefinitional() {
+		return definitional;
+	}
+
 	/**
 	 * Returns the specified sentence as a list of clauses, where each clause is
 	 * a disjunction of literals.
@@ -58,6 +98,21 @@ public class CNFConverter {
 	 *         a disjunction of literals.
 	 */
 	public CNF convertToCNF(Sentence aSentence) {
+		List<Clause> clauses = new ArrayList<Clause>();
+		convertToCNF(aSentence, clauses::add);
+		return new CNF(clauses);
+	}
+
+	/**
+	 * Passes the clauses of the specified sentence to a sink as they are
+	 * generated.
+	 * 
+	 * @param aSentence
+	 *            a sentence in first order logic (predicate calculus)
+	 * @param sink
+	 *            receives the clauses.
+	 */
+	public void convertToCNF(Sentence aSentence, Consumer<Clause> sink) {
 		// I)mplications Out:
 		Sentence implicationsOut = (Sentence) aSentence.accept(
 				new ImplicationsOut(), null);
@@ -82,13 +137,23 @@ public class CNFConverter {
 		Sentence andsAndOrs = (Sentence) saQuantifiers.accept(
 				new RemoveQuantifiers(parser), new LinkedHashSet<Variable>());
 
+		if (definitional) {
+			// Definitions instead of D)istribution, and O)perators Out
+			new DefinitionalCNFConstructor(parser.getFOLDomain(), sink)
+					.construct(andsAndOrs);
+			return;
+		}
+
 		// D)istribution
 		// V over ^:
 		Sentence orDistributedOverAnd = (Sentence) andsAndOrs.accept(
 				new DistributeOrOverAnd(), null);
 
 		// O)perators Out
-		return (new CNFConstructor()).construct(orDistributedOverAnd);
+		for (Clause c : (new CNFConstructor()).construct(orDistributedOverAnd)
+				.getConjunctionOfClauses()) {
+			sink.accept(c);
+		}
 	}
 }
 
@@ -611,4 +676,86 @@ class CNFConstructor implements FOLVisitor {
 			clauses.add(new Clause());
 		}
 	}
-}
\ No newline at end of file
+}
+
+/**
+ * Turns a sentence without implications and quantifiers, and with negations
+ * only in front of atoms, into clauses, introducing a definition for each
+ * conjunction that occurs in a disjunction.
+ */
+class DefinitionalCNFConstructor {
+	private FOLDomain domain;
+	private Consumer<Clause> sink;
+	private VariableCollector variableCollector = new VariableCollector();
+	// the definition atoms of the conjunctions of the sentence
+	private Map<Sentence, Predicate> definitions = new HashMap<Sentence, Predicate>();
+
+	public DefinitionalCNFConstructor(FOLDomain domain, Consumer<Clause> sink) {
+		this.domain = domain;
+		this.sink = sink;
+	}
+
+	public void construct(Sentence andsAndOrs) {
+		for (Sentence conjunct : operands(andsAndOrs, true)) {
+			sink.accept(clauseOf(conjunct, null));
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	// the clause of a disjunction, with the negated definition atom if the
+	// disjunction is a conjunct of a definition
+	private Clause clauseOf(Sentence disjunction, Predicate definition) {
+		Clause clause = new Clause();
+		if (null != definition) {
+			clause.addNegativeLiteral(definition);
+		}
+		for (Sentence disjunct : operands(disjunction, false)) {
+			if (disjunct instanceof NotSentence) {
+				clause.addNegativeLiteral((AtomicSentence) ((NotSentence) disjunct)
+						.getNegated());
+			} else if (disjunct instanceof AtomicSentence) {
+				clause.addPositiveLiteral((AtomicSentence) disjunct);
+			} else {
+				clause.addPositiveLiteral(define(disjunct));
+			}
+		}
+		return clause;
+	}
+
+	private Predicate define(Sentence conjunction) {
+		Predicate definition = definitions.get(conjunction);
+		if (null == definition) {
+			definition = new Predicate(domain.addDefinitionPredicate(),
+					new ArrayList<Term>(variableCollector
+							.collectAllVariables(conjunction)));
+			definitions.put(conjunction, definition);
+			for (Sentence conjunct : operands(conjunction, true)) {
+				sink.accept(clauseOf(conjunct, definition));
+			}
+		}
+		return definition;
+	}
+
+	// the operands of nested conjunctions or disjunctions, from left to right
+	private List<Sentence> operands(Sentence sentence, boolean and) {
+		List<Sentence> result = new ArrayList<Sentence>();
+		Deque<Sentence> open = new ArrayDeque<Sentence>();
+		open.push(sentence);
+		while (!open.isEmpty()) {
+			Sentence s = open.pop();
+			if (s instanceof ConnectedSentence
+					&& (and ? Connectors.isAND(((ConnectedSentence) s)
+							.getConnector()) : Connectors
+							.isOR(((ConnectedSentence) s).getConnector()))) {
+				open.push(((ConnectedSentence) s).getSecond());
+				open.push(((ConnectedSentence) s).getFirst());
+			} else {
+				result.add(s);
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,307 @@
+package aima.core.logic.fol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import aima.core.logic.fol.parsing.ast.Constant;
+import aima.core.logic.fol.parsing.ast.FOLNode;
+import aima.core.logic.fol.parsing.ast.Function;
+import aima.core.logic.fol.parsing.ast.Predicate;
+import aima.core.logic.fol.parsing.ast.Term;
+import aima.core.logic.fol.parsing.ast.TermEquality;
+import aima.core.logic.fol.parsing.ast.Variable;
+
+/**
+ * A store of hash-consed terms and atomic sentences.<br>
+ * <br>
+ * Every term is identified by an int. Structurally equal terms are interned
+ * only once, so that they get the same id and share all their subterms.
+ * Equality of two ground terms is therefore a comparison of their ids.
+ * Variables are numbered 0, 1, ... within the term (or clause) they occur in
+ * instead of being named, so P(x, F(y)) and P(u, F(w)) are the same term
+ * P(#0, F(#1)). Renaming a term apart from another one does not copy it: a
+ * {@link TrailUnifier} simply interprets its variables relative to a
+ * different offset.<br>
+ * <br>
+ * Terms are converted from and to the AST classes of
+ * {@link aima.core.logic.fol.parsing.ast}. A function and a predicate with
+ * the same name are different terms.<br>
+ * <br>
+ * The bank is not synchronized.
+ */
+public class TermBank {
+
+	public static final int VARIABLE = 0;
+	public static final int CONSTANT = 1;
+	public static final int FUNCTION = 2;
+	public static final int PREDICATE = 3;
+	public static final int EQUALITY = 4;
+
+	private final Map<String, Integer> symbolIds = new HashMap<String, Integer>();
+	private final List<String> symbolNames = new ArrayList<String>();
+	private final Map<Key, Integer> termIds = new HashMap<Key, Integer>();
+	// per term: kind, symbol (the variable number for variables), start of
+	// the arguments in args, arity and the number of variables (the highest
+	// variable number + 1, 0 for ground terms)
+	private int[] kind = new int[64];
+	private int[] symbol = new int[64];
+	private int[] argStart = new int[64];
+	private int[] arity = new int[64];
+	private int[] variableCount = new int[64];
+	private int[] args = new int[128];
+	private int size = 0;
+	private int argsSize = 0;
+
+	/**
+	 * @return the number of distinct terms in the bank.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes all terms, all ids handed out become invalid.
+	 */
+	public void clear() {
+		symbolIds.clear();
+		symbolNames.clear();
+		termIds.clear();
+		size = 0;
+		argsSize = 0;
+	}
+
+	/**
+	 * @param number
+	 *            the number of the variable within its term.
+	 * @return the id of the variable.
+	 */
+	public int variable(int number) {
+		return intern(VARIABLE, number, new int[0]);
+	}
+
+	/**
+	 * @param name
+	 *            the name of the constant.
+	 * @return the id of the constant.
+	 */
+	public int constant(String name) {
+		return intern(CONSTANT, symbolId(name, 0), new int[0]);
+	}
+
+	/**
+	 * @param kind
+	 *            {@link #FUNCTION}, {@link #PREDICATE} or {@link #EQUALITY}.
+	 * @param name
+	 *            the function symbol or predicate.
+	 * @param arguments
+	 *            the ids of the arguments.
+	 * @return the id of the compound term.
+	 */
+	public int compound(int kind, String name, int[] arguments) {
+		return intern(kind, symbolId(name, arguments.length), arguments.clone());
+	}
+
+	/**
+	 * Interns a term or atomic sentence of the AST.
+	 *
+	 * @param node
+	 *            a variable, constant, function, predicate or term equality.
+	 * @param variables
+	 *            the numbers of the variables seen so far, new variables are
+	 *            numbered in the order of their occurrence and added.
+	 * @return the id of the node or -1 if it is not a term or atomic
+	 *         sentence.
+	 */
+	public int intern(FOLNode node, Map<Variable, Integer> variables) {
+		if (node instanceof Variable) {
+			Integer number = variables.get(node);
+			if (null == number) {
+				number = variables.size();
+				variables.put((Variable) node, number);
+			}
+			return variable(number);
+		} else if (node instanceof Constant) {
+			return constant(node.getSymbolicName());
+		}
+		int k;
+		if (node instanceof Function) {
+			k = FUNCTION;
+		} else if (node instanceof Predicate) {
+			k = PREDICATE;
+		} else if (node instanceof TermEquality) {
+			k = EQUALITY;
+		} else {
+			return -1;
+		}
+		List<? extends FOLNode> nodeArgs = node.getArgs();
+		int[] ids = new int[nodeArgs.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = intern(nodeArgs.get(i), variables);
+		}
+		return intern(k, symbolId(node.getSymbolicName(), ids.length), ids);
+	}
+
+	/**
+	 * Converts a term back into the AST.
+	 *
+	 * @param term
+	 *            the id of the term.
+	 * @param variables
+	 *            the variable to be used for each variable number.
+	 * @return the term or atomic sentence.
+	 */
+	public FOLNode toNode(int term, Variable[] variables) {
+		switch (kind[term]) {
+		case VARIABLE:
+			return variables[symbol[term]];
+		case CONSTANT:
+			return new Constant(getName(term));
+		default:
+			List<Term> terms = new ArrayList<Term>(arity[term]);
+			for (int i = 0; i < arity[term]; i++) {
+				terms.add((Term) toNode(args[argStart[term] + i], variables));
+			}
+			return compoundNode(term, terms);
+		}
+	}
+
+	public int getKind(int term) {
+		return kind[term];
+	}
+
+	/**
+	 * @return the symbol of a constant or compound, equal for all terms with
+	 *         the same name and arity.
+	 */
+	public int getSymbol(int term) {
+		return symbol[term];
+	}
+
+	public String getName(int term) {
+		return symbolNames.get(symbol[term]);
+	}
+
+	public int getArity(int term) {
+		return arity[term];
+	}
+
+	public int getArg(int term, int i) {
+		return args[argStart[term] + i];
+	}
+
+	/**
+	 * @return the number of a variable.
+	 */
+	public int getVariableNumber(int term) {
+		return symbol[term];
+	}
+
+	public boolean isVariable(int term) {
+		return kind[term] == VARIABLE;
+	}
+
+	public boolean isGround(int term) {
+		return variableCount[term] == 0;
+	}
+
+	/**
+	 * @return the highest number of a variable in the term + 1.
+	 */
+	public int getVariableCount(int term) {
+		return variableCount[term];
+	}
+
+	/**
+	 * Creates the AST node of a compound term, given its converted
+	 * arguments.
+	 */
+	FOLNode compoundNode(int term, List<Term> terms) {
+		switch (kind[term]) {
+		case FUNCTION:
+			return new Function(getName(term), terms);
+		case PREDICATE:
+			return new Predicate(getName(term), terms);
+		default:
+			return new TermEquality(terms.get(0), terms.get(1));
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private int symbolId(String name, int n) {
+		String key = name + "/" + n;
+		Integer id = symbolIds.get(key);
+		if (null == id) {
+			id = symbolNames.size();
+			symbolNames.add(name);
+			symbolIds.put(key, id);
+		}
+		return id;
+	}
+
+	private int intern(int k, int s, int[] arguments) {
+		Key key = new Key(k, s, arguments);
+		Integer id = termIds.get(key);
+		if (null != id) {
+			return id;
+		}
+		if (size == kind.length) {
+			int capacity = 2 * size;
+			kind = Arrays.copyOf(kind, capacity);
+			symbol = Arrays.copyOf(symbol, capacity);
+			argStart = Arrays.copyOf(argStart, capacity);
+			arity = Arrays.copyOf(arity, capacity);
+			variableCount = Arrays.copyOf(variableCount, capacity);
+		}
+		if (argsSize + arguments.length > args.length) {
+			args = Arrays.copyOf(args,
+					Math.max(2 * args.length, argsSize + arguments.length));
+		}
+		int t = size++;
+		kind[t] = k;
+		symbol[t] = s;
+		argStart[t] = argsSize;
+		arity[t] = arguments.length;
+		int vars = k == VARIABLE ? s + 1 : 0;
+		for (int a : arguments) {
+			args[argsSize++] = a;
+			vars = Math.max(vars, variableCount[a]);
+		}
+		variableCount[t] = vars;
+		termIds.put(key, t);
+		return t;
+	}
+
+	private static class Key {
+		final int kind;
+		final int symbol;
+		final int[] args;
+		final int hashCode;
+
+		Key(int kind, int symbol, int[] args) {
+			this.kind = kind;
+			this.symbol = symbol;
+			this.args = args;
+			this.hashCode = 31 * (31 * kind + symbol) + Arrays.hashCode(args);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			return kind == k.kind && symbol == k.symbol
+					&& Arrays.equals(args, k.args);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+}
@@ -0,0 +1,337 @@
+package aima.core.logic.fol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import aima.core.logic.fol.parsing.ast.FOLNode;
+import aima.core.logic.fol.parsing.ast.Term;
+import aima.core.logic.fol.parsing.ast.Variable;
+
+/**
+ * Unification of the terms of a {@link TermBank} with bindings recorded on a
+ * trail (as in the Warren Abstract Machine) instead of copied substitution
+ * maps.<br>
+ * <br>
+ * A variable of a term is identified by a cell: its number within the term
+ * plus an offset. Two occurrences of the same clause with different offsets
+ * are therefore standardized apart without renaming anything; a new offset
+ * is obtained from {@link #allocate(int)}. Each cell holds the term and
+ * offset it is bound to, or nothing. Every binding is pushed onto the trail,
+ * so that {@link #undo(int)} can take back all bindings made after a
+ * {@link #mark()}. A failed unification undoes its own bindings.<br>
+ * <br>
+ * Bindings are never composed: looking up the value of a variable follows
+ * the chain of bindings (dereferencing). As with {@link Unifier}, an occur
+ * check is performed unless disabled.
+ */
+public class TrailUnifier {
+
+	private static final int UNBOUND = -1;
+
+	private final TermBank bank;
+	private boolean occurCheck = true;
+	private int[] boundTerm = new int[64];
+	private int[] boundOffset = new int[64];
+	private int cells = 0;
+	private int[] trail = new int[64];
+	private int trailSize = 0;
+	// the result of deref()
+	private int derefTerm, derefOffset;
+
+	public TrailUnifier(TermBank bank) {
+		this.bank = bank;
+		Arrays.fill(boundTerm, UNBOUND);
+	}
+
+	public TermBank getTermBank() {
+		return bank;
+	}
+
+	public void setOccurCheck(boolean occurCheck) {
+		this.occurCheck = occurCheck;
+	}
+
+	/**
+	 * Allocates unbound cells for the variables of a term.
+	 *
+	 * @param variables
+	 *            the number of variables, see
+	 *            {@link TermBank#getVariableCount(int)}.
+	 * @return the offset of the new cells.
+	 */
+	public int allocate(int variables) {
+		int offset = cells;
+		cells += variables;
+		if (cells > boundTerm.length) {
+			int capacity = Math.max(2 * boundTerm.length, cells);
+			int old = boundTerm.length;
+			boundTerm = Arrays.copyOf(boundTerm, capacity);
+			boundOffset = Arrays.copyOf(boundOffset, capacity);
+			Arrays.fill(boundTerm, old, capacity, UNBOUND);
+		}
+		return offset;
+	}
+
+	/**
+	 * @return the number of allocated cells, to be passed to
+	 *         {@link #release(int)}.
+	 */
+	public int getAllocated() {
+		return cells;
+	}
+
+	/**
+	 * Frees all cells allocated after the given number of cells had been
+	 * allocated. Their bindings must have been undone.
+	 */
+	public void release(int allocated) {
+		cells = allocated;
+	}
+
+	/**
+	 * Undoes all bindings and frees all cells.
+	 */
+	public void reset() {
+		undo(0);
+		cells = 0;
+	}
+
+	/**
+	 * @return the current position of the trail.
+	 */
+	public int mark() {
+		return trailSize;
+	}
+
+	/**
+	 * Undoes all bindings made since the mark was taken.
+	 */
+	public void undo(int mark) {
+		while (trailSize > mark) {
+			boundTerm[trail[--trailSize]] = UNBOUND;
+		}
+	}
+
+	/**
+	 * @return the number of bindings on the trail.
+	 */
+	public int getTrailSize() {
+		return trailSize;
+	}
+
+	/**
+	 * @return the cell bound by the i-th binding on the trail.
+	 */
+	public int getTrailCell(int i) {
+		return trail[i];
+	}
+
+	public boolean isBound(int cell) {
+		return boundTerm[cell] != UNBOUND;
+	}
+
+	/**
+	 * Binds an unbound cell.
+	 */
+	public void bind(int cell, int term, int offset) {
+		boundTerm[cell] = term;
+		boundOffset[cell] = offset;
+		if (trailSize == trail.length) {
+			trail = Arrays.copyOf(trail, 2 * trailSize);
+		}
+		trail[trailSize++] = cell;
+	}
+
+	/**
+	 * Unifies two terms under the current bindings.
+	 *
+	 * @return true if they unify, in which case the bindings necessary are on
+	 *         the trail. On failure the bindings are as before.
+	 */
+	public boolean unify(int x, int xOffset, int y, int yOffset) {
+		int mark = trailSize;
+		if (unifyTerms(x, xOffset, y, yOffset)) {
+			return true;
+		}
+		undo(mark);
+		return false;
+	}
+
+	/**
+	 * @return the cell of the variable a term is bound to or -1 if the term
+	 *         does not dereference to an unbound variable.
+	 */
+	public int unboundCell(int term, int offset) {
+		deref(term, offset);
+		if (bank.isVariable(derefTerm)) {
+			return bank.getVariableNumber(derefTerm) + derefOffset;
+		}
+		return -1;
+	}
+
+	/**
+	 * Applies the current bindings to a term and interns the result.
+	 *
+	 * @param term
+	 *            the term.
+	 * @param offset
+	 *            the offset of its variables.
+	 * @param renaming
+	 *            the numbers given to the unbound cells met so far in the
+	 *            result, extended by the cells met in this term.
+	 * @return the id of the instantiated term.
+	 */
+	public int resolve(int term, int offset, Renaming renaming) {
+		deref(term, offset);
+		int t = derefTerm, o = derefOffset;
+		if (bank.isGround(t)) {
+			return t;
+		}
+		if (bank.isVariable(t)) {
+			return bank.variable(renaming.number(bank.getVariableNumber(t) + o));
+		}
+		int[] resolved = new int[bank.getArity(t)];
+		for (int i = 0; i < resolved.length; i++) {
+			resolved[i] = resolve(bank.getArg(t, i), o, renaming);
+		}
+		return bank.compound(bank.getKind(t), bank.getName(t), resolved);
+	}
+
+	/**
+	 * Applies the current bindings to a term and converts the result into the
+	 * AST.
+	 *
+	 * @param term
+	 *            the term.
+	 * @param offset
+	 *            the offset of its variables.
+	 * @param variables
+	 *            the variable to be used for each unbound cell.
+	 * @return the instantiated term or atomic sentence.
+	 */
+	public FOLNode toNode(int term, int offset, Variable[] variables) {
+		deref(term, offset);
+		int t = derefTerm, o = derefOffset;
+		if (bank.isVariable(t)) {
+			return variables[bank.getVariableNumber(t) + o];
+		}
+		if (bank.isGround(t) || bank.getKind(t) == TermBank.CONSTANT) {
+			return bank.toNode(t, null);
+		}
+		List<Term> terms = new ArrayList<Term>(bank.getArity(t));
+		for (int i = 0; i < bank.getArity(t); i++) {
+			terms.add((Term) toNode(bank.getArg(t, i), o, variables));
+		}
+		return bank.compoundNode(t, terms);
+	}
+
+	/**
+	 * Numbers the unbound cells of resolved terms consecutively, in the order
+	 * in which they are met.
+	 */
+	public static class Renaming {
+		private int[] numbers = new int[16];
+		private int count = 0;
+
+		public Renaming() {
+			Arrays.fill(numbers, -1);
+		}
+
+		/**
+		 * @return the number of distinct cells met.
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		int number(int cell) {
+			if (cell >= numbers.length) {
+				int old = numbers.length;
+				numbers = Arrays.copyOf(numbers, Math.max(2 * old, cell + 1));
+				Arrays.fill(numbers, old, numbers.length, -1);
+			}
+			if (numbers[cell] < 0) {
+				numbers[cell] = count++;
+			}
+			return numbers[cell];
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private void deref(int term, int offset) {
+		while (bank.isVariable(term)) {
+			int cell = bank.getVariableNumber(term) + offset;
+			if (boundTerm[cell] == UNBOUND) {
+				break;
+			}
+			term = boundTerm[cell];
+			offset = boundOffset[cell];
+		}
+		derefTerm = term;
+		derefOffset = offset;
+	}
+
+	private boolean unifyTerms(int x, int xOffset, int y, int yOffset) {
+		deref(x, xOffset);
+		x = derefTerm;
+		xOffset = derefOffset;
+		deref(y, yOffset);
+		y = derefTerm;
+		yOffset = derefOffset;
+		boolean xVar = bank.isVariable(x), yVar = bank.isVariable(y);
+		if (xVar) {
+			int cell = bank.getVariableNumber(x) + xOffset;
+			if (yVar && bank.getVariableNumber(y) + yOffset == cell) {
+				return true;
+			}
+			if (!yVar && occurCheck && occurs(cell, y, yOffset)) {
+				return false;
+			}
+			bind(cell, y, yOffset);
+			return true;
+		} else if (yVar) {
+			int cell = bank.getVariableNumber(y) + yOffset;
+			if (occurCheck && occurs(cell, x, xOffset)) {
+				return false;
+			}
+			bind(cell, x, xOffset);
+			return true;
+		}
+		if (bank.isGround(x) && bank.isGround(y)) {
+			// hash-consed
+			return x == y;
+		}
+		int xKind = bank.getKind(x), yKind = bank.getKind(y);
+		if (xKind == TermBank.CONSTANT || yKind == TermBank.CONSTANT
+				|| bank.getSymbol(x) != bank.getSymbol(y)) {
+			return x == y;
+		}
+		for (int i = 0; i < bank.getArity(x); i++) {
+			if (!unifyTerms(bank.getArg(x, i), xOffset, bank.getArg(y, i),
+					yOffset)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean occurs(int cell, int term, int offset) {
+		if (bank.isGround(term)) {
+			return false;
+		}
+		deref(term, offset);
+		int t = derefTerm, o = derefOffset;
+		if (bank.isVariable(t)) {
+			return bank.getVariableNumber(t) + o == cell;
+		}
+		for (int i = 0; i < bank.getArity(t); i++) {
+			if (occurs(cell, bank.getArg(t, i), o)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -14,6 +14,7 @@ public class FOLDomain {
 	private int skolemConstantIndexical = 0;
 	private int skolemFunctionIndexical = 0;
 	private int answerLiteralIndexical = 0;
+	private int definitionPredicateIndexical = 0;
 	private List<FOLDomainListener> listeners = new ArrayList<FOLDomainListener>();
 
 	public FOLDomain() {
@@ -85,6 +86,24 @@ public class FOLDomain {
 		predicates.add(predicate);
 	}
 
+	/**
+	 * Adds a new predicate that names a sub-sentence in a definitional CNF
+	 * conversion.
+	 * 
+	 * @return the name of the predicate.
+	 */
+	public String addDefinitionPredicate() {
+		String dp = null;
+		do {
+			dp = "Def" + (definitionPredicateIndexical++);
+		} while (constants.contains(dp) || functions.contains(dp)
+				|| predicates.contains(dp));
+
+		addPredicate(dp);
+
+		return dp;
+	}
+
 	public String addAnswerLiteral() {
 		String al = null;
 		do {
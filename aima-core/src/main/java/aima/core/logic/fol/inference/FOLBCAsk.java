@@ -8,6 +8,7 @@ import aima.core.logic.fol.kb.FOLKnowledgeBase;
 import aima.core.logic.fol.kb.data.Clause;
 import aima.core.logic.fol.kb.data.Literal;
 import aima.core.logic.fol.parsing.ast.AtomicSentence;
+import aima.core.logic.fol.parsing.ast.FOLNode;
 import aima.core.logic.fol.parsing.ast.Sentence;
 import aima.core.logic.fol.parsing.ast.Term;
 import aima.core.logic.fol.parsing.ast.Variable;
@@ -39,6 +40,20 @@ import aima.core.logic.propositional.kb.KnowledgeBase;
  * </pre>
  *
  * Figure 9.6 A simple backward-chaining algorithm for first-order knowledge bases.
+ * <br>
+ * <br>
+ * In tabling mode (as in SLG resolution) the answers found for a subgoal are
+ * stored in an answer table under the subgoal, up to the renaming of its
+ * variables. A later call of a variant subgoal reuses the answers instead of
+ * resolving it again. A recursive call of a subgoal that is still being
+ * solved consumes the answers found so far. The first subgoal of such a
+ * group of mutually recursive subgoals (the leader) then resolves all of
+ * them again until no new answers are found, and marks them complete.
+ * Left-recursive rules therefore terminate (on function-free KBs) and the
+ * transitive closure of a relation is computed in polynomial time. The table
+ * is kept across queries on the same knowledge base until it is modified.
+ * Once it holds more answers than allowed, the least recently used complete
+ * subgoals are evicted. Tabling mode does not record proof steps.
  *
  * @author samagra
  * @author Ritwik Sharma
@@ -50,13 +65,68 @@ public class FOLBCAsk implements InferenceProcedure{
 	List<Literal> substitutedLiterals;
 	List<HashMap<Variable,Term>> finalList;
 	BCASKHandler bcaskHandler = new BCASKHandler();
+	private Unifier unifier = new Unifier();
 	public boolean maybeFalse = false;
+	// null if not tabling
+	private AnswerTable table = null;
 
 	public FOLBCAsk() {
 		finalAnswer = new ArrayList<>();
 		substitutedLiterals = new ArrayList<>();
 	}
 
+	/**
+	 * @param tabling
+	 *            true if the answers of subgoals are to be tabled, with at
+	 *            most {@link #DEFAULT_MAX_TABLED_ANSWERS} answers kept.
+	 */
+	public FOLBCAsk(boolean tabling) {
+		this(tabling, DEFAULT_MAX_TABLED_ANSWERS);
+	}
+
+	/**
+	 * @param tabling
+	 *            true if the answers of subgoals are to be tabled.
+	 * @param maxTabledAnswers
+	 *            the number of tabled answers above which complete subgoals
+	 *            are evicted from the table.
+	 */
+	public FOLBCAsk(boolean tabling, int maxTabledAnswers) {
+		this();
+		if (tabling) {
+			table = new AnswerTable(maxTabledAnswers);
+		}
+	}
+
+	public static final int DEFAULT_MAX_TABLED_ANSWERS = 100000;
+
+	public boolean isTabling() {
+		return null != table;
+	}
+
+	/**
+	 * @return the number of answers currently in the answer table.
+	 */
+	public int getNumberTabledAnswers() {
+		return null == table ? 0 : table.numberAnswers;
+	}
+
+	/**
+	 * @return the number of subgoals currently in the answer table.
+	 */
+	public int getNumberTabledSubgoals() {
+		return null == table ? 0 : table.subgoals.size();
+	}
+
+	/**
+	 * Removes all subgoals and answers from the answer table.
+	 */
+	public void clearTable() {
+		if (null != table) {
+			table.clear(null);
+		}
+	}
+
 	public List<Literal> getSubstitutedLiterals() {
 		return substitutedLiterals;
 	}
@@ -92,11 +162,12 @@ public class FOLBCAsk implements InferenceProcedure{
 		List<HashMap<Variable,Term>> result = new ArrayList<>();
 		finalAnswer.add(new ArrayList<>(Collections.singletonList(goal)));
 		HashMap<Variable,Term> temp;
-		if (fetchRulesForGoal(kb,goal).isEmpty())
+		List<Clause> rules = fetchRulesForGoal(kb,goal);
+		if (rules.isEmpty())
 			maybeFalse = true;
 		// for each rule (lhs ⇒ rhs) in FETCH-RULES-FOR-GOAL(KB, goal) do
 		for (Clause rule :
-				fetchRulesForGoal(kb,goal)) {
+				rules) {
 			//(lhs, rhs) ← STANDARDIZE-VARIABLES((lhs, rhs))
 			Clause tempClause = kb.standardizeApart(rule);
 			temp = new HashMap<>(theta);
@@ -108,7 +179,7 @@ public class FOLBCAsk implements InferenceProcedure{
 			}
 			//for each θ' in FOL-BC-AND(KB, lhs, UNIFY(rhs, goal, θ)) do
 			// yield θ'
-			result.addAll(folBcAnd(kb, lhs, new Unifier().unify(rhs.getAtomicSentence(), goal.getAtomicSentence(), temp)));
+			result.addAll(folBcAnd(kb, lhs, unifier.unify(rhs.getAtomicSentence(), goal.getAtomicSentence(), temp)));
 		}
 		return result;
 	}
@@ -157,24 +228,17 @@ public class FOLBCAsk implements InferenceProcedure{
 	 */
 	private List<Clause> fetchRulesForGoal(FOLKnowledgeBase kb, Literal goal){
 		List<Clause> result = new ArrayList<>();
+		List<Clause> facts = new ArrayList<>();
+		// only those clauses whose rhs can unify with the goal
 		for (Clause clause :
-				kb.getAllDefiniteClauseImplications()) {
-			Literal rhs = clause.getPositiveLiterals().get(0);
-			if (rhs.getAtomicSentence().getSymbolicName().equals(goal.getAtomicSentence().getSymbolicName())){
+				kb.fetchDefiniteClauses(goal)) {
+			if (clause.isImplicationDefiniteClause()) {
 				result.add(clause);
+			} else {
+				facts.add(clause);
 			}
 		}
-		for (Clause clause :
-				kb.getAllClauses()) {
-			if (clause.isUnitClause()){
-				for (Literal l :
-						clause.getLiterals()) {
-					if (l.getAtomicSentence().getSymbolicName().equals(goal.getAtomicSentence().getSymbolicName())) {
-						result.add(clause);
-					}
-				}
-			}
-		}
+		result.addAll(facts);
 		for (Clause clause :
 				result) {
 			ProofStep step = new BCProofStep(clause,this.bcaskHandler.proofs.get(0).getSteps(),goal);
@@ -190,7 +254,8 @@ public class FOLBCAsk implements InferenceProcedure{
 	@Override
 	public InferenceResult ask(FOLKnowledgeBase kb, Sentence query) {
 		Literal l = new Literal(((AtomicSentence) query));
-		List<HashMap<Variable, Term>> substitutes = this.folBcAsk(kb, l);
+		List<HashMap<Variable, Term>> substitutes = isTabling() ? tabledAsk(kb,
+				l) : this.folBcAsk(kb, l);
 		this.finalList = substitutes;
 		if (l.getAtomicSentence().getArgs().get(0) instanceof Variable) {
 			Variable x = (Variable) l.getAtomicSentence().getArgs().get(0);
@@ -209,6 +274,224 @@ public class FOLBCAsk implements InferenceProcedure{
 		return this.bcaskHandler;
 	}
 
+	//
+	// PRIVATE METHODS
+	//
+	private List<HashMap<Variable, Term>> tabledAsk(FOLKnowledgeBase kb,
+			Literal query) {
+		synchronized (table) {
+			if (table.kb != kb
+					|| table.modificationCount != kb.getModificationCount()) {
+				table.clear(kb);
+			}
+			List<AtomicSentence> answers;
+			try {
+				answers = solve(kb, query.getAtomicSentence());
+			} catch (RuntimeException ex) {
+				// the incomplete subgoals cannot be resumed
+				table.clear(kb);
+				throw ex;
+			}
+			List<HashMap<Variable, Term>> result = new ArrayList<>();
+			for (AtomicSentence answer : answers) {
+				HashMap<Variable, Term> theta = new HashMap<>();
+				if (null != unifier.unify(query.getAtomicSentence(),
+						renameApart(kb, answer), theta)) {
+					result.add(theta);
+				}
+			}
+			table.evict();
+			return result;
+		}
+	}
+
+	// Returns the answers for a goal, from the table if possible
+	private List<AtomicSentence> solve(FOLKnowledgeBase kb,
+			AtomicSentence goal) {
+		String key = variantKey(goal);
+		Subgoal sg = table.subgoals.get(key);
+		if (null == sg) {
+			sg = new Subgoal(goal);
+			table.subgoals.put(key, sg);
+			table.completionStack.add(sg);
+		} else if (sg.complete) {
+			return new ArrayList<>(sg.answers);
+		} else if (sg.callIndex >= 0) {
+			// a recursive call, consume the answers found so far
+			table.dependsOn(sg.callIndex);
+			return new ArrayList<>(sg.answers);
+		}
+		// an incomplete subgoal of a group that is being solved is
+		// resolved again
+		sg.callIndex = table.callStack.size();
+		sg.low = sg.callIndex;
+		sg.recursive = false;
+		table.callStack.add(sg);
+		long answersBefore;
+		do {
+			answersBefore = table.answersAdded;
+			resolve(kb, sg);
+		} while (sg.recursive && sg.low == sg.callIndex
+				&& answersBefore != table.answersAdded);
+		table.callStack.remove(sg.callIndex);
+		sg.callIndex = -1;
+		if (sg.low < table.callStack.size()) {
+			// depends on a caller, which will complete it
+			table.dependsOn(sg.low);
+		} else {
+			// the leader, no new answers for any subgoal of its group
+			List<Subgoal> group = table.completionStack.subList(
+					table.completionStack.indexOf(sg),
+					table.completionStack.size());
+			for (Subgoal member : group) {
+				member.complete = true;
+			}
+			group.clear();
+		}
+		return new ArrayList<>(sg.answers);
+	}
+
+	// One pass over the rules for a subgoal
+	private void resolve(FOLKnowledgeBase kb, Subgoal sg) {
+		Literal goal = new Literal(sg.goal);
+		for (Clause rule : kb.fetchDefiniteClauses(goal)) {
+			Clause r = kb.standardizeApart(rule);
+			Map<Variable, Term> theta = unifier.unify(r.getPositiveLiterals()
+					.get(0).getAtomicSentence(), sg.goal,
+					new HashMap<Variable, Term>());
+			if (null == theta) {
+				continue;
+			}
+			List<Map<Variable, Term>> thetas = new ArrayList<>();
+			thetas.add(theta);
+			for (Literal body : r.getNegativeLiterals()) {
+				List<Map<Variable, Term>> next = new ArrayList<>();
+				for (Map<Variable, Term> t : thetas) {
+					AtomicSentence subgoal = kb.subst(t, body)
+							.getAtomicSentence();
+					for (AtomicSentence answer : solve(kb, subgoal)) {
+						Map<Variable, Term> t2 = unifier.unify(subgoal,
+								renameApart(kb, answer),
+								new HashMap<Variable, Term>(t));
+						if (null != t2) {
+							next.add(t2);
+						}
+					}
+				}
+				thetas = next;
+			}
+			for (Map<Variable, Term> t : thetas) {
+				AtomicSentence answer = kb.subst(t, goal).getAtomicSentence();
+				if (sg.answerKeys.add(variantKey(answer))) {
+					sg.answers.add(answer);
+					table.answersAdded++;
+					table.numberAnswers++;
+				}
+			}
+		}
+	}
+
+	private AtomicSentence renameApart(FOLKnowledgeBase kb,
+			AtomicSentence answer) {
+		if (kb.collectAllVariables(answer).isEmpty()) {
+			return answer;
+		}
+		return (AtomicSentence) kb.standardizeApart(answer);
+	}
+
+	// The same for all atomic sentences that are equal up to the renaming
+	// of their variables
+	private static String variantKey(AtomicSentence atom) {
+		StringBuilder sb = new StringBuilder();
+		appendVariantKey(atom, new HashMap<Variable, Integer>(), sb);
+		return sb.toString();
+	}
+
+	private static void appendVariantKey(FOLNode node,
+			Map<Variable, Integer> numbers, StringBuilder sb) {
+		if (node instanceof Variable) {
+			Integer number = numbers.get(node);
+			if (null == number) {
+				number = numbers.size();
+				numbers.put((Variable) node, number);
+			}
+			sb.append('#').append(number);
+		} else {
+			sb.append(node.getSymbolicName());
+			if (node.isCompound()) {
+				sb.append('(');
+				for (FOLNode arg : node.getArgs()) {
+					appendVariantKey(arg, numbers, sb);
+					sb.append(',');
+				}
+				sb.append(')');
+			}
+		}
+	}
+
+	private static class Subgoal {
+		final AtomicSentence goal;
+		final List<AtomicSentence> answers = new ArrayList<>();
+		final Set<String> answerKeys = new HashSet<>();
+		boolean complete = false;
+		// the position on the call stack, -1 if not being solved
+		int callIndex = -1;
+		// the lowest position on the call stack of a subgoal this one
+		// depends on
+		int low;
+		// true if a subgoal depends on this one while it is being solved
+		boolean recursive;
+
+		Subgoal(AtomicSentence goal) {
+			this.goal = goal;
+		}
+	}
+
+	private static class AnswerTable {
+		final int maxAnswers;
+		// least recently used first
+		final LinkedHashMap<String, Subgoal> subgoals = new LinkedHashMap<>(
+				16, 0.75f, true);
+		// the subgoals being solved
+		final List<Subgoal> callStack = new ArrayList<>();
+		// the incomplete subgoals
+		final List<Subgoal> completionStack = new ArrayList<>();
+		FOLKnowledgeBase kb = null;
+		long modificationCount = 0L;
+		long answersAdded = 0L;
+		int numberAnswers = 0;
+
+		AnswerTable(int maxAnswers) {
+			this.maxAnswers = maxAnswers;
+		}
+
+		void clear(FOLKnowledgeBase kb) {
+			this.kb = kb;
+			modificationCount = null == kb ? 0L : kb.getModificationCount();
+			subgoals.clear();
+			callStack.clear();
+			completionStack.clear();
+			numberAnswers = 0;
+		}
+
+		void dependsOn(int callIndex) {
+			callStack.get(callIndex).recursive = true;
+			Subgoal caller = callStack.get(callStack.size() - 1);
+			caller.low = Math.min(caller.low, callIndex);
+		}
+
+		void evict() {
+			Iterator<Subgoal> it = subgoals.values().iterator();
+			while (numberAnswers > maxAnswers && it.hasNext()) {
+				Subgoal sg = it.next();
+				if (sg.complete) {
+					numberAnswers -= sg.answers.size();
+					it.remove();
+				}
+			}
+		}
+	}
+
 	class BCASKHandler implements InferenceResult{
 
 		private ProofStep stepFinal = null;
@@ -21,6 +21,8 @@ import aima.core.logic.fol.inference.proof.ProofFinal;
 import aima.core.logic.fol.inference.proof.ProofStepGoal;
 import aima.core.logic.fol.kb.FOLKnowledgeBase;
 import aima.core.logic.fol.kb.data.Clause;
+import aima.core.logic.fol.kb.data.DiscriminationTree;
+import aima.core.logic.fol.kb.data.FeatureVectorIndex;
 import aima.core.logic.fol.kb.data.Literal;
 import aima.core.logic.fol.parsing.ast.ConnectedSentence;
 import aima.core.logic.fol.parsing.ast.NotSentence;
@@ -94,6 +96,9 @@ public class FOLOTTERLikeTheoremProver implements InferenceProcedure {
 	private ClauseSimplifier clauseSimplifier = new DefaultClauseSimplifier();
 	//
 	private Paramodulation paramodulation = new Paramodulation();
+	// throughput of the given clause loop of the last query
+	private long numberClausesProcessed = 0L;
+	private long processingTime = 0L;
 
 	public FOLOTTERLikeTheoremProver() {
 
@@ -154,6 +159,25 @@ public class FOLOTTERLikeTheoremProver implements InferenceProcedure {
 		this.clauseSimplifier = clauseSimplifier;
 	}
 
+	/**
+	 * @return the number of clauses selected from sos by the given clause
+	 *         loop during the last query.
+	 */
+	public long getNumberClausesProcessed() {
+		return numberClausesProcessed;
+	}
+
+	/**
+	 * @return the number of clauses selected from sos per second during the
+	 *         last query.
+	 */
+	public double getClausesPerSecond() {
+		if (0L == processingTime) {
+			return 0.0;
+		}
+		return numberClausesProcessed * 1e9 / processingTime;
+	}
+
 	//
 	// START-InferenceProcedure
 	public InferenceResult ask(FOLKnowledgeBase KB, Sentence alpha) {
@@ -236,23 +260,29 @@ public class FOLOTTERLikeTheoremProver implements InferenceProcedure {
 			IndexedClauses idxdClauses, Set<Clause> sos, Set<Clause> usable) {
 
 		getLightestClauseHeuristic().initialSOS(sos);
+		numberClausesProcessed = 0L;
+		long start = System.nanoTime();
 
 		// * repeat
 		do {
 			// * clause <- the lightest member of sos
 			Clause clause = getLightestClauseHeuristic().getLightestClause();
 			if (null != clause) {
+				numberClausesProcessed++;
 				// * move clause from sos to usable
 				sos.remove(clause);
 				getLightestClauseHeuristic().removedClauseFromSOS(clause);
-				usable.add(clause);
+				if (usable.add(clause)) {
+					idxdClauses.addedClauseToUsable(clause);
+				}
 				// * PROCESS(INFER(clause, usable), sos)
-				process(ansHandler, idxdClauses, infer(clause, usable), sos,
-						usable);
+				process(ansHandler, idxdClauses,
+						infer(clause, usable, idxdClauses), sos, usable);
 			}
 
 			// * until sos = [] or a refutation has been found
 		} while (sos.size() != 0 && !ansHandler.isComplete());
+		processingTime = System.nanoTime() - start;
 
 		return ansHandler;
 	}
@@ -262,13 +292,27 @@ public class FOLOTTERLikeTheoremProver implements InferenceProcedure {
 	 * function INFER(clause, usable) returns clauses
 	 */
 	private Set<Clause> infer(Clause clause, Set<Clause> usable) {
+		return infer(clause, usable, null);
+	}
+
+	// If the usable clauses are indexed, only those that have a literal
+	// unifiable with the complement of one of the clause's literals
+	// are tried for resolution.
+	private Set<Clause> infer(Clause clause, Set<Clause> usable,
+			IndexedClauses idxdClauses) {
 		Set<Clause> resultingClauses = new LinkedHashSet<Clause>();
+		Set<Clause> partners = null;
+		if (null != idxdClauses && !clause.isEmpty()) {
+			partners = idxdClauses.getUsableResolutionPartners(clause);
+		}
 
 		// * resolve clause with each member of usable
 		for (Clause c : usable) {
-			Set<Clause> resolvents = clause.binaryResolvents(c);
-			for (Clause rc : resolvents) {
-				resultingClauses.add(rc);
+			if (null == partners || partners.contains(c)) {
+				Set<Clause> resolvents = clause.binaryResolvents(c);
+				for (Clause rc : resolvents) {
+					resultingClauses.add(rc);
+				}
 			}
 
 			// if using paramodulation to handle equality
@@ -383,14 +427,17 @@ public class FOLOTTERLikeTheoremProver implements InferenceProcedure {
 	}
 
 	// This is a simple indexing on the clauses to support
-	// more efficient forward and backward subsumption testing.
+	// more efficient forward and backward subsumption testing
+	// and the retrieval of resolution partners from usable.
 	class IndexedClauses {
 		private LightestClauseHeuristic lightestClauseHeuristic = null;
-		// Group the clauses by their # of literals.
-		private Map<Integer, Set<Clause>> clausesGroupedBySize = new HashMap<Integer, Set<Clause>>();
-		// Keep track of the min and max # of literals.
-		private int minNoLiterals = Integer.MAX_VALUE;
-		private int maxNoLiterals = 0;
+		// The clauses indexed by their feature vectors, only the clauses
+		// whose features are all less (greater) than or equal to those of a
+		// clause can subsume (be subsumed by) it.
+		private FeatureVectorIndex<Clause> subsumptionIndex = new FeatureVectorIndex<Clause>();
+		private Set<Clause> indexed = new HashSet<Clause>();
+		// The usable clauses indexed by each of their literals.
+		private DiscriminationTree<Clause> usableLiterals = new DiscriminationTree<Clause>();
 
 		public IndexedClauses(LightestClauseHeuristic lightestClauseHeuristic,
 				Set<Clause> sos, Set<Clause> usable) {
@@ -400,23 +447,31 @@ public class FOLOTTERLikeTheoremProver implements InferenceProcedure {
 			}
 			for (Clause c : usable) {
 				indexClause(c);
+				addedClauseToUsable(c);
 			}
 		}
 
+		public void addedClauseToUsable(Clause c) {
+			for (Literal l : c.getLiterals()) {
+				usableLiterals.put(l, c);
+			}
+		}
+
+		public Set<Clause> getUsableResolutionPartners(Clause c) {
+			Set<Clause> partners = new HashSet<Clause>();
+			for (Literal l : c.getLiterals()) {
+				partners.addAll(usableLiterals.getUnifiable(new Literal(l
+						.getAtomicSentence(), l.isPositiveLiteral())));
+			}
+			return partners;
+		}
+
 		public void addClause(Clause c, Set<Clause> sos, Set<Clause> usable) {
 			// Perform forward subsumption elimination
 			boolean addToSOS = true;
-			for (int i = minNoLiterals; i < c.getNumberLiterals(); i++) {
-				Set<Clause> fs = clausesGroupedBySize.get(i);
-				if (null != fs) {
-					for (Clause s : fs) {
-						if (s.subsumes(c)) {
-							addToSOS = false;
-							break;
-						}
-					}
-				}
-				if (!addToSOS) {
+			for (Clause s : subsumptionIndex.getPossibleSubsumers(c)) {
+				if (s.subsumes(c)) {
+					addToSOS = false;
 					break;
 				}
 			}
@@ -427,23 +482,19 @@ public class FOLOTTERLikeTheoremProver implements InferenceProcedure {
 				indexClause(c);
 				// Have added clause, therefore
 				// perform backward subsumption elimination
-				Set<Clause> subsumed = new HashSet<Clause>();
-				for (int i = c.getNumberLiterals() + 1; i <= maxNoLiterals; i++) {
-					subsumed.clear();
-					Set<Clause> bs = clausesGroupedBySize.get(i);
-					if (null != bs) {
-						for (Clause s : bs) {
-							if (c.subsumes(s)) {
-								subsumed.add(s);
-								if (sos.contains(s)) {
-									sos.remove(s);
-									lightestClauseHeuristic
-											.removedClauseFromSOS(s);
-								}
-								usable.remove(s);
+				for (Clause s : subsumptionIndex.getPossiblySubsumed(c)) {
+					if (c.subsumes(s)) {
+						subsumptionIndex.remove(s, s);
+						indexed.remove(s);
+						if (sos.contains(s)) {
+							sos.remove(s);
+							lightestClauseHeuristic.removedClauseFromSOS(s);
+						}
+						if (usable.remove(s)) {
+							for (Literal l : s.getLiterals()) {
+								usableLiterals.remove(l, s);
 							}
 						}
-						bs.removeAll(subsumed);
 					}
 				}
 			}
@@ -453,19 +504,9 @@ public class FOLOTTERLikeTheoremProver implements InferenceProcedure {
 		// PRIVATE METHODS
 		//
 		private void indexClause(Clause c) {
-			int size = c.getNumberLiterals();
-			if (size < minNoLiterals) {
-				minNoLiterals = size;
-			}
-			if (size > maxNoLiterals) {
-				maxNoLiterals = size;
-			}
-			Set<Clause> cforsize = clausesGroupedBySize.get(size);
-			if (null == cforsize) {
-				cforsize = new HashSet<Clause>();
-				clausesGroupedBySize.put(size, cforsize);
+			if (indexed.add(c)) {
+				subsumptionIndex.put(c, c);
 			}
-			cforsize.add(c);
 		}
 	}
 
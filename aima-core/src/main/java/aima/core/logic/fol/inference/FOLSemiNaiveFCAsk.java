@@ -0,0 +1,741 @@
+package aima.core.logic.fol.inference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import aima.core.logic.fol.inference.proof.Proof;
+import aima.core.logic.fol.inference.proof.ProofFinal;
+import aima.core.logic.fol.inference.proof.ProofStep;
+import aima.core.logic.fol.inference.proof.ProofStepFoChAlreadyAFact;
+import aima.core.logic.fol.inference.proof.ProofStepFoChAssertFact;
+import aima.core.logic.fol.kb.FOLKnowledgeBase;
+import aima.core.logic.fol.kb.data.Clause;
+import aima.core.logic.fol.kb.data.Literal;
+import aima.core.logic.fol.parsing.ast.AtomicSentence;
+import aima.core.logic.fol.parsing.ast.Function;
+import aima.core.logic.fol.parsing.ast.Predicate;
+import aima.core.logic.fol.parsing.ast.Sentence;
+import aima.core.logic.fol.parsing.ast.Term;
+import aima.core.logic.fol.parsing.ast.Variable;
+
+/**
+ * Forward chaining by semi-naive evaluation (see the discussion of incremental
+ * forward chaining in AIMA3e pg. 333).<br>
+ * <br>
+ * {@link FOLFCAsk} matches every rule against all facts on every iteration and
+ * therefore rederives everything it already knows. This procedure only
+ * considers those matches of a rule p<sub>1</sub> &and; ... &and;
+ * p<sub>n</sub> &rArr; q in which at least one premise p<sub>i</sub> is
+ * matched against a fact inferred in the previous iteration (the delta). The
+ * premises before p<sub>i</sub> are matched against the facts known before
+ * the previous iteration and those after p<sub>i</sub> against all facts, so
+ * every match is found exactly once.<br>
+ * <br>
+ * In the spirit of a rete network, the rules are compiled once per query: the
+ * variables of a rule are numbered, the arguments of the premises are turned
+ * into patterns over interned ground terms and each predicate gets a memory
+ * holding its facts as {@code int[]} tuples, with a hash index from
+ * (argument position, term) to the facts having that term at that position.
+ * A join looks up the next premise by its most selective constant or already
+ * bound argument instead of unifying it with every fact of the predicate.
+ * Within an iteration the (rule, delta premise) joins only read the memories
+ * and are run in parallel; the inferred facts are added sequentially in a
+ * deterministic order afterwards.<br>
+ * <br>
+ * The compiled form requires a Datalog-like knowledge base: all facts are
+ * ground and every variable of a rule's conclusion occurs in its premises, so
+ * that all inferred facts are ground as well. Other knowledge bases are passed
+ * on to {@link FOLFCAsk}. As with {@link FOLFCAsk}, the inferred facts are
+ * added to the knowledge base.
+ */
+public class FOLSemiNaiveFCAsk implements InferenceProcedure {
+
+	private static final int NONE = -1;
+	private static final Postings EMPTY = new Postings();
+
+	private final boolean parallel;
+	private final FOLFCAsk fallback = new FOLFCAsk();
+	private int iterations = 0;
+
+	public FOLSemiNaiveFCAsk() {
+		this(true);
+	}
+
+	/**
+	 * @param parallel
+	 *            whether the joins of an iteration are run in parallel.
+	 */
+	public FOLSemiNaiveFCAsk(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 * @return the number of iterations performed by the last query, 0 if it
+	 *         was answered by {@link FOLFCAsk}.
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	//
+	// START-InferenceProcedure
+
+	/**
+	 * Returns the substitutions for which the query follows from the KB.
+	 *
+	 * @param KB
+	 *            the knowledge base, a set of first order definite clauses
+	 * @param query
+	 *            the query, an atomic sentence
+	 *
+	 * @return a substitution or false
+	 */
+	public InferenceResult ask(FOLKnowledgeBase KB, Sentence query) {
+		if (!(query instanceof AtomicSentence)) {
+			throw new IllegalArgumentException(
+					"Only Atomic Queries are supported.");
+		}
+		iterations = 0;
+		Literal alpha = new Literal((AtomicSentence) query);
+		SemiNaiveAnswerHandler ansHandler = new SemiNaiveAnswerHandler();
+
+		// Ensure query is not already a know fact before
+		// attempting forward chaining.
+		Set<Map<Variable, Term>> answers = KB.fetch(alpha);
+		if (answers.size() > 0) {
+			ProofStep step = new ProofStepFoChAlreadyAFact(alpha);
+			for (Map<Variable, Term> ans : answers) {
+				ansHandler.addProof(new ProofFinal(step, ans));
+			}
+			return ansHandler;
+		}
+
+		Network network = Network.compile(KB);
+		if (null == network) {
+			return fallback.ask(KB, query);
+		}
+
+		List<Integer> inferred = new ArrayList<Integer>();
+		boolean found = false;
+		while (!found) {
+			List<Join> joins = network.nextJoins();
+			if (joins.isEmpty()) {
+				break;
+			}
+			iterations++;
+			List<List<int[]>> matches = (parallel ? joins.parallelStream()
+					: joins.stream()).map(Join::run).collect(
+					Collectors.toList());
+			for (int k = 0; k < joins.size(); k++) {
+				Rule rule = joins.get(k).rule;
+				for (int[] match : matches.get(k)) {
+					Literal fact = network.assertFact(rule, match);
+					if (null != fact) {
+						inferred.add(network.facts.size() - 1);
+						found |= null != KB.unify(alpha.getAtomicSentence(),
+								fact.getAtomicSentence());
+					}
+				}
+			}
+		}
+
+		// add new to KB
+		for (int f : inferred) {
+			KB.tell(network.facts.get(f).getAtomicSentence());
+		}
+		if (found) {
+			Set<Map<Variable, Term>> seen = new LinkedHashSet<Map<Variable, Term>>();
+			for (int f : inferred) {
+				Literal fact = network.facts.get(f);
+				Map<Variable, Term> theta = KB.unify(alpha.getAtomicSentence(),
+						fact.getAtomicSentence());
+				if (null != theta && seen.add(theta)) {
+					ansHandler.addProof(new ProofFinal(network.steps.get(f),
+							theta));
+				}
+			}
+		}
+		return ansHandler;
+	}
+
+	// END-InferenceProcedure
+	//
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * The compiled rules together with the memories of all predicates.
+	 */
+	private static class Network {
+		private final Map<Term, Integer> termIds = new HashMap<Term, Integer>();
+		private final List<Term> terms = new ArrayList<Term>();
+		private final Map<String, Memory> memories = new HashMap<String, Memory>();
+		private final List<Rule> rules = new ArrayList<Rule>();
+		// all facts in the order in which they became known, with the proof
+		// step that asserted them
+		private final List<Literal> facts = new ArrayList<Literal>();
+		private final List<ProofStep> steps = new ArrayList<ProofStep>();
+
+		/**
+		 * @return the network or null if the KB is not range restricted.
+		 */
+		static Network compile(FOLKnowledgeBase KB) {
+			Network network = new Network();
+			for (Clause c : KB.getAllDefiniteClauses()) {
+				if (c.isImplicationDefiniteClause()) {
+					Rule rule = network.compileRule(c);
+					if (null == rule) {
+						return null;
+					}
+					network.rules.add(rule);
+				} else {
+					Literal fact = c.getPositiveLiterals().get(0);
+					if (!(fact.getAtomicSentence() instanceof Predicate)) {
+						return null;
+					}
+					Predicate p = (Predicate) fact.getAtomicSentence();
+					if (!isGround(p.getTerms())) {
+						return null;
+					}
+					int[] tuple = new int[p.getTerms().size()];
+					for (int i = 0; i < tuple.length; i++) {
+						tuple[i] = network.intern(p.getTerms().get(i));
+					}
+					if (network.memory(p).add(tuple, network.facts.size())) {
+						network.facts.add(fact);
+						network.steps.add(new ProofStepFoChAlreadyAFact(fact));
+					}
+				}
+			}
+			return network;
+		}
+
+		/**
+		 * Starts a new iteration: the facts inferred in the last one become the
+		 * delta.
+		 */
+		List<Join> nextJoins() {
+			for (Memory m : memories.values()) {
+				m.oldEnd = m.deltaEnd;
+				m.deltaEnd = m.tuples.size();
+			}
+			List<Join> joins = new ArrayList<Join>();
+			for (Rule r : rules) {
+				for (int i = 0; i < r.premises.length; i++) {
+					Memory m = r.premises[i].memory;
+					if (m.deltaEnd > m.oldEnd) {
+						joins.add(new Join(this, r, i));
+					}
+				}
+			}
+			return joins;
+		}
+
+		/**
+		 * Adds the conclusion of a rule for a match of its premises.
+		 *
+		 * @return the new fact or null if it is already known.
+		 */
+		Literal assertFact(Rule rule, int[] match) {
+			Pattern head = rule.conclusion;
+			int[] tuple = new int[head.arity()];
+			List<Term> args = new ArrayList<Term>(tuple.length);
+			for (int k = 0; k < tuple.length; k++) {
+				if (head.constant[k] != NONE) {
+					tuple[k] = head.constant[k];
+				} else if (head.slot[k] != NONE) {
+					tuple[k] = match[head.slot[k]];
+				} else {
+					tuple[k] = intern(instantiate(rule, head.complex[k], match));
+				}
+				args.add(terms.get(tuple[k]));
+			}
+			if (!head.memory.add(tuple, facts.size())) {
+				return null;
+			}
+			Literal fact = new Literal(new Predicate(head.memory.name, args));
+			Map<Variable, Term> bindings = new LinkedHashMap<Variable, Term>();
+			for (int s = 0; s < rule.variables.length; s++) {
+				bindings.put(rule.variables[s], terms.get(match[s]));
+			}
+			// the fact from the delta that the match is based on
+			ProofStep predecessor = steps.get(match[rule.variables.length]);
+			facts.add(fact);
+			steps.add(new ProofStepFoChAssertFact(rule.clause, fact, bindings,
+					predecessor));
+			return fact;
+		}
+
+		private Rule compileRule(Clause c) {
+			Map<Variable, Integer> slots = new LinkedHashMap<Variable, Integer>();
+			List<Literal> negative = c.getNegativeLiterals();
+			Pattern[] premises = new Pattern[negative.size()];
+			for (int i = 0; i < premises.length; i++) {
+				premises[i] = compilePattern(negative.get(i), slots, true);
+				if (null == premises[i]) {
+					return null;
+				}
+			}
+			Pattern conclusion = compilePattern(c.getPositiveLiterals().get(0),
+					slots, false);
+			if (null == conclusion) {
+				return null;
+			}
+			return new Rule(c, premises, conclusion,
+					slots.keySet().toArray(new Variable[slots.size()]), slots);
+		}
+
+		private Pattern compilePattern(Literal l,
+				Map<Variable, Integer> slots, boolean bind) {
+			if (!(l.getAtomicSentence() instanceof Predicate)) {
+				return null;
+			}
+			Predicate p = (Predicate) l.getAtomicSentence();
+			int arity = p.getTerms().size();
+			Pattern pattern = new Pattern(memory(p), arity);
+			for (int k = 0; k < arity; k++) {
+				Term t = p.getTerms().get(k);
+				if (isGround(Collections.singletonList(t))) {
+					pattern.constant[k] = intern(t);
+				} else if (!bind && !allBound(t, slots)) {
+					// the conclusion would not be ground
+					return null;
+				} else if (t instanceof Variable) {
+					pattern.slot[k] = slot((Variable) t, slots);
+				} else {
+					bindAll(t, slots);
+					pattern.complex[k] = t;
+				}
+			}
+			return pattern;
+		}
+
+		private Memory memory(Predicate p) {
+			String key = p.getPredicateName() + "/" + p.getTerms().size();
+			Memory m = memories.get(key);
+			if (null == m) {
+				m = new Memory(p.getPredicateName(), p.getTerms().size());
+				memories.put(key, m);
+			}
+			return m;
+		}
+
+		private int intern(Term t) {
+			Integer id = termIds.get(t);
+			if (null == id) {
+				if (t instanceof Function) {
+					// sub terms are needed for matching nested patterns
+					for (Term arg : ((Function) t).getTerms()) {
+						intern(arg);
+					}
+				}
+				id = terms.size();
+				terms.add(t);
+				termIds.put(t, id);
+			}
+			return id;
+		}
+
+		private Term instantiate(Rule rule, Term t, int[] match) {
+			if (t instanceof Variable) {
+				return terms.get(match[rule.slots.get(t)]);
+			} else if (t instanceof Function) {
+				Function f = (Function) t;
+				List<Term> args = new ArrayList<Term>();
+				for (Term arg : f.getTerms()) {
+					args.add(instantiate(rule, arg, match));
+				}
+				return new Function(f.getFunctionName(), args);
+			}
+			return t;
+		}
+
+		private static int slot(Variable v, Map<Variable, Integer> slots) {
+			Integer s = slots.get(v);
+			if (null == s) {
+				s = slots.size();
+				slots.put(v, s);
+			}
+			return s;
+		}
+
+		private static void bindAll(Term t, Map<Variable, Integer> slots) {
+			if (t instanceof Variable) {
+				slot((Variable) t, slots);
+			} else if (t instanceof Function) {
+				for (Term arg : ((Function) t).getTerms()) {
+					bindAll(arg, slots);
+				}
+			}
+		}
+
+		private static boolean allBound(Term t, Map<Variable, Integer> slots) {
+			if (t instanceof Variable) {
+				return slots.containsKey(t);
+			} else if (t instanceof Function) {
+				for (Term arg : ((Function) t).getTerms()) {
+					if (!allBound(arg, slots)) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		private static boolean isGround(List<? extends Term> args) {
+			for (Term t : args) {
+				if (t instanceof Variable
+						|| (t instanceof Function && !isGround(((Function) t)
+								.getTerms()))) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * An implication p<sub>1</sub> &and; ... &and; p<sub>n</sub> &rArr; q with
+	 * its variables numbered 0,...,m-1.
+	 */
+	private static class Rule {
+		final Clause clause;
+		final Pattern[] premises;
+		final Pattern conclusion;
+		final Variable[] variables;
+		final Map<Variable, Integer> slots;
+
+		Rule(Clause clause, Pattern[] premises, Pattern conclusion,
+				Variable[] variables, Map<Variable, Integer> slots) {
+			this.clause = clause;
+			this.premises = premises;
+			this.conclusion = conclusion;
+			this.variables = variables;
+			this.slots = slots;
+		}
+	}
+
+	/**
+	 * The arguments of an atom of a rule. At every position there is either
+	 * the id of a ground term, the slot of a variable or a compound term
+	 * containing variables.
+	 */
+	private static class Pattern {
+		final Memory memory;
+		final int[] constant;
+		final int[] slot;
+		final Term[] complex;
+
+		Pattern(Memory memory, int arity) {
+			this.memory = memory;
+			constant = new int[arity];
+			slot = new int[arity];
+			complex = new Term[arity];
+			Arrays.fill(constant, NONE);
+			Arrays.fill(slot, NONE);
+		}
+
+		int arity() {
+			return constant.length;
+		}
+	}
+
+	/**
+	 * The facts of one predicate. Tuples are only appended, so the facts known
+	 * before the last iteration are those below oldEnd and the delta are those
+	 * between oldEnd and deltaEnd.
+	 */
+	private static class Memory {
+		final String name;
+		final List<int[]> tuples = new ArrayList<int[]>();
+		// the index of each tuple in Network.facts
+		final List<Integer> factIndexes = new ArrayList<Integer>();
+		final Set<Tuple> known = new HashSet<Tuple>();
+		// per argument position: term id -> indexes of the tuples (ascending)
+		final List<Map<Integer, Postings>> index = new ArrayList<Map<Integer, Postings>>();
+		int oldEnd = 0;
+		int deltaEnd = 0;
+
+		Memory(String name, int arity) {
+			this.name = name;
+			for (int k = 0; k < arity; k++) {
+				index.add(new HashMap<Integer, Postings>());
+			}
+		}
+
+		boolean add(int[] tuple, int factIndex) {
+			if (!known.add(new Tuple(tuple))) {
+				return false;
+			}
+			int t = tuples.size();
+			tuples.add(tuple);
+			factIndexes.add(factIndex);
+			for (int k = 0; k < tuple.length; k++) {
+				Postings p = index.get(k).get(tuple[k]);
+				if (null == p) {
+					p = new Postings();
+					index.get(k).put(tuple[k], p);
+				}
+				p.add(t);
+			}
+			return true;
+		}
+	}
+
+	private static class Postings {
+		int[] data = new int[4];
+		int size = 0;
+
+		void add(int t) {
+			if (size == data.length) {
+				data = Arrays.copyOf(data, 2 * size);
+			}
+			data[size++] = t;
+		}
+
+		/**
+		 * @return the position of the first entry &ge; t.
+		 */
+		int lowerBound(int t) {
+			int lo = 0, hi = size;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (data[mid] < t) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			return lo;
+		}
+	}
+
+	private static class Tuple {
+		final int[] args;
+		final int hashCode;
+
+		Tuple(int[] args) {
+			this.args = args;
+			this.hashCode = Arrays.hashCode(args);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Tuple && Arrays.equals(args, ((Tuple) o).args);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	/**
+	 * All matches of a rule in which a given premise is matched against the
+	 * delta. A join only reads the network.
+	 */
+	private static class Join {
+		final Network network;
+		final Rule rule;
+		final int delta;
+		// premise order: the delta premise first
+		final int[] order;
+		final int[] binding;
+		final int[] trail;
+		int trailSize = 0;
+		final List<int[]> matches = new ArrayList<int[]>();
+
+		Join(Network network, Rule rule, int delta) {
+			this.network = network;
+			this.rule = rule;
+			this.delta = delta;
+			int n = rule.premises.length;
+			order = new int[n];
+			order[0] = delta;
+			for (int i = 0, k = 1; i < n; i++) {
+				if (i != delta) {
+					order[k++] = i;
+				}
+			}
+			// one extra entry for the fact matched against the delta
+			binding = new int[rule.variables.length + 1];
+			trail = new int[rule.variables.length];
+		}
+
+		List<int[]> run() {
+			Arrays.fill(binding, NONE);
+			join(0);
+			return matches;
+		}
+
+		private void join(int depth) {
+			if (depth == order.length) {
+				matches.add(binding.clone());
+				return;
+			}
+			int i = order[depth];
+			Pattern p = rule.premises[i];
+			Memory m = p.memory;
+			int from = 0, to;
+			if (i == delta) {
+				from = m.oldEnd;
+				to = m.deltaEnd;
+			} else if (i < delta) {
+				to = m.oldEnd;
+			} else {
+				to = m.deltaEnd;
+			}
+			if (from >= to) {
+				return;
+			}
+			Postings candidates = selectivePostings(p);
+			int mark = trailSize;
+			if (null == candidates) {
+				for (int t = from; t < to; t++) {
+					tryTuple(p, m, t, depth, mark);
+				}
+			} else {
+				for (int c = candidates.lowerBound(from); c < candidates.size
+						&& candidates.data[c] < to; c++) {
+					tryTuple(p, m, candidates.data[c], depth, mark);
+				}
+			}
+		}
+
+		private void tryTuple(Pattern p, Memory m, int t, int depth, int mark) {
+			if (match(p, m.tuples.get(t))) {
+				if (0 == depth) {
+					binding[rule.variables.length] = m.factIndexes.get(t);
+				}
+				join(depth + 1);
+			}
+			undo(mark);
+		}
+
+		/**
+		 * @return the shortest postings list of a constant or bound argument or
+		 *         null if there is none.
+		 */
+		private Postings selectivePostings(Pattern p) {
+			Postings best = null;
+			for (int k = 0; k < p.arity(); k++) {
+				int id = p.constant[k];
+				if (id == NONE && p.slot[k] != NONE) {
+					id = binding[p.slot[k]];
+				}
+				if (id != NONE) {
+					Postings postings = p.memory.index.get(k).get(id);
+					if (null == postings) {
+						return EMPTY;
+					}
+					if (null == best || postings.size < best.size) {
+						best = postings;
+					}
+				}
+			}
+			return best;
+		}
+
+		private boolean match(Pattern p, int[] tuple) {
+			for (int k = 0; k < tuple.length; k++) {
+				if (p.constant[k] != NONE) {
+					if (p.constant[k] != tuple[k]) {
+						return false;
+					}
+				} else if (p.slot[k] != NONE) {
+					if (!bind(p.slot[k], tuple[k])) {
+						return false;
+					}
+				} else if (!matchTerm(p.complex[k], tuple[k])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private boolean matchTerm(Term pattern, int id) {
+			if (pattern instanceof Variable) {
+				return bind(rule.slots.get(pattern), id);
+			}
+			Term ground = network.terms.get(id);
+			if (pattern instanceof Function) {
+				if (!(ground instanceof Function)) {
+					return false;
+				}
+				Function f = (Function) pattern, g = (Function) ground;
+				if (!f.getFunctionName().equals(g.getFunctionName())
+						|| f.getTerms().size() != g.getTerms().size()) {
+					return false;
+				}
+				for (int k = 0; k < f.getTerms().size(); k++) {
+					if (!matchTerm(f.getTerms().get(k),
+							network.termIds.get(g.getTerms().get(k)))) {
+						return false;
+					}
+				}
+				return true;
+			}
+			return pattern.equals(ground);
+		}
+
+		private boolean bind(int slot, int id) {
+			if (binding[slot] == NONE) {
+				binding[slot] = id;
+				trail[trailSize++] = slot;
+				return true;
+			}
+			return binding[slot] == id;
+		}
+
+		private void undo(int mark) {
+			while (trailSize > mark) {
+				binding[trail[--trailSize]] = NONE;
+			}
+		}
+	}
+
+	class SemiNaiveAnswerHandler implements InferenceResult {
+
+		private List<Proof> proofs = new ArrayList<Proof>();
+
+		//
+		// START-InferenceResult
+		public boolean isPossiblyFalse() {
+			return proofs.size() == 0;
+		}
+
+		public boolean isTrue() {
+			return proofs.size() > 0;
+		}
+
+		public boolean isUnknownDueToTimeout() {
+			return false;
+		}
+
+		public boolean isPartialResultDueToTimeout() {
+			return false;
+		}
+
+		public List<Proof> getProofs() {
+			return proofs;
+		}
+
+		// END-InferenceResult
+		//
+
+		public void addProof(Proof proof) {
+			proofs.add(proof);
+		}
+	}
+}
@@ -6,6 +6,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import aima.core.logic.fol.Connectors;
 import aima.core.logic.fol.inference.proof.Proof;
@@ -14,6 +15,7 @@ import aima.core.logic.fol.inference.proof.ProofStepGoal;
 import aima.core.logic.fol.inference.trace.FOLTFMResolutionTracer;
 import aima.core.logic.fol.kb.FOLKnowledgeBase;
 import aima.core.logic.fol.kb.data.Clause;
+import aima.core.logic.fol.kb.data.DiscriminationTree;
 import aima.core.logic.fol.kb.data.Literal;
 import aima.core.logic.fol.parsing.ast.ConnectedSentence;
 import aima.core.logic.fol.parsing.ast.NotSentence;
@@ -30,6 +32,11 @@ import aima.core.logic.fol.parsing.ast.Variable;
  * However, this implementation will use the T)wo F)inger M)ethod for looking
  * for resolvents between clauses, which is very inefficient.<br>
  * <br>
+ * To reduce the number of pairs, the literals of all clauses are indexed in a
+ * {@link DiscriminationTree} at the start of each iteration and each clause is
+ * only paired with the clauses that contain a literal which may unify with
+ * the complement of one of its literals. The other pairs have no resolvents.<br>
+ * <br>
  * see:<br>
  * <a
  * href="http://logic.stanford.edu/classes/cs157/2008/lectures/lecture04.pdf">
@@ -132,13 +139,19 @@ public class FOLTFMResolution implements InferenceProcedure {
 			// for each Ci, Cj in clauses do
 			Clause[] clausesA = new Clause[clauses.size()];
 			clauses.toArray(clausesA);
+			DiscriminationTree<Integer> literalIndex = new DiscriminationTree<Integer>();
+			for (int k = 0; k < clausesA.length; k++) {
+				for (Literal l : clausesA[k].getLiterals()) {
+					literalIndex.put(l, k);
+				}
+			}
 			// Basically, using the simple T)wo F)inger M)ethod here.
 			for (int i = 0; i < clausesA.length; i++) {
 				Clause cI = clausesA[i];
 				if (null != tracer) {
 					tracer.stepOuterFor(cI);
 				}
-				for (int j = i; j < clausesA.length; j++) {
+				for (int j : resolutionPartners(literalIndex, clausesA, i)) {
 					Clause cJ = clausesA[j];
 
 					if (null != tracer) {
@@ -205,6 +218,29 @@ public class FOLTFMResolution implements InferenceProcedure {
 	//
 	// PRIVATE METHODS
 	//
+
+	// The indexes j >= i of the clauses that Ci may have resolvents with.
+	private Set<Integer> resolutionPartners(
+			DiscriminationTree<Integer> literalIndex, Clause[] clausesA, int i) {
+		Set<Integer> partners = new TreeSet<Integer>();
+		Clause cI = clausesA[i];
+		if (cI.isEmpty()) {
+			// resolves with an empty clause
+			for (int j = i; j < clausesA.length; j++) {
+				partners.add(j);
+			}
+			return partners;
+		}
+		for (Literal l : cI.getLiterals()) {
+			for (int j : literalIndex.getUnifiable(new Literal(l
+					.getAtomicSentence(), l.isPositiveLiteral()))) {
+				if (j >= i) {
+					partners.add(j);
+				}
+			}
+		}
+		return partners;
+	}
 	class TFMAnswerHandler implements InferenceResult {
 		private Literal answerLiteral = null;
 		private Set<Variable> answerLiteralVariables = null;
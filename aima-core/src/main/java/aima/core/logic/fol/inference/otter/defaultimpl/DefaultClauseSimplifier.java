@@ -1,11 +1,16 @@
 package aima.core.logic.fol.inference.otter.defaultimpl;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import aima.core.logic.fol.inference.Demodulation;
 import aima.core.logic.fol.inference.otter.ClauseSimplifier;
 import aima.core.logic.fol.kb.data.Clause;
+import aima.core.logic.fol.kb.data.Literal;
+import aima.core.logic.fol.kb.data.PerfectDiscriminationTree;
+import aima.core.logic.fol.parsing.ast.Term;
 import aima.core.logic.fol.parsing.ast.TermEquality;
 
 /**
@@ -16,6 +21,9 @@ public class DefaultClauseSimplifier implements ClauseSimplifier {
 
 	private Demodulation demodulation = new Demodulation();
 	private List<TermEquality> rewrites = new ArrayList<TermEquality>();
+	// The positions of the rewrites indexed by their left hand sides, so
+	// that only the rewrites matching a subterm of a clause are tried.
+	private PerfectDiscriminationTree<Integer> rewritesIndex = new PerfectDiscriminationTree<Integer>();
 
 	public DefaultClauseSimplifier() {
 
@@ -23,6 +31,9 @@ public class DefaultClauseSimplifier implements ClauseSimplifier {
 
 	public DefaultClauseSimplifier(List<TermEquality> rewrites) {
 		this.rewrites.addAll(rewrites);
+		for (int i = 0; i < this.rewrites.size(); i++) {
+			rewritesIndex.put(this.rewrites.get(i).getTerm1(), i);
+		}
 	}
 
 	//
@@ -32,12 +43,21 @@ public class DefaultClauseSimplifier implements ClauseSimplifier {
 
 		// Apply each of the rewrite rules to
 		// the clause
-		for (TermEquality te : rewrites) {
+		Set<Integer> applicable = null;
+		for (int i = 0; i < rewrites.size(); i++) {
+			if (null == applicable) {
+				applicable = getApplicableRewrites(simplified);
+			}
+			if (!applicable.contains(i)) {
+				continue;
+			}
+			TermEquality te = rewrites.get(i);
 			Clause dc = simplified;
 			// Keep applying the rewrite as many times as it
 			// can be applied before moving on to the next one.
 			while (null != (dc = demodulation.apply(te, dc))) {
 				simplified = dc;
+				applicable = null;
 			}
 		}
 
@@ -46,4 +66,26 @@ public class DefaultClauseSimplifier implements ClauseSimplifier {
 
 	// END-ClauseSimplifier
 	//
+
+	//
+	// PRIVATE METHODS
+	//
+	private Set<Integer> getApplicableRewrites(Clause c) {
+		Set<Integer> applicable = new HashSet<Integer>();
+		for (Literal l : c.getLiterals()) {
+			for (Term t : l.getAtomicSentence().getArgs()) {
+				collectApplicableRewrites(t, applicable);
+			}
+		}
+		return applicable;
+	}
+
+	private void collectApplicableRewrites(Term t, Set<Integer> applicable) {
+		applicable.addAll(rewritesIndex.getGeneralizations(t));
+		if (t.isCompound()) {
+			for (Term arg : t.getArgs()) {
+				collectApplicableRewrites(arg, applicable);
+			}
+		}
+	}
 }
@@ -8,6 +8,8 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import aima.core.logic.fol.CNFConverter;
 import aima.core.logic.fol.StandardizeApart;
@@ -26,6 +28,7 @@ import aima.core.logic.fol.inference.proof.ProofStepClauseClausifySentence;
 import aima.core.logic.fol.kb.data.CNF;
 import aima.core.logic.fol.kb.data.Chain;
 import aima.core.logic.fol.kb.data.Clause;
+import aima.core.logic.fol.kb.data.DiscriminationTree;
 import aima.core.logic.fol.kb.data.Literal;
 import aima.core.logic.fol.parsing.FOLParser;
 import aima.core.logic.fol.parsing.ast.FOLNode;
@@ -35,7 +38,12 @@ import aima.core.logic.fol.parsing.ast.Term;
 import aima.core.logic.fol.parsing.ast.Variable;
 
 /**
- * A First Order Logic (FOL) Knowledge Base.
+ * A First Order Logic (FOL) Knowledge Base.<br>
+ * <br>
+ * Facts and definite clauses are indexed in discrimination trees, so that
+ * retrieval only unifies a literal with those facts that may unify with it.
+ * Retrieval holds a read lock and adding sentences a write lock, so that
+ * several queries can fetch from the knowledge base concurrently.
  * 
  * @author Ciaran O'Reilly
  * 
@@ -62,8 +70,13 @@ public class FOLKnowledgeBase {
 	// along with those that represent implications.
 	private List<Clause> allDefiniteClauses = new ArrayList<Clause>();
 	private List<Clause> implicationDefiniteClauses = new ArrayList<Clause>();
-	// All the facts in the KB indexed by Atomic Sentence name (Note: pg. 279)
-	private Map<String, List<Literal>> indexFacts = new HashMap<String, List<Literal>>();
+	// All the facts in the KB indexed by their terms (Note: pg. 279)
+	private DiscriminationTree<Literal> factTree = new DiscriminationTree<Literal>();
+	// The definite clauses indexed by their positive literal
+	private DiscriminationTree<Clause> definiteClauseTree = new DiscriminationTree<Clause>();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	// Incremented by every change, see getModificationCount()
+	private volatile long modificationCount = 0L;
 	// Keep track of indexical keys for uniquely standardizing apart sentences
 	private StandardizeApartIndexical variableIndexical = StandardizeApartIndexicalFactory
 			.newStandardizeApartIndexical('v');
@@ -98,11 +111,31 @@ public class FOLKnowledgeBase {
 	}
 
 	public void clear() {
-		this.originalSentences.clear();
-		this.clauses.clear();
-		this.allDefiniteClauses.clear();
-		this.implicationDefiniteClauses.clear();
-		this.indexFacts.clear();
+		lock.writeLock().lock();
+		try {
+			this.originalSentences.clear();
+			this.clauses.clear();
+			this.allDefiniteClauses.clear();
+			this.implicationDefiniteClauses.clear();
+			this.factTree.clear();
+			this.definiteClauseTree.clear();
+			modificationCount++;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Sets whether sentences are converted into clauses by introducing
+	 * definitions for nested conjunctions, which keeps the clauses linear in
+	 * the size of the sentences, or by distributing disjunctions over
+	 * conjunctions (the default).
+	 * 
+	 * @param definitional
+	 *            true for the definitional conversion.
+	 */
+	public void setDefinitionalCNF(boolean definitional) {
+		this.cnfConverter = new CNFConverter(parser, definitional);
 	}
 
 	public InferenceProcedure getInferenceProcedure() {
@@ -165,6 +198,17 @@ public class FOLKnowledgeBase {
 		return infResult;
 	}
 
+	/**
+	 * Returns a number that changes whenever sentences are told to or the
+	 * knowledge base is cleared, so that inference procedures can tell
+	 * whether results cached for it are still valid.
+	 * 
+	 * @return the number of modifications of the knowledge base.
+	 */
+	public long getModificationCount() {
+		return modificationCount;
+	}
+
 	public int getNumberFacts() {
 		return allDefiniteClauses.size() - implicationDefiniteClauses.size();
 	}
@@ -190,22 +234,13 @@ public class FOLKnowledgeBase {
 	}
 
 	// Note: pg 278, FETCH(q) concept.
-	public synchronized Set<Map<Variable, Term>> fetch(Literal l) {
-		// Get all of the substitutions in the KB that p unifies with
-		Set<Map<Variable, Term>> allUnifiers = new LinkedHashSet<Map<Variable, Term>>();
-
-		List<Literal> matchingFacts = fetchMatchingFacts(l);
-		if (null != matchingFacts) {
-			for (Literal fact : matchingFacts) {
-				Map<Variable, Term> substitution = unifier.unify(
-						l.getAtomicSentence(), fact.getAtomicSentence());
-				if (null != substitution) {
-					allUnifiers.add(substitution);
-				}
-			}
+	public Set<Map<Variable, Term>> fetch(Literal l) {
+		lock.readLock().lock();
+		try {
+			return fetchUnlocked(l);
+		} finally {
+			lock.readLock().unlock();
 		}
-
-		return allUnifiers;
 	}
 
 	// Note: To support FOL-FC-Ask
@@ -216,13 +251,85 @@ public class FOLKnowledgeBase {
 			Literal first = literals.get(0);
 			List<Literal> rest = literals.subList(1, literals.size());
 
-			recursiveFetch(new LinkedHashMap<Variable, Term>(), first, rest,
-					possibleSubstitutions);
+			lock.readLock().lock();
+			try {
+				recursiveFetch(new LinkedHashMap<Variable, Term>(), first,
+						rest, possibleSubstitutions);
+			} finally {
+				lock.readLock().unlock();
+			}
 		}
 
 		return possibleSubstitutions;
 	}
 
+	/**
+	 * Returns the facts that may unify with a literal. The result is a
+	 * superset of the unifiable facts, in the order in which they were added.
+	 * 
+	 * @param l
+	 *            a literal.
+	 * @return the candidate facts.
+	 */
+	public List<Literal> fetchUnifiableFacts(Literal l) {
+		lock.readLock().lock();
+		try {
+			return factTree.getUnifiable(l);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the facts that may be more general than a literal, i.e. of which
+	 * the literal may be an instance.
+	 * 
+	 * @param l
+	 *            a literal.
+	 * @return the candidate facts.
+	 */
+	public List<Literal> fetchFactGeneralizations(Literal l) {
+		lock.readLock().lock();
+		try {
+			return factTree.getGeneralizations(l);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the facts that may be instances of a literal.
+	 * 
+	 * @param l
+	 *            a literal.
+	 * @return the candidate facts.
+	 */
+	public List<Literal> fetchFactInstances(Literal l) {
+		lock.readLock().lock();
+		try {
+			return factTree.getInstances(l);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the definite clauses whose positive literal may unify with a
+	 * goal, in the order in which they were added.
+	 * 
+	 * @param goal
+	 *            a positive literal.
+	 * @return the candidate clauses, facts as well as implications.
+	 */
+	public List<Clause> fetchDefiniteClauses(Literal goal) {
+		lock.readLock().lock();
+		try {
+			return definiteClauseTree.getUnifiable(goal);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
 	public Map<Variable, Term> unify(FOLNode x, FOLNode y) {
 		return unifier.unify(x, y);
 	}
@@ -282,12 +389,8 @@ public class FOLKnowledgeBase {
 
 	// Note: see pg. 281
 	public boolean isRenaming(Literal l) {
-		List<Literal> possibleMatches = fetchMatchingFacts(l);
-		if (null != possibleMatches) {
-			return isRenaming(l, possibleMatches);
-		}
-
-		return false;
+		// A renaming is always a generalization of l
+		return isRenaming(l, fetchFactGeneralizations(l));
 	}
 
 	// Note: see pg. 281
@@ -340,7 +443,17 @@ public class FOLKnowledgeBase {
 	//
 
 	// Note: pg 278, STORE(s) concept.
-	private synchronized void store(Sentence sentence) {
+	private void store(Sentence sentence) {
+		lock.writeLock().lock();
+		try {
+			storeLocked(sentence);
+			modificationCount++;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void storeLocked(Sentence sentence) {
 		originalSentences.add(sentence);
 
 		// Convert the sentence to CNF
@@ -367,6 +480,7 @@ public class FOLKnowledgeBase {
 				// clauses, as useful for query purposes
 				if (c.isDefiniteClause()) {
 					allDefiniteClauses.add(c);
+					definiteClauseTree.put(c.getPositiveLiterals().get(0), c);
 				}
 				if (c.isImplicationDefiniteClause()) {
 					implicationDefiniteClauses.add(c);
@@ -381,12 +495,22 @@ public class FOLKnowledgeBase {
 	// Only if it is a unit clause does it get indexed as a fact
 	// see pg. 279 for general idea.
 	private void indexFact(Literal fact) {
-		String factKey = getFactKey(fact);
-		if (!indexFacts.containsKey(factKey)) {
-			indexFacts.put(factKey, new ArrayList<Literal>());
+		factTree.put(fact, fact);
+	}
+
+	private Set<Map<Variable, Term>> fetchUnlocked(Literal l) {
+		// Get all of the substitutions in the KB that p unifies with
+		Set<Map<Variable, Term>> allUnifiers = new LinkedHashSet<Map<Variable, Term>>();
+
+		for (Literal fact : factTree.getUnifiable(l)) {
+			Map<Variable, Term> substitution = unifier.unify(
+					l.getAtomicSentence(), fact.getAtomicSentence());
+			if (null != substitution) {
+				allUnifiers.add(substitution);
+			}
 		}
 
-		indexFacts.get(factKey).add(fact);
+		return allUnifiers;
 	}
 
 	private void recursiveFetch(Map<Variable, Term> theta, Literal l,
@@ -396,7 +520,7 @@ public class FOLKnowledgeBase {
 		// Find all substitutions for current predicate based on the
 		// substitutions of prior predicates in the list (i.e. SUBST with
 		// theta).
-		Set<Map<Variable, Term>> pSubsts = fetch(subst(theta, l));
+		Set<Map<Variable, Term>> pSubsts = fetchUnlocked(subst(theta, l));
 
 		// No substitutions, therefore cannot continue
 		if (null == pSubsts) {
@@ -423,12 +547,29 @@ public class FOLKnowledgeBase {
 		}
 	}
 
-	private List<Literal> fetchMatchingFacts(Literal l) {
-		return indexFacts.get(getFactKey(l));
-	}
-
+	/**
+	 * Returns the facts of the KB grouped by the sign and name of their
+	 * atomic sentence. The map is created on each call from the unit clauses,
+	 * lookups use the term index of the KB.
+	 */
 	public Map<String, List<Literal>> getIndexFacts() {
-		return indexFacts;
+		lock.readLock().lock();
+		try {
+			Map<String, List<Literal>> result = new HashMap<String, List<Literal>>();
+			for (Clause c : clauses) {
+				if (c.isUnitClause()) {
+					Literal fact = c.getLiterals().iterator().next();
+					String factKey = getFactKey(fact);
+					if (!result.containsKey(factKey)) {
+						result.put(factKey, new ArrayList<Literal>());
+					}
+					result.get(factKey).add(fact);
+				}
+			}
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
 	private String getFactKey(Literal l) {
@@ -25,6 +25,7 @@ import aima.core.logic.fol.parsing.FOLVisitor;
 import aima.core.logic.fol.parsing.ast.AtomicSentence;
 import aima.core.logic.fol.parsing.ast.ConnectedSentence;
 import aima.core.logic.fol.parsing.ast.Constant;
+import aima.core.logic.fol.parsing.ast.FOLNode;
 import aima.core.logic.fol.parsing.ast.Function;
 import aima.core.logic.fol.parsing.ast.NotSentence;
 import aima.core.logic.fol.parsing.ast.Predicate;
@@ -57,7 +58,10 @@ public class Clause {
 	private final List<Literal> negativeLiterals = new ArrayList<Literal>();
 	private boolean immutable = false;
 	private boolean saCheckRequired = true;
-	private String equalityIdentity = "";
+	// computed lazily, as it is only needed if the structural hashes of two
+	// clauses are equal
+	private String equalityIdentity = null;
+	private int structuralHash = 0;
 	private Set<Clause> factors = null;
 	private Set<Clause> nonTrivialFactors = null;
 	private String stringRep = null;
@@ -170,16 +174,14 @@ public class Clause {
 			throw new IllegalStateException(
 					"Clause is immutable, cannot be updated.");
 		}
-		int origSize = literals.size();
-		literals.add(literal);
-		if (literals.size() > origSize) {
+		if (literals.add(literal)) {
 			if (literal.isPositiveLiteral()) {
 				positiveLiterals.add(literal);
 			} else {
 				negativeLiterals.add(literal);
 			}
+			recalculateIdentity();
 		}
-		recalculateIdentity();
 	}
 
 	public void addPositiveLiteral(AtomicSentence atom) {
@@ -376,7 +378,7 @@ public class Clause {
 
 	@Override
 	public int hashCode() {
-		return equalityIdentity.hashCode();
+		return structuralHash;
 	}
 
 	@Override
@@ -392,11 +394,38 @@ public class Clause {
 		}
 		Clause othClause = (Clause) othObj;
 
-		return equalityIdentity.equals(othClause.equalityIdentity);
+		return structuralHash == othClause.structuralHash
+				&& getEqualityIdentity().equals(
+						othClause.getEqualityIdentity());
 	}
 
+	/**
+	 * Returns a string that is equal for two clauses if and only if they are
+	 * equal except for the naming of their variables. It is computed on the
+	 * first request.
+	 * 
+	 * @return the identity of the clause.
+	 */
 	public String getEqualityIdentity() {
-		return equalityIdentity;
+		synchronized (this) {
+			if (null == equalityIdentity) {
+				// Sort the literals first based on negation, atomic
+				// sentence, constant, function and variable.
+				List<Literal> sortedLiterals = new ArrayList<Literal>(literals);
+				Collections.sort(sortedLiterals, _literalSorter);
+
+				// All variables are considered the same as regards
+				// sorting. Therefore, to determine if two clauses
+				// are equivalent you need to determine
+				// the # of unique variables they contain and
+				// there positions across the clauses
+				ClauseEqualityIdentityConstructor ceic = new ClauseEqualityIdentityConstructor(
+						sortedLiterals, _literalSorter);
+
+				equalityIdentity = ceic.getIdentity();
+			}
+			return equalityIdentity;
+		}
 	}
 
 	//
@@ -405,20 +434,18 @@ public class Clause {
 	private void recalculateIdentity() {
 		synchronized (this) {
 
-			// Sort the literals first based on negation, atomic sentence,
-			// constant, function and variable.
-			List<Literal> sortedLiterals = new ArrayList<Literal>(literals);
-			Collections.sort(sortedLiterals, _literalSorter);
-
-			// All variables are considered the same as regards
-			// sorting. Therefore, to determine if two clauses
-			// are equivalent you need to determine
-			// the # of unique variables they contain and
-			// there positions across the clauses
-			ClauseEqualityIdentityConstructor ceic = new ClauseEqualityIdentityConstructor(
-					sortedLiterals, _literalSorter);
-
-			equalityIdentity = ceic.getIdentity();
+			// The structural hash treats all variables alike and does not
+			// depend on the order of the literals, so clauses with the same
+			// identity have the same hash.
+			int hash = 0;
+			for (Literal l : literals) {
+				int h = (l.isNegativeLiteral() ? 31 : 17) * 31
+						+ structuralHash(l.getAtomicSentence());
+				h *= 0x9E3779B9;
+				hash += h ^ (h >>> 16);
+			}
+			structuralHash = hash;
+			equalityIdentity = null;
 
 			// Reset, these as will need to re-calcualte
 			// if requested for again, best to only
@@ -431,6 +458,20 @@ public class Clause {
 		}
 	}
 
+	private static int structuralHash(FOLNode node) {
+		if (node instanceof Variable) {
+			return 1;
+		}
+		int hash = node.getSymbolicName().hashCode();
+		if (node.isCompound()) {
+			for (FOLNode arg : node.getArgs()) {
+				hash = 31 * hash + structuralHash(arg);
+			}
+			hash = 31 * hash + node.getArgs().size();
+		}
+		return hash;
+	}
+
 	private void calculateFactors(Set<Clause> parentFactors) {
 		nonTrivialFactors = new LinkedHashSet<Clause>();
 
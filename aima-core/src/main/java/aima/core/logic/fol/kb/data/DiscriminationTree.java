@@ -0,0 +1,290 @@
+package aima.core.logic.fol.kb.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import aima.core.logic.fol.parsing.ast.FOLNode;
+import aima.core.logic.fol.parsing.ast.Variable;
+
+/**
+ * A discrimination tree for indexing literals (see the discussion of indexing
+ * in AIMA3e pg. 279).<br>
+ * <br>
+ * A literal is stored under the sequence of symbols met in a preorder
+ * traversal of it: its sign and predicate, followed by the function symbols
+ * and constants of its arguments, where every variable is replaced by the
+ * same wildcard. Retrieval walks the tree along the symbols of a query
+ * literal and only follows those branches that can still lead to a
+ * unifiable, more general or more specific literal. A query variable, or a
+ * wildcard in the tree, skips a whole subterm on the other side.<br>
+ * <br>
+ * As all variables are treated alike, the tree cannot tell that P(x, x) does
+ * not unify with P(A, B). Retrieval therefore returns candidates: every
+ * literal that is unifiable with (respectively a generalization or instance
+ * of) the query is returned, but callers still have to unify the candidates
+ * with the query. The values are returned in the order in which they were
+ * added.<br>
+ * <br>
+ * The tree is not synchronized.
+ *
+ * @param <V>
+ *            the type of the values stored with the literals.
+ */
+public class DiscriminationTree<V> {
+
+	private static final String WILDCARD = "*";
+
+	private enum Mode {
+		UNIFIABLE, GENERALIZATIONS, INSTANCES
+	}
+
+	private final Node<V> root = new Node<V>(0);
+	private long sequence = 0;
+	private int size = 0;
+
+	/**
+	 * Adds a value under a literal.
+	 *
+	 * @param key
+	 *            the literal.
+	 * @param value
+	 *            the value.
+	 */
+	public void put(Literal key, V value) {
+		Node<V> node = root;
+		for (Symbol s : flatten(key)) {
+			Node<V> child = node.children.get(s.name);
+			if (null == child) {
+				child = new Node<V>(s.arity);
+				node.children.put(s.name, child);
+			}
+			node = child;
+		}
+		node.entries.add(new Entry<V>(sequence++, value));
+		size++;
+	}
+
+	/**
+	 * Removes a value stored under a literal.
+	 *
+	 * @param key
+	 *            the literal the value was added with.
+	 * @param value
+	 *            the value.
+	 * @return true if the value was found.
+	 */
+	public boolean remove(Literal key, V value) {
+		List<Symbol> symbols = flatten(key);
+		List<Node<V>> path = new ArrayList<Node<V>>();
+		Node<V> node = root;
+		for (Symbol s : symbols) {
+			path.add(node);
+			node = node.children.get(s.name);
+			if (null == node) {
+				return false;
+			}
+		}
+		boolean removed = false;
+		for (Iterator<Entry<V>> it = node.entries.iterator(); it.hasNext();) {
+			if (it.next().value.equals(value)) {
+				it.remove();
+				removed = true;
+				size--;
+				break;
+			}
+		}
+		// prune the branches that no longer lead to any values
+		for (int i = symbols.size() - 1; i >= 0 && node.isEmpty(); i--) {
+			path.get(i).children.remove(symbols.get(i).name);
+			node = path.get(i);
+		}
+		return removed;
+	}
+
+	public void clear() {
+		root.children.clear();
+		size = 0;
+	}
+
+	/**
+	 * @return the number of values in the tree.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param query
+	 *            a literal.
+	 * @return the values of all literals that may unify with the query.
+	 */
+	public List<V> getUnifiable(Literal query) {
+		return retrieve(query, Mode.UNIFIABLE);
+	}
+
+	/**
+	 * @param query
+	 *            a literal.
+	 * @return the values of all literals that may be more general than the
+	 *         query, i.e. that the query may be an instance of.
+	 */
+	public List<V> getGeneralizations(Literal query) {
+		return retrieve(query, Mode.GENERALIZATIONS);
+	}
+
+	/**
+	 * @param query
+	 *            a literal.
+	 * @return the values of all literals that may be instances of the query.
+	 */
+	public List<V> getInstances(Literal query) {
+		return retrieve(query, Mode.INSTANCES);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private List<V> retrieve(Literal query, Mode mode) {
+		List<Symbol> symbols = flatten(query);
+		int n = symbols.size();
+		// the end of the subterm starting at each position
+		int[] end = new int[n];
+		for (int i = n - 1; i >= 0; i--) {
+			int e = i + 1;
+			for (int k = 0; k < symbols.get(i).arity; k++) {
+				e = end[e];
+			}
+			end[i] = e;
+		}
+		List<Entry<V>> found = new ArrayList<Entry<V>>();
+		Node<V> start = root.children.get(symbols.get(0).name);
+		if (null != start) {
+			retrieve(start, 1, symbols, end, mode, found);
+		}
+		Collections.sort(found, new Comparator<Entry<V>>() {
+			public int compare(Entry<V> e1, Entry<V> e2) {
+				return Long.compare(e1.sequence, e2.sequence);
+			}
+		});
+		List<V> result = new ArrayList<V>(found.size());
+		for (Entry<V> e : found) {
+			result.add(e.value);
+		}
+		return result;
+	}
+
+	private void retrieve(Node<V> node, int pos, List<Symbol> symbols,
+			int[] end, Mode mode, List<Entry<V>> found) {
+		if (pos == symbols.size()) {
+			found.addAll(node.entries);
+			return;
+		}
+		String s = symbols.get(pos).name;
+		if (WILDCARD.equals(s)) {
+			if (Mode.GENERALIZATIONS == mode) {
+				// only a variable is at least as general as a variable
+				Node<V> child = node.children.get(WILDCARD);
+				if (null != child) {
+					retrieve(child, pos + 1, symbols, end, mode, found);
+				}
+			} else {
+				// any stored subterm
+				List<Node<V>> skipped = new ArrayList<Node<V>>();
+				skip(node, 1, skipped);
+				for (Node<V> next : skipped) {
+					retrieve(next, pos + 1, symbols, end, mode, found);
+				}
+			}
+		} else {
+			Node<V> child = node.children.get(s);
+			if (null != child) {
+				retrieve(child, pos + 1, symbols, end, mode, found);
+			}
+			if (Mode.INSTANCES != mode) {
+				// a stored variable matches the whole query subterm
+				Node<V> wildcard = node.children.get(WILDCARD);
+				if (null != wildcard) {
+					retrieve(wildcard, end[pos], symbols, end, mode, found);
+				}
+			}
+		}
+	}
+
+	// collects the nodes reached by skipping the given number of subterms
+	private void skip(Node<V> node, int terms, List<Node<V>> result) {
+		if (0 == terms) {
+			result.add(node);
+			return;
+		}
+		for (Node<V> child : node.children.values()) {
+			skip(child, terms - 1 + child.arity, result);
+		}
+	}
+
+	private static List<Symbol> flatten(Literal l) {
+		List<Symbol> symbols = new ArrayList<Symbol>();
+		List<? extends FOLNode> args = l.getAtomicSentence().getArgs();
+		symbols.add(new Symbol((l.isNegativeLiteral() ? "-" : "+")
+				+ l.getAtomicSentence().getSymbolicName() + "/" + args.size(),
+				args.size()));
+		for (FOLNode arg : args) {
+			flatten(arg, symbols);
+		}
+		return symbols;
+	}
+
+	private static void flatten(FOLNode term, List<Symbol> symbols) {
+		if (term instanceof Variable) {
+			symbols.add(new Symbol(WILDCARD, 0));
+		} else if (term.isCompound()) {
+			List<? extends FOLNode> args = term.getArgs();
+			symbols.add(new Symbol("f" + term.getSymbolicName() + "/"
+					+ args.size(), args.size()));
+			for (FOLNode arg : args) {
+				flatten(arg, symbols);
+			}
+		} else {
+			symbols.add(new Symbol("c" + term.getSymbolicName(), 0));
+		}
+	}
+
+	private static class Symbol {
+		final String name;
+		final int arity;
+
+		Symbol(String name, int arity) {
+			this.name = name;
+			this.arity = arity;
+		}
+	}
+
+	private static class Node<V> {
+		// the arity of the symbol leading to this node
+		final int arity;
+		final Map<String, Node<V>> children = new HashMap<String, Node<V>>();
+		final List<Entry<V>> entries = new ArrayList<Entry<V>>();
+
+		Node(int arity) {
+			this.arity = arity;
+		}
+
+		boolean isEmpty() {
+			return children.isEmpty() && entries.isEmpty();
+		}
+	}
+
+	private static class Entry<V> {
+		final long sequence;
+		final V value;
+
+		Entry(long sequence, V value) {
+			this.sequence = sequence;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,233 @@
+package aima.core.logic.fol.kb.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import aima.core.logic.fol.parsing.ast.FOLNode;
+import aima.core.logic.fol.parsing.ast.Variable;
+
+/**
+ * A feature vector index for subsumption testing (S. Schulz, Simple and
+ * Efficient Clause Subsumption with Feature Vector Indexing, 2004).<br>
+ * <br>
+ * Every clause is mapped to a vector of features that can only grow when the
+ * clause is instantiated or literals are added to it: the numbers of positive
+ * and negative literals and, for the literals of each sign whose predicate
+ * falls into one of a few buckets, their number, their total number of
+ * function symbols and constants and their maximal term depth. If a clause
+ * subsumes another one (see {@link Clause#subsumes(Clause)}), each of its
+ * features is less than or equal to the same feature of the other clause.
+ * The vectors are stored in a trie with one level per feature, so that the
+ * clauses violating this condition are pruned a whole subtree at a time.<br>
+ * <br>
+ * Retrieval returns candidates, on which {@link Clause#subsumes(Clause)}
+ * still has to be called. The values are returned in the order in which they
+ * were added.<br>
+ * <br>
+ * The index is not synchronized.
+ *
+ * @param <V>
+ *            the type of the values stored with the clauses.
+ */
+public class FeatureVectorIndex<V> {
+
+	private static final int BUCKETS = 4;
+	// #positive, #negative and per sign and bucket: #literals, #symbols, depth
+	private static final int FEATURES = 2 + 2 * BUCKETS * 3;
+
+	private final Node<V> root = new Node<V>();
+	private long sequence = 0;
+	private int size = 0;
+
+	/**
+	 * Adds a value under a clause.
+	 *
+	 * @param key
+	 *            the clause.
+	 * @param value
+	 *            the value.
+	 */
+	public void put(Clause key, V value) {
+		Node<V> node = root;
+		for (int f : features(key)) {
+			Node<V> child = node.children.get(f);
+			if (null == child) {
+				child = new Node<V>();
+				node.children.put(f, child);
+			}
+			node = child;
+		}
+		node.entries.add(new Entry<V>(sequence++, value));
+		size++;
+	}
+
+	/**
+	 * Removes a value stored under a clause.
+	 *
+	 * @param key
+	 *            the clause the value was added with.
+	 * @param value
+	 *            the value.
+	 * @return true if the value was found.
+	 */
+	public boolean remove(Clause key, V value) {
+		int[] features = features(key);
+		List<Node<V>> path = new ArrayList<Node<V>>();
+		Node<V> node = root;
+		for (int f : features) {
+			path.add(node);
+			node = node.children.get(f);
+			if (null == node) {
+				return false;
+			}
+		}
+		boolean removed = false;
+		for (Iterator<Entry<V>> it = node.entries.iterator(); it.hasNext();) {
+			if (it.next().value.equals(value)) {
+				it.remove();
+				removed = true;
+				size--;
+				break;
+			}
+		}
+		// prune the branches that no longer lead to any values
+		for (int i = features.length - 1; i >= 0 && node.isEmpty(); i--) {
+			path.get(i).children.remove(features[i]);
+			node = path.get(i);
+		}
+		return removed;
+	}
+
+	public void clear() {
+		root.children.clear();
+		size = 0;
+	}
+
+	/**
+	 * @return the number of values in the index.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param query
+	 *            a clause.
+	 * @return the values of all clauses that may subsume the query.
+	 */
+	public List<V> getPossibleSubsumers(Clause query) {
+		return retrieve(query, true);
+	}
+
+	/**
+	 * @param query
+	 *            a clause.
+	 * @return the values of all clauses that the query may subsume.
+	 */
+	public List<V> getPossiblySubsumed(Clause query) {
+		return retrieve(query, false);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private List<V> retrieve(Clause query, boolean subsumers) {
+		List<Entry<V>> found = new ArrayList<Entry<V>>();
+		retrieve(root, 0, features(query), subsumers, found);
+		Collections.sort(found, new Comparator<Entry<V>>() {
+			public int compare(Entry<V> e1, Entry<V> e2) {
+				return Long.compare(e1.sequence, e2.sequence);
+			}
+		});
+		List<V> result = new ArrayList<V>(found.size());
+		for (Entry<V> e : found) {
+			result.add(e.value);
+		}
+		return result;
+	}
+
+	private void retrieve(Node<V> node, int level, int[] features,
+			boolean subsumers, List<Entry<V>> found) {
+		if (level == features.length) {
+			found.addAll(node.entries);
+			return;
+		}
+		NavigableMap<Integer, Node<V>> candidates = subsumers ? node.children
+				.headMap(features[level], true) : node.children.tailMap(
+				features[level], true);
+		for (Node<V> child : candidates.values()) {
+			retrieve(child, level + 1, features, subsumers, found);
+		}
+	}
+
+	private static int[] features(Clause c) {
+		int[] features = new int[FEATURES];
+		features[0] = c.getNumberPositiveLiterals();
+		features[1] = c.getNumberNegativeLiterals();
+		for (Literal l : c.getLiterals()) {
+			String predicate = l.getAtomicSentence().getSymbolicName();
+			List<? extends FOLNode> args = l.getAtomicSentence().getArgs();
+			int bucket = ((predicate.hashCode() + args.size()) & 0x7fffffff)
+					% BUCKETS;
+			int f = 2 + ((l.isNegativeLiteral() ? BUCKETS : 0) + bucket) * 3;
+			features[f]++;
+			int depth = 0;
+			for (FOLNode arg : args) {
+				features[f + 1] += symbols(arg);
+				depth = Math.max(depth, depth(arg));
+			}
+			features[f + 2] = Math.max(features[f + 2], depth);
+		}
+		return features;
+	}
+
+	private static int symbols(FOLNode term) {
+		if (term instanceof Variable) {
+			return 0;
+		}
+		int n = 1;
+		if (term.isCompound()) {
+			for (FOLNode arg : term.getArgs()) {
+				n += symbols(arg);
+			}
+		}
+		return n;
+	}
+
+	private static int depth(FOLNode term) {
+		if (term instanceof Variable) {
+			return 0;
+		}
+		int d = 0;
+		if (term.isCompound()) {
+			for (FOLNode arg : term.getArgs()) {
+				d = Math.max(d, depth(arg));
+			}
+		}
+		return d + 1;
+	}
+
+	private static class Node<V> {
+		final TreeMap<Integer, Node<V>> children = new TreeMap<Integer, Node<V>>();
+		final List<Entry<V>> entries = new ArrayList<Entry<V>>();
+
+		boolean isEmpty() {
+			return children.isEmpty() && entries.isEmpty();
+		}
+	}
+
+	private static class Entry<V> {
+		final long sequence;
+		final V value;
+
+		Entry(long sequence, V value) {
+			this.sequence = sequence;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,260 @@
+package aima.core.logic.fol.kb.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import aima.core.logic.fol.parsing.ast.FOLNode;
+import aima.core.logic.fol.parsing.ast.Term;
+import aima.core.logic.fol.parsing.ast.Variable;
+
+/**
+ * A perfect discrimination tree for indexing terms, e.g. the left hand sides
+ * of rewrite rules for demodulation.<br>
+ * <br>
+ * Unlike in a {@link DiscriminationTree}, the variables of a stored term are
+ * not replaced by one wildcard but numbered in the order of their first
+ * occurrence, so F(x, x) and F(x, y) are stored under different paths.
+ * Retrieval of generalizations binds each numbered variable to the subterm of
+ * the query it first meets and compares later occurrences with that subterm.
+ * The variables of the query are treated as constants. The values returned
+ * are therefore exactly those of the stored terms that the query is an
+ * instance of (that match the query), no unification of candidates is
+ * necessary. The values are returned in the order in which they were added.<br>
+ * <br>
+ * The tree is not synchronized.
+ *
+ * @param <V>
+ *            the type of the values stored with the terms.
+ */
+public class PerfectDiscriminationTree<V> {
+
+	private final Node<V> root = new Node<V>();
+	private long sequence = 0;
+	private int size = 0;
+
+	/**
+	 * Adds a value under a term.
+	 *
+	 * @param key
+	 *            the term.
+	 * @param value
+	 *            the value.
+	 */
+	public void put(Term key, V value) {
+		Node<V> node = root;
+		for (Symbol s : flatten(key, true)) {
+			Map<Object, Node<V>> children = s.isVariable() ? node.variables
+					: node.children;
+			Node<V> child = children.get(s.key);
+			if (null == child) {
+				child = new Node<V>();
+				children.put(s.key, child);
+			}
+			node = child;
+		}
+		node.entries.add(new Entry<V>(sequence++, value));
+		size++;
+	}
+
+	/**
+	 * Removes a value stored under a term.
+	 *
+	 * @param key
+	 *            the term the value was added with.
+	 * @param value
+	 *            the value.
+	 * @return true if the value was found.
+	 */
+	public boolean remove(Term key, V value) {
+		List<Symbol> symbols = flatten(key, true);
+		List<Node<V>> path = new ArrayList<Node<V>>();
+		Node<V> node = root;
+		for (Symbol s : symbols) {
+			path.add(node);
+			node = (s.isVariable() ? node.variables : node.children)
+					.get(s.key);
+			if (null == node) {
+				return false;
+			}
+		}
+		boolean removed = false;
+		for (Iterator<Entry<V>> it = node.entries.iterator(); it.hasNext();) {
+			if (it.next().value.equals(value)) {
+				it.remove();
+				removed = true;
+				size--;
+				break;
+			}
+		}
+		// prune the branches that no longer lead to any values
+		for (int i = symbols.size() - 1; i >= 0 && node.isEmpty(); i--) {
+			Symbol s = symbols.get(i);
+			(s.isVariable() ? path.get(i).variables : path.get(i).children)
+					.remove(s.key);
+			node = path.get(i);
+		}
+		return removed;
+	}
+
+	public void clear() {
+		root.children.clear();
+		root.variables.clear();
+		size = 0;
+	}
+
+	/**
+	 * @return the number of values in the tree.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param query
+	 *            a term.
+	 * @return the values of all terms the query is an instance of.
+	 */
+	public List<V> getGeneralizations(Term query) {
+		List<Symbol> symbols = flatten(query, false);
+		int n = symbols.size();
+		// the end of the subterm starting at each position
+		int[] end = new int[n];
+		for (int i = n - 1; i >= 0; i--) {
+			int e = i + 1;
+			for (int k = 0; k < symbols.get(i).arity; k++) {
+				e = end[e];
+			}
+			end[i] = e;
+		}
+		List<Entry<V>> found = new ArrayList<Entry<V>>();
+		retrieve(root, 0, symbols, end, new ArrayList<Integer>(), found);
+		Collections.sort(found, new Comparator<Entry<V>>() {
+			public int compare(Entry<V> e1, Entry<V> e2) {
+				return Long.compare(e1.sequence, e2.sequence);
+			}
+		});
+		List<V> result = new ArrayList<V>(found.size());
+		for (Entry<V> e : found) {
+			result.add(e.value);
+		}
+		return result;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	// bindings holds the start in the query of the subterm bound to each
+	// numbered variable
+	private void retrieve(Node<V> node, int pos, List<Symbol> symbols,
+			int[] end, List<Integer> bindings, List<Entry<V>> found) {
+		if (pos == symbols.size()) {
+			found.addAll(node.entries);
+			return;
+		}
+		Node<V> child = node.children.get(symbols.get(pos).key);
+		if (null != child) {
+			retrieve(child, pos + 1, symbols, end, bindings, found);
+		}
+		for (Map.Entry<Object, Node<V>> v : node.variables.entrySet()) {
+			int number = (Integer) v.getKey();
+			if (number == bindings.size()) {
+				// the first occurrence
+				bindings.add(pos);
+				retrieve(v.getValue(), end[pos], symbols, end, bindings,
+						found);
+				bindings.remove(number);
+			} else if (number < bindings.size()
+					&& sameSubterm(symbols, end, bindings.get(number), pos)) {
+				retrieve(v.getValue(), end[pos], symbols, end, bindings,
+						found);
+			}
+		}
+	}
+
+	private boolean sameSubterm(List<Symbol> symbols, int[] end, int p1,
+			int p2) {
+		if (end[p1] - p1 != end[p2] - p2) {
+			return false;
+		}
+		for (int i = 0; i < end[p1] - p1; i++) {
+			if (!symbols.get(p1 + i).key.equals(symbols.get(p2 + i).key)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// the variables of stored terms are numbered, those of queries are
+	// treated as constants
+	private static List<Symbol> flatten(Term t, boolean numberVariables) {
+		List<Symbol> symbols = new ArrayList<Symbol>();
+		flatten(t, numberVariables, new HashMap<Variable, Integer>(), symbols);
+		return symbols;
+	}
+
+	private static void flatten(FOLNode term, boolean numberVariables,
+			Map<Variable, Integer> numbers, List<Symbol> symbols) {
+		if (term instanceof Variable) {
+			if (numberVariables) {
+				Integer number = numbers.get(term);
+				if (null == number) {
+					number = numbers.size();
+					numbers.put((Variable) term, number);
+				}
+				symbols.add(new Symbol(number, 0));
+			} else {
+				symbols.add(new Symbol("v" + term.getSymbolicName(), 0));
+			}
+		} else if (term.isCompound()) {
+			List<? extends FOLNode> args = term.getArgs();
+			symbols.add(new Symbol("f" + term.getSymbolicName() + "/"
+					+ args.size(), args.size()));
+			for (FOLNode arg : args) {
+				flatten(arg, numberVariables, numbers, symbols);
+			}
+		} else {
+			symbols.add(new Symbol("c" + term.getSymbolicName(), 0));
+		}
+	}
+
+	private static class Symbol {
+		// the name of a symbol or the number of a variable
+		final Object key;
+		final int arity;
+
+		Symbol(Object key, int arity) {
+			this.key = key;
+			this.arity = arity;
+		}
+
+		boolean isVariable() {
+			return key instanceof Integer;
+		}
+	}
+
+	private static class Node<V> {
+		final Map<Object, Node<V>> children = new HashMap<Object, Node<V>>();
+		final Map<Object, Node<V>> variables = new HashMap<Object, Node<V>>();
+		final List<Entry<V>> entries = new ArrayList<Entry<V>>();
+
+		boolean isEmpty() {
+			return children.isEmpty() && variables.isEmpty()
+					&& entries.isEmpty();
+		}
+	}
+
+	private static class Entry<V> {
+		final long sequence;
+		final V value;
+
+		Entry(long sequence, V value) {
+			this.sequence = sequence;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,318 @@
+package aima.core.logic.planning;
+
+import aima.core.logic.fol.kb.data.Literal;
+
+import java.util.*;
+
+/**
+ * A compact version of the planning graph of {@link Graph} and {@link Level}.<br>
+ * <p>
+ * Every ground literal and every ground action of a problem is given an
+ * integer id once, the persistence action (no-op) of a literal with id l gets
+ * the action id numberOfActions + l. Each level of the graph then only holds
+ * bitsets: the literals of each state level S i, the actions of each action
+ * level A i, and per literal and per action the bitset of the literals or
+ * actions it is mutex with. The mutex relations that do not depend on the
+ * level (inconsistent effects and interference) are computed once for all
+ * pairs of actions, so that expanding the graph only has to add the competing
+ * needs and compute the mutexes of the literals with a few bitset operations.<br>
+ * <p>
+ * As in the rest of this package, a literal is only present in a state level
+ * if it holds initially or is an effect of an action of the previous level,
+ * negative literals are not assumed to hold initially. The time taken to
+ * expand each level is recorded.
+ */
+public class CompactPlanningGraph {
+    Problem problem;
+    // the ground literals by id
+    List<Literal> literals = new ArrayList<>();
+    Map<Literal, Integer> literalIds = new HashMap<>();
+    // the ground actions by id, the no-ops follow them
+    List<ActionSchema> actions = new ArrayList<>();
+    int numberOfActions;
+    // the id of the complementary literal of each literal
+    int[] complement;
+    // per action id, including the no-ops
+    int[][] preconditions;
+    int[][] effects;
+    // inconsistent effects and interference
+    BitSet[] staticMutexes;
+    // per literal id, the actions that have it as an effect or precondition
+    BitSet[] producers;
+    BitSet[] consumers;
+    // S 0, S 1, ...
+    List<BitSet> stateLevels = new ArrayList<>();
+    List<BitSet[]> literalMutexes = new ArrayList<>();
+    // A 0, A 1, ...
+    List<BitSet> actionLevels = new ArrayList<>();
+    List<BitSet[]> actionMutexes = new ArrayList<>();
+    List<Integer> numberOfMutexPairs = new ArrayList<>();
+    List<Long> expansionTimes = new ArrayList<>();
+
+    /**
+     * Creates the graph with the state level S 0 for the initial state of a
+     * problem.
+     *
+     * @param problem the planning problem.
+     */
+    public CompactPlanningGraph(Problem problem) {
+        long start = System.nanoTime();
+        this.problem = problem;
+        for (Literal literal : problem.getInitialState().getFluents())
+            idOf(literal);
+        for (Literal literal : problem.getGoalState().getFluents())
+            idOf(literal);
+        for (ActionSchema action : new LinkedHashSet<>(problem.getPropositionalisedActions())) {
+            actions.add(action);
+            for (Literal literal : action.getPrecondition())
+                idOf(literal);
+            for (Literal literal : action.getEffects())
+                idOf(literal);
+        }
+        numberOfActions = actions.size();
+        int numberOfLiterals = literals.size();
+        for (int l = 0; l < numberOfLiterals; l++) {
+            Literal literal = literals.get(l);
+            idOf(new Literal(literal.getAtomicSentence(), literal.isPositiveLiteral()));
+        }
+        numberOfLiterals = literals.size();
+        complement = new int[numberOfLiterals];
+        for (int l = 0; l < numberOfLiterals; l++) {
+            Literal literal = literals.get(l);
+            complement[l] = literalIds.get(new Literal(literal.getAtomicSentence(),
+                    literal.isPositiveLiteral()));
+        }
+
+        int n = numberOfActions + numberOfLiterals;
+        preconditions = new int[n][];
+        effects = new int[n][];
+        producers = new BitSet[numberOfLiterals];
+        consumers = new BitSet[numberOfLiterals];
+        for (int l = 0; l < numberOfLiterals; l++) {
+            producers[l] = new BitSet(n);
+            consumers[l] = new BitSet(n);
+        }
+        for (int a = 0; a < n; a++) {
+            if (a < numberOfActions) {
+                preconditions[a] = idsOf(actions.get(a).getPrecondition());
+                effects[a] = idsOf(actions.get(a).getEffects());
+            } else {
+                preconditions[a] = new int[]{a - numberOfActions};
+                effects[a] = preconditions[a];
+            }
+            for (int l : preconditions[a])
+                consumers[l].set(a);
+            for (int l : effects[a])
+                producers[l].set(a);
+        }
+        staticMutexes = new BitSet[n];
+        for (int a = 0; a < n; a++) {
+            BitSet mutexes = new BitSet(n);
+            for (int l : effects[a]) {
+                // inconsistent effects and a deleting a precondition of b
+                mutexes.or(producers[complement[l]]);
+                mutexes.or(consumers[complement[l]]);
+            }
+            for (int l : preconditions[a]) {
+                // b deleting a precondition of a
+                mutexes.or(producers[complement[l]]);
+            }
+            mutexes.clear(a);
+            staticMutexes[a] = mutexes;
+        }
+
+        BitSet initialState = new BitSet(numberOfLiterals);
+        for (Literal literal : problem.getInitialState().getFluents())
+            initialState.set(literalIds.get(literal));
+        stateLevels.add(initialState);
+        literalMutexes.add(new BitSet[numberOfLiterals]);
+        numberOfMutexPairs.add(0);
+        expansionTimes.add(System.nanoTime() - start);
+    }
+
+    /**
+     * Adds the action level A i and the state level S i+1 to a graph whose
+     * last state level is S i.
+     *
+     * @return this graph.
+     */
+    public CompactPlanningGraph expand() {
+        long start = System.nanoTime();
+        int i = stateLevels.size() - 1;
+        BitSet state = stateLevels.get(i);
+        BitSet[] stateMutexes = literalMutexes.get(i);
+
+        // A i, actions only ever stay applicable once they are
+        BitSet actionLevel = i > 0 ? (BitSet) actionLevels.get(i - 1).clone()
+                : new BitSet(preconditions.length);
+        for (int a = actionLevel.nextClearBit(0); a < numberOfActions;
+             a = actionLevel.nextClearBit(a + 1)) {
+            if (isApplicable(preconditions[a], state, stateMutexes))
+                actionLevel.set(a);
+        }
+        for (int l = state.nextSetBit(0); l >= 0; l = state.nextSetBit(l + 1))
+            actionLevel.set(numberOfActions + l);
+
+        BitSet[] mutexes = new BitSet[preconditions.length];
+        for (int a = actionLevel.nextSetBit(0); a >= 0; a = actionLevel.nextSetBit(a + 1)) {
+            BitSet mutex = (BitSet) staticMutexes[a].clone();
+            // competing needs
+            for (int p : preconditions[a]) {
+                BitSet mutexPreconditions = stateMutexes[p];
+                if (mutexPreconditions != null) {
+                    for (int q = mutexPreconditions.nextSetBit(0); q >= 0;
+                         q = mutexPreconditions.nextSetBit(q + 1))
+                        mutex.or(consumers[q]);
+                }
+            }
+            mutex.and(actionLevel);
+            mutexes[a] = mutex;
+        }
+
+        // S i+1
+        BitSet nextState = new BitSet(literals.size());
+        for (int a = actionLevel.nextSetBit(0); a >= 0; a = actionLevel.nextSetBit(a + 1)) {
+            for (int l : effects[a])
+                nextState.set(l);
+        }
+        BitSet[] nextMutexes = new BitSet[literals.size()];
+        int mutexPairs = 0;
+        for (int l = nextState.nextSetBit(0); l >= 0; l = nextState.nextSetBit(l + 1)) {
+            // the actions that can occur together with an achiever of l
+            BitSet compatible = new BitSet(preconditions.length);
+            BitSet achievers = (BitSet) producers[l].clone();
+            achievers.and(actionLevel);
+            for (int a = achievers.nextSetBit(0); a >= 0; a = achievers.nextSetBit(a + 1)) {
+                BitSet notMutex = (BitSet) actionLevel.clone();
+                notMutex.andNot(mutexes[a]);
+                compatible.or(notMutex);
+            }
+            BitSet mutex = new BitSet(literals.size());
+            for (int l2 = nextState.nextSetBit(0); l2 >= 0; l2 = nextState.nextSetBit(l2 + 1)) {
+                if (l2 != l && (l2 == complement[l] || !producers[l2].intersects(compatible)))
+                    mutex.set(l2);
+            }
+            if (!mutex.isEmpty()) {
+                nextMutexes[l] = mutex;
+                mutexPairs += mutex.cardinality();
+            }
+        }
+
+        actionLevels.add(actionLevel);
+        actionMutexes.add(mutexes);
+        stateLevels.add(nextState);
+        literalMutexes.add(nextMutexes);
+        numberOfMutexPairs.add(mutexPairs / 2);
+        expansionTimes.add(System.nanoTime() - start);
+        return this;
+    }
+
+    /**
+     * @return the number of state levels.
+     */
+    public int numLevels() {
+        return stateLevels.size();
+    }
+
+    /**
+     * A graph has levelled off once its last two state levels have the same
+     * literals and mutexes.
+     *
+     * @return true if the graph has levelled off.
+     */
+    public boolean levelledOff() {
+        int i = stateLevels.size() - 1;
+        return i > 0 && stateLevels.get(i).equals(stateLevels.get(i - 1))
+                && numberOfMutexPairs.get(i).equals(numberOfMutexPairs.get(i - 1));
+    }
+
+    /**
+     * @param literals some literals.
+     * @param level    the index of a state level.
+     * @return true if all the literals are in the level and none of them are
+     * mutex.
+     */
+    public boolean containsNonMutex(List<Literal> literals, int level) {
+        BitSet ids = new BitSet();
+        for (Literal literal : literals) {
+            Integer id = literalIds.get(literal);
+            if (id == null)
+                return false;
+            ids.set(id);
+        }
+        return containsNonMutex(ids, level);
+    }
+
+    /**
+     * @return the number of ground actions, without the no-ops.
+     */
+    public int getNumberOfActions() {
+        return numberOfActions;
+    }
+
+    /**
+     * @param level the index of an action level.
+     * @return the number of actions in the level, without the no-ops.
+     */
+    public int getNumberOfActions(int level) {
+        return actionLevels.get(level).get(0, numberOfActions).cardinality();
+    }
+
+    /**
+     * @return the time in nanoseconds taken to create each state level and
+     * the action level before it.
+     */
+    public List<Long> getExpansionTimes() {
+        return Collections.unmodifiableList(expansionTimes);
+    }
+
+    boolean containsNonMutex(BitSet ids, int level) {
+        BitSet state = stateLevels.get(level);
+        BitSet[] mutexes = literalMutexes.get(level);
+        for (int l = ids.nextSetBit(0); l >= 0; l = ids.nextSetBit(l + 1)) {
+            if (!state.get(l) || (mutexes[l] != null && mutexes[l].intersects(ids)))
+                return false;
+        }
+        return true;
+    }
+
+    boolean isNoOp(int action) {
+        return action >= numberOfActions;
+    }
+
+    //
+    // PRIVATE METHODS
+    //
+    private boolean isApplicable(int[] preconditions, BitSet state, BitSet[] stateMutexes) {
+        for (int p : preconditions) {
+            if (!state.get(p))
+                return false;
+        }
+        for (int p : preconditions) {
+            if (stateMutexes[p] != null) {
+                for (int q : preconditions) {
+                    if (stateMutexes[p].get(q))
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private int idOf(Literal literal) {
+        Integer id = literalIds.get(literal);
+        if (id == null) {
+            id = literals.size();
+            literals.add(literal);
+            literalIds.put(literal, id);
+        }
+        return id;
+    }
+
+    private int[] idsOf(List<Literal> literals) {
+        BitSet ids = new BitSet();
+        for (Literal literal : literals)
+            ids.set(literalIds.get(literal));
+        return ids.stream().toArray();
+    }
+}
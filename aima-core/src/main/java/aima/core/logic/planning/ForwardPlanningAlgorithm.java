@@ -0,0 +1,82 @@
+package aima.core.logic.planning;
+
+import aima.core.search.framework.Metrics;
+import aima.core.search.framework.SearchForActions;
+import aima.core.search.framework.qsearch.GraphSearch;
+import aima.core.search.informed.AStarSearch;
+import aima.core.search.informed.GreedyBestFirstSearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Artificial Intelligence A Modern Approach (3rd Edition): page 373.<br>
+ * <p>
+ * Forward (progression) state-space search: starting in the initial state,
+ * we consider sequences of actions until we find a sequence that reaches a
+ * goal state. The problem is first compiled into a {@link GroundProblem}, so
+ * that the states searched are {@link PackedState}s and only the actions
+ * indexed under their atoms are tried. The search itself is a greedy
+ * best-first or an A* graph search of aima.core.search with a
+ * {@link RelaxedPlanHeuristic}.
+ */
+public class ForwardPlanningAlgorithm {
+
+    private final boolean aStar;
+    private final boolean relaxedPlan;
+    private GroundProblem groundProblem = null;
+    private Metrics metrics = new Metrics();
+
+    /**
+     * Creates a greedy best-first search with h_FF.
+     */
+    public ForwardPlanningAlgorithm() {
+        this(false, true);
+    }
+
+    /**
+     * @param aStar       true for A*, false for greedy best-first search.
+     * @param relaxedPlan true for h_FF, false for h_add.
+     */
+    public ForwardPlanningAlgorithm(boolean aStar, boolean relaxedPlan) {
+        this.aStar = aStar;
+        this.relaxedPlan = relaxedPlan;
+    }
+
+    /**
+     * @param problem the planning problem.
+     * @return a sequence of ground actions that leads from the initial state
+     * to a goal state, or null if there is none.
+     */
+    public List<ActionSchema> plan(Problem problem) {
+        groundProblem = new GroundProblem(problem);
+        RelaxedPlanHeuristic h = new RelaxedPlanHeuristic(groundProblem, relaxedPlan);
+        SearchForActions<PackedState, Integer> search = aStar
+                ? new AStarSearch<>(new GraphSearch<>(), h)
+                : new GreedyBestFirstSearch<>(new GraphSearch<>(), h);
+        Optional<List<Integer>> actions = groundProblem.isGoalReachable()
+                ? search.findActions(groundProblem.toSearchProblem()) : Optional.empty();
+        metrics = search.getMetrics();
+        if (!actions.isPresent())
+            return null;
+        List<ActionSchema> plan = new ArrayList<>();
+        for (int a : actions.get())
+            plan.add(groundProblem.getAction(a));
+        return plan;
+    }
+
+    /**
+     * @return the ground problem of the last call of plan(), or null.
+     */
+    public GroundProblem getGroundProblem() {
+        return groundProblem;
+    }
+
+    /**
+     * @return the metrics of the search of the last call of plan().
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+}
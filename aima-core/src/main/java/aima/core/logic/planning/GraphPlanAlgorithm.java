@@ -32,41 +32,57 @@ import java.util.*;
  */
 public class GraphPlanAlgorithm {
 
+    private CompactPlanningGraph lastGraph = null;
+
     /**
      * function GRAPHPLAN(problem) returns solution or failure
      *
      * @param problem the planning problem for which the plan is to be created
-     * @return a solution or null
+     * @return a solution or null. The solution holds one set of actions per
+     * step, the last step first. No-ops are left out.
      */
     public List<List<ActionSchema>> graphPlan(Problem problem) {
         //graph ← INITIAL-PLANNING-GRAPH(problem)
-        Graph graph = initialPlanningGraph(problem);
-        // goals ← CONJUNCTS(problem.GOAL)
+        CompactPlanningGraph graph = initialPlanningGraph(problem);
+        lastGraph = graph;
+        // goals ← CONJUNCTS(problem.GOAL)
         List<Literal> goals = conjuncts(problem.getGoalState());
-        // nogoods ← an empty hash table
-        Hashtable<Integer, List<Literal>> nogoods = new Hashtable<>();
-        Level state;
-        // for tl = 0 to ∞ do
+        // nogoods ← an empty hash table
+        List<Set<BitSet>> nogoods = new ArrayList<>();
+        int levelledOffNogoods = -1;
+        // for tl = 0 to ∞ do
         for (int tl = 0; ; tl++) {
-            //St
-            state = graph.getLevels().get(2 * tl);
-            // if goals all non-mutex in St of graph then
-            if (checkAllGoalsNonMutex(state, goals)) {
+            nogoods.add(new HashSet<>());
+            // if goals all non-mutex in St of graph then
+            if (graph.containsNonMutex(goals, tl)) {
                 // solution ← EXTRACT-SOLUTION(graph, goals, NUMLEVELS(graph), nogoods)
                 List<List<ActionSchema>> solution = extractSolution(graph, goals, graph.numLevels(), nogoods);
                 //if solution ≠ failure then return solution
-                if (solution != null && solution.size() != 0)
+                if (solution != null)
                     return solution;
             }
             // if graph and nogoods have both leveled off then return failure
-            if (levelledOff(graph) && leveledOff(nogoods)) {
-                return null;
+            if (graph.levelledOff()) {
+                // the nogoods of the first level at which the graph levelled
+                // off only grow until no solution can be found anymore
+                int n = nogoods.get(firstLevelledOffLevel(graph)).size();
+                if (!graph.containsNonMutex(goals, tl) || n == levelledOffNogoods)
+                    return null;
+                levelledOffNogoods = n;
             }
-            //   graph ← EXPAND-GRAPH(graph, problem)
+            //   graph ← EXPAND-GRAPH(graph, problem)
             graph = expandGraph(graph);
         }
     }
 
+    /**
+     * @return the planning graph of the last call of graphPlan(), e.g. for its
+     * expansion times, or null.
+     */
+    public CompactPlanningGraph getPlanningGraph() {
+        return lastGraph;
+    }
+
     /**
      * This method extracts a solution from the planning graph.
      * <p>
@@ -84,6 +100,12 @@ public class GraphPlanAlgorithm {
      * of their preconditions are mutex.
      * • The goal is to reach a state at level S 0 such that all the goals are satisfied.
      * • The cost of each action is 1.
+     * <p>
+     * The goals of each failed state are recorded as a bitset in the nogoods
+     * of its level, and a state whose goals are already there is not searched
+     * again. Actions are chosen goal by goal, and a choice is given up as soon
+     * as an uncovered goal has no achiever left that is not mutex with the
+     * chosen actions.
      *
      * @param graph    The planning graph.
      * @param goals    Goals of the planning problem.
@@ -91,130 +113,34 @@ public class GraphPlanAlgorithm {
      * @param nogoods  A hash table to store previously calculated results.
      * @return a solution if found else null
      */
-    private List<List<ActionSchema>> extractSolution(Graph graph, List<Literal> goals, int numLevel,
-                                                     Hashtable<Integer, List<Literal>> nogoods) {
-        if (nogoods.contains(numLevel))
+    private List<List<ActionSchema>> extractSolution(CompactPlanningGraph graph, List<Literal> goals, int numLevel,
+                                                     List<Set<BitSet>> nogoods) {
+        BitSet goalIds = new BitSet();
+        for (Literal goal : goals)
+            goalIds.set(graph.literalIds.get(goal));
+        LinkedList<BitSet> steps = new LinkedList<>();
+        if (!extract(graph, goalIds, numLevel - 1, nogoods, steps))
             return null;
-
-        int level = (graph.numLevels() - 1) / 2;
-        List<Literal> goalsCurr = goals;
         List<List<ActionSchema>> solution = new ArrayList<>();
-        Level currLevel = graph.getLevels().get(2 * level);
-        while (level > 0) {
-            List<List<ActionSchema>> setOfPossibleActions = new ArrayList<>();
-            HashMap<Object, List<Object>> mutexLinks = currLevel.getPrevLevel().getMutexLinks();
-            for (Literal literal :
-                    goalsCurr) {
-                List<ActionSchema> possiBleActionsPerLiteral = new ArrayList<>();
-                for (Object action :
-                        currLevel.getPrevLinks().get(literal)) {
-                    possiBleActionsPerLiteral.add((ActionSchema) action);
-                }
-                setOfPossibleActions.add(possiBleActionsPerLiteral);
-            }
-            List<List<ActionSchema>> allPossibleSubSets = generateCombinations(setOfPossibleActions);
-            boolean validSet;
-            List<ActionSchema> setToBeTaken = null;
-            for (List<ActionSchema> possibleSet :
-                    allPossibleSubSets) {
-                validSet = true;
-                ActionSchema firstAction, secondAction;
-                for (int i = 0; i < possibleSet.size(); i++) {
-                    firstAction = possibleSet.get(i);
-                    for (int j = i + 1; j < possibleSet.size(); j++) {
-                        secondAction = possibleSet.get(j);
-                        if (mutexLinks.containsKey(firstAction) && mutexLinks.get(firstAction).contains(secondAction))
-                            validSet = false;
-                    }
-                }
-                if (validSet) {
-                    setToBeTaken = possibleSet;
-                    break;
-                }
-            }
-            if (setToBeTaken == null) {
-                nogoods.put(level, goalsCurr);
-                return null;
-            }
-
-            level--;
-            currLevel = graph.getLevels().get(2 * level);
-            goalsCurr.clear();
-            solution.add(setToBeTaken);
-            for (ActionSchema action :
-                    setToBeTaken) {
-                for (Literal literal :
-                        action.getPrecondition()) {
-                    if (!goalsCurr.contains(literal)) {
-                        goalsCurr.add(literal);
-                    }
-                }
+        for (BitSet step : steps) {
+            List<ActionSchema> actions = new ArrayList<>();
+            for (int a = step.nextSetBit(0); a >= 0; a = step.nextSetBit(a + 1)) {
+                if (!graph.isNoOp(a))
+                    actions.add(graph.actions.get(a));
             }
+            solution.add(actions);
         }
         return solution;
     }
 
-    /**
-     * This method is used to check if all goals are present in a particular state
-     * and none of them has a mutex link.
-     *
-     * @param level The current level in which to check for the goals.
-     * @param goals List of goals to be checked
-     * @return Boolean representing if goals all non mutex in St
-     */
-    private boolean checkAllGoalsNonMutex(Level level, List<Literal> goals) {
-        if (!level.getLevelObjects().containsAll(goals)) {
-            return false;
-        }
-        boolean mutexCheck = false;
-        for (Object literal :
-                goals) {
-            List<Object> mutexOfGoal = level.getMutexLinks().get(literal);
-            if (mutexOfGoal != null) {
-                for (Object object :
-                        mutexOfGoal) {
-                    if (goals.contains((Literal) object)) {
-                        mutexCheck = true;
-                        break;
-                    }
-                }
-            }
-        }
-        return (!mutexCheck);
-    }
-
     /**
      * This method adds a new state (a state level and an action level both) to the planning graph.
      *
      * @param graph The planning graph.
      * @return The expanded graph.
      */
-    private Graph expandGraph(Graph graph) {
-        return graph.addLevel().addLevel();
-    }
-
-    /**
-     * A graph is said to be levelled off if two consecutive levels are identical.
-     *
-     * @param nogoods
-     * @return Boolean stating if the hashtable is levelled off.
-     */
-    private boolean leveledOff(Hashtable<Integer, List<Literal>> nogoods) {
-        if (nogoods.size() < 2)
-            return false;
-        return nogoods.get(nogoods.size() - 1).equals(nogoods.get(nogoods.size() - 2));
-    }
-
-    /**
-     * A graph is said to be levelled off if two consecutive levels are identical.
-     *
-     * @param graph
-     * @return Boolean stating if the graph is levelled off.
-     */
-    private boolean levelledOff(Graph graph) {
-        if (graph.numLevels() < 2)
-            return false;
-        return graph.levels.get(graph.numLevels() - 1).equals(graph.levels.get(graph.numLevels() - 2));
+    private CompactPlanningGraph expandGraph(CompactPlanningGraph graph) {
+        return graph.expand();
     }
 
     /**
@@ -233,9 +159,108 @@ public class GraphPlanAlgorithm {
      * @param problem The planning problem.
      * @return Graph for the planning problem.
      */
-    private Graph initialPlanningGraph(Problem problem) {
-        Level initialLevel = new Level(null, problem);
-        return new Graph(problem, initialLevel);
+    private CompactPlanningGraph initialPlanningGraph(Problem problem) {
+        return new CompactPlanningGraph(problem);
+    }
+
+    //
+    // PRIVATE METHODS
+    //
+    private int firstLevelledOffLevel(CompactPlanningGraph graph) {
+        int level = graph.numLevels() - 1;
+        while (level > 0 && graph.stateLevels.get(level - 1).equals(graph.stateLevels.get(level))
+                && graph.numberOfMutexPairs.get(level - 1).equals(graph.numberOfMutexPairs.get(level)))
+            level--;
+        return level;
+    }
+
+    // Adds the steps from S 0 to the goals at a level to the end of steps
+    private boolean extract(CompactPlanningGraph graph, BitSet goals, int level,
+                            List<Set<BitSet>> nogoods, LinkedList<BitSet> steps) {
+        if (level == 0)
+            return true;
+        if (nogoods.get(level).contains(goals))
+            return false;
+        // the goals with the fewest achievers first
+        BitSet actionLevel = graph.actionLevels.get(level - 1);
+        Integer[] order = goals.stream().boxed().toArray(Integer[]::new);
+        int[] achievers = new int[graph.literals.size()];
+        for (int g : order)
+            achievers[g] = countAchievers(graph, g, actionLevel);
+        Arrays.sort(order, (g1, g2) -> Integer.compare(achievers[g1], achievers[g2]));
+        int[] sortedGoals = new int[order.length];
+        for (int i = 0; i < order.length; i++)
+            sortedGoals[i] = order[i];
+
+        if (assign(graph, sortedGoals, 0, level, new BitSet(), new BitSet(), new BitSet(), nogoods, steps))
+            return true;
+        nogoods.get(level).add(goals);
+        return false;
+    }
+
+    private boolean assign(CompactPlanningGraph graph, int[] goals, int next, int level, BitSet chosen,
+                           BitSet excluded, BitSet covered, List<Set<BitSet>> nogoods,
+                           LinkedList<BitSet> steps) {
+        while (next < goals.length && covered.get(goals[next]))
+            next++;
+        if (next == goals.length) {
+            BitSet subgoals = new BitSet();
+            for (int a = chosen.nextSetBit(0); a >= 0; a = chosen.nextSetBit(a + 1)) {
+                for (int p : graph.preconditions[a])
+                    subgoals.set(p);
+            }
+            if (extract(graph, subgoals, level - 1, nogoods, steps)) {
+                steps.addFirst((BitSet) chosen.clone());
+                return true;
+            }
+            return false;
+        }
+        BitSet[] mutexes = graph.actionMutexes.get(level - 1);
+        BitSet candidates = (BitSet) graph.producers[goals[next]].clone();
+        candidates.and(graph.actionLevels.get(level - 1));
+        candidates.andNot(excluded);
+        // the no-op first, it adds no new goals
+        int noOp = graph.numberOfActions + goals[next];
+        if (candidates.get(noOp) && tryAction(graph, noOp, goals, next, level, chosen, excluded, covered,
+                mutexes, nogoods, steps))
+            return true;
+        for (int a = candidates.nextSetBit(0); a >= 0; a = candidates.nextSetBit(a + 1)) {
+            if (a != noOp && tryAction(graph, a, goals, next, level, chosen, excluded, covered, mutexes,
+                    nogoods, steps))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean tryAction(CompactPlanningGraph graph, int action, int[] goals, int next, int level,
+                              BitSet chosen, BitSet excluded, BitSet covered, BitSet[] mutexes,
+                              List<Set<BitSet>> nogoods, LinkedList<BitSet> steps) {
+        BitSet newExcluded = (BitSet) excluded.clone();
+        newExcluded.or(mutexes[action]);
+        BitSet newCovered = (BitSet) covered.clone();
+        for (int e : graph.effects[action])
+            newCovered.set(e);
+        // each uncovered goal needs an achiever that is not mutex with the chosen actions
+        BitSet actionLevel = graph.actionLevels.get(level - 1);
+        for (int i = next + 1; i < goals.length; i++) {
+            if (!newCovered.get(goals[i])) {
+                BitSet achievers = (BitSet) graph.producers[goals[i]].clone();
+                achievers.and(actionLevel);
+                achievers.andNot(newExcluded);
+                if (achievers.isEmpty())
+                    return false;
+            }
+        }
+        chosen.set(action);
+        boolean found = assign(graph, goals, next + 1, level, chosen, newExcluded, newCovered, nogoods, steps);
+        chosen.clear(action);
+        return found;
+    }
+
+    private int countAchievers(CompactPlanningGraph graph, int literal, BitSet actionLevel) {
+        BitSet achievers = (BitSet) graph.producers[literal].clone();
+        achievers.and(actionLevel);
+        return achievers.cardinality();
     }
 
     // Helper methods for combinations and permutations.
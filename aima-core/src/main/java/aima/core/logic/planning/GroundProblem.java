@@ -0,0 +1,413 @@
+package aima.core.logic.planning;
+
+import aima.core.logic.fol.kb.data.Literal;
+import aima.core.logic.fol.parsing.ast.Constant;
+import aima.core.logic.fol.parsing.ast.Term;
+import aima.core.logic.fol.parsing.ast.Variable;
+import aima.core.search.framework.problem.GeneralProblem;
+
+import java.util.*;
+
+/**
+ * A planning {@link Problem} compiled into STRIPS actions over integer ids.<br>
+ * <p>
+ * Grounding instantiates the action schemas only with the ground atoms that
+ * are reachable from the initial state if delete effects are ignored: the
+ * positive preconditions of each schema are matched against the reachable
+ * atoms and the add effects of the new actions are added to them, until no
+ * new actions are found. Unlike {@link Problem#getPropositionalisedActions()},
+ * this never creates actions whose preconditions cannot become true, e.g.
+ * Load(SFO, C1, P1). As there, distinct variables of a schema are bound to
+ * distinct constants.<br>
+ * <p>
+ * Every reachable atom then gets an id and every ground action the id lists
+ * of its positive and negative preconditions and of its add and delete
+ * effects. Static atoms, which hold initially and are not changed by any
+ * action, are left out of the preconditions. States are {@link PackedState}s
+ * under the closed world assumption: a negative precondition or goal holds if
+ * its atom is not in the state. The actions are indexed by their rarest positive precondition, so
+ * that successor generation only looks at the actions indexed under the atoms
+ * of a state.
+ */
+public class GroundProblem {
+    private final Problem problem;
+    // the ground atoms by id, positive literals
+    private final List<Literal> atoms = new ArrayList<>();
+    private final Map<Literal, Integer> atomIds = new HashMap<>();
+    private final List<ActionSchema> actions = new ArrayList<>();
+    // per action id
+    private int[][] preconditions;
+    private int[][] negativePreconditions;
+    private int[][] addEffects;
+    private int[][] deleteEffects;
+    // per atom id, the actions indexed under it
+    private int[][] actionsByPrecondition;
+    // the actions without positive preconditions
+    private int[] unconditionalActions;
+    private PackedState initialState;
+    private int[] goals;
+    private int[] negativeGoals;
+    private boolean goalsReachable = true;
+
+    /**
+     * Grounds and compiles a planning problem.
+     *
+     * @param problem the planning problem.
+     */
+    public GroundProblem(Problem problem) {
+        this.problem = problem;
+        for (Literal literal : problem.getInitialState().getFluents()) {
+            if (literal.isPositiveLiteral())
+                idOf(literal);
+        }
+        ground();
+        compile();
+    }
+
+    public Problem getProblem() {
+        return problem;
+    }
+
+    public int getNumberOfAtoms() {
+        return atoms.size();
+    }
+
+    public int getNumberOfActions() {
+        return actions.size();
+    }
+
+    /**
+     * @param atom an atom id.
+     * @return the ground atom as a positive literal.
+     */
+    public Literal getAtom(int atom) {
+        return atoms.get(atom);
+    }
+
+    /**
+     * @param action an action id.
+     * @return the ground action.
+     */
+    public ActionSchema getAction(int action) {
+        return actions.get(action);
+    }
+
+    public PackedState getInitialState() {
+        return initialState;
+    }
+
+    /**
+     * @param state a state.
+     * @return the ids of the actions applicable in the state.
+     */
+    public List<Integer> getApplicableActions(PackedState state) {
+        List<Integer> result = new ArrayList<>();
+        for (int a : unconditionalActions) {
+            if (isApplicable(a, state))
+                result.add(a);
+        }
+        for (int atom = state.nextAtom(0); atom >= 0; atom = state.nextAtom(atom + 1)) {
+            for (int a : actionsByPrecondition[atom]) {
+                if (isApplicable(a, state))
+                    result.add(a);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param action an action id.
+     * @param state  a state.
+     * @return true if the preconditions of the action hold in the state.
+     */
+    public boolean isApplicable(int action, PackedState state) {
+        for (int p : preconditions[action]) {
+            if (!state.holds(p))
+                return false;
+        }
+        for (int p : negativePreconditions[action]) {
+            if (state.holds(p))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * RESULT(s, a) = (s − DEL(a)) ∪ ADD(a)
+     *
+     * @param state  a state.
+     * @param action the id of an action applicable in the state.
+     * @return the resulting state.
+     */
+    public PackedState getResult(PackedState state, int action) {
+        long[] bits = state.bits.clone();
+        for (int d : deleteEffects[action])
+            bits[d >>> 6] &= ~(1L << d);
+        for (int e : addEffects[action])
+            bits[e >>> 6] |= 1L << e;
+        return new PackedState(bits);
+    }
+
+    /**
+     * @param state a state.
+     * @return true if the goal holds in the state.
+     */
+    public boolean testGoal(PackedState state) {
+        if (!goalsReachable)
+            return false;
+        for (int g : goals) {
+            if (!state.holds(g))
+                return false;
+        }
+        for (int g : negativeGoals) {
+            if (state.holds(g))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the problem as a search problem with unit step costs, whose
+     * actions are action ids.
+     */
+    public aima.core.search.framework.problem.Problem<PackedState, Integer> toSearchProblem() {
+        return new GeneralProblem<>(initialState, this::getApplicableActions, this::getResult, this::testGoal);
+    }
+
+    /**
+     * @return false if a positive goal is not even reachable when delete
+     * effects are ignored, so that the problem cannot be solved.
+     */
+    public boolean isGoalReachable() {
+        return goalsReachable;
+    }
+
+    int[] getGoals() {
+        return goals;
+    }
+
+    int[] getPreconditions(int action) {
+        return preconditions[action];
+    }
+
+    int[] getAddEffects(int action) {
+        return addEffects[action];
+    }
+
+    //
+    // PRIVATE METHODS
+    //
+    private void ground() {
+        List<Constant> constants = problem.getProblemConstants();
+        Map<String, List<Literal>> reachable = new HashMap<>();
+        for (Literal atom : atoms)
+            index(atom, reachable);
+        Set<ActionSchema> found = new LinkedHashSet<>();
+        // the bindings already instantiated, per schema
+        Map<ActionSchema, Set<List<Constant>>> instantiated = new HashMap<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (ActionSchema schema : problem.getActionSchemas()) {
+                List<Literal> positive = new ArrayList<>();
+                for (Literal literal : schema.getPrecondition()) {
+                    if (literal.isPositiveLiteral())
+                        positive.add(literal);
+                }
+                List<List<Constant>> bindings = new ArrayList<>();
+                match(schema, positive, 0, new HashMap<>(), reachable, constants, bindings);
+                Set<List<Constant>> done = instantiated.computeIfAbsent(schema, s -> new HashSet<>());
+                for (List<Constant> values : bindings) {
+                    if (!done.add(values))
+                        continue;
+                    ActionSchema action = schema.getActionBySubstitution(values);
+                    if (found.add(action)) {
+                        changed = true;
+                        for (Literal effect : action.getEffectsPositiveLiterals()) {
+                            if (!atomIds.containsKey(effect)) {
+                                idOf(effect);
+                                index(effect, reachable);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        actions.addAll(found);
+    }
+
+    // Matches the positive preconditions from the i-th on against the reachable atoms
+    private void match(ActionSchema schema, List<Literal> positive, int i, Map<Variable, Constant> binding,
+                       Map<String, List<Literal>> reachable, List<Constant> constants,
+                       List<List<Constant>> bindings) {
+        if (i == positive.size()) {
+            complete(schema, 0, binding, constants, bindings);
+            return;
+        }
+        Literal literal = positive.get(i);
+        List<Term> args = literal.getAtomicSentence().getArgs();
+        List<Literal> candidates = reachable.get(literal.getAtomicSentence().getSymbolicName());
+        if (candidates == null)
+            return;
+        for (Literal candidate : candidates) {
+            List<Term> atomArgs = candidate.getAtomicSentence().getArgs();
+            if (atomArgs.size() != args.size())
+                continue;
+            List<Variable> bound = new ArrayList<>();
+            boolean matches = true;
+            for (int k = 0; k < args.size() && matches; k++) {
+                Term arg = args.get(k);
+                Constant value = (Constant) atomArgs.get(k);
+                if (arg instanceof Variable) {
+                    Constant old = binding.get(arg);
+                    if (old == null) {
+                        if (binding.containsValue(value)) {
+                            matches = false;
+                        } else {
+                            binding.put((Variable) arg, value);
+                            bound.add((Variable) arg);
+                        }
+                    } else {
+                        matches = old.equals(value);
+                    }
+                } else {
+                    matches = arg.equals(value);
+                }
+            }
+            if (matches)
+                match(schema, positive, i + 1, binding, reachable, constants, bindings);
+            for (Variable v : bound)
+                binding.remove(v);
+        }
+    }
+
+    // Binds the variables of a schema that are not in its positive
+    // preconditions to all the remaining constants
+    private void complete(ActionSchema schema, int k, Map<Variable, Constant> binding,
+                          List<Constant> constants, List<List<Constant>> bindings) {
+        List<Term> variables = schema.getVariables();
+        while (k < variables.size() && (!(variables.get(k) instanceof Variable)
+                || binding.containsKey(variables.get(k))))
+            k++;
+        if (k == variables.size()) {
+            List<Constant> values = new ArrayList<>();
+            for (Term variable : variables)
+                values.add(variable instanceof Variable ? binding.get(variable) : (Constant) variable);
+            bindings.add(values);
+            return;
+        }
+        Variable variable = (Variable) variables.get(k);
+        for (Constant constant : constants) {
+            if (!binding.containsValue(constant)) {
+                binding.put(variable, constant);
+                complete(schema, k + 1, binding, constants, bindings);
+                binding.remove(variable);
+            }
+        }
+    }
+
+    private void index(Literal atom, Map<String, List<Literal>> reachable) {
+        reachable.computeIfAbsent(atom.getAtomicSentence().getSymbolicName(), name -> new ArrayList<>())
+                .add(atom);
+    }
+
+    private void compile() {
+        int n = actions.size();
+        preconditions = new int[n][];
+        negativePreconditions = new int[n][];
+        addEffects = new int[n][];
+        deleteEffects = new int[n][];
+        for (int a = 0; a < n; a++) {
+            ActionSchema action = actions.get(a);
+            preconditions[a] = reachableIds(action.getPrecondition(), true);
+            negativePreconditions[a] = reachableIds(action.getPrecondition(), false);
+            addEffects[a] = reachableIds(action.getEffects(), true);
+            deleteEffects[a] = reachableIds(action.getEffects(), false);
+        }
+        // static atoms hold initially and are never changed, so they hold in
+        // every state and grounding has already checked them
+        BitSet changed = new BitSet(atoms.size());
+        for (int a = 0; a < n; a++) {
+            for (int e : addEffects[a])
+                changed.set(e);
+            for (int d : deleteEffects[a])
+                changed.set(d);
+        }
+        for (int a = 0; a < n; a++)
+            preconditions[a] = Arrays.stream(preconditions[a]).filter(changed::get).toArray();
+
+        // index each action under its precondition with the fewest actions
+        int[] frequency = new int[atoms.size()];
+        for (int[] pre : preconditions) {
+            for (int p : pre)
+                frequency[p]++;
+        }
+        List<List<Integer>> index = new ArrayList<>();
+        for (int i = 0; i < atoms.size(); i++)
+            index.add(new ArrayList<>());
+        List<Integer> unconditional = new ArrayList<>();
+        for (int a = 0; a < n; a++) {
+            if (preconditions[a].length == 0) {
+                unconditional.add(a);
+            } else {
+                int rarest = preconditions[a][0];
+                for (int p : preconditions[a]) {
+                    if (frequency[p] < frequency[rarest])
+                        rarest = p;
+                }
+                index.get(rarest).add(a);
+            }
+        }
+        actionsByPrecondition = new int[atoms.size()][];
+        for (int i = 0; i < atoms.size(); i++)
+            actionsByPrecondition[i] = toArray(index.get(i));
+        unconditionalActions = toArray(unconditional);
+
+        long[] bits = new long[(atoms.size() + 63) >>> 6];
+        for (Literal literal : problem.getInitialState().getFluents()) {
+            if (literal.isPositiveLiteral()) {
+                int id = atomIds.get(literal);
+                bits[id >>> 6] |= 1L << id;
+            }
+        }
+        initialState = new PackedState(bits);
+        List<Literal> goalLiterals = problem.getGoalState().getFluents();
+        for (Literal goal : goalLiterals) {
+            if (goal.isPositiveLiteral() && !atomIds.containsKey(goal))
+                goalsReachable = false;
+        }
+        goals = reachableIds(goalLiterals, true);
+        negativeGoals = reachableIds(goalLiterals, false);
+    }
+
+    // The ids of the atoms of the literals of one sign, atoms that are never
+    // reachable are left out
+    private int[] reachableIds(List<Literal> literals, boolean positive) {
+        BitSet ids = new BitSet();
+        for (Literal literal : literals) {
+            if (literal.isPositiveLiteral() == positive) {
+                Integer id = atomIds.get(positive ? literal : new Literal(literal.getAtomicSentence()));
+                if (id != null)
+                    ids.set(id);
+            }
+        }
+        return ids.stream().toArray();
+    }
+
+    private int idOf(Literal atom) {
+        Integer id = atomIds.get(atom);
+        if (id == null) {
+            id = atoms.size();
+            atoms.add(atom);
+            atomIds.put(atom, id);
+        }
+        return id;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = list.get(i);
+        return result;
+    }
+}
@@ -0,0 +1,83 @@
+package aima.core.logic.planning;
+
+import java.util.Arrays;
+
+/**
+ * A state of a {@link GroundProblem}: the set of the ids of the ground atoms
+ * that hold, packed into the bits of a long array. Atoms that are not in the
+ * set are false. States are immutable, so that they can be used as keys of
+ * the explored sets of the search algorithms.
+ */
+public class PackedState {
+    final long[] bits;
+    private final int hashCode;
+
+    PackedState(long[] bits) {
+        this.bits = bits;
+        this.hashCode = Arrays.hashCode(bits);
+    }
+
+    /**
+     * @param atom the id of a ground atom.
+     * @return true if the atom holds in this state.
+     */
+    public boolean holds(int atom) {
+        int word = atom >>> 6;
+        return word < bits.length && (bits[word] & (1L << atom)) != 0;
+    }
+
+    /**
+     * @return the number of atoms that hold in this state.
+     */
+    public int size() {
+        int size = 0;
+        for (long word : bits)
+            size += Long.bitCount(word);
+        return size;
+    }
+
+    /**
+     * @param from an atom id.
+     * @return the smallest id of an atom that holds, that is greater than or
+     * equal to from, or -1.
+     */
+    public int nextAtom(int from) {
+        int word = from >>> 6;
+        if (word >= bits.length)
+            return -1;
+        long w = bits[word] & (-1L << from);
+        while (true) {
+            if (w != 0)
+                return (word << 6) + Long.numberOfTrailingZeros(w);
+            if (++word == bits.length)
+                return -1;
+            w = bits[word];
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof PackedState))
+            return false;
+        PackedState other = (PackedState) obj;
+        return hashCode == other.hashCode && Arrays.equals(bits, other.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int atom = nextAtom(0); atom >= 0; atom = nextAtom(atom + 1)) {
+            if (sb.length() > 1)
+                sb.append(", ");
+            sb.append(atom);
+        }
+        return sb.append("}").toString();
+    }
+}
@@ -0,0 +1,250 @@
+package aima.core.logic.planning;
+
+import aima.core.search.framework.Node;
+
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Artificial Intelligence A Modern Approach (3rd Edition): page 376.<br>
+ * <p>
+ * Heuristics for the forward search of a {@link GroundProblem} that solve the
+ * relaxed problem, which ignores the delete effects and the negative
+ * preconditions of all actions:
+ * <ul>
+ * <li>h_add estimates the cost of each atom as the cost of its cheapest
+ * achiever, which is one plus the sum of the costs of the preconditions of
+ * the achiever, and returns the sum of the costs of the goals (Bonet and
+ * Geffner, 2001). It is not admissible.</li>
+ * <li>h_FF extracts a relaxed plan from the cheapest achievers found for
+ * h_add and returns its number of actions (Hoffmann and Nebel, 2001).</li>
+ * </ul>
+ * The costs are computed as in Dijkstra's algorithm, starting with the atoms
+ * of the state and stopping once all the goals are reached. States from
+ * which a goal cannot be reached get an infinite estimate. Since priority
+ * queues evaluate nodes repeatedly, the estimate of each state is cached.
+ * Instances are not thread-safe.
+ */
+public class RelaxedPlanHeuristic implements ToDoubleFunction<Node<PackedState, Integer>> {
+
+    private final GroundProblem problem;
+    private final boolean relaxedPlan;
+    private final Map<PackedState, Double> cache = new HashMap<>();
+    // per atom, the actions that have it as a precondition
+    private final int[][] consumers;
+    private final int[] unconditionalActions;
+    // reused by every computation, an entry is only valid if its stamp is
+    // the number of the current computation
+    private int computation = 0;
+    private final int[] atomStamp;
+    private final int[] cost;
+    private final int[] achiever;
+    private final int[] actionStamp;
+    private final int[] unsatisfied;
+    private final int[] costSum;
+    private final BitSet inPlan;
+    // a binary heap of the atoms to be processed, cost << 32 | atom
+    private long[] heap = new long[64];
+    private int heapSize = 0;
+
+    /**
+     * @param problem     the ground problem.
+     * @param relaxedPlan true for h_FF, false for h_add.
+     */
+    public RelaxedPlanHeuristic(GroundProblem problem, boolean relaxedPlan) {
+        this.problem = problem;
+        this.relaxedPlan = relaxedPlan;
+        int atoms = problem.getNumberOfAtoms();
+        int actions = problem.getNumberOfActions();
+        int[] count = new int[atoms];
+        List<Integer> unconditional = new ArrayList<>();
+        for (int a = 0; a < actions; a++) {
+            for (int p : problem.getPreconditions(a))
+                count[p]++;
+            if (problem.getPreconditions(a).length == 0)
+                unconditional.add(a);
+        }
+        consumers = new int[atoms][];
+        for (int p = 0; p < atoms; p++)
+            consumers[p] = new int[count[p]];
+        Arrays.fill(count, 0);
+        for (int a = 0; a < actions; a++) {
+            for (int p : problem.getPreconditions(a))
+                consumers[p][count[p]++] = a;
+        }
+        unconditionalActions = new int[unconditional.size()];
+        for (int i = 0; i < unconditionalActions.length; i++)
+            unconditionalActions[i] = unconditional.get(i);
+        atomStamp = new int[atoms];
+        cost = new int[atoms];
+        achiever = new int[atoms];
+        actionStamp = new int[actions];
+        unsatisfied = new int[actions];
+        costSum = new int[actions];
+        inPlan = new BitSet(actions);
+    }
+
+    /**
+     * @return h_add for a problem.
+     */
+    public static RelaxedPlanHeuristic createAdditiveHeuristic(GroundProblem problem) {
+        return new RelaxedPlanHeuristic(problem, false);
+    }
+
+    /**
+     * @return h_FF for a problem.
+     */
+    public static RelaxedPlanHeuristic createRelaxedPlanHeuristic(GroundProblem problem) {
+        return new RelaxedPlanHeuristic(problem, true);
+    }
+
+    @Override
+    public double applyAsDouble(Node<PackedState, Integer> node) {
+        return estimate(node.getState());
+    }
+
+    /**
+     * @param state a state of the problem.
+     * @return the estimated number of actions needed to reach the goal.
+     */
+    public double estimate(PackedState state) {
+        Double h = cache.get(state);
+        if (h == null) {
+            h = compute(state);
+            cache.put(state, h);
+        }
+        return h;
+    }
+
+    /**
+     * Forgets the estimates of all states.
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    //
+    // PRIVATE METHODS
+    //
+    private double compute(PackedState state) {
+        int[] goals = problem.getGoals();
+        if (!problem.isGoalReachable())
+            return Double.POSITIVE_INFINITY;
+        computation++;
+        heapSize = 0;
+        for (int p = state.nextAtom(0); p >= 0; p = state.nextAtom(p + 1))
+            reach(p, 0, -1);
+        for (int a : unconditionalActions) {
+            actionStamp[a] = computation;
+            costSum[a] = 0;
+            apply(a);
+        }
+        int goalsLeft = 0;
+        for (int g : goals) {
+            if (costOf(g) != 0)
+                goalsLeft++;
+        }
+        while (goalsLeft > 0 && heapSize > 0) {
+            long entry = poll();
+            int p = (int) entry;
+            int c = (int) (entry >>> 32);
+            if (c > cost[p])
+                continue;
+            if (c > 0 && isGoal(p, goals))
+                goalsLeft--;
+            for (int a : consumers[p]) {
+                if (actionStamp[a] != computation) {
+                    actionStamp[a] = computation;
+                    unsatisfied[a] = problem.getPreconditions(a).length;
+                    costSum[a] = 0;
+                }
+                costSum[a] += c;
+                if (--unsatisfied[a] == 0)
+                    apply(a);
+            }
+        }
+        if (goalsLeft > 0)
+            return Double.POSITIVE_INFINITY;
+
+        if (!relaxedPlan) {
+            double h = 0;
+            for (int g : goals)
+                h += cost[g];
+            return h;
+        }
+        // the relaxed plan, from the goals backwards
+        inPlan.clear();
+        Deque<Integer> open = new ArrayDeque<>();
+        for (int g : goals)
+            open.push(g);
+        BitSet done = new BitSet();
+        while (!open.isEmpty()) {
+            int p = open.pop();
+            if (cost[p] == 0 || done.get(p))
+                continue;
+            done.set(p);
+            int a = achiever[p];
+            if (!inPlan.get(a)) {
+                inPlan.set(a);
+                for (int q : problem.getPreconditions(a))
+                    open.push(q);
+            }
+        }
+        return inPlan.cardinality();
+    }
+
+    private void apply(int action) {
+        int c = costSum[action] + 1;
+        for (int e : problem.getAddEffects(action)) {
+            if (c < costOf(e))
+                reach(e, c, action);
+        }
+    }
+
+    private int costOf(int atom) {
+        return atomStamp[atom] == computation ? cost[atom] : Integer.MAX_VALUE;
+    }
+
+    private void reach(int atom, int c, int action) {
+        atomStamp[atom] = computation;
+        cost[atom] = c;
+        achiever[atom] = action;
+        add(((long) c << 32) | atom);
+    }
+
+    private void add(long entry) {
+        if (heapSize == heap.length)
+            heap = Arrays.copyOf(heap, 2 * heapSize);
+        int i = heapSize++;
+        while (i > 0 && heap[(i - 1) >>> 1] > entry) {
+            heap[i] = heap[(i - 1) >>> 1];
+            i = (i - 1) >>> 1;
+        }
+        heap[i] = entry;
+    }
+
+    private long poll() {
+        long result = heap[0];
+        long last = heap[--heapSize];
+        int i = 0;
+        while (2 * i + 1 < heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && heap[child + 1] < heap[child])
+                child++;
+            if (heap[child] >= last)
+                break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return result;
+    }
+
+    private boolean isGoal(int atom, int[] goals) {
+        for (int g : goals) {
+            if (g == atom)
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,547 @@
+package aima.core.logic.propositional.inference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import aima.core.logic.propositional.kb.data.Clause;
+import aima.core.logic.propositional.kb.data.Literal;
+import aima.core.logic.propositional.kb.data.Model;
+import aima.core.logic.propositional.parsing.ast.PropositionSymbol;
+import aima.core.util.Tasks;
+
+import static aima.core.logic.propositional.kb.CompiledKnowledgeBase.literalIndex;
+
+/**
+ * Artificial Intelligence A Modern Approach (3rd Edition): page 263.<br>
+ * <br>
+ * A conflict-driven clause learning (CDCL) SAT solver, which adds the
+ * techniques of modern solvers listed on page 262 to DPLL: unit propagation
+ * with two watched literals per clause, a clause learned from each conflict
+ * (first unique implication point) with a non-chronological backjump, the
+ * VSIDS variable ordering with phase saving, and restarts after a Luby
+ * sequence of conflicts.<br>
+ * <br>
+ * The solver is incremental: clauses can be added between calls of solve()
+ * and a call can be restricted by assumption literals, which are decided
+ * first. The learned clauses only follow from the clauses, so they are kept,
+ * together with the activities of the variables, for all later calls.
+ * Variables are either created for proposition symbols or, e.g. for
+ * selector literals that switch a group of clauses on or off, without a
+ * symbol. Literals are +v and -v for a variable v &gt; 0. Instances are not
+ * thread-safe.
+ */
+public class CDCLSolver implements SATSolver {
+	private static final byte TRUE = 1;
+	private static final byte FALSE = -1;
+	private static final int RESTART_BASE = 100;
+	private static final double ACTIVITY_DECAY = 0.95;
+
+	// the symbol of each variable, null for variables without a symbol
+	private final List<PropositionSymbol> symbols = new ArrayList<>();
+	private final Map<PropositionSymbol, Integer> variables = new HashMap<>();
+	private int numberOfVariables = 0;
+	// false once the clauses are known to be unsatisfiable
+	private boolean ok = true;
+
+	private final List<int[]> clauses = new ArrayList<>();
+	private int numberOfLearnedClauses = 0;
+	// per literal index, the clauses whose first or second literal it is
+	private int[][] watches = new int[2][];
+	private int[] watchCounts = new int[2];
+
+	// per variable
+	private byte[] values = new byte[1];
+	private int[] levels = new int[1];
+	private int[] reasons = new int[1];
+	private boolean[] phases = new boolean[1];
+	private boolean[] seen = new boolean[1];
+	private double[] activities = new double[1];
+	private double activityIncrement = 1;
+
+	private int[] trail = new int[1];
+	private int trailSize = 0;
+	private int propagated = 0;
+	// the trail size at the start of each decision level
+	private int[] levelStarts = new int[1];
+	private int decisionLevel = 0;
+
+	// a binary max heap of the variables ordered by activity
+	private int[] heap = new int[1];
+	private int heapSize = 0;
+	private int[] heapPositions = new int[1];
+
+	private long numberOfConflicts = 0;
+	private long numberOfDecisions = 0;
+
+	/**
+	 *
+	 * @param symbol
+	 *            a proposition symbol.
+	 * @return the variable of the symbol, which is created on the first call.
+	 */
+	public int getVariable(PropositionSymbol symbol) {
+		Integer v = variables.get(symbol);
+		if (v == null) {
+			v = newVariable();
+			symbols.set(v, symbol);
+			variables.put(symbol, v);
+		}
+		return v;
+	}
+
+	/**
+	 *
+	 * @return a new variable without a symbol.
+	 */
+	public int newVariable() {
+		int v = ++numberOfVariables;
+		if (v == values.length) {
+			int n = 2 * v;
+			values = Arrays.copyOf(values, n);
+			levels = Arrays.copyOf(levels, n);
+			reasons = Arrays.copyOf(reasons, n);
+			phases = Arrays.copyOf(phases, n);
+			seen = Arrays.copyOf(seen, n);
+			activities = Arrays.copyOf(activities, n);
+			trail = Arrays.copyOf(trail, n);
+			levelStarts = Arrays.copyOf(levelStarts, n);
+			heap = Arrays.copyOf(heap, n);
+			heapPositions = Arrays.copyOf(heapPositions, n);
+			watches = Arrays.copyOf(watches, 2 * n);
+			watchCounts = Arrays.copyOf(watchCounts, 2 * n);
+		}
+		if (symbols.isEmpty())
+			symbols.add(null);
+		symbols.add(null);
+		heapPositions[v] = -1;
+		heapInsert(v);
+		return v;
+	}
+
+	/**
+	 *
+	 * @return the number of variables.
+	 */
+	public int getNumberOfVariables() {
+		return numberOfVariables;
+	}
+
+	/**
+	 *
+	 * @param clause
+	 *            a clause.
+	 * @return the literals of the clause, or null if the clause is always
+	 *         true.
+	 */
+	public int[] getLiterals(Clause clause) {
+		int[] literals = new int[clause.getNumberLiterals()];
+		int i = 0;
+		for (Literal l : clause.getLiterals()) {
+			if (l.isAlwaysTrue())
+				return null;
+			int v = getVariable(l.getAtomicSentence());
+			literals[i++] = l.isPositiveLiteral() ? v : -v;
+		}
+		return literals;
+	}
+
+	/**
+	 * Adds clauses to the problem.
+	 *
+	 * @param cnf
+	 *            the clauses.
+	 */
+	public void addClauses(Collection<Clause> cnf) {
+		for (Clause clause : cnf)
+			addClause(clause);
+	}
+
+	/**
+	 * Adds a clause to the problem, e.g. as the sink of a
+	 * {@link aima.core.logic.propositional.transformations.TseitinEncoder}.
+	 *
+	 * @param clause
+	 *            the clause.
+	 */
+	public void addClause(Clause clause) {
+		int[] literals = getLiterals(clause);
+		if (literals != null)
+			addClause(literals);
+	}
+
+	/**
+	 * Adds a clause to the problem.
+	 *
+	 * @param literals
+	 *            the literals of the clause, over existing variables.
+	 */
+	public void addClause(int... literals) {
+		if (!ok)
+			return;
+		int[] clause = literals.clone();
+		Arrays.sort(clause);
+		for (int l : clause) {
+			if (value(l) == TRUE || Arrays.binarySearch(clause, -l) >= 0)
+				return; // satisfied or a tautology
+		}
+		int size = 0;
+		for (int l : clause) {
+			if (value(l) != FALSE && (size == 0 || clause[size - 1] != l))
+				clause[size++] = l;
+		}
+		if (size == 0) {
+			ok = false;
+		} else if (size == 1) {
+			enqueue(clause[0], -1);
+			ok = propagate() < 0;
+		} else {
+			attach(Arrays.copyOf(clause, size));
+		}
+	}
+
+	/**
+	 * Solves the clauses added so far together with the given ones.
+	 *
+	 * @param cnf
+	 *            clauses to be added to the problem.
+	 * @return a model of the symbols or null if the clauses are unsatisfiable.
+	 */
+	@Override
+	public Model solve(Set<Clause> cnf) {
+		addClauses(cnf);
+		return solve();
+	}
+
+	/**
+	 * Solves the clauses added so far under assumptions.
+	 *
+	 * @param assumptions
+	 *            literals that have to be true in the model.
+	 * @return a model of the symbols or null if the clauses are unsatisfiable
+	 *         under the assumptions.
+	 */
+	public Model solve(int... assumptions) {
+		if (!ok)
+			return null;
+		long restarts = 0;
+		long conflictsUntilRestart = RESTART_BASE * luby(restarts);
+		while (!Tasks.currIsCancelled()) {
+			int conflict = propagate();
+			if (conflict >= 0) {
+				numberOfConflicts++;
+				conflictsUntilRestart--;
+				if (decisionLevel == 0) {
+					ok = false;
+					return null;
+				}
+				int[] learned = analyze(conflict);
+				cancelUntil(learned.length == 1 ? 0 : levels[Math.abs(learned[1])]);
+				if (learned.length == 1) {
+					enqueue(learned[0], -1);
+				} else {
+					numberOfLearnedClauses++;
+					enqueue(learned[0], attach(learned));
+				}
+				activityIncrement /= ACTIVITY_DECAY;
+			} else if (conflictsUntilRestart <= 0) {
+				cancelUntil(0);
+				conflictsUntilRestart = RESTART_BASE * luby(++restarts);
+			} else {
+				int next = 0;
+				while (decisionLevel < assumptions.length) {
+					int assumption = assumptions[decisionLevel];
+					if (value(assumption) == TRUE) {
+						newDecisionLevel();
+					} else if (value(assumption) == FALSE) {
+						cancelUntil(0);
+						return null;
+					} else {
+						next = assumption;
+						break;
+					}
+				}
+				if (next == 0) {
+					next = pickBranchLiteral();
+					if (next == 0) {
+						Model model = createModel();
+						cancelUntil(0);
+						return model;
+					}
+				}
+				numberOfDecisions++;
+				newDecisionLevel();
+				enqueue(next, -1);
+			}
+		}
+		cancelUntil(0);
+		return null;
+	}
+
+	/**
+	 *
+	 * @return the number of conflicts of all calls of solve().
+	 */
+	public long getNumberOfConflicts() {
+		return numberOfConflicts;
+	}
+
+	/**
+	 *
+	 * @return the number of decisions of all calls of solve().
+	 */
+	public long getNumberOfDecisions() {
+		return numberOfDecisions;
+	}
+
+	/**
+	 *
+	 * @return the number of learned clauses with more than one literal.
+	 */
+	public int getNumberOfLearnedClauses() {
+		return numberOfLearnedClauses;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private byte value(int literal) {
+		byte value = values[Math.abs(literal)];
+		return literal > 0 ? value : (byte) -value;
+	}
+
+	private void enqueue(int literal, int reason) {
+		int v = Math.abs(literal);
+		values[v] = literal > 0 ? TRUE : FALSE;
+		levels[v] = decisionLevel;
+		reasons[v] = reason;
+		trail[trailSize++] = literal;
+	}
+
+	private void newDecisionLevel() {
+		levelStarts[decisionLevel++] = trailSize;
+	}
+
+	private void cancelUntil(int level) {
+		if (decisionLevel > level) {
+			for (int i = trailSize - 1; i >= levelStarts[level]; i--) {
+				int v = Math.abs(trail[i]);
+				phases[v] = trail[i] > 0;
+				values[v] = 0;
+				if (heapPositions[v] < 0)
+					heapInsert(v);
+			}
+			trailSize = levelStarts[level];
+			propagated = trailSize;
+			decisionLevel = level;
+		}
+	}
+
+	// the first two literals of a clause are watched, a clause that has
+	// become unit has its implied literal first
+	private int attach(int[] clause) {
+		int ref = clauses.size();
+		clauses.add(clause);
+		watch(clause[0], ref);
+		watch(clause[1], ref);
+		return ref;
+	}
+
+	private void watch(int literal, int ref) {
+		int i = literalIndex(literal);
+		if (watches[i] == null)
+			watches[i] = new int[4];
+		else if (watchCounts[i] == watches[i].length)
+			watches[i] = Arrays.copyOf(watches[i], 2 * watchCounts[i]);
+		watches[i][watchCounts[i]++] = ref;
+	}
+
+	// returns a conflicting clause or -1
+	private int propagate() {
+		while (propagated < trailSize) {
+			int falseLiteral = -trail[propagated++];
+			int w = literalIndex(falseLiteral);
+			int[] refs = watches[w];
+			int n = watchCounts[w];
+			int i = 0;
+			int j = 0;
+			while (i < n) {
+				int ref = refs[i++];
+				int[] clause = clauses.get(ref);
+				if (clause[0] == falseLiteral) {
+					clause[0] = clause[1];
+					clause[1] = falseLiteral;
+				}
+				if (value(clause[0]) == TRUE) {
+					refs[j++] = ref;
+					continue;
+				}
+				boolean moved = false;
+				for (int k = 2; k < clause.length; k++) {
+					if (value(clause[k]) != FALSE) {
+						clause[1] = clause[k];
+						clause[k] = falseLiteral;
+						watch(clause[1], ref);
+						moved = true;
+						break;
+					}
+				}
+				if (moved)
+					continue;
+				refs[j++] = ref;
+				if (value(clause[0]) == FALSE) {
+					while (i < n)
+						refs[j++] = refs[i++];
+					watchCounts[w] = j;
+					propagated = trailSize;
+					return ref;
+				}
+				enqueue(clause[0], ref);
+			}
+			watchCounts[w] = j;
+		}
+		return -1;
+	}
+
+	// the first UIP clause of a conflict, with the asserting literal first
+	// and a literal of the backjump level second
+	private int[] analyze(int conflict) {
+		List<Integer> learned = new ArrayList<>();
+		learned.add(0);
+		int pathCount = 0;
+		int p = 0;
+		int index = trailSize - 1;
+		int ref = conflict;
+		do {
+			int[] clause = clauses.get(ref);
+			for (int k = p == 0 ? 0 : 1; k < clause.length; k++) {
+				int q = clause[k];
+				int v = Math.abs(q);
+				if (!seen[v] && levels[v] > 0) {
+					bumpActivity(v);
+					seen[v] = true;
+					if (levels[v] >= decisionLevel)
+						pathCount++;
+					else
+						learned.add(q);
+				}
+			}
+			while (!seen[Math.abs(trail[index])])
+				index--;
+			p = trail[index--];
+			ref = reasons[Math.abs(p)];
+			seen[Math.abs(p)] = false;
+			pathCount--;
+		} while (pathCount > 0);
+		learned.set(0, -p);
+
+		int[] result = new int[learned.size()];
+		int max = 1;
+		for (int k = 0; k < result.length; k++) {
+			result[k] = learned.get(k);
+			seen[Math.abs(result[k])] = false;
+			if (k > 1 && levels[Math.abs(result[k])] > levels[Math.abs(result[max])])
+				max = k;
+		}
+		if (result.length > 1) {
+			int l = result[1];
+			result[1] = result[max];
+			result[max] = l;
+		}
+		return result;
+	}
+
+	private int pickBranchLiteral() {
+		while (heapSize > 0) {
+			int v = heapRemoveMax();
+			if (values[v] == 0)
+				return phases[v] ? v : -v;
+		}
+		return 0;
+	}
+
+	private Model createModel() {
+		Map<PropositionSymbol, Boolean> assignments = new HashMap<>();
+		for (int v = 1; v <= numberOfVariables; v++) {
+			if (symbols.get(v) != null)
+				assignments.put(symbols.get(v), values[v] == TRUE);
+		}
+		return new Model(assignments);
+	}
+
+	private void bumpActivity(int v) {
+		activities[v] += activityIncrement;
+		if (activities[v] > 1e100) {
+			for (int u = 1; u <= numberOfVariables; u++)
+				activities[u] *= 1e-100;
+			activityIncrement *= 1e-100;
+		}
+		if (heapPositions[v] >= 0)
+			heapUp(heapPositions[v]);
+	}
+
+	// 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, ...
+	private static long luby(long i) {
+		long size = 1;
+		int exponent = 0;
+		while (size < i + 1) {
+			size = 2 * size + 1;
+			exponent++;
+		}
+		while (size - 1 != i) {
+			size = (size - 1) >> 1;
+			exponent--;
+			i = i % size;
+		}
+		return 1L << exponent;
+	}
+
+	private void heapInsert(int v) {
+		heapPositions[v] = heapSize;
+		heap[heapSize++] = v;
+		heapUp(heapSize - 1);
+	}
+
+	private int heapRemoveMax() {
+		int max = heap[0];
+		heapPositions[max] = -1;
+		int last = heap[--heapSize];
+		if (heapSize > 0) {
+			heap[0] = last;
+			heapPositions[last] = 0;
+			heapDown(0);
+		}
+		return max;
+	}
+
+	private void heapUp(int i) {
+		int v = heap[i];
+		while (i > 0 && activities[heap[(i - 1) >> 1]] < activities[v]) {
+			heap[i] = heap[(i - 1) >> 1];
+			heapPositions[heap[i]] = i;
+			i = (i - 1) >> 1;
+		}
+		heap[i] = v;
+		heapPositions[v] = i;
+	}
+
+	private void heapDown(int i) {
+		int v = heap[i];
+		while (2 * i + 1 < heapSize) {
+			int child = 2 * i + 1;
+			if (child + 1 < heapSize && activities[heap[child + 1]] > activities[heap[child]])
+				child++;
+			if (activities[heap[child]] <= activities[v])
+				break;
+			heap[i] = heap[child];
+			heapPositions[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = v;
+		heapPositions[v] = i;
+	}
+}
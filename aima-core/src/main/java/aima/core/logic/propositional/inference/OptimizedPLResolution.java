@@ -1,8 +1,12 @@
 package aima.core.logic.propositional.inference;
 
+import aima.core.logic.propositional.kb.CompiledKnowledgeBase;
 import aima.core.logic.propositional.kb.KnowledgeBase;
 import aima.core.logic.propositional.kb.data.Clause;
+import aima.core.logic.propositional.parsing.ast.ComplexSentence;
+import aima.core.logic.propositional.parsing.ast.Connective;
 import aima.core.logic.propositional.parsing.ast.Sentence;
+import aima.core.logic.propositional.transformations.ConvertToConjunctionOfClauses;
 import aima.core.util.Tasks;
 
 import java.util.*;
@@ -45,9 +49,15 @@ import java.util.*;
  * can be discarded. </blockquote>
  * @see Clause#isTautology()
  *
- * Additionally, this optimized implementation reduces the number of repeated
- * inferences by making sure that whenever the resolution rule is applied, one
- * of the source clauses must be new.
+ * Additionally, this optimized implementation works on the clauses of the
+ * {@link CompiledKnowledgeBase} of KB and resolves them in the order of the
+ * given-clause algorithm: the shortest clause that has not been processed yet
+ * is resolved with all processed clauses that contain a complementary literal,
+ * so that every pair of clauses is only resolved once. A clause that is
+ * subsumed by a processed clause (i.e. contains all its literals) is
+ * discarded, and a new processed clause removes the processed clauses it
+ * subsumes. Subsumption is checked on sorted int arrays, after comparing
+ * 64-bit literal signatures of the clauses.
  *
  * @author Ruediger Lunde
  * @author Ciaran O'Reilly
@@ -66,40 +76,48 @@ public class OptimizedPLResolution extends PLResolution {
 	 */
 	@Override
 	public boolean isEntailed(KnowledgeBase kb, Sentence alpha) {
+		CompiledKnowledgeBase ckb = kb.asCompiledKB();
 		/// clauses <- the set of clauses in the CNF representation of KB & ~alpha
-		Set<Clause> clauses = convertKBAndNotAlphaIntoCNF(kb, alpha);
-		int clausesOldSize = 0;
+		Queue<int[]> unprocessed = new PriorityQueue<>(
+				Comparator.comparingInt((int[] c) -> c.length));
+		for (int c = 0; c < ckb.getNumberOfClauses(); c++)
+			unprocessed.add(ckb.getClause(c));
+		Sentence notAlpha = new ComplexSentence(Connective.NOT, alpha);
+		unprocessed.addAll(ckb.compile(
+				ConvertToConjunctionOfClauses.apply(notAlpha).getClauses(), new HashMap<>()));
+		if (isDiscardTautologies())
+			unprocessed.removeIf(CompiledKnowledgeBase::isTautology);
+		ProcessedClauses processed = new ProcessedClauses();
 
 		/// loop do
-		do {
-			/// new <- {}
-			// optimization: clear within the loop!
-			Set<Clause> newClauses = new LinkedHashSet<>();
-
+		while (!unprocessed.isEmpty() && !Tasks.currIsCancelled()) {
+			int[] given = unprocessed.remove();
+			/// if resolvents contains the empty clause then return true
+			if (given.length == 0)
+				return true;
+			long signature = signature(given);
+			if (processed.isSubsumed(given, signature))
+				continue;
+			processed.removeSubsumedBy(given, signature);
+			int id = processed.add(given, signature);
 			/// for each pair of clauses C_i, C_j in clauses do
-			List<Clause> clausesList = new ArrayList<>(clauses);
-			for (int i = 0; i < clausesList.size() - 1 && !Tasks.currIsCancelled(); i++) {
-				Clause ci = clausesList.get(i);
-				// optimization: At least one of the two clauses should be new!
-				for (int j = Math.max(i + 1, clausesOldSize); j < clausesList.size(); j++) {
-					Clause cj = clausesList.get(j);
+			for (int literal : given) {
+				for (int other : processed.getOccurrences(-literal)) {
+					if (other == id || processed.clauses.get(other) == null)
+						continue;
 					/// resolvents <- PL-RESOLVE(C_i, C_j)
-					Set<Clause> resolvents = plResolve(ci, cj);
-					/// if resolvents contains the empty clause then return true
-					if (resolvents.contains(Clause.EMPTY)) {
+					int[] resolvent = resolve(given, processed.clauses.get(other), literal);
+					if (isDiscardTautologies() && CompiledKnowledgeBase.isTautology(resolvent))
+						continue;
+					if (resolvent.length == 0)
 						return true;
-					}
 					/// new <- new U resolvents
-					newClauses.addAll(resolvents);
+					if (!processed.isSubsumed(resolvent, signature(resolvent)))
+						unprocessed.add(resolvent);
 				}
 			}
-
-			clausesOldSize = clauses.size();
-			/// clauses <- clauses U new
-			clauses.addAll(newClauses);
-
 			/// if new is subset of clauses then return false
-		} while (clausesOldSize < clauses.size() && !Tasks.currIsCancelled());
+		}
 		return false;
 	}
 
@@ -121,4 +139,105 @@ public class OptimizedPLResolution extends PLResolution {
 	public OptimizedPLResolution(boolean discardTautologies) {
 		super(discardTautologies);
 	}
-}
\ No newline at end of file
+
+	//
+	// PRIVATE METHODS
+	//
+
+	// the resolvent of two sorted clauses on a literal of c1 whose complement
+	// is in c2, again sorted and without duplicates
+	private static int[] resolve(int[] c1, int[] c2, int literal) {
+		int[] result = new int[c1.length + c2.length - 2];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < c1.length || j < c2.length) {
+			if (i < c1.length && c1[i] == literal) {
+				i++;
+			} else if (j < c2.length && c2[j] == -literal) {
+				j++;
+			} else if (j == c2.length || i < c1.length && c1[i] < c2[j]) {
+				result[size++] = c1[i++];
+			} else if (i == c1.length || c2[j] < c1[i]) {
+				result[size++] = c2[j++];
+			} else {
+				result[size++] = c1[i++];
+				j++;
+			}
+		}
+		return size == result.length ? result : Arrays.copyOf(result, size);
+	}
+
+	// one bit per literal, if a clause subsumes another one, its signature is
+	// a subset of the signature of the other clause
+	private static long signature(int[] clause) {
+		long signature = 0;
+		for (int literal : clause)
+			signature |= 1L << (CompiledKnowledgeBase.literalIndex(literal) & 63);
+		return signature;
+	}
+
+	// true if every literal of the sorted clause c1 is in the sorted clause c2
+	private static boolean isSubset(int[] c1, int[] c2) {
+		if (c1.length > c2.length)
+			return false;
+		int j = 0;
+		for (int literal : c1) {
+			while (j < c2.length && c2[j] < literal)
+				j++;
+			if (j == c2.length || c2[j] != literal)
+				return false;
+			j++;
+		}
+		return true;
+	}
+
+	/**
+	 * The clauses that have already been resolved with each other, indexed by
+	 * their literals. Clauses that are found to be subsumed later on are set
+	 * to null.
+	 */
+	private static class ProcessedClauses {
+		private final List<int[]> clauses = new ArrayList<>();
+		private final List<Long> signatures = new ArrayList<>();
+		private final Map<Integer, List<Integer>> occurrences = new HashMap<>();
+
+		int add(int[] clause, long signature) {
+			int id = clauses.size();
+			clauses.add(clause);
+			signatures.add(signature);
+			for (int literal : clause)
+				occurrences.computeIfAbsent(literal, l -> new ArrayList<>()).add(id);
+			return id;
+		}
+
+		List<Integer> getOccurrences(int literal) {
+			return occurrences.getOrDefault(literal, Collections.emptyList());
+		}
+
+		// forward subsumption: a clause that subsumes the given one shares
+		// its first literal with it
+		boolean isSubsumed(int[] clause, long signature) {
+			for (int literal : clause) {
+				for (int id : getOccurrences(literal)) {
+					int[] other = clauses.get(id);
+					if (other != null && other[0] == literal
+							&& (signatures.get(id) & ~signature) == 0 && isSubset(other, clause))
+						return true;
+				}
+			}
+			return false;
+		}
+
+		// backward subsumption: the clauses subsumed by the given one
+		// contain its first literal
+		void removeSubsumedBy(int[] clause, long signature) {
+			for (int id : getOccurrences(clause[0])) {
+				int[] other = clauses.get(id);
+				if (other != null && (signature & ~signatures.get(id)) == 0
+						&& isSubset(clause, other))
+					clauses.set(id, null);
+			}
+		}
+	}
+}
@@ -1,17 +1,8 @@
 package aima.core.logic.propositional.inference;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.Queue;
-import java.util.Set;
-
+import aima.core.logic.propositional.kb.CompiledKnowledgeBase;
 import aima.core.logic.propositional.kb.KnowledgeBase;
-import aima.core.logic.propositional.kb.data.Clause;
 import aima.core.logic.propositional.parsing.ast.PropositionSymbol;
-import aima.core.logic.propositional.transformations.ConvertToConjunctionOfClauses;
-import aima.core.logic.propositional.transformations.SymbolCollector;
 
 /**
  * Artificial Intelligence A Modern Approach (3rd Edition): page 258.<br>
@@ -49,8 +40,13 @@ import aima.core.logic.propositional.transformations.SymbolCollector;
  * which symbols have been processed; a symbol that is already in the set of
  * inferred symbols need not be added to the agenda again. This avoids redundant
  * work and prevents loops caused by implications such as P &rArr; Q and Q
- * &rArr; P.
- * 
+ * &rArr; P.<br>
+ * <br>
+ * Note: the algorithm works on the {@link CompiledKnowledgeBase} of the KB, so
+ * count, inferred and the agenda are plain int and boolean arrays and the
+ * occurrence lists of the negative literals provide the index from p to the
+ * clauses where p appears in the premise.
+ *
  * @author Ciaran O'Reilly
  * @author Ravi Mohan
  * @author Mike Stampone
@@ -70,38 +66,53 @@ public class PLFCEntails {
 	 *             if KB contains any non-definite clauses.
 	 */
 	public boolean isEntailed(KnowledgeBase kb, PropositionSymbol q) {
+		CompiledKnowledgeBase ckb = kb.asCompiledKB();
+		int query = ckb.getId(q);
 		// count <- a table, where count[c] is the number of symbols in c's
 		// premise
-		Map<Clause, Integer> count = initializeCount(kb);
+		int[] count = new int[ckb.getNumberOfClauses()];
 		// inferred <- a table, where inferred[s] is initially false for all
 		// symbols
-		Map<PropositionSymbol, Boolean> inferred = initializeInferred(kb);
+		boolean[] inferred = new boolean[ckb.getNumberOfSymbols() + 1];
 		// agenda <- a queue of symbols, initially symbols known to be true in
 		// KB
-		Queue<PropositionSymbol> agenda = initializeAgenda(count);
-		// Note: an index for p to the clauses where p appears in the premise
-		Map<PropositionSymbol, Set<Clause>> pToClausesWithPInPremise = initializeIndex(
-				count, inferred);
+		int[] agenda = new int[ckb.getNumberOfClauses()];
+		int head = 0;
+		int tail = 0;
+		for (int c = 0; c < count.length; c++) {
+			int[] clause = ckb.getClause(c);
+			// Note: the clause is sorted, so its only positive literal is the
+			// last one and the others comprise the premise
+			int last = clause.length - 1;
+			if (last < 0 || clause[last] < 0 || last > 0 && clause[last - 1] > 0) {
+				throw new IllegalArgumentException(
+						"Knowledge Base contains non-definite clauses:" + ckb.getSourceClause(c));
+			}
+			count[c] = clause.length - 1;
+			if (count[c] == 0) {
+				agenda[tail++] = clause[0];
+			}
+		}
 
 		// while agenda is not empty do
-		while (!agenda.isEmpty()) {
+		while (head < tail) {
 			// p <- Pop(agenda)
-			PropositionSymbol p = agenda.remove();
+			int p = agenda[head++];
 			// if p = q then return true
-			if (p.equals(q)) {
+			if (p == query) {
 				return true;
 			}
 			// if inferred[p] = false then
-			if (inferred.get(p).equals(Boolean.FALSE)) {
+			if (!inferred[p]) {
 				// inferred[p] <- true
-				inferred.put(p, true);
+				inferred[p] = true;
 				// for each clause c in KB where p is in c.PREMISE do
-				for (Clause c : pToClausesWithPInPremise.get(p)) {
+				for (int c : ckb.getOccurrences(-p)) {
 					// decrement count[c]
-					decrement(count, c);
 					// if count[c] = 0 then add c.CONCLUSION to agenda
-					if (count.get(c) == 0) {
-						agenda.add(conclusion(c));
+					if (--count[c] == 0) {
+						int[] clause = ckb.getClause(c);
+						agenda[tail++] = clause[clause.length - 1];
 					}
 				}
 			}
@@ -110,90 +121,4 @@ public class PLFCEntails {
 		// return false
 		return false;
 	}
-
-	//
-	// SUPPORTING CODE
-	//
-
-	//
-	// PROTECTED
-	//
-	protected Map<Clause, Integer> initializeCount(KnowledgeBase kb) {
-		// count <- a table, where count[c] is the number of symbols in c's
-		// premise
-		Map<Clause, Integer> count = new HashMap<Clause, Integer>();
-
-		Set<Clause> clauses = ConvertToConjunctionOfClauses.apply(
-				kb.asSentence()).getClauses();
-		for (Clause c : clauses) {
-			if (!c.isDefiniteClause()) {
-				throw new IllegalArgumentException(
-						"Knowledge Base contains non-definite clauses:" + c);
-			}
-			// Note: # of negative literals is equivalent to the number of
-			// symbols in c's premise
-			count.put(c, c.getNumberNegativeLiterals());
-		}
-
-		return count;
-	}
-
-	protected Map<PropositionSymbol, Boolean> initializeInferred(KnowledgeBase kb) {
-		// inferred <- a table, where inferred[s] is initially false for all
-		// symbols
-		Map<PropositionSymbol, Boolean> inferred = new HashMap<PropositionSymbol, Boolean>();
-		for (PropositionSymbol p : SymbolCollector.getSymbolsFrom(kb
-				.asSentence())) {
-			inferred.put(p, false);
-		}
-		return inferred;
-	}
-
-	// Note: at the point of calling this routine, count will contain all the
-	// clauses in KB.
-	protected Queue<PropositionSymbol> initializeAgenda(Map<Clause, Integer> count) {
-		// agenda <- a queue of symbols, initially symbols known to be true in
-		// KB
-		Queue<PropositionSymbol> agenda = new LinkedList<PropositionSymbol>();
-		for (Clause c : count.keySet()) {
-			// No premise just a conclusion, then we know its true
-			if (c.getNumberNegativeLiterals() == 0) {
-				agenda.add(conclusion(c));
-			}
-		}
-		return agenda;
-	}
-
-	// Note: at the point of calling this routine, count will contain all the
-	// clauses in KB while inferred will contain all the proposition symbols.
-	protected Map<PropositionSymbol, Set<Clause>> initializeIndex(
-			Map<Clause, Integer> count, Map<PropositionSymbol, Boolean> inferred) {
-		Map<PropositionSymbol, Set<Clause>> pToClausesWithPInPremise = new HashMap<PropositionSymbol, Set<Clause>>();
-		for (PropositionSymbol p : inferred.keySet()) {
-			Set<Clause> clausesWithPInPremise = new HashSet<Clause>();
-			for (Clause c : count.keySet()) {
-				// Note: The negative symbols comprise the premise
-				if (c.getNegativeSymbols().contains(p)) {
-					clausesWithPInPremise.add(c);
-				}
-			}
-			pToClausesWithPInPremise.put(p, clausesWithPInPremise);
-		}
-		return pToClausesWithPInPremise;
-	}
-
-	protected void decrement(Map<Clause, Integer> count, Clause c) {
-		int currentCount = count.get(c);
-		// Note: a definite clause can just be a fact (i.e. 1 positive literal)
-		// However, we only decrement those where the symbol is in the premise
-		// so we don't need to worry about going < 0.
-		count.put(c, currentCount - 1);
-	}
-
-	protected PropositionSymbol conclusion(Clause c) {
-		// Note: the conclusion is from the single positive
-		// literal in the definite clause (which we are
-		// restricted to).
-		return c.getPositiveSymbols().iterator().next();
-	}
 }
\ No newline at end of file
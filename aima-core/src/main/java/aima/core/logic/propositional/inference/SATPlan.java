@@ -1,12 +1,18 @@
 package aima.core.logic.propositional.inference;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import aima.core.agent.Action;
 import aima.core.logic.propositional.kb.data.Clause;
 import aima.core.logic.propositional.kb.data.Model;
-import aima.core.logic.propositional.parsing.ast.ComplexSentence;
 import aima.core.logic.propositional.parsing.ast.Sentence;
 import aima.core.logic.propositional.transformations.ConvertToConjunctionOfClauses;
 
@@ -33,7 +39,12 @@ import aima.core.logic.propositional.transformations.ConvertToConjunctionOfClaus
  * sentence in which the goal is asserted to hold at a fixed time step t and axioms are included
  * for each time step up to t. If the satisfiability algorithm finds a model, then a plan is
  * extracted by looking at those proposition symbols that refer to actions and are assigned true
- * in the model. If no model exists, then the process is repeated with the goal moved one step later. 
+ * in the model. If no model exists, then the process is repeated with the goal moved one step later.<br>
+ * <br>
+ * Note: the assertions are split into their conjuncts and the clauses of each conjunct are
+ * cached, so that the translation for t only converts the conjuncts that are new at t. See
+ * satPlanIncrementally() for a version that also keeps the solver from one t to the next. The
+ * time taken for each t is recorded.
  * 
  * @author Ciaran O'Reilly
  */
@@ -57,13 +68,17 @@ public class SATPlan {
 	 *         null if no solution is found (i.e failure)
 	 */
 	public List<Action> satPlan(Describe init, Describe transition, Describe goal, int tMax) {
+		horizonTimes.clear();
+		cnfCache.clear();
 		
 		// for t = 0 to T<sub>max</sub> do
 		for (int t = 0; t <= tMax; t++) {
+			long start = System.nanoTime();
 			// cnf &larr;  TRANSLATE-TO-SAT(init, transition, goal, t)
 			Set<Clause> cnf = translateToSAT(init, transition, goal, t);
 			// model &larr; SAT-SOLVER(cnf)
 			Model model = satSolver.solve(cnf);
+			horizonTimes.add(System.nanoTime() - start);
 			// if model is not null then
 			if (model != null) {
 				// return EXTRACT-SOLUTION(model)
@@ -75,13 +90,82 @@ public class SATPlan {
 		return null;
 	}
 	
+	/**
+	 * An incremental version of SATPlan, which keeps one {@link CDCLSolver}
+	 * for all time steps. For each t, only the clauses of the init and
+	 * transition assertions that have not been added for an earlier t are
+	 * added. The goal clauses at t are extended by the negation of a new
+	 * selector literal g<sub>t</sub> and the solver is called with the
+	 * assumption g<sub>t</sub>, so that they can be switched off for good
+	 * (by the unit clause &not;g<sub>t</sub>) when the goal cannot be
+	 * reached at t. The clauses learned and the variable activities of the
+	 * solver therefore carry over to the following time steps.
+	 * 
+	 * @param init
+	 *            provides a collection of assertions about the initial state.
+	 * @param transition
+	 *            provides the successor-state axioms for all possible actions
+	 *            at each time step up to some maximum t.
+	 * @param goal
+	 *            provides the assertion that the goal is achieved at time t.
+	 * @param tMax
+	 *            the maximum number of time steps in which the goal is to be
+	 *            achieved in.
+	 * @return a list of actions describing a solution for the given problem or
+	 *         null if no solution is found (i.e failure)
+	 */
+	public List<Action> satPlanIncrementally(Describe init, Describe transition, Describe goal, int tMax) {
+		horizonTimes.clear();
+		cnfCache.clear();
+		CDCLSolver solver = new CDCLSolver();
+		Set<Sentence> asserted = new HashSet<>();
+		
+		for (int t = 0; t <= tMax; t++) {
+			long start = System.nanoTime();
+			for (Sentence s : Arrays.asList(init.assertions(t), transition.assertions(t))) {
+				for (Sentence conjunct : conjuncts(s)) {
+					if (asserted.add(conjunct))
+						solver.addClauses(clausesOf(conjunct));
+				}
+			}
+			int selector = solver.newVariable();
+			for (Sentence conjunct : conjuncts(goal.assertions(t))) {
+				for (Clause c : clausesOf(conjunct)) {
+					int[] literals = solver.getLiterals(c);
+					if (literals != null) {
+						literals = Arrays.copyOf(literals, literals.length + 1);
+						literals[literals.length - 1] = -selector;
+						solver.addClause(literals);
+					}
+				}
+			}
+			Model model = solver.solve(selector);
+			solver.addClause(-selector);
+			horizonTimes.add(System.nanoTime() - start);
+			if (model != null) {
+				return solutionExtractor.extractSolution(model);
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * 
+	 * @return the time in nanoseconds spent on translating and solving the
+	 *         problem for each t of the last call of satPlan() or
+	 *         satPlanIncrementally().
+	 */
+	public List<Long> getHorizonTimes() {
+		return Collections.unmodifiableList(horizonTimes);
+	}
+	
 	//
 	// SUPPORTING CODE
 	/**
 	 * Interface to be implemented to describe different aspects of a given problem.
 	 *
 	 */
-	interface Describe {
+	public interface Describe {
 		Sentence assertions(int t);
 	}
 	
@@ -89,23 +173,65 @@ public class SATPlan {
 	 * Interface to be implemented to extract a solution from a satisfiable model.
 	 *
 	 */
-	interface SolutionExtractor {
+	public interface SolutionExtractor {
 		List<Action> extractSolution(Model model);
 	}
 	
 	private SATSolver         satSolver         = null;
 	private SolutionExtractor solutionExtractor = null;
+	// the clauses of the conjuncts of the assertions, which mostly stay the
+	// same from one t to the next
+	private Map<Sentence, Set<Clause>> cnfCache = new HashMap<>();
+	private List<Long> horizonTimes = new ArrayList<>();
 	
 	public SATPlan(SATSolver satSolver, SolutionExtractor solutionExtractor) {
 		this.satSolver         = satSolver;
 		this.solutionExtractor = solutionExtractor;
 	}
 	
+	/**
+	 * Constructor for satPlanIncrementally(), satPlan() uses a new
+	 * {@link CDCLSolver} for each t.
+	 * 
+	 * @param solutionExtractor
+	 *            extracts the solution from a model.
+	 */
+	public SATPlan(SolutionExtractor solutionExtractor) {
+		this(cnf -> new CDCLSolver().solve(cnf), solutionExtractor);
+	}
+	
 	//
 	// PROTECTED
 	//
 	protected Set<Clause> translateToSAT(Describe init, Describe transition, Describe goal, int t) {
-		Sentence s = ComplexSentence.newConjunction(init.assertions(t), transition.assertions(t), goal.assertions(t));		
-		return ConvertToConjunctionOfClauses.apply(s).getClauses();
+		Set<Clause> cnf = new LinkedHashSet<>();
+		for (Sentence s : Arrays.asList(init.assertions(t), transition.assertions(t), goal.assertions(t))) {
+			for (Sentence conjunct : conjuncts(s))
+				cnf.addAll(clausesOf(conjunct));
+		}
+		return cnf;
+	}
+	
+	//
+	// PRIVATE
+	//
+	private List<Sentence> conjuncts(Sentence s) {
+		List<Sentence> result = new ArrayList<>();
+		collectConjuncts(s, result);
+		return result;
+	}
+	
+	private void collectConjuncts(Sentence s, List<Sentence> result) {
+		if (s.isAndSentence()) {
+			for (int i = 0; i < s.getNumberSimplerSentences(); i++)
+				collectConjuncts(s.getSimplerSentence(i), result);
+		} else {
+			result.add(s);
+		}
+	}
+	
+	private Set<Clause> clausesOf(Sentence conjunct) {
+		return cnfCache.computeIfAbsent(conjunct,
+				s -> ConvertToConjunctionOfClauses.apply(s).getClauses());
 	}
-}
\ No newline at end of file
+}
@@ -1,12 +1,17 @@
 package aima.core.logic.propositional.inference;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
 
+import aima.core.logic.propositional.kb.CompiledKnowledgeBase;
 import aima.core.logic.propositional.kb.KnowledgeBase;
 import aima.core.logic.propositional.kb.data.Model;
 import aima.core.logic.propositional.parsing.ast.PropositionSymbol;
 import aima.core.logic.propositional.parsing.ast.Sentence;
+import aima.core.logic.propositional.transformations.ConvertToConjunctionOfClauses;
 import aima.core.logic.propositional.transformations.SymbolCollector;
 import aima.core.util.Util;
 
@@ -41,7 +46,13 @@ import aima.core.util.Util;
  * entailment. (TT stands for truth table.) PL-TRUE? returns true if a sentence
  * holds within a model. The variable model represents a partional model - an
  * assignment to some of the symbols. The keyword <b>"and"</b> is used here as a
- * logical operation on its two arguments, returning true or false.
+ * logical operation on its two arguments, returning true or false.<br>
+ * <br>
+ * Note: if KB and &alpha; have at most 62 symbols, the models are enumerated
+ * as the values of a long counter and the clauses of the
+ * {@link CompiledKnowledgeBase} of KB and of the CNF of &alpha; are evaluated
+ * with two bitmasks each. Models in which a clause of KB is false are skipped
+ * in blocks. Larger problems are checked with TT-CHECK-ALL.
  *
  * @author Ciaran O'Reilly
  * @author Ravi Mohan
@@ -49,6 +60,8 @@ import aima.core.util.Util;
  * @author Ruediger Lunde
  */
 public class TTEntails implements EntailmentChecker {
+	// the models of up to this many symbols are enumerated with a counter
+	private static final int MAX_ENUMERATED_SYMBOLS = 62;
 
 	/**
 	 * function TT-ENTAILS?(KB, &alpha;) returns true or false.
@@ -61,6 +74,13 @@ public class TTEntails implements EntailmentChecker {
 	 * @return true if KB entails &alpha;, false otherwise.
 	 */
 	public boolean isEntailed(KnowledgeBase kb, Sentence alpha) {
+		CompiledKnowledgeBase ckb = kb.asCompiledKB();
+		Map<PropositionSymbol, Integer> alphaSymbolIds = new HashMap<>();
+		List<int[]> alphaClauses = ckb.compile(
+				ConvertToConjunctionOfClauses.apply(alpha).getClauses(), alphaSymbolIds);
+		if (ckb.getNumberOfSymbols() + alphaSymbolIds.size() <= MAX_ENUMERATED_SYMBOLS)
+			return ttCheckAll(ckb, alphaClauses, ckb.getNumberOfSymbols() + alphaSymbolIds.size());
+
 		// symbols <- a list of proposition symbols in KB and &alpha
 		List<PropositionSymbol> symbols = new ArrayList<PropositionSymbol>(
 				SymbolCollector.getSymbolsFrom(kb.asSentence(), alpha));
@@ -109,4 +129,60 @@ public class TTEntails implements EntailmentChecker {
 		return ttCheckAll(kb, alpha, rest, model.union(p, true))
 				&& ttCheckAll(kb, alpha, rest, model.union(p, false));
 	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	// Enumerates the models as the values of a counter, whose bit id - 1 is
+	// the value of the symbol with the id. A clause with the bitmasks pos and
+	// neg of its positive and negative literals is true in model m if
+	// (m & pos) != 0 || (~m & neg) != 0.
+	private boolean ttCheckAll(CompiledKnowledgeBase kb, List<int[]> alphaClauses,
+			int numberOfSymbols) {
+		long[] kbMasks = masks(kb.getNumberOfClauses(), kb::getClause);
+		long[] alphaMasks = masks(alphaClauses.size(), alphaClauses::get);
+		long end = 1L << numberOfSymbols;
+		for (int c = 0; c < kbMasks.length; c += 2) {
+			// KB contains the empty clause and is always false
+			if ((kbMasks[c] | kbMasks[c + 1]) == 0)
+				return true;
+		}
+		long m = 0;
+		while (m < end) {
+			int falseClause = firstFalseClause(kbMasks, m);
+			if (falseClause >= 0) {
+				// the clause stays false until one of its symbols changes, so
+				// the models that only differ in lower bits can be skipped
+				long symbols = kbMasks[falseClause] | kbMasks[falseClause + 1];
+				m = (m | (Long.lowestOneBit(symbols) - 1)) + 1;
+			} else {
+				if (firstFalseClause(alphaMasks, m) >= 0)
+					return false;
+				m++;
+			}
+		}
+		return true;
+	}
+
+	private long[] masks(int numberOfClauses, IntFunction<int[]> clauses) {
+		long[] masks = new long[2 * numberOfClauses];
+		for (int c = 0; c < numberOfClauses; c++) {
+			for (int literal : clauses.apply(c)) {
+				if (literal > 0)
+					masks[2 * c] |= 1L << (literal - 1);
+				else
+					masks[2 * c + 1] |= 1L << (-literal - 1);
+			}
+		}
+		return masks;
+	}
+
+	private int firstFalseClause(long[] masks, long m) {
+		for (int c = 0; c < masks.length; c += 2) {
+			if ((m & masks[c]) == 0 && (~m & masks[c + 1]) == 0)
+				return c;
+		}
+		return -1;
+	}
 }
\ No newline at end of file
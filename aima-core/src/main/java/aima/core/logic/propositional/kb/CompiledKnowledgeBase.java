@@ -0,0 +1,227 @@
+package aima.core.logic.propositional.kb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import aima.core.logic.propositional.kb.data.Clause;
+import aima.core.logic.propositional.kb.data.Literal;
+import aima.core.logic.propositional.parsing.ast.PropositionSymbol;
+
+/**
+ * The clauses of a knowledge base in a form that the inference procedures can
+ * work on without hashing sentences: every proposition symbol is interned to
+ * an id 1, 2, ..., n and every literal is an int, +id for a positive and -id
+ * for a negative literal (as in the DIMACS format). A clause is the sorted
+ * array of its literals, without duplicates. For each literal, the indices of
+ * the clauses that contain it are kept in an occurrence list.<br>
+ * <br>
+ * Clauses that contain a literal which is always true (True or ~False) are
+ * left out, literals which are always false are already removed by
+ * {@link Clause}. A compiled knowledge base does not change, see
+ * {@link KnowledgeBase#asCompiledKB()} for one that is kept up to date.
+ */
+public class CompiledKnowledgeBase {
+	private final List<PropositionSymbol> symbols = new ArrayList<>();
+	private final Map<PropositionSymbol, Integer> symbolIds = new HashMap<>();
+	private final List<Clause> sourceClauses = new ArrayList<>();
+	private final int[][] clauses;
+	// indexed by literalIndex(literal)
+	private final int[][] occurrences;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param cnf
+	 *            the clauses of a knowledge base.
+	 */
+	public CompiledKnowledgeBase(Collection<Clause> cnf) {
+		symbols.add(null); // no symbol has the id 0
+		List<int[]> compiled = new ArrayList<>();
+		for (Clause c : cnf) {
+			int[] clause = compile(c, symbolIds, true);
+			if (clause != null) {
+				compiled.add(clause);
+				sourceClauses.add(c);
+			}
+		}
+		clauses = compiled.toArray(new int[compiled.size()][]);
+
+		int[] count = new int[2 * symbols.size()];
+		for (int[] clause : clauses)
+			for (int literal : clause)
+				count[literalIndex(literal)]++;
+		occurrences = new int[count.length][];
+		for (int i = 0; i < count.length; i++)
+			occurrences[i] = new int[count[i]];
+		Arrays.fill(count, 0);
+		for (int c = 0; c < clauses.length; c++)
+			for (int literal : clauses[c])
+				occurrences[literalIndex(literal)][count[literalIndex(literal)]++] = c;
+	}
+
+	/**
+	 *
+	 * @return the number of symbols, which is also the greatest id.
+	 */
+	public int getNumberOfSymbols() {
+		return symbols.size() - 1;
+	}
+
+	/**
+	 *
+	 * @param id
+	 *            the id of a symbol, from 1 to getNumberOfSymbols().
+	 * @return the symbol with the id.
+	 */
+	public PropositionSymbol getSymbol(int id) {
+		return symbols.get(id);
+	}
+
+	/**
+	 *
+	 * @param symbol
+	 *            a proposition symbol.
+	 * @return the id of the symbol or 0 if it does not occur in the knowledge
+	 *         base.
+	 */
+	public int getId(PropositionSymbol symbol) {
+		Integer id = symbolIds.get(symbol);
+		return id != null ? id : 0;
+	}
+
+	/**
+	 *
+	 * @return the number of clauses.
+	 */
+	public int getNumberOfClauses() {
+		return clauses.length;
+	}
+
+	/**
+	 *
+	 * @param index
+	 *            the index of a clause.
+	 * @return the sorted literals of the clause. The array must not be
+	 *         modified.
+	 */
+	public int[] getClause(int index) {
+		return clauses[index];
+	}
+
+	/**
+	 *
+	 * @param index
+	 *            the index of a clause.
+	 * @return the clause the compiled clause has been created from.
+	 */
+	public Clause getSourceClause(int index) {
+		return sourceClauses.get(index);
+	}
+
+	/**
+	 *
+	 * @param literal
+	 *            a literal over a symbol of the knowledge base.
+	 * @return the indices of the clauses that contain the literal, in
+	 *         ascending order. The array must not be modified.
+	 */
+	public int[] getOccurrences(int literal) {
+		return occurrences[literalIndex(literal)];
+	}
+
+	/**
+	 * Compiles additional clauses, e.g. the ones of a query, with the ids of
+	 * this knowledge base. Symbols that do not occur in the knowledge base are
+	 * given the ids getNumberOfSymbols() + 1, ... in the order they are found
+	 * and are recorded in a map that the caller provides, so that several
+	 * calls can share them.
+	 *
+	 * @param cnf
+	 *            the clauses to be compiled.
+	 * @param newSymbolIds
+	 *            the ids of the symbols that are not in the knowledge base.
+	 * @return the compiled clauses, without the ones that are always true.
+	 */
+	public List<int[]> compile(Collection<Clause> cnf,
+			Map<PropositionSymbol, Integer> newSymbolIds) {
+		List<int[]> result = new ArrayList<>();
+		for (Clause c : cnf) {
+			int[] clause = compile(c, newSymbolIds, false);
+			if (clause != null)
+				result.add(clause);
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @param literal
+	 *            a literal.
+	 * @return 2 * id for positive and 2 * id + 1 for negative literals, so that
+	 *         per literal data can be kept in arrays.
+	 */
+	public static int literalIndex(int literal) {
+		return literal > 0 ? 2 * literal : -2 * literal + 1;
+	}
+
+	/**
+	 *
+	 * @param clause
+	 *            a sorted clause.
+	 * @return true if the clause contains a literal and its complement.
+	 */
+	public static boolean isTautology(int[] clause) {
+		// negative literals come first, in descending order of their ids
+		for (int i = 0, j = clause.length - 1; i < j && clause[i] < 0 && clause[j] > 0;) {
+			if (-clause[i] == clause[j])
+				return true;
+			if (-clause[i] < clause[j])
+				j--;
+			else
+				i++;
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int[] clause : clauses) {
+			if (sb.length() > 0)
+				sb.append(", ");
+			sb.append(Arrays.toString(clause));
+		}
+		return sb.toString();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private int[] compile(Clause c, Map<PropositionSymbol, Integer> ids,
+			boolean intern) {
+		int[] clause = new int[c.getNumberLiterals()];
+		int size = 0;
+		for (Literal l : c.getLiterals()) {
+			if (l.isAlwaysTrue())
+				return null;
+			PropositionSymbol symbol = l.getAtomicSentence();
+			Integer id = symbolIds.get(symbol);
+			if (id == null) {
+				id = ids.get(symbol);
+				if (id == null) {
+					id = intern ? symbols.size() : symbols.size() + ids.size();
+					ids.put(symbol, id);
+					if (intern)
+						symbols.add(symbol);
+				}
+			}
+			clause[size++] = l.isPositiveLiteral() ? id : -id;
+		}
+		Arrays.sort(clause, 0, size);
+		return size == clause.length ? clause : Arrays.copyOf(clause, size);
+	}
+}
@@ -24,6 +24,7 @@ public class KnowledgeBase {
 	private ConjunctionOfClauses asCNF = new ConjunctionOfClauses(Collections.emptySet());
 	private Set<PropositionSymbol> symbols = new LinkedHashSet<>();
 	private PLParser parser = new PLParser();
+	private CompiledKnowledgeBase compiled = null;
 
 
 	/**
@@ -48,6 +49,7 @@ public class KnowledgeBase {
 			sentences.add(aSentence);
 			asCNF = asCNF.extend(ConvertToConjunctionOfClauses.apply(aSentence).getClauses());
 			symbols.addAll(SymbolCollector.getSymbolsFrom(aSentence));
+			compiled = null;
 		}
 	}
 
@@ -93,6 +95,19 @@ public class KnowledgeBase {
 		return asCNF.getClauses();
 	}
 	
+	/**
+	 * The compiled form is created on the first call and reused until the
+	 * next sentence is added, so that repeated queries do not convert the
+	 * knowledge base again.
+	 * 
+	 * @return the clauses of the Knowledge Base with integer literals.
+	 */
+	public CompiledKnowledgeBase asCompiledKB() {
+		if (compiled == null)
+			compiled = new CompiledKnowledgeBase(asCNF());
+		return compiled;
+	}
+
 	/**
 	 * 
 	 * @return a unique set of the symbols currently contained in the Knowledge Base.
@@ -0,0 +1,352 @@
+package aima.core.logic.propositional.transformations;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import aima.core.logic.propositional.kb.data.Clause;
+import aima.core.logic.propositional.kb.data.ConjunctionOfClauses;
+import aima.core.logic.propositional.kb.data.Literal;
+import aima.core.logic.propositional.parsing.ast.Connective;
+import aima.core.logic.propositional.parsing.ast.PropositionSymbol;
+import aima.core.logic.propositional.parsing.ast.Sentence;
+
+/**
+ * Converts sentences into clauses that are satisfiable exactly if the
+ * sentences are (equisatisfiable), but not equivalent to them: every compound
+ * sub-sentence gets a new proposition symbol x and clauses that define x as
+ * the sub-sentence, so the clauses grow linearly with the sentences instead
+ * of exponentially as with {@link ConvertToConjunctionOfClauses} (Tseitin,
+ * 1968). With the Plaisted-Greenbaum optimization, which is the default, only
+ * the direction of each definition that the polarity of its occurrences
+ * requires is generated. Models of the clauses, restricted to the original
+ * symbols, are models of the sentences.<br>
+ * <br>
+ * Sub-sentences are hash-consed: nested conjunctions and disjunctions are
+ * flattened, their operands are sorted, and structurally equal
+ * sub-sentences share one definition, also across calls of encode(). The
+ * clauses are passed to a sink as they are generated, e.g. to a
+ * {@link aima.core.logic.propositional.inference.CDCLSolver}, instead of
+ * being collected. The symbols of the definitions are named
+ * {@value #DEFINITION_PREFIX}0, {@value #DEFINITION_PREFIX}1, ..., sentences
+ * that use these names themselves are rejected.
+ */
+public class TseitinEncoder {
+	public static final String DEFINITION_PREFIX = "$Def";
+
+	private static final int SYMBOL = 0;
+	private static final int AND = 1;
+	private static final int OR = 2;
+	private static final int IFF = 3;
+
+	private final Consumer<Clause> sink;
+	private final boolean plaistedGreenbaum;
+	// nodes 1, 2, ..., a literal is +node or -node
+	private final List<PropositionSymbol> symbols = new ArrayList<>();
+	private final List<Node> nodes = new ArrayList<>();
+	private final Map<PropositionSymbol, Integer> symbolNodes = new HashMap<>();
+	private final Map<Node, Integer> definitions = new HashMap<>();
+	// the nodes whose definition has been generated for positive or
+	// negative occurrences
+	private final BitSet positiveDone = new BitSet();
+	private final BitSet negativeDone = new BitSet();
+	private int numberOfDefinitions = 0;
+	private int numberOfClauses = 0;
+
+	/**
+	 * Constructor for an encoder with the Plaisted-Greenbaum optimization.
+	 *
+	 * @param sink
+	 *            receives the clauses.
+	 */
+	public TseitinEncoder(Consumer<Clause> sink) {
+		this(sink, true);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param sink
+	 *            receives the clauses.
+	 * @param plaistedGreenbaum
+	 *            true if only the directions of the definitions required by
+	 *            the polarities are to be generated, false for both.
+	 */
+	public TseitinEncoder(Consumer<Clause> sink, boolean plaistedGreenbaum) {
+		this.sink = sink;
+		this.plaistedGreenbaum = plaistedGreenbaum;
+		symbols.add(null);
+		nodes.add(null);
+	}
+
+	/**
+	 * Returns the clauses of a sentence.
+	 *
+	 * @param s
+	 *            a propositional logic sentence.
+	 * @return clauses that are satisfiable if and only if the sentence is.
+	 */
+	public static ConjunctionOfClauses apply(Sentence s) {
+		Set<Clause> clauses = new LinkedHashSet<>();
+		new TseitinEncoder(clauses::add).encode(s);
+		return new ConjunctionOfClauses(clauses);
+	}
+
+	/**
+	 * Passes the clauses that assert a sentence to the sink.
+	 *
+	 * @param s
+	 *            a propositional logic sentence.
+	 */
+	public void encode(Sentence s) {
+		for (Sentence conjunct : operands(s, Connective.AND)) {
+			int literal = literalOf(conjunct);
+			Node node = nodes.get(Math.abs(literal));
+			if (literal > 0 && node.type == OR) {
+				// a clause of its own, without a definition
+				emit(node.children);
+				for (int child : node.children)
+					require(child);
+			} else {
+				emit(literal);
+				require(literal);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of symbols introduced for definitions.
+	 */
+	public int getNumberOfDefinitions() {
+		return numberOfDefinitions;
+	}
+
+	/**
+	 *
+	 * @return the number of clauses passed to the sink.
+	 */
+	public int getNumberOfClauses() {
+		return numberOfClauses;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	// the literal of a sentence, visiting the sentence in post-order with an
+	// explicit stack, so that deeply nested sentences can be encoded
+	private int literalOf(Sentence root) {
+		Map<Sentence, Integer> literals = new IdentityHashMap<>();
+		Deque<Sentence> stack = new ArrayDeque<>();
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			Sentence s = stack.peek();
+			if (literals.containsKey(s)) {
+				stack.pop();
+			} else if (s.isPropositionSymbol()) {
+				literals.put(s, symbolNode((PropositionSymbol) s));
+				stack.pop();
+			} else {
+				List<Sentence> operands = operands(s, s.getConnective());
+				boolean ready = true;
+				for (Sentence operand : operands) {
+					if (!literals.containsKey(operand)) {
+						stack.push(operand);
+						ready = false;
+					}
+				}
+				if (ready) {
+					int[] children = new int[operands.size()];
+					for (int i = 0; i < children.length; i++)
+						children[i] = literals.get(operands.get(i));
+					literals.put(s, combine(s.getConnective(), children));
+					stack.pop();
+				}
+			}
+		}
+		return literals.get(root);
+	}
+
+	// the operands of a sentence, nested conjunctions or disjunctions
+	// flattened
+	private List<Sentence> operands(Sentence s, Connective connective) {
+		List<Sentence> result = new ArrayList<>();
+		if (connective != Connective.AND && connective != Connective.OR) {
+			for (int i = 0; i < s.getNumberSimplerSentences(); i++)
+				result.add(s.getSimplerSentence(i));
+			return result;
+		}
+		Deque<Sentence> open = new ArrayDeque<>();
+		open.push(s);
+		while (!open.isEmpty()) {
+			Sentence next = open.pop();
+			if (next.getConnective() == connective) {
+				for (int i = next.getNumberSimplerSentences() - 1; i >= 0; i--)
+					open.push(next.getSimplerSentence(i));
+			} else {
+				result.add(next);
+			}
+		}
+		return result;
+	}
+
+	private int combine(Connective connective, int[] children) {
+		switch (connective) {
+		case NOT:
+			return -children[0];
+		case AND:
+			return define(AND, children);
+		case OR:
+			return define(OR, children);
+		case IMPLICATION:
+			return define(OR, new int[] { -children[0], children[1] });
+		case BICONDITIONAL:
+			return define(IFF, children);
+		default:
+			throw new IllegalArgumentException("Unknown connective: " + connective);
+		}
+	}
+
+	private int define(int type, int[] children) {
+		int[] sorted = children.clone();
+		Arrays.sort(sorted);
+		int size = sorted.length;
+		if (type != IFF) {
+			size = 0;
+			for (int child : sorted) {
+				if (size == 0 || sorted[size - 1] != child)
+					sorted[size++] = child;
+			}
+			if (size == 1)
+				return sorted[0];
+		}
+		Node node = new Node(type, Arrays.copyOf(sorted, size));
+		Integer id = definitions.get(node);
+		if (id == null) {
+			id = nodes.size();
+			nodes.add(node);
+			symbols.add(null);
+			definitions.put(node, id);
+		}
+		return id;
+	}
+
+	private int symbolNode(PropositionSymbol symbol) {
+		Integer id = symbolNodes.get(symbol);
+		if (id == null) {
+			if (symbol.getSymbol().startsWith(DEFINITION_PREFIX))
+				throw new IllegalArgumentException(
+						"Symbol clashes with the symbols of definitions: " + symbol);
+			id = nodes.size();
+			nodes.add(new Node(SYMBOL, new int[0]));
+			symbols.add(symbol);
+			symbolNodes.put(symbol, id);
+		}
+		return id;
+	}
+
+	// generates the clauses of the definitions a literal depends on, for
+	// positive literals x => definition, for negative ones definition => x
+	private void require(int literal) {
+		Deque<Integer> open = new ArrayDeque<>();
+		open.push(literal);
+		while (!open.isEmpty()) {
+			int l = open.pop();
+			int x = Math.abs(l);
+			Node node = nodes.get(x);
+			if (node.type == SYMBOL)
+				continue;
+			if (!plaistedGreenbaum && (l > 0 ? !negativeDone.get(x) : !positiveDone.get(x)))
+				open.push(-l);
+			BitSet done = l > 0 ? positiveDone : negativeDone;
+			if (done.get(x))
+				continue;
+			done.set(x);
+			int[] c = node.children;
+			if (node.type == IFF) {
+				if (l > 0) {
+					emit(-x, -c[0], c[1]);
+					emit(-x, c[0], -c[1]);
+				} else {
+					emit(x, c[0], c[1]);
+					emit(x, -c[0], -c[1]);
+				}
+				for (int child : c) {
+					open.push(child);
+					open.push(-child);
+				}
+			} else if (node.type == AND && l > 0 || node.type == OR && l < 0) {
+				// x => c_1 & ... & c_n or c_1 | ... | c_n => x
+				for (int child : c) {
+					int d = node.type == AND ? child : -child;
+					emit(-l, d);
+					open.push(d);
+				}
+			} else {
+				// x => c_1 | ... | c_n or c_1 & ... & c_n => x
+				int[] clause = new int[c.length + 1];
+				clause[0] = -l;
+				for (int i = 0; i < c.length; i++) {
+					clause[i + 1] = node.type == OR ? c[i] : -c[i];
+					open.push(clause[i + 1]);
+				}
+				emit(clause);
+			}
+		}
+	}
+
+	private void emit(int... clause) {
+		List<Literal> literals = new ArrayList<>(clause.length);
+		for (int l : clause)
+			literals.add(new Literal(symbolOf(Math.abs(l)), l > 0));
+		Clause c = new Clause(literals);
+		if (!c.isTautology()) {
+			numberOfClauses++;
+			sink.accept(c);
+		}
+	}
+
+	private PropositionSymbol symbolOf(int node) {
+		PropositionSymbol symbol = symbols.get(node);
+		if (symbol == null) {
+			symbol = new PropositionSymbol(DEFINITION_PREFIX + numberOfDefinitions++);
+			symbols.set(node, symbol);
+		}
+		return symbol;
+	}
+
+	private static class Node {
+		final int type;
+		final int[] children;
+		final int hashCode;
+
+		Node(int type, int[] children) {
+			this.type = type;
+			this.children = children;
+			this.hashCode = 31 * type + Arrays.hashCode(children);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Node))
+				return false;
+			Node other = (Node) o;
+			return type == other.type && Arrays.equals(children, other.children);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+}
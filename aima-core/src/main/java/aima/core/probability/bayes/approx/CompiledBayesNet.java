@@ -0,0 +1,369 @@
+package aima.core.probability.bayes.approx;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import aima.core.probability.RandomVariable;
+import aima.core.probability.bayes.BayesianNetwork;
+import aima.core.probability.bayes.Node;
+import aima.core.probability.domain.FiniteDomain;
+import aima.core.probability.proposition.AssignmentProposition;
+
+/**
+ * A Bayesian network with finite variables compiled for fast sampling.<br>
+ * <br>
+ * Variables are numbered 0,...,n-1 in topological order and their values by
+ * their offsets in the finite domains, so that a complete event is an
+ * {@code int[]}. All conditional probability tables are flattened into a
+ * single {@code double[]}: the entry P(X = v | parents(X) = u) is found at
+ * {@code cptOffset[X] + row(u) * |X| + v}, where row(u) is a mixed radix
+ * number over the parent values with precomputed strides.<br>
+ * <br>
+ * For Gibbs sampling, every variable additionally knows its children and its
+ * own stride in their tables. P(X | mb(X)) (equation 14.12, AIMA3e pg. 538)
+ * can therefore be computed by index arithmetic without any maps or
+ * allocations.<br>
+ * <br>
+ * A compiled network is immutable and can be shared between threads. The
+ * sampling methods take the random number generator as an argument, so that
+ * each thread can use its own.
+ */
+public class CompiledBayesNet {
+
+	private final RandomVariable[] variables;
+	private final Map<RandomVariable, Integer> indexes = new HashMap<RandomVariable, Integer>();
+	private final int[] domainSize;
+	private final int[] cptOffset;
+	private final double[] cpt;
+	// parents of each variable and their strides in its table (in rows)
+	private final int[] parentStart;
+	private final int[] parentVar;
+	private final int[] parentStride;
+	// children of each variable and the stride of the variable in the child's
+	// table (in entries)
+	private final int[] childStart;
+	private final int[] childVar;
+	private final int[] childStride;
+	private final int maxDomainSize;
+
+	/**
+	 * Compiles a Bayesian network. All variables must have finite domains.
+	 *
+	 * @param bn
+	 *            the network to be compiled.
+	 */
+	public CompiledBayesNet(BayesianNetwork bn) {
+		List<RandomVariable> order = bn.getVariablesInTopologicalOrder();
+		int n = order.size();
+		variables = order.toArray(new RandomVariable[n]);
+		domainSize = new int[n];
+		int maxSize = 0;
+		for (int i = 0; i < n; i++) {
+			if (!variables[i].getDomain().isFinite()) {
+				throw new IllegalArgumentException(
+						"Only networks with finite domains can be compiled.");
+			}
+			indexes.put(variables[i], i);
+			domainSize[i] = ((FiniteDomain) variables[i].getDomain()).size();
+			maxSize = Math.max(maxSize, domainSize[i]);
+		}
+		maxDomainSize = maxSize;
+
+		parentStart = new int[n + 1];
+		int[] childCount = new int[n];
+		int parentTotal = 0;
+		for (int i = 0; i < n; i++) {
+			Node node = bn.getNode(variables[i]);
+			parentStart[i] = parentTotal;
+			parentTotal += node.getParents().size();
+			for (Node p : node.getParents()) {
+				childCount[indexes.get(p.getRandomVariable())]++;
+			}
+		}
+		parentStart[n] = parentTotal;
+		parentVar = new int[parentTotal];
+		parentStride = new int[parentTotal];
+		childStart = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			childStart[i + 1] = childStart[i] + childCount[i];
+		}
+		childVar = new int[parentTotal];
+		childStride = new int[parentTotal];
+		int[] childFill = new int[n];
+
+		cptOffset = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			Node node = bn.getNode(variables[i]);
+			int k = parentStart[i];
+			for (Node p : node.getParents()) {
+				parentVar[k++] = indexes.get(p.getRandomVariable());
+			}
+			// the last parent varies fastest
+			int rows = 1;
+			for (k = parentStart[i + 1] - 1; k >= parentStart[i]; k--) {
+				parentStride[k] = rows;
+				rows *= domainSize[parentVar[k]];
+			}
+			for (k = parentStart[i]; k < parentStart[i + 1]; k++) {
+				int p = parentVar[k];
+				int c = childStart[p] + childFill[p]++;
+				childVar[c] = i;
+				childStride[c] = parentStride[k] * domainSize[i];
+			}
+			cptOffset[i + 1] = cptOffset[i] + rows * domainSize[i];
+		}
+
+		cpt = new double[cptOffset[n]];
+		for (int i = 0; i < n; i++) {
+			Node node = bn.getNode(variables[i]);
+			int pCount = parentStart[i + 1] - parentStart[i];
+			Object[] event = new Object[pCount + 1];
+			int rows = (cptOffset[i + 1] - cptOffset[i]) / domainSize[i];
+			for (int row = 0; row < rows; row++) {
+				for (int k = 0; k < pCount; k++) {
+					int p = parentVar[parentStart[i] + k];
+					int value = (row / parentStride[parentStart[i] + k])
+							% domainSize[p];
+					event[k] = valueOf(p, value);
+				}
+				for (int v = 0; v < domainSize[i]; v++) {
+					event[pCount] = valueOf(i, v);
+					cpt[cptOffset[i] + row * domainSize[i] + v] = node.getCPD()
+							.getValue(event);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of variables.
+	 */
+	public int size() {
+		return variables.length;
+	}
+
+	/**
+	 * @return the variables in topological order.
+	 */
+	public RandomVariable[] getVariables() {
+		return variables.clone();
+	}
+
+	/**
+	 * @param var
+	 *            a variable of the network.
+	 * @return the index of the variable.
+	 */
+	public int indexOf(RandomVariable var) {
+		Integer i = indexes.get(var);
+		if (null == i) {
+			throw new IllegalArgumentException(var + " is not part of the network.");
+		}
+		return i;
+	}
+
+	/**
+	 * @param var
+	 *            the index of a variable.
+	 * @return the size of its domain.
+	 */
+	public int getDomainSize(int var) {
+		return domainSize[var];
+	}
+
+	/**
+	 * @return the size of the largest domain, the minimum length of the buffers
+	 *         passed to the sampling methods.
+	 */
+	public int getMaxDomainSize() {
+		return maxDomainSize;
+	}
+
+	/**
+	 * @param var
+	 *            the index of a variable.
+	 * @param value
+	 *            the offset of a value in the variable's domain.
+	 * @return the value.
+	 */
+	public Object valueOf(int var, int value) {
+		return ((FiniteDomain) variables[var].getDomain()).getValueAt(value);
+	}
+
+	/**
+	 * Converts evidence into an array holding the value offset of each
+	 * evidence variable and -1 for all other variables.
+	 *
+	 * @param e
+	 *            observed values for variables E.
+	 * @return the evidence as array.
+	 */
+	public int[] compileEvidence(AssignmentProposition[] e) {
+		int[] result = new int[variables.length];
+		Arrays.fill(result, -1);
+		for (AssignmentProposition ap : e) {
+			int i = indexOf(ap.getTermVariable());
+			result[i] = ((FiniteDomain) variables[i].getDomain()).getOffset(ap
+					.getValue());
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the offsets of the given variables, the index of a value
+	 * assignment of X is then {@code sum(state[X[k]] * strides[k])}, which is
+	 * the same enumeration as used by {@code ProbUtil.indexOf}.
+	 *
+	 * @param X
+	 *            the query variables.
+	 * @param vars
+	 *            receives the indexes of the variables.
+	 * @param strides
+	 *            receives the strides of the variables.
+	 * @return the number of value assignments of X.
+	 */
+	public int queryLayout(RandomVariable[] X, int[] vars, int[] strides) {
+		int size = 1;
+		for (int k = X.length - 1; k >= 0; k--) {
+			vars[k] = indexOf(X[k]);
+			strides[k] = size;
+			size *= domainSize[vars[k]];
+		}
+		return size;
+	}
+
+	/**
+	 * Returns P(X = state[X] | parents(X)).
+	 *
+	 * @param var
+	 *            the index of the variable X.
+	 * @param state
+	 *            an event containing values for X and its parents.
+	 * @return the conditional probability.
+	 */
+	public double probability(int var, int[] state) {
+		return cpt[cptOffset[var] + row(var, state) * domainSize[var]
+				+ state[var]];
+	}
+
+	/**
+	 * Samples X from <b>P</b>(X | parents(X)) and stores the value in the
+	 * state.
+	 *
+	 * @param var
+	 *            the index of the variable X.
+	 * @param state
+	 *            an event containing values for the parents of X.
+	 * @param random
+	 *            the random number generator.
+	 */
+	public void sample(int var, int[] state, SplittableRandom random) {
+		int d = domainSize[var];
+		int offset = cptOffset[var] + row(var, state) * d;
+		double u = random.nextDouble();
+		int v = 0;
+		double total = cpt[offset];
+		while (u > total && v < d - 1) {
+			v++;
+			total += cpt[offset + v];
+		}
+		state[var] = v;
+	}
+
+	/**
+	 * PRIOR-SAMPLE (Figure 14.13) into an existing array.
+	 *
+	 * @param state
+	 *            receives the sampled event.
+	 * @param random
+	 *            the random number generator.
+	 */
+	public void priorSample(int[] state, SplittableRandom random) {
+		for (int i = 0; i < variables.length; i++) {
+			sample(i, state, random);
+		}
+	}
+
+	/**
+	 * WEIGHTED-SAMPLE (Figure 14.15) into an existing array.
+	 *
+	 * @param evidence
+	 *            the evidence, see {@link #compileEvidence(AssignmentProposition[])}.
+	 * @param state
+	 *            receives the sampled event.
+	 * @param random
+	 *            the random number generator.
+	 * @return the weight of the event.
+	 */
+	public double weightedSample(int[] evidence, int[] state,
+			SplittableRandom random) {
+		double w = 1.0;
+		for (int i = 0; i < variables.length; i++) {
+			if (evidence[i] >= 0) {
+				state[i] = evidence[i];
+				w *= probability(i, state);
+			} else {
+				sample(i, state, random);
+			}
+		}
+		return w;
+	}
+
+	/**
+	 * Samples X from <b>P</b>(X | mb(X)) and stores the value in the state.
+	 *
+	 * @param var
+	 *            the index of the variable X.
+	 * @param state
+	 *            an event containing values for the Markov blanket of X.
+	 * @param distribution
+	 *            a buffer of at least {@link #getMaxDomainSize()} entries.
+	 * @param random
+	 *            the random number generator.
+	 */
+	public void mbSample(int var, int[] state, double[] distribution,
+			SplittableRandom random) {
+		int d = domainSize[var];
+		int offset = cptOffset[var] + row(var, state) * d;
+		for (int v = 0; v < d; v++) {
+			distribution[v] = cpt[offset + v];
+		}
+		int current = state[var];
+		for (int c = childStart[var]; c < childStart[var + 1]; c++) {
+			int child = childVar[c];
+			int stride = childStride[c];
+			// the index of the child's value for X = 0
+			int base = cptOffset[child] + row(child, state) * domainSize[child]
+					+ state[child] - current * stride;
+			for (int v = 0; v < d; v++) {
+				distribution[v] *= cpt[base + v * stride];
+			}
+		}
+		double total = 0.0;
+		for (int v = 0; v < d; v++) {
+			total += distribution[v];
+		}
+		double u = random.nextDouble() * total;
+		int v = 0;
+		double sum = distribution[0];
+		while (u > sum && v < d - 1) {
+			v++;
+			sum += distribution[v];
+		}
+		state[var] = v;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private int row(int var, int[] state) {
+		int row = 0;
+		for (int k = parentStart[var]; k < parentStart[var + 1]; k++) {
+			row += state[parentVar[k]] * parentStride[k];
+		}
+		return row;
+	}
+}
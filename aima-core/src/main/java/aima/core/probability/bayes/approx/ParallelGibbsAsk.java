@@ -0,0 +1,231 @@
+package aima.core.probability.bayes.approx;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import aima.core.probability.CategoricalDistribution;
+import aima.core.probability.RandomVariable;
+import aima.core.probability.bayes.BayesianNetwork;
+import aima.core.probability.proposition.AssignmentProposition;
+import aima.core.probability.util.ProbabilityTable;
+
+/**
+ * GIBBS-ASK (Figure 14.16, AIMA3e pg. 537) on a {@link CompiledBayesNet}
+ * with several independent Markov chains.<br>
+ * <br>
+ * The state of each chain is an {@code int[]} and the Markov blanket
+ * distributions are computed from the flattened tables, so a sweep over the
+ * non-evidence variables does not allocate. The chains are run in parallel,
+ * each with its own random number generator split off a common seed, and
+ * their counts are added up at the end. As in {@link GibbsAsk}, the query
+ * variables are counted once per sweep.<br>
+ * <br>
+ * After every query the potential scale reduction factor R&#770; of Gelman and
+ * Rubin is available as a convergence diagnostic. It compares the variance of
+ * the estimates between the chains with the variance within the chains for
+ * each value of the query variables; values close to 1 indicate that the
+ * chains have mixed, values noticeably above 1 (say 1.1) that more samples or
+ * a longer burn-in are needed.
+ */
+public class ParallelGibbsAsk implements BayesSampleInference {
+
+	private final SplittableRandom seeds;
+	private int chains = Runtime.getRuntime().availableProcessors();
+	private int burnIn = 100;
+	private BayesianNetwork compiledFrom = null;
+	private CompiledBayesNet compiled = null;
+	private double potentialScaleReduction = Double.NaN;
+
+	public ParallelGibbsAsk() {
+		this(new Random().nextLong());
+	}
+
+	/**
+	 * @param seed
+	 *            the seed from which the random number generators of the
+	 *            chains are derived.
+	 */
+	public ParallelGibbsAsk(long seed) {
+		seeds = new SplittableRandom(seed);
+	}
+
+	/**
+	 * Sets the number of chains. The default is the number of available
+	 * processors. At least two chains are needed for the convergence
+	 * diagnostic.
+	 *
+	 * @param chains
+	 *            the number of independent chains.
+	 */
+	public void setChains(int chains) {
+		this.chains = chains;
+	}
+
+	/**
+	 * Sets the number of sweeps each chain performs before counting starts.
+	 * The default is 100.
+	 *
+	 * @param burnIn
+	 *            the number of sweeps to discard.
+	 */
+	public void setBurnIn(int burnIn) {
+		this.burnIn = burnIn;
+	}
+
+	/**
+	 * @return R&#770; of the last query, the largest value over all values of
+	 *         the query variables. NaN if less than two chains produced
+	 *         samples.
+	 */
+	public double getPotentialScaleReduction() {
+		return potentialScaleReduction;
+	}
+
+	/**
+	 * Estimates <b>P</b>(X|e) by Gibbs sampling.
+	 *
+	 * @param X
+	 *            the query variables
+	 * @param e
+	 *            observed values for variables E
+	 * @param bn
+	 *            a Bayesian network with finite variables
+	 * @param Nsamples
+	 *            the total number of samples (sweeps) to be generated by all
+	 *            chains together, not counting the burn-in
+	 * @return an estimate of <b>P</b>(X|e)
+	 */
+	public CategoricalDistribution gibbsAsk(RandomVariable[] X,
+			AssignmentProposition[] e, BayesianNetwork bn, int Nsamples) {
+		final CompiledBayesNet net = compile(bn);
+		final int[] evidence = net.compileEvidence(e);
+		final int[] queryVars = new int[X.length];
+		final int[] queryStrides = new int[X.length];
+		final int size = net.queryLayout(X, queryVars, queryStrides);
+		// Z, the nonevidence variables in bn
+		int zCount = 0;
+		for (int v : evidence) {
+			if (v < 0) {
+				zCount++;
+			}
+		}
+		final int[] Z = new int[zCount];
+		for (int i = 0, k = 0; i < evidence.length; i++) {
+			if (evidence[i] < 0) {
+				Z[k++] = i;
+			}
+		}
+		final int c = Math.max(1, chains);
+		final SplittableRandom[] random = new SplittableRandom[c];
+		for (int k = 0; k < c; k++) {
+			random[k] = seeds.split();
+		}
+		final double[][] counts = new double[c][size];
+		final int[] samples = new int[c];
+
+		IntStream.range(0, c).parallel().forEach(chain -> {
+			SplittableRandom r = random[chain];
+			double[] N = counts[chain];
+			double[] distribution = new double[net.getMaxDomainSize()];
+			// <b>x</b>, the current state of the network, initially copied
+			// from e, with random values for the variables in Z
+			int[] x = new int[net.size()];
+			for (int i = 0; i < x.length; i++) {
+				if (evidence[i] >= 0) {
+					x[i] = evidence[i];
+				} else {
+					net.sample(i, x, r);
+				}
+			}
+			int n = Nsamples / c + (chain < Nsamples % c ? 1 : 0);
+			for (int j = -burnIn; j < n; j++) {
+				for (int Zi : Z) {
+					net.mbSample(Zi, x, distribution, r);
+				}
+				if (j >= 0) {
+					int index = 0;
+					for (int k = 0; k < queryVars.length; k++) {
+						index += x[queryVars[k]] * queryStrides[k];
+					}
+					N[index] += 1.0;
+				}
+			}
+			samples[chain] = n;
+		});
+
+		double[] N = new double[size];
+		for (double[] chainCounts : counts) {
+			for (int i = 0; i < size; i++) {
+				N[i] += chainCounts[i];
+			}
+		}
+		potentialScaleReduction = potentialScaleReduction(counts, samples);
+		return new ProbabilityTable(N, X).normalize();
+	}
+
+	//
+	// START-BayesSampleInference
+	@Override
+	public CategoricalDistribution ask(final RandomVariable[] X,
+			final AssignmentProposition[] observedEvidence,
+			final BayesianNetwork bn, int N) {
+		return gibbsAsk(X, observedEvidence, bn, N);
+	}
+
+	// END-BayesSampleInference
+	//
+
+	//
+	// PRIVATE METHODS
+	//
+	private synchronized CompiledBayesNet compile(BayesianNetwork bn) {
+		if (bn != compiledFrom) {
+			compiled = new CompiledBayesNet(bn);
+			compiledFrom = bn;
+		}
+		return compiled;
+	}
+
+	/**
+	 * R&#770; for the indicator of each value of X. Chain m with n samples
+	 * has the mean p<sub>m</sub> and the within variance n/(n-1)
+	 * p<sub>m</sub>(1-p<sub>m</sub>).
+	 */
+	private static double potentialScaleReduction(double[][] counts,
+			int[] samples) {
+		int m = counts.length;
+		int n = Integer.MAX_VALUE;
+		for (int s : samples) {
+			n = Math.min(n, s);
+		}
+		if (m < 2 || n < 2) {
+			return Double.NaN;
+		}
+		double result = 1.0;
+		for (int i = 0; i < counts[0].length; i++) {
+			double mean = 0.0, within = 0.0;
+			double[] p = new double[m];
+			for (int k = 0; k < m; k++) {
+				p[k] = counts[k][i] / samples[k];
+				mean += p[k];
+				within += p[k] * (1.0 - p[k]) * n / (n - 1.0);
+			}
+			mean /= m;
+			within /= m;
+			double between = 0.0;
+			for (int k = 0; k < m; k++) {
+				between += (p[k] - mean) * (p[k] - mean);
+			}
+			between *= (double) n / (m - 1);
+			if (within > 0.0) {
+				double variance = (n - 1.0) / n * within + between / n;
+				result = Math.max(result, Math.sqrt(variance / within));
+			} else if (between > 0.0) {
+				// every chain is stuck in a different state
+				return Double.POSITIVE_INFINITY;
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,134 @@
+package aima.core.probability.bayes.approx;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import aima.core.probability.CategoricalDistribution;
+import aima.core.probability.RandomVariable;
+import aima.core.probability.bayes.BayesianNetwork;
+import aima.core.probability.proposition.AssignmentProposition;
+import aima.core.probability.util.ProbabilityTable;
+
+/**
+ * LIKELIHOOD-WEIGHTING (Figure 14.15, AIMA3e pg. 534) on a
+ * {@link CompiledBayesNet}.<br>
+ * <br>
+ * Samples are drawn into a reused {@code int[]} instead of a new map per
+ * sample. The requested number of samples is split into batches which are
+ * weighted in parallel, each batch with its own random number generator split
+ * off a common seed. As a diagnostic, the effective sample size
+ * (&Sigma;w)<sup>2</sup> / &Sigma;w<sup>2</sup> of the last query is
+ * available; if it is much smaller than the number of samples, a few samples
+ * dominate the estimate because the evidence is unlikely.
+ */
+public class ParallelLikelihoodWeighting implements BayesSampleInference {
+
+	private static final int BATCH_SIZE = 4096;
+
+	private final SplittableRandom seeds;
+	private BayesianNetwork compiledFrom = null;
+	private CompiledBayesNet compiled = null;
+	private double effectiveSampleSize = 0.0;
+
+	public ParallelLikelihoodWeighting() {
+		this(new Random().nextLong());
+	}
+
+	/**
+	 * @param seed
+	 *            the seed from which the random number generators of the
+	 *            batches are derived.
+	 */
+	public ParallelLikelihoodWeighting(long seed) {
+		seeds = new SplittableRandom(seed);
+	}
+
+	/**
+	 * @return the effective sample size of the last query.
+	 */
+	public double getEffectiveSampleSize() {
+		return effectiveSampleSize;
+	}
+
+	/**
+	 * Estimates <b>P</b>(X|e) by likelihood weighting.
+	 *
+	 * @param X
+	 *            the query variables
+	 * @param e
+	 *            observed values for variables E
+	 * @param bn
+	 *            a Bayesian network with finite variables
+	 * @param N
+	 *            the total number of samples to be generated
+	 * @return an estimate of <b>P</b>(X|e)
+	 */
+	public CategoricalDistribution likelihoodWeighting(RandomVariable[] X,
+			AssignmentProposition[] e, BayesianNetwork bn, int N) {
+		final CompiledBayesNet net = compile(bn);
+		final int[] evidence = net.compileEvidence(e);
+		final int[] queryVars = new int[X.length];
+		final int[] queryStrides = new int[X.length];
+		final int size = net.queryLayout(X, queryVars, queryStrides);
+		final int batches = (N + BATCH_SIZE - 1) / BATCH_SIZE;
+		final SplittableRandom[] random = new SplittableRandom[batches];
+		for (int b = 0; b < batches; b++) {
+			random[b] = seeds.split();
+		}
+		// per batch: the weighted counts followed by the sum of the squared
+		// weights
+		final double[][] W = new double[batches][size + 1];
+
+		IntStream.range(0, batches).parallel().forEach(b -> {
+			SplittableRandom r = random[b];
+			double[] w = W[b];
+			int[] x = new int[net.size()];
+			int to = Math.min(N, (b + 1) * BATCH_SIZE);
+			for (int j = b * BATCH_SIZE; j < to; j++) {
+				double weight = net.weightedSample(evidence, x, r);
+				int index = 0;
+				for (int k = 0; k < queryVars.length; k++) {
+					index += x[queryVars[k]] * queryStrides[k];
+				}
+				w[index] += weight;
+				w[size] += weight * weight;
+			}
+		});
+
+		double[] result = new double[size];
+		double sum = 0.0, squares = 0.0;
+		for (double[] w : W) {
+			for (int i = 0; i < size; i++) {
+				result[i] += w[i];
+				sum += w[i];
+			}
+			squares += w[size];
+		}
+		effectiveSampleSize = squares > 0.0 ? sum * sum / squares : 0.0;
+		return new ProbabilityTable(result, X).normalize();
+	}
+
+	//
+	// START-BayesSampleInference
+	@Override
+	public CategoricalDistribution ask(final RandomVariable[] X,
+			final AssignmentProposition[] observedEvidence,
+			final BayesianNetwork bn, int N) {
+		return likelihoodWeighting(X, observedEvidence, bn, N);
+	}
+
+	// END-BayesSampleInference
+	//
+
+	//
+	// PRIVATE METHODS
+	//
+	private synchronized CompiledBayesNet compile(BayesianNetwork bn) {
+		if (bn != compiledFrom) {
+			compiled = new CompiledBayesNet(bn);
+			compiledFrom = bn;
+		}
+		return compiled;
+	}
+}
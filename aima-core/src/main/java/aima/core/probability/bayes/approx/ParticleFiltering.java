@@ -8,13 +8,11 @@ import aima.core.probability.RandomVariable;
 import aima.core.probability.bayes.DynamicBayesianNetwork;
 import aima.core.probability.bayes.exact.EliminationAsk;
 import aima.core.probability.bayes.model.FiniteBayesModel;
-import aima.core.probability.domain.FiniteIntegerDomain;
 import aima.core.probability.proposition.AssignmentProposition;
 import aima.core.probability.util.ProbUtil;
-import aima.core.probability.util.RandVar;
+import aima.core.probability.util.Resampling;
 import aima.core.util.JavaRandomizer;
 import aima.core.util.Randomizer;
-import aima.core.util.Util;
 
 /**
  * Artificial Intelligence A Modern Approach (3rd Edition): page 598.<br>
@@ -55,6 +53,11 @@ import aima.core.util.Util;
  * samples are unweighted.</li>
  * </ol>
  * 
+ * Resampling is delegated to {@link Resampling}. By default, N independent
+ * draws are made (multinomial resampling, O(N log N)). The O(N) systematic,
+ * stratified and residual schemes can be selected with
+ * {@link #setResamplingScheme(Resampling.Scheme)}.
+ * 
  * @author Ciaran O'Reilly
  * @author Ravi Mohan
  * 
@@ -69,7 +72,8 @@ public class ParticleFiltering {
 	private PriorSample priorSampler = null;
 	private AssignmentProposition[][] S_tp1 = new AssignmentProposition[0][0];
 	private FiniteProbabilityModel sensorModel = null;
-	private RandomVariable sampleIndexes = null;
+	private Resampling.Scheme resamplingScheme = Resampling.Scheme.MULTINOMIAL;
+	private int[] sampleIndexes = new int[0];
 
 	/**
 	 * Construct a Particle Filtering instance.
@@ -106,6 +110,16 @@ public class ParticleFiltering {
 		initPersistent(N, dbn);
 	}
 
+	/**
+	 * Sets the scheme used by WEIGHTED-SAMPLE-WITH-REPLACEMENT.
+	 * 
+	 * @param resamplingScheme
+	 *            the resampling scheme to be used in step 3.
+	 */
+	public void setResamplingScheme(Resampling.Scheme resamplingScheme) {
+		this.resamplingScheme = resamplingScheme;
+	}
+
 	/**
 	 * The particle filtering algorithm implemented as a recursive update
 	 * operation with state (the set of samples).
@@ -158,9 +172,7 @@ public class ParticleFiltering {
 		// from <b>P</b>(<b>X</b><sub>0</sub>)
 		S = new AssignmentProposition[N][this.dbn.getX_0().size()];
 		S_tp1 = new AssignmentProposition[N][this.dbn.getX_0().size()];
-		Integer[] indexes = new Integer[N];
 		for (int i = 0; i < N; i++) {
-			indexes[i] = i;
 			Map<RandomVariable, Object> sample = priorSampler
 					.priorSample(this.dbn.getPriorNetwork());
 			int idx = 0;
@@ -175,8 +187,7 @@ public class ParticleFiltering {
 
 		sensorModel = new FiniteBayesModel(dbn, new EliminationAsk());
 
-		sampleIndexes = new RandVar("SAMPLE_INDEXES", new FiniteIntegerDomain(
-				indexes));
+		sampleIndexes = new int[N];
 	}
 
 	//
@@ -230,12 +241,12 @@ public class ParticleFiltering {
 		AssignmentProposition[][] newS = new AssignmentProposition[N][this.dbn
 				.getX_0().size()];
 
-		double[] normalizedW = Util.normalize(W);
+		sampleIndexes = Resampling.resample(resamplingScheme, W, N, N,
+				randomizer, sampleIndexes);
 
 		for (int i = 0; i < N; i++) {
-			int sample = (Integer) ProbUtil.sample(randomizer.nextDouble(),
-					sampleIndexes, normalizedW);
-			for (int idx = 0; idx < S_tp1[i].length; idx++) {
+			int sample = sampleIndexes[i];
+			for (int idx = 0; idx < S_tp1[sample].length; idx++) {
 				AssignmentProposition ap = S_tp1[sample][idx];
 				newS[i][idx] = new AssignmentProposition(ap.getTermVariable(),
 						ap.getValue());
@@ -0,0 +1,226 @@
+package aima.core.probability.hmm.exact;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import aima.core.probability.hmm.impl.CompactHMM;
+
+/**
+ * The Baum-Welch algorithm, an instance of EM (see AIMA3e, Section 20.3.3),
+ * which learns the parameters of a hidden Markov model from evidence
+ * sequences only.<br>
+ * <br>
+ * The E-step runs the scaled forward-backward algorithm of
+ * {@link ScaledForwardBackward} on every sequence and accumulates the expected
+ * number of times each state is the initial state, each transition is taken
+ * and each evidence value is emitted by each state. Sequences are processed in
+ * parallel; every worker fills its own accumulator and the accumulators are
+ * added up afterwards. The backward messages are computed on the fly, so only
+ * the forward messages of a sequence are stored. The M-step normalizes the
+ * expected counts. Transitions with probability zero stay zero, so the
+ * (sparse) structure of the initial model is preserved.
+ */
+public class BaumWelch {
+
+	private int maxIterations = 100;
+	private double tolerance = 1e-6;
+	private final List<Double> logLikelihoods = new ArrayList<Double>();
+
+	/**
+	 * Sets the maximum number of EM iterations. The default is 100.
+	 *
+	 * @param maxIterations
+	 *            the maximum number of iterations.
+	 */
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * Sets the convergence criterion. The default is 1e-6.
+	 *
+	 * @param tolerance
+	 *            learning stops as soon as the log-likelihood of the training
+	 *            data improves by less than this value.
+	 */
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * @return the log-likelihood of the training data before each iteration of
+	 *         the last call of {@link #learn(CompactHMM, List)}.
+	 */
+	public List<Double> getLogLikelihoods() {
+		return logLikelihoods;
+	}
+
+	/**
+	 * Learns the parameters of a hidden Markov model.
+	 *
+	 * @param initial
+	 *            the initial model, which defines the states, the evidence
+	 *            values and the possible transitions.
+	 * @param sequences
+	 *            the indexes of the evidence values of each training sequence.
+	 * @return the learned model.
+	 */
+	public CompactHMM learn(CompactHMM initial, List<int[]> sequences) {
+		logLikelihoods.clear();
+		CompactHMM hmm = initial;
+		for (int iteration = 0; iteration < maxIterations; iteration++) {
+			Counts counts = expectedCounts(hmm, sequences);
+			logLikelihoods.add(counts.logLikelihood);
+			int size = logLikelihoods.size();
+			if (size > 1
+					&& counts.logLikelihood - logLikelihoods.get(size - 2) < tolerance) {
+				break;
+			}
+			hmm = maximize(hmm, counts);
+		}
+		return hmm;
+	}
+
+	/**
+	 * The E-step: computes the expected counts of all parameters given the
+	 * current model.
+	 *
+	 * @param hmm
+	 *            the current model.
+	 * @param sequences
+	 *            the training sequences.
+	 * @return the summed expected counts and the log-likelihood of the data.
+	 */
+	public Counts expectedCounts(CompactHMM hmm, List<int[]> sequences) {
+		ScaledForwardBackward fb = new ScaledForwardBackward(hmm);
+		return sequences.parallelStream().collect(() -> new Counts(hmm),
+				(counts, ev) -> counts.add(fb, hmm, ev), Counts::add);
+	}
+
+	/**
+	 * Expected counts of the parameters of a hidden Markov model.
+	 */
+	public static class Counts {
+		final double[] prior;
+		final double[] transition;
+		final double[] emission;
+		double logLikelihood;
+
+		Counts(CompactHMM hmm) {
+			prior = new double[hmm.getStateCount()];
+			transition = new double[hmm.getTransitionValues().length];
+			emission = new double[hmm.getEmission().length];
+		}
+
+		public double getLogLikelihood() {
+			return logLikelihood;
+		}
+
+		void add(Counts other) {
+			add(prior, other.prior);
+			add(transition, other.transition);
+			add(emission, other.emission);
+			logLikelihood += other.logLikelihood;
+		}
+
+		void add(ScaledForwardBackward fb, CompactHMM hmm, int[] ev) {
+			int n = hmm.getStateCount();
+			int[] rowStart = hmm.getRowStart();
+			int[] columns = hmm.getColumnIndexes();
+			double[] values = hmm.getTransitionValues();
+			double[] e = hmm.getEmission();
+			double[] p = hmm.getPrior();
+			double[] fv = new double[ev.length * n];
+			double[] scale = new double[ev.length];
+			logLikelihood += fb.forwardPass(ev, p, fv, scale);
+			double[] b = new double[n];
+			double[] eb = new double[n];
+			Arrays.fill(b, 1.0);
+			for (int t = ev.length - 1; t >= 0; t--) {
+				int offset = t * n;
+				int symbol = ev[t] * n;
+				// P(X_t | e_1:T) = f_t * b_t
+				for (int j = 0; j < n; j++) {
+					emission[symbol + j] += fv[offset + j] * b[j];
+					eb[j] = e[symbol + j] * b[j] / scale[t];
+				}
+				// P(x_t-1 = i, x_t = j | e_1:T) = f_t-1(i) T_ij e_t(j) b_t(j) / c_t
+				for (int i = 0; i < n; i++) {
+					double fi = t == 0 ? p[i] : fv[offset - n + i];
+					double bi = 0.0;
+					for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+						double xi = values[k] * eb[columns[k]];
+						bi += xi;
+						transition[k] += fi * xi;
+					}
+					// b_t-1(i) = sum_j T_ij e_t(j) b_t(j) / c_t
+					b[i] = bi;
+				}
+			}
+			for (int i = 0; i < n; i++) {
+				prior[i] += p[i] * b[i];
+			}
+		}
+
+		private static void add(double[] to, double[] from) {
+			for (int i = 0; i < to.length; i++) {
+				to[i] += from[i];
+			}
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * The M-step. Rows without any expected count keep their old values.
+	 */
+	private CompactHMM maximize(CompactHMM hmm, Counts counts) {
+		int n = hmm.getStateCount();
+		int m = hmm.getSymbolCount();
+		double[] prior = normalize(counts.prior, hmm.getPrior());
+		int[] rowStart = hmm.getRowStart();
+		double[] transition = hmm.getTransitionValues().clone();
+		for (int i = 0; i < n; i++) {
+			double sum = 0.0;
+			for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+				sum += counts.transition[k];
+			}
+			if (sum > 0.0) {
+				for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+					transition[k] = counts.transition[k] / sum;
+				}
+			}
+		}
+		double[] emission = hmm.getEmission().clone();
+		for (int j = 0; j < n; j++) {
+			double sum = 0.0;
+			for (int k = 0; k < m; k++) {
+				sum += counts.emission[k * n + j];
+			}
+			if (sum > 0.0) {
+				for (int k = 0; k < m; k++) {
+					emission[k * n + j] = counts.emission[k * n + j] / sum;
+				}
+			}
+		}
+		return hmm.withParameters(prior, transition, emission);
+	}
+
+	private static double[] normalize(double[] counts, double[] fallback) {
+		double sum = 0.0;
+		for (double c : counts) {
+			sum += c;
+		}
+		if (sum <= 0.0) {
+			return fallback.clone();
+		}
+		double[] result = new double[counts.length];
+		for (int i = 0; i < counts.length; i++) {
+			result[i] = counts[i] / sum;
+		}
+		return result;
+	}
+}
@@ -78,6 +78,8 @@ public class FixedLagSmoothing {
 	private int d = 1;
 	//
 	private Matrix unitMessage = null;
+	// <b>T</b><sup>-1</sup>, computed once on first use
+	private Matrix transitionInverse = null;
 
 	/**
 	 * Create a Fixed-Lag-Smoothing implementation, that sets up the required
@@ -125,8 +127,10 @@ public class FixedLagSmoothing {
 			f = forward(f, O_tmd);
 			// <b>B</b> <-
 			// <b>O</b><sup>-1</sup><sub>t-d</sub><b>B</b><b>T</b><b>O</b><sub>t</sub>
-			B = O_tmd.inverse().times(hmm.getTransitionModel().inverse())
-					.times(B).times(hmm.getTransitionModel()).times(O_t);
+			if (null == transitionInverse) {
+				transitionInverse = hmm.getTransitionModel().inverse();
+			}
+			B = diagonalInverse(O_tmd).times(transitionInverse).times(B).times(hmm.getTransitionModel()).times(O_t);
 		} else {
 			// else <b>B</b> <- <b>BTO</b><sub>t</sub>
 			B = B.times(hmm.getTransitionModel()).times(O_t);
@@ -180,4 +184,19 @@ public class FixedLagSmoothing {
 		e_tmd_to_t.clear();
 		unitMessage = hmm.createUnitMessage();
 	}
+
+	// The inverse of a diagonal sensor matrix holds the reciprocals of its
+	// diagonal, no LU decomposition is needed. Like Matrix.inverse(), a
+	// zero on the diagonal (an impossible observation) is rejected.
+	private Matrix diagonalInverse(Matrix O) {
+		int n = O.getRowDimension();
+		Matrix result = new Matrix(n, n);
+		for (int i = 0; i < n; i++) {
+			if (O.get(i, i) == 0) {
+				throw new RuntimeException("Matrix is singular.");
+			}
+			result.set(i, i, 1.0 / O.get(i, i));
+		}
+		return result;
+	}
 }
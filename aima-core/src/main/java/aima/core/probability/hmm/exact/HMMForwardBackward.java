@@ -128,6 +128,7 @@ public class HMMForwardBackward implements ForwardBackwardInference {
 	 * @return <b>b</b><sub>k+1:t</sub>
 	 */
 	public Matrix backward(Matrix b_kp2t, Matrix O_kp1) {
-		return hmm.getTransitionModel().times(O_kp1).times(b_kp2t);
+		// T(Ob) needs two matrix-vector products instead of a matrix product
+		return hmm.getTransitionModel().times(O_kp1.times(b_kp2t));
 	}
 }
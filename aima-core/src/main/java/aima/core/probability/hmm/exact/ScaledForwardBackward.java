@@ -0,0 +1,260 @@
+package aima.core.probability.hmm.exact;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import aima.core.probability.CategoricalDistribution;
+import aima.core.probability.hmm.impl.CompactHMM;
+import aima.core.probability.proposition.AssignmentProposition;
+import aima.core.probability.temporal.ForwardBackwardInference;
+
+/**
+ * Artificial Intelligence A Modern Approach (3rd Edition): page 576.<br>
+ * <br>
+ * The FORWARD-BACKWARD algorithm working directly on the arrays of a
+ * {@link CompactHMM} instead of on matrices. Compared to
+ * {@link HMMForwardBackward}:
+ * <ul>
+ * <li>the sensor model is applied as an element-wise scaling of the message,
+ * so one step costs O(S<sup>2</sup>) for dense and O(number of non-zero
+ * transitions) for sparse models instead of O(S<sup>3</sup>);</li>
+ * <li>forward messages are normalized at every step and the normalization
+ * constants c<sub>t</sub> are kept. The backward messages are divided by the
+ * same constants, so long sequences do not underflow, and the log-likelihood
+ * of the evidence is obtained as &Sigma; log c<sub>t</sub>;</li>
+ * <li>all messages of a sequence are stored in a single flat array;</li>
+ * <li>many independent evidence sequences can be processed in parallel by the
+ * batch methods. As the model is immutable, no synchronization is needed.</li>
+ * </ul>
+ * Evidence sequences are given as arrays of evidence value indexes (see
+ * {@link CompactHMM#encodeSequence(List)}).
+ */
+public class ScaledForwardBackward implements ForwardBackwardInference {
+
+	protected final CompactHMM hmm;
+
+	public ScaledForwardBackward(CompactHMM hmm) {
+		this.hmm = hmm;
+	}
+
+	//
+	// START-ForwardBackwardInference
+	@Override
+	public List<CategoricalDistribution> forwardBackward(
+			List<List<AssignmentProposition>> ev, CategoricalDistribution prior) {
+		int n = hmm.getStateCount();
+		double[] sv = smooth(hmm.encodeSequence(ev), prior.getValues());
+		List<CategoricalDistribution> result = new ArrayList<CategoricalDistribution>(
+				ev.size());
+		for (int t = 0; t < ev.size(); t++) {
+			result.add(hmm.convert(Arrays.copyOfRange(sv, t * n, t * n + n)));
+		}
+		return result;
+	}
+
+	@Override
+	public CategoricalDistribution forward(CategoricalDistribution f1_t,
+			List<AssignmentProposition> e_tp1) {
+		double[] f = new double[hmm.getStateCount()];
+		forward(f1_t.getValues(), 0, hmm.encode(e_tp1), f, 0);
+		return hmm.convert(f);
+	}
+
+	@Override
+	public CategoricalDistribution backward(CategoricalDistribution b_kp2t,
+			List<AssignmentProposition> e_kp1) {
+		double[] b = b_kp2t.getValues().clone();
+		double[] result = new double[b.length];
+		hmm.observe(hmm.encode(e_kp1), b);
+		hmm.propagateBack(b, result);
+		return hmm.convert(result);
+	}
+
+	// END-ForwardBackwardInference
+	//
+
+	/**
+	 * Computes the smoothed estimates <b>P</b>(X<sub>k</sub> |
+	 * e<sub>1:t</sub>) for k = 1,...,t starting from the prior of the model.
+	 *
+	 * @param ev
+	 *            the indexes of the evidence values e<sub>1</sub>,...,
+	 *            e<sub>t</sub>.
+	 * @return an array of t * S probabilities, the estimate for step k starts
+	 *         at (k-1) * S.
+	 */
+	public double[] smooth(int[] ev) {
+		return smooth(ev, hmm.getPrior());
+	}
+
+	/**
+	 * Computes the smoothed estimates <b>P</b>(X<sub>k</sub> |
+	 * e<sub>1:t</sub>) for k = 1,...,t.
+	 *
+	 * @param ev
+	 *            the indexes of the evidence values.
+	 * @param prior
+	 *            the prior distribution on the initial state.
+	 * @return an array of t * S probabilities, the estimate for step k starts
+	 *         at (k-1) * S.
+	 */
+	public double[] smooth(int[] ev, double[] prior) {
+		int n = hmm.getStateCount();
+		double[] sv = new double[ev.length * n];
+		double[] scale = new double[ev.length];
+		forwardPass(ev, prior, sv, scale);
+		double[] b = new double[n];
+		double[] tmp = new double[n];
+		Arrays.fill(b, 1.0);
+		for (int t = ev.length - 1; t >= 0; t--) {
+			int offset = t * n;
+			double sum = 0.0;
+			for (int i = 0; i < n; i++) {
+				sv[offset + i] *= b[i];
+				sum += sv[offset + i];
+			}
+			for (int i = 0; i < n; i++) {
+				sv[offset + i] /= sum;
+			}
+			// b <- BACKWARD(b, ev[t]) / c[t]
+			hmm.observe(ev[t], b);
+			hmm.propagateBack(b, tmp);
+			for (int i = 0; i < n; i++) {
+				b[i] = tmp[i] / scale[t];
+			}
+		}
+		return sv;
+	}
+
+	/**
+	 * Computes the filtered estimate <b>P</b>(X<sub>t</sub> |
+	 * e<sub>1:t</sub>) in O(S) space.
+	 *
+	 * @param ev
+	 *            the indexes of the evidence values.
+	 * @return the forward message for the last step.
+	 */
+	public double[] filter(int[] ev) {
+		int n = hmm.getStateCount();
+		double[] f = hmm.getPrior().clone();
+		double[] next = new double[n];
+		for (int t = 0; t < ev.length; t++) {
+			forward(f, 0, ev[t], next, 0);
+			double[] swap = f;
+			f = next;
+			next = swap;
+		}
+		return f;
+	}
+
+	/**
+	 * Computes log P(e<sub>1:t</sub>) in O(S) space.
+	 *
+	 * @param ev
+	 *            the indexes of the evidence values.
+	 * @return the log-likelihood of the evidence, negative infinity if the
+	 *         evidence is impossible.
+	 */
+	public double logLikelihood(int[] ev) {
+		int n = hmm.getStateCount();
+		double[] f = hmm.getPrior().clone();
+		double[] next = new double[n];
+		double result = 0.0;
+		for (int t = 0; t < ev.length; t++) {
+			double c = forward(f, 0, ev[t], next, 0);
+			if (c == 0.0) {
+				return Double.NEGATIVE_INFINITY;
+			}
+			result += Math.log(c);
+			double[] swap = f;
+			f = next;
+			next = swap;
+		}
+		return result;
+	}
+
+	/**
+	 * Smooths a batch of independent evidence sequences in parallel.
+	 *
+	 * @param sequences
+	 *            the evidence sequences.
+	 * @return the smoothed estimates of each sequence, see
+	 *         {@link #smooth(int[])}.
+	 */
+	public List<double[]> smooth(List<int[]> sequences) {
+		return sequences.parallelStream().map(this::smooth)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Computes the log-likelihoods of a batch of independent evidence
+	 * sequences in parallel.
+	 *
+	 * @param sequences
+	 *            the evidence sequences.
+	 * @return the log-likelihood of each sequence.
+	 */
+	public double[] logLikelihoods(List<int[]> sequences) {
+		return sequences.parallelStream().mapToDouble(this::logLikelihood)
+				.toArray();
+	}
+
+	//
+	// PROTECTED METHODS
+	//
+
+	/**
+	 * Computes the normalized forward messages of all steps.
+	 *
+	 * @param ev
+	 *            the indexes of the evidence values.
+	 * @param prior
+	 *            the prior distribution on the initial state.
+	 * @param fv
+	 *            receives the t * S forward messages.
+	 * @param scale
+	 *            receives the t normalization constants c<sub>t</sub> =
+	 *            P(e<sub>t</sub> | e<sub>1:t-1</sub>).
+	 * @return log P(e<sub>1:t</sub>).
+	 */
+	protected double forwardPass(int[] ev, double[] prior, double[] fv,
+			double[] scale) {
+		int n = hmm.getStateCount();
+		double logLikelihood = 0.0;
+		for (int t = 0; t < ev.length; t++) {
+			double c = t == 0 ? forward(prior, 0, ev[t], fv, 0) : forward(fv,
+					(t - 1) * n, ev[t], fv, t * n);
+			if (c == 0.0) {
+				throw new IllegalArgumentException(
+						"Evidence at step " + (t + 1)
+								+ " has probability zero under the model.");
+			}
+			scale[t] = c;
+			logLikelihood += Math.log(c);
+		}
+		return logLikelihood;
+	}
+
+	/**
+	 * The forward equation (15.5) without matrices: the prediction
+	 * <b>T</b><sup>T</sup><b>f</b><sub>1:t</sub> is scaled element-wise by
+	 * P(e<sub>t+1</sub> | X<sub>t+1</sub>) and normalized.
+	 *
+	 * @return the normalization constant, zero if the evidence is impossible
+	 *         (in which case the message is left unnormalized).
+	 */
+	protected double forward(double[] f, int from, int symbol, double[] out,
+			int to) {
+		int n = hmm.getStateCount();
+		hmm.predict(f, from, out, to);
+		double c = hmm.observe(symbol, out, to);
+		if (c > 0.0) {
+			for (int i = to; i < to + n; i++) {
+				out[i] /= c;
+			}
+		}
+		return c;
+	}
+}
@@ -0,0 +1,137 @@
+package aima.core.probability.hmm.exact;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import aima.core.probability.hmm.impl.CompactHMM;
+
+/**
+ * Artificial Intelligence A Modern Approach (3rd Edition): page 576.<br>
+ * <br>
+ * The Viterbi algorithm for finding the most likely sequence of states
+ * x<sub>1</sub>,...,x<sub>t</sub> given the evidence e<sub>1:t</sub>. It uses
+ * the recursion (15.11)
+ *
+ * <pre>
+ * <b>m</b><sub>1:t+1</sub> = <b>P</b>(e<sub>t+1</sub> | X<sub>t+1</sub>) max<sub>x<sub>t</sub></sub>(<b>P</b>(X<sub>t+1</sub> | x<sub>t</sub>) <b>m</b><sub>1:t</sub>)
+ * </pre>
+ *
+ * in log-space, so that long sequences do not underflow, and remembers for
+ * each state the best predecessor in a flat back-pointer table of t * S
+ * entries. For sparse models the maximization only visits the non-zero
+ * transitions. Batches of independent sequences are decoded in parallel.
+ */
+public class Viterbi {
+
+	private final CompactHMM hmm;
+	private final double[] logPrior;
+	private final double[] logTransition;
+	private final double[] logEmission;
+
+	public Viterbi(CompactHMM hmm) {
+		this.hmm = hmm;
+		this.logPrior = log(hmm.getPrior());
+		this.logTransition = log(hmm.getTransitionValues());
+		this.logEmission = log(hmm.getEmission());
+	}
+
+	/**
+	 * Computes the most likely state sequence.
+	 *
+	 * @param ev
+	 *            the indexes of the evidence values e<sub>1</sub>,...,
+	 *            e<sub>t</sub>.
+	 * @return the indexes of the states x<sub>1</sub>,...,x<sub>t</sub>.
+	 */
+	public int[] decode(int[] ev) {
+		int[] path = new int[ev.length];
+		decode(ev, path);
+		return path;
+	}
+
+	/**
+	 * Computes the most likely state sequence.
+	 *
+	 * @param ev
+	 *            the indexes of the evidence values.
+	 * @param path
+	 *            receives the indexes of the states x<sub>1</sub>,...,
+	 *            x<sub>t</sub>.
+	 * @return the logarithm of the joint probability of the path and the
+	 *         evidence, negative infinity if the evidence is impossible (the
+	 *         path is meaningless in that case).
+	 */
+	public double decode(int[] ev, int[] path) {
+		int n = hmm.getStateCount();
+		if (ev.length == 0) {
+			return 0.0;
+		}
+		int[] rowStart = hmm.getRowStart();
+		int[] columns = hmm.getColumnIndexes();
+		int[] backPointers = new int[ev.length * n];
+		double[] m = logPrior.clone();
+		double[] next = new double[n];
+		for (int t = 0; t < ev.length; t++) {
+			Arrays.fill(next, Double.NEGATIVE_INFINITY);
+			int bp = t * n;
+			// scatter the best predecessor of each state
+			for (int i = 0; i < n; i++) {
+				double mi = m[i];
+				if (mi == Double.NEGATIVE_INFINITY) {
+					continue;
+				}
+				for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+					double candidate = mi + logTransition[k];
+					int j = columns[k];
+					if (candidate > next[j]) {
+						next[j] = candidate;
+						backPointers[bp + j] = i;
+					}
+				}
+			}
+			int e = ev[t] * n;
+			for (int j = 0; j < n; j++) {
+				next[j] += logEmission[e + j];
+			}
+			double[] swap = m;
+			m = next;
+			next = swap;
+		}
+		int best = 0;
+		for (int i = 1; i < n; i++) {
+			if (m[i] > m[best]) {
+				best = i;
+			}
+		}
+		double result = m[best];
+		for (int t = ev.length - 1; t >= 0; t--) {
+			path[t] = best;
+			best = backPointers[t * n + best];
+		}
+		return result;
+	}
+
+	/**
+	 * Decodes a batch of independent evidence sequences in parallel.
+	 *
+	 * @param sequences
+	 *            the evidence sequences.
+	 * @return the most likely state sequence of each evidence sequence.
+	 */
+	public List<int[]> decode(List<int[]> sequences) {
+		return sequences.parallelStream().map(this::decode)
+				.collect(Collectors.toList());
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private static double[] log(double[] values) {
+		double[] result = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = Math.log(values[i]);
+		}
+		return result;
+	}
+}
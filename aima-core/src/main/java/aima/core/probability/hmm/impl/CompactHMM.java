@@ -0,0 +1,439 @@
+package aima.core.probability.hmm.impl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import aima.core.probability.CategoricalDistribution;
+import aima.core.probability.RandomVariable;
+import aima.core.probability.hmm.HiddenMarkovModel;
+import aima.core.probability.proposition.AssignmentProposition;
+import aima.core.probability.util.ProbabilityTable;
+import aima.core.util.math.Matrix;
+
+/**
+ * A hidden Markov model stored in primitive arrays, intended for the
+ * matrix-free inference algorithms of package
+ * {@code aima.core.probability.hmm.exact}.<br>
+ * <br>
+ * The transition model <b>T</b><sub>ij</sub> = P(X<sub>t</sub> = j |
+ * X<sub>t-1</sub> = i) is kept in compressed sparse row form. If at least a
+ * quarter of its entries are non-zero, an additional dense row-major copy is
+ * used by the kernels, so that small and dense models do not pay for the
+ * indirection. Instead of one S * S diagonal matrix per evidence value, the
+ * sensor model is a single M * S table whose row k contains P(e = k |
+ * X<sub>t</sub> = i) for each state i. Evidence values are interned to the
+ * indexes 0,...,M-1, so an evidence sequence becomes an {@code int[]}.<br>
+ * <br>
+ * Instances are immutable and can be shared between threads.
+ */
+public class CompactHMM {
+
+	private static final double SPARSE_DENSITY = 0.25;
+
+	private final RandomVariable stateVariable;
+	private final int stateCount;
+	private final double[] prior;
+	// compressed sparse rows of the transition model
+	private final int[] rowStart;
+	private final int[] columns;
+	private final double[] values;
+	// row-major copy of the transition model, null if sparse
+	private final double[] dense;
+	private final Object[] symbols;
+	private final Map<Object, Integer> symbolIndexes;
+	private final double[] emission;
+
+	/**
+	 * Instantiate a compact hidden Markov model.
+	 *
+	 * @param stateVariable
+	 *            the random variable describing the process states (may be
+	 *            null if no categorical distributions are needed).
+	 * @param transitionModel
+	 *            the S * S transition model in row-major order, i.e.
+	 *            transitionModel[i * S + j] = P(X<sub>t</sub> = j |
+	 *            X<sub>t-1</sub> = i).
+	 * @param symbols
+	 *            the M possible evidence values.
+	 * @param emission
+	 *            the M * S sensor model, emission[k * S + i] = P(e =
+	 *            symbols[k] | X<sub>t</sub> = i).
+	 * @param prior
+	 *            the prior distribution <b>P</b>(X<sub>0</sub>).
+	 */
+	public CompactHMM(RandomVariable stateVariable, double[] transitionModel,
+			Object[] symbols, double[] emission, double[] prior) {
+		this(stateVariable, prior.length, prior, toRows(transitionModel,
+				prior.length), symbols, emission);
+	}
+
+	/**
+	 * Converts a matrix based hidden Markov model.
+	 *
+	 * @param hmm
+	 *            the model to be converted.
+	 * @return the equivalent compact model.
+	 */
+	public static CompactHMM from(HiddenMarkovModel hmm) {
+		Matrix t = hmm.getTransitionModel();
+		int n = t.getRowDimension();
+		double[] transitionModel = new double[n * n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				transitionModel[i * n + j] = t.get(i, j);
+			}
+		}
+		Map<Object, Matrix> sensorModel = hmm.getSensorModel();
+		Object[] symbols = sensorModel.keySet().toArray();
+		double[] emission = new double[symbols.length * n];
+		for (int k = 0; k < symbols.length; k++) {
+			Matrix o = sensorModel.get(symbols[k]);
+			for (int i = 0; i < n; i++) {
+				emission[k * n + i] = o.get(i, i);
+			}
+		}
+		return new CompactHMM(hmm.getStateVariable(), transitionModel,
+				symbols, emission, hmm.getPrior().getColumnPackedCopy());
+	}
+
+	/**
+	 * Creates a model with the same states, evidence values and transition
+	 * structure but new parameters. Used by learning algorithms.
+	 *
+	 * @param prior
+	 *            the new prior distribution.
+	 * @param transitionValues
+	 *            the new non-zero transition probabilities, in the order of
+	 *            {@link #getTransitionValues()}.
+	 * @param emission
+	 *            the new M * S sensor model.
+	 * @return a new model.
+	 */
+	public CompactHMM withParameters(double[] prior, double[] transitionValues,
+			double[] emission) {
+		if (transitionValues.length != values.length
+				|| emission.length != this.emission.length
+				|| prior.length != stateCount) {
+			throw new IllegalArgumentException(
+					"Parameters do not match the structure of the model.");
+		}
+		return new CompactHMM(stateVariable, stateCount, prior, new Rows(
+				rowStart, columns, transitionValues.clone()), symbols, emission);
+	}
+
+	public RandomVariable getStateVariable() {
+		return stateVariable;
+	}
+
+	/**
+	 * @return the number S of states.
+	 */
+	public int getStateCount() {
+		return stateCount;
+	}
+
+	/**
+	 * @return the number M of evidence values.
+	 */
+	public int getSymbolCount() {
+		return symbols.length;
+	}
+
+	public Object getSymbol(int k) {
+		return symbols[k];
+	}
+
+	/**
+	 * Returns the index of an evidence value.
+	 *
+	 * @param symbol
+	 *            the evidence value.
+	 * @return the index of the value.
+	 */
+	public int getSymbolIndex(Object symbol) {
+		Integer k = symbolIndexes.get(symbol);
+		if (null == k) {
+			throw new IllegalArgumentException(
+					"Evidence does not map to sensor model.");
+		}
+		return k;
+	}
+
+	/**
+	 * Converts a single evidence observation into its index.
+	 *
+	 * @param evidence
+	 *            the evidence assignment e.
+	 * @return the index of the evidence value.
+	 */
+	public int encode(List<AssignmentProposition> evidence) {
+		if (evidence.size() != 1) {
+			throw new IllegalArgumentException(
+					"Only a single evidence observation value should be provided.");
+		}
+		return getSymbolIndex(evidence.get(0).getValue());
+	}
+
+	/**
+	 * Converts a sequence of evidence observations into their indexes.
+	 *
+	 * @param ev
+	 *            the evidence for steps 1,...,t.
+	 * @return the indexes of the evidence values.
+	 */
+	public int[] encodeSequence(List<List<AssignmentProposition>> ev) {
+		int[] result = new int[ev.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = encode(ev.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * @return the prior distribution. The array must not be modified.
+	 */
+	public double[] getPrior() {
+		return prior;
+	}
+
+	/**
+	 * @return the M * S sensor model. The array must not be modified.
+	 */
+	public double[] getEmission() {
+		return emission;
+	}
+
+	/**
+	 * @return the start offsets of the rows of the transition model in
+	 *         {@link #getColumnIndexes()} and {@link #getTransitionValues()},
+	 *         S + 1 entries.
+	 */
+	public int[] getRowStart() {
+		return rowStart;
+	}
+
+	/**
+	 * @return the column of each non-zero transition probability.
+	 */
+	public int[] getColumnIndexes() {
+		return columns;
+	}
+
+	/**
+	 * @return the non-zero transition probabilities, row by row.
+	 */
+	public double[] getTransitionValues() {
+		return values;
+	}
+
+	/**
+	 * @return true if the kernels work on the compressed rows only.
+	 */
+	public boolean isSparse() {
+		return null == dense;
+	}
+
+	/**
+	 * Calculates the one step prediction out = <b>T</b><sup>T</sup>f.
+	 *
+	 * @param f
+	 *            a distribution over X<sub>t-1</sub>.
+	 * @param out
+	 *            receives the (unnormalized) distribution over X<sub>t</sub>.
+	 *            Must not be the same array as f.
+	 */
+	public void predict(double[] f, double[] out) {
+		predict(f, 0, out, 0);
+	}
+
+	/**
+	 * Calculates the one step prediction for messages stored at an offset of
+	 * larger arrays.
+	 *
+	 * @param f
+	 *            contains the distribution over X<sub>t-1</sub> at fOffset.
+	 * @param fOffset
+	 *            the offset of the distribution in f.
+	 * @param out
+	 *            receives the distribution over X<sub>t</sub> at outOffset.
+	 *            The two ranges must not overlap.
+	 * @param outOffset
+	 *            the offset of the result in out.
+	 */
+	public void predict(double[] f, int fOffset, double[] out, int outOffset) {
+		int n = stateCount;
+		Arrays.fill(out, outOffset, outOffset + n, 0.0);
+		if (null != dense) {
+			for (int i = 0, row = 0; i < n; i++, row += n) {
+				double fi = f[fOffset + i];
+				if (fi != 0.0) {
+					for (int j = 0; j < n; j++) {
+						out[outOffset + j] += fi * dense[row + j];
+					}
+				}
+			}
+		} else {
+			for (int i = 0; i < n; i++) {
+				double fi = f[fOffset + i];
+				if (fi != 0.0) {
+					for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+						out[outOffset + columns[k]] += fi * values[k];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calculates the backward propagation out = <b>T</b>b.
+	 *
+	 * @param b
+	 *            a message over X<sub>t</sub>.
+	 * @param out
+	 *            receives the message over X<sub>t-1</sub>. Must not be the
+	 *            same array as b.
+	 */
+	public void propagateBack(double[] b, double[] out) {
+		int n = stateCount;
+		if (null != dense) {
+			for (int i = 0, row = 0; i < n; i++, row += n) {
+				double sum = 0.0;
+				for (int j = 0; j < n; j++) {
+					sum += dense[row + j] * b[j];
+				}
+				out[i] = sum;
+			}
+		} else {
+			for (int i = 0; i < n; i++) {
+				double sum = 0.0;
+				for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+					sum += values[k] * b[columns[k]];
+				}
+				out[i] = sum;
+			}
+		}
+	}
+
+	/**
+	 * Multiplies a message element-wise with the likelihoods of an evidence
+	 * value, i.e. applies the diagonal matrix <b>O</b> without building it.
+	 *
+	 * @param symbol
+	 *            the index of the evidence value.
+	 * @param f
+	 *            the message, which is scaled in place.
+	 * @return the sum of the scaled message.
+	 */
+	public double observe(int symbol, double[] f) {
+		return observe(symbol, f, 0);
+	}
+
+	/**
+	 * Applies the likelihoods of an evidence value to a message stored at an
+	 * offset of a larger array.
+	 *
+	 * @param symbol
+	 *            the index of the evidence value.
+	 * @param f
+	 *            contains the message, which is scaled in place.
+	 * @param offset
+	 *            the offset of the message in f.
+	 * @return the sum of the scaled message.
+	 */
+	public double observe(int symbol, double[] f, int offset) {
+		int e = symbol * stateCount;
+		double sum = 0.0;
+		for (int i = 0; i < stateCount; i++) {
+			f[offset + i] *= emission[e + i];
+			sum += f[offset + i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Convert an array of state probabilities to a Categorical Distribution.
+	 *
+	 * @param values
+	 *            the probabilities, indexed like the states.
+	 * @return a categorical distribution over the state variable.
+	 */
+	public CategoricalDistribution convert(double[] values) {
+		return new ProbabilityTable(values, stateVariable);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private CompactHMM(RandomVariable stateVariable, int n, double[] prior,
+			Rows rows, Object[] symbols, double[] emission) {
+		if (emission.length != symbols.length * n) {
+			throw new IllegalArgumentException(
+					"Sensor model does not map correctly to the states.");
+		}
+		this.stateVariable = stateVariable;
+		this.stateCount = n;
+		this.prior = prior.clone();
+		this.rowStart = rows.rowStart;
+		this.columns = rows.columns;
+		this.values = rows.values;
+		if (values.length > SPARSE_DENSITY * n * n) {
+			dense = new double[n * n];
+			for (int i = 0; i < n; i++) {
+				for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+					dense[i * n + columns[k]] = values[k];
+				}
+			}
+		} else {
+			dense = null;
+		}
+		this.symbols = symbols.clone();
+		this.symbolIndexes = new HashMap<Object, Integer>();
+		for (int k = 0; k < symbols.length; k++) {
+			symbolIndexes.put(symbols[k], k);
+		}
+		this.emission = emission.clone();
+	}
+
+	private static Rows toRows(double[] transitionModel, int n) {
+		if (transitionModel.length != n * n) {
+			throw new IllegalArgumentException(
+					"Transition Model does not map correctly to the prior.");
+		}
+		int nonZero = 0;
+		for (double p : transitionModel) {
+			if (p != 0.0) {
+				nonZero++;
+			}
+		}
+		int[] rowStart = new int[n + 1];
+		int[] columns = new int[nonZero];
+		double[] values = new double[nonZero];
+		int k = 0;
+		for (int i = 0; i < n; i++) {
+			rowStart[i] = k;
+			for (int j = 0; j < n; j++) {
+				double p = transitionModel[i * n + j];
+				if (p != 0.0) {
+					columns[k] = j;
+					values[k++] = p;
+				}
+			}
+		}
+		rowStart[n] = k;
+		return new Rows(rowStart, columns, values);
+	}
+
+	private static class Rows {
+		final int[] rowStart;
+		final int[] columns;
+		final double[] values;
+
+		Rows(int[] rowStart, int[] columns, double[] values) {
+			this.rowStart = rowStart;
+			this.columns = columns;
+			this.values = values;
+		}
+	}
+}
@@ -0,0 +1,285 @@
+package aima.core.probability.util;
+
+import aima.core.util.Randomizer;
+
+/**
+ * Implementations of WEIGHTED-SAMPLE-WITH-REPLACEMENT that work directly on
+ * arrays of particle indexes.<br>
+ * <br>
+ * Artificial Intelligence A Modern Approach (3rd Edition): page 598 states
+ * that the WEIGHTED-SAMPLE-WITH-REPLACEMENT operation can be implemented to
+ * run in O(N) expected time. Sampling every particle separately through
+ * {@link ProbUtil#sample(double, aima.core.probability.RandomVariable, double[])}
+ * is O(N) per draw and therefore O(N<sup>2</sup>) per population. The schemes
+ * provided here are:
+ * <ul>
+ * <li>{@link Scheme#MULTINOMIAL}: N independent draws, located by binary
+ * search in the cumulative weights (O(N log N)). Consumes one random number
+ * per draw and selects exactly the same indexes as {@code ProbUtil.sample}
+ * would for the same random numbers.</li>
+ * <li>{@link Scheme#SYSTEMATIC}: a single random offset and N equally spaced
+ * pointers into the cumulative weights (O(N), lowest variance).</li>
+ * <li>{@link Scheme#STRATIFIED}: one random number within each of the N
+ * equally sized strata (O(N)).</li>
+ * <li>{@link Scheme#RESIDUAL}: floor(N*w<sub>i</sub>) deterministic copies
+ * of each particle, the remainder is filled systematically from the residual
+ * weights (O(N)).</li>
+ * </ul>
+ * Weights need not be normalized. In addition, helpers for weights kept in
+ * log-space and for KLD-sampling (Fox 2003) are provided.
+ */
+public class Resampling {
+
+	/**
+	 * The supported resampling schemes.
+	 */
+	public enum Scheme {
+		MULTINOMIAL, SYSTEMATIC, STRATIFIED, RESIDUAL
+	}
+
+	/**
+	 * Draws n indexes from the weighted population.
+	 *
+	 * @param scheme
+	 *            the resampling scheme to be used.
+	 * @param w
+	 *            the (not necessarily normalized) weights of the particles.
+	 * @param size
+	 *            the number of particles in the population (only the first
+	 *            size entries of w are used).
+	 * @param n
+	 *            the number of indexes to be drawn.
+	 * @param r
+	 *            the randomizer to be used.
+	 * @param result
+	 *            an array of length of at least n which receives the selected
+	 *            indexes in ascending order, or null.
+	 * @return the array containing the selected indexes.
+	 */
+	public static int[] resample(Scheme scheme, double[] w, int size, int n,
+			Randomizer r, int[] result) {
+		if (result == null || result.length < n)
+			result = new int[n];
+		switch (scheme) {
+		case MULTINOMIAL:
+			multinomial(w, size, n, r, result);
+			break;
+		case SYSTEMATIC:
+			systematic(w, size, n, r, result);
+			break;
+		case STRATIFIED:
+			stratified(w, size, n, r, result);
+			break;
+		case RESIDUAL:
+			residual(w, size, n, r, result);
+			break;
+		}
+		return result;
+	}
+
+	/**
+	 * Convenience method which resamples a population of the same size.
+	 */
+	public static int[] resample(Scheme scheme, double[] w, Randomizer r) {
+		return resample(scheme, w, w.length, w.length, r, null);
+	}
+
+	/**
+	 * N independent draws from the cumulative distribution, O(N log N).
+	 */
+	public static void multinomial(double[] w, int size, int n, Randomizer r,
+			int[] result) {
+		double[] cumulative = cumulative(w, size);
+		for (int i = 0; i < n; i++)
+			result[i] = search(cumulative, size, r.nextDouble());
+	}
+
+	/**
+	 * Systematic resampling, O(N). Only one random number is consumed.
+	 */
+	public static void systematic(double[] w, int size, int n, Randomizer r,
+			int[] result) {
+		double total = checkedSum(w, size);
+		double step = total / n;
+		double u = r.nextDouble() * step;
+		double c = w[0];
+		int j = 0;
+		for (int i = 0; i < n; i++) {
+			while (u > c && j < size - 1)
+				c += w[++j];
+			result[i] = j;
+			u += step;
+		}
+	}
+
+	/**
+	 * Stratified resampling, O(N). One random number per stratum is consumed.
+	 */
+	public static void stratified(double[] w, int size, int n, Randomizer r,
+			int[] result) {
+		double total = checkedSum(w, size);
+		double step = total / n;
+		double c = w[0];
+		int j = 0;
+		for (int i = 0; i < n; i++) {
+			double u = (i + r.nextDouble()) * step;
+			while (u > c && j < size - 1)
+				c += w[++j];
+			result[i] = j;
+		}
+	}
+
+	/**
+	 * Residual resampling, O(N). The deterministic part needs no random
+	 * numbers, the residual part is sampled systematically.
+	 */
+	public static void residual(double[] w, int size, int n, Randomizer r,
+			int[] result) {
+		double total = checkedSum(w, size);
+		double[] residuals = new double[size];
+		int k = 0;
+		for (int j = 0; j < size; j++) {
+			double expected = n * w[j] / total;
+			int copies = (int) expected;
+			for (int c = 0; c < copies && k < n; c++)
+				result[k++] = j;
+			residuals[j] = expected - copies;
+		}
+		int remaining = n - k;
+		if (remaining > 0) {
+			int[] rest = new int[remaining];
+			if (checkedSumOrZero(residuals, size) > 0)
+				systematic(residuals, size, remaining, r, rest);
+			else
+				systematic(w, size, remaining, r, rest);
+			// merge both ascending sequences to keep the result sorted
+			int a = k - 1, b = remaining - 1;
+			for (int i = n - 1; i >= 0; i--) {
+				if (b < 0 || (a >= 0 && result[a] > rest[b]))
+					result[i] = result[a--];
+				else
+					result[i] = rest[b--];
+			}
+		}
+	}
+
+	/**
+	 * Converts log-space weights into normalized weights by means of the
+	 * log-sum-exp trick, which avoids underflow when many small likelihoods
+	 * are multiplied.
+	 *
+	 * @param logW
+	 *            the logarithms of the (not necessarily normalized) weights.
+	 * @param size
+	 *            the number of weights to be processed.
+	 * @param w
+	 *            the array receiving the normalized weights. May be the same
+	 *            array as logW.
+	 * @return the logarithm of the sum of the original weights, or
+	 *         {@code Double.NEGATIVE_INFINITY} if all weights are zero (in
+	 *         which case w is filled with uniform weights).
+	 */
+	public static double normalizeLogWeights(double[] logW, int size,
+			double[] w) {
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < size; i++)
+			if (logW[i] > max)
+				max = logW[i];
+		if (max == Double.NEGATIVE_INFINITY || Double.isNaN(max)) {
+			for (int i = 0; i < size; i++)
+				w[i] = 1.0 / size;
+			return Double.NEGATIVE_INFINITY;
+		}
+		double sum = 0;
+		for (int i = 0; i < size; i++) {
+			w[i] = Math.exp(logW[i] - max);
+			sum += w[i];
+		}
+		for (int i = 0; i < size; i++)
+			w[i] /= sum;
+		return max + Math.log(sum);
+	}
+
+	/**
+	 * Computes the effective sample size 1 / sum(w<sub>i</sub><sup>2</sup>)
+	 * of a population with the given (not necessarily normalized) weights.
+	 */
+	public static double effectiveSampleSize(double[] w, int size) {
+		double sum = 0;
+		double sumSq = 0;
+		for (int i = 0; i < size; i++) {
+			sum += w[i];
+			sumSq += w[i] * w[i];
+		}
+		return sumSq > 0 ? sum * sum / sumSq : 0;
+	}
+
+	/**
+	 * Computes the number of samples needed by KLD-sampling to guarantee that
+	 * with probability 1-delta the Kullback-Leibler distance between the
+	 * sample-based maximum likelihood estimate and the true posterior does not
+	 * exceed epsilon (Wilson-Hilferty approximation of the chi-square
+	 * quantile).
+	 *
+	 * @param k
+	 *            the number of histogram bins with support.
+	 * @param epsilon
+	 *            the maximum error.
+	 * @param zQuantile
+	 *            the upper 1-delta quantile of the standard normal
+	 *            distribution (e.g. 2.326 for delta = 0.01).
+	 * @return the number of samples needed.
+	 */
+	public static int kldSampleSize(int k, double epsilon, double zQuantile) {
+		if (k <= 1)
+			return 1;
+		double a = 2.0 / (9.0 * (k - 1));
+		double b = 1.0 - a + Math.sqrt(a) * zQuantile;
+		return (int) Math.ceil((k - 1) / (2.0 * epsilon) * b * b * b);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/** Returns the cumulative sums of the normalized weights. */
+	private static double[] cumulative(double[] w, int size) {
+		double total = checkedSum(w, size);
+		double[] result = new double[size];
+		double c = 0;
+		for (int i = 0; i < size; i++) {
+			c += w[i] / total;
+			result[i] = c;
+		}
+		return result;
+	}
+
+	/** Returns the first index i with cumulative[i] >= value. */
+	private static int search(double[] cumulative, int size, double value) {
+		int lo = 0;
+		int hi = size - 1;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (cumulative[mid] < value)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	private static double checkedSum(double[] w, int size) {
+		double total = checkedSumOrZero(w, size);
+		if (!(total > 0))
+			throw new IllegalArgumentException(
+					"Weights must be non-negative and not all zero.");
+		return total;
+	}
+
+	private static double checkedSumOrZero(double[] w, int size) {
+		double total = 0;
+		for (int i = 0; i < size; i++)
+			total += w[i];
+		return total;
+	}
+}
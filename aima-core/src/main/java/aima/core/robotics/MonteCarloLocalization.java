@@ -1,19 +1,17 @@
 package aima.core.robotics;
 
-import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.stream.IntStream;
 
 import aima.core.probability.bayes.approx.ParticleFiltering;
-import aima.core.probability.domain.FiniteIntegerDomain;
-import aima.core.probability.util.ProbUtil;
-import aima.core.probability.util.RandVar;
+import aima.core.probability.util.Resampling;
 import aima.core.robotics.datatypes.IMclMove;
 import aima.core.robotics.datatypes.IMclPose;
 import aima.core.robotics.datatypes.IMclRangeReading;
 import aima.core.robotics.datatypes.IMclVector;
+import aima.core.robotics.impl.ParticleEngine2D;
 import aima.core.util.Randomizer;
-import aima.core.util.Util;
 
 /**
  * Artificial Intelligence A Modern Approach (3rd Edition): page 982.<br>
@@ -45,6 +43,10 @@ import aima.core.util.Util;
  * <li>{@code weightSamples} represents the second to second last line of the update cycle. A vector of weights is created by this method for the given range scans by comparing every range scan to a ray cast with the correspondent sample through the range sensor noise model.</li>
  * </ol>
  * The WEIGHTED-SAMPLE-WITH-REPLACEMENT is implemented by the method {@code extendedWeightedSampleWithReplacement}. This implementation contains the addition of a cutoff value. All particles having a weight below this cutoff are ignored.
+ * The re-sampling is delegated to {@link Resampling} and runs in O(N) with the default systematic scheme. The weights are accumulated in log-space to avoid underflow for long range scans
+ * and the samples can be weighted in parallel if the map is thread-safe (see {@code setParallelWeighting}).
+ * <br/><br/>
+ * For two-dimensional poses, {@link ParticleEngine2D} offers the same update cycle on flat arrays instead of pose objects.
  * <br/><br/>
  * It is possible to reduce the steps needed for the localization by tweaking the  sample count and the parameter {@code cutOff}.
  * <br/><br/>
@@ -59,13 +61,12 @@ import aima.core.util.Util;
  */
 public final class MonteCarloLocalization<P extends IMclPose<P,V,M>, V extends IMclVector, M extends IMclMove<M>, R extends IMclRangeReading<R,V>> {
 	
-	private static final String SAMPLE_INDEXES_NAME = "SAMPLE_INDEXES";
-	
 	private final IMclMap<P,V,M,R> map;
 	private final Randomizer randomizer;
 	
-	private RandVar sampleIndexes;
 	private double weightCutOff;
+	private Resampling.Scheme resamplingScheme = Resampling.Scheme.SYSTEMATIC;
+	private boolean parallelWeighting;
 	
 	/**
 	 * @param map an instance of a class implementing {@link IMclMap}.
@@ -84,6 +85,22 @@ public final class MonteCarloLocalization<P extends IMclPose<P,V,M>, V extends I
 		this.weightCutOff = cutOff;
 	}
 	
+	/**
+	 * Sets the scheme used for re-sampling.
+	 * @param resamplingScheme the scheme used by {@code extendedWeightedSampleWithReplacement}. The default is {@code SYSTEMATIC}.
+	 */
+	public void setResamplingScheme(Resampling.Scheme resamplingScheme) {
+		this.resamplingScheme = resamplingScheme;
+	}
+	
+	/**
+	 * Enables the parallel weighting of the samples.
+	 * @param parallelWeighting {@code true} if the samples may be weighted concurrently. Only enable this if {@code rayCast} and {@code isPoseValid} of the map are thread-safe.
+	 */
+	public void setParallelWeighting(boolean parallelWeighting) {
+		this.parallelWeighting = parallelWeighting;
+	}
+	
 	/**
 	 * Applies a move to the samples, creating a new {@link Set}.
 	 * @param samples the samples the move will be applied to.
@@ -104,19 +121,33 @@ public final class MonteCarloLocalization<P extends IMclPose<P,V,M>, V extends I
 	 * @param rangeReadings the vector containing all range scans.
 	 * @return a vector of weights of size N.
 	 */
+	@SuppressWarnings("unchecked")
 	protected double[] weightSamples(Set<P> samples, R[] rangeReadings) {
-		Iterator<P> samplesIterator = samples.iterator();
-		double[] w = new double[samples.size()];
-		for(int j=0;j<samples.size();j++) {
-			P sample = samplesIterator.next();
+		final Object[] array = samples.toArray();
+		final double[] logW = new double[array.length];
+		IntStream indexes = IntStream.range(0, array.length);
+		if(parallelWeighting) indexes = indexes.parallel();
+		indexes.forEach(j -> {
+			P sample = (P) array[j];
 			if(map.isPoseValid(sample)) {
-				w[j] = 1.0d;
+				logW[j] = 0.0d;
 				for(int i=0;i<rangeReadings.length;i++) {
-					w[j] = w[j] * rangeReadings[i].calculateWeight(map.rayCast(sample.addAngle(rangeReadings[i].getAngle())));
+					logW[j] += Math.log(rangeReadings[i].calculateWeight(map.rayCast(sample.addAngle(rangeReadings[i].getAngle()))));
 				}
 			} else {
-				w[j] = 0.0d;
+				logW[j] = Double.NEGATIVE_INFINITY;
 			}
+		});
+		/*If even the best weight underflows and no cut-off is used, scale the weights so that the best sample has weight one. The relative weights are unchanged.*/
+		double max = Double.NEGATIVE_INFINITY;
+		for(double lw: logW) {
+			if(lw > max) max = lw;
+		}
+		double[] w = new double[array.length];
+		if(max == Double.NEGATIVE_INFINITY) return w;
+		double scale = weightCutOff > 0.0d || Math.exp(max) > 0.0d ? 0.0d : max;
+		for(int j=0;j<w.length;j++) {
+			w[j] = Math.exp(logW[j] - scale);
 		}
 		return w;
 	}
@@ -135,12 +166,11 @@ public final class MonteCarloLocalization<P extends IMclPose<P,V,M>, V extends I
 		}
 		if(i >= samples.size()) return generateCloud(samples.size()); /*If all particleCloud are below weightCutOff, generate a new set of samples, as we are lost.*/
 		/*WEIGHTED-SAMPLE-WITH-REPLACEMENT:*/
-		double[] normalizedW = Util.normalize(w);
+		final int[] selectedSamples = Resampling.resample(resamplingScheme, w, samples.size(), samples.size(), randomizer, null);
 		Set<P> newSamples = new LinkedHashSet<P>();
 		Object[] array = samples.toArray(new Object[0]);
 		for(i=0; i < samples.size(); i++) {
-			final int selectedSample = (Integer) ProbUtil.sample(randomizer.nextDouble(),sampleIndexes,normalizedW);
-			newSamples.add(((P) array[selectedSample]).clone());
+			newSamples.add(((P) array[selectedSamples[i]]).clone());
 		}
 		return newSamples;
 	}
@@ -152,12 +182,9 @@ public final class MonteCarloLocalization<P extends IMclPose<P,V,M>, V extends I
 	 */
 	public Set<P> generateCloud(int N) {
 		Set<P>samples = new LinkedHashSet<P>();
-		Integer[] indexes = new Integer[N];
 		for(int i=0;i<N;i++) {
 			samples.add(map.randomPose());
-			indexes[i] = i;
 		}
-		sampleIndexes = new RandVar(SAMPLE_INDEXES_NAME, new FiniteIntegerDomain(indexes));
 		return samples;
 	}
 	
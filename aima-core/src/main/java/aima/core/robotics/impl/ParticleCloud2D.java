@@ -0,0 +1,233 @@
+package aima.core.robotics.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import aima.core.probability.util.Resampling;
+import aima.core.robotics.datatypes.IMclMove;
+import aima.core.robotics.impl.datatypes.IPose2D;
+import aima.core.robotics.impl.map.IPoseFactory;
+import aima.core.util.math.geom.shapes.Point2D;
+
+/**
+ * A set of weighted two-dimensional poses stored as a structure of arrays.<br/>
+ * Instead of one pose object per sample, the coordinates, headings and weights of all samples are kept in flat
+ * {@code double} arrays. Weights are maintained in log-space ({@code getLogWeights}) while the sensor model is applied
+ * and converted into normalized weights ({@code getWeights}) before resampling.<br/>
+ * The arrays are exposed directly so that motion and sensor models can work on them without any allocation.
+ * Only the first {@code size()} entries are valid.
+ *
+ * @see ParticleEngine2D
+ */
+public class ParticleCloud2D {
+
+	private double[] x;
+	private double[] y;
+	private double[] heading;
+	private double[] weight;
+	private double[] logWeight;
+	private int size;
+
+	// buffers used to gather resampled particles without allocation
+	private double[] xBuffer = new double[0];
+	private double[] yBuffer = new double[0];
+	private double[] headingBuffer = new double[0];
+
+	/**
+	 * @param capacity the initial number of particles that can be stored.
+	 */
+	public ParticleCloud2D(int capacity) {
+		x = new double[capacity];
+		y = new double[capacity];
+		heading = new double[capacity];
+		weight = new double[capacity];
+		logWeight = new double[capacity];
+	}
+
+	/**
+	 * Creates a cloud from a collection of poses. Every particle gets the same weight.
+	 * @param poses the poses to be copied into the cloud.
+	 * @return a new cloud containing the poses.
+	 */
+	public static ParticleCloud2D fromPoses(Collection<? extends IPose2D<?,?>> poses) {
+		ParticleCloud2D result = new ParticleCloud2D(poses.size());
+		for(IPose2D<?,?> pose : poses) {
+			result.add(pose.getX(), pose.getY(), pose.getHeading());
+		}
+		result.resetWeights();
+		return result;
+	}
+
+	/**
+	 * Converts the particles of this cloud into pose objects.
+	 * @param poseFactory the factory used to create the poses.
+	 * @return a set containing one pose per particle.
+	 */
+	public <P extends IPose2D<P,M>,M extends IMclMove<M>> Set<P> toPoses(IPoseFactory<P,M> poseFactory) {
+		Set<P> result = new LinkedHashSet<P>();
+		for(int i = 0; i < size; i++) {
+			result.add(poseFactory.getPose(new Point2D(x[i], y[i]), heading[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of particles in this cloud.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes all particles.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Adds a particle with log-weight zero. Call {@code resetWeights} after all particles have been added.
+	 * @param x the X coordinate of the particle.
+	 * @param y the Y coordinate of the particle.
+	 * @param heading the heading of the particle in radians.
+	 */
+	public void add(double x, double y, double heading) {
+		ensureCapacity(size + 1);
+		this.x[size] = x;
+		this.y[size] = y;
+		this.heading[size] = heading;
+		this.logWeight[size] = 0.0d;
+		size++;
+	}
+
+	/**
+	 * Makes sure that at least {@code capacity} particles can be stored without reallocation.
+	 * @param capacity the needed capacity.
+	 */
+	public void ensureCapacity(int capacity) {
+		if(capacity > x.length) {
+			int newCapacity = Math.max(capacity, x.length + (x.length >> 1) + 1);
+			x = Arrays.copyOf(x, newCapacity);
+			y = Arrays.copyOf(y, newCapacity);
+			heading = Arrays.copyOf(heading, newCapacity);
+			weight = Arrays.copyOf(weight, newCapacity);
+			logWeight = Arrays.copyOf(logWeight, newCapacity);
+		}
+	}
+
+	/**
+	 * @return the X coordinates of the particles.
+	 */
+	public double[] getXs() {
+		return x;
+	}
+
+	/**
+	 * @return the Y coordinates of the particles.
+	 */
+	public double[] getYs() {
+		return y;
+	}
+
+	/**
+	 * @return the headings of the particles in radians.
+	 */
+	public double[] getHeadings() {
+		return heading;
+	}
+
+	/**
+	 * @return the normalized weights of the particles. They are valid after {@code normalizeWeights} was called.
+	 */
+	public double[] getWeights() {
+		return weight;
+	}
+
+	/**
+	 * @return the logarithms of the (not normalized) weights of the particles.
+	 */
+	public double[] getLogWeights() {
+		return logWeight;
+	}
+
+	/**
+	 * Sets all particles to the same weight.
+	 */
+	public void resetWeights() {
+		double w = 1.0d / size;
+		for(int i = 0; i < size; i++) {
+			weight[i] = w;
+			logWeight[i] = 0.0d;
+		}
+	}
+
+	/**
+	 * Converts the log-space weights into normalized weights.
+	 * @return the logarithm of the sum of the weights, {@code Double.NEGATIVE_INFINITY} if all particles have weight zero.
+	 */
+	public double normalizeWeights() {
+		return Resampling.normalizeLogWeights(logWeight, size, weight);
+	}
+
+	/**
+	 * Replaces the particles of this cloud by the selected particles. Afterwards, the cloud contains {@code n}
+	 * particles with uniform weight.
+	 * @param indexes the indexes of the particles to be kept (duplicates are allowed).
+	 * @param n the number of valid entries in {@code indexes}.
+	 */
+	public void select(int[] indexes, int n) {
+		if(xBuffer.length < n) {
+			xBuffer = new double[Math.max(n, x.length)];
+			yBuffer = new double[xBuffer.length];
+			headingBuffer = new double[xBuffer.length];
+		}
+		for(int i = 0; i < n; i++) {
+			int j = indexes[i];
+			xBuffer[i] = x[j];
+			yBuffer[i] = y[j];
+			headingBuffer[i] = heading[j];
+		}
+		double[] tmp = x; x = xBuffer; xBuffer = tmp;
+		tmp = y; y = yBuffer; yBuffer = tmp;
+		tmp = heading; heading = headingBuffer; headingBuffer = tmp;
+		if(weight.length < x.length) {
+			weight = new double[x.length];
+			logWeight = new double[x.length];
+		}
+		size = n;
+		resetWeights();
+	}
+
+	/**
+	 * Calculates the weighted mean of the particles. The heading is averaged on the unit circle.
+	 * @return an array containing the mean X coordinate, Y coordinate and heading.
+	 */
+	public double[] mean() {
+		double mx = 0.0d, my = 0.0d, sin = 0.0d, cos = 0.0d;
+		for(int i = 0; i < size; i++) {
+			mx += weight[i] * x[i];
+			my += weight[i] * y[i];
+			sin += weight[i] * Math.sin(heading[i]);
+			cos += weight[i] * Math.cos(heading[i]);
+		}
+		double heading = Math.atan2(sin, cos);
+		return new double[] { mx, my, heading < 0 ? heading + 2 * Math.PI : heading };
+	}
+
+	/**
+	 * Calculates the diagonal of the axis aligned bounding box of all particles. This is an O(N) upper bound for the
+	 * maximum distance between two particles.
+	 * @return the diagonal of the bounding box.
+	 */
+	public double spread() {
+		if(size == 0) return 0.0d;
+		double minX = x[0], maxX = x[0], minY = y[0], maxY = y[0];
+		for(int i = 1; i < size; i++) {
+			if(x[i] < minX) minX = x[i]; else if(x[i] > maxX) maxX = x[i];
+			if(y[i] < minY) minY = y[i]; else if(y[i] > maxY) maxY = y[i];
+		}
+		return Math.hypot(maxX - minX, maxY - minY);
+	}
+}
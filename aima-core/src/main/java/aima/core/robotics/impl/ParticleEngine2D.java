@@ -0,0 +1,333 @@
+package aima.core.robotics.impl;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import aima.core.probability.util.Resampling;
+import aima.core.robotics.MonteCarloLocalization;
+import aima.core.util.Randomizer;
+
+/**
+ * A Monte-Carlo-Localization engine for two-dimensional poses working on a {@link ParticleCloud2D}.<br/>
+ * It implements the same update cycle as {@link MonteCarloLocalization} but avoids one pose object per sample:
+ * <ol>
+ * <li>The motion model is applied to the particles in place.</li>
+ * <li>The sensor model is evaluated in log-space. As the weights of different particles are independent of each other
+ * the particles are weighted in parallel on the common fork-join pool. The sensor model therefore has to be thread-safe.</li>
+ * <li>The population is resampled with one of the O(N) schemes of {@link Resampling}.</li>
+ * </ol>
+ * Optionally, the number of particles is adapted by KLD-sampling: after weighting, the particles with non-negligible
+ * weight are sorted into a histogram over (x, y, heading) and the population size needed for the chosen error bound is
+ * calculated by {@link Resampling#kldSampleSize(int, double, double)}. This keeps the cloud small once the robot is
+ * localized and lets it grow while the belief is spread out.
+ */
+public class ParticleEngine2D {
+
+	/**
+	 * A motion model that moves the particles of a cloud in place.
+	 */
+	public interface MotionModel {
+		/**
+		 * Moves particle {@code i} of the cloud by writing its new coordinates and heading into the arrays of the cloud.
+		 * @param cloud the cloud containing the particle.
+		 * @param i the index of the particle.
+		 */
+		void move(ParticleCloud2D cloud, int i);
+	}
+
+	/**
+	 * A sensor model that rates a pose against the current measurement.
+	 */
+	public interface SensorModel {
+		/**
+		 * Calculates the logarithm of P(z | pose). Implementations have to be thread-safe.
+		 * @param x the X coordinate of the pose.
+		 * @param y the Y coordinate of the pose.
+		 * @param heading the heading of the pose.
+		 * @return the log-likelihood of the measurement, {@code Double.NEGATIVE_INFINITY} for invalid poses.
+		 */
+		double logLikelihood(double x, double y, double heading);
+	}
+
+	/**
+	 * A source of random poses, used to initialize and to re-initialize a cloud.
+	 */
+	public interface PoseSampler {
+		/**
+		 * Adds a random pose to the cloud.
+		 * @param cloud the cloud to which the pose is added.
+		 */
+		void addRandomPose(ParticleCloud2D cloud);
+	}
+
+	private static final int PARALLEL_CHUNK_SIZE = 1024;
+	/**
+	 * The default maximum number of particles of KLD-sampling. It is also the size of the cloud after a
+	 * re-initialization, so it has to be small enough to be weighted in every cycle.
+	 */
+	public static final int DEFAULT_MAX_PARTICLES = 10000;
+	/**
+	 * The default minimum number of particles of KLD-sampling.
+	 */
+	public static final int DEFAULT_MIN_PARTICLES = 100;
+
+	private final Randomizer randomizer;
+	private final PoseSampler poseSampler;
+	private Resampling.Scheme resamplingScheme = Resampling.Scheme.SYSTEMATIC;
+	private boolean parallel = true;
+	private double weightCutOff = 0.0d;
+	private int[] indexes = new int[0];
+
+	private boolean kldSampling = false;
+	private double kldEpsilon = 0.05d;
+	private double kldZQuantile = 2.326d;
+	private double binSizeXY = 1.0d;
+	private double binSizeHeading = Math.PI / 18;
+	private int minParticles = DEFAULT_MIN_PARTICLES;
+	private int maxParticles = DEFAULT_MAX_PARTICLES;
+	private final LongHashSet bins = new LongHashSet();
+
+	/**
+	 * @param poseSampler a source of random poses.
+	 * @param randomizer the randomizer used for resampling.
+	 */
+	public ParticleEngine2D(PoseSampler poseSampler, Randomizer randomizer) {
+		this.poseSampler = poseSampler;
+		this.randomizer = randomizer;
+	}
+
+	/**
+	 * Sets the resampling scheme. The default is {@code SYSTEMATIC}.
+	 * @param resamplingScheme the scheme to be used.
+	 */
+	public void setResamplingScheme(Resampling.Scheme resamplingScheme) {
+		this.resamplingScheme = resamplingScheme;
+	}
+
+	/**
+	 * Enables or disables the parallel evaluation of the sensor model. It is enabled by default.
+	 * @param parallel whether particles may be weighted concurrently.
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Sets the minimum weight of the particles.
+	 * @param cutOff if no particle has a non-normalized weight above this value, the cloud is re-initialized as the robot is lost.
+	 */
+	public void setWeightCutOff(double cutOff) {
+		this.weightCutOff = cutOff;
+	}
+
+	/**
+	 * Enables KLD-sampling with bins of one unit along X and Y and 10 degrees along the heading. The cloud contains at
+	 * least {@link #DEFAULT_MIN_PARTICLES} and at most {@link #DEFAULT_MAX_PARTICLES} particles.
+	 * @param epsilon the maximum Kullback-Leibler distance between the sample-based and the true posterior.
+	 * @param zQuantile the upper 1-delta quantile of the standard normal distribution.
+	 */
+	public void enableKldSampling(double epsilon, double zQuantile) {
+		enableKldSampling(epsilon, zQuantile, 1.0d, Math.PI / 18, DEFAULT_MIN_PARTICLES, DEFAULT_MAX_PARTICLES);
+	}
+
+	/**
+	 * Enables KLD-sampling.
+	 * @param epsilon the maximum Kullback-Leibler distance between the sample-based and the true posterior.
+	 * @param zQuantile the upper 1-delta quantile of the standard normal distribution.
+	 * @param binSizeXY the size of the histogram bins along X and Y.
+	 * @param binSizeHeading the size of the histogram bins along the heading in radians.
+	 * @param minParticles the minimum number of particles.
+	 * @param maxParticles the maximum number of particles. A lost robot is re-initialized with this many particles.
+	 */
+	public void enableKldSampling(double epsilon, double zQuantile, double binSizeXY, double binSizeHeading,
+			int minParticles, int maxParticles) {
+		if(minParticles < 1 || maxParticles < minParticles)
+			throw new IllegalArgumentException("Invalid particle bounds: " + minParticles + ", " + maxParticles);
+		this.kldSampling = true;
+		this.kldEpsilon = epsilon;
+		this.kldZQuantile = zQuantile;
+		this.binSizeXY = binSizeXY;
+		this.binSizeHeading = binSizeHeading;
+		this.minParticles = minParticles;
+		this.maxParticles = maxParticles;
+	}
+
+	/**
+	 * Disables KLD-sampling. The number of particles is kept constant.
+	 */
+	public void disableKldSampling() {
+		this.kldSampling = false;
+	}
+
+	/**
+	 * This method is the initialization phase of the algorithm.
+	 * @param n the count of samples.
+	 * @return a new cloud containing n random samples.
+	 */
+	public ParticleCloud2D generateCloud(int n) {
+		ParticleCloud2D cloud = new ParticleCloud2D(n);
+		fill(cloud, n);
+		return cloud;
+	}
+
+	/**
+	 * Executes the update cycle of the Monte-Carlo-Localization on the given cloud.
+	 * @param cloud the sample cloud, which is updated in place.
+	 * @param motionModel the motion model representing the move of the robot.
+	 * @param sensorModel the sensor model representing the range scan performed after the move has ended.
+	 */
+	public void localize(ParticleCloud2D cloud, MotionModel motionModel, SensorModel sensorModel) {
+		applyMove(cloud, motionModel);
+		weightSamples(cloud, sensorModel);
+		resample(cloud);
+	}
+
+	/**
+	 * Applies the motion model to all particles. This is done sequentially, so that motion models drawing their noise
+	 * from a shared random number generator stay reproducible.
+	 * @param cloud the cloud to be moved.
+	 * @param motionModel the motion model.
+	 */
+	public void applyMove(ParticleCloud2D cloud, MotionModel motionModel) {
+		for(int i = 0; i < cloud.size(); i++) {
+			motionModel.move(cloud, i);
+		}
+	}
+
+	/**
+	 * Adds the log-likelihood of the measurement to the log-weight of every particle.
+	 * @param cloud the cloud to be weighted.
+	 * @param sensorModel the thread-safe sensor model.
+	 */
+	public void weightSamples(final ParticleCloud2D cloud, final SensorModel sensorModel) {
+		final int size = cloud.size();
+		final int chunks = (size + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+		IntStream stream = IntStream.range(0, chunks);
+		if(parallel && chunks > 1) stream = stream.parallel();
+		stream.forEach(c -> {
+			final double[] x = cloud.getXs();
+			final double[] y = cloud.getYs();
+			final double[] heading = cloud.getHeadings();
+			final double[] logWeight = cloud.getLogWeights();
+			final int to = Math.min(size, (c + 1) * PARALLEL_CHUNK_SIZE);
+			for(int i = c * PARALLEL_CHUNK_SIZE; i < to; i++) {
+				logWeight[i] += sensorModel.logLikelihood(x[i], y[i], heading[i]);
+			}
+		});
+	}
+
+	/**
+	 * Normalizes the weights and resamples the cloud. If all particles are below the weight cut-off, the cloud is
+	 * replaced by a new random cloud of the same size, or of the maximum size if KLD-sampling is enabled.
+	 * @param cloud the cloud to be resampled.
+	 */
+	public void resample(ParticleCloud2D cloud) {
+		final int size = cloud.size();
+		if(size == 0) return;
+		double maxLogWeight = Double.NEGATIVE_INFINITY;
+		final double[] logWeight = cloud.getLogWeights();
+		for(int i = 0; i < size; i++) {
+			if(logWeight[i] > maxLogWeight) maxLogWeight = logWeight[i];
+		}
+		if(maxLogWeight == Double.NEGATIVE_INFINITY || Double.isNaN(maxLogWeight)
+				|| (weightCutOff > 0.0d && maxLogWeight <= Math.log(weightCutOff))) {
+			/*If all particles are below weightCutOff, generate a new set of samples, as we are lost.*/
+			cloud.clear();
+			fill(cloud, kldSampling ? maxParticles : size);
+			return;
+		}
+		cloud.normalizeWeights();
+		int n = kldSampling ? kldParticleCount(cloud) : size;
+		if(indexes.length < n) indexes = new int[n];
+		Resampling.resample(resamplingScheme, cloud.getWeights(), size, n, randomizer, indexes);
+		cloud.select(indexes, n);
+	}
+
+	/**
+	 * Calculates the number of particles needed by KLD-sampling for the current (normalized) weights of the cloud.
+	 * @param cloud the weighted cloud.
+	 * @return the number of particles to be drawn.
+	 */
+	public int kldParticleCount(ParticleCloud2D cloud) {
+		final int size = cloud.size();
+		final double[] x = cloud.getXs();
+		final double[] y = cloud.getYs();
+		final double[] heading = cloud.getHeadings();
+		final double[] weight = cloud.getWeights();
+		// particles which would not be drawn on average do not provide support
+		final double threshold = 1.0d / (2.0d * size * size);
+		bins.clear();
+		for(int i = 0; i < size; i++) {
+			if(weight[i] > threshold) {
+				long bx = (long) Math.floor(x[i] / binSizeXY);
+				long by = (long) Math.floor(y[i] / binSizeXY);
+				long bh = (long) Math.floor(heading[i] / binSizeHeading);
+				bins.add((bx & 0x1FFFFFL) | ((by & 0x1FFFFFL) << 21) | ((bh & 0x1FFFFFL) << 42));
+			}
+		}
+		int n = Resampling.kldSampleSize(bins.size(), kldEpsilon, kldZQuantile);
+		return Math.max(minParticles, Math.min(maxParticles, n));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void fill(ParticleCloud2D cloud, int n) {
+		cloud.ensureCapacity(n);
+		for(int i = 0; i < n; i++) {
+			poseSampler.addRandomPose(cloud);
+		}
+		cloud.resetWeights();
+	}
+
+	/**
+	 * A minimal open addressing hash set for long values which is reused between calls.
+	 */
+	private static class LongHashSet {
+		private static final long EMPTY = Long.MIN_VALUE;
+		private long[] table = newTable(1024);
+		private int size;
+
+		void clear() {
+			Arrays.fill(table, EMPTY);
+			size = 0;
+		}
+
+		int size() {
+			return size;
+		}
+
+		void add(long value) {
+			if(2 * (size + 1) > table.length) rehash();
+			int mask = table.length - 1;
+			int i = mix(value) & mask;
+			while(table[i] != EMPTY) {
+				if(table[i] == value) return;
+				i = (i + 1) & mask;
+			}
+			table[i] = value;
+			size++;
+		}
+
+		private void rehash() {
+			long[] old = table;
+			table = newTable(old.length * 2);
+			size = 0;
+			for(long v : old) {
+				if(v != EMPTY) add(v);
+			}
+		}
+
+		private static long[] newTable(int capacity) {
+			long[] result = new long[capacity];
+			Arrays.fill(result, EMPTY);
+			return result;
+		}
+
+		private static int mix(long value) {
+			long h = value * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32));
+		}
+	}
+}
@@ -3,26 +3,29 @@ package aima.core.robotics.impl.map;
 import java.io.InputStream;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.stream.IntStream;
 
 import aima.core.robotics.IMclMap;
 import aima.core.robotics.datatypes.IMclMove;
+import aima.core.robotics.impl.ParticleEngine2D;
 import aima.core.robotics.impl.datatypes.Angle;
 import aima.core.robotics.impl.datatypes.IPose2D;
 import aima.core.robotics.impl.datatypes.AbstractRangeReading;
 import aima.core.util.math.geom.CartesianPlot2D;
+import aima.core.util.math.geom.GridIndex2D;
 import aima.core.util.math.geom.IGroupParser;
 import aima.core.util.math.geom.shapes.IGeometric2D;
 import aima.core.util.math.geom.shapes.Point2D;
-import aima.core.util.math.geom.shapes.Ray2D;
 import aima.core.util.math.geom.shapes.Rect2D;
-import aima.core.util.math.geom.shapes.Vector2D;
 
 /**
  * This class implements the interface {@link IMclMap} using the classes {@link Angle} and {@link AbstractRangeReading}.<br/>
  * It uses a parser that generates two sets of {@link IGeometric2D}.<br/>
  * The first set describes obstacles that can be measured by the range sensor. Thus only this group is considered for the {@code rayCast} function.<br/>
  * The second group specifies areas on the map. If a position is in one of these areas it is a valid position.<br/>
- * This functionality is implemented by {@code isPoseValid} which in addition tests whether the heading of that pose is valid and the position is inside an obstacle which makes it an invalid position.
+ * This functionality is implemented by {@code isPoseValid} which in addition tests whether the heading of that pose is valid and the position is inside an obstacle which makes it an invalid position.<br/>
+ * Both groups are indexed by a {@link GridIndex2D}, so ray casts and position checks do not depend on the total number of shapes in the map.
+ * {@code rayCast(double[], double[], double[], int, double[], double[])} evaluates all beams of all particles at once without creating objects per ray.
  * 
  * @author Arno von Borries
  * @author Jan Phillip Kretzschmar
@@ -198,14 +201,86 @@ public final class MclCartesianPlot2D<P extends IPose2D<P,M>,M extends IMclMove<
 
 	@Override
 	public R rayCast(P pose) {
-		Ray2D ray = new Ray2D(new Point2D(pose.getX(), pose.getY()), Vector2D.calculateFromPolar(1, -pose.getHeading()));
-		return rangeReadingFactory.getRangeReading(obstacles.rayCast(ray));
+		return rangeReadingFactory.getRangeReading(rayCast(pose.getX(), pose.getY(), pose.getHeading()));
+	}
+	
+	/**
+	 * Calculates the range that a sensor at the given pose would measure.
+	 * As for {@code rayCast(P)}, the heading is measured clockwise, so the ray points into the direction of {@code Vector2D.calculateFromPolar(1, -heading)}.
+	 * @param x the X coordinate of the pose.
+	 * @param y the Y coordinate of the pose.
+	 * @param heading the heading of the pose in radians.
+	 * @return the length of the ray until it intersects with an obstacle.
+	 */
+	public double rayCast(double x, double y, double heading) {
+		return obstacles.rayCast(x, y, Math.cos(-heading), Math.sin(-heading));
+	}
+	
+	/**
+	 * Casts all beams for a number of poses. The poses are processed in parallel by the {@link GridIndex2D} of the obstacles.
+	 * Headings and angles are measured clockwise as in {@code rayCast(double, double, double)}, which gives the same range for each beam.
+	 * The range for pose {@code i} and beam {@code k} is stored in {@code result[i * angles.length + k]}.
+	 * @param x the X coordinates of the poses.
+	 * @param y the Y coordinates of the poses.
+	 * @param heading the headings of the poses in radians.
+	 * @param n the number of poses.
+	 * @param angles the angles of the beams relative to the heading in radians.
+	 * @param result an array of length of at least {@code n * angles.length} which receives the ranges.
+	 */
+	public void rayCast(final double[] x, final double[] y, final double[] heading, final int n, final double[] angles, final double[] result) {
+		// the index measures angles counterclockwise
+		final double[] mirroredHeading = new double[n];
+		for(int i = 0; i < n; i++) mirroredHeading[i] = -heading[i];
+		final double[] mirroredAngles = new double[angles.length];
+		for(int k = 0; k < angles.length; k++) mirroredAngles[k] = -angles[k];
+		final int chunkSize = 256;
+		IntStream.range(0, (n + chunkSize - 1) / chunkSize).parallel().forEach(c ->
+			obstacles.rayCast(x, y, mirroredHeading, c * chunkSize, Math.min(n, (c + 1) * chunkSize), mirroredAngles, result));
+	}
+	
+	/**
+	 * Checks whether the given position is inside the valid movement area and not inside an obstacle.
+	 * @param x the X coordinate of the position.
+	 * @param y the Y coordinate of the position.
+	 * @return true if the position is valid.
+	 */
+	public boolean isPositionValid(double x, double y) {
+		return areas.isPointInsideBorderShape(x, y) && !obstacles.isPointInsideShape(x, y);
+	}
+
+	/**
+	 * Creates a source of random poses for a {@link ParticleEngine2D} based on {@code randomPose}.
+	 * @return the pose sampler.
+	 */
+	public ParticleEngine2D.PoseSampler getPoseSampler() {
+		return cloud -> {
+			P pose = randomPose();
+			cloud.add(pose.getX(), pose.getY(), pose.getHeading());
+		};
+	}
+	
+	/**
+	 * Creates a sensor model for a {@link ParticleEngine2D} which compares the given range scan to the ray casts of a pose.
+	 * @param rangeReadings the vector containing all range scans.
+	 * @return the sensor model. It is thread-safe as long as no map is loaded concurrently.
+	 */
+	public ParticleEngine2D.SensorModel getSensorModel(final AbstractRangeReading[] rangeReadings) {
+		return (x, y, heading) -> {
+			if(!isPositionValid(x, y)) return Double.NEGATIVE_INFINITY;
+			P pose = poseFactory.getPose(new Point2D(x, y), heading);
+			if(!poseFactory.isHeadingValid(pose)) return Double.NEGATIVE_INFINITY;
+			double logWeight = 0.0d;
+			for(AbstractRangeReading rangeReading: rangeReadings) {
+				final double range = rayCast(x, y, pose.getHeading() + rangeReading.getAngle().getValue());
+				logWeight += Math.log(rangeReading.calculateWeight(rangeReadingFactory.getRangeReading(range)));
+			}
+			return logWeight;
+		};
 	}
 
 	@Override
 	public boolean isPoseValid(P pose) {
 		if(!poseFactory.isHeadingValid(pose)) return false;
-		Point2D point = new Point2D(pose.getX(),pose.getY());
-		return areas.isPointInsideBorderShape(point) && !obstacles.isPointInsideShape(point);
+		return isPositionValid(pose.getX(), pose.getY());
 	}
 }
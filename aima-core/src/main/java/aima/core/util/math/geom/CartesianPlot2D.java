@@ -12,7 +12,8 @@ import aima.core.util.math.geom.shapes.Rect2D;
 
 /**
  * This class is a simple implementation of a Cartesian plot.<br/>
- * It uses a {@link IGroupParser} that generates a set of {@link IGeometric2D}.
+ * It uses a {@link IGroupParser} that generates a set of {@link IGeometric2D}.<br/>
+ * Whenever the shapes are set or loaded, a {@link GridIndex2D} is built which answers ray casts and point queries without testing every shape.
  * 
  * @author Arno von Borries
  * @author Jan Phillip Kretzschmar
@@ -25,6 +26,7 @@ public class CartesianPlot2D {
 	private IGroupParser parser;
 	private ArrayList<IGeometric2D> shapes;
 	private ArrayList<Rect2D> boundaries;
+	private GridIndex2D index;
 	
 	/**
 	 * @param parser a file parser which implements {@link IGroupParser}. This parser is used to load a map file.
@@ -52,6 +54,7 @@ public class CartesianPlot2D {
 		for(IGeometric2D shape: shapes) {
 			boundaries.add(shape.getBounds());
 		}
+		index = new GridIndex2D(shapes);
 	}
 	
 	/**
@@ -67,6 +70,14 @@ public class CartesianPlot2D {
 		for(IGeometric2D shape: shapes) {
 			boundaries.add(shape.getBounds());
 		}
+		index = new GridIndex2D(shapes);
+	}
+	
+	/**
+	 * @return the spatial index over the shapes or {@code null} if no shapes were set.
+	 */
+	public GridIndex2D getIndex() {
+		return index;
 	}
 	
 	/**
@@ -108,19 +119,34 @@ public class CartesianPlot2D {
 	 * @return the length of the ray.
 	 */
 	public double rayCast(Ray2D ray) {
-		double result = Double.POSITIVE_INFINITY;
-		Rect2D rayBounding = new Rect2D(ray.getStart().getX() - rayRange,ray.getStart().getY() - rayRange, ray.getStart().getX() + rayRange, ray.getStart().getY() + rayRange);
-		for(int i=0;i < shapes.size(); i++) {
-			Rect2D bounding = boundaries.get(i);
-			if( rayBounding.isInsideBorder(bounding.getLowerLeft()) ||
-				rayBounding.isInsideBorder(bounding.getUpperLeft()) || 
-				rayBounding.isInsideBorder(bounding.getLowerRight()) || 
-				rayBounding.isInsideBorder(bounding.getUpperRight())) {
-				final double tmp = shapes.get(i).rayCast(ray);
-				result = tmp < result ? tmp : result;
-			}
-		}
-		return result;
+		return index.rayCast(ray, getMaxRange());
+	}
+	
+	/**
+	 * Calculates the length of a ray until it intersects with a shape without creating a {@link Ray2D}.
+	 * @param startX the X coordinate of the start of the ray.
+	 * @param startY the Y coordinate of the start of the ray.
+	 * @param directionX the X component of the direction of the ray.
+	 * @param directionY the Y component of the direction of the ray.
+	 * @return the length of the ray.
+	 */
+	public double rayCast(double startX, double startY, double directionX, double directionY) {
+		return index.rayCast(startX, startY, directionX, directionY, getMaxRange());
+	}
+
+	/**
+	 * Casts a fan of rays for each of a number of poses, see {@link GridIndex2D#rayCast(double[], double[], double[], int, int, double[], double, double[])}.
+	 * Angles are measured counterclockwise, as by {@link aima.core.util.math.geom.shapes.Vector2D#calculateFromPolar(double, double)}.
+	 * @param x the X coordinates of the poses.
+	 * @param y the Y coordinates of the poses.
+	 * @param heading the headings of the poses in radians.
+	 * @param from the index of the first pose to be processed.
+	 * @param to the index after the last pose to be processed.
+	 * @param angles the angles of the rays relative to the heading of the pose.
+	 * @param result the array receiving the ray lengths.
+	 */
+	public void rayCast(double[] x, double[] y, double[] heading, int from, int to, double[] angles, double[] result) {
+		index.rayCast(x, y, heading, from, to, angles, getMaxRange(), result);
 	}
 
 	/**
@@ -129,14 +155,17 @@ public class CartesianPlot2D {
 	 * @return true if the point is on any of the shapes.
 	 */
 	public boolean isPointInsideBorderShape(Point2D point) {
-		for(int i=0;i < shapes.size();i++) {
-			if(boundaries.get(i).isInsideBorder(point)) {
-				if(shapes.get(i).isInsideBorder(point)) {
-					return true;
-				}
-			}
-		}
-		return false;
+		return index.isPointInsideBorderShape(point.getX(), point.getY());
+	}
+
+	/**
+	 * Checks whether the given point is on any of the shapes of the plot.
+	 * @param x the X coordinate of the point to be tested.
+	 * @param y the Y coordinate of the point to be tested.
+	 * @return true if the point is on any of the shapes.
+	 */
+	public boolean isPointInsideBorderShape(double x, double y) {
+		return index.isPointInsideBorderShape(x, y);
 	}
 
 	/**
@@ -145,13 +174,20 @@ public class CartesianPlot2D {
 	 * @return true if the point is in any of the shapes (excluding their borders).
 	 */
 	public boolean isPointInsideShape(Point2D point) {
-		for(int i=0;i < shapes.size();i++) {
-			if(boundaries.get(i).isInside(point)) {
-				if(shapes.get(i).isInside(point)) {
-					return true;
-				}
-			}
-		}
-		return false;
+		return index.isPointInsideShape(point.getX(), point.getY());
+	}
+
+	/**
+	 * Checks whether the given point is inside any of the shapes of the plot.
+	 * @param x the X coordinate of the point to be tested.
+	 * @param y the Y coordinate of the point to be tested.
+	 * @return true if the point is in any of the shapes (excluding their borders).
+	 */
+	public boolean isPointInsideShape(double x, double y) {
+		return index.isPointInsideShape(x, y);
+	}
+	
+	private double getMaxRange() {
+		return rayRange > 0.0d ? rayRange : Double.POSITIVE_INFINITY;
 	}
 }
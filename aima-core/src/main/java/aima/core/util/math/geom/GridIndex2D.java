@@ -0,0 +1,536 @@
+package aima.core.util.math.geom;
+
+import java.util.Arrays;
+import java.util.List;
+
+import aima.core.util.math.geom.shapes.Circle2D;
+import aima.core.util.math.geom.shapes.IGeometric2D;
+import aima.core.util.math.geom.shapes.Line2D;
+import aima.core.util.math.geom.shapes.Point2D;
+import aima.core.util.math.geom.shapes.Polyline2D;
+import aima.core.util.math.geom.shapes.Ray2D;
+import aima.core.util.math.geom.shapes.Rect2D;
+import aima.core.util.math.geom.shapes.Vector2D;
+
+/**
+ * This class implements a uniform grid over a set of {@link IGeometric2D} that accelerates ray casting and point queries.<br/>
+ * The index is built once from the shapes of a {@link CartesianPlot2D}. Lines, rectangles and polylines are decomposed into
+ * line segments and circles are stored by center and radius, all in flat {@code double} arrays. Other shapes (e.g. ellipses)
+ * are kept as objects and only tested when a ray passes a cell they overlap.<br/>
+ * <br/>
+ * A ray cast walks along the cells that the ray passes (Amanatides and Woo, 1987) and only tests the primitives of these cells.
+ * It stops as soon as an intersection inside the current cell has been found or the maximum range is exceeded. Thus the cost of a
+ * ray cast depends on the local map complexity along the ray and not on the total number of shapes.<br/>
+ * For point queries every cell knows the shapes whose border passes the cell. If a cell is not crossed by the border of a shape
+ * but its center lies inside that shape, the whole cell is marked as covered and the query is answered without any test.<br/>
+ * <br/>
+ * All query methods are free of allocations (except for shapes that are stored as objects) and thread-safe.
+ */
+public final class GridIndex2D {
+
+	private static final double EPSILON = 1e-10;
+	private static final int MAX_CELLS = 1 << 22;
+
+	private final IGeometric2D[] shapes;
+
+	// segments: start point and direction vector
+	private double[] segX = new double[16];
+	private double[] segY = new double[16];
+	private double[] segDX = new double[16];
+	private double[] segDY = new double[16];
+	private int segCount;
+	// circles: center and radius
+	private double[] cirX = new double[4];
+	private double[] cirY = new double[4];
+	private double[] cirR = new double[4];
+	private int cirCount;
+	// other shapes
+	private IGeometric2D[] others = new IGeometric2D[4];
+	private int otherCount;
+
+	private double minX;
+	private double minY;
+	private double cellSize;
+	private int cols;
+	private int rows;
+
+	// primitives per cell (compressed sparse row)
+	private int[] cellStart;
+	private int[] cellItems;
+	// shapes whose border passes a cell
+	private int[] borderStart;
+	private int[] borderItems;
+	private boolean[] covered;
+
+	/**
+	 * Builds the index with a cell size chosen from the number of primitives.
+	 * @param shapes the shapes to be indexed.
+	 */
+	public GridIndex2D(List<IGeometric2D> shapes) {
+		this(shapes, 0.0d);
+	}
+
+	/**
+	 * Builds the index.
+	 * @param shapes the shapes to be indexed.
+	 * @param cellSize the edge length of a grid cell. Use zero to let the index choose about four cells per primitive.
+	 */
+	public GridIndex2D(List<IGeometric2D> shapes, double cellSize) {
+		this.shapes = shapes.toArray(new IGeometric2D[shapes.size()]);
+		for(IGeometric2D shape: this.shapes) {
+			decompose(shape);
+		}
+		initGrid(cellSize);
+		buildCells();
+		buildBorders();
+	}
+
+	/**
+	 * @return the edge length of a grid cell.
+	 */
+	public double getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * @return the number of cells of the grid.
+	 */
+	public int getCellCount() {
+		return cols * rows;
+	}
+
+	/**
+	 * Calculates the length of a ray until it intersects with a shape.
+	 * @param ray the ray to be used for ray casting.
+	 * @param maxRange the distance after which the search may stop and return {@code Double.POSITIVE_INFINITY}.
+	 * @return the length of the ray.
+	 */
+	public double rayCast(Ray2D ray, double maxRange) {
+		return rayCast(ray.getStart().getX(), ray.getStart().getY(), ray.getDirection().getX(), ray.getDirection().getY(), maxRange);
+	}
+
+	/**
+	 * Calculates the length of a ray until it intersects with a shape.
+	 * @param startX the X coordinate of the start of the ray.
+	 * @param startY the Y coordinate of the start of the ray.
+	 * @param directionX the X component of the direction of the ray. It does not need to be normalized.
+	 * @param directionY the Y component of the direction of the ray.
+	 * @param maxRange the distance after which the search may stop and return {@code Double.POSITIVE_INFINITY}.
+	 * @return the distance between the start of the ray and the first intersection, {@code Double.POSITIVE_INFINITY} if there is none.
+	 */
+	public double rayCast(double startX, double startY, double directionX, double directionY, double maxRange) {
+		final double length = Math.sqrt(directionX * directionX + directionY * directionY);
+		if(length < EPSILON || cols == 0) return Double.POSITIVE_INFINITY;
+		final double ux = directionX / length;
+		final double uy = directionY / length;
+		// clip the ray against the grid bounds
+		double tEnter = 0.0d;
+		double tLeave = maxRange;
+		final double maxX = minX + cols * cellSize;
+		final double maxY = minY + rows * cellSize;
+		if(Math.abs(ux) < EPSILON) {
+			if(startX < minX || startX > maxX) return Double.POSITIVE_INFINITY;
+		} else {
+			double t1 = (minX - startX) / ux, t2 = (maxX - startX) / ux;
+			tEnter = Math.max(tEnter, Math.min(t1, t2));
+			tLeave = Math.min(tLeave, Math.max(t1, t2));
+		}
+		if(Math.abs(uy) < EPSILON) {
+			if(startY < minY || startY > maxY) return Double.POSITIVE_INFINITY;
+		} else {
+			double t1 = (minY - startY) / uy, t2 = (maxY - startY) / uy;
+			tEnter = Math.max(tEnter, Math.min(t1, t2));
+			tLeave = Math.min(tLeave, Math.max(t1, t2));
+		}
+		if(tEnter > tLeave) return Double.POSITIVE_INFINITY;
+		// initialize the traversal
+		int cx = clampCol((int) Math.floor((startX + tEnter * ux - minX) / cellSize));
+		int cy = clampRow((int) Math.floor((startY + tEnter * uy - minY) / cellSize));
+		final int stepX = ux > 0 ? 1 : -1;
+		final int stepY = uy > 0 ? 1 : -1;
+		final double tDeltaX = Math.abs(ux) < EPSILON ? Double.POSITIVE_INFINITY : cellSize / Math.abs(ux);
+		final double tDeltaY = Math.abs(uy) < EPSILON ? Double.POSITIVE_INFINITY : cellSize / Math.abs(uy);
+		double tMaxX = Math.abs(ux) < EPSILON ? Double.POSITIVE_INFINITY : (minX + (cx + (stepX > 0 ? 1 : 0)) * cellSize - startX) / ux;
+		double tMaxY = Math.abs(uy) < EPSILON ? Double.POSITIVE_INFINITY : (minY + (cy + (stepY > 0 ? 1 : 0)) * cellSize - startY) / uy;
+		double result = Double.POSITIVE_INFINITY;
+		while(true) {
+			final int cell = cy * cols + cx;
+			for(int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+				final double t = castPrimitive(cellItems[k], startX, startY, ux, uy);
+				if(t < result) result = t;
+			}
+			final double tExit = Math.min(tMaxX, tMaxY);
+			if(result <= tExit || tExit > tLeave) break;
+			if(tMaxX < tMaxY) {
+				cx += stepX;
+				if(cx < 0 || cx >= cols) break;
+				tMaxX += tDeltaX;
+			} else {
+				cy += stepY;
+				if(cy < 0 || cy >= rows) break;
+				tMaxY += tDeltaY;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Casts a fan of rays for each of a number of poses.
+	 * The result for pose {@code i} and angle {@code k} is stored in {@code result[i * angles.length + k]}.
+	 * Headings and angles are measured counterclockwise from the X axis, as by {@link Vector2D#calculateFromPolar(double, double)},
+	 * so each ray has the same direction as {@code Vector2D.calculateFromPolar(1, heading[i] + angles[k])}.
+	 * @param x the X coordinates of the poses.
+	 * @param y the Y coordinates of the poses.
+	 * @param heading the headings of the poses in radians.
+	 * @param from the index of the first pose to be processed.
+	 * @param to the index after the last pose to be processed.
+	 * @param angles the angles of the rays relative to the heading of the pose.
+	 * @param maxRange the distance after which the search may stop.
+	 * @param result the array receiving the ray lengths.
+	 */
+	public void rayCast(double[] x, double[] y, double[] heading, int from, int to, double[] angles, double maxRange, double[] result) {
+		for(int i = from; i < to; i++) {
+			for(int k = 0; k < angles.length; k++) {
+				final double angle = heading[i] + angles[k];
+				result[i * angles.length + k] = rayCast(x[i], y[i], Math.cos(angle), Math.sin(angle), maxRange);
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the given point is inside any of the shapes (excluding their borders).
+	 * @param x the X coordinate of the point.
+	 * @param y the Y coordinate of the point.
+	 * @return true if the point is in any of the shapes.
+	 */
+	public boolean isPointInsideShape(double x, double y) {
+		return isPointInside(x, y, false);
+	}
+
+	/**
+	 * Checks whether the given point is on any of the shapes (including their borders).
+	 * @param x the X coordinate of the point.
+	 * @param y the Y coordinate of the point.
+	 * @return true if the point is on any of the shapes.
+	 */
+	public boolean isPointInsideBorderShape(double x, double y) {
+		return isPointInside(x, y, true);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private boolean isPointInside(double x, double y, boolean border) {
+		if(cols == 0) return false;
+		final double fx = (x - minX) / cellSize;
+		final double fy = (y - minY) / cellSize;
+		if(fx < 0 || fy < 0 || fx > cols || fy > rows) return false;
+		final int cell = clampRow((int) fy) * cols + clampCol((int) fx);
+		if(covered[cell]) return true;
+		Point2D point = null;
+		for(int k = borderStart[cell]; k < borderStart[cell + 1]; k++) {
+			final IGeometric2D shape = shapes[borderItems[k]];
+			final Rect2D bounds = shape.getBounds();
+			if(x < bounds.getLowerLeft().getX() || x > bounds.getUpperRight().getX()
+					|| y < bounds.getLowerLeft().getY() || y > bounds.getUpperRight().getY()) continue;
+			if(point == null) point = new Point2D(x, y);
+			if(border ? shape.isInsideBorder(point) : shape.isInside(point)) return true;
+		}
+		return false;
+	}
+
+	private double castPrimitive(int item, double sx, double sy, double ux, double uy) {
+		if(item < segCount) {
+			final double ex = segDX[item], ey = segDY[item];
+			final double qx = segX[item] - sx, qy = segY[item] - sy;
+			final double denom = ux * ey - uy * ex;
+			if(Math.abs(denom) < EPSILON) {
+				// parallel: only collinear segments in front of the start are hit
+				if(Math.abs(qx * uy - qy * ux) > EPSILON) return Double.POSITIVE_INFINITY;
+				final double t1 = qx * ux + qy * uy;
+				final double t2 = (qx + ex) * ux + (qy + ey) * uy;
+				if(t1 >= 0 && t2 >= 0) return Math.min(t1, t2);
+				return t1 >= 0 || t2 >= 0 ? 0.0d : Double.POSITIVE_INFINITY;
+			}
+			final double t = (qx * ey - qy * ex) / denom;
+			if(t <= 0) return Double.POSITIVE_INFINITY;
+			final double w = (qx * uy - qy * ux) / denom;
+			return w >= 0 && w <= 1 ? t : Double.POSITIVE_INFINITY;
+		}
+		item -= segCount;
+		if(item < cirCount) {
+			final double cx = cirX[item] - sx, cy = cirY[item] - sy, r = cirR[item];
+			final double b = cx * ux + cy * uy;
+			final double disc = b * b - (cx * cx + cy * cy - r * r);
+			if(disc < 0) return Double.POSITIVE_INFINITY;
+			final double t = b - Math.sqrt(disc);
+			return t >= 0 ? t : Double.POSITIVE_INFINITY;
+		}
+		item -= cirCount;
+		return others[item].rayCast(new Ray2D(new Point2D(sx, sy), new Vector2D(ux, uy)));
+	}
+
+	private void decompose(IGeometric2D shape) {
+		if(shape instanceof Polyline2D) {
+			final Polyline2D polyline = (Polyline2D) shape;
+			final Point2D[] vertexes = polyline.getVertexes();
+			final Vector2D[] edges = polyline.getEdges();
+			for(int i = 0; i < edges.length; i++) {
+				addSegment(vertexes[i].getX(), vertexes[i].getY(), edges[i].getX(), edges[i].getY());
+			}
+		} else if(shape instanceof Line2D) {
+			final Line2D line = (Line2D) shape;
+			addSegment(line.getStart().getX(), line.getStart().getY(), line.getDirection().getX(), line.getDirection().getY());
+		} else if(shape instanceof Rect2D) {
+			final Rect2D rect = (Rect2D) shape;
+			final double x1 = rect.getLowerLeft().getX(), y1 = rect.getLowerLeft().getY();
+			final double x2 = rect.getUpperRight().getX(), y2 = rect.getUpperRight().getY();
+			addSegment(x1, y1, x2 - x1, 0.0d);
+			addSegment(x2, y1, 0.0d, y2 - y1);
+			addSegment(x2, y2, x1 - x2, 0.0d);
+			addSegment(x1, y2, 0.0d, y1 - y2);
+		} else if(shape instanceof Circle2D) {
+			final Circle2D circle = (Circle2D) shape;
+			if(cirCount == cirX.length) {
+				cirX = Arrays.copyOf(cirX, cirCount * 2);
+				cirY = Arrays.copyOf(cirY, cirCount * 2);
+				cirR = Arrays.copyOf(cirR, cirCount * 2);
+			}
+			cirX[cirCount] = circle.getCenter().getX();
+			cirY[cirCount] = circle.getCenter().getY();
+			cirR[cirCount] = circle.getRadius();
+			cirCount++;
+		} else {
+			if(otherCount == others.length) others = Arrays.copyOf(others, otherCount * 2);
+			others[otherCount++] = shape;
+		}
+	}
+
+	private void addSegment(double x, double y, double dx, double dy) {
+		if(segCount == segX.length) {
+			segX = Arrays.copyOf(segX, segCount * 2);
+			segY = Arrays.copyOf(segY, segCount * 2);
+			segDX = Arrays.copyOf(segDX, segCount * 2);
+			segDY = Arrays.copyOf(segDY, segCount * 2);
+		}
+		segX[segCount] = x;
+		segY[segCount] = y;
+		segDX[segCount] = dx;
+		segDY[segCount] = dy;
+		segCount++;
+	}
+
+	private void initGrid(double requestedCellSize) {
+		if(shapes.length == 0) {
+			cellStart = new int[] { 0 };
+			borderStart = cellStart;
+			cellItems = borderItems = new int[0];
+			covered = new boolean[0];
+			return;
+		}
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		minX = Double.POSITIVE_INFINITY;
+		minY = Double.POSITIVE_INFINITY;
+		for(IGeometric2D shape: shapes) {
+			final Rect2D bounds = shape.getBounds();
+			minX = Math.min(minX, bounds.getLowerLeft().getX());
+			minY = Math.min(minY, bounds.getLowerLeft().getY());
+			maxX = Math.max(maxX, bounds.getUpperRight().getX());
+			maxY = Math.max(maxY, bounds.getUpperRight().getY());
+		}
+		final double width = Math.max(maxX - minX, EPSILON);
+		final double height = Math.max(maxY - minY, EPSILON);
+		final int primitives = segCount + cirCount + otherCount;
+		double size = requestedCellSize;
+		if(!(size > 0)) {
+			final long cells = Math.min(MAX_CELLS, Math.max(16L, 4L * primitives));
+			size = Math.sqrt(width * height / cells);
+			size = Math.max(size, Math.max(width, height) / Math.sqrt(MAX_CELLS));
+		}
+		while((Math.floor(width / size) + 1) * (Math.floor(height / size) + 1) > MAX_CELLS) {
+			size *= 2;
+		}
+		cellSize = size;
+		cols = (int) Math.floor(width / size) + 1;
+		rows = (int) Math.floor(height / size) + 1;
+	}
+
+	/** Visits the cells touched by primitives, in two passes: counting and filling. */
+	private void buildCells() {
+		if(shapes.length == 0) return;
+		final int cellCount = cols * rows;
+		cellStart = new int[cellCount + 1];
+		for(int pass = 0; pass < 2; pass++) {
+			final int[] fill = pass == 0 ? null : Arrays.copyOf(cellStart, cellCount);
+			for(int i = 0; i < segCount; i++) {
+				visitSegment(segX[i], segY[i], segDX[i], segDY[i], i, fill, cellStart, cellItems);
+			}
+			for(int i = 0; i < cirCount; i++) {
+				visitCircle(cirX[i], cirY[i], cirR[i], segCount + i, fill, cellStart, cellItems);
+			}
+			for(int i = 0; i < otherCount; i++) {
+				visitBounds(others[i].getBounds(), segCount + cirCount + i, fill, cellStart, cellItems, null);
+			}
+			if(pass == 0) {
+				cellItems = new int[prefixSum(cellStart)];
+			}
+		}
+	}
+
+	/** Assigns each shape to the cells that its border passes and marks cells lying completely inside of a shape. */
+	private void buildBorders() {
+		if(shapes.length == 0) return;
+		final int cellCount = cols * rows;
+		borderStart = new int[cellCount + 1];
+		covered = new boolean[cellCount];
+		final int[] mark = new int[cellCount];
+		for(int pass = 0; pass < 2; pass++) {
+			Arrays.fill(mark, -1);
+			final int[] fill = pass == 0 ? null : Arrays.copyOf(borderStart, cellCount);
+			int seg = 0, cir = 0;
+			for(int s = 0; s < shapes.length; s++) {
+				final IGeometric2D shape = shapes[s];
+				if(shape instanceof Polyline2D || shape instanceof Line2D || shape instanceof Rect2D) {
+					final int n = shape instanceof Polyline2D ? ((Polyline2D) shape).getEdges().length : shape instanceof Line2D ? 1 : 4;
+					for(int i = 0; i < n; i++, seg++) {
+						visitSegmentMarked(seg, s, mark, fill);
+					}
+				} else if(shape instanceof Circle2D) {
+					visitCircleMarked(cir++, s, mark, fill);
+				} else {
+					visitBounds(shape.getBounds(), s, fill, borderStart, borderItems, mark);
+				}
+				if(pass == 1) markCovered(shape, s, mark);
+			}
+			if(pass == 0) {
+				borderItems = new int[prefixSum(borderStart)];
+			}
+		}
+	}
+
+	private void markCovered(IGeometric2D shape, int s, int[] mark) {
+		final Rect2D bounds = shape.getBounds();
+		final int c0 = cellX(bounds.getLowerLeft().getX()), c1 = cellX(bounds.getUpperRight().getX());
+		final int r0 = cellY(bounds.getLowerLeft().getY()), r1 = cellY(bounds.getUpperRight().getY());
+		for(int r = r0; r <= r1; r++) {
+			for(int c = c0; c <= c1; c++) {
+				final int cell = r * cols + c;
+				if(covered[cell] || mark[cell] == s) continue;
+				if(shape.isInside(new Point2D(minX + (c + 0.5d) * cellSize, minY + (r + 0.5d) * cellSize))) covered[cell] = true;
+			}
+		}
+	}
+
+	private void visitSegmentMarked(int seg, int s, int[] mark, int[] fill) {
+		visitSegment(segX[seg], segY[seg], segDX[seg], segDY[seg], s, fill, borderStart, borderItems, mark);
+	}
+
+	private void visitCircleMarked(int cir, int s, int[] mark, int[] fill) {
+		visitCircle(cirX[cir], cirY[cir], cirR[cir], s, fill, borderStart, borderItems, mark);
+	}
+
+	private void visitSegment(double x, double y, double dx, double dy, int item, int[] fill, int[] start, int[] items) {
+		visitSegment(x, y, dx, dy, item, fill, start, items, null);
+	}
+
+	private void visitSegment(double x, double y, double dx, double dy, int item, int[] fill, int[] start, int[] items, int[] mark) {
+		final int c0 = cellX(Math.min(x, x + dx)), c1 = cellX(Math.max(x, x + dx));
+		final int r0 = cellY(Math.min(y, y + dy)), r1 = cellY(Math.max(y, y + dy));
+		for(int r = r0; r <= r1; r++) {
+			for(int c = c0; c <= c1; c++) {
+				if(c0 == c1 || r0 == r1 || segmentIntersectsCell(x, y, dx, dy, c, r)) {
+					add(r * cols + c, item, fill, start, items, mark);
+				}
+			}
+		}
+	}
+
+	private void visitCircle(double x, double y, double radius, int item, int[] fill, int[] start, int[] items) {
+		visitCircle(x, y, radius, item, fill, start, items, null);
+	}
+
+	private void visitCircle(double x, double y, double radius, int item, int[] fill, int[] start, int[] items, int[] mark) {
+		final int c0 = cellX(x - radius), c1 = cellX(x + radius);
+		final int r0 = cellY(y - radius), r1 = cellY(y + radius);
+		for(int r = r0; r <= r1; r++) {
+			for(int c = c0; c <= c1; c++) {
+				// the circle line passes the cell if the cell is neither completely inside nor completely outside
+				final double lx = minX + c * cellSize, ly = minY + r * cellSize;
+				final double nearX = Math.max(lx, Math.min(x, lx + cellSize)) - x;
+				final double nearY = Math.max(ly, Math.min(y, ly + cellSize)) - y;
+				final double farX = Math.max(Math.abs(lx - x), Math.abs(lx + cellSize - x));
+				final double farY = Math.max(Math.abs(ly - y), Math.abs(ly + cellSize - y));
+				if(nearX * nearX + nearY * nearY <= radius * radius + EPSILON && farX * farX + farY * farY >= radius * radius - EPSILON) {
+					add(r * cols + c, item, fill, start, items, mark);
+				}
+			}
+		}
+	}
+
+	private void visitBounds(Rect2D bounds, int item, int[] fill, int[] start, int[] items, int[] mark) {
+		final int c0 = cellX(bounds.getLowerLeft().getX()), c1 = cellX(bounds.getUpperRight().getX());
+		final int r0 = cellY(bounds.getLowerLeft().getY()), r1 = cellY(bounds.getUpperRight().getY());
+		for(int r = r0; r <= r1; r++) {
+			for(int c = c0; c <= c1; c++) {
+				add(r * cols + c, item, fill, start, items, mark);
+			}
+		}
+	}
+
+	private void add(int cell, int item, int[] fill, int[] start, int[] items, int[] mark) {
+		if(mark != null) {
+			if(mark[cell] == item) return;
+			mark[cell] = item;
+		}
+		if(fill == null) start[cell]++;
+		else items[fill[cell]++] = item;
+	}
+
+	/** Liang-Barsky clipping of the segment against the (slightly enlarged) cell. */
+	private boolean segmentIntersectsCell(double x, double y, double dx, double dy, int c, int r) {
+		final double lx = minX + c * cellSize - EPSILON, ly = minY + r * cellSize - EPSILON;
+		final double ux = lx + cellSize + 2 * EPSILON, uy = ly + cellSize + 2 * EPSILON;
+		double t0 = 0.0d, t1 = 1.0d;
+		final double[] p = { -dx, dx, -dy, dy };
+		final double[] q = { x - lx, ux - x, y - ly, uy - y };
+		for(int i = 0; i < 4; i++) {
+			if(p[i] == 0) {
+				if(q[i] < 0) return false;
+			} else {
+				final double t = q[i] / p[i];
+				if(p[i] < 0) { if(t > t1) return false; if(t > t0) t0 = t; }
+				else { if(t < t0) return false; if(t < t1) t1 = t; }
+			}
+		}
+		return true;
+	}
+
+	/** Converts counts into start offsets and returns the total. */
+	private static int prefixSum(int[] start) {
+		int total = 0;
+		for(int i = 0; i < start.length - 1; i++) {
+			final int count = start[i];
+			start[i] = total;
+			total += count;
+		}
+		start[start.length - 1] = total;
+		return total;
+	}
+
+	private int cellX(double x) {
+		return clampCol((int) Math.floor((x - minX) / cellSize));
+	}
+
+	private int cellY(double y) {
+		return clampRow((int) Math.floor((y - minY) / cellSize));
+	}
+
+	private int clampCol(int c) {
+		return c < 0 ? 0 : c >= cols ? cols - 1 : c;
+	}
+
+	private int clampRow(int r) {
+		return r < 0 ? 0 : r >= rows ? rows - 1 : r;
+	}
+}
@@ -133,7 +133,7 @@ public final class Polyline2D implements IGeometric2D {
 		double result = Double.POSITIVE_INFINITY;
 		for(int i=0; i < edges.length; i++) {
 			if(!ray.getDirection().isParallel(edges[i])) {
-				final double divisor = (ray.getDirection().getX()*edges[i].getX()-ray.getDirection().getX()*edges[i].getY());
+				final double divisor = (ray.getDirection().getY()*edges[i].getX()-ray.getDirection().getX()*edges[i].getY());
 				final double len1 = (vertexes[i].getY()*edges[i].getX()-ray.getStart().getY()*edges[i].getX()-vertexes[i].getX()*edges[i].getY()+ray.getStart().getX()*edges[i].getY())/divisor;
 				if(len1 > 0) {
 					final double len2 = (ray.getDirection().getY()*ray.getStart().getX() - ray.getDirection().getY()*vertexes[i].getX() - ray.getDirection().getX()*ray.getStart().getY() + ray.getDirection().getX()*vertexes[i].getY())/divisor;
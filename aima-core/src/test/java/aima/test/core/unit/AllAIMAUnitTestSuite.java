@@ -9,6 +9,7 @@ import aima.test.core.unit.learning.LearningTestSuite;
 import aima.test.core.unit.logic.LogicTestSuite;
 import aima.test.core.unit.nlp.NLPTestSuite;
 import aima.test.core.unit.probability.ProbabilityTestSuite;
+import aima.test.core.unit.robotics.RoboticsTestSuite;
 import aima.test.core.unit.search.SearchTestSuite;
 import aima.test.core.unit.util.UtilTestSuite;
 import aima.test.core.unit.util.math.geom.GeometryTestSuite;
@@ -16,6 +17,7 @@ import aima.test.core.unit.util.math.geom.GeometryTestSuite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({ AgentTestSuite.class, EnvironmentTestSuite.class, SearchTestSuite.class,
 		LearningTestSuite.class, NLPTestSuite.class,
-		ProbabilityTestSuite.class, UtilTestSuite.class, GeometryTestSuite.class, LogicTestSuite.class })
+		ProbabilityTestSuite.class, RoboticsTestSuite.class, UtilTestSuite.class, GeometryTestSuite.class,
+		LogicTestSuite.class })
 public class AllAIMAUnitTestSuite {
 }
@@ -1,6 +1,7 @@
 package aima.test.core.unit.learning.reinforcement.agent;
 
 import java.util.Map;
+import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -13,6 +14,7 @@ import aima.core.environment.cellworld.CellWorldAction;
 import aima.core.environment.cellworld.CellWorldFactory;
 import aima.core.learning.reinforcement.agent.QLearningAgent;
 import aima.core.learning.reinforcement.example.CellWorldEnvironment;
+import aima.core.learning.reinforcement.example.ParallelCellWorldTrials;
 import aima.core.probability.example.MDPFactory;
 import aima.core.util.JavaRandomizer;
 
@@ -62,6 +64,28 @@ public class QLearningAgentTest extends ReinforcementLearningAgentTest {
 		test_RMSeiu_for_1_1(qla, 20, 10000, 0.2);
 	}
 
+	@Test
+	public void test_Q_learning_with_experience_replay() {
+		qla.reset();
+		qla.enableExperienceReplay(1000, 4, new JavaRandomizer(new Random(1)));
+		test_RMSeiu_for_1_1(qla, 20, 2000, 0.2);
+	}
+
+	@Test
+	public void test_Q_learning_parallel_trials() {
+		qla.reset();
+		ParallelCellWorldTrials trials = new ParallelCellWorldTrials(
+				cw.getCellAt(1, 1), cw.getCells(),
+				MDPFactory.createTransitionProbabilityFunctionForFigure17_1(cw),
+				4, 7);
+		trials.executeTrials(qla, 40000, 500);
+
+		Map<Cell<Double>, Double> U = qla.getUtility();
+		Assert.assertEquals(11, U.size());
+		Assert.assertEquals(0.705, U.get(cw.getCellAt(1, 1)), 0.2);
+		Assert.assertEquals(1.0, U.get(cw.getCellAt(4, 3)), 0.0);
+	}
+
 	// Note: Enable this test if you wish to generate tables for
 	// creating figures, in a spreadsheet, of the learning
 	// rate of the agent.
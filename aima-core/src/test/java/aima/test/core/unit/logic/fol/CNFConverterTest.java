@@ -6,6 +6,8 @@ import org.junit.Test;
 import aima.core.logic.fol.CNFConverter;
 import aima.core.logic.fol.domain.DomainFactory;
 import aima.core.logic.fol.domain.FOLDomain;
+import aima.core.logic.fol.inference.FOLOTTERLikeTheoremProver;
+import aima.core.logic.fol.kb.FOLKnowledgeBase;
 import aima.core.logic.fol.kb.data.CNF;
 import aima.core.logic.fol.parsing.FOLParser;
 import aima.core.logic.fol.parsing.ast.Sentence;
@@ -382,4 +384,69 @@ public class CNFConverterTest {
 				"[~Plus(Plus(SC5,SC6),SC7) = Plus(SC5,Plus(SC6,SC7))]",
 				cnf.toString());
 	}
+
+	@Test
+	public void testDefinitionalCNF() {
+		FOLDomain domain = new FOLDomain();
+		domain.addPredicate("P");
+		domain.addPredicate("Q");
+		domain.addPredicate("R");
+		FOLParser parser = new FOLParser(domain);
+
+		CNFConverter cnfConv = new CNFConverter(parser, true);
+		Sentence sent = parser.parse("FORALL x ((P(x) AND Q(x)) OR R(x))");
+		CNF cnf = cnfConv.convertToCNF(sent);
+		Assert.assertEquals("[~Def0(x), P(x)],[~Def0(x), Q(x)],[Def0(x), R(x)]",
+				cnf.toString());
+		Assert.assertTrue(domain.getPredicates().contains("Def0"));
+
+		// Conjunctions that are not nested in disjunctions need no definition
+		sent = parser.parse("FORALL x ((P(x) AND Q(x)) AND (P(x) OR R(x)))");
+		cnf = cnfConv.convertToCNF(sent);
+		Assert.assertEquals("[P(x)],[Q(x)],[P(x), R(x)]", cnf.toString());
+
+		// Equal conjunctions share a definition
+		sent = parser
+				.parse("FORALL x (((P(x) AND Q(x)) OR R(x)) AND ((P(x) AND Q(x)) OR NOT(R(x))))");
+		cnf = cnfConv.convertToCNF(sent);
+		Assert.assertEquals(4, cnf.getNumberOfClauses());
+		Assert.assertFalse(domain.getPredicates().contains("Def2"));
+	}
+
+	@Test
+	public void testDefinitionalCNFIsLinear() {
+		FOLDomain domain = new FOLDomain();
+		domain.addPredicate("P");
+		domain.addPredicate("Q");
+		StringBuilder sb = new StringBuilder("P(A0) AND Q(A0)");
+		for (int i = 1; i < 10; i++) {
+			domain.addConstant("A" + i);
+			sb.insert(0, "(").append(") OR (P(A" + i + ") AND Q(A" + i + "))");
+		}
+		domain.addConstant("A0");
+		FOLParser parser = new FOLParser(domain);
+		Sentence sent = parser.parse("(" + sb + ")");
+
+		Assert.assertEquals(1024, new CNFConverter(parser).convertToCNF(sent)
+				.getNumberOfClauses());
+		Assert.assertEquals(21, new CNFConverter(parser, true)
+				.convertToCNF(sent).getNumberOfClauses());
+	}
+
+	@Test
+	public void testDefinitionalCNFEntailment() {
+		FOLKnowledgeBase kb = new FOLKnowledgeBase(
+				DomainFactory.lovesAnimalDomain(),
+				new FOLOTTERLikeTheoremProver(false));
+		kb.setDefinitionalCNF(true);
+		kb.tell("FORALL x (FORALL y (Animal(y) => Loves(x, y)) => EXISTS y Loves(y, x))");
+		kb.tell("FORALL x (EXISTS y (Animal(y) AND Kills(x, y)) => FORALL z NOT(Loves(z, x)))");
+		kb.tell("FORALL x (Animal(x) => Loves(Jack, x))");
+		kb.tell("(Kills(Jack, Tuna) OR Kills(Curiosity, Tuna))");
+		kb.tell("Cat(Tuna)");
+		kb.tell("FORALL x (Cat(x) => Animal(x))");
+
+		Assert.assertTrue(kb.ask("Kills(Curiosity, Tuna)").isTrue());
+		Assert.assertTrue(kb.getAllClauses().toString().contains("Def"));
+	}
 }
@@ -0,0 +1,94 @@
+package aima.test.core.unit.logic.fol;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import aima.core.logic.fol.TermBank;
+import aima.core.logic.fol.TrailUnifier;
+import aima.core.logic.fol.domain.DomainFactory;
+import aima.core.logic.fol.parsing.FOLParser;
+import aima.core.logic.fol.parsing.ast.FOLNode;
+import aima.core.logic.fol.parsing.ast.Variable;
+
+/**
+ * Tests the hash-consed terms of {@link TermBank} and their unification on
+ * the trail of a {@link TrailUnifier}.
+ */
+public class TermBankTest {
+
+	@Test
+	public void testHashConsing() {
+		FOLParser parser = new FOLParser(DomainFactory.knowsDomain());
+		TermBank bank = new TermBank();
+		int t1 = bank.intern(parser.parse("Knows(x, Mother(y))"),
+				new HashMap<Variable, Integer>());
+		int t2 = bank.intern(parser.parse("Knows(u, Mother(w))"),
+				new HashMap<Variable, Integer>());
+		int t3 = bank.intern(parser.parse("Knows(x, Mother(x))"),
+				new HashMap<Variable, Integer>());
+		Assert.assertEquals(t1, t2);
+		Assert.assertNotEquals(t1, t3);
+		Assert.assertEquals(2, bank.getVariableCount(t1));
+		Assert.assertEquals(1, bank.getVariableCount(t3));
+		Assert.assertFalse(bank.isGround(t1));
+
+		Map<Variable, Integer> numbers = new HashMap<Variable, Integer>();
+		FOLNode node = parser.parse("Knows(John, Mother(v))");
+		int t4 = bank.intern(node, numbers);
+		Assert.assertEquals(node, bank.toNode(t4,
+				new Variable[] { new Variable("v") }));
+		Assert.assertEquals(-1,
+				bank.intern(parser.parse("NOT Knows(John, v)"), numbers));
+	}
+
+	@Test
+	public void testTrailOffsetsAndUndo() {
+		FOLParser parser = new FOLParser(DomainFactory.knowsDomain());
+		TermBank bank = new TermBank();
+		TrailUnifier trail = new TrailUnifier(bank);
+		// the same clause twice, standardized apart by the offsets
+		int knows = bank.intern(parser.parse("Knows(x, Mother(y))"),
+				new HashMap<Variable, Integer>());
+		int o1 = trail.allocate(bank.getVariableCount(knows));
+		int o2 = trail.allocate(bank.getVariableCount(knows));
+		trail.allocate(1);
+		Assert.assertEquals(2, o2);
+
+		int mark = trail.mark();
+		int john = bank.intern(parser.parse("Knows(John, Mother(John))"),
+				new HashMap<Variable, Integer>());
+		Assert.assertTrue(trail.unify(knows, o1, john, 0));
+		Assert.assertEquals(2, trail.getTrailSize());
+		Variable[] cells = { new Variable("a"), new Variable("b"),
+				new Variable("c"), new Variable("d"), new Variable("e") };
+		Assert.assertEquals(parser.parse("Knows(c, Mother(d))"),
+				trail.toNode(knows, o2, cells));
+		int mark2 = trail.mark();
+		Assert.assertTrue(trail.unify(knows, o2, knows, o1));
+		Assert.assertEquals(4, trail.getTrailSize());
+		Assert.assertEquals(parser.parse("Knows(John, Mother(John))"),
+				trail.toNode(knows, o2, cells));
+		trail.undo(mark2);
+		Assert.assertEquals(2, trail.getTrailSize());
+		// a failed unification leaves the bindings as they were
+		int bill = bank.intern(parser.parse("Knows(z, Mother(Bill))"),
+				new HashMap<Variable, Integer>());
+		Assert.assertFalse(trail.unify(knows, o1, bill, 4));
+		Assert.assertEquals(2, trail.getTrailSize());
+
+		trail.undo(mark);
+		Assert.assertFalse(trail.isBound(o1));
+		// Knows(x1, Mother(y1)) = Knows(Mother(y2), x2) needs no occur check
+		int swapped = bank.intern(parser.parse("Knows(Mother(y), x)"),
+				new HashMap<Variable, Integer>());
+		Assert.assertTrue(trail.unify(knows, o1, swapped, o2));
+		Assert.assertEquals(parser.parse("Knows(Mother(c), Mother(b))"),
+				trail.toNode(knows, o1, cells));
+		trail.reset();
+		Assert.assertEquals(0, trail.getTrailSize());
+		Assert.assertEquals(0, trail.getAllocated());
+	}
+}
@@ -1,8 +1,18 @@
 package aima.test.core.unit.logic.fol.inference;
 
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
 import org.junit.Test;
 
+import aima.core.logic.fol.domain.FOLDomain;
 import aima.core.logic.fol.inference.FOLBCAsk;
+import aima.core.logic.fol.inference.InferenceResult;
+import aima.core.logic.fol.inference.proof.Proof;
+import aima.core.logic.fol.kb.FOLKnowledgeBase;
+import aima.core.logic.fol.parsing.ast.Term;
+import aima.core.logic.fol.parsing.ast.Variable;
 import aima.test.core.unit.logic.fol.CommonFOLInferenceProcedureTests;
 
 /**
@@ -40,4 +50,82 @@ public class FOLBCAskTest extends CommonFOLInferenceProcedureTests {
 	public void testDefiniteClauseKBWeaponsQueryCriminalXReturnsWestSucceeds() {
 		testDefiniteClauseKBWeaponsQueryCriminalXReturnsWestSucceeds(new FOLBCAsk());
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testTablingKingsQueryEvilXReturnsJohnSucceeds() {
+		testDefiniteClauseKBKingsQueryEvilXReturnsJohnSucceeds(new FOLBCAsk(true));
+	}
+
+	@Test
+	public void testTablingKingsQueryKingXReturnsJohnAndRichardSucceeds() {
+		testDefiniteClauseKBKingsQueryKingXReturnsJohnAndRichardSucceeds(new FOLBCAsk(true));
+	}
+
+	@Test
+	public void testTablingKingsQueryRichardEvilFalse() {
+		testDefiniteClauseKBKingsQueryRichardEvilFalse(new FOLBCAsk(true));
+	}
+
+	@Test
+	public void testTablingWeaponsQueryCriminalXReturnsWestSucceeds() {
+		testDefiniteClauseKBWeaponsQueryCriminalXReturnsWestSucceeds(new FOLBCAsk(true));
+	}
+
+	@Test
+	public void testTablingLeftRecursiveTransitiveClosure() {
+		int n = 30;
+		FOLBCAsk bcAsk = new FOLBCAsk(true);
+		FOLKnowledgeBase kb = createAncestorKB(bcAsk, n);
+
+		InferenceResult answer = kb.ask("Ancestor(x,P" + n + ")");
+		Assert.assertTrue(answer.isTrue());
+		Set<Term> ancestors = new HashSet<Term>();
+		for (Proof p : answer.getProofs()) {
+			ancestors.add(p.getAnswerBindings().get(new Variable("x")));
+		}
+		Assert.assertEquals(n, ancestors.size());
+		// at least all the pairs of Ancestor(x,y) are tabled
+		Assert.assertTrue(bcAsk.getNumberTabledAnswers() >= n * (n + 1) / 2);
+
+		// answered from the table
+		int subgoals = bcAsk.getNumberTabledSubgoals();
+		Assert.assertTrue(kb.ask("Ancestor(x,P" + n + ")").isTrue());
+		Assert.assertEquals(subgoals, bcAsk.getNumberTabledSubgoals());
+
+		// the table is invalidated by changes to the KB
+		kb.tell("Parent(P" + n + ",P" + (n + 1) + ")");
+		Assert.assertTrue(kb.ask("Ancestor(P0,P" + (n + 1) + ")").isTrue());
+	}
+
+	@Test
+	public void testTablingEvictsCompleteSubgoals() {
+		int n = 30;
+		FOLBCAsk bcAsk = new FOLBCAsk(true, 100);
+		FOLKnowledgeBase kb = createAncestorKB(bcAsk, n);
+
+		Assert.assertTrue(kb.ask("Ancestor(P0,P" + n + ")").isTrue());
+		Assert.assertTrue(bcAsk.getNumberTabledAnswers() <= 100);
+		Assert.assertTrue(kb.ask("Ancestor(P1,P" + n + ")").isTrue());
+		Assert.assertTrue(bcAsk.getNumberTabledAnswers() <= 100);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private FOLKnowledgeBase createAncestorKB(FOLBCAsk bcAsk, int n) {
+		FOLDomain domain = new FOLDomain();
+		domain.addPredicate("Parent");
+		domain.addPredicate("Ancestor");
+		for (int i = 0; i <= n + 1; i++) {
+			domain.addConstant("P" + i);
+		}
+		FOLKnowledgeBase kb = new FOLKnowledgeBase(domain, bcAsk);
+		// left recursive, plain backward chaining would not terminate
+		kb.tell("((Ancestor(x,y) AND Parent(y,z)) => Ancestor(x,z))");
+		kb.tell("(Parent(x,y) => Ancestor(x,y))");
+		for (int i = 0; i < n; i++) {
+			kb.tell("Parent(P" + i + ",P" + (i + 1) + ")");
+		}
+		return kb;
+	}
+}
@@ -12,6 +12,7 @@ import aima.core.logic.fol.inference.FOLOTTERLikeTheoremProver;
 import aima.core.logic.fol.inference.InferenceResult;
 import aima.core.logic.fol.inference.otter.defaultimpl.DefaultClauseSimplifier;
 import aima.core.logic.fol.kb.FOLKnowledgeBase;
+import aima.core.logic.fol.kb.FOLKnowledgeBaseFactory;
 import aima.core.logic.fol.kb.data.CNF;
 import aima.core.logic.fol.kb.data.Clause;
 import aima.core.logic.fol.parsing.FOLParser;
@@ -229,4 +230,14 @@ public class FOLOTTERLikeTheoremProverTest extends
 		testEqualityAndSubstitutionNoAxiomsKBabcdPFFASucceeds(
 				new FOLOTTERLikeTheoremProver(true), false);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testClausesProcessedAreReported() {
+		FOLOTTERLikeTheoremProver otter = new FOLOTTERLikeTheoremProver(false);
+		FOLKnowledgeBase kb = FOLKnowledgeBaseFactory
+				.createWeaponsKnowledgeBase(otter);
+		Assert.assertTrue(kb.ask("Criminal(x)").isTrue());
+		Assert.assertTrue(otter.getNumberClausesProcessed() > 0);
+		Assert.assertTrue(otter.getClausesPerSecond() > 0);
+	}
+}
@@ -0,0 +1,87 @@
+package aima.test.core.unit.logic.fol.inference;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import aima.core.logic.fol.domain.FOLDomain;
+import aima.core.logic.fol.inference.FOLSemiNaiveFCAsk;
+import aima.core.logic.fol.inference.InferenceResult;
+import aima.core.logic.fol.inference.proof.Proof;
+import aima.core.logic.fol.kb.FOLKnowledgeBase;
+import aima.core.logic.fol.parsing.ast.Constant;
+import aima.core.logic.fol.parsing.ast.Variable;
+import aima.test.core.unit.logic.fol.CommonFOLInferenceProcedureTests;
+
+public class FOLSemiNaiveFCAskTest extends CommonFOLInferenceProcedureTests {
+
+	@Test
+	public void testDefiniteClauseKBKingsQueryCriminalXFalse() {
+		testDefiniteClauseKBKingsQueryCriminalXFalse(new FOLSemiNaiveFCAsk());
+	}
+
+	@Test
+	public void testDefiniteClauseKBKingsQueryRichardEvilFalse() {
+		testDefiniteClauseKBKingsQueryRichardEvilFalse(new FOLSemiNaiveFCAsk());
+	}
+
+	@Test
+	public void testDefiniteClauseKBKingsQueryJohnEvilSucceeds() {
+		testDefiniteClauseKBKingsQueryJohnEvilSucceeds(new FOLSemiNaiveFCAsk());
+	}
+
+	@Test
+	public void testDefiniteClauseKBKingsQueryEvilXReturnsJohnSucceeds() {
+		testDefiniteClauseKBKingsQueryEvilXReturnsJohnSucceeds(new FOLSemiNaiveFCAsk());
+	}
+
+	@Test
+	public void testDefiniteClauseKBKingsQueryKingXReturnsJohnAndRichardSucceeds() {
+		testDefiniteClauseKBKingsQueryKingXReturnsJohnAndRichardSucceeds(new FOLSemiNaiveFCAsk());
+	}
+
+	@Test
+	public void testDefiniteClauseKBWeaponsQueryCriminalXReturnsWestSucceeds() {
+		testDefiniteClauseKBWeaponsQueryCriminalXReturnsWestSucceeds(new FOLSemiNaiveFCAsk(
+				false));
+	}
+
+	@Test
+	public void testTransitiveClosure() {
+		int n = 40;
+		FOLDomain domain = new FOLDomain();
+		domain.addPredicate("Parent");
+		domain.addPredicate("Ancestor");
+		for (int i = 0; i <= n; i++) {
+			domain.addConstant("P" + i);
+		}
+		FOLSemiNaiveFCAsk infp = new FOLSemiNaiveFCAsk();
+		FOLKnowledgeBase kb = new FOLKnowledgeBase(domain, infp);
+		kb.tell("(Parent(x,y) => Ancestor(x,y))");
+		kb.tell("((Ancestor(x,y) AND Ancestor(y,z)) => Ancestor(x,z))");
+		for (int i = 0; i < n; i++) {
+			kb.tell("Parent(P" + i + ",P" + (i + 1) + ")");
+		}
+
+		InferenceResult answer = kb.ask("Ancestor(P0,P" + n + ")");
+		Assert.assertTrue(answer.isTrue());
+		// the path lengths double with every iteration
+		Assert.assertTrue(infp.getIterations() <= 8);
+
+		// saturates the KB
+		answer = kb.ask("Ancestor(P" + n + ",x)");
+		Assert.assertTrue(answer.isPossiblyFalse());
+		Assert.assertEquals(n + n * (n + 1) / 2, kb.getNumberFacts());
+
+		answer = kb.ask("Ancestor(x,P" + n + ")");
+		Assert.assertEquals(n, answer.getProofs().size());
+		Set<Constant> ancestors = new HashSet<Constant>();
+		for (Proof p : answer.getProofs()) {
+			ancestors.add((Constant) p.getAnswerBindings().get(
+					new Variable("x")));
+		}
+		Assert.assertEquals(n, ancestors.size());
+	}
+}
@@ -0,0 +1,91 @@
+package aima.test.core.unit.logic.fol.kb.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aima.core.logic.fol.domain.FOLDomain;
+import aima.core.logic.fol.kb.data.DiscriminationTree;
+import aima.core.logic.fol.kb.data.Literal;
+import aima.core.logic.fol.parsing.FOLParser;
+import aima.core.logic.fol.parsing.ast.AtomicSentence;
+
+public class DiscriminationTreeTest {
+
+	private FOLParser parser;
+	private DiscriminationTree<String> tree;
+
+	@Before
+	public void setUp() {
+		FOLDomain domain = new FOLDomain();
+		domain.addConstant("A");
+		domain.addConstant("B");
+		domain.addFunction("F");
+		domain.addFunction("G");
+		domain.addPredicate("P");
+		domain.addPredicate("Q");
+		parser = new FOLParser(domain);
+
+		tree = new DiscriminationTree<String>();
+		for (String s : new String[] { "P(A,B)", "P(x,B)", "P(F(A),y)",
+				"P(F(x),G(B))", "P(x,y)", "Q(A,B)" }) {
+			tree.put(literal(s), s);
+		}
+		tree.put(new Literal(atom("P(A,B)"), true), "~P(A,B)");
+	}
+
+	@Test
+	public void testUnifiable() {
+		Assert.assertEquals(Arrays.asList("P(A,B)", "P(x,B)", "P(x,y)"),
+				tree.getUnifiable(literal("P(A,z)")));
+		Assert.assertEquals(Arrays.asList("P(x,B)", "P(F(A),y)", "P(x,y)"),
+				tree.getUnifiable(literal("P(F(A),B)")));
+		Assert.assertEquals(Arrays.asList("P(F(A),y)", "P(F(x),G(B))",
+				"P(x,y)"), tree.getUnifiable(literal("P(F(z),G(w))")));
+		Assert.assertEquals(Arrays.asList("~P(A,B)"),
+				tree.getUnifiable(new Literal(atom("P(u,v)"), true)));
+	}
+
+	@Test
+	public void testGeneralizations() {
+		Assert.assertEquals(Arrays.asList("P(x,B)", "P(F(A),y)", "P(x,y)"),
+				tree.getGeneralizations(literal("P(F(A),B)")));
+		Assert.assertEquals(Arrays.asList("P(x,y)"),
+				tree.getGeneralizations(literal("P(u,v)")));
+	}
+
+	@Test
+	public void testInstances() {
+		Assert.assertEquals(Arrays.asList("P(F(A),y)", "P(F(x),G(B))"),
+				tree.getInstances(literal("P(F(z),w)")));
+		Assert.assertEquals(Arrays.asList("P(A,B)", "P(x,B)"),
+				tree.getInstances(literal("P(u,B)")));
+	}
+
+	@Test
+	public void testRemove() {
+		Assert.assertEquals(7, tree.size());
+		Assert.assertTrue(tree.remove(literal("P(F(x),G(B))"), "P(F(x),G(B))"));
+		Assert.assertFalse(tree.remove(literal("P(F(x),G(B))"), "P(F(x),G(B))"));
+		Assert.assertEquals(6, tree.size());
+		Assert.assertEquals(Arrays.asList("P(F(A),y)", "P(x,y)"),
+				tree.getUnifiable(literal("P(F(z),G(w))")));
+		tree.clear();
+		Assert.assertEquals(Collections.emptyList(),
+				tree.getUnifiable(literal("P(u,v)")));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private AtomicSentence atom(String s) {
+		return (AtomicSentence) parser.parse(s);
+	}
+
+	private Literal literal(String s) {
+		return new Literal(atom(s));
+	}
+}
@@ -0,0 +1,92 @@
+package aima.test.core.unit.logic.fol.kb.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aima.core.logic.fol.domain.FOLDomain;
+import aima.core.logic.fol.kb.data.Clause;
+import aima.core.logic.fol.kb.data.FeatureVectorIndex;
+import aima.core.logic.fol.kb.data.Literal;
+import aima.core.logic.fol.parsing.FOLParser;
+import aima.core.logic.fol.parsing.ast.AtomicSentence;
+
+public class FeatureVectorIndexTest {
+
+	private FOLParser parser;
+	private FeatureVectorIndex<String> index;
+
+	@Before
+	public void setUp() {
+		FOLDomain domain = new FOLDomain();
+		domain.addConstant("A");
+		domain.addConstant("B");
+		domain.addFunction("F");
+		domain.addPredicate("P");
+		domain.addPredicate("Q");
+		parser = new FOLParser(domain);
+
+		index = new FeatureVectorIndex<String>();
+		for (String s : new String[] { "P(x)", "P(A) | Q(B)", "~P(x) | Q(x)",
+				"P(F(x)) | Q(y) | Q(A)", "Q(x)" }) {
+			index.put(clause(s), s);
+		}
+	}
+
+	@Test
+	public void testPossibleSubsumers() {
+		// too many positive literals
+		Assert.assertEquals(Arrays.asList("P(x)", "P(A) | Q(B)", "Q(x)"),
+				index.getPossibleSubsumers(clause("P(F(A)) | Q(A)")));
+		Assert.assertEquals(Arrays.asList("P(x)", "P(A) | Q(B)",
+				"P(F(x)) | Q(y) | Q(A)", "Q(x)"),
+				index.getPossibleSubsumers(clause("P(A) | Q(B) | Q(F(B))")));
+		Assert.assertEquals(Collections.emptyList(),
+				index.getPossibleSubsumers(clause("~Q(A)")));
+	}
+
+	@Test
+	public void testPossiblySubsumed() {
+		Assert.assertEquals(Arrays.asList("P(x)", "P(A) | Q(B)",
+				"P(F(x)) | Q(y) | Q(A)"),
+				index.getPossiblySubsumed(clause("P(y)")));
+		Assert.assertEquals(Arrays.asList("~P(x) | Q(x)"),
+				index.getPossiblySubsumed(clause("~P(z)")));
+		Assert.assertEquals(Collections.emptyList(),
+				index.getPossiblySubsumed(clause("P(F(F(x)))")));
+	}
+
+	@Test
+	public void testRemove() {
+		Assert.assertEquals(5, index.size());
+		Assert.assertTrue(index.remove(clause("P(x)"), "P(x)"));
+		Assert.assertFalse(index.remove(clause("P(x)"), "P(x)"));
+		Assert.assertEquals(4, index.size());
+		Assert.assertEquals(Arrays.asList("P(A) | Q(B)",
+				"P(F(x)) | Q(y) | Q(A)"),
+				index.getPossiblySubsumed(clause("P(y)")));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private Clause clause(String s) {
+		Clause c = new Clause();
+		for (String l : s.split("\\|")) {
+			l = l.trim();
+			if (l.startsWith("~")) {
+				c.addNegativeLiteral(atom(l.substring(1)));
+			} else {
+				c.addLiteral(new Literal(atom(l)));
+			}
+		}
+		return c;
+	}
+
+	private AtomicSentence atom(String s) {
+		return (AtomicSentence) parser.parse(s);
+	}
+}
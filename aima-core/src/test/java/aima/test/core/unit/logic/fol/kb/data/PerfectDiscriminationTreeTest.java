@@ -0,0 +1,73 @@
+package aima.test.core.unit.logic.fol.kb.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aima.core.logic.fol.domain.FOLDomain;
+import aima.core.logic.fol.kb.data.PerfectDiscriminationTree;
+import aima.core.logic.fol.parsing.FOLParser;
+import aima.core.logic.fol.parsing.ast.Predicate;
+import aima.core.logic.fol.parsing.ast.Term;
+
+public class PerfectDiscriminationTreeTest {
+
+	private FOLParser parser;
+	private PerfectDiscriminationTree<String> tree;
+
+	@Before
+	public void setUp() {
+		FOLDomain domain = new FOLDomain();
+		domain.addConstant("A");
+		domain.addConstant("B");
+		domain.addFunction("F");
+		domain.addFunction("G");
+		domain.addPredicate("P");
+		parser = new FOLParser(domain);
+
+		tree = new PerfectDiscriminationTree<String>();
+		for (String s : new String[] { "F(x,x)", "F(x,y)", "F(A,G(y))",
+				"G(x)", "x", "F(G(x),x)" }) {
+			tree.put(term(s), s);
+		}
+	}
+
+	@Test
+	public void testGeneralizations() {
+		Assert.assertEquals(Arrays.asList("F(x,x)", "F(x,y)", "x"),
+				tree.getGeneralizations(term("F(B,B)")));
+		Assert.assertEquals(Arrays.asList("F(x,y)", "F(A,G(y))", "x"),
+				tree.getGeneralizations(term("F(A,G(B))")));
+		Assert.assertEquals(Arrays.asList("F(x,y)", "x", "F(G(x),x)"),
+				tree.getGeneralizations(term("F(G(z),z)")));
+		// the variables of the query are not bound
+		Assert.assertEquals(Arrays.asList("F(x,y)", "x"),
+				tree.getGeneralizations(term("F(z,w)")));
+		Assert.assertEquals(Arrays.asList("x"),
+				tree.getGeneralizations(term("z")));
+	}
+
+	@Test
+	public void testRemove() {
+		Assert.assertEquals(6, tree.size());
+		Assert.assertTrue(tree.remove(term("F(u,u)"), "F(x,x)"));
+		Assert.assertFalse(tree.remove(term("F(x,x)"), "F(x,x)"));
+		Assert.assertTrue(tree.remove(term("x"), "x"));
+		Assert.assertEquals(4, tree.size());
+		Assert.assertEquals(Arrays.asList("F(x,y)"),
+				tree.getGeneralizations(term("F(B,B)")));
+		tree.clear();
+		Assert.assertEquals(Collections.emptyList(),
+				tree.getGeneralizations(term("F(B,B)")));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private Term term(String s) {
+		return ((Predicate) parser.parse("P(" + s + ")")).getTerms().get(0);
+	}
+}
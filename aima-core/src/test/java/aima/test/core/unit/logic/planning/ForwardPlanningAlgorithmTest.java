@@ -0,0 +1,111 @@
+package aima.test.core.unit.logic.planning;
+
+import aima.core.logic.fol.kb.data.Literal;
+import aima.core.logic.fol.parsing.ast.Variable;
+import aima.core.logic.planning.ActionSchema;
+import aima.core.logic.planning.ForwardPlanningAlgorithm;
+import aima.core.logic.planning.PlanningProblemFactory;
+import aima.core.logic.planning.Problem;
+import aima.core.logic.planning.State;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class ForwardPlanningAlgorithmTest {
+
+    @Test
+    public void testSpareTire() {
+        Problem problem = PlanningProblemFactory.spareTireProblem();
+        List<ActionSchema> plan = new ForwardPlanningAlgorithm(true, false).plan(problem);
+        Assert.assertNotNull(plan);
+        // remove both tires, then put on the spare
+        Assert.assertEquals(3, plan.size());
+        Assert.assertEquals("PutOn", plan.get(2).getName());
+        assertSolves(problem, plan);
+    }
+
+    @Test
+    public void testAirCargo() {
+        Problem problem = PlanningProblemFactory.airCargoTransportProblem();
+        for (boolean aStar : new boolean[]{false, true}) {
+            for (boolean relaxedPlan : new boolean[]{false, true}) {
+                List<ActionSchema> plan = new ForwardPlanningAlgorithm(aStar, relaxedPlan).plan(problem);
+                Assert.assertNotNull(plan);
+                Assert.assertEquals(6, plan.size());
+                assertSolves(problem, plan);
+            }
+        }
+    }
+
+    @Test
+    public void testLogistics() {
+        Problem problem = createLogisticsProblem(6, 3, 5);
+        ForwardPlanningAlgorithm algorithm = new ForwardPlanningAlgorithm();
+        List<ActionSchema> plan = algorithm.plan(problem);
+        Assert.assertNotNull(plan);
+        assertSolves(problem, plan);
+        // Load and Unload per cargo, plane and airport, Fly per plane and route
+        Assert.assertEquals(2 * 6 * 3 * 5 + 3 * 5 * 4, algorithm.getGroundProblem().getNumberOfActions());
+        Assert.assertTrue(algorithm.getMetrics().getInt("nodesExpanded") > 0);
+    }
+
+    @Test
+    public void testUnsolvable() {
+        State initialState = new State("At(C1,SFO)^At(P1,JFK)^Cargo(C1)^Plane(P1)^Airport(JFK)^Airport(SFO)");
+        // no plane can reach LAX
+        State goalState = new State("At(C1,LAX)");
+        Problem problem = new Problem(initialState, goalState,
+                PlanningProblemFactory.airCargoTransportProblem().getActionSchemas());
+        Assert.assertNull(new ForwardPlanningAlgorithm().plan(problem));
+    }
+
+    // cargo i starts at airport i and has to go to airport i + 1
+    private Problem createLogisticsProblem(int cargos, int planes, int airports) {
+        StringBuilder init = new StringBuilder();
+        StringBuilder goal = new StringBuilder();
+        for (int i = 0; i < airports; i++)
+            init.append("^Airport(A").append(i).append(")");
+        for (int i = 0; i < planes; i++)
+            init.append("^Plane(P").append(i).append(")^At(P").append(i).append(",A").append(i % airports).append(")");
+        for (int i = 0; i < cargos; i++) {
+            init.append("^Cargo(C").append(i).append(")^At(C").append(i).append(",A").append(i % airports).append(")");
+            goal.append("^At(C").append(i).append(",A").append((i + 1) % airports).append(")");
+        }
+        Variable c = new Variable("c");
+        Variable p = new Variable("p");
+        Variable a = new Variable("a");
+        Variable from = new Variable("from");
+        Variable to = new Variable("to");
+        ActionSchema loadAction = new ActionSchema("Load", new ArrayList<>(Arrays.asList(c, p, a)),
+                "At(c,a)^At(p,a)^Cargo(c)^Plane(p)^Airport(a)",
+                "~At(c,a)^In(c,p)");
+        ActionSchema unloadAction = new ActionSchema("Unload", new ArrayList<>(Arrays.asList(c, p, a)),
+                "In(c,p)^At(p,a)^Cargo(c)^Plane(p)^Airport(a)",
+                "At(c,a)^~In(c,p)");
+        ActionSchema flyAction = new ActionSchema("Fly", new ArrayList<>(Arrays.asList(p, from, to)),
+                "At(p,from)^Plane(p)^Airport(from)^Airport(to)",
+                "~At(p,from)^At(p,to)");
+        return new Problem(new State(init.substring(1)), new State(goal.substring(1)),
+                loadAction, unloadAction, flyAction);
+    }
+
+    // executes the plan under the closed world assumption
+    private void assertSolves(Problem problem, List<ActionSchema> plan) {
+        Set<Literal> state = new HashSet<>(problem.getInitialState().getFluents());
+        for (ActionSchema action : plan) {
+            for (Literal precondition : action.getPrecondition()) {
+                Literal atom = new Literal(precondition.getAtomicSentence());
+                Assert.assertEquals(action.toString(), precondition.isPositiveLiteral(), state.contains(atom));
+            }
+            for (Literal effect : action.getEffectsNegativeLiterals())
+                state.remove(new Literal(effect.getAtomicSentence()));
+            state.addAll(action.getEffectsPositiveLiterals());
+        }
+        Assert.assertTrue(state.containsAll(problem.getGoalState().getFluents()));
+    }
+}
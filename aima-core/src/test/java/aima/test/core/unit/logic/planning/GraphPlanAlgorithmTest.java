@@ -1,12 +1,16 @@
 package aima.test.core.unit.logic.planning;
 
+import aima.core.logic.fol.parsing.ast.Variable;
 import aima.core.logic.planning.ActionSchema;
 import aima.core.logic.planning.GraphPlanAlgorithm;
 import aima.core.logic.planning.PlanningProblemFactory;
 import aima.core.logic.planning.Problem;
+import aima.core.logic.planning.State;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -34,4 +38,71 @@ public class GraphPlanAlgorithmTest {
         Assert.assertTrue(solution.get(0).contains(removeSpareTrunk));
         Assert.assertTrue(solution.get(1).contains(putOnSpareAxle));
     }
+
+    @Test
+    public void testAirCargo() {
+        GraphPlanAlgorithm algorithm = new GraphPlanAlgorithm();
+        Problem airCargoProblem = PlanningProblemFactory.airCargoTransportProblem();
+        List<List<ActionSchema>> solution = algorithm.graphPlan(airCargoProblem);
+        Assert.assertNotNull(solution);
+        // load, fly, unload
+        Assert.assertEquals(3, solution.size());
+        assertSolves(airCargoProblem, solution);
+    }
+
+    @Test
+    public void testLogistics() {
+        // three cargos that have to be swapped between three airports
+        State initialState = new State("At(C1,SFO)^At(C2,JFK)^At(C3,ORD)^At(P1,SFO)^At(P2,JFK)"
+                + "^Cargo(C1)^Cargo(C2)^Cargo(C3)^Plane(P1)^Plane(P2)^Airport(JFK)^Airport(SFO)^Airport(ORD)");
+        State goalState = new State("At(C1,JFK)^At(C2,ORD)^At(C3,SFO)");
+        Problem problem = createAirCargoProblem(initialState, goalState);
+        GraphPlanAlgorithm algorithm = new GraphPlanAlgorithm();
+        List<List<ActionSchema>> solution = algorithm.graphPlan(problem);
+        Assert.assertNotNull(solution);
+        assertSolves(problem, solution);
+        Assert.assertTrue(algorithm.getPlanningGraph().getNumberOfActions() > 500);
+        // S 0 and one more state level per step
+        Assert.assertEquals(solution.size() + 1, algorithm.getPlanningGraph().getExpansionTimes().size());
+    }
+
+    @Test
+    public void testUnsolvable() {
+        State initialState = new State("At(C1,SFO)^At(P1,JFK)^Cargo(C1)^Plane(P1)^Airport(JFK)^Airport(SFO)");
+        // the cargo cannot be in the plane and at an airport at once
+        State goalState = new State("At(C1,JFK)^At(P1,SFO)^In(C1,P1)");
+        Problem problem = createAirCargoProblem(initialState, goalState);
+        Assert.assertNull(new GraphPlanAlgorithm().graphPlan(problem));
+    }
+
+    private Problem createAirCargoProblem(State initialState, State goalState) {
+        Variable c = new Variable("c");
+        Variable p = new Variable("p");
+        Variable a = new Variable("a");
+        Variable from = new Variable("from");
+        Variable to = new Variable("to");
+        ActionSchema loadAction = new ActionSchema("Load", new ArrayList<>(Arrays.asList(c, p, a)),
+                "At(c,a)^At(p,a)^Cargo(c)^Plane(p)^Airport(a)",
+                "~At(c,a)^In(c,p)");
+        ActionSchema unloadAction = new ActionSchema("Unload", new ArrayList<>(Arrays.asList(c, p, a)),
+                "In(c,p)^At(p,a)^Cargo(c)^Plane(p)^Airport(a)",
+                "At(c,a)^~In(c,p)");
+        ActionSchema flyAction = new ActionSchema("Fly", new ArrayList<>(Arrays.asList(p, from, to)),
+                "At(p,from)^Plane(p)^Airport(from)^Airport(to)",
+                "~At(p,from)^At(p,to)");
+        return new Problem(initialState, goalState, loadAction, unloadAction, flyAction);
+    }
+
+    // the steps are in reverse order and the actions of a step can be executed in any order
+    private void assertSolves(Problem problem, List<List<ActionSchema>> solution) {
+        List<List<ActionSchema>> steps = new ArrayList<>(solution);
+        Collections.reverse(steps);
+        State state = problem.getInitialState();
+        for (List<ActionSchema> step : steps) {
+            for (ActionSchema action : step)
+                Assert.assertTrue(state.isApplicable(action));
+            state = state.result(step);
+        }
+        Assert.assertTrue(state.getFluents().containsAll(problem.getGoalState().getFluents()));
+    }
 }
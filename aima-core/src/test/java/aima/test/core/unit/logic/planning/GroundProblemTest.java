@@ -0,0 +1,113 @@
+package aima.test.core.unit.logic.planning;
+
+import aima.core.logic.fol.kb.data.Literal;
+import aima.core.logic.planning.ActionSchema;
+import aima.core.logic.planning.GroundProblem;
+import aima.core.logic.planning.PackedState;
+import aima.core.logic.planning.PlanningProblemFactory;
+import aima.core.logic.planning.RelaxedPlanHeuristic;
+import aima.core.logic.planning.Utils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class GroundProblemTest {
+    private GroundProblem airCargo;
+
+    @Before
+    public void setup() {
+        airCargo = new GroundProblem(PlanningProblemFactory.airCargoTransportProblem());
+    }
+
+    @Test
+    public void testGrounding() {
+        // Load and Unload for 2 cargos, 2 planes and 2 airports, Fly for 2 planes
+        Assert.assertEquals(8 + 8 + 4, airCargo.getNumberOfActions());
+        // At for 4 objects and 2 airports, In for 2 cargos and 2 planes and
+        // the 6 static atoms
+        Assert.assertEquals(8 + 4 + 6, airCargo.getNumberOfAtoms());
+        for (int a = 0; a < airCargo.getNumberOfActions(); a++) {
+            String action = airCargo.getAction(a).toString();
+            Assert.assertFalse(action, action.contains("Cargo(P") || action.contains("Plane(C"));
+        }
+    }
+
+    @Test
+    public void testApplicableActionsAndResult() {
+        PackedState initialState = airCargo.getInitialState();
+        Assert.assertEquals(10, initialState.size());
+        List<String> names = new ArrayList<>();
+        for (int a : airCargo.getApplicableActions(initialState))
+            names.add(airCargo.getAction(a).getName());
+        Assert.assertEquals(4, names.size());
+        Assert.assertEquals(2, names.stream().filter("Load"::equals).count());
+        Assert.assertEquals(2, names.stream().filter("Fly"::equals).count());
+
+        int load = findAction("Load", "In(C1,P1)");
+        Assert.assertTrue(airCargo.isApplicable(load, initialState));
+        PackedState loaded = airCargo.getResult(initialState, load);
+        Assert.assertEquals(10, loaded.size());
+        Assert.assertTrue(loaded.holds(findAtom("In(C1,P1)")));
+        Assert.assertFalse(loaded.holds(findAtom("At(C1,SFO)")));
+        Assert.assertTrue(initialState.holds(findAtom("At(C1,SFO)")));
+        Assert.assertFalse(airCargo.isApplicable(load, loaded));
+        Assert.assertFalse(airCargo.testGoal(loaded));
+    }
+
+    @Test
+    public void testNegativePreconditions() {
+        GroundProblem spareTire = new GroundProblem(PlanningProblemFactory.spareTireProblem());
+        int putOn = findAction(spareTire, "PutOn", "At(Spare,Axle)", null);
+        PackedState state = spareTire.getInitialState();
+        state = spareTire.getResult(state, findAction(spareTire, "Remove", "At(Spare,Ground)", state));
+        // the flat tire is still at the axle
+        Assert.assertFalse(spareTire.isApplicable(putOn, state));
+        state = spareTire.getResult(state, findAction(spareTire, "Remove", "At(Flat,Ground)", state));
+        Assert.assertTrue(spareTire.isApplicable(putOn, state));
+        Assert.assertTrue(spareTire.getApplicableActions(state).contains(putOn));
+        Assert.assertTrue(spareTire.testGoal(spareTire.getResult(state, putOn)));
+    }
+
+    @Test
+    public void testHeuristics() {
+        PackedState initialState = airCargo.getInitialState();
+        // each cargo needs a load, a flight and an unload
+        Assert.assertEquals(6.0, RelaxedPlanHeuristic.createAdditiveHeuristic(airCargo)
+                .estimate(initialState), 0.0);
+        double hFF = RelaxedPlanHeuristic.createRelaxedPlanHeuristic(airCargo).estimate(initialState);
+        Assert.assertTrue(hFF >= 5.0 && hFF <= 6.0);
+
+        PackedState state = initialState;
+        for (String effect : new String[]{"In(C1,P1)", "At(P1,JFK)", "At(C1,JFK)"})
+            state = airCargo.getResult(state, findAction(airCargo, null, effect, state));
+        Assert.assertEquals(3.0, RelaxedPlanHeuristic.createAdditiveHeuristic(airCargo).estimate(state), 0.0);
+    }
+
+    private int findAction(String name, String effect) {
+        return findAction(airCargo, name, effect, null);
+    }
+
+    // an action with the effect, applicable in the state if there is one
+    private int findAction(GroundProblem problem, String name, String effect, PackedState state) {
+        Literal literal = Utils.parse(effect).get(0);
+        for (int a = 0; a < problem.getNumberOfActions(); a++) {
+            ActionSchema action = problem.getAction(a);
+            if ((name == null || action.getName().equals(name)) && action.getEffects().contains(literal)
+                    && (state == null || problem.isApplicable(a, state)))
+                return a;
+        }
+        throw new IllegalArgumentException(effect);
+    }
+
+    private int findAtom(String atom) {
+        Literal literal = Utils.parse(atom).get(0);
+        for (int p = 0; p < airCargo.getNumberOfAtoms(); p++) {
+            if (airCargo.getAtom(p).equals(literal))
+                return p;
+        }
+        throw new IllegalArgumentException(atom);
+    }
+}
@@ -3,10 +3,13 @@ package aima.test.core.unit.logic.propositional;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
+import aima.test.core.unit.logic.propositional.inference.CDCLSolverTest;
 import aima.test.core.unit.logic.propositional.inference.DPLLTest;
 import aima.test.core.unit.logic.propositional.inference.PLFCEntailsTest;
 import aima.test.core.unit.logic.propositional.inference.PLResolutionTest;
+import aima.test.core.unit.logic.propositional.inference.SATPlanTest;
 import aima.test.core.unit.logic.propositional.inference.TTEntailsTest;
+import aima.test.core.unit.logic.propositional.kb.CompiledKnowledgeBaseTest;
 import aima.test.core.unit.logic.propositional.kb.KnowledgeBaseTest;
 import aima.test.core.unit.logic.propositional.kb.data.ClauseTest;
 import aima.test.core.unit.logic.propositional.kb.data.ConvertToConjunctionOfClausesTest;
@@ -19,6 +22,7 @@ import aima.test.core.unit.logic.propositional.parsing.PLParserTest;
 import aima.test.core.unit.logic.propositional.parsing.PropositionSymbolTest;
 import aima.test.core.unit.logic.propositional.visitors.ConvertToCNFTest;
 import aima.test.core.unit.logic.propositional.visitors.SymbolCollectorTest;
+import aima.test.core.unit.logic.propositional.visitors.TseitinEncoderTest;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({ DPLLTest.class, KnowledgeBaseTest.class, ModelTest.class,
@@ -27,7 +31,8 @@ import aima.test.core.unit.logic.propositional.visitors.SymbolCollectorTest;
 		PLParserTest.class, PropositionSymbolTest.class,
 		ConvertToCNFTest.class, ClauseTest.class,
 		ConvertToConjunctionOfClausesTest.class, LiteralTest.class,
-		SymbolCollectorTest.class })
+		SymbolCollectorTest.class, CompiledKnowledgeBaseTest.class,
+		CDCLSolverTest.class, SATPlanTest.class, TseitinEncoderTest.class })
 public class PropositionalTestSuite {
 
 }
@@ -0,0 +1,135 @@
+package aima.test.core.unit.logic.propositional.inference;
+
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aima.core.logic.propositional.inference.CDCLSolver;
+import aima.core.logic.propositional.inference.OptimizedDPLL;
+import aima.core.logic.propositional.kb.data.Clause;
+import aima.core.logic.propositional.kb.data.Model;
+import aima.core.logic.propositional.parsing.PLParser;
+import aima.core.logic.propositional.parsing.ast.PropositionSymbol;
+import aima.core.logic.propositional.parsing.ast.Sentence;
+import aima.core.logic.propositional.transformations.ConvertToConjunctionOfClauses;
+
+public class CDCLSolverTest {
+	private PLParser parser;
+	private CDCLSolver solver;
+
+	@Before
+	public void setUp() {
+		parser = new PLParser();
+		solver = new CDCLSolver();
+	}
+
+	@Test
+	public void testSatisfiable() {
+		Set<Clause> cnf = clausesOf("(A | B) & (~A | C) & (~B | ~C) & (B | C)");
+		Model model = solver.solve(cnf);
+		Assert.assertNotNull(model);
+		Assert.assertTrue(model.satisfies(cnf));
+	}
+
+	@Test
+	public void testUnsatisfiable() {
+		Assert.assertNull(solver.solve(clausesOf("(A | B) & (~A | B) & (A | ~B) & (~A | ~B)")));
+		// stays unsatisfiable
+		Assert.assertNull(solver.solve());
+	}
+
+	@Test
+	public void testPigeonHole() {
+		// 4 pigeons in 3 holes
+		StringBuilder sb = new StringBuilder();
+		for (int p = 0; p < 4; p++) {
+			sb.append(sb.length() > 0 ? " & " : "").append("(");
+			for (int h = 0; h < 3; h++)
+				sb.append(h > 0 ? " | " : "").append("P").append(p).append("_").append(h);
+			sb.append(")");
+		}
+		for (int h = 0; h < 3; h++)
+			for (int p = 0; p < 4; p++)
+				for (int q = p + 1; q < 4; q++)
+					sb.append(" & (~P").append(p).append("_").append(h).append(" | ~P").append(q)
+							.append("_").append(h).append(")");
+		Assert.assertNull(solver.solve(clausesOf(sb.toString())));
+		Assert.assertTrue(solver.getNumberOfConflicts() > 0);
+	}
+
+	@Test
+	public void testAssumptions() {
+		solver.addClauses(clausesOf("(A | B) & (~A | C)"));
+		int a = solver.getVariable(new PropositionSymbol("A"));
+		int b = solver.getVariable(new PropositionSymbol("B"));
+		int c = solver.getVariable(new PropositionSymbol("C"));
+
+		Model model = solver.solve(-b);
+		Assert.assertNotNull(model);
+		Assert.assertTrue(model.isTrue(new PropositionSymbol("A")));
+		Assert.assertTrue(model.isTrue(new PropositionSymbol("C")));
+		Assert.assertNull(solver.solve(-b, -c));
+		Assert.assertNull(solver.solve(a, -c));
+		// the assumptions do not change the clauses
+		Assert.assertNotNull(solver.solve());
+	}
+
+	@Test
+	public void testIncrementalClauses() {
+		solver.addClauses(clausesOf("(A | B) & (~A | C)"));
+		Assert.assertNotNull(solver.solve());
+		solver.addClauses(clausesOf("~C & ~B"));
+		Assert.assertNull(solver.solve());
+	}
+
+	@Test
+	public void testSelectorVariables() {
+		solver.addClauses(clausesOf("A | B"));
+		int a = solver.getVariable(new PropositionSymbol("A"));
+		int b = solver.getVariable(new PropositionSymbol("B"));
+		int selector = solver.newVariable();
+		solver.addClause(-a, -selector);
+		solver.addClause(-b, -selector);
+
+		Assert.assertNull(solver.solve(selector));
+		solver.addClause(-selector);
+		Model model = solver.solve();
+		Assert.assertNotNull(model);
+		// selectors have no symbol
+		Assert.assertEquals(2, model.getAssignedSymbols().size());
+	}
+
+	@Test
+	public void testAgreesWithDPLLOnRandom3SAT() {
+		Random random = new Random(3);
+		OptimizedDPLL dpll = new OptimizedDPLL();
+		for (int i = 0; i < 40; i++) {
+			StringBuilder sb = new StringBuilder();
+			for (int c = 0; c < 51; c++) {
+				sb.append(c > 0 ? " & (" : "(");
+				for (int l = 0; l < 3; l++) {
+					sb.append(l > 0 ? " | " : "").append(random.nextBoolean() ? "~" : "");
+					sb.append("X").append(random.nextInt(12));
+				}
+				sb.append(")");
+			}
+			Sentence s = parser.parse(sb.toString());
+			Set<Clause> cnf = ConvertToConjunctionOfClauses.apply(s).getClauses();
+			Model model = new CDCLSolver().solve(cnf);
+
+			Assert.assertEquals(dpll.isSatisfiable(s), model != null);
+			if (model != null)
+				Assert.assertTrue(model.satisfies(cnf));
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private Set<Clause> clausesOf(String sentence) {
+		return ConvertToConjunctionOfClauses.apply(parser.parse(sentence)).getClauses();
+	}
+}
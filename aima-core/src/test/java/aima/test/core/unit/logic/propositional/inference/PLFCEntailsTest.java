@@ -52,4 +52,20 @@ public class PLFCEntailsTest {
 		
 		Assert.assertEquals(true, plfce.isEntailed(kb, q));
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testKBToldBetweenQueries() {
+		KnowledgeBase kb = new KnowledgeBase();
+		kb.tell("P => Q");
+		kb.tell("L & M => P");
+		kb.tell("A");
+		PropositionSymbol q = (PropositionSymbol) parser.parse("Q");
+		PropositionSymbol x = (PropositionSymbol) parser.parse("X");
+
+		Assert.assertEquals(false, plfce.isEntailed(kb, q));
+		Assert.assertEquals(false, plfce.isEntailed(kb, x));
+		kb.tell("A => L");
+		kb.tell("L => M");
+		Assert.assertEquals(true, plfce.isEntailed(kb, q));
+	}
+}
@@ -2,6 +2,7 @@ package aima.test.core.unit.logic.propositional.inference;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.Assert;
@@ -10,7 +11,9 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
 
+import aima.core.logic.propositional.inference.OptimizedPLResolution;
 import aima.core.logic.propositional.inference.PLResolution;
+import aima.core.logic.propositional.inference.TTEntails;
 import aima.core.logic.propositional.kb.KnowledgeBase;
 import aima.core.logic.propositional.kb.data.Clause;
 import aima.core.logic.propositional.parsing.PLParser;
@@ -28,16 +31,19 @@ public class PLResolutionTest {
 	private PLResolution resolution;
 	private PLParser parser;
 	
-	@Parameters(name = "{index}: discardTautologies={0}")
+	@Parameters(name = "{index}: discardTautologies={0}, optimized={1}")
     public static Collection<Object[]> inferenceAlgorithmSettings() {
         return Arrays.asList(new Object[][] {
-        		{false}, // will not discard tautological clauses - slower!
-        		{true}   // will discard tautological clauses - faster!
+        		{false, false}, // will not discard tautological clauses - slower!
+        		{true, false},  // will discard tautological clauses - faster!
+        		{false, true},
+        		{true, true}
         });
     }
 
-	public PLResolutionTest(boolean discardTautologies) {
-		this.resolution = new PLResolution(discardTautologies);
+	public PLResolutionTest(boolean discardTautologies, boolean optimized) {
+		this.resolution = optimized ? new OptimizedPLResolution(discardTautologies)
+				: new PLResolution(discardTautologies);
 		parser = new PLParser();
 	}
 
@@ -206,4 +212,34 @@ public class PLResolutionTest {
 		boolean b = resolution.isEntailed(kb, alpha);
 		Assert.assertTrue(b);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testPLResolutionAgreesWithTTEntails() {
+		Random random = new Random(11);
+		TTEntails tte = new TTEntails();
+		for (int i = 0; i < 20; i++) {
+			KnowledgeBase kb = new KnowledgeBase();
+			for (int c = 0; c < 5; c++)
+				kb.tell(randomClause(random, 3));
+			Sentence alpha = parser.parse(randomClause(random, 2));
+
+			Assert.assertEquals(kb + " |= " + alpha, tte.isEntailed(kb, alpha),
+					resolution.isEntailed(kb, alpha));
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private String randomClause(Random random, int size) {
+		StringBuilder sb = new StringBuilder();
+		for (int l = 0; l < size; l++) {
+			if (l > 0)
+				sb.append(" | ");
+			if (random.nextBoolean())
+				sb.append("~");
+			sb.append((char) ('A' + random.nextInt(4)));
+		}
+		return sb.toString();
+	}
+}
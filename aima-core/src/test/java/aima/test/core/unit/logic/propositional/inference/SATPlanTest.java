@@ -0,0 +1,121 @@
+package aima.test.core.unit.logic.propositional.inference;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aima.core.agent.Action;
+import aima.core.agent.impl.DynamicAction;
+import aima.core.logic.propositional.inference.SATPlan;
+import aima.core.logic.propositional.kb.data.Model;
+import aima.core.logic.propositional.parsing.PLParser;
+import aima.core.logic.propositional.parsing.ast.PropositionSymbol;
+import aima.core.logic.propositional.parsing.ast.Sentence;
+
+/**
+ * A robot in a corridor of 4 cells that moves one cell to the right or to the
+ * left in each time step.
+ */
+public class SATPlanTest {
+	private static final int CELLS = 4;
+
+	private PLParser parser;
+	private SATPlan satPlan;
+	private SATPlan.Describe init;
+	private SATPlan.Describe transition;
+
+	@Before
+	public void setUp() {
+		parser = new PLParser();
+		satPlan = new SATPlan(this::extractSolution);
+		init = t -> {
+			StringBuilder sb = new StringBuilder("At0_0");
+			for (int i = 1; i < CELLS; i++)
+				sb.append(" & ~At").append(i).append("_0");
+			return parser.parse(sb.toString());
+		};
+		transition = t -> {
+			List<Sentence> axioms = new ArrayList<>();
+			for (int k = 0; k < t; k++) {
+				for (int i = 0; i < CELLS; i++) {
+					String cause = "";
+					if (i > 0)
+						cause = "At" + (i - 1) + "_" + k + " & Right_" + k;
+					if (i < CELLS - 1)
+						cause += (cause.isEmpty() ? "" : " | ") + "At" + (i + 1) + "_" + k + " & Left_" + k;
+					axioms.add(parser.parse("At" + i + "_" + (k + 1) + " <=> " + cause));
+				}
+				axioms.add(parser.parse("~(Right_" + k + " & Left_" + k + ")"));
+			}
+			return axioms.isEmpty() ? PropositionSymbol.TRUE : Sentence.newConjunction(axioms);
+		};
+	}
+
+	@Test
+	public void testSATPlan() {
+		List<Action> plan = satPlan.satPlan(init, transition, goal(3), 5);
+		Assert.assertEquals(rights(3), plan);
+		Assert.assertEquals(4, satPlan.getHorizonTimes().size());
+	}
+
+	@Test
+	public void testSATPlanIncrementally() {
+		List<Action> plan = satPlan.satPlanIncrementally(init, transition, goal(3), 5);
+		Assert.assertEquals(rights(3), plan);
+		Assert.assertEquals(4, satPlan.getHorizonTimes().size());
+
+		plan = satPlan.satPlanIncrementally(init, transition, goal(2), 5);
+		Assert.assertEquals(rights(2), plan);
+		Assert.assertEquals(3, satPlan.getHorizonTimes().size());
+	}
+
+	@Test
+	public void testFailure() {
+		Assert.assertNull(satPlan.satPlan(init, transition, goal(3), 2));
+		Assert.assertEquals(3, satPlan.getHorizonTimes().size());
+		Assert.assertNull(satPlan.satPlanIncrementally(init, transition, goal(3), 2));
+		Assert.assertEquals(3, satPlan.getHorizonTimes().size());
+	}
+
+	@Test
+	public void testGoalThatIsLaterFalse() {
+		// back in cell 0 after having visited cell 2
+		SATPlan.Describe goal = t -> {
+			StringBuilder sb = new StringBuilder("At0_" + t + " & (False");
+			for (int k = 0; k <= t; k++)
+				sb.append(" | At2_").append(k);
+			return parser.parse(sb.append(")").toString());
+		};
+		List<Action> plan = satPlan.satPlanIncrementally(init, transition, goal, 6);
+		Assert.assertEquals(4, plan.size());
+		Assert.assertEquals(satPlan.satPlan(init, transition, goal, 6).size(), plan.size());
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private SATPlan.Describe goal(int cell) {
+		return t -> new PropositionSymbol("At" + cell + "_" + t);
+	}
+
+	private List<Action> rights(int n) {
+		List<Action> result = new ArrayList<>();
+		for (int i = 0; i < n; i++)
+			result.add(new DynamicAction("Right"));
+		return result;
+	}
+
+	private List<Action> extractSolution(Model model) {
+		List<Action> result = new ArrayList<>();
+		for (int k = 0; model.getValue(new PropositionSymbol("Right_" + k)) != null; k++) {
+			if (model.isTrue(new PropositionSymbol("Right_" + k)))
+				result.add(new DynamicAction("Right"));
+			else if (model.isTrue(new PropositionSymbol("Left_" + k)))
+				result.add(new DynamicAction("Left"));
+		}
+		return result;
+	}
+}
@@ -1,5 +1,9 @@
 package aima.test.core.unit.logic.propositional.inference;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -7,8 +11,10 @@ import org.junit.Test;
 import aima.core.logic.propositional.inference.TTEntails;
 import aima.core.logic.propositional.kb.KnowledgeBase;
 import aima.core.logic.propositional.kb.data.Model;
+import aima.core.logic.propositional.parsing.PLParser;
 import aima.core.logic.propositional.parsing.ast.Sentence;
 import aima.core.logic.propositional.parsing.ast.PropositionSymbol;
+import aima.core.logic.propositional.transformations.SymbolCollector;
 
 /**
  * @author Ravi Mohan
@@ -129,4 +135,46 @@ public class TTEntailsTest {
 		Sentence kbs = kb.asSentence();
 		Assert.assertEquals(true, model.isTrue(kbs));
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testEnumerationAgreesWithTTCheckAll() {
+		Random random = new Random(7);
+		PLParser parser = new PLParser();
+		for (int i = 0; i < 50; i++) {
+			KnowledgeBase kb = new KnowledgeBase();
+			for (int c = 0; c < 4; c++)
+				kb.tell(randomClause(random, 3));
+			Sentence alpha = parser.parse(randomClause(random, 2));
+			List<PropositionSymbol> symbols = new ArrayList<PropositionSymbol>(
+					SymbolCollector.getSymbolsFrom(kb.asSentence(), alpha));
+
+			Assert.assertEquals(kb + " |= " + alpha,
+					tte.ttCheckAll(kb, alpha, symbols, new Model()),
+					tte.isEntailed(kb, alpha));
+		}
+	}
+
+	@Test
+	public void testKBWithConstants() {
+		kb.tell("A | True");
+		Assert.assertEquals(false, kb.askWithTTEntails("A"));
+		Assert.assertEquals(true, kb.askWithTTEntails("True"));
+		kb.tell("A & False");
+		Assert.assertEquals(true, kb.askWithTTEntails("B"));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private String randomClause(Random random, int size) {
+		StringBuilder sb = new StringBuilder();
+		for (int l = 0; l < size; l++) {
+			if (l > 0)
+				sb.append(" | ");
+			if (random.nextBoolean())
+				sb.append("~");
+			sb.append((char) ('A' + random.nextInt(5)));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,97 @@
+package aima.test.core.unit.logic.propositional.kb;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aima.core.logic.propositional.kb.CompiledKnowledgeBase;
+import aima.core.logic.propositional.kb.KnowledgeBase;
+import aima.core.logic.propositional.parsing.PLParser;
+import aima.core.logic.propositional.parsing.ast.PropositionSymbol;
+import aima.core.logic.propositional.transformations.ConvertToConjunctionOfClauses;
+
+public class CompiledKnowledgeBaseTest {
+	private KnowledgeBase kb;
+
+	@Before
+	public void setUp() {
+		kb = new KnowledgeBase();
+	}
+
+	@Test
+	public void testSymbolsAreInterned() {
+		kb.tell("A | ~B");
+		kb.tell("B => C");
+		CompiledKnowledgeBase ckb = kb.asCompiledKB();
+
+		Assert.assertEquals(3, ckb.getNumberOfSymbols());
+		Assert.assertEquals(2, ckb.getNumberOfClauses());
+		for (int id = 1; id <= 3; id++)
+			Assert.assertEquals(id, ckb.getId(ckb.getSymbol(id)));
+		Assert.assertEquals(0, ckb.getId(new PropositionSymbol("D")));
+	}
+
+	@Test
+	public void testClausesAreSortedWithOccurrences() {
+		kb.tell("C | ~A | B");
+		kb.tell("~C | A");
+		CompiledKnowledgeBase ckb = kb.asCompiledKB();
+		int a = ckb.getId(new PropositionSymbol("A"));
+		int b = ckb.getId(new PropositionSymbol("B"));
+		int c = ckb.getId(new PropositionSymbol("C"));
+
+		int[] clause = ckb.getClause(0);
+		Assert.assertEquals(3, clause.length);
+		for (int i = 1; i < clause.length; i++)
+			Assert.assertTrue(clause[i - 1] < clause[i]);
+		Assert.assertArrayEquals(new int[] { 0 }, ckb.getOccurrences(b));
+		Assert.assertArrayEquals(new int[] {}, ckb.getOccurrences(-b));
+		Assert.assertArrayEquals(new int[] { 1 }, ckb.getOccurrences(a));
+		Assert.assertArrayEquals(new int[] { 0 }, ckb.getOccurrences(-a));
+		Assert.assertArrayEquals(new int[] { 1 }, ckb.getOccurrences(-c));
+	}
+
+	@Test
+	public void testConstants() {
+		kb.tell("A | True");
+		kb.tell("B | False");
+		CompiledKnowledgeBase ckb = kb.asCompiledKB();
+
+		Assert.assertEquals(1, ckb.getNumberOfClauses());
+		Assert.assertArrayEquals(new int[] { ckb.getId(new PropositionSymbol("B")) },
+				ckb.getClause(0));
+	}
+
+	@Test
+	public void testCompileQuery() {
+		kb.tell("A => B");
+		CompiledKnowledgeBase ckb = kb.asCompiledKB();
+		Map<PropositionSymbol, Integer> newSymbolIds = new HashMap<>();
+		List<int[]> clauses = ckb.compile(ConvertToConjunctionOfClauses
+				.apply(new PLParser().parse("~C & (B | D | C)")).getClauses(), newSymbolIds);
+
+		Assert.assertEquals(2, newSymbolIds.size());
+		int c = newSymbolIds.get(new PropositionSymbol("C"));
+		int d = newSymbolIds.get(new PropositionSymbol("D"));
+		Assert.assertEquals(7, c + d);
+		int[] unit = clauses.get(0).length == 1 ? clauses.get(0) : clauses.get(1);
+		int[] other = clauses.get(0).length == 1 ? clauses.get(1) : clauses.get(0);
+		Assert.assertArrayEquals(new int[] { -c }, unit);
+		Assert.assertArrayEquals(new int[] { ckb.getId(new PropositionSymbol("B")), 3, 4 },
+				other);
+		Assert.assertEquals(2, ckb.getNumberOfSymbols());
+	}
+
+	@Test
+	public void testIsTautology() {
+		Assert.assertTrue(CompiledKnowledgeBase.isTautology(new int[] { -3, -1, 2, 3 }));
+		Assert.assertTrue(CompiledKnowledgeBase.isTautology(new int[] { -1, 1 }));
+		Assert.assertFalse(CompiledKnowledgeBase.isTautology(new int[] { -3, -1, 2, 4 }));
+		Assert.assertFalse(CompiledKnowledgeBase.isTautology(new int[] { 1, 2 }));
+		Assert.assertFalse(CompiledKnowledgeBase.isTautology(new int[] {}));
+	}
+}
@@ -4,6 +4,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import aima.core.logic.propositional.kb.CompiledKnowledgeBase;
 import aima.core.logic.propositional.kb.KnowledgeBase;
 
 /**
@@ -59,4 +60,19 @@ public class KnowledgeBaseTest {
 				"A & B & C & D & E & F",
 				kb.toString());
 	}
+
+	@Test
+	public void testCompiledKBIsReusedUntilTell() {
+		kb.tell("(A & B)");
+		CompiledKnowledgeBase compiled = kb.asCompiledKB();
+		Assert.assertSame(compiled, kb.asCompiledKB());
+		Assert.assertEquals(2, compiled.getNumberOfClauses());
+
+		kb.tell("(A & B)");
+		Assert.assertSame(compiled, kb.asCompiledKB());
+		kb.tell("(C | D)");
+		Assert.assertNotSame(compiled, kb.asCompiledKB());
+		Assert.assertEquals(3, kb.asCompiledKB().getNumberOfClauses());
+		Assert.assertEquals(4, kb.asCompiledKB().getNumberOfSymbols());
+	}
 }
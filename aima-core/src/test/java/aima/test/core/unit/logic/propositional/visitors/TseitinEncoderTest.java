@@ -0,0 +1,144 @@
+package aima.test.core.unit.logic.propositional.visitors;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aima.core.logic.propositional.inference.CDCLSolver;
+import aima.core.logic.propositional.inference.OptimizedDPLL;
+import aima.core.logic.propositional.kb.data.Clause;
+import aima.core.logic.propositional.kb.data.Model;
+import aima.core.logic.propositional.parsing.PLParser;
+import aima.core.logic.propositional.parsing.ast.ComplexSentence;
+import aima.core.logic.propositional.parsing.ast.Connective;
+import aima.core.logic.propositional.parsing.ast.PropositionSymbol;
+import aima.core.logic.propositional.parsing.ast.Sentence;
+import aima.core.logic.propositional.transformations.ConvertToConjunctionOfClauses;
+import aima.core.logic.propositional.transformations.SymbolCollector;
+import aima.core.logic.propositional.transformations.TseitinEncoder;
+
+public class TseitinEncoderTest {
+	private PLParser parser;
+
+	@Before
+	public void setUp() {
+		parser = new PLParser();
+	}
+
+	@Test
+	public void testClausesAreKeptAsTheyAre() {
+		Set<Clause> clauses = TseitinEncoder.apply(parser.parse("(A | ~B) & C & ~D")).getClauses();
+		Assert.assertEquals(ConvertToConjunctionOfClauses.apply(parser.parse("(A | ~B) & C & ~D")).getClauses(),
+				clauses);
+	}
+
+	@Test
+	public void testPlaistedGreenbaum() {
+		List<Clause> clauses = new ArrayList<>();
+		TseitinEncoder encoder = new TseitinEncoder(clauses::add);
+		encoder.encode(parser.parse("(A & B) | C"));
+		// the clause Def | C and the definition Def => A & B
+		Assert.assertEquals(1, encoder.getNumberOfDefinitions());
+		Assert.assertEquals(3, clauses.size());
+		Assert.assertEquals(3, encoder.getNumberOfClauses());
+
+		clauses.clear();
+		encoder = new TseitinEncoder(clauses::add, false);
+		encoder.encode(parser.parse("(A & B) | C"));
+		// and A & B => Def
+		Assert.assertEquals(4, clauses.size());
+	}
+
+	@Test
+	public void testLinearSize() {
+		StringBuilder sb = new StringBuilder("(A0 & B0)");
+		for (int i = 1; i < 20; i++)
+			sb.append(" | (A").append(i).append(" & B").append(i).append(")");
+		Set<Clause> clauses = TseitinEncoder.apply(parser.parse(sb.toString())).getClauses();
+		Assert.assertEquals(41, clauses.size());
+	}
+
+	@Test
+	public void testSharedSubSentences() {
+		List<Clause> clauses = new ArrayList<>();
+		TseitinEncoder encoder = new TseitinEncoder(clauses::add);
+		encoder.encode(parser.parse("((A & B) | C) & ((B & A) | D)"));
+		Assert.assertEquals(1, encoder.getNumberOfDefinitions());
+		// the definition is shared with later sentences
+		encoder.encode(parser.parse("(A & B) | E"));
+		Assert.assertEquals(1, encoder.getNumberOfDefinitions());
+		Assert.assertEquals(5, clauses.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testClashingSymbol() {
+		TseitinEncoder.apply(parser.parse("A | " + TseitinEncoder.DEFINITION_PREFIX + "0"));
+	}
+
+	@Test
+	public void testStreamsIntoSolver() {
+		CDCLSolver solver = new CDCLSolver();
+		TseitinEncoder encoder = new TseitinEncoder(solver::addClause);
+		encoder.encode(parser.parse("(A <=> (B | C)) & ~A"));
+		Assert.assertNotNull(solver.solve());
+		encoder.encode(parser.parse("B => C"));
+		encoder.encode(parser.parse("C"));
+		Assert.assertNull(solver.solve());
+	}
+
+	@Test
+	public void testAgreesWithDPLLOnRandomSentences() {
+		Random random = new Random(7);
+		OptimizedDPLL dpll = new OptimizedDPLL();
+		int satisfiable = 0;
+		for (int i = 0; i < 200; i++) {
+			Sentence s = randomSentence(random, 4);
+			for (boolean plaistedGreenbaum : new boolean[] { true, false }) {
+				Set<Clause> clauses = new LinkedHashSet<>();
+				new TseitinEncoder(clauses::add, plaistedGreenbaum).encode(s);
+				Model model = new CDCLSolver().solve(clauses);
+
+				Assert.assertEquals(s.toString(), dpll.isSatisfiable(s), model != null);
+				if (model != null) {
+					satisfiable++;
+					// symbols of tautological clauses are unconstrained
+					for (PropositionSymbol symbol : SymbolCollector.getSymbolsFrom(s))
+						if (model.getValue(symbol) == null)
+							model = model.union(symbol, false);
+					Assert.assertTrue(s.toString(), model.isTrue(s));
+				}
+			}
+		}
+		Assert.assertTrue(satisfiable > 0 && satisfiable < 400);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+	private Sentence randomSentence(Random random, int depth) {
+		if (depth == 0 || random.nextInt(5) == 0)
+			return new PropositionSymbol("X" + random.nextInt(4));
+		switch (random.nextInt(5)) {
+		case 0:
+			return new ComplexSentence(Connective.NOT, randomSentence(random, depth - 1));
+		case 1:
+			return new ComplexSentence(Connective.AND, randomSentence(random, depth - 1),
+					randomSentence(random, depth - 1));
+		case 2:
+			return new ComplexSentence(Connective.OR, randomSentence(random, depth - 1),
+					randomSentence(random, depth - 1));
+		case 3:
+			return new ComplexSentence(Connective.IMPLICATION, randomSentence(random, depth - 1),
+					randomSentence(random, depth - 1));
+		default:
+			return new ComplexSentence(Connective.BICONDITIONAL, randomSentence(random, depth - 1),
+					randomSentence(random, depth - 1));
+		}
+	}
+}
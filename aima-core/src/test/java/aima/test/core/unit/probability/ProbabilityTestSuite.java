@@ -5,6 +5,7 @@ import org.junit.runners.Suite;
 
 import aima.test.core.unit.probability.bayes.approx.GibbsAskTest;
 import aima.test.core.unit.probability.bayes.approx.LikelihoodWeightingTest;
+import aima.test.core.unit.probability.bayes.approx.ParallelGibbsAskTest;
 import aima.test.core.unit.probability.bayes.approx.ParticleFilterTest;
 import aima.test.core.unit.probability.bayes.approx.PriorSampleTest;
 import aima.test.core.unit.probability.bayes.approx.RejectionSamplingTest;
@@ -16,12 +17,14 @@ import aima.test.core.unit.probability.full.FullJointProbabilityModelTest;
 import aima.test.core.unit.probability.hmm.exact.FixedLagSmoothingTest;
 import aima.test.core.unit.probability.hmm.exact.HMMForwardBackwardConstantSpaceTest;
 import aima.test.core.unit.probability.hmm.exact.HMMForwardBackwardTest;
+import aima.test.core.unit.probability.hmm.exact.ScaledForwardBackwardTest;
 import aima.test.core.unit.probability.mdp.MarkovDecisionProcessTest;
 import aima.test.core.unit.probability.mdp.PolicyIterationTest;
 import aima.test.core.unit.probability.mdp.ValueIterationTest;
 import aima.test.core.unit.probability.temporal.generic.ForwardBackwardTest;
 import aima.test.core.unit.probability.util.ProbUtilTest;
 import aima.test.core.unit.probability.util.ProbabilityTableTest;
+import aima.test.core.unit.probability.util.ResamplingTest;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses( { GibbsAskTest.class, LikelihoodWeightingTest.class,
@@ -33,7 +36,8 @@ import aima.test.core.unit.probability.util.ProbabilityTableTest;
 		HMMForwardBackwardTest.class, MarkovDecisionProcessTest.class,
 		PolicyIterationTest.class, ValueIterationTest.class,
 		ForwardBackwardTest.class, ProbUtilTest.class,
-		ProbabilityTableTest.class })
+		ProbabilityTableTest.class, ResamplingTest.class,
+		ScaledForwardBackwardTest.class, ParallelGibbsAskTest.class })
 public class ProbabilityTestSuite {
 
 }
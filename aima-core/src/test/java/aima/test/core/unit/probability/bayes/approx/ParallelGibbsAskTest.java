@@ -0,0 +1,93 @@
+package aima.test.core.unit.probability.bayes.approx;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import aima.core.probability.RandomVariable;
+import aima.core.probability.bayes.BayesianNetwork;
+import aima.core.probability.bayes.approx.CompiledBayesNet;
+import aima.core.probability.bayes.approx.ParallelGibbsAsk;
+import aima.core.probability.bayes.approx.ParallelLikelihoodWeighting;
+import aima.core.probability.bayes.exact.EnumerationAsk;
+import aima.core.probability.example.BayesNetExampleFactory;
+import aima.core.probability.example.ExampleRV;
+import aima.core.probability.proposition.AssignmentProposition;
+
+public class ParallelGibbsAskTest {
+	public static final double DELTA_THRESHOLD = 0.02;
+
+	@Test
+	public void testCompiledTables() {
+		BayesianNetwork bn = BayesNetExampleFactory
+				.constructBurglaryAlarmNetwork();
+		CompiledBayesNet net = new CompiledBayesNet(bn);
+		int[] state = new int[net.size()];
+		// all variables false (offset 1 in the boolean domain)
+		Arrays.fill(state, 1);
+		int alarm = net.indexOf(ExampleRV.ALARM_RV);
+		// P(alarm = false | burglary = false, earthquake = false)
+		Assert.assertEquals(0.999, net.probability(alarm, state), 1e-12);
+		state[net.indexOf(ExampleRV.BURGLARY_RV)] = 0;
+		state[alarm] = 0;
+		Assert.assertEquals(0.94, net.probability(alarm, state), 1e-12);
+	}
+
+	@Test
+	public void testGibbsAskMatchesExactInference() {
+		BayesianNetwork bn = BayesNetExampleFactory
+				.constructBurglaryAlarmNetwork();
+		AssignmentProposition[] e = new AssignmentProposition[] {
+				new AssignmentProposition(ExampleRV.JOHN_CALLS_RV, Boolean.TRUE),
+				new AssignmentProposition(ExampleRV.MARY_CALLS_RV, Boolean.TRUE) };
+		RandomVariable[] X = new RandomVariable[] { ExampleRV.BURGLARY_RV };
+		double[] expected = new EnumerationAsk().ask(X, e, bn).getValues();
+
+		ParallelGibbsAsk ga = new ParallelGibbsAsk(1);
+		ga.setChains(4);
+		double[] estimate = ga.ask(X, e, bn, 400000).getValues();
+		Assert.assertArrayEquals(expected, estimate, DELTA_THRESHOLD);
+		Assert.assertTrue(ga.getPotentialScaleReduction() < 1.1);
+	}
+
+	@Test
+	public void testMultipleQueryVariables() {
+		BayesianNetwork bn = BayesNetExampleFactory
+				.constructCloudySprinklerRainWetGrassNetwork();
+		AssignmentProposition[] e = new AssignmentProposition[] { new AssignmentProposition(
+				ExampleRV.WET_GRASS_RV, Boolean.TRUE) };
+		RandomVariable[] X = new RandomVariable[] { ExampleRV.SPRINKLER_RV,
+				ExampleRV.RAIN_RV };
+		double[] expected = new EnumerationAsk().ask(X, e, bn).getValues();
+
+		ParallelGibbsAsk ga = new ParallelGibbsAsk(2);
+		Assert.assertArrayEquals(expected, ga.ask(X, e, bn, 100000)
+				.getValues(), DELTA_THRESHOLD);
+
+		ParallelLikelihoodWeighting lw = new ParallelLikelihoodWeighting(3);
+		Assert.assertArrayEquals(expected, lw.ask(X, e, bn, 100000)
+				.getValues(), DELTA_THRESHOLD);
+		Assert.assertTrue(lw.getEffectiveSampleSize() > 10000
+				&& lw.getEffectiveSampleSize() <= 100000);
+	}
+
+	@Test
+	public void testPriorSample() {
+		BayesianNetwork bn = BayesNetExampleFactory
+				.constructCloudySprinklerRainWetGrassNetwork();
+		CompiledBayesNet net = new CompiledBayesNet(bn);
+		SplittableRandom r = new SplittableRandom(4);
+		int[] x = new int[net.size()];
+		int cloudy = net.indexOf(ExampleRV.CLOUDY_RV);
+		int count = 0;
+		for (int i = 0; i < 10000; i++) {
+			net.priorSample(x, r);
+			if (x[cloudy] == 0) {
+				count++;
+			}
+		}
+		Assert.assertEquals(5000, count, 200);
+	}
+}
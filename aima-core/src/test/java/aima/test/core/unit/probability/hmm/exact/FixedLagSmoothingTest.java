@@ -1,7 +1,9 @@
 package aima.test.core.unit.probability.hmm.exact;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -10,7 +12,9 @@ import aima.core.probability.CategoricalDistribution;
 import aima.core.probability.example.ExampleRV;
 import aima.core.probability.example.HMMExampleFactory;
 import aima.core.probability.hmm.exact.FixedLagSmoothing;
+import aima.core.probability.hmm.impl.HMM;
 import aima.core.probability.proposition.AssignmentProposition;
+import aima.core.util.math.Matrix;
 
 /**
  * 
@@ -94,4 +98,24 @@ public class FixedLagSmoothingTest {
 		Assert.assertArrayEquals(new double[] { 0.861, 0.138 }, smoothed
 				.getValues(), DELTA_THRESHOLD);
 	}
+
+	@Test(expected = RuntimeException.class)
+	public void testFixedLagSmoothing_impossibleObservation() {
+		// a perfect sensor: rain is never observed without umbrella
+		Map<Object, Matrix> sensorModel = new HashMap<Object, Matrix>();
+		sensorModel.put(Boolean.TRUE, new Matrix(new double[][] { { 1.0, 0.0 },
+				{ 0.0, 0.0 } }));
+		sensorModel.put(Boolean.FALSE, new Matrix(new double[][] {
+				{ 0.0, 0.0 }, { 0.0, 1.0 } }));
+		FixedLagSmoothing uw = new FixedLagSmoothing(new HMM(
+				ExampleRV.RAIN_t_RV, new Matrix(new double[][] { { 0.7, 0.3 },
+						{ 0.3, 0.7 } }), sensorModel, new Matrix(new double[] {
+						0.5, 0.5 }, 2)), 1);
+
+		List<AssignmentProposition> e = new ArrayList<AssignmentProposition>();
+		e.add(new AssignmentProposition(ExampleRV.UMBREALLA_t_RV, Boolean.TRUE));
+		Assert.assertNull(uw.fixedLagSmoothing(e));
+		// the sensor matrix of day 1 cannot be inverted
+		uw.fixedLagSmoothing(e);
+	}
 }
@@ -0,0 +1,137 @@
+package aima.test.core.unit.probability.hmm.exact;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aima.core.probability.CategoricalDistribution;
+import aima.core.probability.example.ExampleRV;
+import aima.core.probability.example.HMMExampleFactory;
+import aima.core.probability.hmm.exact.BaumWelch;
+import aima.core.probability.hmm.exact.HMMForwardBackward;
+import aima.core.probability.hmm.exact.ScaledForwardBackward;
+import aima.core.probability.hmm.exact.Viterbi;
+import aima.core.probability.hmm.impl.CompactHMM;
+import aima.core.probability.proposition.AssignmentProposition;
+import aima.core.probability.util.ProbabilityTable;
+import aima.test.core.unit.probability.temporal.CommonForwardBackwardTest;
+
+public class ScaledForwardBackwardTest extends CommonForwardBackwardTest {
+
+	private CompactHMM hmm = null;
+	private ScaledForwardBackward uw = null;
+
+	@Before
+	public void setUp() {
+		hmm = CompactHMM.from(HMMExampleFactory.getUmbrellaWorldModel());
+		uw = new ScaledForwardBackward(hmm);
+	}
+
+	@Test
+	public void testForwardStep_UmbrellaWorld() {
+		super.testForwardStep_UmbrellaWorld(uw);
+	}
+
+	@Test
+	public void testBackwardStep_UmbrellaWorld() {
+		super.testBackwardStep_UmbrellaWorld(uw);
+	}
+
+	@Test
+	public void testForwardBackward_UmbrellaWorld() {
+		super.testForwardBackward_UmbrellaWorld(uw);
+	}
+
+	@Test
+	public void testLongSequenceMatchesMatrixImplementation() {
+		Random r = new Random(3);
+		List<List<AssignmentProposition>> ev = new ArrayList<List<AssignmentProposition>>();
+		for (int i = 0; i < 50; i++) {
+			ev.add(Arrays.asList(new AssignmentProposition(
+					ExampleRV.UMBREALLA_t_RV, r.nextBoolean())));
+		}
+		CategoricalDistribution prior = new ProbabilityTable(new double[] {
+				0.5, 0.5 }, ExampleRV.RAIN_t_RV);
+		List<CategoricalDistribution> expected = new HMMForwardBackward(
+				HMMExampleFactory.getUmbrellaWorldModel()).forwardBackward(ev,
+				prior);
+		List<CategoricalDistribution> actual = uw.forwardBackward(ev, prior);
+		for (int i = 0; i < ev.size(); i++) {
+			Assert.assertArrayEquals(expected.get(i).getValues(), actual.get(i)
+					.getValues(), 1e-9);
+		}
+	}
+
+	@Test
+	public void testLogLikelihood() {
+		int t = symbol(true), f = symbol(false);
+		// P(u1) = 0.9 * 0.5 + 0.2 * 0.5
+		Assert.assertEquals(Math.log(0.55), uw.logLikelihood(new int[] { t }),
+				1e-12);
+		// no underflow for very long sequences
+		int[] ev = new int[100000];
+		Arrays.fill(ev, f);
+		double logL = uw.logLikelihood(ev);
+		Assert.assertTrue(logL < -1000 && !Double.isInfinite(logL));
+		double[] batch = uw.logLikelihoods(Arrays.asList(new int[] { t }, ev));
+		Assert.assertEquals(Math.log(0.55), batch[0], 1e-12);
+		Assert.assertEquals(logL, batch[1], 1e-6);
+		double[] sv = uw.smooth(ev);
+		Assert.assertEquals(1.0, sv[sv.length - 1] + sv[sv.length - 2], 1e-9);
+	}
+
+	@Test
+	public void testViterbi_UmbrellaWorld() {
+		// AIMA3e pg. 577, Figure 15.5
+		int t = symbol(true), f = symbol(false);
+		int[] path = new Viterbi(hmm).decode(new int[] { t, t, f, t, t });
+		int rain = 0;
+		Assert.assertArrayEquals(new int[] { rain, rain, 1 - rain, rain, rain },
+				path);
+		List<int[]> paths = new Viterbi(hmm).decode(Arrays.asList(new int[] {
+				f, f }, new int[] { t }));
+		Assert.assertArrayEquals(new int[] { 1, 1 }, paths.get(0));
+		Assert.assertArrayEquals(new int[] { 0 }, paths.get(1));
+	}
+
+	@Test
+	public void testBaumWelch() {
+		// sample sequences from the umbrella world
+		Random r = new Random(11);
+		List<int[]> sequences = new ArrayList<int[]>();
+		for (int s = 0; s < 40; s++) {
+			int[] ev = new int[50];
+			boolean raining = r.nextBoolean();
+			for (int i = 0; i < ev.length; i++) {
+				raining = r.nextDouble() < (raining ? 0.7 : 0.3);
+				ev[i] = symbol(r.nextDouble() < (raining ? 0.9 : 0.2));
+			}
+			sequences.add(ev);
+		}
+		CompactHMM initial = new CompactHMM(ExampleRV.RAIN_t_RV, new double[] {
+				0.6, 0.4, 0.4, 0.6 }, new Object[] { Boolean.TRUE,
+				Boolean.FALSE }, new double[] { 0.6, 0.4, 0.4, 0.6 },
+				new double[] { 0.5, 0.5 });
+		BaumWelch bw = new BaumWelch();
+		CompactHMM learned = bw.learn(initial, sequences);
+		List<Double> logL = bw.getLogLikelihoods();
+		for (int i = 1; i < logL.size(); i++) {
+			Assert.assertTrue(logL.get(i) >= logL.get(i - 1) - 1e-9);
+		}
+		Assert.assertTrue(logL.get(logL.size() - 1) > logL.get(0));
+		double[] T = learned.getTransitionValues();
+		Assert.assertEquals(1.0, T[0] + T[1], 1e-9);
+		Assert.assertEquals(1.0, T[2] + T[3], 1e-9);
+		double[] e = learned.getEmission();
+		Assert.assertEquals(1.0, e[0] + e[2], 1e-9);
+	}
+
+	private int symbol(boolean umbrella) {
+		return hmm.getSymbolIndex(umbrella);
+	}
+}
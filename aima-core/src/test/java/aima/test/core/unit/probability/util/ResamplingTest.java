@@ -0,0 +1,90 @@
+package aima.test.core.unit.probability.util;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import aima.core.probability.util.Resampling;
+import aima.core.util.JavaRandomizer;
+import aima.core.util.MockRandomizer;
+
+public class ResamplingTest {
+
+	private static final double[] W = new double[] { 0.1, 0.1, 0.1, 0.1, 0.1,
+			0.1, 0.8, 0.8, 0.8, 0.8 };
+
+	@Test
+	public void testMultinomialMatchesSequentialSampling() {
+		MockRandomizer r = new MockRandomizer(new double[] { 0.15, 0.15, 0.2,
+				0.2, 0.0001, 0.99, 0.5, 0.5, 0.5, 0.5 });
+		int[] indexes = Resampling.resample(Resampling.Scheme.MULTINOMIAL, W, r);
+		Assert.assertArrayEquals(new int[] { 5, 5, 6, 6, 0, 9, 7, 7, 7, 7 },
+				indexes);
+	}
+
+	@Test
+	public void testSystematic() {
+		MockRandomizer r = new MockRandomizer(new double[] { 0.5 });
+		int[] indexes = Resampling.resample(Resampling.Scheme.SYSTEMATIC, W, r);
+		// total 3.8, step 0.38, pointers at 0.19, 0.57, 0.95, ...
+		Assert.assertArrayEquals(new int[] { 1, 5, 6, 6, 7, 7, 8, 8, 9, 9 },
+				indexes);
+	}
+
+	@Test
+	public void testStratifiedAndResidualKeepSize() {
+		JavaRandomizer r = new JavaRandomizer(new Random(1));
+		for (Resampling.Scheme scheme : Resampling.Scheme.values()) {
+			int[] indexes = Resampling.resample(scheme, W, W.length, 1000, r,
+					null);
+			int heavy = 0;
+			for (int i = 0; i < 1000; i++) {
+				Assert.assertTrue(indexes[i] >= 0 && indexes[i] < W.length);
+				if (indexes[i] >= 6)
+					heavy++;
+			}
+			// expected 3.2 / 3.8 = 84.2%
+			Assert.assertEquals(scheme.name(), 842, heavy, 40);
+		}
+	}
+
+	@Test
+	public void testResidualIsSortedAndDeterministicPart() {
+		JavaRandomizer r = new JavaRandomizer(new Random(7));
+		double[] w = new double[] { 0.5, 0.25, 0.25 };
+		int[] indexes = Resampling.resample(Resampling.Scheme.RESIDUAL, w, 3,
+				4, r, null);
+		Assert.assertArrayEquals(new int[] { 0, 0, 1, 2 }, indexes);
+	}
+
+	@Test
+	public void testNormalizeLogWeights() {
+		double[] logW = new double[] { -1000.0, -1000.0 + Math.log(3.0) };
+		double[] w = new double[2];
+		double logSum = Resampling.normalizeLogWeights(logW, 2, w);
+		Assert.assertEquals(0.25, w[0], 1e-12);
+		Assert.assertEquals(0.75, w[1], 1e-12);
+		Assert.assertEquals(-1000.0 + Math.log(4.0), logSum, 1e-9);
+
+		logW = new double[] { Double.NEGATIVE_INFINITY,
+				Double.NEGATIVE_INFINITY };
+		Assert.assertEquals(Double.NEGATIVE_INFINITY,
+				Resampling.normalizeLogWeights(logW, 2, w), 0.0);
+		Assert.assertEquals(0.5, w[0], 0.0);
+	}
+
+	@Test
+	public void testEffectiveSampleSizeAndKld() {
+		Assert.assertEquals(4.0,
+				Resampling.effectiveSampleSize(new double[] { 1, 1, 1, 1 }, 4),
+				1e-12);
+		Assert.assertEquals(1.0,
+				Resampling.effectiveSampleSize(new double[] { 0, 2, 0, 0 }, 4),
+				1e-12);
+		Assert.assertEquals(1, Resampling.kldSampleSize(1, 0.05, 2.326));
+		int n10 = Resampling.kldSampleSize(10, 0.05, 2.326);
+		int n100 = Resampling.kldSampleSize(100, 0.05, 2.326);
+		Assert.assertTrue(n10 > 90 && n10 < n100);
+	}
+}
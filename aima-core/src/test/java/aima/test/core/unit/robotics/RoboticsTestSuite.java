@@ -0,0 +1,14 @@
+package aima.test.core.unit.robotics;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import aima.test.core.unit.robotics.impl.ParticleCloud2DTest;
+import aima.test.core.unit.robotics.impl.ParticleEngine2DTest;
+import aima.test.core.unit.robotics.impl.map.MclCartesianPlot2DTest;
+
+@RunWith(Suite.class)
+@Suite.SuiteClasses({ ParticleCloud2DTest.class, ParticleEngine2DTest.class,
+		MclCartesianPlot2DTest.class })
+public class RoboticsTestSuite {
+}
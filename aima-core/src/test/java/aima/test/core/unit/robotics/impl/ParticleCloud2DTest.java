@@ -0,0 +1,74 @@
+package aima.test.core.unit.robotics.impl;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import aima.core.robotics.impl.ParticleCloud2D;
+
+public class ParticleCloud2DTest {
+
+	@Test
+	public void testAddGrowsCapacity() {
+		ParticleCloud2D cloud = new ParticleCloud2D(1);
+		for (int i = 0; i < 100; i++)
+			cloud.add(i, 2 * i, 0.01 * i);
+		cloud.resetWeights();
+		Assert.assertEquals(100, cloud.size());
+		Assert.assertEquals(99.0, cloud.getXs()[99], 0.0);
+		Assert.assertEquals(198.0, cloud.getYs()[99], 0.0);
+		Assert.assertEquals(0.01, cloud.getWeights()[42], 1e-12);
+	}
+
+	@Test
+	public void testNormalizeLogWeights() {
+		ParticleCloud2D cloud = new ParticleCloud2D(3);
+		cloud.add(0, 0, 0);
+		cloud.add(1, 0, 0);
+		cloud.add(2, 0, 0);
+		// weights far below Double.MIN_VALUE must not underflow
+		cloud.getLogWeights()[0] = -2000.0 + Math.log(1.0);
+		cloud.getLogWeights()[1] = -2000.0 + Math.log(3.0);
+		cloud.getLogWeights()[2] = Double.NEGATIVE_INFINITY;
+		double logSum = cloud.normalizeWeights();
+		Assert.assertEquals(-2000.0 + Math.log(4.0), logSum, 1e-9);
+		Assert.assertEquals(0.25, cloud.getWeights()[0], 1e-12);
+		Assert.assertEquals(0.75, cloud.getWeights()[1], 1e-12);
+		Assert.assertEquals(0.0, cloud.getWeights()[2], 0.0);
+	}
+
+	@Test
+	public void testSelect() {
+		ParticleCloud2D cloud = new ParticleCloud2D(3);
+		cloud.add(1, 10, 0.1);
+		cloud.add(2, 20, 0.2);
+		cloud.add(3, 30, 0.3);
+		cloud.getLogWeights()[1] = -5.0;
+		cloud.select(new int[] { 2, 2, 0, 1, 2 }, 5);
+		Assert.assertEquals(5, cloud.size());
+		Assert.assertArrayEquals(new double[] { 3, 3, 1, 2, 3 },
+				Arrays.copyOf(cloud.getXs(), 5), 0.0);
+		Assert.assertArrayEquals(new double[] { 30, 30, 10, 20, 30 },
+				Arrays.copyOf(cloud.getYs(), 5), 0.0);
+		Assert.assertEquals(0.3, cloud.getHeadings()[4], 0.0);
+		for (int i = 0; i < 5; i++) {
+			Assert.assertEquals(0.2, cloud.getWeights()[i], 1e-12);
+			Assert.assertEquals(0.0, cloud.getLogWeights()[i], 0.0);
+		}
+	}
+
+	@Test
+	public void testMeanAndSpread() {
+		ParticleCloud2D cloud = new ParticleCloud2D(2);
+		cloud.add(0, 0, 0.1);
+		cloud.add(4, 3, 2 * Math.PI - 0.1);
+		cloud.resetWeights();
+		double[] mean = cloud.mean();
+		Assert.assertEquals(2.0, mean[0], 1e-12);
+		Assert.assertEquals(1.5, mean[1], 1e-12);
+		// headings are averaged on the unit circle
+		Assert.assertTrue(mean[2] < 1e-9 || mean[2] > 2 * Math.PI - 1e-9);
+		Assert.assertEquals(5.0, cloud.spread(), 1e-12);
+	}
+}
@@ -0,0 +1,148 @@
+package aima.test.core.unit.robotics.impl;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import aima.core.robotics.impl.ParticleCloud2D;
+import aima.core.robotics.impl.ParticleEngine2D;
+import aima.core.util.JavaRandomizer;
+
+public class ParticleEngine2DTest {
+
+	private static final double SENSOR_SIGMA = 0.5;
+
+	@Test
+	public void testLocalizesInCorridor() {
+		ParticleEngine2D engine = createEngine(1);
+		ParticleCloud2D cloud = engine.generateCloud(2000);
+		Random noise = new Random(2);
+		double trueX = 20.0;
+		for (int step = 0; step < 10; step++) {
+			trueX += 1.0;
+			engine.localize(cloud, moveX(noise), measureX(trueX));
+		}
+		Assert.assertEquals(2000, cloud.size());
+		Assert.assertEquals(trueX, cloud.mean()[0], 0.5);
+	}
+
+	@Test
+	public void testParallelWeightingMatchesSequential() {
+		// more than one chunk of particles, so that the parallel path is used
+		ParticleCloud2D[] clouds = new ParticleCloud2D[2];
+		for (int run = 0; run < 2; run++) {
+			ParticleEngine2D engine = createEngine(3);
+			engine.setParallel(run == 0);
+			clouds[run] = engine.generateCloud(5000);
+			Random noise = new Random(4);
+			for (int step = 0; step < 3; step++)
+				engine.localize(clouds[run], moveX(noise),
+						measureX(30.0 + step));
+		}
+		Assert.assertEquals(clouds[0].size(), clouds[1].size());
+		int n = clouds[0].size();
+		Assert.assertArrayEquals(Arrays.copyOf(clouds[0].getXs(), n),
+				Arrays.copyOf(clouds[1].getXs(), n), 0.0);
+		Assert.assertArrayEquals(Arrays.copyOf(clouds[0].getYs(), n),
+				Arrays.copyOf(clouds[1].getYs(), n), 0.0);
+	}
+
+	@Test
+	public void testLogWeightsDoNotUnderflow() {
+		// likelihoods of about exp(-1000) per particle are far below
+		// Double.MIN_VALUE, but their ratios are still meaningful
+		ParticleEngine2D engine = createEngine(5);
+		ParticleCloud2D cloud = engine.generateCloud(2000);
+		engine.weightSamples(cloud, (x, y, heading) -> -1000.0
+				- (x - 70.0) * (x - 70.0) / 2);
+		engine.resample(cloud);
+		Assert.assertEquals(2000, cloud.size());
+		Assert.assertEquals(70.0, cloud.mean()[0], 0.5);
+	}
+
+	@Test
+	public void testLostRobotIsReinitialized() {
+		ParticleEngine2D engine = createEngine(6);
+		ParticleCloud2D cloud = engine.generateCloud(500);
+		engine.localize(cloud, moveX(new Random(7)), measureX(50.0));
+		double spread = cloud.spread();
+		engine.weightSamples(cloud,
+				(x, y, heading) -> Double.NEGATIVE_INFINITY);
+		engine.resample(cloud);
+		Assert.assertEquals(500, cloud.size());
+		Assert.assertTrue(cloud.spread() > 10 * spread);
+
+		engine.setWeightCutOff(1e-3);
+		engine.localize(cloud, moveX(new Random(8)), measureX(50.0));
+		spread = cloud.spread();
+		engine.weightSamples(cloud, (x, y, heading) -> Math.log(1e-4));
+		engine.resample(cloud);
+		Assert.assertTrue(cloud.spread() > 10 * spread);
+	}
+
+	@Test
+	public void testKldSamplingAdaptsParticleCount() {
+		ParticleEngine2D engine = createEngine(9);
+		engine.enableKldSampling(0.05, 2.326);
+		ParticleCloud2D cloud = engine.generateCloud(5000);
+		Random noise = new Random(10);
+		double trueX = 20.0;
+		for (int step = 0; step < 10; step++) {
+			trueX += 1.0;
+			engine.localize(cloud, moveX(noise), measurePose(trueX, 5.0, 1.0));
+		}
+		// the belief is concentrated in a few bins
+		Assert.assertTrue(cloud.size() >= ParticleEngine2D.DEFAULT_MIN_PARTICLES);
+		Assert.assertTrue(cloud.size() < 1000);
+		Assert.assertEquals(trueX, cloud.mean()[0], 0.5);
+
+		// re-initialization is bounded by the maximum number of particles
+		engine.weightSamples(cloud,
+				(x, y, heading) -> Double.NEGATIVE_INFINITY);
+		engine.resample(cloud);
+		Assert.assertEquals(ParticleEngine2D.DEFAULT_MAX_PARTICLES,
+				cloud.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidKldBounds() {
+		createEngine(11).enableKldSampling(0.05, 2.326, 1.0, 0.1, 100, 10);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Creates an engine for a corridor of 100 x 10 units.
+	 */
+	private static ParticleEngine2D createEngine(long seed) {
+		Random random = new Random(seed);
+		return new ParticleEngine2D(
+				cloud -> cloud.add(100 * random.nextDouble(),
+						10 * random.nextDouble(),
+						2 * Math.PI * random.nextDouble()),
+				new JavaRandomizer(new Random(seed + 100)));
+	}
+
+	private static ParticleEngine2D.MotionModel moveX(Random noise) {
+		return (cloud, i) -> cloud.getXs()[i] += 1.0 + 0.1 * noise
+				.nextGaussian();
+	}
+
+	private static ParticleEngine2D.SensorModel measureX(double trueX) {
+		return (x, y, heading) -> -(x - trueX) * (x - trueX)
+				/ (2 * SENSOR_SIGMA * SENSOR_SIGMA);
+	}
+
+	private static ParticleEngine2D.SensorModel measurePose(double trueX,
+			double trueY, double trueHeading) {
+		return (x, y, heading) -> {
+			double dh = Math.IEEEremainder(heading - trueHeading, 2 * Math.PI);
+			return -((x - trueX) * (x - trueX) + (y - trueY) * (y - trueY))
+					/ (2 * SENSOR_SIGMA * SENSOR_SIGMA) - dh * dh / (2 * 0.1 * 0.1);
+		};
+	}
+}
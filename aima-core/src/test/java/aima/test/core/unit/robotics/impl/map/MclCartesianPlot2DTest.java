@@ -0,0 +1,167 @@
+package aima.test.core.unit.robotics.impl.map;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import aima.core.robotics.datatypes.IMclMove;
+import aima.core.robotics.impl.datatypes.AbstractRangeReading;
+import aima.core.robotics.impl.datatypes.Angle;
+import aima.core.robotics.impl.datatypes.IPose2D;
+import aima.core.robotics.impl.map.IPoseFactory;
+import aima.core.robotics.impl.map.IRangeReadingFactory;
+import aima.core.robotics.impl.map.MclCartesianPlot2D;
+import aima.core.util.math.geom.CartesianPlot2D;
+import aima.core.util.math.geom.SVGGroupParser;
+import aima.core.util.math.geom.shapes.Point2D;
+import aima.core.util.math.geom.shapes.Ray2D;
+import aima.core.util.math.geom.shapes.Vector2D;
+
+/**
+ * Compares the ray casts of {@link MclCartesianPlot2D} with the ones of a {@link CartesianPlot2D} over the same obstacles.
+ */
+@SuppressWarnings("javadoc")
+public class MclCartesianPlot2DTest {
+
+	private static final String MAP = "/aima/test/core/unit/util/math/geom/test.svg";
+
+	private MclCartesianPlot2D<Pose, Move, Reading> map;
+	private CartesianPlot2D obstacles;
+
+	@Before
+	public void setUp() throws Exception {
+		map = new MclCartesianPlot2D<Pose, Move, Reading>(new SVGGroupParser(), new SVGGroupParser(), new PoseFactory(),
+				new IRangeReadingFactory<Reading>() {
+					@Override
+					public Reading getRangeReading(double value) {
+						return new Reading(value);
+					}
+				});
+		map.loadMap(getClass().getResourceAsStream(MAP), getClass().getResourceAsStream(MAP));
+		obstacles = new CartesianPlot2D(new SVGGroupParser());
+		obstacles.loadMap(getClass().getResourceAsStream(MAP), MclCartesianPlot2D.OBSTACLE_ID);
+	}
+
+	@Test
+	public void testRayCastMatchesCartesianPlot() {
+		final Random random = new Random(3);
+		for(int i = 0; i < 1000; i++) {
+			final Pose pose = new Pose(random.nextDouble() * 700.0d, random.nextDouble() * 500.0d, random.nextDouble() * 2 * Math.PI);
+			// headings of poses are measured clockwise
+			final Ray2D ray = new Ray2D(new Point2D(pose.getX(), pose.getY()), Vector2D.calculateFromPolar(1.0d, -pose.getHeading()));
+			final double expected = obstacles.rayCast(ray);
+			assertEquals(expected, map.rayCast(pose).getValue(), 0.000005d);
+			assertEquals(expected, map.rayCast(pose.getX(), pose.getY(), pose.getHeading()), 0.000005d);
+		}
+	}
+
+	@Test
+	public void testBatchRayCastMatchesSingleRays() {
+		final Random random = new Random(5);
+		// more poses than fit into one parallel chunk
+		final int n = 1000;
+		final double[] x = new double[n];
+		final double[] y = new double[n];
+		final double[] heading = new double[n];
+		for(int i = 0; i < n; i++) {
+			x[i] = random.nextDouble() * 700.0d;
+			y[i] = random.nextDouble() * 500.0d;
+			heading[i] = random.nextDouble() * 2 * Math.PI;
+		}
+		final double[] angles = { -Math.PI / 2, -0.25d, 0.0d, 0.5d, Math.PI / 2 };
+		final double[] result = new double[n * angles.length];
+		map.rayCast(x, y, heading, n, angles, result);
+		for(int i = 0; i < n; i++) {
+			final Pose pose = new Pose(x[i], y[i], heading[i]);
+			for(int k = 0; k < angles.length; k++) {
+				final double expected = map.rayCast(pose.addAngle(new Angle(angles[k]))).getValue();
+				assertEquals(expected, result[i * angles.length + k], 0.000005d);
+			}
+		}
+	}
+
+	private static class Move implements IMclMove<Move> {
+		@Override
+		public Move generateNoise() {
+			return this;
+		}
+	}
+
+	private static class Pose implements IPose2D<Pose, Move> {
+		private final double x;
+		private final double y;
+		private final double heading;
+
+		Pose(double x, double y, double heading) {
+			this.x = x;
+			this.y = y;
+			this.heading = heading;
+		}
+
+		@Override
+		public Pose applyMovement(Move move) {
+			return this;
+		}
+
+		@Override
+		public Pose addAngle(Angle angle) {
+			return new Pose(x, y, heading + angle.getValue());
+		}
+
+		@Override
+		public Pose clone() {
+			return new Pose(x, y, heading);
+		}
+
+		@Override
+		public double distanceTo(Pose pose) {
+			return Math.hypot(x - pose.x, y - pose.y);
+		}
+
+		@Override
+		public double getX() {
+			return x;
+		}
+
+		@Override
+		public double getY() {
+			return y;
+		}
+
+		@Override
+		public double getHeading() {
+			return heading;
+		}
+	}
+
+	private static class PoseFactory implements IPoseFactory<Pose, Move> {
+		@Override
+		public Pose getPose(Point2D point) {
+			return new Pose(point.getX(), point.getY(), 0.0d);
+		}
+
+		@Override
+		public Pose getPose(Point2D point, double heading) {
+			return new Pose(point.getX(), point.getY(), heading);
+		}
+
+		@Override
+		public boolean isHeadingValid(Pose pose) {
+			return true;
+		}
+	}
+
+	private static class Reading extends AbstractRangeReading {
+		Reading(double value) {
+			super(value);
+		}
+
+		@Override
+		public double calculateWeight(AbstractRangeReading secondRange) {
+			return 1.0d;
+		}
+	}
+}
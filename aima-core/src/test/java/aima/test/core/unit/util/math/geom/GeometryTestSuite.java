@@ -20,7 +20,7 @@ import aima.test.core.unit.util.math.geom.shapes.Vector2DTest;
  *
  */
 @RunWith(Suite.class)
-@SuiteClasses({SVGGroupParserTest.class, Vector2DTest.class, Line2DTest.class, Rect2DTest.class, Polyline2DTest.class, Circle2DTest.class, Ellipse2DTest.class })
+@SuiteClasses({SVGGroupParserTest.class, Vector2DTest.class, Line2DTest.class, Rect2DTest.class, Polyline2DTest.class, Circle2DTest.class, Ellipse2DTest.class, GridIndex2DTest.class })
 public class GeometryTestSuite {
 
 }
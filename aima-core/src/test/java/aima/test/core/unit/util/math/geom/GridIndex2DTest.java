@@ -0,0 +1,134 @@
+package aima.test.core.unit.util.math.geom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import aima.core.util.math.geom.CartesianPlot2D;
+import aima.core.util.math.geom.GridIndex2D;
+import aima.core.util.math.geom.SVGGroupParser;
+import aima.core.util.math.geom.shapes.Circle2D;
+import aima.core.util.math.geom.shapes.IGeometric2D;
+import aima.core.util.math.geom.shapes.Line2D;
+import aima.core.util.math.geom.shapes.Point2D;
+import aima.core.util.math.geom.shapes.Polyline2D;
+import aima.core.util.math.geom.shapes.Ray2D;
+import aima.core.util.math.geom.shapes.Rect2D;
+import aima.core.util.math.geom.shapes.Vector2D;
+
+/**
+ * Test case for the {@code aima.core.util.math.geom} package.
+ * Compares the results of {@link GridIndex2D} with testing every shape.
+ */
+@SuppressWarnings("javadoc")
+public class GridIndex2DTest {
+
+	private ArrayList<IGeometric2D> shapes;
+	private GridIndex2D index;
+
+	@Before
+	public void setUp() {
+		shapes = new ArrayList<IGeometric2D>();
+		shapes.add(new Rect2D(10.0d, 10.0d, 20.0d, 30.0d));
+		shapes.add(new Circle2D(new Point2D(50.0d, 50.0d), 8.0d));
+		shapes.add(new Line2D(0.0d, 80.0d, 90.0d, 95.0d));
+		shapes.add(new Polyline2D(new Point2D[] { new Point2D(60.0d, 5.0d), new Point2D(95.0d, 10.0d), new Point2D(75.0d, 35.0d) }, true));
+		shapes.add(new Polyline2D(new Point2D[] { new Point2D(30.0d, 60.0d), new Point2D(35.0d, 70.0d), new Point2D(25.0d, 75.0d) }, false));
+		index = new GridIndex2D(shapes);
+	}
+
+	@Test
+	public void testRayCast() {
+		assertEquals(10.0d, index.rayCast(0.0d, 20.0d, 1.0d, 0.0d, Double.POSITIVE_INFINITY), 0.000005d);
+		assertEquals(10.0d, index.rayCast(new Ray2D(new Point2D(0.0d, 20.0d), new Vector2D(3.0d, 0.0d)), Double.POSITIVE_INFINITY), 0.000005d);
+		assertEquals(32.0d, index.rayCast(10.0d, 50.0d, 1.0d, 0.0d, Double.POSITIVE_INFINITY), 0.000005d);
+		assertEquals(Double.POSITIVE_INFINITY, index.rayCast(10.0d, 50.0d, 1.0d, 0.0d, 20.0d), 0.0d);
+		assertEquals(Double.POSITIVE_INFINITY, index.rayCast(0.0d, 50.0d, -1.0d, 0.0d, Double.POSITIVE_INFINITY), 0.0d);
+		assertEquals(Double.POSITIVE_INFINITY, index.rayCast(200.0d, 200.0d, 1.0d, 1.0d, Double.POSITIVE_INFINITY), 0.0d);
+		// a ray starting outside of the indexed region
+		assertEquals(20.0d, index.rayCast(-10.0d, 20.0d, 1.0d, 0.0d, Double.POSITIVE_INFINITY), 0.000005d);
+	}
+
+	@Test
+	public void testRayCastMatchesShapes() {
+		Random random = new Random(42);
+		for(int i = 0; i < 2000; i++) {
+			final double x = random.nextDouble() * 120.0d - 10.0d;
+			final double y = random.nextDouble() * 120.0d - 10.0d;
+			final double angle = random.nextDouble() * 2 * Math.PI;
+			final Ray2D ray = new Ray2D(new Point2D(x, y), Vector2D.calculateFromPolar(1.0d, angle));
+			double expected = Double.POSITIVE_INFINITY;
+			for(IGeometric2D shape: shapes) {
+				expected = Math.min(expected, shape.rayCast(ray));
+			}
+			assertEquals(expected, index.rayCast(x, y, Math.cos(angle), Math.sin(angle), Double.POSITIVE_INFINITY), 0.000005d);
+		}
+	}
+
+	@Test
+	public void testBatchRayCastMatchesCartesianPlot() {
+		final CartesianPlot2D plot = new CartesianPlot2D(new SVGGroupParser());
+		plot.setShapes(shapes);
+		final Random random = new Random(11);
+		final int n = 300;
+		final double[] x = new double[n];
+		final double[] y = new double[n];
+		final double[] heading = new double[n];
+		for(int i = 0; i < n; i++) {
+			x[i] = random.nextDouble() * 120.0d - 10.0d;
+			y[i] = random.nextDouble() * 120.0d - 10.0d;
+			heading[i] = random.nextDouble() * 2 * Math.PI;
+		}
+		final double[] angles = { -Math.PI / 2, -0.3d, 0.0d, 0.7d, Math.PI };
+		final double[] result = new double[n * angles.length];
+		plot.rayCast(x, y, heading, 0, n, angles, result);
+		for(int i = 0; i < n; i++) {
+			for(int k = 0; k < angles.length; k++) {
+				final Ray2D ray = new Ray2D(new Point2D(x[i], y[i]), Vector2D.calculateFromPolar(1.0d, heading[i] + angles[k]));
+				assertEquals(plot.rayCast(ray), result[i * angles.length + k], 0.000005d);
+			}
+		}
+	}
+
+	@Test
+	public void testPointQueries() {
+		assertTrue(index.isPointInsideShape(15.0d, 20.0d));
+		assertFalse(index.isPointInsideShape(10.0d, 20.0d));
+		assertTrue(index.isPointInsideBorderShape(10.0d, 20.0d));
+		assertTrue(index.isPointInsideShape(50.0d, 55.0d));
+		assertFalse(index.isPointInsideShape(5.0d, 5.0d));
+		assertFalse(index.isPointInsideShape(-50.0d, 5.0d));
+		Random random = new Random(7);
+		for(int i = 0; i < 5000; i++) {
+			final Point2D point = new Point2D(random.nextDouble() * 110.0d - 5.0d, random.nextDouble() * 110.0d - 5.0d);
+			boolean inside = false;
+			boolean insideBorder = false;
+			for(IGeometric2D shape: shapes) {
+				inside |= shape.isInside(point);
+				insideBorder |= shape.isInsideBorder(point);
+			}
+			assertEquals(inside, index.isPointInsideShape(point.getX(), point.getY()));
+			assertEquals(insideBorder, index.isPointInsideBorderShape(point.getX(), point.getY()));
+		}
+	}
+
+	@Test
+	public void testBatchRayCast() {
+		final double[] x = { 0.0d, 15.0d };
+		final double[] y = { 20.0d, 0.0d };
+		final double[] heading = { 0.0d, Math.PI / 2 };
+		final double[] angles = { 0.0d, Math.PI };
+		final double[] result = new double[4];
+		index.rayCast(x, y, heading, 0, 2, angles, Double.POSITIVE_INFINITY, result);
+		assertEquals(10.0d, result[0], 0.000005d);
+		assertEquals(Double.POSITIVE_INFINITY, result[1], 0.0d);
+		assertEquals(10.0d, result[2], 0.000005d);
+		assertEquals(Double.POSITIVE_INFINITY, result[3], 0.0d);
+	}
+}
@@ -13,6 +13,7 @@ import aima.core.util.math.geom.shapes.Point2D;
 import aima.core.util.math.geom.shapes.Polyline2D;
 import aima.core.util.math.geom.shapes.Ray2D;
 import aima.core.util.math.geom.shapes.TransformMatrix2D;
+import aima.core.util.math.geom.shapes.Vector2D;
 
 /**
  * Test case for the {@code aima.core.util.math.geom} package.
@@ -79,6 +80,9 @@ public class Polyline2DTest {
 		assertEquals("Ray intersects with polyline.", Math.sqrt(2), testPolylineOpen.rayCast(new Ray2D(1.0d,1.0d,4.0d,4.0d)), 0.000005d);
 		assertEquals("Ray doesn't intersect with polygon.", Double.POSITIVE_INFINITY, testPolylineClosed.rayCast(new Ray2D(1.0d,1.0d,-7.0d,-8.0d)), 0.000005d);
 		assertEquals("Ray intersects with polygon.", Math.sqrt(2), testPolylineClosed.rayCast(new Ray2D(1.0d,1.0d,4.0d,4.0d)), 0.000005d);
+		assertEquals("Horizontal ray intersects with polyline.", 2.6d, testPolylineOpen.rayCast(new Ray2D(new Point2D(0.0d,3.0d),new Vector2D(1.0d,0.0d))), 0.000005d);
+		assertEquals("Horizontal ray intersects with polygon.", 4.0d, testPolylineClosed.rayCast(new Ray2D(new Point2D(10.0d,0.0d),new Vector2D(-2.0d,0.0d))), 0.000005d);
+		assertEquals("Vertical ray intersects with polygon.", 2.5d, testPolylineClosed.rayCast(new Ray2D(new Point2D(4.0d,-3.0d),new Vector2D(0.0d,1.0d))), 0.000005d);
 		
 		// Serial RayCast tests	
 		/*Point2D randomPoint;
@@ -74,10 +74,13 @@ public interface OsmMap extends WayNodeProvider {
 
 	/**
 	 * Returns the nearest way node from all ways which are accepted by the
-	 * filter.
+	 * filter. Points of interest which are not part of a way are never
+	 * returned.
 	 * 
 	 * @param pos
 	 *            The reference position.
+	 * @param filter
+	 *            Way filter, possibly null.
 	 */
 	MapNode getNearestWayNode(Position pos, MapWayFilter filter);
 
@@ -160,6 +163,15 @@ public interface OsmMap extends WayNodeProvider {
 	 */
 	void visitEntities(EntityVisitor visitor, BoundingBox bb, float scale);
 
+	/**
+	 * Returns for each of the specified areas the entities within the area
+	 * which are visible in the specified scale, in the order in which
+	 * {@link #visitEntities(EntityVisitor, BoundingBox, float)} would visit
+	 * them. Implementations may handle all areas in one pass.
+	 */
+	List<List<MapEntity>> getVisibleEntities(List<BoundingBox> bbs,
+			float scale);
+
 	/** Adds a listener for map data events. */
 	void addMapDataEventListener(MapEventListener listener);
 
@@ -0,0 +1,823 @@
+package aimax.osm.data.compact;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.logging.Logger;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.EntityClassifier;
+import aimax.osm.data.EntityFinder;
+import aimax.osm.data.EntityVisitor;
+import aimax.osm.data.MapBuilder;
+import aimax.osm.data.MapBuilderProxy;
+import aimax.osm.data.MapEvent;
+import aimax.osm.data.MapEventListener;
+import aimax.osm.data.MapWayFilter;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.EntityAttribute;
+import aimax.osm.data.entities.EntityViewInfo;
+import aimax.osm.data.entities.MapEntity;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+import aimax.osm.data.entities.Track;
+import aimax.osm.data.impl.DefaultEntityFinder;
+import aimax.osm.data.impl.DefaultMapBuilder;
+import aimax.osm.data.impl.DefaultMapNode;
+import aimax.osm.data.impl.DefaultTrack;
+
+/**
+ * Read-only map which keeps its entities outside the Java heap in a memory
+ * mapped file. The file stores nodes and ways column by column in arrays of
+ * primitive values: IDs sorted in ascending order, coordinates as fixed point
+ * integers, way nodes as offsets into the node columns, and names and
+ * attributes as indices into a string table. Each column is mapped separately,
+ * so that the size of a single column is limited to 2 GB, but not the size of
+ * the map. Nodes and ways are found by binary search over the IDs, spatial
+ * queries scan the blocks of ways and points of interest whose bounding boxes
+ * intersect the query box. Blocks are formed along a Hilbert curve.
+ *
+ * <p>
+ * Entities are represented by lightweight views which are created on demand.
+ * As long as a view is referenced, the map returns the same view for the same
+ * entity, so that entities can still be compared by identity, e.g. in search
+ * algorithms. View information is computed with the current entity classifier
+ * when it is requested for the first time.
+ * </p>
+ *
+ * <p>
+ * Map files are created by {@link #write(OsmMap, File)}. The builder of this
+ * map collects entities in a default map, writes them to a temporary file, and
+ * replaces the current data by the content of that file. Markers and tracks are
+ * kept in memory.
+ * </p>
+ */
+public class CompactMap implements OsmMap {
+	private static Logger LOG = Logger.getLogger("aimax.osm");
+	/** "OSMM" */
+	static final int FILE_ID = 0x4f534d4d;
+	static final int FILE_VERSION = 1;
+	/** Number of ways or points of interest sharing a bounding box. */
+	static final int BLOCK_SIZE = 64;
+	/** Magic, version, bounding box, four counts, and the section table. */
+	static final int HEADER_SIZE = 40 + 16 * Section.values().length;
+	private static final double FIXED_POINT_SCALE = 1e7;
+
+	/** The columns of a map file in the order of the section table. */
+	enum Section {
+		NODE_IDS, NODE_LATS, NODE_LONS, NODE_NAMES, NODE_ATT_STARTS,
+		NODE_REF_STARTS, NODE_REFS, WAY_IDS, WAY_NAMES, WAY_ATT_STARTS,
+		WAY_NODE_STARTS, WAY_NODES, WAY_ORDER, WAY_BOXES, WAY_BLOCKS, POIS,
+		POI_BOXES, POI_BLOCKS, ATTS, STRING_STARTS, STRING_DATA
+	}
+
+	private File file;
+	private RandomAccessFile raf;
+	private BoundingBox boundingBox;
+	private int nodeCount;
+	private int wayCount;
+	private int poiCount;
+
+	LongBuffer nodeIds;
+	IntBuffer nodeLats;
+	IntBuffer nodeLons;
+	IntBuffer nodeNames;
+	IntBuffer nodeAttStarts;
+	IntBuffer nodeRefStarts;
+	/** Way index and node index pairs. */
+	IntBuffer nodeRefs;
+	LongBuffer wayIds;
+	IntBuffer wayNames;
+	IntBuffer wayAttStarts;
+	IntBuffer wayNodeStarts;
+	IntBuffer wayNodes;
+	/** Way indices in Hilbert order. */
+	private IntBuffer wayOrder;
+	/** Bounding boxes of the ways in Hilbert order. */
+	private IntBuffer wayBoxes;
+	private IntBuffer wayBlocks;
+	/** Node indices of the points of interest in Hilbert order. */
+	private IntBuffer pois;
+	private IntBuffer poiBoxes;
+	private IntBuffer poiBlocks;
+	/** Key and value string index pairs, sorted by key for each entity. */
+	private IntBuffer atts;
+	private IntBuffer stringStarts;
+	private ByteBuffer stringData;
+	/** Strings decoded so far. */
+	private String[] strings;
+
+	private final ViewCache<CompactMapNode> nodeViews = new ViewCache<>();
+	private final ViewCache<CompactMapWay> wayViews = new ViewCache<>();
+
+	/** Maintains markers (not part of the original map). */
+	private final ArrayList<MapNode> markers = new ArrayList<>();
+	/** Maintains tracks (not part of the original map). */
+	private final ArrayList<Track> tracks = new ArrayList<>();
+	private long nextTrackId;
+
+	private EntityClassifier<EntityViewInfo> entityClassifier;
+	/** Incremented whenever view information becomes invalid. */
+	private volatile int classifierVersion;
+
+	private final ArrayList<MapEventListener> listeners = new ArrayList<>();
+
+	/** Creates an empty map. */
+	public CompactMap() {
+	}
+
+	/** Creates a map with the content of a map file. */
+	public CompactMap(File file) throws IOException {
+		open(file);
+	}
+
+	/**
+	 * Writes the ways and points of interest of a map to a file which can be
+	 * opened by a compact map.
+	 */
+	public static void write(OsmMap map, File file) throws IOException {
+		new CompactMapWriter(map).write(file);
+	}
+
+	/**
+	 * Replaces the current map data by the content of a map file. Markers and
+	 * tracks are kept.
+	 */
+	public void open(File file) throws IOException {
+		RandomAccessFile newRaf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = newRaf.getChannel();
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					Math.min(HEADER_SIZE, channel.size()));
+			if (header.limit() < HEADER_SIZE
+					|| header.getInt() != FILE_ID
+					|| header.getInt() != FILE_VERSION)
+				throw new IOException("Unsupported map file format: " + file);
+			closeFile();
+			boundingBox = new BoundingBox(header.getFloat(), header.getFloat(),
+					header.getFloat(), header.getFloat());
+			nodeCount = header.getInt();
+			wayCount = header.getInt();
+			poiCount = header.getInt();
+			strings = new String[header.getInt()];
+			ByteBuffer[] sections = new ByteBuffer[Section.values().length];
+			for (int i = 0; i < sections.length; i++)
+				sections[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+						header.getLong(), header.getLong());
+			nodeIds = sections[Section.NODE_IDS.ordinal()].asLongBuffer();
+			nodeLats = sections[Section.NODE_LATS.ordinal()].asIntBuffer();
+			nodeLons = sections[Section.NODE_LONS.ordinal()].asIntBuffer();
+			nodeNames = sections[Section.NODE_NAMES.ordinal()].asIntBuffer();
+			nodeAttStarts = sections[Section.NODE_ATT_STARTS.ordinal()].asIntBuffer();
+			nodeRefStarts = sections[Section.NODE_REF_STARTS.ordinal()].asIntBuffer();
+			nodeRefs = sections[Section.NODE_REFS.ordinal()].asIntBuffer();
+			wayIds = sections[Section.WAY_IDS.ordinal()].asLongBuffer();
+			wayNames = sections[Section.WAY_NAMES.ordinal()].asIntBuffer();
+			wayAttStarts = sections[Section.WAY_ATT_STARTS.ordinal()].asIntBuffer();
+			wayNodeStarts = sections[Section.WAY_NODE_STARTS.ordinal()].asIntBuffer();
+			wayNodes = sections[Section.WAY_NODES.ordinal()].asIntBuffer();
+			wayOrder = sections[Section.WAY_ORDER.ordinal()].asIntBuffer();
+			wayBoxes = sections[Section.WAY_BOXES.ordinal()].asIntBuffer();
+			wayBlocks = sections[Section.WAY_BLOCKS.ordinal()].asIntBuffer();
+			pois = sections[Section.POIS.ordinal()].asIntBuffer();
+			poiBoxes = sections[Section.POI_BOXES.ordinal()].asIntBuffer();
+			poiBlocks = sections[Section.POI_BLOCKS.ordinal()].asIntBuffer();
+			atts = sections[Section.ATTS.ordinal()].asIntBuffer();
+			stringStarts = sections[Section.STRING_STARTS.ordinal()].asIntBuffer();
+			stringData = sections[Section.STRING_DATA.ordinal()];
+		} catch (IOException | RuntimeException e) {
+			newRaf.close();
+			throw e;
+		}
+		this.file = file;
+		raf = newRaf;
+		nodeViews.clear();
+		wayViews.clear();
+		classifierVersion++;
+		LOG.info("Map file " + file + " opened with " + nodeCount
+				+ " nodes and " + wayCount + " ways.");
+		fireMapDataEvent(new MapEvent(this, MapEvent.Type.MAP_NEW));
+	}
+
+	/** Returns the currently opened map file or null. */
+	public File getFile() {
+		return file;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean isEmpty() {
+		return nodeCount == 0 && wayCount == 0 && markers.isEmpty()
+				&& tracks.isEmpty();
+	}
+
+	/**
+	 * Returns a builder which collects the entities in a default map. The
+	 * resulting map is written to a temporary file, which replaces the current
+	 * map data.
+	 */
+	@Override
+	public MapBuilder getBuilder() {
+		return new Builder();
+	}
+
+	/** Releases the map file. */
+	@Override
+	public void close() {
+		closeFile();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void setEntityClassifier(EntityClassifier<EntityViewInfo> classifier) {
+		entityClassifier = classifier;
+		classifierVersion++;
+		for (MapNode marker : markers)
+			marker.setViewInfo(classify(marker));
+		for (Track track : tracks)
+			track.setViewInfo(classify(track));
+		if (raf != null)
+			fireMapDataEvent(new MapEvent(this, MapEvent.Type.MAP_MODIFIED));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public BoundingBox getBoundingBox() {
+		return boundingBox;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public MapNode getNode(long id) {
+		int index = binarySearch(nodeIds, nodeCount, id);
+		return index >= 0 ? getNodeView(index) : null;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getWayCount() {
+		return wayCount;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public MapWay getWay(long id) {
+		int index = binarySearch(wayIds, wayCount, id);
+		return index >= 0 ? getWayView(index) : null;
+	}
+
+	/**
+	 * Returns all map ways whose bounding box intersects the specified bounding
+	 * box.
+	 */
+	@Override
+	public Collection<MapWay> getWays(BoundingBox bb) {
+		List<MapWay> result = new ArrayList<>();
+		int[] box = toFixed(bb);
+		for (int b = 0; b * BLOCK_SIZE < wayCount; b++) {
+			if (intersects(wayBlocks, b, box)) {
+				int end = Math.min(wayCount, (b + 1) * BLOCK_SIZE);
+				for (int i = b * BLOCK_SIZE; i < end; i++)
+					if (intersects(wayBoxes, i, box))
+						result.add(getWayView(wayOrder.get(i)));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the nearest way node from all ways which are accepted by the
+	 * filter. Blocks and ways are visited in ascending order of the distance
+	 * to their bounding boxes until no closer node can be found.
+	 */
+	@Override
+	public MapNode getNearestWayNode(Position pos, MapWayFilter filter) {
+		int blockCount = (wayCount + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		long[] blocks = new long[blockCount];
+		for (int b = 0; b < blockCount; b++)
+			blocks[b] = (long) Float.floatToIntBits(getLowerBound(pos,
+					wayBlocks, b)) << 32 | b;
+		Arrays.sort(blocks); // bits of non-negative floats keep the order
+		int result = -1;
+		double minDist = Double.POSITIVE_INFINITY;
+		for (long entry : blocks) {
+			if (Float.intBitsToFloat((int) (entry >>> 32)) >= minDist)
+				break;
+			int b = (int) entry;
+			int end = Math.min(wayCount, (b + 1) * BLOCK_SIZE);
+			for (int i = b * BLOCK_SIZE; i < end; i++) {
+				if (getLowerBound(pos, wayBoxes, i) >= minDist)
+					continue;
+				int way = wayOrder.get(i);
+				if (filter != null && !filter.isAccepted(getWayView(way)))
+					continue;
+				for (int j = wayNodeStarts.get(way); j < wayNodeStarts
+						.get(way + 1); j++) {
+					int node = wayNodes.get(j);
+					double dist = Position.getDistKM(pos.getLat(),
+							pos.getLon(), toDegrees(nodeLats.get(node)),
+							toDegrees(nodeLons.get(node)));
+					if (dist < minDist) {
+						minDist = dist;
+						result = node;
+					}
+				}
+			}
+		}
+		return result != -1 ? getNodeView(result) : null;
+	}
+
+	/** Reduces the level of detail by selecting some of the given nodes. */
+	@Override
+	public List<MapNode> getWayNodes(MapWay way, float scale) {
+		List<MapNode> wayNodes = way.getNodes();
+		int zoomLevel;
+		if (scale <= 1f / 10000000)
+			zoomLevel = 3;
+		else if (scale <= 1f / 750000)
+			zoomLevel = 2;
+		else if (scale <= 1f / 350000)
+			zoomLevel = 1;
+		else
+			zoomLevel = 0;
+		if (zoomLevel > 0) {
+			int size = wayNodes.size();
+			List<MapNode> result = new ArrayList<>(size / zoomLevel + 2);
+			int i = 0;
+			for (MapNode node : wayNodes) {
+				if (i == 0 || i == size - 1
+						|| node.getId() % (4 * zoomLevel) == 0)
+					result.add(node);
+				i++;
+			}
+			if (wayNodes.get(0) == wayNodes.get(size - 1) && result.size() < 4)
+				result.clear();
+			return result;
+		} else {
+			return wayNodes;
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getPoiCount() {
+		return poiCount;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<MapNode> getPois(BoundingBox bb) {
+		List<MapNode> result = new ArrayList<>();
+		int[] box = toFixed(bb);
+		for (int b = 0; b * BLOCK_SIZE < poiCount; b++) {
+			if (intersects(poiBlocks, b, box)) {
+				int end = Math.min(poiCount, (b + 1) * BLOCK_SIZE);
+				for (int i = b * BLOCK_SIZE; i < end; i++)
+					if (intersects(poiBoxes, i, box))
+						result.add(getNodeView(pois.get(i)));
+			}
+		}
+		return result;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<MapNode> getPlaces(String name) {
+		String pattern = name.toLowerCase();
+		List<MapNode> results = new ArrayList<>();
+		for (int i = 0; i < poiCount; i++) {
+			int node = pois.get(i);
+			String nodeName = getString(nodeNames.get(node));
+			if (nodeName != null
+					&& nodeName.toLowerCase().startsWith(pattern)
+					&& getAttributeValue(nodeAttStarts.get(node),
+							nodeAttStarts.get(node + 1), "place") != null)
+				results.add(getNodeView(node));
+		}
+		return results;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void clearMarkersAndTracks() {
+		markers.clear();
+		tracks.clear();
+		fireMapDataEvent(new MapEvent(this, MapEvent.Type.MAP_MODIFIED));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<MapEntity> getVisibleMarkersAndTracks(float scale) {
+		List<MapEntity> result = new ArrayList<>();
+		for (MapNode marker : markers)
+			if (marker.getViewInfo() != null
+					&& marker.getViewInfo().getMinVisibleScale() <= scale)
+				result.add(marker);
+		for (Track track : tracks)
+			if (track.getViewInfo() != null
+					&& track.getViewInfo().getMinVisibleScale() <= scale)
+				result.add(track);
+		return result;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public MapNode addMarker(float lat, float lon) {
+		long id = 1;
+		for (MapNode node : markers)
+			if (node.getId() >= id)
+				id = node.getId() + 1;
+		MapNode node = new DefaultMapNode(id);
+		node.setName(Long.toString(id));
+		List<EntityAttribute> atts = new ArrayList<>(1);
+		atts.add(new EntityAttribute("marker", "yes"));
+		node.setAttributes(atts);
+		node.setPosition(lat, lon);
+		node.setViewInfo(classify(node));
+		markers.add(node);
+		fireMapDataEvent(new MapEvent(this, MapEvent.Type.MARKER_ADDED, node
+				.getId()));
+		return node;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void removeMarker(MapNode marker) {
+		markers.remove(marker);
+		fireMapDataEvent(new MapEvent(this, MapEvent.Type.MARKER_REMOVED,
+				marker.getId()));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<MapNode> getMarkers() {
+		return markers;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void clearTrack(String trackName) {
+		Track track = getTrack(trackName);
+		if (track != null) {
+			tracks.remove(track);
+			fireMapDataEvent(new MapEvent(this, MapEvent.Type.MAP_MODIFIED));
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void createTrack(String trackName, List<Position> positions) {
+		clearTrack(trackName);
+		Track track = new DefaultTrack(nextTrackId++, trackName, trackName);
+		track.setViewInfo(classify(track));
+		tracks.add(track);
+		for (Position pos : positions)
+			track.addNode(pos);
+		fireMapDataEvent(new MapEvent(this, MapEvent.Type.TRACK_MODIFIED, track
+				.getId()));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void addToTrack(String trackName, Position pos) {
+		Track track = getTrack(trackName);
+		if (track == null) {
+			track = new DefaultTrack(nextTrackId++, trackName, trackName);
+			track.setViewInfo(classify(track));
+			tracks.add(track);
+		}
+		track.addNode(pos);
+		fireMapDataEvent(new MapEvent(this, MapEvent.Type.TRACK_MODIFIED, track
+				.getId()));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Track> getTracks() {
+		return tracks;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Track getTrack(long trackId) {
+		for (Track track : tracks)
+			if (track.getId() == trackId)
+				return track;
+		return null;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Track getTrack(String trackName) {
+		for (Track track : tracks)
+			if (track.getName().equals(trackName))
+				return track;
+		return null;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public EntityFinder getEntityFinder() {
+		return new DefaultEntityFinder(this);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Object[][] getStatistics() {
+		Object[][] result = new Object[4][2];
+		result[0][0] = "Nodes";
+		result[0][1] = nodeCount;
+		result[1][0] = "Ways";
+		result[1][1] = wayCount;
+		result[2][0] = "POIs";
+		result[2][1] = poiCount;
+		result[3][0] = "Strings";
+		result[3][1] = strings != null ? strings.length : 0;
+		return result;
+	}
+
+	/**
+	 * Visits the ways and points of interest within the area, which are
+	 * visible in the specified scale.
+	 */
+	@Override
+	public void visitEntities(EntityVisitor visitor, BoundingBox vbox,
+			float scale) {
+		if (raf == null)
+			return;
+		for (MapWay way : getWays(vbox))
+			if (way.getViewInfo() != null
+					&& way.getViewInfo().getMinVisibleScale() <= scale)
+				way.accept(visitor);
+		for (MapNode poi : getPois(vbox))
+			if (poi.getViewInfo() != null
+					&& poi.getViewInfo().getMinVisibleScale() <= scale)
+				poi.accept(visitor);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<List<MapEntity>> getVisibleEntities(List<BoundingBox> vboxes,
+			float scale) {
+		List<List<MapEntity>> result = new ArrayList<>(vboxes.size());
+		for (BoundingBox vbox : vboxes) {
+			List<MapEntity> entities = new ArrayList<>();
+			for (MapWay way : getWays(vbox))
+				if (way.getViewInfo() != null
+						&& way.getViewInfo().getMinVisibleScale() <= scale)
+					entities.add(way);
+			for (MapNode poi : getPois(vbox))
+				if (poi.getViewInfo() != null
+						&& poi.getViewInfo().getMinVisibleScale() <= scale)
+					entities.add(poi);
+			result.add(entities);
+		}
+		return result;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void addMapDataEventListener(MapEventListener listener) {
+		listeners.add(listener);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void removeMapDataEventListener(MapEventListener listener) {
+		listeners.remove(listener);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void fireMapDataEvent(MapEvent event) {
+		for (MapEventListener listener : listeners)
+			listener.eventHappened(event);
+	}
+
+	//
+	// PACKAGE METHODS (used by views and writer)
+	//
+
+	static int toFixed(float degrees) {
+		return (int) Math.round(degrees * FIXED_POINT_SCALE);
+	}
+
+	static float toDegrees(int fixed) {
+		return (float) (fixed / FIXED_POINT_SCALE);
+	}
+
+	/** Returns the view of the node with the given index. */
+	CompactMapNode getNodeView(int index) {
+		return nodeViews.get(index, i -> new CompactMapNode(this, i));
+	}
+
+	/** Returns the view of the way with the given index. */
+	CompactMapWay getWayView(int index) {
+		return wayViews.get(index, i -> new CompactMapWay(this, i));
+	}
+
+	int getClassifierVersion() {
+		return classifierVersion;
+	}
+
+	EntityViewInfo classify(MapEntity entity) {
+		EntityClassifier<EntityViewInfo> classifier = entityClassifier;
+		return classifier != null ? classifier.classify(entity) : null;
+	}
+
+	/** Returns the string with the given index or null for index -1. */
+	String getString(int index) {
+		if (index < 0)
+			return null;
+		String result = strings[index];
+		if (result == null) {
+			int begin = stringStarts.get(index);
+			byte[] bytes = new byte[stringStarts.get(index + 1) - begin];
+			ByteBuffer data = stringData.duplicate();
+			data.position(begin);
+			data.get(bytes);
+			result = new String(bytes, StandardCharsets.UTF_8);
+			strings[index] = result;
+		}
+		return result;
+	}
+
+	EntityAttribute[] getAttributes(int begin, int end) {
+		EntityAttribute[] result = new EntityAttribute[(end - begin) / 2];
+		for (int i = 0; i < result.length; i++)
+			result[i] = new EntityAttribute(getString(atts.get(begin + 2 * i)),
+					getString(atts.get(begin + 2 * i + 1)));
+		return result;
+	}
+
+	/** Applies binary search on the keys of a range of attributes. */
+	String getAttributeValue(int begin, int end, String attName) {
+		int min = 0;
+		int max = (end - begin) / 2 - 1;
+		while (min <= max) {
+			int curr = (min + max) / 2;
+			int cr = attName.compareTo(getString(atts.get(begin + 2 * curr)));
+			if (cr == 0)
+				return getString(atts.get(begin + 2 * curr + 1));
+			else if (cr < 0)
+				max = curr - 1;
+			else
+				min = curr + 1;
+		}
+		return null;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void closeFile() {
+		if (raf != null) {
+			try {
+				raf.close();
+			} catch (IOException e) {
+				LOG.warning("Could not close map file " + file + ": " + e);
+			}
+			raf = null;
+			file = null;
+		}
+	}
+
+	private static int binarySearch(LongBuffer ids, int count, long id) {
+		int min = 0;
+		int max = count - 1;
+		while (min <= max) {
+			int curr = (min + max) >>> 1;
+			long currId = ids.get(curr);
+			if (currId < id)
+				min = curr + 1;
+			else if (currId > id)
+				max = curr - 1;
+			else
+				return curr;
+		}
+		return -1;
+	}
+
+	private static int[] toFixed(BoundingBox bb) {
+		return new int[] { toFixed(bb.getLatMin()), toFixed(bb.getLonMin()),
+				toFixed(bb.getLatMax()), toFixed(bb.getLonMax()) };
+	}
+
+	private static boolean intersects(IntBuffer boxes, int i, int[] box) {
+		return boxes.get(4 * i) <= box[2] && boxes.get(4 * i + 2) >= box[0]
+				&& boxes.get(4 * i + 1) <= box[3]
+				&& boxes.get(4 * i + 3) >= box[1];
+	}
+
+	/**
+	 * Returns a lower bound for the distance in KM from a position to the
+	 * entities within a box. The point of the box nearest to the position can
+	 * differ slightly from the clamped position on the sphere, hence the
+	 * safety margin.
+	 */
+	private static float getLowerBound(Position pos, IntBuffer boxes, int i) {
+		float cLat = Math.max(toDegrees(boxes.get(4 * i)), Math.min(
+				pos.getLat(), toDegrees(boxes.get(4 * i + 2))));
+		float cLon = Math.max(toDegrees(boxes.get(4 * i + 1)), Math.min(
+				pos.getLon(), toDegrees(boxes.get(4 * i + 3))));
+		if (cLat == pos.getLat() && cLon == pos.getLon())
+			return 0f;
+		return 0.99f * (float) Position.getDistKM(pos.getLat(), pos.getLon(),
+				cLat, cLon);
+	}
+
+	/**
+	 * Canonicalizes views. Views are referenced weakly, so that they can be
+	 * garbage collected as soon as they are not used anymore.
+	 */
+	private static class ViewCache<V> {
+		private final Map<Integer, Ref<V>> views = new HashMap<>();
+		private final ReferenceQueue<V> queue = new ReferenceQueue<>();
+
+		synchronized V get(int index, IntFunction<V> factory) {
+			removeCollected();
+			Ref<V> ref = views.get(index);
+			V result = ref != null ? ref.get() : null;
+			if (result == null) {
+				result = factory.apply(index);
+				views.put(index, new Ref<>(index, result, queue));
+			}
+			return result;
+		}
+
+		synchronized void clear() {
+			views.clear();
+			removeCollected();
+		}
+
+		@SuppressWarnings("unchecked")
+		private void removeCollected() {
+			Ref<V> ref;
+			while ((ref = (Ref<V>) queue.poll()) != null)
+				if (views.get(ref.index) == ref)
+					views.remove(ref.index);
+		}
+	}
+
+	private static class Ref<V> extends WeakReference<V> {
+		final int index;
+
+		Ref(int index, V view, ReferenceQueue<V> queue) {
+			super(view, queue);
+			this.index = index;
+		}
+	}
+
+	/**
+	 * Collects the entities in a default map and opens the compact form of the
+	 * result.
+	 */
+	private class Builder extends MapBuilderProxy {
+
+		Builder() {
+			super(new DefaultMapBuilder());
+		}
+
+		@Override
+		public void setEntityClassifier(
+				EntityClassifier<EntityViewInfo> classifier) {
+			CompactMap.this.setEntityClassifier(classifier);
+		}
+
+		@Override
+		public OsmMap buildMap() {
+			try {
+				File tmpFile = File.createTempFile("aimax-osm", ".map");
+				tmpFile.deleteOnExit();
+				write(builder.buildMap(), tmpFile);
+				open(tmpFile);
+			} catch (IOException e) {
+				throw new IllegalStateException(
+						"Could not create compact map.", e);
+			}
+			return CompactMap.this;
+		}
+	}
+}
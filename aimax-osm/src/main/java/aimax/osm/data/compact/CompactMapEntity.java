@@ -0,0 +1,94 @@
+package aimax.osm.data.compact;
+
+import java.util.List;
+
+import aimax.osm.data.entities.EntityAttribute;
+import aimax.osm.data.entities.EntityViewInfo;
+import aimax.osm.data.entities.MapEntity;
+
+/**
+ * Base class of the read-only views on entities of a {@link CompactMap}. A view
+ * only knows the map and the index of the entity in the columns of the map
+ * file. View information is computed on demand with the current entity
+ * classifier of the map.
+ */
+abstract class CompactMapEntity implements MapEntity {
+	protected final CompactMap map;
+	protected final int index;
+	private EntityViewInfo viewInfo;
+	/** Classifier version for which the view info is valid. */
+	private int viewInfoVersion = -1;
+
+	protected CompactMapEntity(CompactMap map, int index) {
+		this.map = map;
+		this.index = index;
+	}
+
+	/** Returns the index of the string table entry of the name or -1. */
+	protected abstract int getNameIndex();
+
+	/** Returns the index of the first attribute in the attribute section. */
+	protected abstract int getAttributesBegin();
+
+	/** Returns the index after the last attribute in the attribute section. */
+	protected abstract int getAttributesEnd();
+
+	/** Not supported, the map is read-only. */
+	@Override
+	public void setId(int id) {
+		throw new UnsupportedOperationException("Compact maps are read-only.");
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getName() {
+		return map.getString(getNameIndex());
+	}
+
+	/** Not supported, the map is read-only. */
+	@Override
+	public void setName(String name) {
+		throw new UnsupportedOperationException("Compact maps are read-only.");
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public EntityAttribute[] getAttributes() {
+		return map.getAttributes(getAttributesBegin(), getAttributesEnd());
+	}
+
+	/** Not supported, the map is read-only. */
+	@Override
+	public void setAttributes(List<EntityAttribute> atts) {
+		throw new UnsupportedOperationException("Compact maps are read-only.");
+	}
+
+	/** Returns the view information assigned by the current classifier. */
+	@Override
+	public synchronized EntityViewInfo getViewInfo() {
+		if (viewInfoVersion != map.getClassifierVersion()) {
+			viewInfo = map.classify(this);
+			viewInfoVersion = map.getClassifierVersion();
+		}
+		return viewInfo;
+	}
+
+	/**
+	 * Overrides the view information until the classifier of the map changes.
+	 */
+	@Override
+	public synchronized void setViewInfo(EntityViewInfo renderData) {
+		viewInfo = renderData;
+		viewInfoVersion = map.getClassifierVersion();
+	}
+
+	/**
+	 * Applies binary search to find the specified attribute value and returns
+	 * null if not found.
+	 */
+	@Override
+	public String getAttributeValue(String attName) {
+		return map.getAttributeValue(getAttributesBegin(), getAttributesEnd(),
+				attName);
+	}
+}
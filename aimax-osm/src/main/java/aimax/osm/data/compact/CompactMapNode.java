@@ -0,0 +1,88 @@
+package aimax.osm.data.compact;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import aimax.osm.data.EntityVisitor;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.WayRef;
+
+/** Read-only view on a node of a {@link CompactMap}. */
+class CompactMapNode extends CompactMapEntity implements MapNode {
+
+	CompactMapNode(CompactMap map, int index) {
+		super(map, index);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long getId() {
+		return map.nodeIds.get(index);
+	}
+
+	/** Returns true, nodes without position are not stored. */
+	@Override
+	public boolean hasPosition() {
+		return true;
+	}
+
+	/** Not supported, the map is read-only. */
+	@Override
+	public void setPosition(float lat, float lon) {
+		throw new UnsupportedOperationException("Compact maps are read-only.");
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public float getLat() {
+		return CompactMap.toDegrees(map.nodeLats.get(index));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public float getLon() {
+		return CompactMap.toDegrees(map.nodeLons.get(index));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<WayRef> getWayRefs() {
+		int begin = map.nodeRefStarts.get(index);
+		int end = map.nodeRefStarts.get(index + 1);
+		List<WayRef> result = new ArrayList<>(end - begin);
+		for (int i = begin; i < end; i++)
+			result.add(new CompactWayRef(map.getWayView(map.nodeRefs
+					.get(2 * i)), (short) map.nodeRefs.get(2 * i + 1)));
+		return result;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void accept(EntityVisitor visitor) {
+		visitor.visitMapNode(this);
+	}
+
+	@Override
+	public String toString() {
+		return "Node(" + getId() + ")";
+	}
+
+	//
+	// PROTECTED METHODS
+	//
+
+	@Override
+	protected int getNameIndex() {
+		return map.nodeNames.get(index);
+	}
+
+	@Override
+	protected int getAttributesBegin() {
+		return map.nodeAttStarts.get(index);
+	}
+
+	@Override
+	protected int getAttributesEnd() {
+		return map.nodeAttStarts.get(index + 1);
+	}
+}
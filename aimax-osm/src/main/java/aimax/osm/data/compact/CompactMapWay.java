@@ -0,0 +1,128 @@
+package aimax.osm.data.compact;
+
+import java.util.AbstractList;
+import java.util.List;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.EntityVisitor;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+
+/** Read-only view on a way of a {@link CompactMap}. */
+class CompactMapWay extends CompactMapEntity implements MapWay {
+
+	CompactMapWay(CompactMap map, int index) {
+		super(map, index);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long getId() {
+		return map.wayIds.get(index);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean isOneway() {
+		return "yes".equals(getAttributeValue("oneway"));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean isArea() {
+		return "yes".equals(getAttributeValue("area"));
+	}
+
+	/** Returns a list view which creates node views on access. */
+	@Override
+	public List<MapNode> getNodes() {
+		int begin = map.wayNodeStarts.get(index);
+		int end = map.wayNodeStarts.get(index + 1);
+		return new AbstractList<MapNode>() {
+			@Override
+			public MapNode get(int i) {
+				if (i < 0 || i >= end - begin)
+					throw new IndexOutOfBoundsException("Index: " + i);
+				return map.getNodeView(map.wayNodes.get(begin + i));
+			}
+
+			@Override
+			public int size() {
+				return end - begin;
+			}
+		};
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public BoundingBox computeBoundingBox() {
+		int[] box = computeFixedBox();
+		return new BoundingBox(CompactMap.toDegrees(box[0]),
+				CompactMap.toDegrees(box[1]), CompactMap.toDegrees(box[2]),
+				CompactMap.toDegrees(box[3]));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public float getBoundingBoxSize() {
+		int[] box = computeFixedBox();
+		return CompactMap.toDegrees(box[2]) - CompactMap.toDegrees(box[0])
+				+ CompactMap.toDegrees(box[3]) - CompactMap.toDegrees(box[1]);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void accept(EntityVisitor visitor) {
+		visitor.visitMapWay(this);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder("Way(" + getId() + ", [ ");
+		for (int i = map.wayNodeStarts.get(index); i < map.wayNodeStarts
+				.get(index + 1); i++)
+			result.append(map.nodeIds.get(map.wayNodes.get(i))).append(" ");
+		result.append("])");
+		return result.toString();
+	}
+
+	//
+	// PROTECTED METHODS
+	//
+
+	@Override
+	protected int getNameIndex() {
+		return map.wayNames.get(index);
+	}
+
+	@Override
+	protected int getAttributesBegin() {
+		return map.wayAttStarts.get(index);
+	}
+
+	@Override
+	protected int getAttributesEnd() {
+		return map.wayAttStarts.get(index + 1);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/** Returns latMin, lonMin, latMax, lonMax in fixed point representation. */
+	private int[] computeFixedBox() {
+		int[] result = { Integer.MAX_VALUE, Integer.MAX_VALUE,
+				Integer.MIN_VALUE, Integer.MIN_VALUE };
+		for (int i = map.wayNodeStarts.get(index); i < map.wayNodeStarts
+				.get(index + 1); i++) {
+			int node = map.wayNodes.get(i);
+			int lat = map.nodeLats.get(node);
+			int lon = map.nodeLons.get(node);
+			result[0] = Math.min(result[0], lat);
+			result[1] = Math.min(result[1], lon);
+			result[2] = Math.max(result[2], lat);
+			result[3] = Math.max(result[3], lon);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,298 @@
+package aimax.osm.data.compact;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.entities.EntityAttribute;
+import aimax.osm.data.entities.MapEntity;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+import aimax.osm.data.entities.WayRef;
+import aimax.osm.data.impl.PackedRTree;
+
+/**
+ * Converts the ways and points of interest of a map into the columnar file
+ * format of {@link CompactMap}. Nodes and ways are sorted by ID, the spatial
+ * sections list ways and POIs in Hilbert order together with the bounding
+ * boxes of blocks of {@link CompactMap#BLOCK_SIZE} entries.
+ */
+class CompactMapWriter {
+	private final OsmMap map;
+	private final List<MapNode> nodes = new ArrayList<>();
+	private final List<MapWay> ways = new ArrayList<>();
+	private final Map<MapNode, Integer> nodeIndices = new IdentityHashMap<>();
+	private final Map<MapWay, Integer> wayIndices = new IdentityHashMap<>();
+	private final Map<String, Integer> strings = new HashMap<>();
+	private final List<String> stringList = new ArrayList<>();
+
+	CompactMapWriter(OsmMap map) {
+		this.map = map;
+	}
+
+	void write(File file) throws IOException {
+		BoundingBox world = new BoundingBox(-90f, -180f, 90f, 180f);
+		ways.addAll(map.getWays(world));
+		ways.sort((w1, w2) -> Long.compare(w1.getId(), w2.getId()));
+		for (MapWay way : ways)
+			for (MapNode node : way.getNodes())
+				nodeIndices.put(node, -1);
+		for (MapNode poi : map.getPois(world))
+			nodeIndices.put(poi, -1);
+		nodes.addAll(nodeIndices.keySet());
+		nodes.sort((n1, n2) -> Long.compare(n1.getId(), n2.getId()));
+		for (int i = 0; i < nodes.size(); i++)
+			nodeIndices.put(nodes.get(i), i);
+		for (int i = 0; i < ways.size(); i++)
+			wayIndices.put(ways.get(i), i);
+
+		int[] atts = new int[0];
+		int attCount = 0;
+		int[] nodeNames = new int[nodes.size()];
+		int[] nodeAttStarts = new int[nodes.size() + 1];
+		int[] nodeRefStarts = new int[nodes.size() + 1];
+		List<Integer> nodeRefs = new ArrayList<>();
+		long[] nodeIds = new long[nodes.size()];
+		int[] lats = new int[nodes.size()];
+		int[] lons = new int[nodes.size()];
+		for (int i = 0; i < nodes.size(); i++) {
+			MapNode node = nodes.get(i);
+			nodeIds[i] = node.getId();
+			lats[i] = CompactMap.toFixed(node.getLat());
+			lons[i] = CompactMap.toFixed(node.getLon());
+			nodeNames[i] = getStringIndex(node.getName());
+			nodeAttStarts[i] = attCount;
+			atts = addAttributes(node, atts, attCount);
+			attCount += 2 * node.getAttributes().length;
+			nodeRefStarts[i] = nodeRefs.size() / 2;
+			for (WayRef ref : node.getWayRefs()) {
+				Integer way = wayIndices.get(ref.getWay());
+				if (way != null) {
+					nodeRefs.add(way);
+					nodeRefs.add((int) ref.getNodeIdx());
+				}
+			}
+		}
+		nodeAttStarts[nodes.size()] = attCount;
+		nodeRefStarts[nodes.size()] = nodeRefs.size() / 2;
+
+		long[] wayIds = new long[ways.size()];
+		int[] wayNames = new int[ways.size()];
+		int[] wayAttStarts = new int[ways.size() + 1];
+		int[] wayNodeStarts = new int[ways.size() + 1];
+		List<Integer> wayNodes = new ArrayList<>();
+		int[] wayBoxes = new int[4 * ways.size()];
+		for (int i = 0; i < ways.size(); i++) {
+			MapWay way = ways.get(i);
+			wayIds[i] = way.getId();
+			wayNames[i] = getStringIndex(way.getName());
+			wayAttStarts[i] = attCount;
+			atts = addAttributes(way, atts, attCount);
+			attCount += 2 * way.getAttributes().length;
+			wayNodeStarts[i] = wayNodes.size();
+			int latMin = Integer.MAX_VALUE, lonMin = Integer.MAX_VALUE;
+			int latMax = Integer.MIN_VALUE, lonMax = Integer.MIN_VALUE;
+			for (MapNode node : way.getNodes()) {
+				int n = nodeIndices.get(node);
+				wayNodes.add(n);
+				latMin = Math.min(latMin, lats[n]);
+				lonMin = Math.min(lonMin, lons[n]);
+				latMax = Math.max(latMax, lats[n]);
+				lonMax = Math.max(lonMax, lons[n]);
+			}
+			wayBoxes[4 * i] = latMin;
+			wayBoxes[4 * i + 1] = lonMin;
+			wayBoxes[4 * i + 2] = latMax;
+			wayBoxes[4 * i + 3] = lonMax;
+		}
+		wayAttStarts[ways.size()] = attCount;
+		wayNodeStarts[ways.size()] = wayNodes.size();
+
+		int[] wayOrder = sortSpatially(wayBoxes, ways.size());
+		int[] orderedWayBoxes = new int[wayBoxes.length];
+		for (int i = 0; i < wayOrder.length; i++)
+			System.arraycopy(wayBoxes, 4 * wayOrder[i], orderedWayBoxes,
+					4 * i, 4);
+		List<MapNode> poiList = map.getPois(world);
+		int[] poiBoxes = new int[4 * poiList.size()];
+		int[] poiNodes = new int[poiList.size()];
+		for (int i = 0; i < poiNodes.length; i++) {
+			int n = nodeIndices.get(poiList.get(i));
+			poiNodes[i] = n;
+			poiBoxes[4 * i] = poiBoxes[4 * i + 2] = lats[n];
+			poiBoxes[4 * i + 1] = poiBoxes[4 * i + 3] = lons[n];
+		}
+		int[] poiOrder = sortSpatially(poiBoxes, poiNodes.length);
+		int[] orderedPois = new int[poiNodes.length];
+		int[] orderedPoiBoxes = new int[poiBoxes.length];
+		for (int i = 0; i < poiOrder.length; i++) {
+			orderedPois[i] = poiNodes[poiOrder[i]];
+			System.arraycopy(poiBoxes, 4 * poiOrder[i], orderedPoiBoxes,
+					4 * i, 4);
+		}
+
+		int[] stringStarts = new int[stringList.size() + 1];
+		ByteArrayOutputStream stringData = new ByteArrayOutputStream();
+		for (int i = 0; i < stringList.size(); i++) {
+			stringStarts[i] = stringData.size();
+			stringData.write(stringList.get(i).getBytes(StandardCharsets.UTF_8));
+		}
+		stringStarts[stringList.size()] = stringData.size();
+
+		BoundingBox bb = map.getBoundingBox();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+				FileChannel channel = raf.getChannel()) {
+			raf.setLength(0);
+			ByteBuffer header = ByteBuffer.allocate(CompactMap.HEADER_SIZE);
+			header.putInt(CompactMap.FILE_ID);
+			header.putInt(CompactMap.FILE_VERSION);
+			header.putFloat(bb != null ? bb.getLatMin() : 0f);
+			header.putFloat(bb != null ? bb.getLonMin() : 0f);
+			header.putFloat(bb != null ? bb.getLatMax() : 0f);
+			header.putFloat(bb != null ? bb.getLonMax() : 0f);
+			header.putInt(nodes.size());
+			header.putInt(ways.size());
+			header.putInt(poiNodes.length);
+			header.putInt(stringList.size());
+			long offset = CompactMap.HEADER_SIZE;
+			Object[] sections = new Object[CompactMap.Section.values().length];
+			sections[CompactMap.Section.NODE_IDS.ordinal()] = nodeIds;
+			sections[CompactMap.Section.NODE_LATS.ordinal()] = lats;
+			sections[CompactMap.Section.NODE_LONS.ordinal()] = lons;
+			sections[CompactMap.Section.NODE_NAMES.ordinal()] = nodeNames;
+			sections[CompactMap.Section.NODE_ATT_STARTS.ordinal()] = nodeAttStarts;
+			sections[CompactMap.Section.NODE_REF_STARTS.ordinal()] = nodeRefStarts;
+			sections[CompactMap.Section.NODE_REFS.ordinal()] = toArray(nodeRefs);
+			sections[CompactMap.Section.WAY_IDS.ordinal()] = wayIds;
+			sections[CompactMap.Section.WAY_NAMES.ordinal()] = wayNames;
+			sections[CompactMap.Section.WAY_ATT_STARTS.ordinal()] = wayAttStarts;
+			sections[CompactMap.Section.WAY_NODE_STARTS.ordinal()] = wayNodeStarts;
+			sections[CompactMap.Section.WAY_NODES.ordinal()] = toArray(wayNodes);
+			sections[CompactMap.Section.WAY_ORDER.ordinal()] = wayOrder;
+			sections[CompactMap.Section.WAY_BOXES.ordinal()] = orderedWayBoxes;
+			sections[CompactMap.Section.WAY_BLOCKS.ordinal()] = computeBlockBoxes(orderedWayBoxes);
+			sections[CompactMap.Section.POIS.ordinal()] = orderedPois;
+			sections[CompactMap.Section.POI_BOXES.ordinal()] = orderedPoiBoxes;
+			sections[CompactMap.Section.POI_BLOCKS.ordinal()] = computeBlockBoxes(orderedPoiBoxes);
+			sections[CompactMap.Section.ATTS.ordinal()] = Arrays.copyOf(atts, attCount);
+			sections[CompactMap.Section.STRING_STARTS.ordinal()] = stringStarts;
+			sections[CompactMap.Section.STRING_DATA.ordinal()] = stringData.toByteArray();
+			for (Object section : sections) {
+				long length = writeSection(channel, offset, section);
+				header.putLong(offset);
+				header.putLong(length);
+				offset += length;
+			}
+			header.flip();
+			channel.write(header, 0);
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private int getStringIndex(String s) {
+		if (s == null)
+			return -1;
+		Integer result = strings.get(s);
+		if (result == null) {
+			result = stringList.size();
+			strings.put(s, result);
+			stringList.add(s);
+		}
+		return result;
+	}
+
+	/** Appends key and value indices of the attributes, sorted by key. */
+	private int[] addAttributes(MapEntity entity, int[] atts, int count) {
+		EntityAttribute[] entityAtts = entity.getAttributes().clone();
+		Arrays.sort(entityAtts);
+		if (count + 2 * entityAtts.length > atts.length)
+			atts = Arrays.copyOf(atts, Math.max(2 * atts.length, count + 2
+					* entityAtts.length));
+		for (EntityAttribute att : entityAtts) {
+			atts[count++] = getStringIndex(att.getKey());
+			atts[count++] = getStringIndex(att.getValue());
+		}
+		return atts;
+	}
+
+	/** Returns the permutation which sorts the boxes in Hilbert order. */
+	private static int[] sortSpatially(int[] boxes, int count) {
+		long[] keys = new long[count];
+		for (int i = 0; i < count; i++) {
+			long lat = ((long) boxes[4 * i] + boxes[4 * i + 2]) / 2;
+			long lon = ((long) boxes[4 * i + 1] + boxes[4 * i + 3]) / 2;
+			int y = (int) ((lat + 900000000L) * 65535 / 1800000000L);
+			int x = (int) ((lon + 1800000000L) * 65535 / 3600000000L);
+			// unsigned curve position above the 31 bit item index, so that
+			// signed sorting follows the curve
+			keys[i] = ((long) PackedRTree.getHilbertIndex(x, y) & 0xFFFFFFFFL) << 31
+					| i;
+		}
+		Arrays.sort(keys);
+		int[] result = new int[count];
+		for (int i = 0; i < count; i++)
+			result[i] = (int) (keys[i] & Integer.MAX_VALUE);
+		return result;
+	}
+
+	private static int[] computeBlockBoxes(int[] boxes) {
+		int count = boxes.length / 4;
+		int blocks = (count + CompactMap.BLOCK_SIZE - 1) / CompactMap.BLOCK_SIZE;
+		int[] result = new int[4 * blocks];
+		for (int b = 0; b < blocks; b++) {
+			result[4 * b] = result[4 * b + 1] = Integer.MAX_VALUE;
+			result[4 * b + 2] = result[4 * b + 3] = Integer.MIN_VALUE;
+			int end = Math.min(count, (b + 1) * CompactMap.BLOCK_SIZE);
+			for (int i = b * CompactMap.BLOCK_SIZE; i < end; i++) {
+				result[4 * b] = Math.min(result[4 * b], boxes[4 * i]);
+				result[4 * b + 1] = Math.min(result[4 * b + 1], boxes[4 * i + 1]);
+				result[4 * b + 2] = Math.max(result[4 * b + 2], boxes[4 * i + 2]);
+				result[4 * b + 3] = Math.max(result[4 * b + 3], boxes[4 * i + 3]);
+			}
+		}
+		return result;
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] result = new int[list.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = list.get(i);
+		return result;
+	}
+
+	private static long writeSection(FileChannel channel, long offset,
+			Object section) throws IOException {
+		ByteBuffer buffer;
+		if (section instanceof long[]) {
+			long[] values = (long[]) section;
+			buffer = ByteBuffer.allocate(8 * values.length);
+			buffer.asLongBuffer().put(values);
+		} else if (section instanceof int[]) {
+			int[] values = (int[]) section;
+			buffer = ByteBuffer.allocate(4 * values.length);
+			buffer.asIntBuffer().put(values);
+		} else {
+			buffer = ByteBuffer.wrap((byte[]) section);
+		}
+		long length = buffer.remaining();
+		long pos = offset;
+		while (buffer.hasRemaining())
+			pos += channel.write(buffer, pos);
+		return length;
+	}
+}
@@ -0,0 +1,27 @@
+package aimax.osm.data.compact;
+
+import aimax.osm.data.entities.MapWay;
+import aimax.osm.data.entities.WayRef;
+
+/** Reference from a node of a {@link CompactMap} to a way it belongs to. */
+class CompactWayRef implements WayRef {
+	private final MapWay way;
+	private final short nodeIdx;
+
+	CompactWayRef(MapWay way, short nodeIdx) {
+		this.way = way;
+		this.nodeIdx = nodeIdx;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public MapWay getWay() {
+		return way;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public short getNodeIdx() {
+		return nodeIdx;
+	}
+}
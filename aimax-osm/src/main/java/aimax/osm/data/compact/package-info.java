@@ -0,0 +1,8 @@
+/**
+ * This package contains a read-only map implementation which keeps all map
+ * entities in columnar primitive arrays of a memory-mapped file (see
+ * {@link aimax.osm.data.compact.CompactMap}). Nodes and ways are created as
+ * lightweight views on demand, so that large maps can be opened quickly and
+ * with little heap.
+ */
+package aimax.osm.data.compact;
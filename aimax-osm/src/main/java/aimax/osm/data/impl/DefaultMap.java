@@ -1,10 +1,14 @@
 package aimax.osm.data.impl;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 
 import aimax.osm.data.BoundingBox;
@@ -24,6 +28,7 @@ import aimax.osm.data.entities.MapEntity;
 import aimax.osm.data.entities.MapNode;
 import aimax.osm.data.entities.MapWay;
 import aimax.osm.data.entities.Track;
+import aimax.osm.data.entities.WayRef;
 
 /**
  * Central container for OSM map data. It is responsible for storing loaded map
@@ -40,7 +45,15 @@ import aimax.osm.data.entities.Track;
  * </p>
  * 
  * <p>
- * The second is a kd-tree (see {@link aimax.osm.data.impl.KDTree}).
+ * The second is a spatial index of the classified entities (see
+ * {@link aimax.osm.data.impl.KDTree}), which is bulk-loaded after
+ * classification and skips entities invisible in the requested scale.
+ * </p>
+ * 
+ * <p>
+ * Additionally, packed R-trees (see {@link aimax.osm.data.impl.PackedRTree})
+ * index way nodes, points of interest and ways for nearest neighbor and
+ * bounding box queries, and a name index supports place name lookup.
  * </p>
  * 
  * <p>
@@ -72,6 +85,12 @@ public class DefaultMap implements OsmMap {
 
 	private EntityClassifier<EntityViewInfo> entityClassifier;
 	private KDTree entityTree;
+	/** Spatial index of all nodes after compilation. */
+	private PackedRTree<MapNode> nodeIndex;
+	private PackedRTree<MapNode> poiIndex;
+	private PackedRTree<MapWay> wayIndex;
+	/** Name index of the points of interest with attribute place. */
+	private NameIndex<MapNode> placeIndex;
 
 	private ArrayList<MapEventListener> listeners;
 
@@ -100,6 +119,10 @@ public class DefaultMap implements OsmMap {
 		markers.clear();
 		tracks.clear();
 		entityTree = null;
+		nodeIndex = null;
+		poiIndex = null;
+		wayIndex = null;
+		placeIndex = null;
 		boundingBox = null;
 		fireMapDataEvent(new MapEvent(this, MapEvent.Type.MAP_CLEARED));
 	}
@@ -185,7 +208,8 @@ public class DefaultMap implements OsmMap {
 	 */
 	@Override
 	public Collection<MapWay> getWays(BoundingBox bb) {
-		// not really efficient but OK for small maps...
+		if (wayIndex != null)
+			return wayIndex.query(bb, null);
 		List<MapWay> result = new ArrayList<>();
 		for (MapWay way : ways.values())
 			if (way.computeBoundingBox().intersectsWith(bb))
@@ -195,8 +219,9 @@ public class DefaultMap implements OsmMap {
 
 	/**
 	 * Separates way nodes from points of interests, cleans up useless garbage
-	 * and creates a kd-tree for the remaining entities. Always call this method
-	 * before using using the container for viewing.
+	 * and creates an entity index for the remaining entities as well as the
+	 * spatial and name indexes. Always call this method before using using
+	 * the container for viewing.
 	 */
 	public void compile() {
 		ArrayList<Long> toDelete = new ArrayList<>();
@@ -222,46 +247,154 @@ public class DefaultMap implements OsmMap {
 		else
 			boundingBox.intersectWith(bbAllNodes);
 		applyClassifierAndUpdateTree(bbAllNodes);
+		createIndexes();
 		fireMapDataEvent(new MapEvent(this, MapEvent.Type.MAP_NEW));
 	}
 
+	/** Creates the spatial and name indexes for nodes, ways, and POIs. */
+	protected void createIndexes() {
+		nodeIndex = PackedRTree.forNodes(nodes.values());
+		poiIndex = PackedRTree.forNodes(pois);
+		List<MapWay> wayList = new ArrayList<>(ways.values());
+		float[] latMin = new float[wayList.size()];
+		float[] lonMin = new float[wayList.size()];
+		float[] latMax = new float[wayList.size()];
+		float[] lonMax = new float[wayList.size()];
+		for (int i = 0; i < latMin.length; i++) {
+			BoundingBox bb = wayList.get(i).computeBoundingBox();
+			latMin[i] = bb.getLatMin();
+			lonMin[i] = bb.getLonMin();
+			latMax[i] = bb.getLatMax();
+			lonMax[i] = bb.getLonMax();
+		}
+		wayIndex = new PackedRTree<>(wayList, latMin, lonMin, latMax, lonMax);
+		List<MapNode> places = new ArrayList<>();
+		for (MapNode poi : pois)
+			if (poi.getAttributeValue("place") != null)
+				places.add(poi);
+		placeIndex = new NameIndex<>(places);
+	}
+
 	/**
 	 * Applies the current entity classifier to all currently maintained map
 	 * entities and creates a new entity tree with all relevant ways and points
 	 * of interest.
 	 */
 	protected void applyClassifierAndUpdateTree(BoundingBox bb) {
-		entityTree = new KDTree(bb, 8000, 60);
+		List<DefaultMapEntity> entities = new ArrayList<>(ways.size()
+				+ pois.size());
 		for (MapWay way : ways.values())
-			updateEntityViewInfo(way, true);
+			entities.add((DefaultMapEntity) way);
 		for (MapNode poi : pois)
-			updateEntityViewInfo(poi, true);
+			entities.add((DefaultMapEntity) poi);
+		// the classifier is only read, so entities can be classified in parallel
+		entities.parallelStream().forEach(this::updateEntityViewInfo);
+		List<DefaultMapEntity> visibleEntities = new ArrayList<>();
+		for (DefaultMapEntity entity : entities)
+			if (entity.getViewInfo() != null)
+				visibleEntities.add(entity);
+		entityTree = new KDTree(bb, visibleEntities);
 		for (MapNode marker : markers)
-			updateEntityViewInfo(marker, false);
+			updateEntityViewInfo(marker);
 		for (Track track : tracks)
-			updateEntityViewInfo(track, false);
+			updateEntityViewInfo(track);
 	}
 
 	/**
 	 * Updates the view information of a given entity by means of the current
-	 * entity classifier. If suitable viewing information was found and
-	 * <code>addToTree</code> is true, the entity is added to the entity tree.
+	 * entity classifier.
 	 */
-	private void updateEntityViewInfo(MapEntity entity, boolean addToTree) {
+	private void updateEntityViewInfo(MapEntity entity) {
 		EntityViewInfo info = null;
 		if (entityClassifier != null)
 			info = entityClassifier.classify(entity);
 		entity.setViewInfo(info);
-		if (addToTree && info != null)
-			entityTree.insertEntity((DefaultMapEntity) entity);
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * {@inheritDoc} Points of interest which are not part of a way are never
+	 * returned.
 	 */
 	@Override
 	public MapNode getNearestWayNode(Position pos, MapWayFilter filter) {
-		return pos.selectNearest(nodes.values(), filter);
+		List<MapNode> result = getNearestWayNodes(pos, 1, filter);
+		return result.isEmpty() ? null : result.get(0);
+	}
+
+	/**
+	 * Returns the k way nodes which are nearest to the position and part of a
+	 * way accepted by the filter, in ascending order of distance. Before the
+	 * map is compiled, all nodes are scanned, keeping only the k nearest in a
+	 * bounded heap.
+	 * 
+	 * @param filter
+	 *            possibly null
+	 */
+	public List<MapNode> getNearestWayNodes(Position pos, int k,
+			MapWayFilter filter) {
+		Predicate<MapNode> predicate = createWayNodePredicate(filter);
+		if (nodeIndex != null)
+			return nodeIndex.getNearest(pos.getLat(), pos.getLon(), k,
+					predicate);
+		List<MapNode> result = new ArrayList<>(Math.max(0, k));
+		if (k == 1) {
+			MapNode best = null;
+			double bestDist = Double.POSITIVE_INFINITY;
+			for (MapNode node : nodes.values()) {
+				if (node.hasPosition() && predicate.test(node)) {
+					double dist = pos.getDistKM(node);
+					if (dist < bestDist) {
+						best = node;
+						bestDist = dist;
+					}
+				}
+			}
+			if (best != null)
+				result.add(best);
+		} else if (k > 1) {
+			// max-heap of the k nearest nodes found so far
+			PriorityQueue<Map.Entry<MapNode, Double>> heap = new PriorityQueue<>(
+					k + 1, Map.Entry.<MapNode, Double> comparingByValue()
+							.reversed());
+			for (MapNode node : nodes.values()) {
+				if (node.hasPosition() && predicate.test(node)) {
+					double dist = pos.getDistKM(node);
+					if (heap.size() < k || dist < heap.peek().getValue()) {
+						heap.add(new AbstractMap.SimpleEntry<>(node, dist));
+						if (heap.size() > k)
+							heap.poll();
+					}
+				}
+			}
+			List<Map.Entry<MapNode, Double>> entries = new ArrayList<>(heap);
+			entries.sort(Map.Entry.comparingByValue());
+			for (Map.Entry<MapNode, Double> entry : entries)
+				result.add(entry.getKey());
+		}
+		return result;
+	}
+
+	/** Returns the k points of interest nearest to the position. */
+	public List<MapNode> getNearestPois(Position pos, int k) {
+		if (poiIndex == null)
+			return Collections.emptyList();
+		return poiIndex.getNearest(pos.getLat(), pos.getLon(), k, null);
+	}
+
+	/**
+	 * Accepts nodes which are part of a way accepted by the filter, or of any
+	 * way if the filter is null.
+	 */
+	private static Predicate<MapNode> createWayNodePredicate(
+			MapWayFilter filter) {
+		if (filter == null)
+			return node -> !node.getWayRefs().isEmpty();
+		return node -> {
+			for (WayRef ref : node.getWayRefs())
+				if (filter.isAccepted(ref.getWay()))
+					return true;
+			return false;
+		};
 	}
 
 	/** Reduces the level of detail by selecting some of the given nodes. */
@@ -304,7 +437,8 @@ public class DefaultMap implements OsmMap {
 	/** {@inheritDoc} */
 	@Override
 	public List<MapNode> getPois(BoundingBox bb) {
-		// not really efficient but ok for small maps...
+		if (poiIndex != null)
+			return poiIndex.query(bb, null);
 		List<MapNode> result = new ArrayList<>();
 		for (MapNode poi : pois)
 			if (bb.isInside(poi.getLat(), poi.getLon()))
@@ -315,6 +449,8 @@ public class DefaultMap implements OsmMap {
 	/** {@inheritDoc} */
 	@Override
 	public List<MapNode> getPlaces(String name) {
+		if (placeIndex != null)
+			return placeIndex.getByPrefix(name);
 		String pattern = name.toLowerCase();
 		List<MapNode> results = new ArrayList<>();
 		for (MapNode node : pois) {
@@ -362,7 +498,7 @@ public class DefaultMap implements OsmMap {
 		atts.add(new EntityAttribute("marker", "yes"));
 		node.setAttributes(atts);
 		node.setPosition(lat, lon);
-		updateEntityViewInfo(node, false);
+		updateEntityViewInfo(node);
 		markers.add(node);
 		fireMapDataEvent(new MapEvent(this, MapEvent.Type.MARKER_ADDED, node
 				.getId()));
@@ -398,7 +534,7 @@ public class DefaultMap implements OsmMap {
 	public void createTrack(String trackName, List<Position> positions) {
 		clearTrack(trackName);
 		Track track = new DefaultTrack(nextTrackId++, trackName, trackName);
-		updateEntityViewInfo(track, false);
+		updateEntityViewInfo(track);
 		tracks.add(track);
 		for (Position pos : positions)
 			track.addNode(pos);
@@ -412,7 +548,7 @@ public class DefaultMap implements OsmMap {
 		Track track = getTrack(trackName);
 		if (track == null) {
 			track = new DefaultTrack(nextTrackId++, trackName, trackName);
-			updateEntityViewInfo(track, false);
+			updateEntityViewInfo(track);
 			tracks.add(track);
 		}
 		track.addNode(pos);
@@ -470,7 +606,19 @@ public class DefaultMap implements OsmMap {
 			entityTree.visitEntities(visitor, vbox, scale);
 	}
 
-	/** Returns a kd-tree with all entities. */
+	/** {@inheritDoc} */
+	@Override
+	public List<List<MapEntity>> getVisibleEntities(List<BoundingBox> vboxes,
+			float scale) {
+		if (entityTree != null)
+			return entityTree.getVisibleEntities(vboxes, scale);
+		List<List<MapEntity>> result = new ArrayList<>();
+		for (int i = 0; i < vboxes.size(); i++)
+			result.add(new ArrayList<>());
+		return result;
+	}
+
+	/** Returns the spatial index of all visible entities. */
 	public KDTree getEntityTree() {
 		return entityTree;
 	}
@@ -5,246 +5,151 @@ import aimax.osm.data.EntityVisitor;
 import aimax.osm.data.entities.MapEntity;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.IntStream;
 
 
 /**
- * Implementation of a kd-tree (node) for map entities. Entities are
- * divided by their two-dimensional geographical coordinates and within each
- * kd-tree node ordered by ascending minimal visible scale. Note, that
- * inner nodes can contain entities, e.g. ways, whose nodes do
- * not completely fit into the bounding box of one of the child nodes.
+ * Spatial index for the map entities shown in the viewer. It used to be a
+ * kd-tree with entities inserted one at a time. Now the entities are
+ * bulk-loaded into a packed R-tree (see {@link PackedRTree}), which stores
+ * the entity boxes and minimal visible scales in primitive arrays and skips
+ * subtrees invisible in the requested scale. The former interface is kept:
+ * entities added by {@link #insertEntity(DefaultMapEntity)} are collected,
+ * and the R-tree is rebuilt on the next query.
  * @author Ruediger Lunde
  */
 public class KDTree {
 	private BoundingBox bb;
-	private KDTree[] children; // null or array of length 2
-	private int depth;
-	private int maxEntities;
-	private int maxDepth;
-	private ArrayList<DefaultMapEntity> entities;
-	private boolean splitAtLat;
-	private float splitValue;
-	private boolean isSorted;
-	
+	private List<DefaultMapEntity> entities;
+	/** R-tree for the entities, null if it has to be rebuilt. */
+	private PackedRTree<DefaultMapEntity> index;
+
 	/**
-	 * Constructs the root of the tree.
+	 * Constructs an empty tree.
 	 * @param bb The bounding box. Only entities within the box can be added.
-	 * @param maxEntities Defines, when a leaf node should be split.
-	 * @param maxDepth Limits the depth of the tree.
+	 * @param maxEntities Not used any more, the R-tree has fixed node size.
+	 * @param maxDepth Not used any more.
 	 */
 	public KDTree(BoundingBox bb, int maxEntities, int maxDepth) {
 		this.bb = bb;
-		depth = 0;
-		this.maxEntities = maxEntities;
-		this.maxDepth = maxDepth;
 		entities = new ArrayList<>();
 	}
-	
-	/** Constructor for inner and leaf nodes. */
-	private KDTree(BoundingBox bb, int maxEntities, int maxDepth, int depth) {
-		this(bb, maxEntities, maxDepth);
-		this.depth = depth;
+
+	/**
+	 * Constructs a tree for the given entities, which must provide view
+	 * information. Entity boxes are computed in parallel.
+	 * @param bb The bounding box. Only entities within the box can be added.
+	 */
+	public KDTree(BoundingBox bb, Collection<? extends DefaultMapEntity> entities) {
+		this.bb = bb;
+		this.entities = new ArrayList<>(entities);
+		index = createIndex(this.entities);
 	}
-	
+
 	public BoundingBox getBoundingBox() {
 		return bb;
 	}
-	
+
 	/** Returns the depth of the tree (longest path length from root to leaf). */
 	public int depth() {
-		return children == null ? 1 : 1+Math.max(children[0].depth(), children[1].depth());
+		return getIndex().getLevelCount();
 	}
-	
+
 	/** Must be called after classification of entities has been changed. */
-	public void setUnsorted() {
-		isSorted = false;
-		if (children != null) {
-			children[0].setUnsorted();
-			children[1].setUnsorted();
-		}
+	public synchronized void setUnsorted() {
+		index = null;
 	}
-	
+
 	/**
-	 * Adds an entity at the right position in the tree and extends
-	 * the tree if necessary. It is assumed that the entity contains
+	 * Adds an entity to the tree. It is assumed that the entity contains
 	 * view information.
 	 */
-	public void insertEntity(DefaultMapEntity entity) {
-		if (children == null) {
-			entities.add(entity);
-			isSorted = false;
-			if (entities.size() > maxEntities && depth < maxDepth) {
-				computeSplitValues();
-				BoundingBox c1bb;
-				BoundingBox c2bb;
-				if (splitAtLat) {
-					c1bb = new BoundingBox
-					(bb.getLatMin(), bb.getLonMin(), splitValue, bb.getLonMax());
-					c2bb = new BoundingBox
-					(splitValue, bb.getLonMin(), bb.getLatMax(), bb.getLonMax());
-				} else {
-					c1bb = new BoundingBox
-					(bb.getLatMin(), bb.getLonMin(), bb.getLatMax(), splitValue);
-					c2bb = new BoundingBox
-					(bb.getLatMin(), splitValue, bb.getLatMax(), bb.getLonMax());
-				}
-				children = new KDTree[2];
-				children[0] = new KDTree(c1bb, maxEntities, maxDepth, depth+1);
-				children[1] = new KDTree(c2bb, maxEntities, maxDepth, depth+1);
-				List<DefaultMapEntity> tmp = entities;
-				entities = new ArrayList<>();
-				for (DefaultMapEntity ne : tmp)
-					insertEntity(ne);
-			}
-		} else {
-			int cr = (splitAtLat
-					? entity.compareLatitude(splitValue)
-					: entity.compareLongitude(splitValue));
-			if (cr < 0)
-				children[0].insertEntity(entity);
-			else if (cr > 0)
-				children[1].insertEntity(entity);
-			else {
-				entities.add(entity);
-				isSorted = false;
-			}
-		}
+	public synchronized void insertEntity(DefaultMapEntity entity) {
+		entities.add(entity);
+		index = null;
 	}
-	
+
 	/**
-	 * Splits the bounding box, so that the new boxes have equal size
-	 * and look square-like as much as possible.
+	 * Returns the edges (lat1, lon1, lat2, lon2) of the boxes of the upper
+	 * tree nodes, for debugging.
 	 */
-	private void computeSplitValues() {
-		float latMid = (bb.getLatMin()+bb.getLatMax()) / 2f;
-		double width = (bb.getLonMax()-bb.getLonMin()) * Math.cos(latMid * Math.PI / 180.0);
-		double height = bb.getLatMax()-bb.getLatMin();
-		if (height > width) {
-			splitAtLat = true;
-			splitValue = latMid;
-		} else {
-			splitAtLat = false;
-			splitValue = (bb.getLonMin()+bb.getLonMax()) / 2;
-		}
-	}
-	
-	/** Returns for each split bar the end points (lat1, lon1, lat2, lon2). */
 	public List<double[]> getSplitCoords() {
-		List<double[]> result;
-		double[] coords;
-		if (splitAtLat) {
-			double lonDiff = (bb.getLonMax()-bb.getLonMin()) / 20;
-			coords = new double[] {
-				splitValue, bb.getLonMin()+lonDiff,
-				splitValue, bb.getLonMax()-lonDiff };
-		} else {
-			double latDiff = (bb.getLatMax()-bb.getLatMin()) / 20;
-			coords = new double[] {
-					bb.getLatMin()+latDiff, splitValue, 
-					bb.getLatMax()-latDiff, splitValue };
+		PackedRTree<DefaultMapEntity> idx = getIndex();
+		List<double[]> result = new ArrayList<>();
+		int level = Math.max(0, idx.getLevelCount() - 3);
+		for (BoundingBox box : idx.getNodeBoxes(level)) {
+			result.add(new double[] { box.getLatMin(), box.getLonMin(),
+					box.getLatMin(), box.getLonMax() });
+			result.add(new double[] { box.getLatMax(), box.getLonMin(),
+					box.getLatMax(), box.getLonMax() });
+			result.add(new double[] { box.getLatMin(), box.getLonMin(),
+					box.getLatMax(), box.getLonMin() });
+			result.add(new double[] { box.getLatMin(), box.getLonMax(),
+					box.getLatMax(), box.getLonMax() });
 		}
-		if (children == null) {
-			result = new ArrayList<>();
-		} else {
-			result = children[0].getSplitCoords();
-			result.addAll(children[1].getSplitCoords());
-		}
-		result.add(coords);
 		return result;
 	}
-	
+
 	/**
-	 * Enables to iterate across all contained entities within a given region
-	 * in an intelligent manner. Only tree nodes, which have a chance to
-	 * meet the location requirement are visited.
+	 * Visits all entities within a given region which are visible in the
+	 * given scale. Only tree nodes which have a chance to meet the location
+	 * and scale requirements are visited.
 	 */
 	public void visitEntities(EntityVisitor visitor, BoundingBox vbox, float scale) {
-		if (!entities.isEmpty()) {
-			if (!isSorted) {
-				entities.sort(new EntityComparator());
-				isSorted = true;
-			}
-			VisibilityTest vtest = new VisibilityTest(bb, vbox);
-			for (DefaultMapEntity entity : entities) {
-				if (entity.getViewInfo().getMinVisibleScale() > scale)
-					break;
-				if (vtest.isVisible(entity))
-					entity.accept(visitor);
-			}
-		}
-		if (children != null) {
-			float vMin = (splitAtLat ? vbox.getLatMin() : vbox.getLonMin());
-			float vMax = (splitAtLat ? vbox.getLatMax() : vbox.getLonMax());
-			if (vMin <= splitValue)
-				children[0].visitEntities(visitor, vbox, scale);
-			if (vMax >= splitValue)
-				children[1].visitEntities(visitor, vbox, scale);
-		}
+		for (DefaultMapEntity entity : getIndex().query(vbox, scale, null))
+			entity.accept(visitor);
 	}
 
-	
-	/////////////////////////////////////////////////////////////////
-	// some inner classes
-	
 	/**
-	 * Compares entities with respect to their minimal visible scale.
-	 * Entities which are already visible in small scales are preferred.
+	 * Returns for each of the given regions the entities within the region
+	 * which are visible in the given scale. All regions are handled in one
+	 * traversal of the tree.
 	 */
-	private static class EntityComparator implements Comparator<MapEntity> {
-		@Override
-		public int compare(MapEntity e1, MapEntity e2) {
-			float vs1 = e1.getViewInfo().getMinVisibleScale();
-			float vs2 = e2.getViewInfo().getMinVisibleScale();
-			return Float.compare(vs1, vs2);
-		}
+	public List<List<MapEntity>> getVisibleEntities(List<BoundingBox> vboxes,
+			float scale) {
+		List<List<MapEntity>> result = new ArrayList<>(vboxes.size());
+		for (List<DefaultMapEntity> entities : getIndex().query(vboxes, scale))
+			result.add(Collections.unmodifiableList(entities));
+		return result;
 	}
-	
+
 	/**
-	 * If a kd-tree node's bounding box is not completely visible,
-	 * this class helps to check which entities are visible and which not.
-	 * @author Ruediger Lunde
-	 *
-	 */ 
-	private static class VisibilityTest {
-		private boolean isTrue = true;
-		private float testLatMin = Float.NaN;
-		private float testLonMin = Float.NaN;
-		private float testLatMax = Float.NaN;
-		private float testLonMax = Float.NaN;
-		
-		VisibilityTest(BoundingBox treeBox, BoundingBox visibleBox) {
-			if (treeBox.getLatMin() < visibleBox.getLatMin()) {
-				testLatMin = visibleBox.getLatMin();
-				isTrue = false;
-			}
-			if (treeBox.getLonMin() < visibleBox.getLonMin()) {
-				testLonMin = visibleBox.getLonMin();
-				isTrue = false;
-			}
-			if (treeBox.getLatMax() > visibleBox.getLatMax()) {
-				testLatMax = visibleBox.getLatMax();
-				isTrue = false;
-			}
-			if (treeBox.getLonMax() > visibleBox.getLonMax()) {
-				testLonMax = visibleBox.getLonMax();
-				isTrue = false;
+	 * Returns the R-tree and rebuilds it if necessary. Synchronized because
+	 * entities may be visited by several rendering threads.
+	 */
+	private synchronized PackedRTree<DefaultMapEntity> getIndex() {
+		if (index == null)
+			index = createIndex(entities);
+		return index;
+	}
+
+	private static PackedRTree<DefaultMapEntity> createIndex(
+			List<DefaultMapEntity> entities) {
+		int n = entities.size();
+		float[] latMin = new float[n];
+		float[] lonMin = new float[n];
+		float[] latMax = new float[n];
+		float[] lonMax = new float[n];
+		float[] scales = new float[n];
+		IntStream.range(0, n).parallel().forEach(i -> {
+			DefaultMapEntity entity = entities.get(i);
+			if (entity instanceof DefaultMapNode) {
+				DefaultMapNode node = (DefaultMapNode) entity;
+				latMin[i] = latMax[i] = node.getLat();
+				lonMin[i] = lonMax[i] = node.getLon();
+			} else {
+				BoundingBox box = ((DefaultMapWay) entity).computeBoundingBox();
+				latMin[i] = box.getLatMin();
+				lonMin[i] = box.getLonMin();
+				latMax[i] = box.getLatMax();
+				lonMax[i] = box.getLonMax();
 			}
-		}
-		
-		boolean isVisible(DefaultMapEntity entity) {
-			if (isTrue)
-				return true;
-			if (!Float.isNaN(testLatMin) && entity.compareLatitude(testLatMin) < 0)
-				return false; // entity below visible area
-			if (!Float.isNaN(testLonMin) && entity.compareLongitude(testLonMin) < 0)
-				return false; // entity to the left of visible area
-			if (!Float.isNaN(testLatMax) && entity.compareLatitude(testLatMax) > 0)
-				return false; // entity above visible area
-			if (!Float.isNaN(testLonMax) && entity.compareLongitude(testLonMax) > 0)
-				return false; // entity to the right of visible area
-			return true;
-		}
+			scales[i] = entity.getViewInfo().getMinVisibleScale();
+		});
+		return new PackedRTree<>(entities, latMin, lonMin, latMax, lonMax,
+				scales);
 	}
 }
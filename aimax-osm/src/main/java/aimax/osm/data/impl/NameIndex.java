@@ -0,0 +1,65 @@
+package aimax.osm.data.impl;
+
+import aimax.osm.data.entities.MapEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Index of map entities by name. Names are converted to lower case and sorted,
+ * so that all entities whose names start with a given prefix are found by
+ * binary search in logarithmic time.
+ *
+ * @param <T>
+ *            Type of the entities.
+ */
+public class NameIndex<T extends MapEntity> {
+	private final String[] names;
+	private final List<T> entities;
+
+	/** Creates an index for all entities which have a name. */
+	public NameIndex(Collection<T> entities) {
+		List<T> named = new ArrayList<>();
+		for (T entity : entities)
+			if (entity.getName() != null)
+				named.add(entity);
+		String[] keys = new String[named.size()];
+		Integer[] order = new Integer[named.size()];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = named.get(i).getName().toLowerCase();
+			order[i] = i;
+		}
+		Arrays.sort(order, (i, j) -> keys[i].compareTo(keys[j]));
+		names = new String[keys.length];
+		this.entities = new ArrayList<>(keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			names[i] = keys[order[i]];
+			this.entities.add(named.get(order[i]));
+		}
+	}
+
+	/** Returns the number of indexed entities. */
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * Returns all entities whose names start with the prefix, ignoring case,
+	 * in alphabetical order.
+	 */
+	public List<T> getByPrefix(String prefix) {
+		String pattern = prefix.toLowerCase();
+		int pos = Arrays.binarySearch(names, pattern);
+		if (pos < 0)
+			pos = -pos - 1;
+		else
+			while (pos > 0 && names[pos - 1].equals(pattern))
+				pos--;
+		List<T> result = new ArrayList<>();
+		for (int i = pos; i < names.length && names[i].startsWith(pattern); i++)
+			result.add(entities.get(i));
+		return result;
+	}
+}
@@ -0,0 +1,580 @@
+package aimax.osm.data.impl;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.MapNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Static R-tree for items with bounding boxes, bulk-loaded in Hilbert order.
+ * The item boxes are sorted by the Hilbert curve index of their centers and
+ * packed into full leaves, and the upper levels are packed in the same way
+ * (Kamel and Faloutsos 1993). All boxes are stored in primitive arrays, level
+ * by level, and children are found by index arithmetic. The tree supports
+ * bounding box queries and k-nearest-neighbor queries (best-first search by
+ * the distance to the boxes), both with filter predicates.
+ *
+ * <p>
+ * Optionally, each item has a minimal scale, and each tree node stores the
+ * minimum of its children, so that box queries for a given scale skip
+ * subtrees whose items are all invisible. Several boxes can be queried in
+ * one traversal. Construction is done in parallel.
+ * </p>
+ *
+ * @param <T>
+ *            Type of the items.
+ */
+public class PackedRTree<T> {
+	/** Number of children of inner nodes and items of leaves. */
+	public static final int NODE_SIZE = 16;
+	private static final int HILBERT_ORDER = 16;
+
+	private final List<T> items;
+	// item boxes in Hilbert order
+	private final float[] itemLatMin;
+	private final float[] itemLonMin;
+	private final float[] itemLatMax;
+	private final float[] itemLonMax;
+	/** Minimal scales of the items or null. */
+	private final float[] itemScale;
+	// tree node boxes, leaves first, root last
+	private final float[] latMin;
+	private final float[] lonMin;
+	private final float[] latMax;
+	private final float[] lonMax;
+	/** Minimal scales of the tree nodes or null. */
+	private final float[] scale;
+	/** Index of the first tree node of each level, plus the total count. */
+	private final int[] levelStarts;
+
+	/**
+	 * Creates a tree for map nodes.
+	 */
+	public static <N extends MapNode> PackedRTree<N> forNodes(
+			Collection<N> nodes) {
+		List<N> items = new ArrayList<>(nodes);
+		float[] lats = new float[items.size()];
+		float[] lons = new float[items.size()];
+		for (int i = 0; i < lats.length; i++) {
+			lats[i] = items.get(i).getLat();
+			lons[i] = items.get(i).getLon();
+		}
+		return new PackedRTree<>(items, lats, lons, lats, lons);
+	}
+
+	/**
+	 * Creates a tree for items with the specified bounding boxes. The arrays
+	 * are not modified.
+	 */
+	public PackedRTree(List<T> items, float[] latMin, float[] lonMin,
+			float[] latMax, float[] lonMax) {
+		this(items, latMin, lonMin, latMax, lonMax, null);
+	}
+
+	/**
+	 * Creates a tree for items with the specified bounding boxes and minimal
+	 * scales. The arrays are not modified.
+	 *
+	 * @param minScales
+	 *            possibly null
+	 */
+	@SuppressWarnings("unchecked")
+	public PackedRTree(List<T> items, float[] latMin, float[] lonMin,
+			float[] latMax, float[] lonMax, float[] minScales) {
+		int n = items.size();
+		int[] order = computeHilbertOrder(latMin, lonMin, latMax, lonMax, n);
+		Object[] sorted = new Object[n];
+		itemLatMin = new float[n];
+		itemLonMin = new float[n];
+		itemLatMax = new float[n];
+		itemLonMax = new float[n];
+		itemScale = minScales != null ? new float[n] : null;
+		IntStream.range(0, n).parallel().forEach(i -> {
+			int j = order[i];
+			sorted[i] = items.get(j);
+			itemLatMin[i] = latMin[j];
+			itemLonMin[i] = lonMin[j];
+			itemLatMax[i] = latMax[j];
+			itemLonMax[i] = lonMax[j];
+			if (itemScale != null)
+				itemScale[i] = minScales[j];
+		});
+		this.items = (List<T>) Arrays.asList(sorted);
+
+		List<Integer> starts = new ArrayList<>();
+		int nodeCount = 0;
+		int levelSize = n;
+		do {
+			starts.add(nodeCount);
+			levelSize = (levelSize + NODE_SIZE - 1) / NODE_SIZE;
+			nodeCount += levelSize;
+		} while (levelSize > 1);
+		starts.add(nodeCount);
+		levelStarts = new int[starts.size()];
+		for (int i = 0; i < levelStarts.length; i++)
+			levelStarts[i] = starts.get(i);
+		this.latMin = new float[nodeCount];
+		this.lonMin = new float[nodeCount];
+		this.latMax = new float[nodeCount];
+		this.lonMax = new float[nodeCount];
+		scale = minScales != null ? new float[nodeCount] : null;
+		for (int level = 0; level < levelStarts.length - 1; level++) {
+			int l = level;
+			IntStream.range(levelStarts[level], levelStarts[level + 1])
+					.parallel().forEach(node -> computeNodeBox(l, node));
+		}
+	}
+
+	/** Returns the number of items. */
+	public int size() {
+		return items.size();
+	}
+
+	/** Returns all items in Hilbert order. */
+	public List<T> getItems() {
+		return Collections.unmodifiableList(items);
+	}
+
+	/** Returns the number of tree levels, including leaves and root. */
+	public int getLevelCount() {
+		return levelStarts.length - 1;
+	}
+
+	/**
+	 * Returns the boxes of the tree nodes of a level. Level 0 contains the
+	 * leaves.
+	 */
+	public List<BoundingBox> getNodeBoxes(int level) {
+		List<BoundingBox> result = new ArrayList<>();
+		if (items.isEmpty())
+			return result;
+		for (int node = levelStarts[level]; node < levelStarts[level + 1]; node++)
+			result.add(new BoundingBox(latMin[node], lonMin[node],
+					latMax[node], lonMax[node]));
+		return result;
+	}
+
+	/**
+	 * Returns all items whose boxes intersect with the specified box and
+	 * which are accepted by the filter.
+	 *
+	 * @param filter
+	 *            possibly null
+	 */
+	public List<T> query(BoundingBox bb, Predicate<? super T> filter) {
+		return query(bb, Float.POSITIVE_INFINITY, filter);
+	}
+
+	/**
+	 * Returns in Hilbert order all items whose boxes intersect with the
+	 * specified box, whose minimal scales are not greater than the specified
+	 * scale, and which are accepted by the filter.
+	 *
+	 * @param filter
+	 *            possibly null
+	 */
+	public List<T> query(BoundingBox bb, float scale,
+			Predicate<? super T> filter) {
+		List<T> result = new ArrayList<>();
+		if (items.isEmpty())
+			return result;
+		int[] stack = new int[NODE_SIZE * levelStarts.length];
+		int[] levels = new int[stack.length];
+		int size = 0;
+		stack[size] = levelStarts[levelStarts.length - 2];
+		levels[size++] = levelStarts.length - 2;
+		while (size > 0) {
+			int node = stack[--size];
+			int level = levels[size];
+			if (!intersects(bb, latMin[node], lonMin[node], latMax[node],
+					lonMax[node]) || this.scale != null
+					&& this.scale[node] > scale)
+				continue;
+			int begin = getChildBegin(level, node);
+			int end = getChildEnd(level, node);
+			if (level == 0) {
+				for (int c = begin; c < end; c++)
+					if (intersects(bb, itemLatMin[c], itemLonMin[c],
+							itemLatMax[c], itemLonMax[c])
+							&& (itemScale == null || itemScale[c] <= scale)
+							&& (filter == null || filter.test(items.get(c))))
+						result.add(items.get(c));
+			} else {
+				for (int c = end - 1; c >= begin; c--) {
+					stack[size] = c;
+					levels[size++] = level - 1;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Queries several boxes in one traversal of the tree. The result contains
+	 * for each box the items which would be returned by
+	 * <code>query(box, scale, null)</code>. Tree nodes are tested against the
+	 * boxes in batches of 64, and subtrees are skipped as soon as none of the
+	 * boxes of the batch intersects with them.
+	 */
+	public List<List<T>> query(List<BoundingBox> boxes, float scale) {
+		List<List<T>> result = new ArrayList<>(boxes.size());
+		for (int i = 0; i < boxes.size(); i++)
+			result.add(new ArrayList<>());
+		if (items.isEmpty())
+			return result;
+		for (int first = 0; first < boxes.size(); first += Long.SIZE)
+			queryBatch(boxes.subList(first,
+					Math.min(boxes.size(), first + Long.SIZE)), scale,
+					result.subList(first, result.size()));
+		return result;
+	}
+
+	/**
+	 * Returns the item which is nearest to the position and accepted by the
+	 * filter, or null if no such item exists.
+	 *
+	 * @param filter
+	 *            possibly null
+	 */
+	public T getNearest(float lat, float lon, Predicate<? super T> filter) {
+		List<T> result = getNearest(lat, lon, 1, filter);
+		return result.isEmpty() ? null : result.get(0);
+	}
+
+	/**
+	 * Returns the k items which are nearest to the position and accepted by
+	 * the filter, in ascending order of distance. The distance of an item is
+	 * the distance to the nearest point of its box.
+	 *
+	 * @param filter
+	 *            possibly null
+	 */
+	public List<T> getNearest(float lat, float lon, int k,
+			Predicate<? super T> filter) {
+		List<T> result = new ArrayList<>(k);
+		if (items.isEmpty() || k <= 0)
+			return result;
+		// entries are tree nodes (index) or items (~index)
+		MinHeap heap = new MinHeap();
+		int root = levelStarts[levelStarts.length - 2];
+		heap.add(getLowerBound(lat, lon, root), root);
+		while (!heap.isEmpty() && result.size() < k) {
+			int entry = heap.pollRef();
+			if (entry < 0) {
+				result.add(items.get(~entry));
+				continue;
+			}
+			int level = getLevel(entry);
+			int end = getChildEnd(level, entry);
+			for (int c = getChildBegin(level, entry); c < end; c++) {
+				if (level > 0)
+					heap.add(getLowerBound(lat, lon, c), c);
+				else if (filter == null || filter.test(items.get(c)))
+					heap.add(getDistance(lat, lon, itemLatMin[c],
+							itemLonMin[c], itemLatMax[c], itemLonMax[c]), ~c);
+			}
+		}
+		return result;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/** Computes box and minimal scale of a tree node from its children. */
+	private void computeNodeBox(int level, int node) {
+		float bLatMin = Float.POSITIVE_INFINITY;
+		float bLonMin = Float.POSITIVE_INFINITY;
+		float bLatMax = Float.NEGATIVE_INFINITY;
+		float bLonMax = Float.NEGATIVE_INFINITY;
+		float bScale = Float.POSITIVE_INFINITY;
+		int end = getChildEnd(level, node);
+		for (int c = getChildBegin(level, node); c < end; c++) {
+			if (level == 0) {
+				bLatMin = Math.min(bLatMin, itemLatMin[c]);
+				bLonMin = Math.min(bLonMin, itemLonMin[c]);
+				bLatMax = Math.max(bLatMax, itemLatMax[c]);
+				bLonMax = Math.max(bLonMax, itemLonMax[c]);
+				if (scale != null)
+					bScale = Math.min(bScale, itemScale[c]);
+			} else {
+				bLatMin = Math.min(bLatMin, latMin[c]);
+				bLonMin = Math.min(bLonMin, lonMin[c]);
+				bLatMax = Math.max(bLatMax, latMax[c]);
+				bLonMax = Math.max(bLonMax, lonMax[c]);
+				if (scale != null)
+					bScale = Math.min(bScale, scale[c]);
+			}
+		}
+		latMin[node] = bLatMin;
+		lonMin[node] = bLonMin;
+		latMax[node] = bLatMax;
+		lonMax[node] = bLonMax;
+		if (scale != null)
+			scale[node] = bScale;
+	}
+
+	/**
+	 * Queries at most 64 boxes. Each stack entry holds a bit mask of the boxes
+	 * which intersect with the tree node.
+	 */
+	private void queryBatch(List<BoundingBox> boxes, float scale,
+			List<List<T>> result) {
+		int count = boxes.size();
+		float[] bLatMin = new float[count];
+		float[] bLonMin = new float[count];
+		float[] bLatMax = new float[count];
+		float[] bLonMax = new float[count];
+		for (int i = 0; i < count; i++) {
+			BoundingBox bb = boxes.get(i);
+			bLatMin[i] = bb.getLatMin();
+			bLonMin[i] = bb.getLonMin();
+			bLatMax[i] = bb.getLatMax();
+			bLonMax[i] = bb.getLonMax();
+		}
+		int[] stack = new int[NODE_SIZE * levelStarts.length];
+		int[] levels = new int[stack.length];
+		long[] masks = new long[stack.length];
+		int size = 0;
+		int root = levelStarts[levelStarts.length - 2];
+		long rootMask = count == Long.SIZE ? -1L : (1L << count) - 1;
+		rootMask = getIntersectionMask(rootMask, bLatMin, bLonMin, bLatMax,
+				bLonMax, latMin[root], lonMin[root], latMax[root], lonMax[root]);
+		if (rootMask == 0 || this.scale != null && this.scale[root] > scale)
+			return;
+		stack[size] = root;
+		levels[size] = levelStarts.length - 2;
+		masks[size++] = rootMask;
+		while (size > 0) {
+			int node = stack[--size];
+			int level = levels[size];
+			long mask = masks[size];
+			int begin = getChildBegin(level, node);
+			int end = getChildEnd(level, node);
+			if (level == 0) {
+				for (int c = begin; c < end; c++) {
+					if (itemScale != null && itemScale[c] > scale)
+						continue;
+					long m = getIntersectionMask(mask, bLatMin, bLonMin,
+							bLatMax, bLonMax, itemLatMin[c], itemLonMin[c],
+							itemLatMax[c], itemLonMax[c]);
+					for (; m != 0; m &= m - 1)
+						result.get(Long.numberOfTrailingZeros(m)).add(
+								items.get(c));
+				}
+			} else {
+				for (int c = end - 1; c >= begin; c--) {
+					if (this.scale != null && this.scale[c] > scale)
+						continue;
+					long m = getIntersectionMask(mask, bLatMin, bLonMin,
+							bLatMax, bLonMax, latMin[c], lonMin[c], latMax[c],
+							lonMax[c]);
+					if (m != 0) {
+						stack[size] = c;
+						levels[size] = level - 1;
+						masks[size++] = m;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the subset of the boxes in the mask which intersect with the
+	 * specified box.
+	 */
+	private static long getIntersectionMask(long mask, float[] bLatMin,
+			float[] bLonMin, float[] bLatMax, float[] bLonMax, float latMin,
+			float lonMin, float latMax, float lonMax) {
+		long result = mask;
+		for (long m = mask; m != 0; m &= m - 1) {
+			int i = Long.numberOfTrailingZeros(m);
+			if (latMin > bLatMax[i] || latMax < bLatMin[i]
+					|| lonMin > bLonMax[i] || lonMax < bLonMin[i])
+				result &= ~(1L << i);
+		}
+		return result;
+	}
+
+	private int getLevel(int node) {
+		int level = 0;
+		while (node >= levelStarts[level + 1])
+			level++;
+		return level;
+	}
+
+	/** Returns the first child, which is an item at level 0. */
+	private int getChildBegin(int level, int node) {
+		int first = (node - levelStarts[level]) * NODE_SIZE;
+		return level == 0 ? first : levelStarts[level - 1] + first;
+	}
+
+	private int getChildEnd(int level, int node) {
+		int end = (node - levelStarts[level] + 1) * NODE_SIZE;
+		if (level == 0)
+			return Math.min(end, items.size());
+		return Math.min(levelStarts[level - 1] + end, levelStarts[level]);
+	}
+
+	/**
+	 * Returns a lower bound for the distances of the items below a tree node.
+	 * On the sphere, the point of the box nearest to the position can differ
+	 * slightly from the clamped position, hence the safety margin.
+	 */
+	private float getLowerBound(float lat, float lon, int node) {
+		return 0.99f * getDistance(lat, lon, latMin[node], lonMin[node],
+				latMax[node], lonMax[node]);
+	}
+
+	/**
+	 * Returns the distance in KM from a position to the nearest point of a
+	 * box, computed with the position clamped to the box. For nodes, this is
+	 * the exact distance.
+	 */
+	private static float getDistance(float lat, float lon, float bLatMin,
+			float bLonMin, float bLatMax, float bLonMax) {
+		float cLat = Math.max(bLatMin, Math.min(lat, bLatMax));
+		float cLon = Math.max(bLonMin, Math.min(lon, bLonMax));
+		if (cLat == lat && cLon == lon)
+			return 0f;
+		return (float) Position.getDistKM(lat, lon, cLat, cLon);
+	}
+
+	private static boolean intersects(BoundingBox bb, float bLatMin,
+			float bLonMin, float bLatMax, float bLonMax) {
+		return !(bLatMin > bb.getLatMax()) && !(bLatMax < bb.getLatMin())
+				&& !(bLonMin > bb.getLonMax()) && !(bLonMax < bb.getLonMin());
+	}
+
+	private static int[] computeHilbertOrder(float[] latMin, float[] lonMin,
+			float[] latMax, float[] lonMax, int n) {
+		float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++) {
+			minX = Math.min(minX, lonMin[i]);
+			minY = Math.min(minY, latMin[i]);
+			maxX = Math.max(maxX, lonMax[i]);
+			maxY = Math.max(maxY, latMax[i]);
+		}
+		int cells = (1 << HILBERT_ORDER) - 1;
+		float scaleX = maxX > minX ? cells / (maxX - minX) : 0f;
+		float scaleY = maxY > minY ? cells / (maxY - minY) : 0f;
+		long[] keys = new long[n];
+		float fMinX = minX;
+		float fMinY = minY;
+		IntStream.range(0, n).parallel().forEach(i -> {
+			int x = (int) (((lonMin[i] + lonMax[i]) / 2f - fMinX) * scaleX);
+			int y = (int) (((latMin[i] + latMax[i]) / 2f - fMinY) * scaleY);
+			// unsigned curve position above the 31 bit item index, so that
+			// signed sorting follows the curve
+			keys[i] = ((long) getHilbertIndex(x, y) & 0xFFFFFFFFL) << 31
+					| i;
+		});
+		Arrays.parallelSort(keys);
+		int[] result = new int[n];
+		for (int i = 0; i < n; i++)
+			result[i] = (int) (keys[i] & Integer.MAX_VALUE);
+		return result;
+	}
+
+	/**
+	 * Maps a cell of the 2^16 x 2^16 grid to its position on the Hilbert
+	 * curve. Cells which are close on the curve are close in the grid. The
+	 * orientations of the sub-squares are computed for all levels at once by
+	 * a parallel prefix scan over the bits of the coordinates, which avoids
+	 * branching on each of the 16 levels.
+	 */
+	public static int getHilbertIndex(int x, int y) {
+		int a = x ^ y;
+		int b = 0xFFFF ^ a;
+		int c = 0xFFFF ^ (x | y);
+		int d = x & (y ^ 0xFFFF);
+		int pa = a | (b >>> 1);
+		int pb = (a >>> 1) ^ a;
+		int pc = ((c >>> 1) ^ (b & (d >>> 1))) ^ c;
+		int pd = ((a & (c >>> 1)) ^ (d >>> 1)) ^ d;
+		for (int shift = 2; shift <= 8; shift <<= 1) {
+			a = pa;
+			b = pb;
+			c = pc;
+			d = pd;
+			pa = (a & (a >>> shift)) ^ (b & (b >>> shift));
+			pb = (a & (b >>> shift)) ^ (b & ((a ^ b) >>> shift));
+			pc ^= (a & (c >>> shift)) ^ (b & (d >>> shift));
+			pd ^= (b & (c >>> shift)) ^ ((a ^ b) & (d >>> shift));
+		}
+		a = pc ^ (pc >>> 1);
+		b = pd ^ (pd >>> 1);
+		int i0 = x ^ y;
+		int i1 = b | (0xFFFF ^ (i0 | a));
+		return (interleave(i1) << 1) | interleave(i0);
+	}
+
+	/** Spreads the lower 16 bits of a value to the even bit positions. */
+	private static int interleave(int x) {
+		x = (x | (x << 8)) & 0x00FF00FF;
+		x = (x | (x << 4)) & 0x0F0F0F0F;
+		x = (x | (x << 2)) & 0x33333333;
+		x = (x | (x << 1)) & 0x55555555;
+		return x;
+	}
+
+	/** Binary min-heap of int references with float keys. */
+	private static class MinHeap {
+		private float[] keys = new float[64];
+		private int[] refs = new int[64];
+		private int size;
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		void add(float key, int ref) {
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, 2 * size);
+				refs = Arrays.copyOf(refs, 2 * size);
+			}
+			int pos = size++;
+			while (pos > 0) {
+				int parent = (pos - 1) >>> 1;
+				if (keys[parent] <= key)
+					break;
+				keys[pos] = keys[parent];
+				refs[pos] = refs[parent];
+				pos = parent;
+			}
+			keys[pos] = key;
+			refs[pos] = ref;
+		}
+
+		int pollRef() {
+			int result = refs[0];
+			size--;
+			float key = keys[size];
+			int ref = refs[size];
+			int pos = 0;
+			while (true) {
+				int child = 2 * pos + 1;
+				if (child >= size)
+					break;
+				if (child + 1 < size && keys[child + 1] < keys[child])
+					child++;
+				if (key <= keys[child])
+					break;
+				keys[pos] = keys[child];
+				refs[pos] = refs[child];
+				pos = child;
+			}
+			keys[pos] = key;
+			refs[pos] = ref;
+			return result;
+		}
+	}
+}
@@ -113,8 +113,9 @@ public class GpsLocator implements NmeaReader.NmeaMessageListener {
 		// $GPGGA,103131.000,4824.2758,N,00959.9357,E,1,06,1.3,458.5,M,43.9,M,,0000*54
 		// $GPGGA,044944,4824.3044,N,00959.9409,E,1,05,3.1,451.0,M,46.8,M,,*4E
 			String[] mparts = message.split(",");
-			if (mparts.length != 15)
-				return;
+			if (mparts.length != 15 || mparts[2].length() < 3
+					|| mparts[4].length() < 4)
+				return; // no position
 			boolean posOK = true;
 			float lat;
 			float lon;
@@ -122,17 +123,21 @@ public class GpsLocator implements NmeaReader.NmeaMessageListener {
 			if (mparts[6].equals("0"))
 				posOK = false;
 			
-			float deg = Float.parseFloat(mparts[2].substring(0, 2));
-			float min = Float.parseFloat(mparts[2].substring(2));
-			lat = deg + min / 60.0f;
-			if (mparts[3].equals("S"))
-				lat = -lat;
-			
-			deg = Float.parseFloat(mparts[4].substring(0, 3));
-			min = Float.parseFloat(mparts[4].substring(3));
-			lon = deg + min / 60.0f;
-			if (mparts[5].equals("W"))
-				lon = -lon;
+			try {
+				float deg = Float.parseFloat(mparts[2].substring(0, 2));
+				float min = Float.parseFloat(mparts[2].substring(2));
+				lat = deg + min / 60.0f;
+				if (mparts[3].equals("S"))
+					lat = -lat;
+
+				deg = Float.parseFloat(mparts[4].substring(0, 3));
+				min = Float.parseFloat(mparts[4].substring(3));
+				lon = deg + min / 60.0f;
+				if (mparts[5].equals("W"))
+					lon = -lon;
+			} catch (NumberFormatException e) {
+				return; // corrupted message
+			}
 			currPosition = new GpsFix(posOK, lat, lon);
 			//System.out.println(currPosition);
 			for (GpsPositionListener listener : listeners)
@@ -3,6 +3,7 @@ package aimax.osm.gps;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 
 /**
  * Reads NMEA data from file.
@@ -22,6 +23,20 @@ public class NmeaFileReader extends NmeaReader {
 		Thread thread = new FileReaderThread();
 		thread.start();
 	}
+
+	/**
+	 * Reads the whole file in the calling thread and informs the listeners
+	 * about all messages, including the last one.
+	 */
+	public void readAll() throws IOException {
+		inputStream = new BufferedInputStream(new FileInputStream(file));
+		try {
+			readFromStream(false);
+			flushBuffer();
+		} finally {
+			closeStream();
+		}
+	}
 	
 	private class FileReaderThread extends Thread {
 		@Override
@@ -65,6 +65,21 @@ public abstract class NmeaReader {
 		}
 	}
 	
+	/**
+	 * Informs all interested listeners about the message in the buffer if it
+	 * is complete. Should be called at the end of the stream, where no
+	 * further message start terminates the last message.
+	 */
+	protected void flushBuffer() {
+		if (buffer.length() > 5 && buffer.charAt(0) == '$') {
+			String message = buffer.toString();
+			for (NmeaMessageListener listener : listeners)
+				listener.messageReceived(message);
+			messageReceived = true;
+		}
+		buffer.delete(0, buffer.length());
+	}
+
 	public void closeStream() throws IOException {
 		messageReceived = false;
 		if (inputStream != null)
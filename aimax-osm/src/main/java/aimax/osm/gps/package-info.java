@@ -15,5 +15,10 @@
  * all serial ports and selects the first which provides NEMEA messages.
  * When connecting a second time, it uses the information of the last
  * successful scan. 
+ *
+ * <p>The fixes can be snapped to the road network by a
+ * <code>aimax.osm.routing.MapMatcher</code>, which is a position
+ * listener. Recorded NMEA files are matched in parallel by a
+ * <code>aimax.osm.routing.BatchMapMatcher</code>.
  */
 package aimax.osm.gps;
\ No newline at end of file
@@ -168,7 +168,7 @@ public class MapPaneCtrl {
             } else if (event.getButton() == MouseButton.SECONDARY) {
                 getMap().clearMarkersAndTracks();
             } else if (event.getButton() == MouseButton.MIDDLE) {
-                MapNode mNode = getRenderer().getNextNode((int) event.getX(), (int) event.getY());
+                MapNode mNode = mapDrawer.getNextNode((int) event.getX(), (int) event.getY());
                 if (mNode != null)
                     showMapEntityInfoDialog(mNode, true);
             }
@@ -89,6 +89,8 @@ public class MiniNaviApp implements ActionListener {
 				ROUTECALCULATOR_CLASS_PROPERTY, RouteCalculator.class);
 		if (routeCalculator == null)
 			routeCalculator = new RouteCalculator();
+		// hierarchies are stored next to the map file and reused
+		routeCalculator.setHierarchiesEnabled(true);
 
 		JToolBar toolbar = frame.getToolbar();
 		gpsCombo = new JComboBox<>(new String[] { "GPS Off", "GPS On",
@@ -227,6 +229,7 @@ public class MiniNaviApp implements ActionListener {
 		@Override
 		public void run() {
 			try {
+				routeCalculator.setMapFile(frame.getMapFile());
 				positions = routeCalculator.calculateRoute(routeMarkers,
 						frame.getMap(), waySelection.getSelectedIndex());
 			} catch (Exception e) {
@@ -0,0 +1,47 @@
+package aimax.osm.gui.swing.viewer;
+
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import aimax.osm.viewer.TileImageFactory;
+import aimax.osm.viewer.UnifiedImageBuilder;
+
+/**
+ * Specialized tile image factory for AWT images. Tiles are spilled to disk in
+ * PNG format.
+ */
+public class AWTTileImageFactory implements TileImageFactory<Image> {
+
+	@Override
+	public Image createImage(int width, int height) {
+		return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+	}
+
+	@Override
+	public UnifiedImageBuilder<Image> createImageBuilder() {
+		return new AWTImageBuilder();
+	}
+
+	@Override
+	public void drawImage(Image target, Image image, int x, int y) {
+		Graphics g = target.getGraphics();
+		g.drawImage(image, x, y, null);
+		g.dispose();
+	}
+
+	@Override
+	public void writeImage(Image image, File file) throws IOException {
+		ImageIO.write((RenderedImage) image, "png", file);
+	}
+
+	@Override
+	public Image readImage(File file) throws IOException {
+		return ImageIO.read(file);
+	}
+}
@@ -7,10 +7,11 @@ import aimax.osm.data.OsmMap;
 import aimax.osm.data.entities.EntityViewInfo;
 import aimax.osm.data.entities.MapNode;
 import aimax.osm.data.impl.DefaultMap;
-import aimax.osm.reader.Bz2OsmReader;
+import aimax.osm.reader.BinaryMapReader;
 import aimax.osm.reader.MapReader;
 import aimax.osm.viewer.MapStyleFactory;
-import aimax.osm.writer.Bz2OsmWriter;
+import aimax.osm.viewer.MapTileCache;
+import aimax.osm.writer.BinaryMapWriter;
 import aimax.osm.writer.MapWriter;
 
 import javax.swing.*;
@@ -44,6 +45,7 @@ public class MapViewFrame extends JFrame implements ActionListener {
 	protected MapWriter mapWriter;
 
 	private JFileChooser fileChooser;
+	private File mapFile;
 	private JButton loadButton;
 	private JButton saveButton;
 	private JButton statisticsButton;
@@ -82,8 +84,8 @@ public class MapViewFrame extends JFrame implements ActionListener {
 			}
 		});
 		fileChooser = new JFileChooser();
-		setMapReader(new Bz2OsmReader());
-		setMapWriter(new Bz2OsmWriter());
+		setMapReader(new BinaryMapReader());
+		setMapWriter(new BinaryMapWriter());
 
 		JPanel contentPanel = new JPanel();
 		contentPanel.setLayout(new BorderLayout());
@@ -97,6 +99,7 @@ public class MapViewFrame extends JFrame implements ActionListener {
 		contentPanel.add(splitter, BorderLayout.CENTER);
 
 		view = new MapViewPane();
+		view.setTileCache(new MapTileCache<>(new AWTTileImageFactory()));
 		splitter.add(view, JSplitPane.RIGHT);
 
 		sidebar = new JTabbedPane();
@@ -229,6 +232,7 @@ public class MapViewFrame extends JFrame implements ActionListener {
 			builder.setEntityClassifier(viewInfo);
 			mapReader.readMap(stream, builder);
 			builder.buildMap();
+			mapFile = null;
 		} else {
 			LOG
 					.warning("Map reading failed because input stream does not exist.");
@@ -240,7 +244,16 @@ public class MapViewFrame extends JFrame implements ActionListener {
 		builder.setEntityClassifier(viewInfo);
 		mapReader.readMap(file, builder);
 		builder.buildMap();
-		fileChooser.setSelectedFile(file.getAbsoluteFile());
+		mapFile = file.getAbsoluteFile();
+		fileChooser.setSelectedFile(mapFile);
+	}
+
+	/**
+	 * Returns the file from which the current map was read, or null if it was
+	 * read from a stream.
+	 */
+	public File getMapFile() {
+		return mapFile;
 	}
 
 	/**
@@ -102,12 +102,30 @@ public class MapViewPane extends JComponent implements MapEventListener {
 		return imageUpdater.getRenderer();
 	}
 
+	/**
+	 * Returns the map node which is the nearest with respect to the specified
+	 * view coordinates among the currently displayed nodes.
+	 */
+	public MapNode getNextNode(int x, int y) {
+		return imageUpdater.getNextNode(x, y);
+	}
+
 	/** Allows to replace the renderer. */
 	public void setRenderer(AbstractEntityRenderer renderer) {
 		imageUpdater.setRenderer(renderer);
 		viewChanged(MapViewEvent.Type.NEW_RENDERER);
 	}
 
+	/**
+	 * Enables tile-based rendering, which makes panning in dense maps much
+	 * faster. Value null disables it. Renderers which depend on data not
+	 * contained in the map should not be used with tiles.
+	 */
+	public void setTileCache(MapTileCache<Image> tileCache) {
+		imageUpdater.setTileCache(tileCache);
+		viewChanged(MapViewEvent.Type.NEW_RENDERER);
+	}
+
 	/** Controls whether kd-tree informations, node identifiers etc. are shown. */
 	public void enableDebugMode(boolean b) {
 		getRenderer().enableDebugMode(b);
@@ -378,6 +396,10 @@ public class MapViewPane extends JComponent implements MapEventListener {
 	 */
 	@Override
 	public void eventHappened(MapEvent event) {
+		if (event.getType() != MapEvent.Type.MARKER_ADDED
+				&& event.getType() != MapEvent.Type.MARKER_REMOVED
+				&& event.getType() != MapEvent.Type.TRACK_MODIFIED)
+			imageUpdater.clearTileCache();
 		if (event.getType() == MapEvent.Type.MAP_NEW) {
 			adjustToFit();
 			fireMapViewEvent(new MapViewEvent(this, MapViewEvent.Type.NEW_MAP));
@@ -420,7 +442,7 @@ public class MapViewPane extends JComponent implements MapEventListener {
 							MapViewEvent.Type.MARKER_ADDED));
 				} else { // double click
 					getMap().removeMarker(marker);
-					MapNode mNode = getRenderer().getNextNode(e.getX(), e.getY());
+					MapNode mNode = getNextNode(e.getX(), e.getY());
 					if (mNode != null)
 						showMapEntityInfoDialog(mNode,
 								getRenderer().isDebugModeEnabled());
@@ -0,0 +1,90 @@
+package aimax.osm.reader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+
+/**
+ * Constants and variable length integer coding of the binary map format, which
+ * is read by {@link BinaryMapReader} and written by
+ * {@link aimax.osm.writer.BinaryMapWriter}.
+ *
+ * <p>
+ * A file starts with a header: magic number, version, bounding box, a string
+ * table with all names, attribute keys and attribute values, and an index with
+ * type, bounding box, entity count and byte length of each block. The blocks
+ * follow, node blocks before way blocks. Each block contains spatially close
+ * entities sorted by ID and can be decoded independently of the others. IDs,
+ * coordinates (fixed point, 1e-7 degrees), and way node IDs are stored as
+ * differences to their predecessors in zigzag varint coding, names and
+ * attributes as indices into the string table.
+ * </p>
+ */
+public final class BinaryMapFormat {
+	/** "AIMB" */
+	public static final int MAGIC = 0x41494d42;
+	public static final int VERSION = 1;
+	public static final String EXTENSION = "osmb";
+	public static final byte NODE_BLOCK = 0;
+	public static final byte WAY_BLOCK = 1;
+	public static final int NODES_PER_BLOCK = 4096;
+	public static final int WAYS_PER_BLOCK = 1024;
+	private static final double FIXED_POINT_SCALE = 1e7;
+
+	private BinaryMapFormat() {
+	}
+
+	public static int toFixed(float degrees) {
+		return (int) Math.round(degrees * FIXED_POINT_SCALE);
+	}
+
+	public static float toDegrees(int fixed) {
+		return (float) (fixed / FIXED_POINT_SCALE);
+	}
+
+	/** Writes a non-negative value with seven bits per byte. */
+	public static void writeVarLong(ByteArrayOutputStream out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	/** Writes a value in zigzag coding, so that small negatives stay short. */
+	public static void writeSignedVarLong(ByteArrayOutputStream out, long value) {
+		writeVarLong(out, (value << 1) ^ (value >> 63));
+	}
+
+	/** Reads values written with the methods above from a byte array. */
+	public static class Decoder {
+		private final byte[] data;
+		private int pos;
+
+		public Decoder(byte[] data) {
+			this.data = data;
+		}
+
+		public long readVarLong() throws EOFException {
+			long result = 0;
+			int shift = 0;
+			while (true) {
+				if (pos == data.length)
+					throw new EOFException("Truncated block.");
+				byte b = data[pos++];
+				result |= (long) (b & 0x7F) << shift;
+				if (b >= 0)
+					return result;
+				shift += 7;
+			}
+		}
+
+		public int readVarInt() throws EOFException {
+			return (int) readVarLong();
+		}
+
+		public long readSignedVarLong() throws EOFException {
+			long value = readVarLong();
+			return (value >>> 1) ^ -(value & 1);
+		}
+	}
+}
@@ -0,0 +1,292 @@
+package aimax.osm.reader;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.EntityAttributeManager;
+import aimax.osm.data.MapBuilder;
+import aimax.osm.data.entities.EntityAttribute;
+
+/**
+ * Adds the binary map format (see {@link BinaryMapFormat}) to the
+ * <code>StreamingOsmReader</code>. The format is recognized by its magic
+ * number, other input is read as OSM XML. Blocks are decoded in parallel, a
+ * few at a time, and sent to the map builder in file order. If a bounding box
+ * filter is set, blocks outside the box are skipped without decoding them. The
+ * second pass for nodes of ways which leave the box only reads node blocks
+ * within the area covered by the way blocks read before.
+ */
+public class BinaryMapReader extends StreamingOsmReader {
+	private static final int BLOCKS_PER_ROUND = 4 * Runtime.getRuntime()
+			.availableProcessors();
+	/** Marks ignored attributes in the attribute cache. */
+	private static final EntityAttribute IGNORED = new EntityAttribute("", "");
+
+	/** Number of passes over the current file. */
+	private int pass;
+	/** Area of the way blocks read in the first pass. */
+	private BoundingBox wayBlocksBox;
+
+	@Override
+	public void readMap(File file, MapBuilder builder) {
+		pass = 0;
+		wayBlocksBox = null;
+		super.readMap(file, builder);
+	}
+
+	@Override
+	public void readMap(InputStream inputStream, MapBuilder builder) {
+		pass = 0;
+		wayBlocksBox = null;
+		super.readMap(inputStream, builder);
+	}
+
+	@Override
+	public String[] fileFormatDescriptions() {
+		String[] result = super.fileFormatDescriptions();
+		String[] extended = new String[result.length + 1];
+		System.arraycopy(result, 0, extended, 0, result.length);
+		extended[result.length] = "Binary OSM Map ("
+				+ BinaryMapFormat.EXTENSION + ")";
+		return extended;
+	}
+
+	@Override
+	public String[] fileFormatExtensions() {
+		String[] result = super.fileFormatExtensions();
+		String[] extended = new String[result.length + 1];
+		System.arraycopy(result, 0, extended, 0, result.length);
+		extended[result.length] = BinaryMapFormat.EXTENSION;
+		return extended;
+	}
+
+	/** Reads binary input and delegates all other input to the super class. */
+	@Override
+	protected void parseMap(InputStream inputStream, MapBuilder consumer)
+			throws IOException {
+		InputStream in = inputStream.markSupported() ? inputStream
+				: new BufferedInputStream(inputStream);
+		in.mark(4);
+		DataInputStream data = new DataInputStream(in);
+		int magic;
+		try {
+			magic = data.readInt();
+		} catch (EOFException e) {
+			magic = 0;
+		}
+		in.reset();
+		if (magic != BinaryMapFormat.MAGIC) {
+			super.parseMap(in, consumer);
+		} else {
+			try {
+				parseBinaryMap(data, consumer);
+			} finally {
+				in.close();
+			}
+		}
+		pass++;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void parseBinaryMap(DataInputStream in, MapBuilder consumer)
+			throws IOException {
+		long startTime = System.nanoTime();
+		in.readInt();
+		int version = in.readInt();
+		if (version != BinaryMapFormat.VERSION)
+			throw new OsmRuntimeException("Unsupported binary map version "
+					+ version + ".");
+		consumer.setBoundingBox(readBoundingBox(in));
+		String[] strings = new String[readVarInt(in)];
+		for (int i = 0; i < strings.length; i++) {
+			byte[] bytes = new byte[readVarInt(in)];
+			in.readFully(bytes);
+			strings[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		int blockCount = readVarInt(in);
+		byte[] types = new byte[blockCount];
+		BoundingBox[] boxes = new BoundingBox[blockCount];
+		int[] counts = new int[blockCount];
+		int[] lengths = new int[blockCount];
+		for (int i = 0; i < blockCount; i++) {
+			types[i] = in.readByte();
+			boxes[i] = readBoundingBox(in);
+			counts[i] = in.readInt();
+			lengths[i] = in.readInt();
+		}
+
+		// blocks outside the region are skipped
+		BoundingBox region = pass == 0 ? boundingBox : wayBlocksBox;
+		BlockDecoder decoder = new BlockDecoder(strings);
+		List<Integer> round = new ArrayList<>();
+		List<byte[]> roundData = new ArrayList<>();
+		int skipped = 0;
+		int entities = 0;
+		for (int i = 0; i < blockCount; i++) {
+			boolean read = region == null || region.intersectsWith(boxes[i]);
+			if (types[i] == BinaryMapFormat.WAY_BLOCK && pass > 0)
+				read = false;
+			if (read) {
+				byte[] block = new byte[lengths[i]];
+				in.readFully(block);
+				round.add(i);
+				roundData.add(block);
+				if (types[i] == BinaryMapFormat.WAY_BLOCK && pass == 0
+						&& boundingBox != null) {
+					if (wayBlocksBox == null)
+						wayBlocksBox = new BoundingBox(boxes[i].getLatMin(),
+								boxes[i].getLonMin(), boxes[i].getLatMax(),
+								boxes[i].getLonMax());
+					else
+						wayBlocksBox.unifyWith(boxes[i]);
+				}
+			} else {
+				skipFully(in, lengths[i]);
+				skipped++;
+			}
+			if (round.size() == BLOCKS_PER_ROUND || !round.isEmpty()
+					&& (i == blockCount - 1 || types[i + 1] != types[i])) {
+				entities += decodeAndSend(decoder, round, roundData, types,
+						counts, consumer);
+				round.clear();
+				roundData.clear();
+			}
+		}
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+		LOG.info(String.format("Read %d entities from %d of %d blocks in %.2f s.",
+				entities, blockCount - skipped, blockCount, seconds));
+	}
+
+	/** Decodes the blocks in parallel and sends them in order to the builder. */
+	private int decodeAndSend(BlockDecoder decoder, List<Integer> round,
+			List<byte[]> roundData, byte[] types, int[] counts,
+			MapBuilder consumer) {
+		EntityBatch[] batches = new EntityBatch[round.size()];
+		try {
+			IntStream.range(0, batches.length).parallel().forEach(j -> {
+				int i = round.get(j);
+				batches[j] = decoder.decode(roundData.get(j), types[i],
+						counts[i]);
+			});
+		} catch (UncheckedIOException e) {
+			throw new OsmRuntimeException("Unable to decode binary map.", e
+					.getCause());
+		}
+		int result = 0;
+		for (EntityBatch batch : batches)
+			result += batch.sendTo(consumer);
+		return result;
+	}
+
+	private static BoundingBox readBoundingBox(DataInputStream in)
+			throws IOException {
+		return new BoundingBox(in.readFloat(), in.readFloat(), in.readFloat(),
+				in.readFloat());
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int result = 0;
+		int shift = 0;
+		while (true) {
+			byte b = in.readByte();
+			result |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return result;
+			shift += 7;
+		}
+	}
+
+	private static void skipFully(InputStream in, long n) throws IOException {
+		while (n > 0) {
+			long skipped = in.skip(n);
+			if (skipped <= 0) {
+				if (in.read() == -1)
+					throw new EOFException("Truncated binary map.");
+				skipped = 1;
+			}
+			n -= skipped;
+		}
+	}
+
+	/**
+	 * Decodes blocks into entity batches. Attributes are created once for each
+	 * key value combination and interned by the attribute manager, so that
+	 * ignored attribute keys are dropped as with XML input.
+	 */
+	private static class BlockDecoder {
+		private final String[] strings;
+		private final ConcurrentHashMap<Long, EntityAttribute> atts = new ConcurrentHashMap<>();
+
+		BlockDecoder(String[] strings) {
+			this.strings = strings;
+		}
+
+		EntityBatch decode(byte[] data, byte type, int count) {
+			EntityBatch result = new EntityBatch(Math.max(1, count));
+			BinaryMapFormat.Decoder in = new BinaryMapFormat.Decoder(data);
+			try {
+				long id = 0;
+				int lat = 0;
+				int lon = 0;
+				for (int i = 0; i < count; i++) {
+					id += in.readSignedVarLong();
+					if (type == BinaryMapFormat.NODE_BLOCK) {
+						lat += (int) in.readSignedVarLong();
+						lon += (int) in.readSignedVarLong();
+						result.addNode(id, BinaryMapFormat.toDegrees(lat),
+								BinaryMapFormat.toDegrees(lon));
+						decodeTags(in, result);
+					} else {
+						result.addWay(id);
+						decodeTags(in, result);
+						int nodeCount = in.readVarInt();
+						long nodeId = 0;
+						for (int j = 0; j < nodeCount; j++) {
+							nodeId += in.readSignedVarLong();
+							result.addWayNode(nodeId);
+						}
+					}
+				}
+			} catch (EOFException e) {
+				throw new UncheckedIOException(e);
+			}
+			return result;
+		}
+
+		private void decodeTags(BinaryMapFormat.Decoder in, EntityBatch batch)
+				throws EOFException {
+			int name = in.readVarInt();
+			if (name > 0)
+				batch.setName(strings[name - 1]);
+			int attCount = in.readVarInt();
+			for (int i = 0; i < attCount; i++) {
+				long key = in.readVarLong();
+				long value = in.readVarLong();
+				EntityAttribute att = atts.computeIfAbsent(key << 32 | value,
+						k -> {
+							EntityAttribute result = EntityAttributeManager
+									.instance().intern(new EntityAttribute(
+											strings[(int) key],
+											strings[(int) value]));
+							return result != null ? result : IGNORED;
+						});
+				if (att != IGNORED)
+					batch.addAttribute(att);
+			}
+		}
+	}
+}
@@ -0,0 +1,178 @@
+package aimax.osm.reader;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.MapBuilder;
+import aimax.osm.data.entities.EntityAttribute;
+
+/**
+ * Sequence of parsed nodes, ways, and bounds which is handed over from the
+ * parser to the map builder in one piece. Entities are stored in parallel
+ * arrays, and batches are reused, so that parsing allocates few objects
+ * besides the strings and attributes which end up in the map.
+ */
+class EntityBatch {
+	static final byte NODE = 0;
+	static final byte WAY = 1;
+	static final byte BOUND = 2;
+
+	int size;
+	private byte[] types;
+	private long[] ids;
+	private float[] lats;
+	private float[] lons;
+	private String[] names;
+	/** End index in atts for each entity. */
+	private int[] attEnds;
+	private EntityAttribute[] atts;
+	private int attCount;
+	/** End index in wayNodeIds for each entity. */
+	private int[] wayNodeEnds;
+	private long[] wayNodeIds;
+	private int wayNodeCount;
+	private BoundingBox[] bounds;
+	/** Marks the last batch of a stream. */
+	boolean last;
+	/** Failure which terminated parsing, only set for the last batch. */
+	RuntimeException error;
+
+	EntityBatch(int capacity) {
+		types = new byte[capacity];
+		ids = new long[capacity];
+		lats = new float[capacity];
+		lons = new float[capacity];
+		names = new String[capacity];
+		attEnds = new int[capacity];
+		atts = new EntityAttribute[4 * capacity];
+		wayNodeEnds = new int[capacity];
+		wayNodeIds = new long[8 * capacity];
+		bounds = new BoundingBox[capacity];
+	}
+
+	boolean isFull() {
+		return size == types.length;
+	}
+
+	/** Starts a new node, attributes can be added afterwards. */
+	void addNode(long id, float lat, float lon) {
+		add(NODE, id);
+		lats[size - 1] = lat;
+		lons[size - 1] = lon;
+	}
+
+	/** Starts a new way, attributes and way nodes can be added afterwards. */
+	void addWay(long id) {
+		add(WAY, id);
+	}
+
+	void addBound(BoundingBox bb) {
+		add(BOUND, 0);
+		bounds[size - 1] = bb;
+	}
+
+	/** Sets the name of the last entity. */
+	void setName(String name) {
+		names[size - 1] = name;
+	}
+
+	/** Adds an attribute to the last entity. */
+	void addAttribute(EntityAttribute att) {
+		if (attCount == atts.length)
+			atts = Arrays.copyOf(atts, 2 * atts.length);
+		atts[attCount++] = att;
+		attEnds[size - 1] = attCount;
+	}
+
+	/** Adds a way node to the last entity. */
+	void addWayNode(long id) {
+		if (wayNodeCount == wayNodeIds.length)
+			wayNodeIds = Arrays.copyOf(wayNodeIds, 2 * wayNodeIds.length);
+		wayNodeIds[wayNodeCount++] = id;
+		wayNodeEnds[size - 1] = wayNodeCount;
+	}
+
+	/**
+	 * Sends all entities to the builder. Entities which have already been
+	 * defined are skipped.
+	 *
+	 * @return The number of nodes and ways in the batch.
+	 */
+	int sendTo(MapBuilder builder) {
+		List<EntityAttribute> attList = Arrays.asList(atts);
+		LongList wayNodeList = new LongList();
+		int attBegin = 0;
+		int wayNodeBegin = 0;
+		int result = 0;
+		for (int i = 0; i < size; i++) {
+			switch (types[i]) {
+			case NODE:
+				if (!builder.isNodeDefined(ids[i], null))
+					builder.addNode(ids[i], names[i],
+							attList.subList(attBegin, attEnds[i]), lats[i],
+							lons[i]);
+				result++;
+				break;
+			case WAY:
+				if (!builder.isWayDefined(ids[i])) {
+					wayNodeList.begin = wayNodeBegin;
+					wayNodeList.end = wayNodeEnds[i];
+					builder.addWay(ids[i], names[i],
+							attList.subList(attBegin, attEnds[i]), wayNodeList);
+				}
+				result++;
+				break;
+			case BOUND:
+				builder.setBoundingBox(bounds[i]);
+				break;
+			}
+			attBegin = attEnds[i];
+			wayNodeBegin = wayNodeEnds[i];
+		}
+		return result;
+	}
+
+	/** Prepares the batch for reuse. */
+	void clear() {
+		Arrays.fill(names, 0, size, null);
+		Arrays.fill(bounds, 0, size, null);
+		Arrays.fill(atts, 0, attCount, null);
+		size = 0;
+		attCount = 0;
+		wayNodeCount = 0;
+		last = false;
+		error = null;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void add(byte type, long id) {
+		types[size] = type;
+		ids[size] = id;
+		attEnds[size] = attCount;
+		wayNodeEnds[size] = wayNodeCount;
+		size++;
+	}
+
+	/** List view on a range of the way node IDs. */
+	private class LongList extends AbstractList<Long> {
+		int begin;
+		int end;
+
+		@Override
+		public Long get(int index) {
+			if (index < 0 || index >= end - begin)
+				throw new IndexOutOfBoundsException("Index: " + index);
+			return wayNodeIds[begin + index];
+		}
+
+		@Override
+		public int size() {
+			return end - begin;
+		}
+	}
+}
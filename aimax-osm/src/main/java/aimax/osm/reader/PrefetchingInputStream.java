@@ -0,0 +1,153 @@
+package aimax.osm.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Input stream which reads the underlying stream in blocks on a separate
+ * thread. If the underlying stream decompresses data, decompression and the
+ * consumer of this stream run in parallel. The number of blocks in flight is
+ * bounded, blocks are recycled. The underlying stream is closed by the reading
+ * thread when the end is reached or this stream is closed.
+ */
+class PrefetchingInputStream extends InputStream {
+	private final InputStream in;
+	private final BlockingQueue<Block> filled;
+	private final BlockingQueue<Block> free;
+	private final Thread thread;
+	private Block current;
+	private int pos;
+	private volatile boolean closed;
+	private volatile long bytesRead;
+
+	PrefetchingInputStream(InputStream in, int blockSize, int blockCount) {
+		this.in = in;
+		filled = new ArrayBlockingQueue<>(blockCount + 1);
+		free = new ArrayBlockingQueue<>(blockCount);
+		for (int i = 0; i < blockCount; i++)
+			free.add(new Block(blockSize));
+		thread = new Thread(this::fill, "osm-decompress");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/** Returns the number of bytes read from the underlying stream so far. */
+	long getBytesRead() {
+		return bytesRead;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!nextBlock())
+			return -1;
+		return current.data[pos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+		if (!nextBlock())
+			return -1;
+		int n = Math.min(len, current.length - pos);
+		System.arraycopy(current.data, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+
+	@Override
+	public void close() {
+		if (!closed) {
+			closed = true;
+			thread.interrupt();
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/** Makes sure that the current block has bytes left unless at the end. */
+	private boolean nextBlock() throws IOException {
+		while (current == null || pos == current.length) {
+			if (current != null) {
+				if (current.length == -1)
+					return false;
+				free.add(current);
+				current = null;
+			}
+			if (closed)
+				throw new IOException("Stream closed.");
+			try {
+				current = filled.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+			pos = 0;
+			if (current.length == -1) {
+				pos = -1;
+				if (current.error != null)
+					throw current.error;
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Body of the reading thread. */
+	private void fill() {
+		try {
+			while (!closed) {
+				Block block = free.take();
+				block.length = 0;
+				while (block.length < block.data.length) {
+					int n = in.read(block.data, block.length, block.data.length
+							- block.length);
+					if (n == -1)
+						break;
+					block.length += n;
+				}
+				bytesRead += block.length;
+				boolean end = block.length < block.data.length;
+				if (block.length > 0)
+					filled.put(block);
+				if (end) {
+					filled.put(new Block(-1, null));
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			// closed by the consumer
+		} catch (IOException e) {
+			filled.offer(new Block(-1, e));
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {
+				// nothing left to do
+			}
+		}
+	}
+
+	private static class Block {
+		final byte[] data;
+		int length;
+		final IOException error;
+
+		Block(int size) {
+			data = new byte[size];
+			error = null;
+		}
+
+		/** Creates a block which marks the end of the stream. */
+		Block(int length, IOException error) {
+			data = new byte[0];
+			this.length = length;
+			this.error = error;
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package aimax.osm.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.EntityAttributeManager;
+import aimax.osm.data.MapBuilder;
+import aimax.osm.data.entities.EntityAttribute;
+
+/**
+ * Reads maps in OSM XML format by means of a pipeline with three stages, which
+ * run on different threads: The first reads and, for bz2 files, decompresses
+ * the input in blocks. The second parses the XML with a StAX pull parser,
+ * interns attribute keys and values, and collects the entities in batches. The
+ * third, the calling thread, sends the batches to the map builder. Batches and
+ * blocks are passed through bounded queues and are reused, so that memory
+ * consumption does not depend on the size of the input. Filters and the second
+ * pass for nodes referenced before their definition work as in the super
+ * class. Throughput is logged after each pass and can be queried afterwards.
+ */
+public class StreamingOsmReader extends Bz2OsmReader {
+	private static final int BLOCK_SIZE = 1 << 18;
+	private static final int BLOCK_COUNT = 16;
+	private static final int BATCH_SIZE = 4096;
+	private static final int BATCH_COUNT = 4;
+
+	private final XMLInputFactory factory;
+	private double megabytesPerSecond;
+	private double entitiesPerSecond;
+
+	public StreamingOsmReader() {
+		factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+	}
+
+	/** Returns the number of uncompressed MB per second of the last pass. */
+	public double getMegabytesPerSecond() {
+		return megabytesPerSecond;
+	}
+
+	/** Returns the number of nodes and ways per second of the last pass. */
+	public double getEntitiesPerSecond() {
+		return entitiesPerSecond;
+	}
+
+	@Override
+	protected void parseMap(InputStream inputStream, MapBuilder consumer)
+			throws IOException {
+		long startTime = System.nanoTime();
+		PrefetchingInputStream blocks = new PrefetchingInputStream(
+				inputStream, BLOCK_SIZE, BLOCK_COUNT);
+		Parser parser = new Parser(blocks);
+		Thread parserThread = new Thread(parser, "osm-parse");
+		parserThread.setDaemon(true);
+		parserThread.start();
+		long entities = 0;
+		try {
+			while (true) {
+				EntityBatch batch = parser.filled.take();
+				if (batch.error != null)
+					throw batch.error;
+				entities += batch.sendTo(consumer);
+				boolean last = batch.last;
+				batch.clear();
+				parser.free.put(batch);
+				if (last)
+					break;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OsmRuntimeException("Map reading interrupted.", e);
+		} finally {
+			parserThread.interrupt();
+			blocks.close();
+		}
+		double seconds = Math.max(1e-9, (System.nanoTime() - startTime) / 1e9);
+		double megabytes = blocks.getBytesRead() / (1024.0 * 1024.0);
+		megabytesPerSecond = megabytes / seconds;
+		entitiesPerSecond = entities / seconds;
+		LOG.info(String.format(
+				"Read %.1f MB in %.1f s (%.1f MB/s), %d entities (%.0f/s).",
+				megabytes, seconds, megabytesPerSecond, entities,
+				entitiesPerSecond));
+	}
+
+	/**
+	 * Pull parser which fills batches with the nodes, ways, and bounds of an
+	 * OSM XML document.
+	 */
+	private class Parser implements Runnable {
+		final BlockingQueue<EntityBatch> filled;
+		final BlockingQueue<EntityBatch> free;
+		private final InputStream inputStream;
+		private final EntityAttributeManager attManager;
+		private EntityBatch batch;
+
+		Parser(InputStream inputStream) {
+			this.inputStream = inputStream;
+			filled = new ArrayBlockingQueue<>(BATCH_COUNT);
+			free = new ArrayBlockingQueue<>(BATCH_COUNT);
+			for (int i = 0; i < BATCH_COUNT; i++)
+				free.add(new EntityBatch(BATCH_SIZE));
+			attManager = EntityAttributeManager.instance();
+		}
+
+		@Override
+		public void run() {
+			RuntimeException error = null;
+			try {
+				batch = free.take();
+				XMLStreamReader reader = factory
+						.createXMLStreamReader(inputStream);
+				try {
+					parse(reader);
+				} finally {
+					reader.close();
+				}
+			} catch (InterruptedException e) {
+				return; // closed by the consumer
+			} catch (XMLStreamException e) {
+				error = new OsmRuntimeException("Unable to parse XML"
+						+ (e.getLocation() != null ? ". lineNumber="
+								+ e.getLocation().getLineNumber()
+								+ ", columnNumber="
+								+ e.getLocation().getColumnNumber() : "")
+						+ ".", e);
+			} catch (RuntimeException e) {
+				error = e;
+			}
+			if (batch != null) {
+				batch.last = true;
+				batch.error = error;
+				filled.offer(batch);
+			}
+		}
+
+		private void parse(XMLStreamReader reader)
+				throws XMLStreamException, InterruptedException {
+			int depth = 0;
+			boolean inEntity = false;
+			while (reader.hasNext()) {
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					String name = reader.getLocalName();
+					if (depth == 0) {
+						if (!"osm".equals(name))
+							throw new OsmRuntimeException(
+									"This does not appear to be an OSM XML file.");
+					} else if (depth == 1) {
+						inEntity = false;
+						if ("node".equals(name)) {
+							startNode(reader);
+							inEntity = true;
+						} else if ("way".equals(name)) {
+							nextEntity().addWay(parseLong(reader, "id"));
+							inEntity = true;
+						} else if ("bound".equals(name)) {
+							nextEntity().addBound(parseBound(reader));
+						}
+					} else if (depth == 2 && inEntity) {
+						if ("tag".equals(name))
+							addTag(reader.getAttributeValue(null, "k"),
+									reader.getAttributeValue(null, "v"));
+						else if ("nd".equals(name))
+							batch.addWayNode(parseLong(reader, "ref"));
+					}
+					depth++;
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					depth--;
+				}
+			}
+		}
+
+		/** Returns a batch with space for one more entity. */
+		private EntityBatch nextEntity() throws InterruptedException {
+			if (batch.isFull()) {
+				filled.put(batch);
+				batch = null;
+				batch = free.take();
+			}
+			return batch;
+		}
+
+		private void startNode(XMLStreamReader reader)
+				throws InterruptedException {
+			long id = 0;
+			float lat = 0f;
+			float lon = 0f;
+			for (int i = 0; i < reader.getAttributeCount(); i++) {
+				String att = reader.getAttributeLocalName(i);
+				if ("id".equals(att))
+					id = Long.parseLong(reader.getAttributeValue(i));
+				else if ("lat".equals(att))
+					lat = Float.parseFloat(reader.getAttributeValue(i));
+				else if ("lon".equals(att))
+					lon = Float.parseFloat(reader.getAttributeValue(i));
+			}
+			nextEntity().addNode(id, lat, lon);
+		}
+
+		private void addTag(String key, String value) {
+			if (key.equals("name")) {
+				batch.setName(value);
+			} else {
+				EntityAttribute att = attManager.intern(new EntityAttribute(
+						key, value));
+				if (att != null)
+					batch.addAttribute(att);
+			}
+		}
+
+		private long parseLong(XMLStreamReader reader, String attName) {
+			return Long.parseLong(reader.getAttributeValue(null, attName));
+		}
+
+		private BoundingBox parseBound(XMLStreamReader reader) {
+			String box = reader.getAttributeValue(null, "box");
+			if (box == null)
+				throw new OsmRuntimeException(
+						"Missing required box attribute of bound element");
+			String[] bounds = box.split(",");
+			if (bounds.length != 4)
+				throw new OsmRuntimeException(
+						"Badly formed box attribute of bound element");
+			try {
+				return new BoundingBox(Float.parseFloat(bounds[0]),
+						Float.parseFloat(bounds[1]),
+						Float.parseFloat(bounds[2]),
+						Float.parseFloat(bounds[3]));
+			} catch (NumberFormatException e) {
+				throw new OsmRuntimeException(
+						"Can't parse box attribute of bound element", e);
+			}
+		}
+	}
+}
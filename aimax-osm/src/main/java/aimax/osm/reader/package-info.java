@@ -10,5 +10,8 @@
  * almost unchanged. Some refactoring was done to reduce the number of
  * classes needed and to improve speed by focusing on the relevant
  * data.
+ * <p><code>StreamingOsmReader</code> replaces the SAX parser by a StAX
+ * pull parser and runs decompression, parsing, and map building
+ * on different threads.
  */
 package aimax.osm.reader;
\ No newline at end of file
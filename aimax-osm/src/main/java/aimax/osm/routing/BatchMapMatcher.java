@@ -0,0 +1,82 @@
+package aimax.osm.routing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import aimax.osm.gps.GpsLocator;
+import aimax.osm.gps.NmeaFileReader;
+import aimax.osm.routing.MapMatcher.MatchListener;
+
+/**
+ * Matches recorded GPS tracks to the road network. Each NMEA file is read and
+ * matched as a separate stream, and files are processed in parallel. Each
+ * thread uses its own {@link MapMatcher}, all share one {@link EdgeIndex}.
+ * Results are not collected but streamed to a listener per file.
+ */
+public class BatchMapMatcher {
+	private static Logger LOG = Logger.getLogger("aimax.osm");
+
+	private final EdgeIndex edgeIndex;
+	private Supplier<MapMatcher> matcherFactory;
+
+	public BatchMapMatcher(EdgeIndex edgeIndex) {
+		this.edgeIndex = edgeIndex;
+		matcherFactory = () -> new MapMatcher(edgeIndex);
+	}
+
+	public EdgeIndex getEdgeIndex() {
+		return edgeIndex;
+	}
+
+	/**
+	 * Sets the factory for the matchers of the threads, e.g. to change the
+	 * matching parameters. The matchers must use the edge index of the batch.
+	 */
+	public void setMatcherFactory(Supplier<MapMatcher> matcherFactory) {
+		this.matcherFactory = matcherFactory;
+	}
+
+	/**
+	 * Matches the valid GPS fixes of each file and sends the matched
+	 * positions to the listener which the factory creates for the file.
+	 * Fixes are passed from the reader through the locator to the matcher
+	 * one by one, so memory does not depend on the length of the tracks.
+	 * Listeners are called by the thread which processes their file. Files
+	 * which cannot be opened are skipped.
+	 */
+	public void matchFiles(List<File> files,
+			Function<File, MatchListener> listenerFactory) {
+		ThreadLocal<MapMatcher> matchers = ThreadLocal
+				.withInitial(matcherFactory);
+		files.parallelStream().forEach(
+				file -> matchFile(matchers.get(), file, listenerFactory
+						.apply(file)));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private static void matchFile(MapMatcher matcher, File file,
+			MatchListener listener) {
+		GpsLocator locator = new GpsLocator();
+		locator.addGpsPositionListener(matcher);
+		NmeaFileReader reader = new NmeaFileReader(file);
+		reader.addListener(locator);
+		matcher.reset();
+		matcher.addMatchListener(listener);
+		try {
+			reader.readAll();
+			matcher.flush();
+		} catch (IOException e) {
+			LOG.warning("Unable to read " + file + ". " + e);
+			matcher.reset();
+		} finally {
+			matcher.removeMatchListener(listener);
+		}
+	}
+}
@@ -0,0 +1,471 @@
+package aimax.osm.routing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Contraction hierarchy of a {@link RoutingGraph} (Geisberger et al. 2008).
+ * The graph nodes are contracted one after another in the order of their
+ * importance: a contracted node is removed from the remaining graph, and
+ * shortcut edges are added between its remaining neighbors wherever the path
+ * through the node is the only shortest path between them. The contraction
+ * order defines node ranks. Each shortest path of the graph corresponds to a
+ * path in the hierarchy which first ascends and then descends in rank, so
+ * that a bidirectional search needs to follow only edges leading to higher
+ * ranks (see {@link ContractionHierarchySearch}).
+ *
+ * <p>
+ * Shortcuts remember the two edges they replace, so that paths can be
+ * unpacked to edges of the graph. Building a hierarchy is expensive; it can be
+ * written to a file and read again for a graph with the same fingerprint (see
+ * {@link RoutingGraph#getFingerprint()}).
+ * </p>
+ */
+public class ContractionHierarchy {
+	private static final int FILE_ID = 0x4f534d43;
+	private static final int FILE_VERSION = 1;
+
+	final RoutingGraph graph;
+	final int[] ranks;
+	// all edges of the hierarchy
+	final int[] edgeSources;
+	final int[] edgeTargets;
+	final float[] edgeWeights;
+	/** First replaced edge of shortcuts, -1 for edges of the graph. */
+	final int[] edgeFirstChildren;
+	/** Second replaced edge of shortcuts, the graph edge otherwise. */
+	final int[] edgeSecondChildren;
+	// edges to higher ranks, sorted by source
+	final int[] firstUpEdge;
+	final int[] upEdges;
+	// edges from higher ranks, sorted by target
+	final int[] firstDownEdge;
+	final int[] downEdges;
+
+	/**
+	 * Contracts all nodes of the graph.
+	 */
+	public static ContractionHierarchy build(RoutingGraph graph) {
+		return new Builder(graph).build();
+	}
+
+	/**
+	 * Reads a hierarchy from a file.
+	 *
+	 * @return The hierarchy, or null if it was built for a different graph.
+	 */
+	public static ContractionHierarchy read(File file, RoutingGraph graph)
+			throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)))) {
+			if (in.readInt() != FILE_ID || in.readInt() != FILE_VERSION)
+				throw new IOException("Unknown file format: " + file);
+			if (in.readLong() != graph.getFingerprint()
+					|| in.readInt() != graph.getNodeCount())
+				return null;
+			int[] ranks = new int[graph.getNodeCount()];
+			for (int i = 0; i < ranks.length; i++)
+				ranks[i] = in.readInt();
+			int edgeCount = in.readInt();
+			int[] sources = new int[edgeCount];
+			int[] targets = new int[edgeCount];
+			float[] weights = new float[edgeCount];
+			int[] firstChildren = new int[edgeCount];
+			int[] secondChildren = new int[edgeCount];
+			for (int e = 0; e < edgeCount; e++) {
+				sources[e] = in.readInt();
+				targets[e] = in.readInt();
+				weights[e] = in.readFloat();
+				firstChildren[e] = in.readInt();
+				secondChildren[e] = in.readInt();
+			}
+			return new ContractionHierarchy(graph, ranks, sources, targets,
+					weights, firstChildren, secondChildren);
+		}
+	}
+
+	private ContractionHierarchy(RoutingGraph graph, int[] ranks,
+			int[] edgeSources, int[] edgeTargets, float[] edgeWeights,
+			int[] edgeFirstChildren, int[] edgeSecondChildren) {
+		this.graph = graph;
+		this.ranks = ranks;
+		this.edgeSources = edgeSources;
+		this.edgeTargets = edgeTargets;
+		this.edgeWeights = edgeWeights;
+		this.edgeFirstChildren = edgeFirstChildren;
+		this.edgeSecondChildren = edgeSecondChildren;
+		int nodeCount = ranks.length;
+		firstUpEdge = new int[nodeCount + 1];
+		firstDownEdge = new int[nodeCount + 1];
+		for (int e = 0; e < edgeSources.length; e++) {
+			if (ranks[edgeSources[e]] < ranks[edgeTargets[e]])
+				firstUpEdge[edgeSources[e] + 1]++;
+			else
+				firstDownEdge[edgeTargets[e] + 1]++;
+		}
+		for (int i = 0; i < nodeCount; i++) {
+			firstUpEdge[i + 1] += firstUpEdge[i];
+			firstDownEdge[i + 1] += firstDownEdge[i];
+		}
+		upEdges = new int[firstUpEdge[nodeCount]];
+		downEdges = new int[firstDownEdge[nodeCount]];
+		int[] nextUp = Arrays.copyOf(firstUpEdge, nodeCount);
+		int[] nextDown = Arrays.copyOf(firstDownEdge, nodeCount);
+		for (int e = 0; e < edgeSources.length; e++) {
+			if (ranks[edgeSources[e]] < ranks[edgeTargets[e]])
+				upEdges[nextUp[edgeSources[e]]++] = e;
+			else
+				downEdges[nextDown[edgeTargets[e]]++] = e;
+		}
+	}
+
+	public RoutingGraph getGraph() {
+		return graph;
+	}
+
+	/** Returns the position of the node in the contraction order. */
+	public int getRank(int node) {
+		return ranks[node];
+	}
+
+	/** Returns the number of edges, including shortcuts. */
+	public int getEdgeCount() {
+		return edgeSources.length;
+	}
+
+	public int getEdgeSource(int edge) {
+		return edgeSources[edge];
+	}
+
+	public int getEdgeTarget(int edge) {
+		return edgeTargets[edge];
+	}
+
+	/** Returns the length of the edge in KM. */
+	public float getEdgeWeight(int edge) {
+		return edgeWeights[edge];
+	}
+
+	/** Checks whether the edge replaces two other edges of the hierarchy. */
+	public boolean isShortcut(int edge) {
+		return edgeFirstChildren[edge] >= 0;
+	}
+
+	/** Returns the number of shortcut edges. */
+	public int getShortcutCount() {
+		int result = 0;
+		for (int child : edgeFirstChildren)
+			if (child >= 0)
+				result++;
+		return result;
+	}
+
+	/** Appends the graph edges replaced by an edge of the hierarchy. */
+	public void unpackEdge(int edge, List<Integer> graphEdges) {
+		Deque<Integer> open = new ArrayDeque<>();
+		open.push(edge);
+		while (!open.isEmpty()) {
+			int e = open.pop();
+			if (edgeFirstChildren[e] < 0) {
+				graphEdges.add(edgeSecondChildren[e]);
+			} else {
+				open.push(edgeSecondChildren[e]);
+				open.push(edgeFirstChildren[e]);
+			}
+		}
+	}
+
+	/** Writes the hierarchy to a file. */
+	public void write(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(FILE_ID);
+			out.writeInt(FILE_VERSION);
+			out.writeLong(graph.getFingerprint());
+			out.writeInt(ranks.length);
+			for (int rank : ranks)
+				out.writeInt(rank);
+			out.writeInt(edgeSources.length);
+			for (int e = 0; e < edgeSources.length; e++) {
+				out.writeInt(edgeSources[e]);
+				out.writeInt(edgeTargets[e]);
+				out.writeFloat(edgeWeights[e]);
+				out.writeInt(edgeFirstChildren[e]);
+				out.writeInt(edgeSecondChildren[e]);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ContractionHierarchy[nodes=" + ranks.length + ", edges="
+				+ edgeSources.length + ", shortcuts=" + getShortcutCount()
+				+ "]";
+	}
+
+	//
+	// PRIVATE CLASSES
+	//
+
+	/**
+	 * Contracts the nodes in the order of their priority, which combines the
+	 * edge difference (shortcuts needed minus edges removed), the number of
+	 * already contracted neighbors and the level of the node in the hierarchy,
+	 * so that nodes are contracted uniformly. Priorities are updated for the
+	 * neighbors of contracted nodes and lazily when a node is selected.
+	 */
+	private static class Builder {
+		/** Limits witness searches, missing witnesses add superfluous shortcuts. */
+		private static final int MAX_SETTLED_NODES = 500;
+		/**
+		 * Accepts witnesses which are longer only due to rounding errors. On
+		 * maps with many paths of equal length (like grids), this avoids most
+		 * of the shortcuts.
+		 */
+		private static final float WITNESS_TOLERANCE = 1f + 1e-5f;
+
+		private final RoutingGraph graph;
+		private final int nodeCount;
+		private int edgeCount;
+		private int[] sources = new int[16];
+		private int[] targets = new int[16];
+		private float[] weights = new float[16];
+		private int[] firstChildren = new int[16];
+		private int[] secondChildren = new int[16];
+		// edges of the remaining graph (and some edges to contracted nodes)
+		private final int[][] outEdges;
+		private final int[] outCounts;
+		private final int[][] inEdges;
+		private final int[] inCounts;
+		private final boolean[] contracted;
+		private final int[] contractedNeighbors;
+		/** Last contracted node for which the priority was updated. */
+		private final int[] updatedFor;
+		private final int[] levels;
+		private final int[] ranks;
+
+		// witness search
+		private final NodeQueue witnessQueue;
+		private final float[] distances;
+		private final int[] reached;
+		private int search;
+
+		Builder(RoutingGraph graph) {
+			this.graph = graph;
+			nodeCount = graph.getNodeCount();
+			outEdges = new int[nodeCount][];
+			outCounts = new int[nodeCount];
+			inEdges = new int[nodeCount][];
+			inCounts = new int[nodeCount];
+			contracted = new boolean[nodeCount];
+			contractedNeighbors = new int[nodeCount];
+			updatedFor = new int[nodeCount];
+			levels = new int[nodeCount];
+			Arrays.fill(updatedFor, -1);
+			ranks = new int[nodeCount];
+			witnessQueue = new NodeQueue(nodeCount);
+			distances = new float[nodeCount];
+			reached = new int[nodeCount];
+		}
+
+		ContractionHierarchy build() {
+			for (int e = 0; e < graph.getEdgeCount(); e++)
+				addEdge(graph.getEdgeSource(e), graph.getEdgeTarget(e),
+						graph.getEdgeWeight(e), -1, e);
+			NodeQueue queue = new NodeQueue(nodeCount);
+			for (int node = 0; node < nodeCount; node++)
+				queue.insertOrDecrease(node, getPriority(node));
+			int rank = 0;
+			while (!queue.isEmpty()) {
+				int node = queue.poll();
+				float priority = getPriority(node);
+				if (!queue.isEmpty() && priority > queue.peekKey()) {
+					queue.insertOrDecrease(node, priority);
+					continue;
+				}
+				contract(node, false);
+				contracted[node] = true;
+				ranks[node] = rank++;
+				for (int i = 0; i < outCounts[node]; i++)
+					updateNeighbor(targets[outEdges[node][i]], node, queue);
+				for (int i = 0; i < inCounts[node]; i++)
+					updateNeighbor(sources[inEdges[node][i]], node, queue);
+			}
+			return new ContractionHierarchy(graph, ranks, Arrays.copyOf(
+					sources, edgeCount), Arrays.copyOf(targets, edgeCount),
+					Arrays.copyOf(weights, edgeCount), Arrays.copyOf(
+							firstChildren, edgeCount), Arrays.copyOf(
+							secondChildren, edgeCount));
+		}
+
+		private void updateNeighbor(int neighbor, int node, NodeQueue queue) {
+			if (!contracted[neighbor] && updatedFor[neighbor] != node) {
+				updatedFor[neighbor] = node;
+				levels[neighbor] = Math.max(levels[neighbor], levels[node] + 1);
+				contractedNeighbors[neighbor]++;
+				outCounts[neighbor] = removeContracted(outEdges[neighbor],
+						outCounts[neighbor], targets);
+				inCounts[neighbor] = removeContracted(inEdges[neighbor],
+						inCounts[neighbor], sources);
+				queue.update(neighbor, getPriority(neighbor));
+			}
+		}
+
+		/** Removes the edges to or from contracted nodes from a list. */
+		private int removeContracted(int[] edges, int count, int[] ends) {
+			int result = 0;
+			for (int i = 0; i < count; i++)
+				if (!contracted[ends[edges[i]]])
+					edges[result++] = edges[i];
+			return result;
+		}
+
+		private float getPriority(int node) {
+			int removed = 0;
+			for (int i = 0; i < outCounts[node]; i++)
+				if (!contracted[targets[outEdges[node][i]]])
+					removed++;
+			for (int i = 0; i < inCounts[node]; i++)
+				if (!contracted[sources[inEdges[node][i]]])
+					removed++;
+			return 2 * contract(node, true) - 2 * removed
+					+ contractedNeighbors[node] + levels[node];
+		}
+
+		/**
+		 * Adds the shortcuts needed to remove the node from the remaining
+		 * graph, or only counts them.
+		 */
+		private int contract(int node, boolean simulate) {
+			int result = 0;
+			for (int i = 0; i < inCounts[node]; i++) {
+				int inEdge = inEdges[node][i];
+				int source = sources[inEdge];
+				if (contracted[source]
+						|| !isShortest(inEdges[node], i, inCounts[node], sources))
+					continue;
+				float maxDistance = -1f;
+				for (int j = 0; j < outCounts[node]; j++) {
+					int target = targets[outEdges[node][j]];
+					if (target != source && !contracted[target])
+						maxDistance = Math.max(maxDistance, weights[inEdge]
+								+ weights[outEdges[node][j]]);
+				}
+				if (maxDistance < 0f)
+					continue;
+				searchWitnesses(source, node, maxDistance);
+				for (int j = 0; j < outCounts[node]; j++) {
+					int outEdge = outEdges[node][j];
+					int target = targets[outEdge];
+					float distance = weights[inEdge] + weights[outEdge];
+					if (target == source || contracted[target]
+							|| !isShortest(outEdges[node], j, outCounts[node], targets)
+							|| reached[target] == search
+							&& distances[target] <= distance * WITNESS_TOLERANCE)
+						continue;
+					result++;
+					if (!simulate && !hasEdge(source, target, distance))
+						addEdge(source, target, distance, inEdge, outEdge);
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Checks whether an edge of a list is the first of the shortest edges
+		 * between its end nodes, so that parallel edges are ignored.
+		 */
+		private boolean isShortest(int[] edges, int pos, int count, int[] ends) {
+			int edge = edges[pos];
+			for (int i = 0; i < count; i++) {
+				int other = edges[i];
+				if (i != pos && ends[other] == ends[edge]
+						&& (weights[other] < weights[edge] || weights[other] == weights[edge]
+								&& i < pos))
+					return false;
+			}
+			return true;
+		}
+
+		/** Dijkstra search in the remaining graph without the node. */
+		private void searchWitnesses(int source, int ignoredNode,
+				float maxDistance) {
+			search++;
+			witnessQueue.clear();
+			reached[source] = search;
+			distances[source] = 0f;
+			witnessQueue.insertOrDecrease(source, 0f);
+			int settled = 0;
+			while (!witnessQueue.isEmpty()
+					&& witnessQueue.peekKey() <= maxDistance
+					&& settled++ < MAX_SETTLED_NODES) {
+				int node = witnessQueue.poll();
+				for (int i = 0; i < outCounts[node]; i++) {
+					int edge = outEdges[node][i];
+					int target = targets[edge];
+					if (target == ignoredNode || contracted[target])
+						continue;
+					float distance = distances[node] + weights[edge];
+					if (distance > maxDistance)
+						continue;
+					if (reached[target] != search
+							|| distance < distances[target]) {
+						reached[target] = search;
+						distances[target] = distance;
+						witnessQueue.insertOrDecrease(target, distance);
+					}
+				}
+			}
+		}
+
+		private boolean hasEdge(int source, int target, float maxWeight) {
+			for (int i = 0; i < outCounts[source]; i++) {
+				int edge = outEdges[source][i];
+				if (targets[edge] == target && weights[edge] <= maxWeight)
+					return true;
+			}
+			return false;
+		}
+
+		private void addEdge(int source, int target, float weight,
+				int firstChild, int secondChild) {
+			if (edgeCount == sources.length) {
+				int capacity = 2 * edgeCount;
+				sources = Arrays.copyOf(sources, capacity);
+				targets = Arrays.copyOf(targets, capacity);
+				weights = Arrays.copyOf(weights, capacity);
+				firstChildren = Arrays.copyOf(firstChildren, capacity);
+				secondChildren = Arrays.copyOf(secondChildren, capacity);
+			}
+			int edge = edgeCount++;
+			sources[edge] = source;
+			targets[edge] = target;
+			weights[edge] = weight;
+			firstChildren[edge] = firstChild;
+			secondChildren[edge] = secondChild;
+			outCounts[source] = append(outEdges, outCounts, source, edge);
+			inCounts[target] = append(inEdges, inCounts, target, edge);
+		}
+
+		private static int append(int[][] lists, int[] counts, int node,
+				int edge) {
+			int[] list = lists[node];
+			if (list == null)
+				list = lists[node] = new int[4];
+			else if (counts[node] == list.length)
+				list = lists[node] = Arrays.copyOf(list, 2 * list.length);
+			list[counts[node]] = edge;
+			return counts[node] + 1;
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package aimax.osm.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import aima.core.util.Tasks;
+import aimax.osm.data.entities.MapNode;
+
+/**
+ * Bidirectional Dijkstra search on a {@link ContractionHierarchy}. The forward
+ * search follows edges to nodes of higher rank from the start, the backward
+ * search follows edges from nodes of higher rank into the goal, and a shortest
+ * path is found at the node of highest rank where both meet. Both searches
+ * typically settle only a few hundred nodes, even on large maps. Shortcuts of
+ * the resulting path are unpacked to edges of the routing graph. The work
+ * arrays are reused by all queries, so an instance must not be shared by
+ * concurrent searches.
+ */
+public class ContractionHierarchySearch implements PathFinder {
+	// parent codes of the nodes reached first
+	private static final int START = -1;
+	/** Forward: start chain traveled along; backward: goal chain. */
+	private static final int CHAIN_FORWARD = -2;
+	/** Forward: start chain traveled against; backward: goal chain. */
+	private static final int CHAIN_BACKWARD = -3;
+
+	private final ContractionHierarchy hierarchy;
+	private final RoutingGraph graph;
+	private final Direction forward;
+	private final Direction backward;
+	private int query;
+
+	private float best;
+	private int meetingNode;
+	private float pathCost;
+	private int nodesSettled;
+
+	public ContractionHierarchySearch(ContractionHierarchy hierarchy) {
+		this.hierarchy = hierarchy;
+		graph = hierarchy.getGraph();
+		forward = new Direction(graph.getNodeCount());
+		backward = new Direction(graph.getNodeCount());
+	}
+
+	public ContractionHierarchy getHierarchy() {
+		return hierarchy;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<MapNode> findPath(MapNode from, MapNode to) {
+		pathCost = Float.POSITIVE_INFINITY;
+		nodesSettled = 0;
+		RoutingGraph.Location source = graph.locate(from);
+		RoutingGraph.Location goal = graph.locate(to);
+		if (source == null || goal == null)
+			return null;
+		if (from == to) {
+			pathCost = 0f;
+			return new ArrayList<>(Collections.singletonList(from));
+		}
+		if (++query == 0) {
+			forward.reset();
+			backward.reset();
+			query = 1;
+		}
+		forward.queue.clear();
+		backward.queue.clear();
+		best = Float.POSITIVE_INFINITY;
+		meetingNode = -1;
+		// both on the same chain
+		if (!source.isNode() && !goal.isNode()
+				&& source.getChain() == goal.getChain()) {
+			float d = goal.getOffset() - source.getOffset();
+			if (d >= 0 && source.isForwardAllowed()
+					|| d <= 0 && source.isBackwardAllowed())
+				best = Math.abs(d);
+		}
+
+		if (source.isNode()) {
+			forward.reach(source.getNode(), 0f, START);
+		} else {
+			if (source.isForwardAllowed())
+				forward.reach(source.getChainEnd(), source.getChainLength()
+						- source.getOffset(), CHAIN_FORWARD);
+			if (source.isBackwardAllowed())
+				forward.reach(source.getChainStart(), source.getOffset(),
+						CHAIN_BACKWARD);
+		}
+		if (goal.isNode()) {
+			backward.reach(goal.getNode(), 0f, START);
+		} else {
+			if (goal.isForwardAllowed())
+				backward.reach(goal.getChainStart(), goal.getOffset(),
+						CHAIN_FORWARD);
+			if (goal.isBackwardAllowed())
+				backward.reach(goal.getChainEnd(), goal.getChainLength()
+						- goal.getOffset(), CHAIN_BACKWARD);
+		}
+
+		boolean forwardTurn = true;
+		while (!Tasks.currIsCancelled()) {
+			boolean forwardDone = forward.isDone();
+			boolean backwardDone = backward.isDone();
+			if (forwardDone && backwardDone)
+				break;
+			if (forwardTurn && !forwardDone || backwardDone)
+				settleForward();
+			else
+				settleBackward();
+			forwardTurn = !forwardTurn;
+		}
+		if (best == Float.POSITIVE_INFINITY)
+			return null;
+		pathCost = best;
+		if (meetingNode == -1)
+			return graph.expandChainPath(from, to);
+		return createPath(from, to);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public float getPathCost() {
+		return pathCost;
+	}
+
+	/**
+	 * Returns the number of nodes settled by both searches of the last query.
+	 */
+	@Override
+	public int getNodesExpanded() {
+		return nodesSettled;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void settleForward() {
+		int node = forward.queue.poll();
+		nodesSettled++;
+		float dist = forward.distances[node];
+		checkMeeting(node);
+		for (int i = hierarchy.firstUpEdge[node]; i < hierarchy.firstUpEdge[node + 1]; i++) {
+			int edge = hierarchy.upEdges[i];
+			forward.reach(hierarchy.edgeTargets[edge], dist
+					+ hierarchy.edgeWeights[edge], edge);
+		}
+	}
+
+	private void settleBackward() {
+		int node = backward.queue.poll();
+		nodesSettled++;
+		float dist = backward.distances[node];
+		checkMeeting(node);
+		for (int i = hierarchy.firstDownEdge[node]; i < hierarchy.firstDownEdge[node + 1]; i++) {
+			int edge = hierarchy.downEdges[i];
+			backward.reach(hierarchy.edgeSources[edge], dist
+					+ hierarchy.edgeWeights[edge], edge);
+		}
+	}
+
+	private void checkMeeting(int node) {
+		if (forward.reached[node] == query && backward.reached[node] == query) {
+			float dist = forward.distances[node] + backward.distances[node];
+			if (dist < best) {
+				best = dist;
+				meetingNode = node;
+			}
+		}
+	}
+
+	private List<MapNode> createPath(MapNode from, MapNode to) {
+		List<Integer> edges = new ArrayList<>();
+		List<Integer> upEdges = new ArrayList<>();
+		int node = meetingNode;
+		while (forward.parentEdges[node] >= 0) {
+			upEdges.add(forward.parentEdges[node]);
+			node = hierarchy.edgeSources[forward.parentEdges[node]];
+		}
+		int head = toDirection(forward.parentEdges[node]);
+		for (int i = upEdges.size() - 1; i >= 0; i--)
+			hierarchy.unpackEdge(upEdges.get(i), edges);
+		node = meetingNode;
+		while (backward.parentEdges[node] >= 0) {
+			hierarchy.unpackEdge(backward.parentEdges[node], edges);
+			node = hierarchy.edgeTargets[backward.parentEdges[node]];
+		}
+		int tail = toDirection(backward.parentEdges[node]);
+		return graph.expandPath(from, head, edges, tail, to);
+	}
+
+	private static int toDirection(int parentCode) {
+		if (parentCode == CHAIN_FORWARD)
+			return RoutingGraph.ALONG_CHAIN;
+		else if (parentCode == CHAIN_BACKWARD)
+			return RoutingGraph.AGAINST_CHAIN;
+		return RoutingGraph.ON_NODE;
+	}
+
+	/** State of one of the two searches. */
+	private class Direction {
+		final NodeQueue queue;
+		final float[] distances;
+		final int[] parentEdges;
+		/** Query number for which distances are valid. */
+		final int[] reached;
+
+		Direction(int nodeCount) {
+			queue = new NodeQueue(nodeCount);
+			distances = new float[nodeCount];
+			parentEdges = new int[nodeCount];
+			reached = new int[nodeCount];
+		}
+
+		/** No shorter path can be found via the remaining nodes. */
+		boolean isDone() {
+			return queue.isEmpty() || queue.peekKey() >= best;
+		}
+
+		void reach(int node, float dist, int parentEdge) {
+			if (reached[node] != query || dist < distances[node]) {
+				reached[node] = query;
+				distances[node] = dist;
+				parentEdges[node] = parentEdge;
+				queue.insertOrDecrease(node, dist);
+			}
+		}
+
+		void reset() {
+			Arrays.fill(reached, 0);
+		}
+	}
+}
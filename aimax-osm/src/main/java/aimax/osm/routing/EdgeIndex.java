@@ -0,0 +1,141 @@
+package aimax.osm.routing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.impl.PackedRTree;
+
+/**
+ * Spatial index of the edges of a {@link RoutingGraph}, which finds the
+ * points on the road network near a measured position. The way node positions
+ * of all edges are stored in flat arrays together with their distances from
+ * the edge source, and the edge boxes are indexed by a packed R-tree.
+ * Instances are immutable and can be shared by concurrent map matchers (see
+ * {@link MapMatcher}).
+ */
+public class EdgeIndex {
+	private static final double KM_PER_DEG = Position.EARTH_RADIUS * Math.PI
+			/ 180.0;
+
+	private final RoutingGraph graph;
+	/** Index of the first vertex of each edge, plus the total count. */
+	private final int[] firstVertex;
+	private final float[] lats;
+	private final float[] lons;
+	/** Distance of each vertex from the source of its edge in KM. */
+	private final float[] offsets;
+	private final PackedRTree<Integer> tree;
+
+	/** Creates the index. The edges are processed in parallel. */
+	public EdgeIndex(RoutingGraph graph) {
+		this.graph = graph;
+		int edgeCount = graph.getEdgeCount();
+		List<List<MapNode>> edgeNodes = new ArrayList<>(Collections.nCopies(
+				edgeCount, (List<MapNode>) null));
+		IntStream.range(0, edgeCount).parallel()
+				.forEach(e -> edgeNodes.set(e, graph.getEdgeNodes(e)));
+		firstVertex = new int[edgeCount + 1];
+		for (int e = 0; e < edgeCount; e++)
+			firstVertex[e + 1] = firstVertex[e] + edgeNodes.get(e).size();
+		lats = new float[firstVertex[edgeCount]];
+		lons = new float[lats.length];
+		offsets = new float[lats.length];
+		float[] latMin = new float[edgeCount];
+		float[] lonMin = new float[edgeCount];
+		float[] latMax = new float[edgeCount];
+		float[] lonMax = new float[edgeCount];
+		IntStream.range(0, edgeCount).parallel().forEach(e -> {
+			int v = firstVertex[e];
+			double offset = 0.0;
+			latMin[e] = lonMin[e] = Float.POSITIVE_INFINITY;
+			latMax[e] = lonMax[e] = Float.NEGATIVE_INFINITY;
+			for (MapNode node : edgeNodes.get(e)) {
+				lats[v] = node.getLat();
+				lons[v] = node.getLon();
+				if (v > firstVertex[e])
+					offset += Position.getDistKM(lats[v - 1], lons[v - 1],
+							lats[v], lons[v]);
+				offsets[v] = (float) offset;
+				latMin[e] = Math.min(latMin[e], lats[v]);
+				lonMin[e] = Math.min(lonMin[e], lons[v]);
+				latMax[e] = Math.max(latMax[e], lats[v]);
+				lonMax[e] = Math.max(lonMax[e], lons[v]);
+				v++;
+			}
+		});
+		List<Integer> edges = new ArrayList<>(edgeCount);
+		for (int e = 0; e < edgeCount; e++)
+			edges.add(e);
+		tree = new PackedRTree<>(edges, latMin, lonMin, latMax, lonMax);
+	}
+
+	public RoutingGraph getGraph() {
+		return graph;
+	}
+
+	/** Returns the length of an edge in KM, measured along its way nodes. */
+	public float getEdgeLength(int edge) {
+		return offsets[firstVertex[edge + 1] - 1];
+	}
+
+	/**
+	 * Returns for each edge within the radius around the position the point
+	 * of the edge which is nearest to the position. At most
+	 * <code>maxCount</code> points are returned, in ascending order of
+	 * distance. Distances are computed in a local planar approximation, which
+	 * is accurate for radiuses of a few KM.
+	 */
+	public List<MatchedPosition> getCandidates(Position pos, float radius,
+			int maxCount) {
+		float lat = pos.getLat();
+		float lon = pos.getLon();
+		double kx = KM_PER_DEG * Math.cos(Math.toRadians(lat));
+		float dLat = (float) (radius / KM_PER_DEG);
+		float dLon = (float) (radius / Math.max(kx, 1e-6));
+		BoundingBox bb = new BoundingBox(lat - dLat, lon - dLon, lat + dLat,
+				lon + dLon);
+		List<MatchedPosition> result = new ArrayList<>();
+		for (int edge : tree.query(bb, null)) {
+			double bestDist2 = Double.POSITIVE_INFINITY;
+			int bestV = -1;
+			double bestT = 0.0;
+			for (int v = firstVertex[edge]; v < firstVertex[edge + 1] - 1; v++) {
+				double x1 = (lons[v] - lon) * kx;
+				double y1 = (lats[v] - lat) * KM_PER_DEG;
+				double dx = (lons[v + 1] - lons[v]) * kx;
+				double dy = (lats[v + 1] - lats[v]) * KM_PER_DEG;
+				double len2 = dx * dx + dy * dy;
+				double t = len2 > 0 ? -(x1 * dx + y1 * dy) / len2 : 0.0;
+				t = Math.max(0.0, Math.min(1.0, t));
+				double x = x1 + t * dx;
+				double y = y1 + t * dy;
+				double dist2 = x * x + y * y;
+				if (dist2 < bestDist2) {
+					bestDist2 = dist2;
+					bestV = v;
+					bestT = t;
+				}
+			}
+			float dist = (float) Math.sqrt(bestDist2);
+			if (bestV >= 0 && dist <= radius) {
+				float offset = (float) (offsets[bestV] + bestT
+						* (offsets[bestV + 1] - offsets[bestV]));
+				float pLat = (float) (lats[bestV] + bestT
+						* (lats[bestV + 1] - lats[bestV]));
+				float pLon = (float) (lons[bestV] + bestT
+						* (lons[bestV + 1] - lons[bestV]));
+				result.add(new MatchedPosition(pos, edge, offset, pLat, pLon,
+						dist));
+			}
+		}
+		result.sort((p1, p2) -> Float.compare(p1.getDistance(),
+				p2.getDistance()));
+		return result.size() > maxCount ? new ArrayList<>(result.subList(0,
+				maxCount)) : result;
+	}
+}
@@ -0,0 +1,304 @@
+package aimax.osm.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import aimax.osm.data.entities.MapNode;
+
+/**
+ * Precomputed shortest path distances from and to a small set of landmark
+ * nodes of a {@link RoutingGraph}, which provide lower bounds for the distance
+ * between arbitrary nodes by the triangle inequality (ALT: A*, landmarks,
+ * triangle inequality, Goldberg and Harrelson 2005). For a landmark l, the
+ * distance from v to t is at least d(l,t) - d(l,v) and d(v,l) - d(t,l). On road
+ * networks with landmarks at the border of the map, these bounds are much
+ * tighter than the straight-line distance.
+ *
+ * <p>
+ * The distances are stored node by node in two float arrays, so that the
+ * bounds for one node are read from adjacent memory. Distances of unreachable
+ * nodes are infinite and do not contribute to bounds.
+ * </p>
+ */
+public class Landmarks {
+
+	/** Strategies for landmark selection. */
+	public enum Strategy {
+		/**
+		 * Selects the node farthest from all landmarks selected so far, which
+		 * spreads the landmarks along the border of the map.
+		 */
+		FARTHEST,
+		/**
+		 * Grows a shortest path tree from a random node and selects the leaf
+		 * of the subtree with the worst bounds which contains no landmark
+		 * (Goldberg and Werneck 2005).
+		 */
+		AVOID
+	}
+
+	private final RoutingGraph graph;
+	private final int[] landmarks;
+	/** d(l, v) at v * count + l. */
+	private final float[] fromLandmarks;
+	/** d(v, l) at v * count + l. */
+	private final float[] toLandmarks;
+
+	/**
+	 * Selects landmarks and computes their distances. The selection needs the
+	 * distances from the landmarks selected before, the distances to the
+	 * landmarks are computed in parallel afterwards.
+	 *
+	 * @param count
+	 *            The number of landmarks, typically between 4 and 16.
+	 */
+	public static Landmarks compute(RoutingGraph graph, int count,
+			Strategy strategy) {
+		List<float[]> from = new ArrayList<>();
+		int[] selected = select(graph, Math.min(count, graph.getNodeCount()),
+				strategy, from);
+		float[][] to = new float[selected.length][];
+		IntStream.range(0, selected.length).parallel().forEach(
+				i -> to[i] = computeDistances(graph, selected[i], true, null));
+		return new Landmarks(graph, selected,
+				from.toArray(new float[selected.length][]), to);
+	}
+
+	private Landmarks(RoutingGraph graph, int[] landmarks, float[][] from,
+			float[][] to) {
+		this.graph = graph;
+		this.landmarks = landmarks;
+		int count = landmarks.length;
+		fromLandmarks = new float[graph.getNodeCount() * count];
+		toLandmarks = new float[graph.getNodeCount() * count];
+		for (int l = 0; l < count; l++) {
+			for (int node = 0; node < graph.getNodeCount(); node++) {
+				fromLandmarks[node * count + l] = from[l][node];
+				toLandmarks[node * count + l] = to[l][node];
+			}
+		}
+	}
+
+	public RoutingGraph getGraph() {
+		return graph;
+	}
+
+	/** Returns the graph node indices of the landmarks. */
+	public int[] getLandmarks() {
+		return landmarks.clone();
+	}
+
+	/** Returns a lower bound for the distance between two graph nodes. */
+	public float getLowerBound(int node, int target) {
+		int count = landmarks.length;
+		int v = node * count;
+		int t = target * count;
+		float result = 0f;
+		for (int l = 0; l < count; l++) {
+			float bound = fromLandmarks[t + l] - fromLandmarks[v + l];
+			if (bound > result && bound != Float.POSITIVE_INFINITY)
+				result = bound;
+			bound = toLandmarks[v + l] - toLandmarks[t + l];
+			if (bound > result && bound != Float.POSITIVE_INFINITY)
+				result = bound;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a lower bound for the distance from a graph node to a location,
+	 * which is entered via the ends of its chain if it is no graph node.
+	 */
+	public float getLowerBound(int node, RoutingGraph.Location goal) {
+		if (goal.isNode())
+			return getLowerBound(node, goal.getNode());
+		float result = Float.POSITIVE_INFINITY;
+		if (goal.isForwardAllowed())
+			result = getLowerBound(node, goal.getChainStart())
+					+ goal.getOffset();
+		if (goal.isBackwardAllowed())
+			result = Math.min(result, getLowerBound(node, goal.getChainEnd())
+					+ goal.getChainLength() - goal.getOffset());
+		return result;
+	}
+
+	/**
+	 * Returns a lower bound for the distance between two way nodes of the
+	 * graph, or 0 if one of them is not part of the graph.
+	 */
+	public float getLowerBound(MapNode from, MapNode to) {
+		RoutingGraph.Location goal = graph.locate(to);
+		return goal != null ? getLowerBound(from, goal) : 0f;
+	}
+
+	/**
+	 * Returns a lower bound for the distance from a way node to a location, or
+	 * 0 if the way node is not part of the graph.
+	 */
+	public float getLowerBound(MapNode from, RoutingGraph.Location goal) {
+		RoutingGraph.Location source = graph.locate(from);
+		if (source == null)
+			return 0f;
+		if (source.isNode())
+			return getLowerBound(source.getNode(), goal);
+		if (source.getChain() == goal.getChain())
+			return 0f;
+		float result = Float.POSITIVE_INFINITY;
+		if (source.isForwardAllowed())
+			result = source.getChainLength() - source.getOffset()
+					+ getLowerBound(source.getChainEnd(), goal);
+		if (source.isBackwardAllowed())
+			result = Math.min(result, source.getOffset()
+					+ getLowerBound(source.getChainStart(), goal));
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "Landmarks" + Arrays.toString(landmarks);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Selects the landmarks and adds the distances from them to the list.
+	 */
+	private static int[] select(RoutingGraph graph, int count,
+			Strategy strategy, List<float[]> distances) {
+		Random random = new Random(graph.getNodeCount());
+		int[] result = new int[count];
+		for (int i = 0; i < count; i++) {
+			int root = random.nextInt(graph.getNodeCount());
+			int landmark = -1;
+			if (strategy == Strategy.AVOID && i > 0)
+				landmark = selectAvoiding(graph, root, result, i, distances);
+			if (landmark == -1)
+				landmark = selectFarthest(graph, root, distances);
+			result[i] = landmark;
+			distances.add(computeDistances(graph, landmark, false, null));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the node with the maximum distance to the nearest landmark
+	 * among the nodes reachable from the root or the landmarks.
+	 */
+	private static int selectFarthest(RoutingGraph graph, int root,
+			List<float[]> distances) {
+		float[] minDistances;
+		if (distances.isEmpty()) {
+			minDistances = computeDistances(graph, root, false, null);
+		} else {
+			minDistances = distances.get(0).clone();
+			for (float[] d : distances)
+				for (int node = 0; node < d.length; node++)
+					minDistances[node] = Math.min(minDistances[node], d[node]);
+		}
+		int result = root;
+		float maxDistance = -1f;
+		for (int node = 0; node < minDistances.length; node++) {
+			if (minDistances[node] != Float.POSITIVE_INFINITY
+					&& minDistances[node] > maxDistance) {
+				result = node;
+				maxDistance = minDistances[node];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Weights the nodes of a shortest path tree by the difference between
+	 * their distance from the root and the current lower bound, and descends
+	 * from the root to the heaviest subtree without landmark. Returns the leaf
+	 * reached or -1 if all subtrees contain landmarks.
+	 */
+	private static int selectAvoiding(RoutingGraph graph, int root,
+			int[] landmarks, int count, List<float[]> fromLandmarks) {
+		int nodeCount = graph.getNodeCount();
+		int[] parents = new int[nodeCount];
+		float[] d = computeDistances(graph, root, false, parents);
+		List<Integer> order = new ArrayList<>();
+		for (int node = 0; node < nodeCount; node++)
+			if (d[node] != Float.POSITIVE_INFINITY)
+				order.add(node);
+		order.sort((a, b) -> Float.compare(d[a], d[b]));
+		float[] sizes = new float[nodeCount];
+		boolean[] covered = new boolean[nodeCount];
+		int[] heaviestChildren = new int[nodeCount];
+		Arrays.fill(heaviestChildren, -1);
+		for (int i = 0; i < count; i++)
+			covered[landmarks[i]] = true;
+		for (int i = order.size() - 1; i >= 0; i--) {
+			int node = order.get(i);
+			float bound = 0f;
+			for (float[] from : fromLandmarks)
+				if (from[node] != Float.POSITIVE_INFINITY
+						&& from[root] != Float.POSITIVE_INFINITY)
+					bound = Math.max(bound, from[node] - from[root]);
+			sizes[node] += d[node] - bound;
+			if (covered[node])
+				sizes[node] = 0f;
+			int parent = parents[node];
+			if (parent >= 0) {
+				sizes[parent] += sizes[node];
+				covered[parent] |= covered[node];
+				if (heaviestChildren[parent] == -1
+						|| sizes[node] > sizes[heaviestChildren[parent]])
+					heaviestChildren[parent] = node;
+			}
+		}
+		int result = root;
+		while (heaviestChildren[result] != -1
+				&& sizes[heaviestChildren[result]] > 0f)
+			result = heaviestChildren[result];
+		return result != root ? result : -1;
+	}
+
+	/**
+	 * Computes the distances from (or to, if backward) a node to all graph
+	 * nodes by means of Dijkstra's algorithm.
+	 *
+	 * @param parents
+	 *            Receives the parent nodes of the shortest path tree if not
+	 *            null.
+	 */
+	private static float[] computeDistances(RoutingGraph graph, int source,
+			boolean backward, int[] parents) {
+		int nodeCount = graph.getNodeCount();
+		float[] result = new float[nodeCount];
+		Arrays.fill(result, Float.POSITIVE_INFINITY);
+		if (parents != null)
+			Arrays.fill(parents, -1);
+		boolean[] settled = new boolean[nodeCount];
+		NodeQueue queue = new NodeQueue(nodeCount);
+		result[source] = 0f;
+		queue.insertOrDecrease(source, 0f);
+		while (!queue.isEmpty()) {
+			int node = queue.poll();
+			settled[node] = true;
+			int begin = backward ? graph.getInEdgeBegin(node) : graph
+					.getOutEdgeBegin(node);
+			int end = backward ? graph.getInEdgeEnd(node) : graph
+					.getOutEdgeEnd(node);
+			for (int i = begin; i < end; i++) {
+				int edge = backward ? graph.getInEdge(i) : i;
+				int next = backward ? graph.getEdgeSource(edge) : graph
+						.getEdgeTarget(edge);
+				float distance = result[node] + graph.getEdgeWeight(edge);
+				if (!settled[next] && distance < result[next]) {
+					result[next] = distance;
+					if (parents != null)
+						parents[next] = node;
+					queue.insertOrDecrease(next, distance);
+				}
+			}
+		}
+		return result;
+	}
+}
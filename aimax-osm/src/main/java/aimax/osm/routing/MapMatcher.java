@@ -0,0 +1,465 @@
+package aimax.osm.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import aimax.osm.data.Position;
+import aimax.osm.gps.GpsFix;
+import aimax.osm.gps.GpsPositionListener;
+
+/**
+ * Online map matching of a stream of measured positions to the most likely
+ * path on a {@link RoutingGraph}, based on a hidden Markov model (Newson and
+ * Krumm 2009). The hidden states of a position are the nearest points on the
+ * edges within the search radius (see {@link EdgeIndex}). Emission
+ * probabilities decrease with the distance between measured and matched
+ * position (Gaussian), transition probabilities with the difference between
+ * network distance and straight-line distance of consecutive positions
+ * (exponential). Network distances from all candidates of a position to all
+ * candidates of the next are computed by one bounded Dijkstra search per
+ * distinct start node, which stops as soon as all target nodes are settled.
+ *
+ * <p>
+ * The Viterbi algorithm is applied incrementally. A position is decided and
+ * reported to the listeners as soon as all surviving paths share its
+ * candidate. If this does not happen within the window size, the oldest
+ * position is decided by the currently best path, and paths contradicting the
+ * decision are dropped. So memory is bounded for arbitrarily long streams.
+ * The last decided position stays in the window with its chosen candidate as
+ * the only one, so that the following positions remain connected to it.
+ * Positions without roads in the search radius are skipped. If no candidate
+ * of a position can be reached from the candidates of the previous position,
+ * the path is decided and matching starts anew.
+ * </p>
+ *
+ * <p>
+ * The work arrays of the size of the graph are allocated once, so an instance
+ * must not be shared by concurrent streams. The edge index can be shared.
+ * </p>
+ */
+public class MapMatcher implements GpsPositionListener {
+	/** Maximal number of candidates per position. */
+	public static final int MAX_CANDIDATES = Long.SIZE;
+
+	private final EdgeIndex edgeIndex;
+	private final RoutingGraph graph;
+	private float sigma = 0.01f;
+	private float beta = 0.02f;
+	private float searchRadius = 0.05f;
+	private int maxCandidates = 8;
+	private int windowSize = 32;
+	private float maxDetourFactor = 2f;
+	private final List<MatchListener> listeners = new ArrayList<>();
+
+	// Dijkstra work arrays
+	private final NodeQueue queue;
+	private final float[] distances;
+	/** Search number for which distances are valid. */
+	private final int[] reached;
+	/** Search number in which the node was settled. */
+	private final int[] expanded;
+	/** Search number for which the node is a target. */
+	private final int[] targets;
+	private int search;
+
+	/**
+	 * Undecided positions, oldest first, possibly preceded by the last
+	 * decided position.
+	 */
+	private final List<Step> window = new ArrayList<>();
+	private int breakCount;
+
+	public MapMatcher(EdgeIndex edgeIndex) {
+		this.edgeIndex = edgeIndex;
+		graph = edgeIndex.getGraph();
+		int nodeCount = graph.getNodeCount();
+		queue = new NodeQueue(nodeCount);
+		distances = new float[nodeCount];
+		reached = new int[nodeCount];
+		expanded = new int[nodeCount];
+		targets = new int[nodeCount];
+	}
+
+	public EdgeIndex getEdgeIndex() {
+		return edgeIndex;
+	}
+
+	/**
+	 * Sets the standard deviation of the measurement error in KM (default
+	 * 0.01).
+	 */
+	public void setSigma(float sigma) {
+		this.sigma = sigma;
+	}
+
+	/**
+	 * Sets the expected difference between network distance and straight-line
+	 * distance of consecutive positions in KM (default 0.02).
+	 */
+	public void setBeta(float beta) {
+		this.beta = beta;
+	}
+
+	/**
+	 * Sets the radius in KM around a position in which candidates are searched
+	 * (default 0.05).
+	 */
+	public void setSearchRadius(float searchRadius) {
+		this.searchRadius = searchRadius;
+	}
+
+	/**
+	 * Sets the maximal number of candidates per position (default 8, at most
+	 * {@link #MAX_CANDIDATES}).
+	 */
+	public void setMaxCandidates(int maxCandidates) {
+		this.maxCandidates = Math.min(maxCandidates, MAX_CANDIDATES);
+	}
+
+	/** Sets the maximal number of undecided positions (default 32). */
+	public void setWindowSize(int windowSize) {
+		this.windowSize = Math.max(1, windowSize);
+	}
+
+	/**
+	 * Limits the network distance between consecutive positions to the
+	 * straight-line distance times this factor plus twice the search radius
+	 * (default 2).
+	 */
+	public void setMaxDetourFactor(float maxDetourFactor) {
+		this.maxDetourFactor = maxDetourFactor;
+	}
+
+	public void addMatchListener(MatchListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeMatchListener(MatchListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Returns the number of times matching was started anew because no
+	 * candidate of a position was reachable.
+	 */
+	public int getBreakCount() {
+		return breakCount;
+	}
+
+	/** Matches valid GPS fixes. */
+	@Override
+	public void positionUpdated(GpsFix pos) {
+		if (pos.isPosOk())
+			match(pos);
+	}
+
+	/**
+	 * Adds a position to the stream. Listeners are informed about all
+	 * positions which can be decided now.
+	 */
+	public void match(Position pos) {
+		List<MatchedPosition> candidates = edgeIndex.getCandidates(pos,
+				searchRadius, maxCandidates);
+		if (candidates.isEmpty())
+			return;
+		Step step = new Step(pos, candidates);
+		if (!window.isEmpty()) {
+			computeTransitions(window.get(window.size() - 1), step);
+			if (step.alive == 0) {
+				breakCount++;
+				flush();
+			}
+		}
+		if (window.isEmpty()) {
+			for (int i = 0; i < step.candidates.length; i++)
+				step.scores[i] = getEmissionScore(step.candidates[i]);
+			step.alive = getAllMask(step.candidates.length);
+		}
+		window.add(step);
+		emitDecidedSteps();
+		while (window.size() - getFirstUndecided() > windowSize) {
+			forceOldestStep();
+			emitDecidedSteps();
+		}
+	}
+
+	/**
+	 * Decides all remaining positions by the best path and informs the
+	 * listeners. The next position starts a new path.
+	 */
+	public void flush() {
+		if (window.size() > getFirstUndecided())
+			emitSteps(window.size() - 1, getBestCandidate(window.get(window
+					.size() - 1)));
+		window.clear();
+	}
+
+	/** Drops all undecided positions. */
+	public void reset() {
+		window.clear();
+		breakCount = 0;
+	}
+
+	/**
+	 * Matches a sequence of positions and returns the matched positions. The
+	 * matcher is reset before.
+	 */
+	public List<MatchedPosition> match(List<? extends Position> positions) {
+		reset();
+		List<MatchedPosition> result = new ArrayList<>(positions.size());
+		MatchListener listener = result::add;
+		addMatchListener(listener);
+		try {
+			for (Position pos : positions)
+				match(pos);
+			flush();
+		} finally {
+			removeMatchListener(listener);
+		}
+		return result;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private double getEmissionScore(MatchedPosition candidate) {
+		double d = candidate.getDistance() / sigma;
+		return -0.5 * d * d;
+	}
+
+	/**
+	 * Computes the Viterbi scores and parents of the candidates of a step
+	 * from the scores of the previous step.
+	 */
+	private void computeTransitions(Step prev, Step step) {
+		float dist = (float) Position.getDistKM(prev.pos.getLat(),
+				prev.pos.getLon(), step.pos.getLat(), step.pos.getLon());
+		float bound = maxDetourFactor * dist + 2 * searchRadius;
+		int count = step.candidates.length;
+		int[] sources = new int[count];
+		for (int j = 0; j < count; j++)
+			sources[j] = graph.getEdgeSource(step.candidates[j].getEdge());
+		double[] best = new double[count];
+		Arrays.fill(best, Double.NEGATIVE_INFINITY);
+		int[] parents = new int[count];
+		float[] routeDistances = new float[count];
+		int[] starts = new int[prev.candidates.length];
+		for (int i = 0; i < prev.candidates.length; i++)
+			starts[i] = graph.getEdgeTarget(prev.candidates[i].getEdge());
+		boolean[] done = new boolean[prev.candidates.length];
+		for (int i = 0; i < prev.candidates.length; i++) {
+			if ((prev.alive & 1L << i) == 0 || done[i])
+				continue;
+			computeDistances(starts[i], bound, sources, routeDistances);
+			// all alive candidates on edges ending in the same node
+			for (int k = i; k < prev.candidates.length; k++) {
+				if ((prev.alive & 1L << k) == 0 || starts[k] != starts[i])
+					continue;
+				done[k] = true;
+				MatchedPosition from = prev.candidates[k];
+				float head = edgeIndex.getEdgeLength(from.getEdge())
+						- from.getOffset();
+				for (int j = 0; j < count; j++) {
+					MatchedPosition to = step.candidates[j];
+					float route = Math.max(0f, head) + routeDistances[j]
+							+ to.getOffset();
+					// moves along the same edge, small backward moves are
+					// measurement errors
+					if (to.getEdge() == from.getEdge()
+							&& to.getOffset() >= from.getOffset() - 2 * sigma)
+						route = Math.abs(to.getOffset() - from.getOffset());
+					if (!(route <= bound))
+						continue;
+					double score = prev.scores[k] - Math.abs(route - dist)
+							/ beta;
+					if (score > best[j]) {
+						best[j] = score;
+						parents[j] = k;
+					}
+				}
+			}
+		}
+		double max = Double.NEGATIVE_INFINITY;
+		for (int j = 0; j < count; j++) {
+			if (best[j] > Double.NEGATIVE_INFINITY) {
+				step.scores[j] = best[j]
+						+ getEmissionScore(step.candidates[j]);
+				step.parents[j] = parents[j];
+				step.alive |= 1L << j;
+				max = Math.max(max, step.scores[j]);
+			} else {
+				step.scores[j] = Double.NEGATIVE_INFINITY;
+			}
+		}
+		// keeps the scores in a small range
+		for (int j = 0; j < count; j++)
+			step.scores[j] -= max;
+	}
+
+	/**
+	 * Computes network distances from a start node to the target nodes, which
+	 * are infinite if greater than the bound.
+	 */
+	private void computeDistances(int start, float bound, int[] targetNodes,
+			float[] result) {
+		if (++search == 0) {
+			Arrays.fill(reached, 0);
+			Arrays.fill(expanded, 0);
+			Arrays.fill(targets, 0);
+			search = 1;
+		}
+		queue.clear();
+		int remaining = 0;
+		for (int node : targetNodes) {
+			if (targets[node] != search) {
+				targets[node] = search;
+				remaining++;
+			}
+		}
+		reach(start, 0f);
+		while (!queue.isEmpty() && queue.peekKey() <= bound && remaining > 0) {
+			int node = queue.poll();
+			expanded[node] = search;
+			if (targets[node] == search)
+				remaining--;
+			float dist = distances[node];
+			for (int e = graph.getOutEdgeBegin(node); e < graph.getOutEdgeEnd(node); e++) {
+				int succ = graph.getEdgeTarget(e);
+				if (expanded[succ] != search)
+					reach(succ, dist + graph.getEdgeWeight(e));
+			}
+		}
+		for (int j = 0; j < targetNodes.length; j++)
+			result[j] = expanded[targetNodes[j]] == search ? distances[targetNodes[j]]
+					: Float.POSITIVE_INFINITY;
+	}
+
+	private void reach(int node, float dist) {
+		if (reached[node] != search || dist < distances[node]) {
+			reached[node] = search;
+			distances[node] = dist;
+			queue.insertOrDecrease(node, dist);
+		}
+	}
+
+	/**
+	 * Finds the newest step whose candidate is shared by all surviving paths,
+	 * and reports it together with all older undecided steps.
+	 */
+	private void emitDecidedSteps() {
+		long set = window.get(window.size() - 1).alive;
+		for (int j = window.size() - 1; j >= 0; j--) {
+			if (Long.bitCount(set) == 1) {
+				if (!window.get(j).decided)
+					emitSteps(j, Long.numberOfTrailingZeros(set));
+				return;
+			}
+			if (j > 0)
+				set = getParents(window.get(j), set);
+		}
+	}
+
+	/**
+	 * Decides the oldest step by the best path and drops the candidates of the
+	 * following steps which are not descendants of the decision.
+	 */
+	private void forceOldestStep() {
+		int first = getFirstUndecided();
+		int candidate = getBestCandidate(window.get(window.size() - 1));
+		for (int j = window.size() - 1; j > first; j--)
+			candidate = window.get(j).parents[candidate];
+		emitSteps(first, candidate);
+		long alive = 1L << candidate;
+		for (Step step : window.subList(1, window.size())) {
+			long stepAlive = 0;
+			for (long m = step.alive; m != 0; m &= m - 1) {
+				int i = Long.numberOfTrailingZeros(m);
+				if ((alive & 1L << step.parents[i]) != 0)
+					stepAlive |= 1L << i;
+			}
+			step.alive = stepAlive;
+			alive = stepAlive;
+		}
+		Step last = window.get(window.size() - 1);
+		for (int i = 0; i < last.candidates.length; i++)
+			if ((last.alive & 1L << i) == 0)
+				last.scores[i] = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Reports the undecided steps up to the specified one along the path
+	 * ending in the specified candidate. The specified step is kept as first
+	 * step of the window with the candidate as its only one, older steps are
+	 * removed.
+	 */
+	private void emitSteps(int last, int candidate) {
+		int first = getFirstUndecided();
+		int[] path = new int[last + 1];
+		path[last] = candidate;
+		for (int j = last; j > first; j--)
+			path[j - 1] = window.get(j).parents[path[j]];
+		for (int j = first; j <= last; j++) {
+			MatchedPosition pos = window.get(j).candidates[path[j]];
+			for (MatchListener listener : listeners)
+				listener.positionMatched(pos);
+		}
+		window.subList(0, last).clear();
+		Step anchor = window.get(0);
+		anchor.decided = true;
+		anchor.alive = 1L << candidate;
+	}
+
+	/** Returns the index of the oldest undecided step in the window. */
+	private int getFirstUndecided() {
+		return !window.isEmpty() && window.get(0).decided ? 1 : 0;
+	}
+
+	private static long getParents(Step step, long set) {
+		long result = 0;
+		for (long m = set; m != 0; m &= m - 1)
+			result |= 1L << step.parents[Long.numberOfTrailingZeros(m)];
+		return result;
+	}
+
+	private static int getBestCandidate(Step step) {
+		int result = -1;
+		for (long m = step.alive; m != 0; m &= m - 1) {
+			int i = Long.numberOfTrailingZeros(m);
+			if (result == -1 || step.scores[i] > step.scores[result])
+				result = i;
+		}
+		return result;
+	}
+
+	private static long getAllMask(int count) {
+		return count == Long.SIZE ? -1L : (1L << count) - 1;
+	}
+
+	/** Interface for listeners which are informed about matched positions. */
+	public interface MatchListener {
+		void positionMatched(MatchedPosition pos);
+	}
+
+	/** Candidates and Viterbi state of one position. */
+	private static class Step {
+		final Position pos;
+		final MatchedPosition[] candidates;
+		final double[] scores;
+		/** Index of the best predecessor of each candidate. */
+		final int[] parents;
+		/** Candidates on surviving paths. */
+		long alive;
+		/** Whether the step has been reported to the listeners. */
+		boolean decided;
+
+		Step(Position pos, List<MatchedPosition> candidates) {
+			this.pos = pos;
+			this.candidates = candidates.toArray(new MatchedPosition[candidates
+					.size()]);
+			scores = new double[candidates.size()];
+			parents = new int[candidates.size()];
+		}
+	}
+}
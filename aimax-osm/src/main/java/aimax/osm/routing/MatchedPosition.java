@@ -0,0 +1,61 @@
+package aimax.osm.routing;
+
+import aimax.osm.data.Position;
+
+/**
+ * Point on an edge of a routing graph to which a measured position, e.g. a
+ * GPS fix, has been matched (see {@link MapMatcher}). Also used for the
+ * candidates of the matcher.
+ */
+public class MatchedPosition extends Position {
+	private final Position source;
+	private final int edge;
+	private final float offset;
+	private final float distance;
+
+	/**
+	 * Creates a matched position.
+	 *
+	 * @param source
+	 *            The measured position.
+	 * @param edge
+	 *            The edge in the routing graph.
+	 * @param offset
+	 *            Distance from the edge source along the edge in KM.
+	 * @param distance
+	 *            Distance between measured and matched position in KM.
+	 */
+	public MatchedPosition(Position source, int edge, float offset,
+			float lat, float lon, float distance) {
+		super(lat, lon);
+		this.source = source;
+		this.edge = edge;
+		this.offset = offset;
+		this.distance = distance;
+	}
+
+	/** Returns the measured position. */
+	public Position getSource() {
+		return source;
+	}
+
+	public int getEdge() {
+		return edge;
+	}
+
+	/** Returns the distance from the edge source along the edge in KM. */
+	public float getOffset() {
+		return offset;
+	}
+
+	/** Returns the distance between measured and matched position in KM. */
+	public float getDistance() {
+		return distance;
+	}
+
+	@Override
+	public String toString() {
+		return "Lat: " + lat + " Lon: " + lon + " Edge: " + edge + " Offset: "
+				+ offset;
+	}
+}
@@ -0,0 +1,125 @@
+package aimax.osm.routing;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of graph node indices with float keys, supporting
+ * decrease-key in logarithmic time. Positions are kept in an array of the size
+ * of the graph, so a queue should be reused for many searches on the same
+ * graph (see {@link #clear()}).
+ */
+class NodeQueue {
+	private int[] heap;
+	private float[] keys;
+	/** Heap position + 1 for each node, 0 if the node is not contained. */
+	private int[] positions;
+	private int size;
+
+	NodeQueue(int nodeCount) {
+		heap = new int[Math.max(16, nodeCount / 16)];
+		keys = new float[nodeCount];
+		positions = new int[nodeCount];
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean contains(int node) {
+		return positions[node] != 0;
+	}
+
+	float getKey(int node) {
+		return keys[node];
+	}
+
+	/** Returns the smallest key, which must exist. */
+	float peekKey() {
+		return keys[heap[0]];
+	}
+
+	/** Inserts the node or decreases its key if the new key is smaller. */
+	void insertOrDecrease(int node, float key) {
+		int pos = positions[node] - 1;
+		if (pos < 0) {
+			if (size == heap.length)
+				heap = Arrays.copyOf(heap, size * 2);
+			pos = size++;
+			heap[pos] = node;
+			keys[node] = key;
+			siftUp(pos);
+		} else if (key < keys[node]) {
+			keys[node] = key;
+			siftUp(pos);
+		}
+	}
+
+	/** Inserts the node or changes its key. */
+	void update(int node, float key) {
+		int pos = positions[node] - 1;
+		if (pos < 0 || key < keys[node]) {
+			insertOrDecrease(node, key);
+		} else {
+			keys[node] = key;
+			siftDown(pos);
+		}
+	}
+
+	/** Removes and returns the node with the smallest key. */
+	int poll() {
+		int result = heap[0];
+		positions[result] = 0;
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			positions[heap[0]] = 1;
+			siftDown(0);
+		}
+		return result;
+	}
+
+	/** Removes all nodes in time linear to the size of the queue. */
+	void clear() {
+		for (int i = 0; i < size; i++)
+			positions[heap[i]] = 0;
+		size = 0;
+	}
+
+	private void siftUp(int pos) {
+		int node = heap[pos];
+		float key = keys[node];
+		while (pos > 0) {
+			int parent = (pos - 1) >>> 1;
+			if (keys[heap[parent]] <= key)
+				break;
+			heap[pos] = heap[parent];
+			positions[heap[pos]] = pos + 1;
+			pos = parent;
+		}
+		heap[pos] = node;
+		positions[node] = pos + 1;
+	}
+
+	private void siftDown(int pos) {
+		int node = heap[pos];
+		float key = keys[node];
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= size)
+				break;
+			if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]])
+				child++;
+			if (key <= keys[heap[child]])
+				break;
+			heap[pos] = heap[child];
+			positions[heap[pos]] = pos + 1;
+			pos = child;
+		}
+		heap[pos] = node;
+		positions[node] = pos + 1;
+	}
+}
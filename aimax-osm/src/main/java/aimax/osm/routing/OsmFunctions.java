@@ -31,6 +31,57 @@ public class OsmFunctions {
         return action.getTravelDistance();
     }
 
+    /**
+     * Converts a path of directly linked way nodes (as returned by a
+     * {@link PathFinder}) into move actions. Consecutive steps along the same
+     * way in the same direction are merged into one action.
+     *
+     * @return The actions, or null if two consecutive nodes are not linked.
+     */
+    public static List<OsmMoveAction> toMoveActions(List<MapNode> path) {
+        List<OsmMoveAction> result = new ArrayList<>();
+        MapWay way = null;
+        int fromIdx = -1;
+        int toIdx = -1;
+        for (int i = 1; i < path.size(); i++) {
+            MapNode from = path.get(i - 1);
+            MapNode to = path.get(i);
+            int nextIdx = -1;
+            if (way != null) {
+                List<MapNode> wayNodes = way.getNodes();
+                int step = toIdx > fromIdx ? 1 : -1;
+                if (toIdx + step >= 0 && toIdx + step < wayNodes.size()
+                        && wayNodes.get(toIdx + step) == to)
+                    nextIdx = toIdx + step;
+            }
+            if (nextIdx != -1) {
+                toIdx = nextIdx;
+                continue;
+            }
+            if (way != null)
+                result.add(new OsmMoveAction(way, fromIdx, toIdx));
+            way = null;
+            for (WayRef wref : from.getWayRefs()) {
+                List<MapNode> wayNodes = wref.getWay().getNodes();
+                int idx = wref.getNodeIdx();
+                if (idx + 1 < wayNodes.size() && wayNodes.get(idx + 1) == to)
+                    toIdx = idx + 1;
+                else if (idx > 0 && wayNodes.get(idx - 1) == to)
+                    toIdx = idx - 1;
+                else
+                    continue;
+                way = wref.getWay();
+                fromIdx = idx;
+                break;
+            }
+            if (way == null)
+                return null;
+        }
+        if (way != null)
+            result.add(new OsmMoveAction(way, fromIdx, toIdx));
+        return result;
+    }
+
 
     /**
      * Generates {@link aimax.osm.routing.OsmMoveAction}s for states. If a goal is
@@ -0,0 +1,38 @@
+package aimax.osm.routing;
+
+import aima.core.search.framework.Node;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.MapNode;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Implements the ALT heuristic, which combines the lower bounds of precomputed
+ * landmark distances with the straight-line distance (see {@link Landmarks}).
+ * The landmarks must have been computed for the way filter and one-way mode
+ * of the problem.
+ */
+public class OsmLandmarkHeuristicFunction implements ToDoubleFunction<Node<MapNode, OsmMoveAction>> {
+	private Landmarks landmarks;
+	private MapNode goalState;
+	private RoutingGraph.Location goalLocation;
+
+	public OsmLandmarkHeuristicFunction(Landmarks landmarks, MapNode goalState) {
+		this.landmarks = landmarks;
+		this.goalState = goalState;
+		goalLocation = landmarks.getGraph().locate(goalState);
+	}
+
+	/**
+	 * Assumes a <code>MapNode</code> as state and returns a lower bound of the
+	 * distance to the goal in KM.
+	 */
+	@Override
+	public double applyAsDouble(Node<MapNode, OsmMoveAction> node) {
+		double result = (new Position(node.getState())).getDistKM(goalState);
+		if (goalLocation != null)
+			result = Math.max(result,
+					landmarks.getLowerBound(node.getState(), goalLocation));
+		return result;
+	}
+}
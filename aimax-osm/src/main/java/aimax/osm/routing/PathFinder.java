@@ -0,0 +1,27 @@
+package aimax.osm.routing;
+
+import java.util.List;
+
+import aimax.osm.data.entities.MapNode;
+
+/**
+ * Search engine for shortest paths between way nodes on a routing graph (see
+ * {@link RoutingGraph}).
+ */
+public interface PathFinder {
+
+	/**
+	 * Computes a shortest path between two way nodes.
+	 *
+	 * @return All way nodes of the path, starting with <code>from</code> and
+	 *         ending with <code>to</code>, or null if no path exists or one of
+	 *         the nodes is not part of the graph.
+	 */
+	List<MapNode> findPath(MapNode from, MapNode to);
+
+	/** Returns the length of the last path found in KM. */
+	float getPathCost();
+
+	/** Returns the number of graph nodes expanded by the last search. */
+	int getNodesExpanded();
+}
@@ -4,6 +4,7 @@ import aima.core.search.framework.Node;
 import aima.core.search.framework.SearchForActions;
 import aima.core.search.framework.problem.Problem;
 import aima.core.search.framework.qsearch.GraphSearch;
+import aima.core.search.framework.qsearch.QueueSearch;
 import aima.core.search.informed.AStarSearch;
 import aima.core.util.Tasks;
 import aimax.osm.data.MapWayAttFilter;
@@ -11,7 +12,9 @@ import aimax.osm.data.MapWayFilter;
 import aimax.osm.data.OsmMap;
 import aimax.osm.data.Position;
 import aimax.osm.data.entities.MapNode;
+import aimax.osm.routing.OsmFunctions.OneWayMode;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -21,10 +24,35 @@ import java.util.function.ToDoubleFunction;
  * Implements a search engine for shortest path calculations. Modified versions
  * can be implemented quite easily by overriding the various factory methods.
  * 
+ * <p>
+ * By default, paths are searched on cached routing graphs (see
+ * {@link RoutingGraph}) by the path finder of {@link #createPathFinder}. In
+ * this mode, {@link #createProblem}, {@link #createHeuristicFunction} and
+ * {@link #createSearch} are never called. Subclasses which override one of
+ * them must call <code>setRoutingGraphEnabled(false)</code>, for example in
+ * their constructor, to route with <code>RouteFindingProblem</code> and the
+ * search framework again. Way filters and problem subdivision are used in
+ * both modes.
+ * </p>
+ * 
  * @author Ruediger Lunde
  */
 public class RouteCalculator {
 
+	/** Number of landmarks used by default for the ALT heuristic. */
+	public static final int DEFAULT_LANDMARK_COUNT = 8;
+
+	private boolean routingGraphEnabled = true;
+	private boolean hierarchiesEnabled = false;
+	private File mapFile;
+	private RoutingGraphCache graphCache;
+	private PathFinder lastPathFinder;
+	private int landmarkCount = DEFAULT_LANDMARK_COUNT;
+	private Landmarks.Strategy landmarkStrategy = Landmarks.Strategy.AVOID;
+	/** Landmarks for the heuristic of the current route calculation. */
+	private Landmarks currLandmarks;
+	private int nodesExpanded;
+
 	/** Returns the names of all supported way selection options. */
 	public String[] getTaskSelectionOptions() {
 		return new String[] { "Distance", "Distance (Car)", "Distance (Bike)" };
@@ -49,19 +77,45 @@ public class RouteCalculator {
 	public List<Position> calculateRoute(List<MapNode> markers, OsmMap map,
 			int taskSelection) {
 		List<Position> result = new ArrayList<>();
+		nodesExpanded = 0;
 		try {
 			MapWayFilter wayFilter = createMapWayFilter(map, taskSelection);
 			boolean ignoreOneways = (taskSelection == 0);
 			List<MapNode[]> pNodeList = subdivideProblem(markers, map, wayFilter);
 			MapNode prevNode = null;
+			PathFinder pathFinder = null;
+			if (routingGraphEnabled)
+				pathFinder = createPathFinder(map, wayFilter, ignoreOneways,
+						taskSelection);
+			else if (landmarkCount > 0)
+				currLandmarks = getGraphCache(map).getLandmarks(
+						"task" + taskSelection, wayFilter, getOneWayMode(ignoreOneways),
+						landmarkCount, landmarkStrategy);
 			for (int i = 0; i < pNodeList.size()
 					&& !Tasks.currIsCancelled(); i++) {
+				if (pathFinder != null) {
+					List<MapNode> path = pathFinder.findPath(
+							pNodeList.get(i)[0], pNodeList.get(i)[1]);
+					nodesExpanded += pathFinder.getNodesExpanded();
+					if (path == null)
+						break;
+					for (MapNode node : path) {
+						if (prevNode != node) {
+							result.add(new Position(node.getLat(), node
+									.getLon()));
+							prevNode = node;
+						}
+					}
+					continue;
+				}
 				Problem<MapNode, OsmMoveAction> problem = createProblem(pNodeList.get(i), map, wayFilter,
 						ignoreOneways, taskSelection);
 				ToDoubleFunction<Node<MapNode, OsmMoveAction>> h = createHeuristicFunction(pNodeList.get(i),
 						taskSelection);
 				SearchForActions<MapNode, OsmMoveAction> search = createSearch(h, taskSelection);
 				Optional<List<OsmMoveAction>> actions = search.findActions(problem);
+				nodesExpanded += search.getMetrics().getInt(
+						QueueSearch.METRIC_NODES_EXPANDED);
 				if (!actions.isPresent())
 					break;
 				for (Object action : actions.get()) {
@@ -79,10 +133,110 @@ public class RouteCalculator {
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
+		} finally {
+			currLandmarks = null;
 		}
 		return result;
 	}
 
+	/**
+	 * Returns the number of nodes expanded by all searches of the last route
+	 * calculation. This is the standard measure for comparing heuristics.
+	 */
+	public int getNodesExpanded() {
+		return nodesExpanded;
+	}
+
+	/**
+	 * Controls whether paths are searched on routing graphs (default) or by
+	 * means of the problem, heuristic, and search factory methods.
+	 */
+	public void setRoutingGraphEnabled(boolean state) {
+		routingGraphEnabled = state;
+	}
+
+	public boolean isRoutingGraphEnabled() {
+		return routingGraphEnabled;
+	}
+
+	/**
+	 * Controls whether routing graphs are preprocessed to contraction
+	 * hierarchies (see {@link ContractionHierarchy}). Preprocessing takes
+	 * time for each task selection, but the queries afterwards are several
+	 * orders of magnitude faster on large maps.
+	 */
+	public void setHierarchiesEnabled(boolean state) {
+		hierarchiesEnabled = state;
+	}
+
+	public boolean isHierarchiesEnabled() {
+		return hierarchiesEnabled;
+	}
+
+	/**
+	 * Sets the number of landmarks for the ALT heuristic (see
+	 * {@link Landmarks}), or 0 to use only the straight-line distance. The
+	 * landmarks are computed once for each task selection. Default is
+	 * {@link #DEFAULT_LANDMARK_COUNT}. Contraction hierarchy searches do not
+	 * use landmarks.
+	 */
+	public void setLandmarkCount(int count) {
+		landmarkCount = count;
+	}
+
+	public int getLandmarkCount() {
+		return landmarkCount;
+	}
+
+	public void setLandmarkStrategy(Landmarks.Strategy strategy) {
+		landmarkStrategy = strategy;
+	}
+
+	public Landmarks.Strategy getLandmarkStrategy() {
+		return landmarkStrategy;
+	}
+
+	/**
+	 * Sets the file from which the map was loaded, possibly null. If known,
+	 * contraction hierarchies are stored next to it and reused at the next
+	 * start.
+	 */
+	public void setMapFile(File mapFile) {
+		this.mapFile = mapFile;
+		if (graphCache != null)
+			graphCache.setMapFile(mapFile);
+	}
+
+	/**
+	 * Factory method, responsible for the creation of searches on routing
+	 * graphs. Graphs and hierarchies are cached per map, task selection and
+	 * one-way mode, and the search of the last graph is reused.
+	 */
+	protected PathFinder createPathFinder(OsmMap map, MapWayFilter wayFilter,
+			boolean ignoreOneways, int taskSelection) {
+		RoutingGraphCache cache = getGraphCache(map);
+		String profile = "task" + taskSelection;
+		OneWayMode oneWayMode = getOneWayMode(ignoreOneways);
+		if (hierarchiesEnabled) {
+			ContractionHierarchy hierarchy = cache.getHierarchy(profile,
+					wayFilter, oneWayMode);
+			if (!(lastPathFinder instanceof ContractionHierarchySearch)
+					|| ((ContractionHierarchySearch) lastPathFinder)
+							.getHierarchy() != hierarchy)
+				lastPathFinder = new ContractionHierarchySearch(hierarchy);
+		} else {
+			RoutingGraph graph = cache.getGraph(profile, wayFilter,
+					oneWayMode);
+			if (!(lastPathFinder instanceof RoutingGraphSearch)
+					|| ((RoutingGraphSearch) lastPathFinder).getGraph() != graph)
+				lastPathFinder = new RoutingGraphSearch(graph);
+			((RoutingGraphSearch) lastPathFinder).setLandmarks(landmarkCount > 0
+					? cache.getLandmarks(profile, wayFilter, oneWayMode,
+							landmarkCount, landmarkStrategy) : null);
+		}
+		return lastPathFinder;
+	}
+
 	/** Factory method, responsible for way filter creation. */
 	protected MapWayFilter createMapWayFilter(OsmMap map, int taskSelection) {
 		if (taskSelection == 1)
@@ -113,20 +267,50 @@ public class RouteCalculator {
 		return result;
 	}
 
-	/** Factory method, responsible for problem creation. */
+	/**
+	 * Factory method, responsible for problem creation. Only used if routing
+	 * graphs are disabled.
+	 */
 	protected Problem<MapNode, OsmMoveAction> createProblem(MapNode[] pNodes, OsmMap map,
 			MapWayFilter wayFilter, boolean ignoreOneways, int taskSelection) {
 		return new RouteFindingProblem(pNodes[0], pNodes[1], wayFilter,
 				ignoreOneways);
 	}
 
-	/** Factory method, responsible for heuristic function creation. */
+	/**
+	 * Factory method, responsible for heuristic function creation. If a
+	 * landmark count is set, the ALT heuristic is used. Only used if routing
+	 * graphs are disabled.
+	 */
 	protected ToDoubleFunction<Node<MapNode, OsmMoveAction>> createHeuristicFunction(MapNode[] pNodes,
 															   int taskSelection) {
+		if (currLandmarks != null)
+			return new OsmLandmarkHeuristicFunction(currLandmarks, pNodes[1]);
 		return new OsmSldHeuristicFunction(pNodes[1]);
 	}
 	
-	/** Factory method, responsible for search creation. */
+	//
+	// PRIVATE METHODS
+	//
+
+	private RoutingGraphCache getGraphCache(OsmMap map) {
+		if (graphCache == null || graphCache.getMap() != map) {
+			if (graphCache != null)
+				graphCache.dispose();
+			graphCache = new RoutingGraphCache(map);
+			graphCache.setMapFile(mapFile);
+		}
+		return graphCache;
+	}
+
+	private static OneWayMode getOneWayMode(boolean ignoreOneways) {
+		return ignoreOneways ? OneWayMode.IGNORE : OneWayMode.TRAVEL_FORWARD;
+	}
+	
+	/**
+	 * Factory method, responsible for search creation. Only used if routing
+	 * graphs are disabled.
+	 */
 	protected SearchForActions<MapNode, OsmMoveAction> createSearch
 	(ToDoubleFunction<Node<MapNode, OsmMoveAction>> h, int taskSelection) {
 		return new AStarSearch<>(new GraphSearch<>(), h);
@@ -0,0 +1,705 @@
+package aimax.osm.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.MapWayFilter;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+import aimax.osm.routing.OsmFunctions.OneWayMode;
+
+/**
+ * Compact, immutable routing graph which is compiled from the ways of an
+ * <code>OsmMap</code> accepted by a way filter. Graph nodes are identified by
+ * int indices and edges are stored in compressed sparse row format (all
+ * outgoing edges of a node in consecutive array positions), with a second
+ * index for the incoming edges. Edge weights are travel distances in KM.
+ *
+ * <p>
+ * Way nodes with exactly two neighbors are contracted: a chain of such nodes
+ * between two other way nodes (crossings, dead ends, way nodes where one-way
+ * restrictions change) becomes a single edge per allowed direction, which can
+ * span several ways. The contracted nodes are still known to the graph. They
+ * can be located on their chains (see {@link #locate(MapNode)}) and are
+ * restored when edges are expanded to way nodes (see
+ * {@link #getEdgeNodes(int)}).
+ * </p>
+ *
+ * <p>
+ * Graphs are expensive to compile and should be shared, see
+ * {@link RoutingGraphCache}.
+ * </p>
+ */
+public class RoutingGraph {
+	/** Path end at a graph node (see {@link #expandPath}). */
+	public static final int ON_NODE = 0;
+	/** Path end on a chain, traveled from the chain start to its end. */
+	public static final int ALONG_CHAIN = 1;
+	/** Path end on a chain, traveled from the chain end to its start. */
+	public static final int AGAINST_CHAIN = 2;
+
+	private static final byte FORWARD = 1;
+	private static final byte BACKWARD = 2;
+
+	private final OneWayMode oneWayMode;
+	private final MapNode[] nodes;
+	private final float[] lats;
+	private final float[] lons;
+
+	// edges, sorted by source
+	private final int[] firstOutEdge;
+	private final int[] edgeSources;
+	private final int[] edgeTargets;
+	private final float[] edgeWeights;
+	/** Chain index of each edge, bit-complemented if traveled backwards. */
+	private final int[] edgeChains;
+	// edge indices, sorted by target
+	private final int[] firstInEdge;
+	private final int[] inEdges;
+
+	// way node sequences between graph nodes
+	private final int[] chainStarts;
+	private final int[] chainEnds;
+	private final float[] chainLengths;
+	private final byte[] chainDirections;
+	private final int[] chainFirstSegment;
+	private final MapWay[] segmentWays;
+	private final int[] segmentFrom;
+	private final int[] segmentTo;
+
+	/**
+	 * Index of graph nodes, bit-complemented index into the contracted
+	 * arrays for contracted nodes.
+	 */
+	private final Map<MapNode, Integer> locator;
+	private final int[] contractedChains;
+	private final float[] contractedOffsets;
+
+	/**
+	 * Compiles a routing graph from all ways of the map which are accepted by
+	 * the filter.
+	 *
+	 * @param map
+	 *            The information source.
+	 * @param filter
+	 *            Way filter, possibly null.
+	 * @param oneWayMode
+	 *            Controls in which directions one-way roads can be traveled.
+	 *            Graphs for {@link OneWayMode#TRAVEL_BACKWARDS} contain the
+	 *            reversed edges of {@link OneWayMode#TRAVEL_FORWARD} graphs.
+	 */
+	public static RoutingGraph compile(OsmMap map, MapWayFilter filter,
+			OneWayMode oneWayMode) {
+		List<MapWay> ways = new ArrayList<>();
+		for (MapWay way : map.getWays(new BoundingBox(-90f, -180f, 90f, 180f)))
+			if (filter == null || filter.isAccepted(way))
+				ways.add(way);
+		return new Compiler(ways, oneWayMode).compile();
+	}
+
+	private RoutingGraph(Compiler c) {
+		oneWayMode = c.oneWayMode;
+		int nodeCount = c.graphNodes.size();
+		nodes = c.graphNodes.toArray(new MapNode[nodeCount]);
+		lats = new float[nodeCount];
+		lons = new float[nodeCount];
+		for (int i = 0; i < nodeCount; i++) {
+			lats[i] = nodes[i].getLat();
+			lons[i] = nodes[i].getLon();
+		}
+
+		int edgeCount = c.edgeSources.size();
+		firstOutEdge = new int[nodeCount + 1];
+		edgeSources = new int[edgeCount];
+		edgeTargets = new int[edgeCount];
+		edgeWeights = new float[edgeCount];
+		edgeChains = new int[edgeCount];
+		for (int e = 0; e < edgeCount; e++)
+			firstOutEdge[c.edgeSources.get(e) + 1]++;
+		for (int i = 0; i < nodeCount; i++)
+			firstOutEdge[i + 1] += firstOutEdge[i];
+		int[] next = Arrays.copyOf(firstOutEdge, nodeCount);
+		for (int e = 0; e < edgeCount; e++) {
+			int pos = next[c.edgeSources.get(e)]++;
+			edgeSources[pos] = c.edgeSources.get(e);
+			edgeTargets[pos] = c.edgeTargets.get(e);
+			edgeWeights[pos] = c.edgeWeights.get(e);
+			edgeChains[pos] = c.edgeChains.get(e);
+		}
+		firstInEdge = new int[nodeCount + 1];
+		inEdges = new int[edgeCount];
+		for (int e = 0; e < edgeCount; e++)
+			firstInEdge[edgeTargets[e] + 1]++;
+		for (int i = 0; i < nodeCount; i++)
+			firstInEdge[i + 1] += firstInEdge[i];
+		next = Arrays.copyOf(firstInEdge, nodeCount);
+		for (int e = 0; e < edgeCount; e++)
+			inEdges[next[edgeTargets[e]]++] = e;
+
+		chainStarts = c.chainStarts.toArray();
+		chainEnds = c.chainEnds.toArray();
+		chainLengths = c.chainLengths.toArray();
+		chainDirections = Arrays.copyOf(c.chainDirections, chainStarts.length);
+		c.chainFirstSegment.add(c.segmentFrom.size());
+		chainFirstSegment = c.chainFirstSegment.toArray();
+		segmentWays = c.segmentWays.toArray(new MapWay[c.segmentWays.size()]);
+		segmentFrom = c.segmentFrom.toArray();
+		segmentTo = c.segmentTo.toArray();
+
+		locator = c.locator;
+		contractedChains = c.contractedChains.toArray();
+		contractedOffsets = c.contractedOffsets.toArray();
+	}
+
+	public OneWayMode getOneWayMode() {
+		return oneWayMode;
+	}
+
+	public int getNodeCount() {
+		return nodes.length;
+	}
+
+	public int getEdgeCount() {
+		return edgeTargets.length;
+	}
+
+	public MapNode getNode(int node) {
+		return nodes[node];
+	}
+
+	public float getLat(int node) {
+		return lats[node];
+	}
+
+	public float getLon(int node) {
+		return lons[node];
+	}
+
+	/**
+	 * Returns the index of a way node in the graph, or -1 if the node is not
+	 * a graph node (see {@link #locate(MapNode)}).
+	 */
+	public int getNodeIndex(MapNode node) {
+		Integer result = locator.get(node);
+		return result != null && result >= 0 ? result : -1;
+	}
+
+	/**
+	 * Returns the position of a way node in the graph, or null if the node is
+	 * not part of any accepted way.
+	 */
+	public Location locate(MapNode node) {
+		Integer idx = locator.get(node);
+		if (idx == null)
+			return null;
+		else if (idx >= 0)
+			return new Location(idx, -1, 0f);
+		else
+			return new Location(-1, contractedChains[~idx],
+					contractedOffsets[~idx]);
+	}
+
+	/** Returns the index of the first edge leaving the node. */
+	public int getOutEdgeBegin(int node) {
+		return firstOutEdge[node];
+	}
+
+	/** Returns the index after the last edge leaving the node. */
+	public int getOutEdgeEnd(int node) {
+		return firstOutEdge[node + 1];
+	}
+
+	/**
+	 * Returns the position of the first edge entering the node in the list of
+	 * incoming edges (see {@link #getInEdge(int)}).
+	 */
+	public int getInEdgeBegin(int node) {
+		return firstInEdge[node];
+	}
+
+	/**
+	 * Returns the position after the last edge entering the node in the list
+	 * of incoming edges.
+	 */
+	public int getInEdgeEnd(int node) {
+		return firstInEdge[node + 1];
+	}
+
+	/** Returns the edge at the specified position of the incoming edges. */
+	public int getInEdge(int pos) {
+		return inEdges[pos];
+	}
+
+	public int getEdgeSource(int edge) {
+		return edgeSources[edge];
+	}
+
+	public int getEdgeTarget(int edge) {
+		return edgeTargets[edge];
+	}
+
+	/** Returns the length of the edge in KM. */
+	public float getEdgeWeight(int edge) {
+		return edgeWeights[edge];
+	}
+
+	/** Returns the way nodes from the source to the target of an edge. */
+	public List<MapNode> getEdgeNodes(int edge) {
+		List<MapNode> result = getChainNodes(edgeChains[edge] >= 0 ? edgeChains[edge]
+				: ~edgeChains[edge]);
+		if (edgeChains[edge] < 0)
+			Collections.reverse(result);
+		return result;
+	}
+
+	/** Returns the way nodes of a chain from its start to its end. */
+	public List<MapNode> getChainNodes(int chain) {
+		List<MapNode> result = new ArrayList<>();
+		for (int s = chainFirstSegment[chain]; s < chainFirstSegment[chain + 1]; s++) {
+			List<MapNode> wayNodes = segmentWays[s].getNodes();
+			int step = segmentFrom[s] < segmentTo[s] ? 1 : -1;
+			int i = result.isEmpty() ? segmentFrom[s] : segmentFrom[s] + step;
+			for (; i != segmentTo[s] + step; i += step)
+				result.add(wayNodes.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Expands a path to way nodes.
+	 *
+	 * @param from
+	 *            The first way node of the path.
+	 * @param head
+	 *            {@link #ON_NODE} if <code>from</code> is the source of the
+	 *            first edge, otherwise the direction in which the chain of
+	 *            <code>from</code> is traveled to reach that source.
+	 * @param edges
+	 *            The edges of the path, possibly empty.
+	 * @param tail
+	 *            {@link #ON_NODE} if <code>to</code> is the target of the last
+	 *            edge, otherwise the direction in which the chain of
+	 *            <code>to</code> is traveled from that target.
+	 * @param to
+	 *            The last way node of the path.
+	 */
+	public List<MapNode> expandPath(MapNode from, int head,
+			Iterable<Integer> edges, int tail, MapNode to) {
+		List<MapNode> result = new ArrayList<>();
+		if (head == ON_NODE) {
+			result.add(from);
+		} else {
+			List<MapNode> chainNodes = getChainNodes(locate(from).getChain());
+			int i = chainNodes.indexOf(from);
+			result.addAll(head == ALONG_CHAIN ? chainNodes.subList(i,
+					chainNodes.size()) : reversed(chainNodes.subList(0, i + 1)));
+		}
+		for (int edge : edges) {
+			List<MapNode> edgeNodes = getEdgeNodes(edge);
+			result.addAll(edgeNodes.subList(1, edgeNodes.size()));
+		}
+		if (tail != ON_NODE) {
+			List<MapNode> chainNodes = getChainNodes(locate(to).getChain());
+			int j = chainNodes.indexOf(to);
+			result.addAll(tail == ALONG_CHAIN ? chainNodes.subList(1, j + 1)
+					: reversed(chainNodes.subList(j, chainNodes.size() - 1)));
+		}
+		return result;
+	}
+
+	/**
+	 * Expands a path between two contracted nodes on the same chain to way
+	 * nodes.
+	 */
+	public List<MapNode> expandChainPath(MapNode from, MapNode to) {
+		List<MapNode> chainNodes = getChainNodes(locate(from).getChain());
+		int i = chainNodes.indexOf(from);
+		int j = chainNodes.indexOf(to);
+		return i < j ? new ArrayList<>(chainNodes.subList(i, j + 1))
+				: reversed(chainNodes.subList(j, i + 1));
+	}
+
+	/**
+	 * Returns a hash value of the graph structure, which identifies graphs
+	 * compiled from the same map data with the same filter and one-way mode.
+	 */
+	public long getFingerprint() {
+		long result = oneWayMode.ordinal();
+		for (MapNode node : nodes)
+			result = 31 * result + node.getId();
+		for (int e = 0; e < edgeTargets.length; e++)
+			result = 31 * (31 * result + edgeTargets[e])
+					+ Float.floatToIntBits(edgeWeights[e]);
+		return 31 * result + edgeTargets.length;
+	}
+
+	@Override
+	public String toString() {
+		return "RoutingGraph[nodes=" + nodes.length + ", edges="
+				+ edgeTargets.length + ", contracted="
+				+ contractedChains.length + "]";
+	}
+
+	private static List<MapNode> reversed(List<MapNode> nodes) {
+		List<MapNode> result = new ArrayList<>(nodes);
+		Collections.reverse(result);
+		return result;
+	}
+
+	/**
+	 * Position of a way node in the graph: either a graph node or a point on
+	 * a chain of contracted nodes, which is traversed by the edge from the
+	 * chain start to the chain end if forward travel is allowed, and by the
+	 * edge in the opposite direction if backward travel is allowed.
+	 */
+	public class Location {
+		private final int node;
+		private final int chain;
+		private final float offset;
+
+		private Location(int node, int chain, float offset) {
+			this.node = node;
+			this.chain = chain;
+			this.offset = offset;
+		}
+
+		public boolean isNode() {
+			return node >= 0;
+		}
+
+		/** Returns the graph node index or -1 for contracted nodes. */
+		public int getNode() {
+			return node;
+		}
+
+		/** Returns the chain index or -1 for graph nodes. */
+		public int getChain() {
+			return chain;
+		}
+
+		public int getChainStart() {
+			return chainStarts[chain];
+		}
+
+		public int getChainEnd() {
+			return chainEnds[chain];
+		}
+
+		/** Returns the distance from the chain start in KM. */
+		public float getOffset() {
+			return offset;
+		}
+
+		/** Returns the length of the chain in KM. */
+		public float getChainLength() {
+			return chainLengths[chain];
+		}
+
+		public boolean isForwardAllowed() {
+			return (chainDirections[chain] & FORWARD) != 0;
+		}
+
+		public boolean isBackwardAllowed() {
+			return (chainDirections[chain] & BACKWARD) != 0;
+		}
+	}
+
+	//
+	// PRIVATE CLASSES
+	//
+
+	/**
+	 * Collects the way nodes and their incident way segments, decides which
+	 * way nodes become graph nodes and follows the chains between them.
+	 */
+	private static class Compiler {
+		private final List<MapWay> ways;
+		private final OneWayMode oneWayMode;
+
+		// all way nodes of accepted ways
+		private final Map<MapNode, Integer> wayNodeIds = new IdentityHashMap<>();
+		private final List<MapNode> wayNodes = new ArrayList<>();
+		/**
+		 * Way segments incident to each way node, encoded as way index << 32 |
+		 * node index in the way << 1 | 1 if the segment precedes the node.
+		 */
+		private int[] firstIncidence;
+		private long[] incidences;
+		private int[] graphIndices;
+		private int[] firstSegmentIds;
+		private BitSet visitedSegments = new BitSet();
+
+		final List<MapNode> graphNodes = new ArrayList<>();
+		final IntList edgeSources = new IntList();
+		final IntList edgeTargets = new IntList();
+		final FloatList edgeWeights = new FloatList();
+		final IntList edgeChains = new IntList();
+		final IntList chainStarts = new IntList();
+		final IntList chainEnds = new IntList();
+		final FloatList chainLengths = new FloatList();
+		byte[] chainDirections = new byte[16];
+		final IntList chainFirstSegment = new IntList();
+		final List<MapWay> segmentWays = new ArrayList<>();
+		final IntList segmentFrom = new IntList();
+		final IntList segmentTo = new IntList();
+		final Map<MapNode, Integer> locator = new IdentityHashMap<>();
+		final IntList contractedChains = new IntList();
+		final FloatList contractedOffsets = new FloatList();
+
+		Compiler(List<MapWay> ways, OneWayMode oneWayMode) {
+			this.ways = ways;
+			this.oneWayMode = oneWayMode;
+		}
+
+		RoutingGraph compile() {
+			collectIncidences();
+			int count = wayNodes.size();
+			graphIndices = new int[count];
+			Arrays.fill(graphIndices, -1);
+			for (int n = 0; n < count; n++)
+				if (!isContractible(n))
+					addGraphNode(n);
+			for (int n = 0; n < count; n++)
+				if (graphIndices[n] >= 0)
+					followChains(n);
+			// cycles without graph nodes
+			for (int n = 0; n < count; n++) {
+				if (graphIndices[n] < 0 && !locator.containsKey(wayNodes.get(n))) {
+					addGraphNode(n);
+					followChains(n);
+				}
+			}
+			return new RoutingGraph(this);
+		}
+
+		private void collectIncidences() {
+			firstSegmentIds = new int[ways.size() + 1];
+			int[] counts = new int[16];
+			for (int w = 0; w < ways.size(); w++) {
+				List<MapNode> nodes = ways.get(w).getNodes();
+				firstSegmentIds[w + 1] = firstSegmentIds[w] + nodes.size();
+				for (int i = 0; i + 1 < nodes.size(); i++) {
+					if (isSegment(nodes, i)) {
+						int n1 = wayNodeId(nodes.get(i));
+						int n2 = wayNodeId(nodes.get(i + 1));
+						if (counts.length <= Math.max(n1, n2) + 1)
+							counts = Arrays.copyOf(counts, 2 * counts.length);
+						counts[n1 + 1]++;
+						counts[n2 + 1]++;
+					}
+				}
+			}
+			int count = wayNodes.size();
+			firstIncidence = Arrays.copyOf(counts, count + 1);
+			for (int n = 0; n < count; n++)
+				firstIncidence[n + 1] += firstIncidence[n];
+			incidences = new long[firstIncidence[count]];
+			int[] next = Arrays.copyOf(firstIncidence, count);
+			for (int w = 0; w < ways.size(); w++) {
+				List<MapNode> nodes = ways.get(w).getNodes();
+				for (int i = 0; i + 1 < nodes.size(); i++) {
+					if (isSegment(nodes, i)) {
+						incidences[next[wayNodeIds.get(nodes.get(i))]++] = incidence(w, i, 1);
+						incidences[next[wayNodeIds.get(nodes.get(i + 1))]++] = incidence(w, i + 1, -1);
+					}
+				}
+			}
+		}
+
+		private boolean isSegment(List<MapNode> nodes, int i) {
+			MapNode n1 = nodes.get(i);
+			MapNode n2 = nodes.get(i + 1);
+			return n1 != n2 && n1.hasPosition() && n2.hasPosition();
+		}
+
+		private int wayNodeId(MapNode node) {
+			Integer result = wayNodeIds.get(node);
+			if (result == null) {
+				result = wayNodes.size();
+				wayNodeIds.put(node, result);
+				wayNodes.add(node);
+			}
+			return result;
+		}
+
+		/**
+		 * Way nodes with two neighbors can be contracted if the restrictions
+		 * of both segments agree for traveling through the node.
+		 */
+		private boolean isContractible(int n) {
+			if (firstIncidence[n + 1] - firstIncidence[n] != 2)
+				return false;
+			long inc1 = incidences[firstIncidence[n]];
+			long inc2 = incidences[firstIncidence[n] + 1];
+			MapWay way1 = ways.get(wayOf(inc1));
+			MapWay way2 = ways.get(wayOf(inc2));
+			return isAllowed(way1, -dirOf(inc1)) == isAllowed(way2, dirOf(inc2))
+					&& isAllowed(way1, dirOf(inc1)) == isAllowed(way2, -dirOf(inc2));
+		}
+
+		private boolean isAllowed(MapWay way, int dir) {
+			return oneWayMode == OneWayMode.IGNORE || !way.isOneway()
+					|| (dir > 0 ? oneWayMode == OneWayMode.TRAVEL_FORWARD
+							: oneWayMode == OneWayMode.TRAVEL_BACKWARDS);
+		}
+
+		private void addGraphNode(int n) {
+			graphIndices[n] = graphNodes.size();
+			locator.put(wayNodes.get(n), graphNodes.size());
+			graphNodes.add(wayNodes.get(n));
+		}
+
+		/** Follows all chains starting at the graph node not visited yet. */
+		private void followChains(int n) {
+			for (int k = firstIncidence[n]; k < firstIncidence[n + 1]; k++) {
+				long inc = incidences[k];
+				if (!visitedSegments.get(segmentId(inc)))
+					followChain(n, inc);
+			}
+		}
+
+		private void followChain(int start, long inc) {
+			int chain = chainStarts.size();
+			int w = wayOf(inc);
+			int i = indexOf(inc);
+			int dir = dirOf(inc);
+			byte directions = (byte) ((isAllowed(ways.get(w), dir) ? FORWARD : 0)
+					| (isAllowed(ways.get(w), -dir) ? BACKWARD : 0));
+			chainFirstSegment.add(segmentFrom.size());
+			int segmentStart = i;
+			double length = 0;
+			int end;
+			while (true) {
+				List<MapNode> nodes = ways.get(w).getNodes();
+				visitedSegments.set(segmentId(incidence(w, i, dir)));
+				MapNode from = nodes.get(i);
+				MapNode to = nodes.get(i + dir);
+				length += Position.getDistKM(from.getLat(), from.getLon(),
+						to.getLat(), to.getLon());
+				i += dir;
+				int n = wayNodeIds.get(to);
+				if (graphIndices[n] >= 0) {
+					addSegment(w, segmentStart, i);
+					end = graphIndices[n];
+					break;
+				}
+				locator.put(to, ~contractedChains.size());
+				contractedChains.add(chain);
+				contractedOffsets.add((float) length);
+				// continue with the other segment of the contracted node
+				long other = incidences[firstIncidence[n]];
+				if (other == incidence(w, i, -dir))
+					other = incidences[firstIncidence[n] + 1];
+				if (wayOf(other) != w || indexOf(other) != i
+						|| dirOf(other) != dir) {
+					addSegment(w, segmentStart, i);
+					w = wayOf(other);
+					dir = dirOf(other);
+					i = indexOf(other);
+					segmentStart = i;
+				}
+			}
+			chainStarts.add(graphIndices[start]);
+			chainEnds.add(end);
+			chainLengths.add((float) length);
+			if (chain == chainDirections.length)
+				chainDirections = Arrays.copyOf(chainDirections, 2 * chain);
+			chainDirections[chain] = directions;
+			if (graphIndices[start] != end) {
+				if ((directions & FORWARD) != 0)
+					addEdge(graphIndices[start], end, (float) length, chain);
+				if ((directions & BACKWARD) != 0)
+					addEdge(end, graphIndices[start], (float) length, ~chain);
+			}
+		}
+
+		private void addSegment(int w, int from, int to) {
+			segmentWays.add(ways.get(w));
+			segmentFrom.add(from);
+			segmentTo.add(to);
+		}
+
+		private void addEdge(int source, int target, float weight, int chain) {
+			edgeSources.add(source);
+			edgeTargets.add(target);
+			edgeWeights.add(weight);
+			edgeChains.add(chain);
+		}
+
+		/** Identifies the segment between node i and i+1 of way w by w and i. */
+		private int segmentId(long inc) {
+			int i = indexOf(inc);
+			return firstSegmentIds[wayOf(inc)] + (dirOf(inc) > 0 ? i : i - 1);
+		}
+
+		private static long incidence(int w, int i, int dir) {
+			return (long) w << 32 | (long) i << 1 | (dir > 0 ? 0 : 1);
+		}
+
+		private static int wayOf(long inc) {
+			return (int) (inc >>> 32);
+		}
+
+		private static int indexOf(long inc) {
+			return (int) inc >>> 1;
+		}
+
+		private static int dirOf(long inc) {
+			return (inc & 1) == 0 ? 1 : -1;
+		}
+	}
+
+	private static class IntList {
+		private int[] values = new int[16];
+		private int size;
+
+		void add(int value) {
+			if (size == values.length)
+				values = Arrays.copyOf(values, 2 * size);
+			values[size++] = value;
+		}
+
+		int get(int i) {
+			return values[i];
+		}
+
+		int size() {
+			return size;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	private static class FloatList {
+		private float[] values = new float[16];
+		private int size;
+
+		void add(float value) {
+			if (size == values.length)
+				values = Arrays.copyOf(values, 2 * size);
+			values[size++] = value;
+		}
+
+		float get(int i) {
+			return values[i];
+		}
+
+		int size() {
+			return size;
+		}
+
+		float[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
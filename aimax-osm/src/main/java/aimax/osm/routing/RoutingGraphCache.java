@@ -0,0 +1,142 @@
+package aimax.osm.routing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import aimax.osm.data.MapEvent;
+import aimax.osm.data.MapEventListener;
+import aimax.osm.data.MapWayFilter;
+import aimax.osm.data.OsmMap;
+import aimax.osm.routing.OsmFunctions.OneWayMode;
+
+/**
+ * Maintains the routing graphs of a map, one for each combination of a filter
+ * profile and a one-way mode. Graphs are compiled when they are requested
+ * first and dropped when the map is replaced or cleared. Marker and track
+ * changes leave the ways untouched and keep the graphs. Contraction
+ * hierarchies and landmarks of the graphs are maintained in the same way. If the file of the
+ * map is known, hierarchies are stored in files next to it and read from there
+ * instead of being rebuilt.
+ */
+public class RoutingGraphCache implements MapEventListener {
+	private static final Logger LOG = Logger.getLogger("aimax.osm");
+
+	private final OsmMap map;
+	private final Map<String, RoutingGraph> graphs = new HashMap<>();
+	private final Map<String, ContractionHierarchy> hierarchies = new HashMap<>();
+	private final Map<String, Landmarks> landmarks = new HashMap<>();
+	private File mapFile;
+
+	/** Creates a cache and registers it as listener of the map. */
+	public RoutingGraphCache(OsmMap map) {
+		this.map = map;
+		map.addMapDataEventListener(this);
+	}
+
+	public OsmMap getMap() {
+		return map;
+	}
+
+	/**
+	 * Sets the file from which the map was loaded, possibly null. Hierarchy
+	 * files are named after it.
+	 */
+	public synchronized void setMapFile(File mapFile) {
+		this.mapFile = mapFile;
+	}
+
+	/**
+	 * Returns the routing graph for a profile, compiling it if necessary.
+	 *
+	 * @param profile
+	 *            Name of the profile. Graphs with the same name and one-way
+	 *            mode are assumed to be based on equivalent filters.
+	 * @param filter
+	 *            The way filter of the profile, possibly null.
+	 * @param oneWayMode
+	 *            Controls in which directions one-way roads can be traveled.
+	 */
+	public synchronized RoutingGraph getGraph(String profile,
+			MapWayFilter filter, OneWayMode oneWayMode) {
+		return graphs.computeIfAbsent(profile + "/" + oneWayMode,
+				key -> RoutingGraph.compile(map, filter, oneWayMode));
+	}
+
+	/**
+	 * Returns the contraction hierarchy for a profile. It is read from the
+	 * hierarchy file of the profile if that file matches the graph, and built
+	 * and written to the file otherwise.
+	 */
+	public synchronized ContractionHierarchy getHierarchy(String profile,
+			MapWayFilter filter, OneWayMode oneWayMode) {
+		String key = profile + "/" + oneWayMode;
+		ContractionHierarchy result = hierarchies.get(key);
+		if (result == null) {
+			RoutingGraph graph = getGraph(profile, filter, oneWayMode);
+			File file = null;
+			if (mapFile != null)
+				file = new File(mapFile.getPath() + "." + profile + "-"
+						+ oneWayMode.name().toLowerCase() + ".ch");
+			if (file != null && file.exists()) {
+				try {
+					result = ContractionHierarchy.read(file, graph);
+				} catch (IOException e) {
+					LOG.log(Level.WARNING, "Cannot read " + file, e);
+				}
+			}
+			if (result == null) {
+				result = ContractionHierarchy.build(graph);
+				if (file != null) {
+					try {
+						result.write(file);
+					} catch (IOException e) {
+						LOG.log(Level.WARNING, "Cannot write " + file, e);
+					}
+				}
+			}
+			hierarchies.put(key, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns landmarks for a profile, computing them if necessary.
+	 *
+	 * @param count
+	 *            The number of landmarks.
+	 * @param strategy
+	 *            The landmark selection strategy.
+	 */
+	public synchronized Landmarks getLandmarks(String profile,
+			MapWayFilter filter, OneWayMode oneWayMode, int count,
+			Landmarks.Strategy strategy) {
+		RoutingGraph graph = getGraph(profile, filter, oneWayMode);
+		return landmarks.computeIfAbsent(profile + "/" + oneWayMode + "/"
+				+ count + "/" + strategy,
+				key -> Landmarks.compute(graph, count, strategy));
+	}
+
+	/** Drops all graphs, hierarchies and landmarks. */
+	public synchronized void clear() {
+		graphs.clear();
+		hierarchies.clear();
+		landmarks.clear();
+	}
+
+	/** Drops all graphs and stops listening to the map. */
+	public void dispose() {
+		map.removeMapDataEventListener(this);
+		clear();
+	}
+
+	@Override
+	public void eventHappened(MapEvent event) {
+		if (event.getType() == MapEvent.Type.MAP_NEW
+				|| event.getType() == MapEvent.Type.MAP_CLEARED)
+			clear();
+	}
+}
@@ -0,0 +1,218 @@
+package aimax.osm.routing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import aima.core.util.Tasks;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.MapNode;
+
+/**
+ * A* search for shortest paths on a {@link RoutingGraph}, with the
+ * straight-line distance to the goal as heuristic. In contrast to searches
+ * based on <code>RouteFindingProblem</code>, no nodes, actions or hash entries
+ * are created during search. The work arrays of the size of the graph are
+ * allocated once and reused by all queries, so an instance must not be shared
+ * by concurrent searches.
+ */
+public class RoutingGraphSearch implements PathFinder {
+	// parent codes of the nodes reached first
+	private static final int START = -1;
+	private static final int SOURCE_FORWARD = -2;
+	private static final int SOURCE_BACKWARD = -3;
+
+	protected final RoutingGraph graph;
+	private final NodeQueue queue;
+	private final float[] distances;
+	private final int[] parentEdges;
+	/** Query number for which distances are valid. */
+	private final int[] reached;
+	/** Query number in which the node was expanded. */
+	private final int[] expanded;
+	private int query;
+
+	private Landmarks landmarks;
+	private RoutingGraph.Location goal;
+	private float goalLat;
+	private float goalLon;
+	private float pathCost;
+	private int nodesExpanded;
+
+	public RoutingGraphSearch(RoutingGraph graph) {
+		this.graph = graph;
+		int nodeCount = graph.getNodeCount();
+		queue = new NodeQueue(nodeCount);
+		distances = new float[nodeCount];
+		parentEdges = new int[nodeCount];
+		reached = new int[nodeCount];
+		expanded = new int[nodeCount];
+	}
+
+	public RoutingGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Sets landmarks of the graph, which improve the heuristic, or null to
+	 * use only the straight-line distance.
+	 */
+	public void setLandmarks(Landmarks landmarks) {
+		if (landmarks != null && landmarks.getGraph() != graph)
+			throw new IllegalArgumentException(
+					"Landmarks were computed for another graph.");
+		this.landmarks = landmarks;
+	}
+
+	public Landmarks getLandmarks() {
+		return landmarks;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<MapNode> findPath(MapNode from, MapNode to) {
+		pathCost = Float.POSITIVE_INFINITY;
+		nodesExpanded = 0;
+		RoutingGraph.Location source = graph.locate(from);
+		goal = graph.locate(to);
+		if (source == null || goal == null)
+			return null;
+		if (from == to) {
+			pathCost = 0f;
+			return new ArrayList<>(Collections.singletonList(from));
+		}
+		if (++query == 0) {
+			Arrays.fill(reached, 0);
+			Arrays.fill(expanded, 0);
+			query = 1;
+		}
+		queue.clear();
+		goalLat = to.getLat();
+		goalLon = to.getLon();
+
+		float best = Float.POSITIVE_INFINITY;
+		int bestNode = -1;
+		boolean bestForward = false;
+		// both on the same chain
+		if (!source.isNode() && !goal.isNode()
+				&& source.getChain() == goal.getChain()) {
+			float d = goal.getOffset() - source.getOffset();
+			if (d >= 0 && source.isForwardAllowed()
+					|| d <= 0 && source.isBackwardAllowed())
+				best = Math.abs(d);
+		}
+
+		if (source.isNode()) {
+			reach(source.getNode(), 0f, START);
+		} else {
+			if (source.isForwardAllowed())
+				reach(source.getChainEnd(),
+						source.getChainLength() - source.getOffset(),
+						SOURCE_FORWARD);
+			if (source.isBackwardAllowed())
+				reach(source.getChainStart(), source.getOffset(),
+						SOURCE_BACKWARD);
+		}
+
+		while (!queue.isEmpty() && queue.peekKey() < best
+				&& !Tasks.currIsCancelled()) {
+			int node = queue.poll();
+			expanded[node] = query;
+			nodesExpanded++;
+			float dist = distances[node];
+			if (goal.isNode()) {
+				if (node == goal.getNode()) {
+					best = dist;
+					bestNode = node;
+					break;
+				}
+			} else {
+				if (goal.isForwardAllowed() && node == goal.getChainStart()
+						&& dist + goal.getOffset() < best) {
+					best = dist + goal.getOffset();
+					bestNode = node;
+					bestForward = true;
+				}
+				if (goal.isBackwardAllowed() && node == goal.getChainEnd()
+						&& dist + goal.getChainLength() - goal.getOffset() < best) {
+					best = dist + goal.getChainLength() - goal.getOffset();
+					bestNode = node;
+					bestForward = false;
+				}
+			}
+			for (int e = graph.getOutEdgeBegin(node); e < graph.getOutEdgeEnd(node); e++) {
+				int succ = graph.getEdgeTarget(e);
+				if (expanded[succ] != query)
+					reach(succ, dist + graph.getEdgeWeight(e), e);
+			}
+		}
+		if (best == Float.POSITIVE_INFINITY)
+			return null;
+		pathCost = best;
+		return createPath(from, to, goal, bestNode, bestForward);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public float getPathCost() {
+		return pathCost;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getNodesExpanded() {
+		return nodesExpanded;
+	}
+
+	/**
+	 * Returns an admissible estimate of the distance from a graph node to the
+	 * goal. This implementation returns the straight-line distance, or the
+	 * landmark bound if landmarks are set and the bound is larger.
+	 */
+	protected float estimateDistance(int node, float goalLat, float goalLon) {
+		float result = (float) Position.getDistKM(graph.getLat(node),
+				graph.getLon(node), goalLat, goalLon);
+		if (landmarks != null)
+			result = Math.max(result, landmarks.getLowerBound(node, goal));
+		return result;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void reach(int node, float dist, int parentEdge) {
+		if (reached[node] != query || dist < distances[node]) {
+			reached[node] = query;
+			distances[node] = dist;
+			parentEdges[node] = parentEdge;
+			queue.insertOrDecrease(node,
+					dist + estimateDistance(node, goalLat, goalLon));
+		}
+	}
+
+	private List<MapNode> createPath(MapNode from, MapNode to,
+			RoutingGraph.Location goal, int bestNode, boolean bestForward) {
+		if (bestNode == -1)
+			return graph.expandChainPath(from, to);
+		Deque<Integer> edges = new ArrayDeque<>();
+		int node = bestNode;
+		while (parentEdges[node] >= 0) {
+			edges.push(parentEdges[node]);
+			node = graph.getEdgeSource(parentEdges[node]);
+		}
+		int head = RoutingGraph.ON_NODE;
+		if (parentEdges[node] == SOURCE_FORWARD)
+			head = RoutingGraph.ALONG_CHAIN;
+		else if (parentEdges[node] == SOURCE_BACKWARD)
+			head = RoutingGraph.AGAINST_CHAIN;
+		int tail = RoutingGraph.ON_NODE;
+		if (!goal.isNode())
+			tail = bestForward ? RoutingGraph.ALONG_CHAIN
+					: RoutingGraph.AGAINST_CHAIN;
+		return graph.expandPath(from, head, edges, tail, to);
+	}
+}
@@ -1,5 +1,8 @@
 package aimax.osm.viewer;
 
+import java.util.Collections;
+import java.util.List;
+
 import aimax.osm.data.EntityVisitor;
 import aimax.osm.data.WayNodeProvider;
 import aimax.osm.data.entities.MapNode;
@@ -16,7 +19,8 @@ import aimax.osm.data.entities.Track;
  * @author Ruediger Lunde
  * 
  */
-public abstract class AbstractEntityRenderer implements EntityVisitor {
+public abstract class AbstractEntityRenderer implements EntityVisitor,
+		Cloneable {
 	protected UnifiedImageBuilder<?> imageBdr;
 	/** Is responsible for world to view coordinate transformations. */
 	protected CoordTransformer transformer;
@@ -57,6 +61,19 @@ public abstract class AbstractEntityRenderer implements EntityVisitor {
 		displayFactor = factor;
 	}
 
+	/**
+	 * Returns a renderer with the same settings which can be used in parallel
+	 * to this one, e.g. for rendering map tiles on different threads.
+	 * Subclasses with buffers must provide new buffers for the copy.
+	 */
+	public AbstractEntityRenderer copy() {
+		try {
+			return (AbstractEntityRenderer) clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	/** Resets the renderer. */
 	public void initForRendering(UnifiedImageBuilder<?> imageBdr, CoordTransformer transformer,
 			WayNodeProvider wnProvider) {
@@ -77,6 +94,38 @@ public abstract class AbstractEntityRenderer implements EntityVisitor {
 	/** Abstract method, responsible for completing the rendering task. */
 	public abstract void printBufferedObjects();
 
+	/**
+	 * Completes the rendering task for a map tile. Names, markers and tracks
+	 * should be left out. Names are kept in a buffer instead (see
+	 * {@link #getBufferedNames()}) and printed by
+	 * {@link #printBufferedOverlay(List)} after the tiles have been composed.
+	 * This implementation prints all buffered objects.
+	 */
+	public void printBufferedGeometry() {
+		printBufferedObjects();
+	}
+
+	/**
+	 * Returns the names buffered by {@link #printBufferedGeometry()} with
+	 * positions in view coordinates. This implementation returns an empty
+	 * list.
+	 */
+	public List<NameInfo> getBufferedNames() {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Prints those parts of the map which are not contained in map tiles on
+	 * top of the composed tiles. This implementation does nothing.
+	 * 
+	 * @param names
+	 *            Names of the composed tiles in view coordinates. They are
+	 *            printed together with the names of the buffered entities
+	 *            unless they overlap with more important names.
+	 */
+	public void printBufferedOverlay(List<NameInfo> names) {
+	}
+
 	/** Abstract method, responsible for rendering a map node (especially POIs). */
 	@Override
 	public abstract void visitMapNode(MapNode node);
@@ -88,4 +137,27 @@ public abstract class AbstractEntityRenderer implements EntityVisitor {
 	/** Abstract method, responsible for rendering a track. */
 	@Override
 	public abstract void visitTrack(Track track);
+
+	/**
+	 * Stores color and position information for a name to be printed out.
+	 */
+	public static class NameInfo implements Comparable<NameInfo> {
+		public String name;
+		public UColor color;
+		public int x;
+		public int y;
+		/** Print order value of the corresponding entity. */
+		public int printOrder;
+
+		public NameInfo(String name, UColor color, int printOrder) {
+			this.name = name;
+			this.color = color;
+			this.printOrder = printOrder;
+		}
+
+		@Override
+		public int compareTo(NameInfo arg0) {
+			return Integer.compare(printOrder, arg0.printOrder);
+		}
+	}
 }
@@ -15,9 +15,9 @@ import aimax.osm.data.Position;
  */
 public class CoordTransformer {
 	/** Longitude of left upper corner. */
-	private float originLon;
+	private double originLon;
 	/** Latitude of left upper corner. */
-	private float originLat;
+	private double originLat;
 	/** Correction factor for longitude values. */
 	private float lonCorr;
 	/** Number of pixels corresponding to one degree of latitude. */
@@ -101,12 +101,43 @@ public class CoordTransformer {
 	
 	/** Computes the corresponding longitude for a given view x coordinate. */
 	public float lon(int x) {
-		return x / (dotsPerDeg * lonCorr) + originLon;
+		return (float) (x / (dotsPerDeg * lonCorr) + originLon);
 	}
 	
 	/** Computes the corresponding latitude for a given view y coordinate. */
 	public float lat(int y) {
-		return originLat - y / dotsPerDeg;
+		return (float) (originLat - y / dotsPerDeg);
+	}
+	
+	/**
+	 * Returns the horizontal distance in pixels between longitude zero and the
+	 * left upper corner of the view.
+	 */
+	public double getOriginX() {
+		return (double) dotsPerDeg * lonCorr * originLon;
+	}
+	
+	/**
+	 * Returns the vertical distance in pixels between latitude zero and the
+	 * left upper corner of the view (positive on the southern hemisphere).
+	 */
+	public double getOriginY() {
+		return -(double) dotsPerDeg * originLat;
+	}
+	
+	/**
+	 * Returns a transformer with the same scale whose left upper corner is
+	 * located at the specified pixel position (see {@link #getOriginX()} and
+	 * {@link #getOriginY()}). Used to render tiles of the current view.
+	 */
+	public CoordTransformer createShifted(double originX, double originY) {
+		CoordTransformer result = new CoordTransformer();
+		result.lonCorr = lonCorr;
+		result.dotsPerDeg = dotsPerDeg;
+		result.dotsPerInch = dotsPerInch;
+		result.originLon = originX / ((double) dotsPerDeg * lonCorr);
+		result.originLat = -originY / dotsPerDeg;
+		return result;
 	}
 	
 	/** Returns the current {@link #dotsPerDeg} value. */
@@ -114,6 +145,11 @@ public class CoordTransformer {
 		return dotsPerDeg;
 	}
 	
+	/** Returns the current {@link #lonCorr} value. */
+	public float getLonCorrection() {
+		return lonCorr;
+	}
+	
 	/**
 	 * Returns the scale. 1 / 100 000 means one cm on the screen corresponds to
 	 * 1 km in real world. */
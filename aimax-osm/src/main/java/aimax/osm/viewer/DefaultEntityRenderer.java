@@ -48,6 +48,20 @@ public class DefaultEntityRenderer extends AbstractEntityRenderer {
 		tmpNodeBuffer = new ArrayList<>();
 	}
 
+	/** Returns a copy with the same settings and separate buffers. */
+	@Override
+	public DefaultEntityRenderer copy() {
+		DefaultEntityRenderer result = (DefaultEntityRenderer) super.copy();
+		result.wayNodeHash = new Hashtable<>();
+		result.areaBuffer = new ArrayList<>();
+		result.wayBuffer = new ArrayList<>();
+		result.nodeBuffer = new ArrayList<>();
+		result.trackBuffer = new ArrayList<>();
+		result.nameInfoBuffer = new ArrayList<>();
+		result.tmpNodeBuffer = new ArrayList<>();
+		return result;
+	}
+
 	/** Clears all buffers and prepares rendering. */
 	@Override
 	public void initForRendering(UnifiedImageBuilder<?> imageBdr,
@@ -145,58 +159,97 @@ public class DefaultEntityRenderer extends AbstractEntityRenderer {
 	// int awnodes = 0;
 	/** Prints all buffered entities according to their rendering informations. */
 	public void printBufferedObjects() {
-		areaBuffer.sort(new MapAreaComparator());
-		Comparator<MapEntity> comp = new MapEntityComparator();
-		if (wayBuffer.size() < 10000)
-			wayBuffer.sort(comp);
-		if (nodeBuffer.size() < 10000)
-			nodeBuffer.sort(comp);
+		sortBuffers();
 		for (MapWay area : areaBuffer)
 			printWay(area, (DefaultEntityViewInfo) area.getViewInfo(), true);
 		for (MapWay way : wayBuffer)
 			printWay(way, (DefaultEntityViewInfo) way.getViewInfo(), false);
-		for (MapEntity node : nodeBuffer) {
-			MapNode n;
-			if (node instanceof MapWay) {
-				List<MapNode> wayNodes = getWayNodes((MapWay) node);
-				// needed to show icons for ways, whose abstraction is empty.
-				if (wayNodes.isEmpty())
-					wayNodes = ((MapWay) node).getNodes();
-				n = wayNodes.get(0);
-			} else
-				n = (MapNode) node;
-			printNode(n, (DefaultEntityViewInfo) node.getViewInfo());
-		}
+		for (MapEntity node : nodeBuffer)
+			printNode(getSymbolNode(node), (DefaultEntityViewInfo) node
+					.getViewInfo());
 		for (Track track : trackBuffer)
 			printTrack(track);
-		// System.out.print("NamesOrg: " + nameInfoBuffer.size() + "\n");
+		printNames();
+		// System.out.print("Areas: " + areaBuffer.size() + "  ");
+		// System.out.print("Ways: " + wayBuffer.size() + "  ");
+		// System.out.print("Nodes: " + nodeBuffer.size() + "  ");
+		// System.out.print("Names: " + nameInfoBuffer.size() + "\n");
+	}
+
+	/**
+	 * Prints areas, ways, and node symbols. Their names are left in the name
+	 * buffer.
+	 */
+	@Override
+	public void printBufferedGeometry() {
+		sortBuffers();
+		for (MapWay area : areaBuffer)
+			printWay(area, (DefaultEntityViewInfo) area.getViewInfo(), true);
+		for (MapWay way : wayBuffer)
+			printWay(way, (DefaultEntityViewInfo) way.getViewInfo(), false);
+		for (MapEntity node : nodeBuffer)
+			printNode(getSymbolNode(node), (DefaultEntityViewInfo) node
+					.getViewInfo());
+	}
+
+	/** Returns the name buffer. */
+	@Override
+	public List<NameInfo> getBufferedNames() {
+		return nameInfoBuffer;
+	}
+
+	/**
+	 * Prints the buffered entities, typically markers and tracks, and all
+	 * names which do not overlap.
+	 */
+	@Override
+	public void printBufferedOverlay(List<NameInfo> names) {
+		nameInfoBuffer.addAll(names);
+		printBufferedObjects();
+	}
+
+	/**
+	 * Sorts the name buffer by print order and removes names whose positions
+	 * are too close to names printed before. Names already accepted are
+	 * stored in a grid of cells three characters high and wide, so that only
+	 * the neighborhood of a name needs to be checked.
+	 */
+	protected void removeOverlappingNames() {
 		Collections.sort(nameInfoBuffer);
-		// remove names whose positions are to close to each other
 		int charSize = (int) (defaultFontSize * displayFactorSym);
-		for (int i = 0; i < nameInfoBuffer.size(); ++i) {
-			NameInfo info = nameInfoBuffer.get(i);
-			for (int j = 0; j < i; ++j) {
-				NameInfo info1 = nameInfoBuffer.get(j);
-				int fac = (info.name.equals(info1.name)) ? 3 : 2;
-				if (Math.abs(info.y - info1.y) < charSize * fac) {
-					fac = (info.x < info1.x) ? info.name.length() : info1.name
-							.length();
-					if (Math.abs(info.x - info1.x) < charSize * fac) {
-						nameInfoBuffer.remove(i);
-						--i;
-						j = i;
-					}
+		if (charSize <= 0)
+			return;
+		int cellSize = 3 * charSize;
+		HashMap<Long, List<NameInfo>> grid = new HashMap<>();
+		List<NameInfo> accepted = new ArrayList<>(nameInfoBuffer.size());
+		int maxLength = 0;
+		for (NameInfo info : nameInfoBuffer) {
+			int row = Math.floorDiv(info.y, cellSize);
+			int col = Math.floorDiv(info.x, cellSize);
+			// the horizontal distance limit depends on the left name
+			int colMin = col - charSize * maxLength / cellSize - 1;
+			int colMax = col + charSize * info.name.length() / cellSize + 1;
+			boolean overlaps = false;
+			for (int r = row - 1; r <= row + 1 && !overlaps; r++) {
+				for (int c = colMin; c <= colMax && !overlaps; c++) {
+					List<NameInfo> cell = grid.get(getCellKey(r, c));
+					if (cell != null)
+						for (NameInfo info1 : cell)
+							if (overlaps(info, info1, charSize)) {
+								overlaps = true;
+								break;
+							}
 				}
 			}
+			if (!overlaps) {
+				grid.computeIfAbsent(getCellKey(row, col),
+						k -> new ArrayList<>(2)).add(info);
+				accepted.add(info);
+				maxLength = Math.max(maxLength, info.name.length());
+			}
 		}
-		for (NameInfo textInfo : nameInfoBuffer) {
-			imageBdr.setColor(textInfo.color);
-			imageBdr.drawString(textInfo.name, textInfo.x, textInfo.y);
-		}
-		// System.out.print("Areas: " + areaBuffer.size() + "  ");
-		// System.out.print("Ways: " + wayBuffer.size() + "  ");
-		// System.out.print("Nodes: " + nodeBuffer.size() + "  ");
-		// System.out.print("Names: " + nameInfoBuffer.size() + "\n");
+		nameInfoBuffer.clear();
+		nameInfoBuffer.addAll(accepted);
 	}
 
 	/** Prints a way entity. */
@@ -292,20 +345,30 @@ public class DefaultEntityRenderer extends AbstractEntityRenderer {
 						-(y - yPoints[yPoints.length - 2]));
 				printOnewayArrow(x, y, angle);
 			}
-			if (textInfo != null) {
-				setWayNamePosition(textInfo, xPoints, yPoints, filled);
+			bufferNames(nodes, xPoints, yPoints, pInfo, filled, textInfo);
+		}
+	}
+
+	/**
+	 * Adds the name of a line or area and, in debug mode, the identifiers of
+	 * its nodes to the name buffer.
+	 */
+	protected void bufferNames(List<MapNode> nodes, int[] xPoints,
+			int[] yPoints, DefaultEntityViewInfo pInfo, boolean area,
+			NameInfo textInfo) {
+		if (textInfo != null) {
+			setWayNamePosition(textInfo, xPoints, yPoints, area);
+			nameInfoBuffer.add(textInfo);
+		}
+		if (debugMode && scale >= 2 * pInfo.minNameScale * displayFactor) {
+			int i = 0;
+			for (MapNode node : nodes) {
+				textInfo = new NameInfo(Long.toString(node.getId()),
+						pInfo.nameColor, pInfo.printOrder);
+				textInfo.x = xPoints[i];
+				textInfo.y = yPoints[i];
 				nameInfoBuffer.add(textInfo);
-			}
-			if (debugMode && scale >= 2 * pInfo.minNameScale * displayFactor) {
-				int i = 0;
-				for (MapNode node : nodes) {
-					textInfo = new NameInfo(Long.toString(node.getId()),
-							pInfo.nameColor, pInfo.printOrder);
-					textInfo.x = xPoints[i];
-					textInfo.y = yPoints[i];
-					nameInfoBuffer.add(textInfo);
-					++i;
-				}
+				++i;
 			}
 		}
 	}
@@ -423,32 +486,53 @@ public class DefaultEntityRenderer extends AbstractEntityRenderer {
 		}
 	}
 
-	// ////////////////////////////////////////////////////////////////////
-	// some inner classes...
+	private void sortBuffers() {
+		areaBuffer.sort(new MapAreaComparator());
+		Comparator<MapEntity> comp = new MapEntityComparator();
+		if (wayBuffer.size() < 10000)
+			wayBuffer.sort(comp);
+		if (nodeBuffer.size() < 10000)
+			nodeBuffer.sort(comp);
+	}
 
-	/**
-	 * Stores color and position information for a name to be printed out.
-	 */
-	protected static class NameInfo implements Comparable<NameInfo> {
-		public String name;
-		public UColor color;
-		public int x;
-		public int y;
-		/** Print order value of the corresponding entity. */
-		public int printOrder;
-
-		protected NameInfo(String name, UColor color, int printOrder) {
-			this.name = name;
-			this.color = color;
-			this.printOrder = printOrder;
+	/** Returns the node at which the icon of a node or way is printed. */
+	private MapNode getSymbolNode(MapEntity entity) {
+		if (entity instanceof MapWay) {
+			List<MapNode> wayNodes = getWayNodes((MapWay) entity);
+			// needed to show icons for ways, whose abstraction is empty.
+			if (wayNodes.isEmpty())
+				wayNodes = ((MapWay) entity).getNodes();
+			return wayNodes.get(0);
 		}
+		return (MapNode) entity;
+	}
 
-		@Override
-		public int compareTo(NameInfo arg0) {
-			return Integer.compare(printOrder, arg0.printOrder);
+	private void printNames() {
+		removeOverlappingNames();
+		for (NameInfo textInfo : nameInfoBuffer) {
+			imageBdr.setColor(textInfo.color);
+			imageBdr.drawString(textInfo.name, textInfo.x, textInfo.y);
+		}
+	}
+
+	private static boolean overlaps(NameInfo info, NameInfo info1,
+			int charSize) {
+		int fac = (info.name.equals(info1.name)) ? 3 : 2;
+		if (Math.abs(info.y - info1.y) < charSize * fac) {
+			fac = (info.x < info1.x) ? info.name.length() : info1.name
+					.length();
+			return Math.abs(info.x - info1.x) < charSize * fac;
 		}
+		return false;
 	}
 
+	private static long getCellKey(int row, int col) {
+		return (long) row << 32 | (col & 0xFFFFFFFFL);
+	}
+
+	// ////////////////////////////////////////////////////////////////////
+	// some inner classes...
+
 	/** Compares entity print informations with respect to print order. */
 	protected static class MapEntityComparator implements Comparator<MapEntity> {
 		@Override
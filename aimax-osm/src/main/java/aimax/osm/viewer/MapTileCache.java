@@ -0,0 +1,216 @@
+package aimax.osm.viewer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import aimax.osm.viewer.AbstractEntityRenderer.NameInfo;
+
+/**
+ * Bounded cache for rendered map tiles, used by {@link UnifiedMapDrawer}.
+ * Tiles are identified by string keys. When the capacity is exceeded, the
+ * least recently used tiles are dropped or, if a spill directory has been
+ * set, written to disk and loaded again on demand. The names of spilled
+ * tiles stay in memory. The number of tiles on disk is bounded as well. The
+ * cache is thread-safe, images are written and read outside the lock.
+ */
+public class MapTileCache<IMG_TYPE> {
+	public static final int DEFAULT_TILE_SIZE = 256;
+	public static final int DEFAULT_CAPACITY = 128;
+	/** Number of tiles on disk per tile in memory. */
+	private static final int SPILL_FACTOR = 8;
+
+	private static Logger LOG = Logger.getLogger("aimax.osm");
+
+	private final TileImageFactory<IMG_TYPE> factory;
+	private final int tileSize;
+	private final int capacity;
+	/** Tiles in memory in access order. */
+	private final LinkedHashMap<String, Tile<IMG_TYPE>> tiles;
+	/** Tiles on disk in spill order, without image. */
+	private final LinkedHashMap<String, Tile<IMG_TYPE>> spilledTiles;
+	private File spillDirectory;
+	/** Incremented by {@link #clear()} to drop tiles spilled concurrently. */
+	private int generation;
+
+	public MapTileCache(TileImageFactory<IMG_TYPE> factory) {
+		this(factory, DEFAULT_TILE_SIZE, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a cache.
+	 * @param tileSize width and height of the tiles in pixels
+	 * @param capacity maximal number of tiles in memory
+	 */
+	public MapTileCache(TileImageFactory<IMG_TYPE> factory, int tileSize,
+			int capacity) {
+		this.factory = factory;
+		this.tileSize = tileSize;
+		this.capacity = capacity;
+		tiles = new LinkedHashMap<>(2 * capacity, 0.75f, true);
+		spilledTiles = new LinkedHashMap<>();
+	}
+
+	public TileImageFactory<IMG_TYPE> getFactory() {
+		return factory;
+	}
+
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public synchronized File getSpillDirectory() {
+		return spillDirectory;
+	}
+
+	/**
+	 * Sets the directory for tiles which do not fit into memory. Value null
+	 * (default) disables spilling.
+	 */
+	public void setSpillDirectory(File dir) {
+		clear();
+		synchronized (this) {
+			spillDirectory = dir;
+		}
+	}
+
+	/** Returns the tile with the given key or null if it is not available. */
+	public Tile<IMG_TYPE> get(String key) {
+		Tile<IMG_TYPE> spilled;
+		synchronized (this) {
+			Tile<IMG_TYPE> tile = tiles.get(key);
+			if (tile != null)
+				return tile;
+			spilled = spilledTiles.remove(key);
+		}
+		if (spilled == null)
+			return null;
+		Tile<IMG_TYPE> tile = null;
+		try {
+			tile = new Tile<>(factory.readImage(spilled.file), spilled.names);
+		} catch (IOException e) {
+			LOG.warning("Unable to load map tile. " + e);
+		}
+		spilled.file.delete();
+		if (tile != null)
+			put(key, tile);
+		return tile;
+	}
+
+	/** Adds a tile, possibly replacing the least recently used one. */
+	public void put(String key, Tile<IMG_TYPE> tile) {
+		List<Map.Entry<String, Tile<IMG_TYPE>>> evicted = new ArrayList<>();
+		File dir;
+		int gen;
+		synchronized (this) {
+			tiles.put(key, tile);
+			Iterator<Map.Entry<String, Tile<IMG_TYPE>>> iter = tiles
+					.entrySet().iterator();
+			while (tiles.size() > capacity) {
+				evicted.add(iter.next());
+				iter.remove();
+			}
+			dir = spillDirectory;
+			gen = generation;
+		}
+		if (dir != null)
+			for (Map.Entry<String, Tile<IMG_TYPE>> entry : evicted)
+				spill(entry.getKey(), entry.getValue(), dir, gen);
+	}
+
+	/** Removes all tiles from memory and disk. */
+	public void clear() {
+		List<File> files = new ArrayList<>();
+		synchronized (this) {
+			tiles.clear();
+			for (Tile<IMG_TYPE> tile : spilledTiles.values())
+				files.add(tile.file);
+			spilledTiles.clear();
+			generation++;
+		}
+		for (File file : files)
+			file.delete();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void spill(String key, Tile<IMG_TYPE> tile, File dir, int gen) {
+		File file;
+		try {
+			file = File.createTempFile("tile", ".png", dir);
+		} catch (IOException e) {
+			LOG.warning("Unable to spill map tile. " + e);
+			return;
+		}
+		try {
+			factory.writeImage(tile.image, file);
+		} catch (IOException e) {
+			LOG.warning("Unable to spill map tile. " + e);
+			file.delete();
+			return;
+		}
+		List<File> dropped = new ArrayList<>(2);
+		synchronized (this) {
+			if (gen != generation) {
+				dropped.add(file);
+			} else {
+				Tile<IMG_TYPE> old = spilledTiles.put(key, new Tile<>(
+						tile.names, file));
+				if (old != null)
+					dropped.add(old.file);
+				Iterator<Tile<IMG_TYPE>> iter = spilledTiles.values()
+						.iterator();
+				while (spilledTiles.size() > SPILL_FACTOR * capacity) {
+					dropped.add(iter.next().file);
+					iter.remove();
+				}
+			}
+		}
+		for (File f : dropped)
+			f.delete();
+	}
+
+	/**
+	 * A rendered tile together with the names of the entities whose labels
+	 * are anchored in it. Name positions are relative to the upper left
+	 * corner of the tile. They are printed on top of the composed tiles, so
+	 * that collisions can be resolved for the whole view.
+	 */
+	public static class Tile<IMG_TYPE> {
+		private final IMG_TYPE image;
+		private final List<NameInfo> names;
+		/** File of a spilled tile, whose image is null. */
+		private final File file;
+
+		public Tile(IMG_TYPE image, List<NameInfo> names) {
+			this.image = image;
+			this.names = names;
+			file = null;
+		}
+
+		private Tile(List<NameInfo> names, File file) {
+			image = null;
+			this.names = names;
+			this.file = file;
+		}
+
+		public IMG_TYPE getImage() {
+			return image;
+		}
+
+		public List<NameInfo> getNames() {
+			return names;
+		}
+	}
+}
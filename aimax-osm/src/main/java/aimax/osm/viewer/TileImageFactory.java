@@ -0,0 +1,30 @@
+package aimax.osm.viewer;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Provides the platform dependent image operations needed for tile-based
+ * rendering (see {@link MapTileCache}).
+ */
+public interface TileImageFactory<IMG_TYPE> {
+
+	/** Creates an opaque image of the specified size. */
+	IMG_TYPE createImage(int width, int height);
+
+	/** Creates a builder which is able to draw into images of this factory. */
+	UnifiedImageBuilder<IMG_TYPE> createImageBuilder();
+
+	/**
+	 * Draws an image into another one.
+	 * @param x horizontal position of upper left edge
+	 * @param y vertical position of upper left edge
+	 */
+	void drawImage(IMG_TYPE target, IMG_TYPE image, int x, int y);
+
+	/** Stores an image in a file. */
+	void writeImage(IMG_TYPE image, File file) throws IOException;
+
+	/** Loads an image which was stored before by {@link #writeImage}. */
+	IMG_TYPE readImage(File file) throws IOException;
+}
@@ -4,23 +4,41 @@ import aimax.osm.data.BoundingBox;
 import aimax.osm.data.MapBuilder;
 import aimax.osm.data.OsmMap;
 import aimax.osm.data.entities.MapEntity;
+import aimax.osm.data.entities.MapNode;
 import aimax.osm.data.impl.DefaultMap;
-import aimax.osm.reader.Bz2OsmReader;
+import aimax.osm.reader.BinaryMapReader;
 import aimax.osm.reader.MapReader;
+import aimax.osm.viewer.AbstractEntityRenderer.NameInfo;
 
 import java.io.File;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.IntStream;
 
 /**
+ * Draws the visible part of a map. If a tile cache is set, the map is drawn
+ * tile by tile: Tiles of fixed size are rendered in parallel with copies of
+ * the renderer and kept in the cache, so that panning only needs to compose
+ * cached tiles. Each tile keeps the names of the entities rendered into it.
+ * Only markers and tracks are visited for each image, and they are printed
+ * together with the names of the tiles on top of the tiles, so that name
+ * collisions are resolved for the whole view.
+ *
  * @author Ruediger Lunde
  */
 public class UnifiedMapDrawer<IMAGE_TYPE> {
+    /** Margin around tiles in logical units (see {@link CoordTransformer}). */
+    private static final int TILE_MARGIN = 32;
 
     protected OsmMap map;
     protected CoordTransformer transformer;
     private AbstractEntityRenderer renderer;
     private UnifiedImageBuilder<IMAGE_TYPE> imageBdr;
+    private MapTileCache<IMAGE_TYPE> tileCache;
+    /** View box whose entities have not been visited yet (tiles only). */
+    private BoundingBox unvisitedBox;
+    private float unvisitedScale;
 
     public UnifiedMapDrawer(UnifiedImageBuilder<IMAGE_TYPE> imgBdr) {
         this(imgBdr, new DefaultMap());
@@ -39,12 +57,14 @@ public class UnifiedMapDrawer<IMAGE_TYPE> {
 
     public void setMap(OsmMap map) {
         this.map = map;
+        unvisitedBox = null;
+        clearTileCache();
     }
 
     public void loadMap(InputStream stream) {
         MapBuilder builder = map.getBuilder();
         builder.setEntityClassifier(new MapStyleFactory().createDefaultClassifier());
-        MapReader mapReader = new Bz2OsmReader();
+        MapReader mapReader = new BinaryMapReader();
         mapReader.readMap(stream, builder);
         builder.buildMap();
     }
@@ -52,7 +72,7 @@ public class UnifiedMapDrawer<IMAGE_TYPE> {
     public void loadMap(File file) {
         MapBuilder builder = map.getBuilder();
         builder.setEntityClassifier(new MapStyleFactory().createDefaultClassifier());
-        MapReader mapReader = new Bz2OsmReader();
+        MapReader mapReader = new BinaryMapReader();
         mapReader.readMap(file, builder);
         builder.buildMap();
     }
@@ -63,6 +83,26 @@ public class UnifiedMapDrawer<IMAGE_TYPE> {
 
     public void setRenderer(AbstractEntityRenderer renderer) {
         this.renderer = renderer;
+        unvisitedBox = null;
+        clearTileCache();
+    }
+
+    public MapTileCache<IMAGE_TYPE> getTileCache() {
+        return tileCache;
+    }
+
+    /** Enables tile-based rendering. Value null (default) disables it. */
+    public void setTileCache(MapTileCache<IMAGE_TYPE> tileCache) {
+        this.tileCache = tileCache;
+    }
+
+    /**
+     * Drops all cached tiles. Must be called when the map data or its
+     * classification changes.
+     */
+    public void clearTileCache() {
+        if (tileCache != null)
+            tileCache.clear();
     }
 
     public CoordTransformer getTransformer() {
@@ -78,6 +118,12 @@ public class UnifiedMapDrawer<IMAGE_TYPE> {
             if (adjustToFit)
                 getTransformer().adjustTransformation(getMap().getBoundingBox(),
                         imageBdr.getWidth(), imageBdr.getHeight());
+            if (tileCache != null) {
+                // align view and tiles at whole pixels
+                transformer.adjust(transformer.getOriginX()
+                        - Math.round(transformer.getOriginX()), transformer
+                        .getOriginY() - Math.round(transformer.getOriginY()));
+            }
             float latMin = transformer.lat(imageBdr.getHeight());
             float lonMin = transformer.lon(0);
             float latMax = transformer.lat(0);
@@ -86,10 +132,20 @@ public class UnifiedMapDrawer<IMAGE_TYPE> {
             BoundingBox vbox = new BoundingBox(latMin, lonMin, latMax, lonMax);
             float viewScale = scale / renderer.getDisplayFactor();
             renderer.initForRendering(imageBdr, transformer, map);
-            map.visitEntities(renderer, vbox, viewScale);
+            List<NameInfo> names = null;
+            if (tileCache != null) {
+                names = drawTiles(image, viewScale);
+                unvisitedBox = vbox;
+                unvisitedScale = viewScale;
+            } else {
+                map.visitEntities(renderer, vbox, viewScale);
+            }
             for (MapEntity entity : map.getVisibleMarkersAndTracks(viewScale))
                 entity.accept(renderer);
-            renderer.printBufferedObjects();
+            if (tileCache != null)
+                renderer.printBufferedOverlay(names);
+            else
+                renderer.printBufferedObjects();
             if (renderer.isDebugModeEnabled() && map instanceof DefaultMap) {
                 List<double[]> splits = ((DefaultMap) map).getEntityTree()
                         .getSplitCoords();
@@ -105,4 +161,131 @@ public class UnifiedMapDrawer<IMAGE_TYPE> {
         }
         image = imageBdr.getResult();
     }
+
+    /**
+     * Returns the map node which is the nearest with respect to the specified
+     * view coordinates among the currently displayed nodes (see
+     * {@link AbstractEntityRenderer#getNextNode(int, int)}). If the map is
+     * drawn tile by tile, the entities of the view are visited on demand.
+     */
+    public MapNode getNextNode(int x, int y) {
+        if (unvisitedBox != null) {
+            map.visitEntities(renderer, unvisitedBox, unvisitedScale);
+            unvisitedBox = null;
+        }
+        return renderer.getNextNode(x, y);
+    }
+
+    /**
+     * Composes the tiles which intersect with the view. The entities of all
+     * tiles missing in the cache are queried in one batch, and the tiles are
+     * rendered in parallel.
+     *
+     * @return The names of the tiles which are anchored inside the view, in
+     *         view coordinates.
+     */
+    protected List<NameInfo> drawTiles(IMAGE_TYPE image, float viewScale) {
+        int size = tileCache.getTileSize();
+        long originX = Math.round(transformer.getOriginX());
+        long originY = Math.round(transformer.getOriginY());
+        long colMin = Math.floorDiv(originX, size);
+        long rowMin = Math.floorDiv(originY, size);
+        int cols = (int) (Math.floorDiv(originX + imageBdr.getWidth() - 1, size)
+                - colMin + 1);
+        int rows = (int) (Math.floorDiv(originY + imageBdr.getHeight() - 1, size)
+                - rowMin + 1);
+        String level = getTileLevel();
+        List<MapTileCache.Tile<IMAGE_TYPE>> tiles = new ArrayList<>(cols * rows);
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < cols * rows; i++) {
+            MapTileCache.Tile<IMAGE_TYPE> tile = tileCache.get(level + (colMin + i % cols) + ","
+                    + (rowMin + i / cols));
+            tiles.add(tile);
+            if (tile == null)
+                missing.add(i);
+        }
+        List<BoundingBox> boxes = new ArrayList<>(missing.size());
+        for (int i : missing)
+            boxes.add(getTileBox(colMin + i % cols, rowMin + i / cols));
+        List<List<MapEntity>> entities = map.getVisibleEntities(boxes,
+                viewScale);
+        IntStream.range(0, missing.size()).parallel().forEach(j -> {
+            int i = missing.get(j);
+            MapTileCache.Tile<IMAGE_TYPE> tile = renderTile(colMin + i % cols, rowMin + i / cols,
+                    entities.get(j));
+            tileCache.put(level + (colMin + i % cols) + "," + (rowMin + i / cols),
+                    tile);
+            tiles.set(i, tile);
+        });
+        TileImageFactory<IMAGE_TYPE> factory = tileCache.getFactory();
+        List<NameInfo> names = new ArrayList<>();
+        for (int i = 0; i < tiles.size(); i++) {
+            int x = (int) ((colMin + i % cols) * size - originX);
+            int y = (int) ((rowMin + i / cols) * size - originY);
+            factory.drawImage(image, tiles.get(i).getImage(), x, y);
+            for (NameInfo name : tiles.get(i).getNames()) {
+                NameInfo info = new NameInfo(name.name, name.color,
+                        name.printOrder);
+                info.x = x + name.x;
+                info.y = y + name.y;
+                if (info.x >= 0 && info.x < imageBdr.getWidth() && info.y >= 0
+                        && info.y < imageBdr.getHeight())
+                    names.add(info);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Returns the area whose entities are rendered into a tile. It includes
+     * a margin around the tile, so that symbols reaching into the tile are not
+     * cut off.
+     */
+    protected BoundingBox getTileBox(long col, long row) {
+        int size = tileCache.getTileSize();
+        CoordTransformer tileTransformer = transformer.createShifted(col * size,
+                row * size);
+        int margin = Math.round(TILE_MARGIN * renderer.getDisplayFactor()
+                * transformer.getDotsPerUnit());
+        return new BoundingBox(tileTransformer.lat(size + margin),
+                tileTransformer.lon(-margin), tileTransformer.lat(-margin),
+                tileTransformer.lon(size + margin));
+    }
+
+    /**
+     * Renders the geometry of the given entities into a tile with a copy of
+     * the renderer. The names anchored inside the tile are kept with the tile,
+     * those anchored in the margin belong to neighboring tiles.
+     */
+    protected MapTileCache.Tile<IMAGE_TYPE> renderTile(long col, long row,
+            List<MapEntity> entities) {
+        int size = tileCache.getTileSize();
+        CoordTransformer tileTransformer = transformer.createShifted(col * size,
+                row * size);
+        TileImageFactory<IMAGE_TYPE> factory = tileCache.getFactory();
+        UnifiedImageBuilder<IMAGE_TYPE> tileBdr = factory.createImageBuilder();
+        tileBdr.initialize(factory.createImage(size, size));
+        AbstractEntityRenderer tileRenderer = renderer.copy();
+        tileRenderer.initForRendering(tileBdr, tileTransformer, map);
+        for (MapEntity entity : entities)
+            entity.accept(tileRenderer);
+        tileRenderer.printBufferedGeometry();
+        List<NameInfo> names = new ArrayList<>();
+        for (NameInfo name : tileRenderer.getBufferedNames())
+            if (name.x >= 0 && name.x < size && name.y >= 0 && name.y < size)
+                names.add(name);
+        return new MapTileCache.Tile<>(tileBdr.getResult(), names);
+    }
+
+    /**
+     * Returns a prefix for tile keys which identifies all parameters
+     * influencing the rendering result except the tile position.
+     */
+    private String getTileLevel() {
+        return transformer.getDotsPerDeg() + "," + transformer.getLonCorrection()
+                + "," + transformer.getDotsPerUnit() + ","
+                + renderer.getDisplayFactor() + ","
+                + renderer.getBackgroundColor() + ","
+                + renderer.isDebugModeEnabled() + ":";
+    }
 }
@@ -16,6 +16,9 @@
  * First, attribute checks for classification can be reduced to one check
  * per entity when loading the map. Second, scale visibility information
  * can be used to organize map for fast scale-dependent filtering.
+ * <p>The <code>UnifiedMapDrawer</code> can optionally render the map in
+ * tiles, which are kept in a <code>MapTileCache</code>. Platform dependent
+ * image operations for tiles are provided by a <code>TileImageFactory</code>.
  * 
  * @author Ruediger Lunde
  */
@@ -0,0 +1,282 @@
+package aimax.osm.writer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.entities.EntityAttribute;
+import aimax.osm.data.entities.MapEntity;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+import aimax.osm.data.impl.PackedRTree;
+import aimax.osm.reader.BinaryMapFormat;
+import aimax.osm.reader.OsmRuntimeException;
+
+/**
+ * Adds the binary map format (see {@link BinaryMapFormat}) to the
+ * <code>Bz2OsmWriter</code>. Files with extension <code>osmb</code> are
+ * written in binary format, all others as before. Entities are grouped into
+ * blocks along a Hilbert curve, and the blocks are encoded in parallel.
+ */
+public class BinaryMapWriter extends Bz2OsmWriter {
+
+	private static Logger LOG = Logger.getLogger("aimax.osm");
+
+	/**
+	 * Writes all data from <code>mapData</code> to file, in binary format if
+	 * the file name ends with <code>.osmb</code>.
+	 */
+	@Override
+	public void writeMap(File file, OsmMap mapData, BoundingBox bb) {
+		if (file.getName().endsWith("." + BinaryMapFormat.EXTENSION)) {
+			try (OutputStream os = new BufferedOutputStream(
+					new FileOutputStream(file))) {
+				writeBinaryMap(os, mapData, bb);
+			} catch (IOException e) {
+				LOG.warning("The map could not be written. " + e);
+			}
+		} else {
+			super.writeMap(file, mapData, bb);
+		}
+	}
+
+	/**
+	 * Writes the ways within the bounding box, their nodes, and the points of
+	 * interest within the bounding box in binary format to a stream.
+	 */
+	public void writeBinaryMap(OutputStream os, OsmMap map, BoundingBox bb)
+			throws IOException {
+		Collection<MapWay> ways = map.getWays(bb);
+		Set<MapNode> nodeSet = new LinkedHashSet<>();
+		for (MapWay way : ways)
+			nodeSet.addAll(way.getNodes());
+		nodeSet.addAll(map.getPois(bb));
+		List<MapNode> nodes = new ArrayList<>(nodeSet);
+
+		Map<String, Integer> stringIndices = new HashMap<>();
+		List<String> strings = new ArrayList<>();
+		for (MapNode node : nodes)
+			addStrings(node, stringIndices, strings);
+		for (MapWay way : ways)
+			addStrings(way, stringIndices, strings);
+
+		BoundingBox all = new BoundingBox();
+		all.adjust(nodes);
+		List<List<MapNode>> nodeBlocks = createBlocks(nodes, all,
+				BinaryMapFormat.NODES_PER_BLOCK);
+		List<List<MapWay>> wayBlocks = createBlocks(new ArrayList<>(ways),
+				all, BinaryMapFormat.WAYS_PER_BLOCK);
+		int blockCount = nodeBlocks.size() + wayBlocks.size();
+		byte[][] data = new byte[blockCount][];
+		IntStream.range(0, blockCount).parallel().forEach(i -> {
+			if (i < nodeBlocks.size())
+				data[i] = encodeNodes(nodeBlocks.get(i), stringIndices);
+			else
+				data[i] = encodeWays(wayBlocks.get(i - nodeBlocks.size()),
+						stringIndices);
+		});
+
+		DataOutputStream out = new DataOutputStream(os);
+		out.writeInt(BinaryMapFormat.MAGIC);
+		out.writeInt(BinaryMapFormat.VERSION);
+		writeBoundingBox(out, bb);
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		BinaryMapFormat.writeVarLong(header, strings.size());
+		for (String s : strings) {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			BinaryMapFormat.writeVarLong(header, bytes.length);
+			header.write(bytes, 0, bytes.length);
+		}
+		BinaryMapFormat.writeVarLong(header, blockCount);
+		header.writeTo(out);
+		for (int i = 0; i < blockCount; i++) {
+			BoundingBox blockBox = new BoundingBox();
+			int count;
+			if (i < nodeBlocks.size()) {
+				out.writeByte(BinaryMapFormat.NODE_BLOCK);
+				blockBox.adjust(nodeBlocks.get(i));
+				count = nodeBlocks.get(i).size();
+			} else {
+				out.writeByte(BinaryMapFormat.WAY_BLOCK);
+				for (MapWay way : wayBlocks.get(i - nodeBlocks.size()))
+					blockBox.adjust(way.getNodes());
+				count = wayBlocks.get(i - nodeBlocks.size()).size();
+			}
+			writeBoundingBox(out, blockBox);
+			out.writeInt(count);
+			out.writeInt(data[i].length);
+		}
+		for (byte[] block : data)
+			out.write(block);
+		out.flush();
+		LOG.info("Binary map written: " + nodes.size() + " nodes, "
+				+ ways.size() + " ways, " + blockCount + " blocks, "
+				+ out.size() + " bytes.");
+	}
+
+	@Override
+	public String[] fileFormatDescriptions() {
+		String[] result = super.fileFormatDescriptions();
+		String[] extended = new String[result.length + 1];
+		System.arraycopy(result, 0, extended, 0, result.length);
+		extended[result.length] = "Binary OSM Map ("
+				+ BinaryMapFormat.EXTENSION + ")";
+		return extended;
+	}
+
+	@Override
+	public String[] fileFormatExtensions() {
+		String[] result = super.fileFormatExtensions();
+		String[] extended = new String[result.length + 1];
+		System.arraycopy(result, 0, extended, 0, result.length);
+		extended[result.length] = BinaryMapFormat.EXTENSION;
+		return extended;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private static void addStrings(MapEntity entity,
+			Map<String, Integer> indices, List<String> strings) {
+		if (entity.getName() != null)
+			addString(entity.getName(), indices, strings);
+		for (EntityAttribute att : entity.getAttributes()) {
+			addString(att.getKey(), indices, strings);
+			addString(att.getValue(), indices, strings);
+		}
+	}
+
+	private static void addString(String s, Map<String, Integer> indices,
+			List<String> strings) {
+		if (!indices.containsKey(s)) {
+			indices.put(s, strings.size());
+			strings.add(s);
+		}
+	}
+
+	/**
+	 * Sorts the entities along a Hilbert curve and splits them into blocks,
+	 * which are sorted by ID.
+	 */
+	private static <T extends MapEntity> List<List<T>> createBlocks(
+			List<T> entities, BoundingBox bb, int blockSize) {
+		long[] keys = new long[entities.size()];
+		for (int i = 0; i < keys.length; i++) {
+			T entity = entities.get(i);
+			float lat;
+			float lon;
+			if (entity instanceof MapNode) {
+				lat = ((MapNode) entity).getLat();
+				lon = ((MapNode) entity).getLon();
+			} else {
+				BoundingBox wayBox = ((MapWay) entity).computeBoundingBox();
+				lat = (wayBox.getLatMin() + wayBox.getLatMax()) / 2;
+				lon = (wayBox.getLonMin() + wayBox.getLonMax()) / 2;
+			}
+			int x = toGrid(lon, bb.getLonMin(), bb.getLonMax());
+			int y = toGrid(lat, bb.getLatMin(), bb.getLatMax());
+			// unsigned curve position above the 31 bit item index, so that
+			// signed sorting follows the curve
+			keys[i] = ((long) PackedRTree.getHilbertIndex(x, y) & 0xFFFFFFFFL) << 31
+					| i;
+		}
+		Arrays.sort(keys);
+		List<List<T>> result = new ArrayList<>();
+		for (int begin = 0; begin < keys.length; begin += blockSize) {
+			List<T> block = new ArrayList<>();
+			for (int i = begin; i < Math.min(keys.length, begin + blockSize); i++)
+				block.add(entities.get((int) (keys[i] & Integer.MAX_VALUE)));
+			block.sort((e1, e2) -> Long.compare(e1.getId(), e2.getId()));
+			result.add(block);
+		}
+		return result;
+	}
+
+	private static int toGrid(float value, float min, float max) {
+		if (max <= min)
+			return 0;
+		return (int) ((value - min) / (max - min) * 65535);
+	}
+
+	private static byte[] encodeNodes(List<MapNode> nodes,
+			Map<String, Integer> stringIndices) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(16 * nodes.size());
+		long prevId = 0;
+		int prevLat = 0;
+		int prevLon = 0;
+		for (MapNode node : nodes) {
+			int lat = BinaryMapFormat.toFixed(node.getLat());
+			int lon = BinaryMapFormat.toFixed(node.getLon());
+			BinaryMapFormat.writeSignedVarLong(out, node.getId() - prevId);
+			BinaryMapFormat.writeSignedVarLong(out, (long) lat - prevLat);
+			BinaryMapFormat.writeSignedVarLong(out, (long) lon - prevLon);
+			encodeTags(out, node, stringIndices);
+			prevId = node.getId();
+			prevLat = lat;
+			prevLon = lon;
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] encodeWays(List<MapWay> ways,
+			Map<String, Integer> stringIndices) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(32 * ways.size());
+		long prevId = 0;
+		for (MapWay way : ways) {
+			BinaryMapFormat.writeSignedVarLong(out, way.getId() - prevId);
+			encodeTags(out, way, stringIndices);
+			List<MapNode> wayNodes = way.getNodes();
+			BinaryMapFormat.writeVarLong(out, wayNodes.size());
+			long prevNodeId = 0;
+			for (MapNode node : wayNodes) {
+				BinaryMapFormat.writeSignedVarLong(out, node.getId()
+						- prevNodeId);
+				prevNodeId = node.getId();
+			}
+			prevId = way.getId();
+		}
+		return out.toByteArray();
+	}
+
+	/** Writes name index + 1 (0 for no name) and the attribute indices. */
+	private static void encodeTags(ByteArrayOutputStream out,
+			MapEntity entity, Map<String, Integer> stringIndices) {
+		String name = entity.getName();
+		BinaryMapFormat.writeVarLong(out, name != null ? stringIndices
+				.get(name) + 1 : 0);
+		EntityAttribute[] atts = entity.getAttributes();
+		BinaryMapFormat.writeVarLong(out, atts.length);
+		for (EntityAttribute att : atts) {
+			BinaryMapFormat.writeVarLong(out, stringIndices.get(att.getKey()));
+			BinaryMapFormat.writeVarLong(out, stringIndices.get(att.getValue()));
+		}
+	}
+
+	private static void writeBoundingBox(DataOutputStream out, BoundingBox bb)
+			throws IOException {
+		if (bb == null || bb.getLatMin() > bb.getLatMax())
+			throw new OsmRuntimeException("Undefined bounding box.");
+		out.writeFloat(bb.getLatMin());
+		out.writeFloat(bb.getLonMin());
+		out.writeFloat(bb.getLatMax());
+		out.writeFloat(bb.getLonMax());
+	}
+}
@@ -0,0 +1,15 @@
+package aimax.test.osm.unit;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import aimax.test.osm.unit.data.DataTestSuite;
+import aimax.test.osm.unit.gps.GpsTestSuite;
+import aimax.test.osm.unit.reader.ReaderTestSuite;
+import aimax.test.osm.unit.routing.RoutingTestSuite;
+
+@RunWith(Suite.class)
+@Suite.SuiteClasses({ DataTestSuite.class, GpsTestSuite.class,
+		ReaderTestSuite.class, RoutingTestSuite.class })
+public class AllAimaxOsmUnitTestSuite {
+}
@@ -0,0 +1,88 @@
+package aimax.test.osm.unit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import aimax.osm.data.MapBuilder;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.entities.EntityAttribute;
+import aimax.osm.data.impl.DefaultMap;
+
+/**
+ * Creates synthetic maps for tests which do not depend on map files.
+ */
+public class TestMaps {
+
+	/**
+	 * Creates a street grid in a {@link DefaultMap}. Residential streets run
+	 * along all rows, and every third column is crossed by a primary street,
+	 * so that the nodes in between form chains. Every fourth row is a one-way street, and the
+	 * last column is a footway which is closed for cars. Node positions are
+	 * jittered to avoid equally long paths, and a point of interest is added
+	 * next to the grid center.
+	 * 
+	 * @param size
+	 *            The number of rows and columns, node ids are
+	 *            <code>row * size + col + 1</code>.
+	 * @param seed
+	 *            Seed for the position jitter.
+	 */
+	public static OsmMap createGridMap(int size, long seed) {
+		return createGridMap(new DefaultMap(), size, seed);
+	}
+
+	/** Adds a street grid to a map and builds it. */
+	public static OsmMap createGridMap(OsmMap map, int size, long seed) {
+		MapBuilder builder = map.getBuilder();
+		addGrid(builder, size, seed);
+		return builder.buildMap();
+	}
+
+	/**
+	 * Adds the entities of a street grid to a builder, without building the
+	 * map.
+	 */
+	public static void addGrid(MapBuilder builder, int size, long seed) {
+		Random random = new Random(seed);
+		List<EntityAttribute> noAtts = Collections.emptyList();
+		for (int row = 0; row < size; row++)
+			for (int col = 0; col < size; col++)
+				builder.addNode(getNodeId(size, row, col), null, noAtts,
+						50f + row * 0.001f + random.nextFloat() * 0.0002f,
+						10f + col * 0.0015f + random.nextFloat() * 0.0003f);
+		builder.addNode(size * size + 1, "Shop", noAtts,
+				50f + size * 0.0005f, 10f + size * 0.00075f);
+		long wayId = 1;
+		for (int row = 0; row < size; row++) {
+			List<Long> ids = new ArrayList<>();
+			for (int col = 0; col < size; col++)
+				ids.add(getNodeId(size, row, col));
+			List<EntityAttribute> atts = new ArrayList<>();
+			atts.add(new EntityAttribute("highway", "residential"));
+			if (row % 4 == 1)
+				atts.add(new EntityAttribute("oneway", "yes"));
+			builder.addWay(wayId++, "Row " + row, atts, ids);
+		}
+		for (int col = 0; col < size; col += 3) {
+			List<Long> ids = new ArrayList<>();
+			for (int row = 0; row < size; row++)
+				ids.add(getNodeId(size, row, col));
+			List<EntityAttribute> atts = new ArrayList<>();
+			atts.add(new EntityAttribute("highway", "primary"));
+			builder.addWay(wayId++, "Column " + col, atts, ids);
+		}
+		List<Long> ids = new ArrayList<>();
+		for (int row = 0; row < size; row++)
+			ids.add(getNodeId(size, row, size - 1));
+		List<EntityAttribute> atts = new ArrayList<>();
+		atts.add(new EntityAttribute("highway", "footway"));
+		builder.addWay(wayId, "Footway", atts, ids);
+	}
+
+	/** Returns the id of a grid node. */
+	public static long getNodeId(int size, int row, int col) {
+		return (long) row * size + col + 1;
+	}
+}
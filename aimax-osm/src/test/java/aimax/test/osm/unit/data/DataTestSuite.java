@@ -0,0 +1,9 @@
+package aimax.test.osm.unit.data;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+@RunWith(Suite.class)
+@Suite.SuiteClasses({ NearestWayNodeTest.class, PackedRTreeTest.class })
+public class DataTestSuite {
+}
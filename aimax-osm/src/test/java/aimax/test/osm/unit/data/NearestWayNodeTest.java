@@ -0,0 +1,85 @@
+package aimax.test.osm.unit.data;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import aimax.osm.data.MapWayAttFilter;
+import aimax.osm.data.MapWayFilter;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.Position;
+import aimax.osm.data.compact.CompactMap;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.impl.DefaultMap;
+import aimax.osm.data.impl.DefaultMapBuilder;
+import aimax.test.osm.unit.TestMaps;
+
+public class NearestWayNodeTest {
+	private static final int SIZE = 12;
+
+	@Test
+	public void testPoisAreNoWayNodes() {
+		OsmMap defaultMap = TestMaps.createGridMap(SIZE, 3);
+		OsmMap compactMap = TestMaps.createGridMap(new CompactMap(), SIZE, 3);
+		for (OsmMap map : new OsmMap[] { defaultMap, compactMap }) {
+			MapNode poi = findPoi(map);
+			Assert.assertNotNull(poi);
+			MapNode node = map.getNearestWayNode(new Position(poi), null);
+			Assert.assertNotEquals(poi.getId(), node.getId());
+			Assert.assertFalse(node.getWayRefs().isEmpty());
+		}
+	}
+
+	@Test
+	public void testImplementationsAgree() {
+		OsmMap defaultMap = TestMaps.createGridMap(SIZE, 3);
+		OsmMap compactMap = TestMaps.createGridMap(new CompactMap(), SIZE, 3);
+		MapWayFilter carFilter = MapWayAttFilter.createCarWayFilter();
+		Random random = new Random(5);
+		for (int i = 0; i < 200; i++) {
+			Position pos = new Position(50f + random.nextFloat() * 0.012f,
+					10f + random.nextFloat() * 0.018f);
+			for (MapWayFilter filter : new MapWayFilter[] { null, carFilter })
+				Assert.assertEquals(
+						defaultMap.getNearestWayNode(pos, filter).getId(),
+						compactMap.getNearestWayNode(pos, filter).getId());
+		}
+	}
+
+	@Test
+	public void testBeforeCompile() {
+		DefaultMap compiled = (DefaultMap) TestMaps.createGridMap(SIZE, 3);
+		DefaultMap map = new DefaultMap();
+		TestMaps.addGrid(new DefaultMapBuilder(map), SIZE, 3);
+		MapWayFilter carFilter = MapWayAttFilter.createCarWayFilter();
+		Random random = new Random(7);
+		for (int i = 0; i < 50; i++) {
+			Position pos = new Position(50f + random.nextFloat() * 0.012f,
+					10f + random.nextFloat() * 0.018f);
+			for (MapWayFilter filter : new MapWayFilter[] { null, carFilter }) {
+				List<MapNode> expected = compiled.getNearestWayNodes(pos, 5,
+						filter);
+				List<MapNode> actual = map.getNearestWayNodes(pos, 5, filter);
+				Assert.assertEquals(5, actual.size());
+				for (int j = 0; j < 5; j++)
+					Assert.assertEquals(expected.get(j).getId(), actual.get(j)
+							.getId());
+				Assert.assertEquals(expected.get(0).getId(), map
+						.getNearestWayNode(pos, filter).getId());
+			}
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private static MapNode findPoi(OsmMap map) {
+		for (MapNode node : map.getPois(map.getBoundingBox()))
+			if ("Shop".equals(node.getName()))
+				return node;
+		return null;
+	}
+}
@@ -0,0 +1,157 @@
+package aimax.test.osm.unit.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.Position;
+import aimax.osm.data.impl.PackedRTree;
+
+/**
+ * Compares the results of tree queries with a brute-force scan over all
+ * items.
+ */
+public class PackedRTreeTest {
+	private static final int COUNT = 5000;
+
+	private float[] latMin = new float[COUNT];
+	private float[] lonMin = new float[COUNT];
+	private float[] latMax = new float[COUNT];
+	private float[] lonMax = new float[COUNT];
+	private float[] scales = new float[COUNT];
+	private List<Integer> items = new ArrayList<>();
+	private PackedRTree<Integer> tree;
+	private Random random = new Random(11);
+
+	@Before
+	public void setUp() {
+		for (int i = 0; i < COUNT; i++) {
+			latMin[i] = 48f + random.nextFloat();
+			lonMin[i] = 9f + random.nextFloat() * 2f;
+			// every second item is a point
+			latMax[i] = latMin[i] + (i % 2) * random.nextFloat() * 0.01f;
+			lonMax[i] = lonMin[i] + (i % 2) * random.nextFloat() * 0.01f;
+			scales[i] = random.nextFloat();
+			items.add(i);
+		}
+		tree = new PackedRTree<>(items, latMin, lonMin, latMax, lonMax,
+				scales);
+	}
+
+	@Test
+	public void testHilbertOrder() {
+		List<Integer> sorted = tree.getItems();
+		Assert.assertEquals(new HashSet<>(items), new HashSet<>(sorted));
+		float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < COUNT; i++) {
+			minX = Math.min(minX, lonMin[i]);
+			minY = Math.min(minY, latMin[i]);
+			maxX = Math.max(maxX, lonMax[i]);
+			maxY = Math.max(maxY, latMax[i]);
+		}
+		float scaleX = 65535 / (maxX - minX);
+		float scaleY = 65535 / (maxY - minY);
+		int prev = 0;
+		for (int i : sorted) {
+			int x = (int) (((lonMin[i] + lonMax[i]) / 2f - minX) * scaleX);
+			int y = (int) (((latMin[i] + latMax[i]) / 2f - minY) * scaleY);
+			int index = PackedRTree.getHilbertIndex(x, y);
+			Assert.assertTrue(Integer.compareUnsigned(prev, index) <= 0);
+			prev = index;
+		}
+		// indices of the second half of the curve are negative as int
+		Assert.assertTrue(prev < 0);
+	}
+
+	@Test
+	public void testBoxQueries() {
+		Predicate<Integer> even = i -> i % 2 == 0;
+		List<BoundingBox> boxes = new ArrayList<>();
+		for (int q = 0; q < 200; q++) {
+			float lat = 48f + random.nextFloat();
+			float lon = 9f + random.nextFloat() * 2f;
+			float size = random.nextFloat() * 0.2f;
+			BoundingBox bb = new BoundingBox(lat, lon, lat + size, lon + 2
+					* size);
+			boxes.add(bb);
+			float scale = random.nextFloat();
+			assertInHilbertOrder(scan(bb, Float.POSITIVE_INFINITY, null),
+					tree.query(bb, null));
+			assertInHilbertOrder(scan(bb, scale, even),
+					tree.query(bb, scale, even));
+		}
+		List<List<Integer>> results = tree.query(boxes, 0.5f);
+		for (int q = 0; q < boxes.size(); q++)
+			assertInHilbertOrder(scan(boxes.get(q), 0.5f, null),
+					results.get(q));
+	}
+
+	@Test
+	public void testNearest() {
+		List<Predicate<Integer>> filters = Arrays.asList(null,
+				i -> i % 2 == 0);
+		for (int q = 0; q < 100; q++) {
+			float lat = 47.9f + random.nextFloat() * 1.2f;
+			float lon = 8.9f + random.nextFloat() * 2.2f;
+			for (Predicate<Integer> filter : filters) {
+				List<Integer> result = tree.getNearest(lat, lon, 5, filter);
+				List<Float> expected = new ArrayList<>();
+				for (int i = 0; i < COUNT; i++)
+					if (filter == null || filter.test(i))
+						expected.add(getDistance(lat, lon, i));
+				expected.sort(null);
+				Assert.assertEquals(5, result.size());
+				for (int k = 0; k < result.size(); k++)
+					Assert.assertEquals(expected.get(k),
+							getDistance(lat, lon, result.get(k)), 1e-6f);
+				Assert.assertEquals(result.get(0),
+						tree.getNearest(lat, lon, filter));
+			}
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private List<Integer> scan(BoundingBox bb, float scale,
+			Predicate<Integer> filter) {
+		List<Integer> result = new ArrayList<>();
+		for (int i = 0; i < COUNT; i++)
+			if (latMin[i] <= bb.getLatMax() && latMax[i] >= bb.getLatMin()
+					&& lonMin[i] <= bb.getLonMax()
+					&& lonMax[i] >= bb.getLonMin() && scales[i] <= scale
+					&& (filter == null || filter.test(i)))
+				result.add(i);
+		return result;
+	}
+
+	/**
+	 * Checks that the actual items are the expected ones and are returned in
+	 * tree order.
+	 */
+	private void assertInHilbertOrder(List<Integer> expected,
+			List<Integer> actual) {
+		Assert.assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+		Assert.assertEquals(expected.size(), actual.size());
+		List<Integer> sorted = new ArrayList<>(tree.getItems());
+		sorted.retainAll(new HashSet<>(expected));
+		Assert.assertEquals(sorted, actual);
+	}
+
+	/** Distance in KM from a position to the nearest point of an item box. */
+	private float getDistance(float lat, float lon, int i) {
+		float cLat = Math.max(latMin[i], Math.min(lat, latMax[i]));
+		float cLon = Math.max(lonMin[i], Math.min(lon, lonMax[i]));
+		return (float) Position.getDistKM(lat, lon, cLat, cLon);
+	}
+}
@@ -0,0 +1,82 @@
+package aimax.test.osm.unit.gps;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aimax.osm.gps.GpsFix;
+import aimax.osm.gps.GpsLocator;
+
+public class GpsLocatorTest {
+	private static final String VALID = "$GPGGA,103131.000,4824.2758,N,00959.9357,E,1,06,1.3,458.5,M,43.9,M,,0000*54\r\n";
+
+	private GpsLocator locator;
+	private List<GpsFix> fixes;
+
+	@Before
+	public void setUp() {
+		locator = new GpsLocator();
+		fixes = new ArrayList<>();
+		locator.addGpsPositionListener(fixes::add);
+	}
+
+	@Test
+	public void testValidMessage() {
+		locator.messageReceived(VALID);
+		Assert.assertEquals(1, fixes.size());
+		GpsFix fix = fixes.get(0);
+		Assert.assertTrue(fix.isPosOk());
+		Assert.assertEquals(48f + 24.2758f / 60f, fix.getLat(), 1e-5f);
+		Assert.assertEquals(9f + 59.9357f / 60f, fix.getLon(), 1e-5f);
+		Assert.assertSame(fix, locator.getCurrPosition());
+	}
+
+	@Test
+	public void testInvalidFix() {
+		locator.messageReceived("$GPGGA,120007.000,5056.2197,S,02406.0867,W,0,00,99.9,12787.4,M,62.0,M,,0000*7B\r\n");
+		Assert.assertEquals(1, fixes.size());
+		GpsFix fix = fixes.get(0);
+		Assert.assertFalse(fix.isPosOk());
+		Assert.assertEquals(-50f - 56.2197f / 60f, fix.getLat(), 1e-5f);
+		Assert.assertEquals(-24f - 6.0867f / 60f, fix.getLon(), 1e-5f);
+	}
+
+	@Test
+	public void testEmptyFields() {
+		locator.messageReceived(VALID);
+		GpsFix last = locator.getCurrPosition();
+		// no position yet
+		locator.messageReceived("$GPGGA,103132.000,,,,,0,00,,,M,,M,,*66\r\n");
+		// latitude only
+		locator.messageReceived("$GPGGA,103133.000,4824.2758,N,,,1,06,1.3,458.5,M,43.9,M,,0000*54\r\n");
+		// trailing fields missing
+		locator.messageReceived("$GPGGA,103134.000,4824.2758,N,00959.9357,E,1\r\n");
+		locator.messageReceived("$GPGGA\r\n");
+		Assert.assertEquals(1, fixes.size());
+		Assert.assertSame(last, locator.getCurrPosition());
+	}
+
+	@Test
+	public void testCorruptedFields() {
+		locator.messageReceived(VALID);
+		GpsFix last = locator.getCurrPosition();
+		locator.messageReceived("$GPGGA,103132.000,48x4.2758,N,00959.9357,E,1,06,1.3,458.5,M,43.9,M,,0000*54\r\n");
+		locator.messageReceived("$GPGGA,103133.000,4824.2758,N,009#9.9357,E,1,06,1.3,458.5,M,43.9,M,,0000*54\r\n");
+		locator.messageReceived("$GPGGA,103134.000,4824.27.58,N,00959.9357,E,1,06,1.3,458.5,M,43.9,M,,0000*54\r\n");
+		// transmission error in the middle of the message
+		locator.messageReceived("$GPGGA,103135.000,4824.2758,N,00959.9357,E,1,06,1.3$GPGGA,1,2\r\n");
+		Assert.assertEquals(1, fixes.size());
+		Assert.assertSame(last, locator.getCurrPosition());
+	}
+
+	@Test
+	public void testOtherMessages() {
+		locator.messageReceived("$GPRMC,103131.000,A,4824.2758,N,00959.9357,E,0.0,0.0,010110,,*2B\r\n");
+		locator.messageReceived("$GPGSA,A,3,04,05,,09,12,,,24,,,,,2.5,1.3,2.1*39\r\n");
+		Assert.assertTrue(fixes.isEmpty());
+		Assert.assertFalse(locator.getCurrPosition().isPosOk());
+	}
+}
@@ -0,0 +1,9 @@
+package aimax.test.osm.unit.gps;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+@RunWith(Suite.class)
+@Suite.SuiteClasses({ NmeaFileReaderTest.class, GpsLocatorTest.class })
+public class GpsTestSuite {
+}
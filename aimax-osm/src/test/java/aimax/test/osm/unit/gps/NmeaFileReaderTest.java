@@ -0,0 +1,92 @@
+package aimax.test.osm.unit.gps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aimax.osm.gps.NmeaFileReader;
+
+public class NmeaFileReaderTest {
+	private static final String GGA = "$GPGGA,103131.000,4824.2758,N,00959.9357,E,1,06,1.3,458.5,M,43.9,M,,0000*54";
+	private static final String RMC = "$GPRMC,103131.000,A,4824.2758,N,00959.9357,E,0.0,0.0,010110,,*2B";
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("track", ".nmea");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testLastMessageWithoutLineBreak() throws IOException {
+		List<String> messages = read(GGA + "\r\n" + RMC + "\r\n" + GGA);
+		Assert.assertEquals(3, messages.size());
+		Assert.assertEquals(GGA + "\r\n", messages.get(0));
+		Assert.assertEquals(RMC + "\r\n", messages.get(1));
+		Assert.assertEquals(GGA, messages.get(2));
+	}
+
+	@Test
+	public void testLastMessageWithLineBreak() throws IOException {
+		List<String> messages = read(RMC + "\r\n" + GGA + "\r\n");
+		Assert.assertEquals(2, messages.size());
+		Assert.assertEquals(GGA + "\r\n", messages.get(1));
+	}
+
+	@Test
+	public void testIncompleteLastMessage() throws IOException {
+		List<String> messages = read(GGA + "\r\n$GP");
+		Assert.assertEquals(1, messages.size());
+		Assert.assertEquals(GGA + "\r\n", messages.get(0));
+	}
+
+	@Test
+	public void testEmptyFile() throws IOException {
+		Assert.assertTrue(read("").isEmpty());
+	}
+
+	@Test
+	public void testReadTwice() throws IOException {
+		Files.write(file.toPath(), (GGA + "\r\n" + RMC)
+				.getBytes(StandardCharsets.US_ASCII));
+		List<String> messages = new ArrayList<>();
+		NmeaFileReader reader = new NmeaFileReader(file);
+		reader.addListener(messages::add);
+		reader.readAll();
+		reader.readAll();
+		Assert.assertEquals(4, messages.size());
+		Assert.assertEquals(messages.subList(0, 2), messages.subList(2, 4));
+	}
+
+	@Test(expected = IOException.class)
+	public void testMissingFile() throws IOException {
+		file.delete();
+		new NmeaFileReader(file).readAll();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private List<String> read(String text) throws IOException {
+		Files.write(file.toPath(), text.getBytes(StandardCharsets.US_ASCII));
+		List<String> result = new ArrayList<>();
+		NmeaFileReader reader = new NmeaFileReader(file);
+		reader.addListener(result::add);
+		reader.readAll();
+		return result;
+	}
+}
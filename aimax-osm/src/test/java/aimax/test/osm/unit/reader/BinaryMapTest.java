@@ -0,0 +1,178 @@
+package aimax.test.osm.unit.reader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.MapBuilder;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.entities.EntityAttribute;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+import aimax.osm.data.impl.DefaultMap;
+import aimax.osm.reader.BinaryMapFormat;
+import aimax.osm.reader.BinaryMapReader;
+import aimax.osm.writer.BinaryMapWriter;
+import aimax.test.osm.unit.TestMaps;
+
+public class BinaryMapTest {
+	// more nodes than fit into one block
+	private static final int SIZE = 100;
+
+	private OsmMap source;
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		source = TestMaps.createGridMap(SIZE, 31);
+		file = File.createTempFile("grid", "." + BinaryMapFormat.EXTENSION);
+		new BinaryMapWriter().writeMap(file, source, source.getBoundingBox());
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testVarLongs() throws EOFException {
+		long[] values = { 0, 1, -1, 63, -64, 64, 127, 128, -129, 300,
+				Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE,
+				Long.MIN_VALUE };
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (long value : values)
+			BinaryMapFormat.writeSignedVarLong(out, value);
+		BinaryMapFormat.writeVarLong(out, 1234567890123L);
+		BinaryMapFormat.Decoder in = new BinaryMapFormat.Decoder(
+				out.toByteArray());
+		for (long value : values)
+			Assert.assertEquals(value, in.readSignedVarLong());
+		Assert.assertEquals(1234567890123L, in.readVarLong());
+		try {
+			in.readVarLong();
+			Assert.fail("End of block not detected.");
+		} catch (EOFException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testFixedPoint() {
+		for (float degrees : new float[] { 0f, 48.39841f, -179.99999f, 90f,
+				9.98765f })
+			Assert.assertEquals(degrees, BinaryMapFormat
+					.toDegrees(BinaryMapFormat.toFixed(degrees)), 1e-6f);
+	}
+
+	@Test
+	public void testRoundTrip() {
+		OsmMap map = read(null);
+		Assert.assertEquals(source.getNodeCount(), map.getNodeCount());
+		Assert.assertEquals(source.getWayCount(), map.getWayCount());
+		Assert.assertEquals(source.getPoiCount(), map.getPoiCount());
+		for (MapWay way : source.getWays(source.getBoundingBox()))
+			assertWayEquals(way, map.getWay(way.getId()));
+		for (MapNode poi : source.getPois(source.getBoundingBox()))
+			assertNodeEquals(poi, map.getNode(poi.getId()));
+	}
+
+	@Test
+	public void testBoundingBoxFilter() {
+		BoundingBox all = source.getBoundingBox();
+		float latStep = (all.getLatMax() - all.getLatMin()) / 10;
+		float lonStep = (all.getLonMax() - all.getLonMin()) / 10;
+		// a corner, so that some node blocks can be skipped
+		BoundingBox bb = new BoundingBox(all.getLatMin() + latStep,
+				all.getLonMin() + lonStep, all.getLatMin() + 2 * latStep,
+				all.getLonMin() + 2 * lonStep);
+		OsmMap map = read(bb);
+
+		// all ways with a node in the box, with all of their nodes
+		Set<Long> expectedWays = new HashSet<>();
+		for (MapWay way : source.getWays(source.getBoundingBox())) {
+			for (MapNode node : way.getNodes()) {
+				if (contains(bb, node)) {
+					expectedWays.add(way.getId());
+					assertWayEquals(way, map.getWay(way.getId()));
+					break;
+				}
+			}
+		}
+		Assert.assertFalse(expectedWays.isEmpty());
+		Assert.assertTrue(expectedWays.size() < source.getWayCount());
+		Assert.assertEquals(expectedWays.size(), map.getWayCount());
+		for (MapWay way : map.getWays(map.getBoundingBox()))
+			Assert.assertTrue(expectedWays.contains(way.getId()));
+		for (MapNode poi : source.getPois(source.getBoundingBox())) {
+			if (contains(bb, poi))
+				assertNodeEquals(poi, map.getNode(poi.getId()));
+			else
+				Assert.assertNull(map.getNode(poi.getId()));
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private OsmMap read(BoundingBox filter) {
+		DefaultMap result = new DefaultMap();
+		BinaryMapReader reader = new BinaryMapReader();
+		if (filter != null)
+			reader.setFilter(filter);
+		MapBuilder builder = result.getBuilder();
+		reader.readMap(file, builder);
+		builder.buildMap();
+		return result;
+	}
+
+	private static boolean contains(BoundingBox bb, MapNode node) {
+		return node.getLat() >= bb.getLatMin()
+				&& node.getLat() <= bb.getLatMax()
+				&& node.getLon() >= bb.getLonMin()
+				&& node.getLon() <= bb.getLonMax();
+	}
+
+	private static void assertWayEquals(MapWay expected, MapWay actual) {
+		Assert.assertNotNull(actual);
+		Assert.assertEquals(expected.getName(), actual.getName());
+		Assert.assertEquals(getAttributes(expected.getAttributes()),
+				getAttributes(actual.getAttributes()));
+		Assert.assertEquals(expected.getNodes().size(), actual.getNodes()
+				.size());
+		for (int i = 0; i < expected.getNodes().size(); i++)
+			assertNodeEquals(expected.getNodes().get(i), actual.getNodes()
+					.get(i));
+	}
+
+	private static void assertNodeEquals(MapNode expected, MapNode actual) {
+		Assert.assertNotNull(actual);
+		Assert.assertEquals(expected.getId(), actual.getId());
+		Assert.assertEquals(expected.getName(), actual.getName());
+		Assert.assertEquals(getAttributes(expected.getAttributes()),
+				getAttributes(actual.getAttributes()));
+		Assert.assertTrue(actual.hasPosition());
+		Assert.assertEquals(expected.getLat(), actual.getLat(), 1e-6f);
+		Assert.assertEquals(expected.getLon(), actual.getLon(), 1e-6f);
+	}
+
+	private static List<String> getAttributes(EntityAttribute[] atts) {
+		List<String> result = new ArrayList<>();
+		for (EntityAttribute att : atts)
+			result.add(att.getKey() + "=" + att.getValue());
+		result.sort(null);
+		return result;
+	}
+}
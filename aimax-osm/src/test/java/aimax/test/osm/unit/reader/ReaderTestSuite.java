@@ -0,0 +1,9 @@
+package aimax.test.osm.unit.reader;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+@RunWith(Suite.class)
+@Suite.SuiteClasses({ BinaryMapTest.class, StreamingOsmReaderTest.class })
+public class ReaderTestSuite {
+}
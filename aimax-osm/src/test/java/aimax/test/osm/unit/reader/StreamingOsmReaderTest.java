@@ -0,0 +1,192 @@
+package aimax.test.osm.unit.reader;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.EntityClassifier;
+import aimax.osm.data.MapBuilder;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.entities.EntityAttribute;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+import aimax.osm.data.impl.DefaultMap;
+import aimax.osm.reader.Bz2OsmReader;
+import aimax.osm.reader.FilteringOsmReader;
+import aimax.osm.reader.OsmRuntimeException;
+import aimax.osm.reader.StreamingOsmReader;
+import aimax.osm.writer.Bz2OsmWriter;
+import aimax.test.osm.unit.TestMaps;
+
+/**
+ * Compares the maps built by the streaming reader with the maps built by the
+ * SAX based reader from the same files.
+ */
+public class StreamingOsmReaderTest {
+	// more entities than fit into one batch
+	private static final int SIZE = 100;
+
+	private OsmMap source;
+	private File osmFile;
+	private File bz2File;
+
+	@Before
+	public void setUp() throws IOException {
+		source = TestMaps.createGridMap(SIZE, 17);
+		osmFile = File.createTempFile("grid", ".osm");
+		bz2File = File.createTempFile("grid", ".osm.bz2");
+		Bz2OsmWriter writer = new Bz2OsmWriter();
+		writer.writeMap(osmFile, source, source.getBoundingBox());
+		writer.writeMap(bz2File, source, source.getBoundingBox());
+	}
+
+	@After
+	public void tearDown() {
+		osmFile.delete();
+		bz2File.delete();
+	}
+
+	@Test
+	public void testUnfiltered() {
+		OsmMap expected = read(new Bz2OsmReader(), osmFile);
+		Assert.assertEquals(source.getWayCount(), expected.getWayCount());
+		assertMapEquals(expected, read(new StreamingOsmReader(), osmFile));
+	}
+
+	@Test
+	public void testBz2() {
+		OsmMap expected = read(new Bz2OsmReader(), osmFile);
+		Assert.assertTrue(bz2File.length() < osmFile.length());
+		assertMapEquals(expected, read(new StreamingOsmReader(), bz2File));
+	}
+
+	@Test
+	public void testBoundingBoxFilter() {
+		BoundingBox all = source.getBoundingBox();
+		float latStep = (all.getLatMax() - all.getLatMin()) / 10;
+		float lonStep = (all.getLonMax() - all.getLonMin()) / 10;
+		BoundingBox bb = new BoundingBox(all.getLatMin() + latStep,
+				all.getLonMin() + lonStep, all.getLatMin() + 2 * latStep,
+				all.getLonMin() + 2 * lonStep);
+
+		FilteringOsmReader sax = new Bz2OsmReader();
+		sax.setFilter(bb);
+		OsmMap expected = read(sax, osmFile);
+		Assert.assertTrue(expected.getWayCount() > 0);
+		Assert.assertTrue(expected.getWayCount() < source.getWayCount());
+
+		FilteringOsmReader streaming = new StreamingOsmReader();
+		streaming.setFilter(bb);
+		assertMapEquals(expected, read(streaming, bz2File));
+	}
+
+	@Test
+	public void testAttributeFilter() {
+		EntityClassifier<Boolean> filter = new EntityClassifier<>();
+		filter.addRule("highway", "primary", Boolean.TRUE);
+		filter.addRule("highway", "footway", Boolean.TRUE);
+
+		FilteringOsmReader sax = new Bz2OsmReader();
+		sax.setFilter(filter);
+		OsmMap expected = read(sax, osmFile);
+		Assert.assertEquals((SIZE + 2) / 3 + 1, expected.getWayCount());
+
+		FilteringOsmReader streaming = new StreamingOsmReader();
+		streaming.setFilter(filter);
+		assertMapEquals(expected, read(streaming, osmFile));
+	}
+
+	@Test(timeout = 10000)
+	public void testMalformedXml() throws Exception {
+		byte[] bytes = Files.readAllBytes(osmFile.toPath());
+		// several batches of valid entities, followed by a broken tag
+		String text = new String(bytes, 0, bytes.length * 3 / 4,
+				StandardCharsets.UTF_8);
+		text = text.substring(0, text.lastIndexOf('<')) + "<node id=\"1\" <";
+		byte[] malformed = text.getBytes(StandardCharsets.UTF_8);
+
+		try {
+			new Bz2OsmReader().readMap(new ByteArrayInputStream(malformed),
+					new DefaultMap().getBuilder());
+			Assert.fail("Malformed XML not detected by SAX reader.");
+		} catch (OsmRuntimeException e) {
+			// expected
+		}
+		try {
+			new StreamingOsmReader().readMap(new ByteArrayInputStream(
+					malformed), new DefaultMap().getBuilder());
+			Assert.fail("Malformed XML not detected by streaming reader.");
+		} catch (OsmRuntimeException e) {
+			// expected
+		}
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().startsWith("osm-")) {
+				thread.join(5000);
+				Assert.assertFalse("Worker thread " + thread.getName()
+						+ " still alive.", thread.isAlive());
+			}
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private static OsmMap read(FilteringOsmReader reader, File file) {
+		DefaultMap result = new DefaultMap();
+		MapBuilder builder = result.getBuilder();
+		reader.readMap(file, builder);
+		builder.buildMap();
+		return result;
+	}
+
+	private static void assertMapEquals(OsmMap expected, OsmMap actual) {
+		Assert.assertEquals(expected.getNodeCount(), actual.getNodeCount());
+		Assert.assertEquals(expected.getWayCount(), actual.getWayCount());
+		Assert.assertEquals(expected.getPoiCount(), actual.getPoiCount());
+		for (MapWay way : expected.getWays(expected.getBoundingBox()))
+			assertWayEquals(way, actual.getWay(way.getId()));
+		for (MapNode poi : expected.getPois(expected.getBoundingBox()))
+			assertNodeEquals(poi, actual.getNode(poi.getId()));
+	}
+
+	private static void assertWayEquals(MapWay expected, MapWay actual) {
+		Assert.assertNotNull(actual);
+		Assert.assertEquals(expected.getName(), actual.getName());
+		Assert.assertEquals(getAttributes(expected.getAttributes()),
+				getAttributes(actual.getAttributes()));
+		Assert.assertEquals(expected.getNodes().size(), actual.getNodes()
+				.size());
+		for (int i = 0; i < expected.getNodes().size(); i++)
+			assertNodeEquals(expected.getNodes().get(i), actual.getNodes()
+					.get(i));
+	}
+
+	private static void assertNodeEquals(MapNode expected, MapNode actual) {
+		Assert.assertNotNull(actual);
+		Assert.assertEquals(expected.getId(), actual.getId());
+		Assert.assertEquals(expected.getName(), actual.getName());
+		Assert.assertEquals(getAttributes(expected.getAttributes()),
+				getAttributes(actual.getAttributes()));
+		Assert.assertEquals(expected.getLat(), actual.getLat(), 0f);
+		Assert.assertEquals(expected.getLon(), actual.getLon(), 0f);
+	}
+
+	private static List<String> getAttributes(EntityAttribute[] atts) {
+		List<String> result = new ArrayList<>();
+		for (EntityAttribute att : atts)
+			result.add(att.getKey() + "=" + att.getValue());
+		result.sort(null);
+		return result;
+	}
+}
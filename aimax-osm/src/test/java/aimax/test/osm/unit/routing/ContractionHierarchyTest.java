@@ -0,0 +1,147 @@
+package aimax.test.osm.unit.routing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aimax.osm.data.MapWayAttFilter;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.routing.ContractionHierarchy;
+import aimax.osm.routing.ContractionHierarchySearch;
+import aimax.osm.routing.OsmFunctions.OneWayMode;
+import aimax.osm.routing.RoutingGraph;
+import aimax.osm.routing.RoutingGraphSearch;
+import aimax.test.osm.unit.TestMaps;
+
+public class ContractionHierarchyTest {
+	private static final int SIZE = 20;
+
+	private OsmMap map;
+	private RoutingGraph graph;
+	private ContractionHierarchy hierarchy;
+	private File file;
+
+	@Before
+	public void setUp() {
+		map = TestMaps.createGridMap(SIZE, 11);
+		graph = RoutingGraph.compile(map,
+				MapWayAttFilter.createCarWayFilter(),
+				OneWayMode.TRAVEL_FORWARD);
+		hierarchy = ContractionHierarchy.build(graph);
+	}
+
+	@After
+	public void tearDown() {
+		if (file != null)
+			file.delete();
+	}
+
+	@Test
+	public void testUnpackShortcuts() {
+		Assert.assertTrue(hierarchy.getShortcutCount() > 0);
+		int shortcuts = 0;
+		for (int e = 0; e < hierarchy.getEdgeCount(); e++) {
+			List<Integer> graphEdges = new ArrayList<>();
+			hierarchy.unpackEdge(e, graphEdges);
+			if (!hierarchy.isShortcut(e)) {
+				Assert.assertEquals(1, graphEdges.size());
+				continue;
+			}
+			shortcuts++;
+			Assert.assertTrue(graphEdges.size() > 1);
+			Assert.assertEquals(hierarchy.getEdgeSource(e),
+					graph.getEdgeSource(graphEdges.get(0)));
+			Assert.assertEquals(hierarchy.getEdgeTarget(e),
+					graph.getEdgeTarget(graphEdges.get(graphEdges.size() - 1)));
+			float weight = 0f;
+			for (int i = 0; i < graphEdges.size(); i++) {
+				if (i > 0)
+					Assert.assertEquals(graph.getEdgeTarget(graphEdges
+							.get(i - 1)), graph.getEdgeSource(graphEdges
+							.get(i)));
+				weight += graph.getEdgeWeight(graphEdges.get(i));
+			}
+			Assert.assertEquals(hierarchy.getEdgeWeight(e), weight, 1e-4f);
+		}
+		Assert.assertEquals(hierarchy.getShortcutCount(), shortcuts);
+	}
+
+	@Test
+	public void testSearchMatchesGraphSearch() {
+		checkSearchMatchesGraphSearch(new ContractionHierarchySearch(
+				hierarchy));
+	}
+
+	@Test
+	public void testWriteAndRead() throws IOException {
+		file = File.createTempFile("grid", ".ch");
+		hierarchy.write(file);
+		ContractionHierarchy copy = ContractionHierarchy.read(file, graph);
+		Assert.assertNotNull(copy);
+		Assert.assertSame(graph, copy.getGraph());
+		Assert.assertEquals(hierarchy.getEdgeCount(), copy.getEdgeCount());
+		Assert.assertEquals(hierarchy.getShortcutCount(),
+				copy.getShortcutCount());
+		for (int i = 0; i < graph.getNodeCount(); i++)
+			Assert.assertEquals(hierarchy.getRank(i), copy.getRank(i));
+		for (int e = 0; e < hierarchy.getEdgeCount(); e++) {
+			Assert.assertEquals(hierarchy.getEdgeSource(e),
+					copy.getEdgeSource(e));
+			Assert.assertEquals(hierarchy.getEdgeTarget(e),
+					copy.getEdgeTarget(e));
+			Assert.assertEquals(hierarchy.getEdgeWeight(e),
+					copy.getEdgeWeight(e), 0f);
+			List<Integer> expected = new ArrayList<>();
+			List<Integer> actual = new ArrayList<>();
+			hierarchy.unpackEdge(e, expected);
+			copy.unpackEdge(e, actual);
+			Assert.assertEquals(expected, actual);
+		}
+		checkSearchMatchesGraphSearch(new ContractionHierarchySearch(copy));
+	}
+
+	@Test
+	public void testReadForOtherGraph() throws IOException {
+		file = File.createTempFile("grid", ".ch");
+		hierarchy.write(file);
+		RoutingGraph other = RoutingGraph.compile(map,
+				MapWayAttFilter.createCarWayFilter(), OneWayMode.IGNORE);
+		Assert.assertNull(ContractionHierarchy.read(file, other));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void checkSearchMatchesGraphSearch(
+			ContractionHierarchySearch search) {
+		RoutingGraphSearch graphSearch = new RoutingGraphSearch(graph);
+		Random random = new Random(13);
+		for (int i = 0; i < 100; i++) {
+			MapNode from = map.getNode(TestMaps.getNodeId(SIZE,
+					random.nextInt(SIZE), random.nextInt(SIZE)));
+			MapNode to = map.getNode(TestMaps.getNodeId(SIZE,
+					random.nextInt(SIZE), random.nextInt(SIZE)));
+			List<MapNode> expected = graphSearch.findPath(from, to);
+			List<MapNode> path = search.findPath(from, to);
+			// the ends of one-way rows cannot be left
+			if (expected == null) {
+				Assert.assertNull(path);
+				continue;
+			}
+			Assert.assertNotNull(path);
+			Assert.assertSame(from, path.get(0));
+			Assert.assertSame(to, path.get(path.size() - 1));
+			Assert.assertEquals(graphSearch.getPathCost(),
+					search.getPathCost(), 1e-4);
+		}
+	}
+}
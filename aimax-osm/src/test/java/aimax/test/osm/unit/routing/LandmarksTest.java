@@ -0,0 +1,151 @@
+package aimax.test.osm.unit.routing;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aima.core.search.framework.SearchForActions;
+import aima.core.search.framework.qsearch.GraphSearch;
+import aima.core.search.framework.qsearch.QueueSearch;
+import aima.core.search.informed.AStarSearch;
+import aimax.osm.data.MapWayAttFilter;
+import aimax.osm.data.MapWayFilter;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.routing.Landmarks;
+import aimax.osm.routing.OsmFunctions.OneWayMode;
+import aimax.osm.routing.OsmLandmarkHeuristicFunction;
+import aimax.osm.routing.OsmMoveAction;
+import aimax.osm.routing.OsmSldHeuristicFunction;
+import aimax.osm.routing.RouteFindingProblem;
+import aimax.osm.routing.RoutingGraph;
+import aimax.osm.routing.RoutingGraphSearch;
+import aimax.test.osm.unit.TestMaps;
+
+public class LandmarksTest {
+	private static final int SIZE = 30;
+
+	private OsmMap map;
+	private MapWayFilter carFilter;
+	private RoutingGraph graph;
+
+	@Before
+	public void setUp() {
+		map = TestMaps.createGridMap(SIZE, 17);
+		carFilter = MapWayAttFilter.createCarWayFilter();
+		graph = RoutingGraph.compile(map, carFilter, OneWayMode.TRAVEL_FORWARD);
+	}
+
+	@Test
+	public void testLowerBoundsOfGraphNodes() {
+		for (Landmarks.Strategy strategy : Landmarks.Strategy.values()) {
+			Landmarks landmarks = Landmarks.compute(graph, 8, strategy);
+			Assert.assertEquals(8, landmarks.getLandmarks().length);
+			RoutingGraphSearch search = new RoutingGraphSearch(graph);
+			for (int from = 0; from < graph.getNodeCount(); from++) {
+				for (int to = 0; to < graph.getNodeCount(); to++) {
+					float bound = landmarks.getLowerBound(from, to);
+					Assert.assertTrue(bound >= 0f);
+					if (search.findPath(graph.getNode(from),
+							graph.getNode(to)) != null)
+						Assert.assertTrue(bound <= search.getPathCost() + 1e-4f);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testLowerBoundsOfWayNodes() {
+		Landmarks landmarks = Landmarks.compute(graph, 8,
+				Landmarks.Strategy.AVOID);
+		RoutingGraphSearch search = new RoutingGraphSearch(graph);
+		Random random = new Random(19);
+		int tightened = 0;
+		for (int i = 0; i < 2000; i++) {
+			MapNode from = getRandomNode(random);
+			MapNode to = getRandomNode(random);
+			float bound = landmarks.getLowerBound(from, to);
+			if (search.findPath(from, to) != null) {
+				Assert.assertTrue(bound <= search.getPathCost() + 1e-4f);
+				if (bound > new Position(from).getDistKM(to))
+					tightened++;
+			}
+		}
+		// on a grid, landmarks mostly beat the straight-line distance
+		Assert.assertTrue(tightened > 1000);
+	}
+
+	@Test
+	public void testGraphSearchExpandsFewerNodes() {
+		RoutingGraphSearch sldSearch = new RoutingGraphSearch(graph);
+		RoutingGraphSearch altSearch = new RoutingGraphSearch(graph);
+		altSearch.setLandmarks(Landmarks.compute(graph, 8,
+				Landmarks.Strategy.AVOID));
+		Random random = new Random(23);
+		int sldExpanded = 0;
+		int altExpanded = 0;
+		for (int i = 0; i < 200; i++) {
+			MapNode from = getRandomNode(random);
+			MapNode to = getRandomNode(random);
+			List<MapNode> expected = sldSearch.findPath(from, to);
+			List<MapNode> path = altSearch.findPath(from, to);
+			Assert.assertEquals(expected == null, path == null);
+			if (expected != null)
+				Assert.assertEquals(sldSearch.getPathCost(),
+						altSearch.getPathCost(), 1e-4f);
+			sldExpanded += sldSearch.getNodesExpanded();
+			altExpanded += altSearch.getNodesExpanded();
+		}
+		Assert.assertTrue(altExpanded < sldExpanded / 2);
+	}
+
+	@Test
+	public void testHeuristicFunction() {
+		Landmarks landmarks = Landmarks.compute(graph, 8,
+				Landmarks.Strategy.AVOID);
+		Random random = new Random(29);
+		int sldExpanded = 0;
+		int altExpanded = 0;
+		for (int i = 0; i < 30; i++) {
+			MapNode from = map.getNode(TestMaps.getNodeId(SIZE,
+					random.nextInt(SIZE), random.nextInt(SIZE - 1)));
+			MapNode to = map.getNode(TestMaps.getNodeId(SIZE,
+					random.nextInt(SIZE), random.nextInt(SIZE - 1)));
+			SearchForActions<MapNode, OsmMoveAction> sldSearch = new AStarSearch<>(
+					new GraphSearch<>(), new OsmSldHeuristicFunction(to));
+			SearchForActions<MapNode, OsmMoveAction> altSearch = new AStarSearch<>(
+					new GraphSearch<>(), new OsmLandmarkHeuristicFunction(
+							landmarks, to));
+			double expected = getLength(sldSearch.findActions(
+					new RouteFindingProblem(from, to, carFilter, false)).get());
+			double actual = getLength(altSearch.findActions(
+					new RouteFindingProblem(from, to, carFilter, false)).get());
+			Assert.assertEquals(expected, actual, 1e-4);
+			sldExpanded += sldSearch.getMetrics().getInt(
+					QueueSearch.METRIC_NODES_EXPANDED);
+			altExpanded += altSearch.getMetrics().getInt(
+					QueueSearch.METRIC_NODES_EXPANDED);
+		}
+		Assert.assertTrue(altExpanded < sldExpanded);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private MapNode getRandomNode(Random random) {
+		return map.getNode(TestMaps.getNodeId(SIZE, random.nextInt(SIZE),
+				random.nextInt(SIZE)));
+	}
+
+	private static double getLength(List<OsmMoveAction> actions) {
+		double result = 0;
+		for (OsmMoveAction action : actions)
+			result += action.getTravelDistance();
+		return result;
+	}
+}
@@ -0,0 +1,201 @@
+package aimax.test.osm.unit.routing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import aimax.osm.data.MapBuilder;
+import aimax.osm.data.MapWayAttFilter;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.EntityAttribute;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.impl.DefaultMap;
+import aimax.osm.routing.BatchMapMatcher;
+import aimax.osm.routing.EdgeIndex;
+import aimax.osm.routing.MapMatcher;
+import aimax.osm.routing.MatchedPosition;
+import aimax.osm.routing.OsmFunctions.OneWayMode;
+import aimax.osm.routing.RoutingGraph;
+import aimax.test.osm.unit.TestMaps;
+
+public class MapMatcherTest {
+	/** First node id of road B. */
+	private static final long ROAD_B = 100;
+
+	@Test
+	public void testTrackOnNodes() {
+		int size = 10;
+		OsmMap map = TestMaps.createGridMap(size, 1);
+		RoutingGraph graph = RoutingGraph.compile(map,
+				MapWayAttFilter.createCarWayFilter(), OneWayMode.IGNORE);
+		List<Position> track = new ArrayList<>();
+		// row 2 is a two-way street, the last column a footway
+		for (int col = 0; col < size - 1; col++)
+			track.add(new Position(map.getNode(TestMaps.getNodeId(size, 2,
+					col))));
+		MapMatcher matcher = new MapMatcher(new EdgeIndex(graph));
+		List<MatchedPosition> result = matcher.match(track);
+		Assert.assertEquals(size - 1, result.size());
+		for (int i = 0; i < result.size(); i++) {
+			Assert.assertSame(track.get(i), result.get(i).getSource());
+			Assert.assertEquals(0.0, result.get(i).getDistance(), 1e-4);
+		}
+		Assert.assertEquals(0, matcher.getBreakCount());
+	}
+
+	@Test
+	public void testDecidedPositionKeepsPath() {
+		RoutingGraph graph = createParallelRoads();
+		MapMatcher matcher = new MapMatcher(new EdgeIndex(graph));
+		List<Position> track = new ArrayList<>();
+		// only road A is in the search radius
+		track.add(new Position(50f, 10.0005f));
+		// closer to road B, which cannot be reached from road A
+		for (int i = 0; i < 10; i++)
+			track.add(new Position(50.00017f, 10.0035f + i * 0.0005f));
+		List<MatchedPosition> result = matcher.match(track);
+		Assert.assertEquals(track.size(), result.size());
+		for (MatchedPosition pos : result)
+			Assert.assertTrue(isOnRoadA(graph, pos));
+		Assert.assertEquals(0, matcher.getBreakCount());
+	}
+
+	@Test
+	public void testBreakToUnreachableRoad() {
+		RoutingGraph graph = createParallelRoads();
+		MapMatcher matcher = new MapMatcher(new EdgeIndex(graph));
+		List<Position> track = new ArrayList<>();
+		track.add(new Position(50f, 10.0005f));
+		// only road B is in the search radius
+		for (int i = 0; i < 10; i++)
+			track.add(new Position(50.00045f, 10.0035f + i * 0.0005f));
+		List<MatchedPosition> result = matcher.match(track);
+		Assert.assertEquals(track.size(), result.size());
+		Assert.assertTrue(isOnRoadA(graph, result.get(0)));
+		for (MatchedPosition pos : result.subList(1, result.size()))
+			Assert.assertFalse(isOnRoadA(graph, pos));
+		Assert.assertEquals(1, matcher.getBreakCount());
+	}
+
+	@Test
+	public void testSmallWindow() {
+		RoutingGraph graph = createParallelRoads();
+		MapMatcher matcher = new MapMatcher(new EdgeIndex(graph));
+		matcher.setWindowSize(1);
+		List<Position> track = new ArrayList<>();
+		track.add(new Position(50f, 10.0005f));
+		for (int i = 0; i < 10; i++)
+			track.add(new Position(50.00017f, 10.0035f + i * 0.0005f));
+		List<MatchedPosition> result = matcher.match(track);
+		Assert.assertEquals(track.size(), result.size());
+		for (MatchedPosition pos : result)
+			Assert.assertTrue(isOnRoadA(graph, pos));
+	}
+
+	@Test
+	public void testBatchMatchFiles() throws IOException {
+		int size = 10;
+		OsmMap map = TestMaps.createGridMap(size, 1);
+		RoutingGraph graph = RoutingGraph.compile(map,
+				MapWayAttFilter.createCarWayFilter(), OneWayMode.IGNORE);
+		List<Position> track = new ArrayList<>();
+		StringBuilder nmea = new StringBuilder();
+		for (int col = 0; col < size - 1; col++) {
+			Position pos = new Position(map.getNode(TestMaps.getNodeId(size,
+					2, col)));
+			track.add(pos);
+			nmea.append(toGga(pos, true));
+			// fixes without satellite lock are ignored
+			nmea.append(toGga(new Position(pos.getLat() + 0.01f, pos
+					.getLon()), false));
+		}
+		File file = File.createTempFile("track", ".nmea");
+		File missing = new File(file.getPath() + ".missing");
+		try {
+			Files.write(file.toPath(),
+					nmea.toString().getBytes(StandardCharsets.US_ASCII));
+			EdgeIndex edgeIndex = new EdgeIndex(graph);
+			Map<File, List<MatchedPosition>> results = new ConcurrentHashMap<>();
+			new BatchMapMatcher(edgeIndex).matchFiles(Arrays.asList(file,
+					missing), f -> {
+				List<MatchedPosition> result = new ArrayList<>();
+				results.put(f, result);
+				return result::add;
+			});
+			Assert.assertTrue(results.get(missing).isEmpty());
+			List<MatchedPosition> expected = new MapMatcher(edgeIndex)
+					.match(track);
+			List<MatchedPosition> actual = results.get(file);
+			Assert.assertEquals(expected.size(), actual.size());
+			// fixes on nodes can be matched to any edge of the node
+			for (int i = 0; i < expected.size(); i++) {
+				Assert.assertEquals(expected.get(i).getLat(), actual.get(i)
+						.getLat(), 1e-5f);
+				Assert.assertEquals(expected.get(i).getLon(), actual.get(i)
+						.getLon(), 1e-5f);
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Creates two unconnected one-way roads from west to east. Road A starts
+	 * 200 m further west, road B runs about 30 m north of it.
+	 */
+	private static RoutingGraph createParallelRoads() {
+		DefaultMap map = new DefaultMap();
+		MapBuilder builder = map.getBuilder();
+		List<EntityAttribute> noAtts = Collections.emptyList();
+		List<Long> roadA = new ArrayList<>();
+		List<Long> roadB = new ArrayList<>();
+		for (int i = 0; i <= 10; i++) {
+			builder.addNode(i + 1, null, noAtts, 50f, 10f + i * 0.001f);
+			roadA.add(i + 1L);
+			if (i >= 3) {
+				builder.addNode(ROAD_B + i, null, noAtts, 50.00027f,
+						10f + i * 0.001f);
+				roadB.add(ROAD_B + i);
+			}
+		}
+		List<EntityAttribute> atts = new ArrayList<>();
+		atts.add(new EntityAttribute("highway", "residential"));
+		atts.add(new EntityAttribute("oneway", "yes"));
+		builder.addWay(1, "A", atts, roadA);
+		builder.addWay(2, "B", atts, roadB);
+		builder.buildMap();
+		return RoutingGraph.compile(map, MapWayAttFilter.createCarWayFilter(),
+				OneWayMode.TRAVEL_FORWARD);
+	}
+
+	private static boolean isOnRoadA(RoutingGraph graph, MatchedPosition pos) {
+		MapNode source = graph.getNode(graph.getEdgeSource(pos.getEdge()));
+		return source.getId() < ROAD_B;
+	}
+
+	/** Returns a NMEA GGA message for the position, north and east only. */
+	private static String toGga(Position pos, boolean posOk) {
+		int latDeg = (int) pos.getLat();
+		int lonDeg = (int) pos.getLon();
+		return String.format(Locale.US,
+				"$GPGGA,103131.000,%02d%07.4f,N,%03d%07.4f,E,%d,06,1.3,458.5,M,43.9,M,,0000*54\r\n",
+				latDeg, (pos.getLat() - latDeg) * 60, lonDeg,
+				(pos.getLon() - lonDeg) * 60, posOk ? 1 : 0);
+	}
+}
@@ -0,0 +1,72 @@
+package aimax.test.osm.unit.routing;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aimax.osm.data.MapEvent;
+import aimax.osm.data.MapWayAttFilter;
+import aimax.osm.data.MapWayFilter;
+import aimax.osm.data.OsmMap;
+import aimax.osm.routing.OsmFunctions.OneWayMode;
+import aimax.osm.routing.RoutingGraph;
+import aimax.osm.routing.RoutingGraphCache;
+import aimax.test.osm.unit.TestMaps;
+
+public class RoutingGraphCacheTest {
+
+	private OsmMap map;
+	private RoutingGraphCache cache;
+	private MapWayFilter carFilter;
+
+	@Before
+	public void setUp() {
+		map = TestMaps.createGridMap(10, 1);
+		cache = new RoutingGraphCache(map);
+		carFilter = MapWayAttFilter.createCarWayFilter();
+	}
+
+	@Test
+	public void testGraphsAreReused() {
+		RoutingGraph graph = cache.getGraph("car", carFilter,
+				OneWayMode.TRAVEL_FORWARD);
+		Assert.assertSame(graph, cache.getGraph("car", carFilter,
+				OneWayMode.TRAVEL_FORWARD));
+		Assert.assertNotSame(graph, cache.getGraph("car", carFilter,
+				OneWayMode.IGNORE));
+		Assert.assertNotSame(graph, cache.getGraph("any", null,
+				OneWayMode.TRAVEL_FORWARD));
+	}
+
+	@Test
+	public void testMarkersKeepGraphs() {
+		RoutingGraph graph = cache.getGraph("car", carFilter,
+				OneWayMode.TRAVEL_FORWARD);
+		map.addMarker(50.001f, 10.001f);
+		map.clearMarkersAndTracks();
+		Assert.assertSame(graph, cache.getGraph("car", carFilter,
+				OneWayMode.TRAVEL_FORWARD));
+	}
+
+	@Test
+	public void testNewMapDropsGraphs() {
+		RoutingGraph graph = cache.getGraph("car", carFilter,
+				OneWayMode.TRAVEL_FORWARD);
+		map.fireMapDataEvent(new MapEvent(map, MapEvent.Type.MAP_NEW));
+		Assert.assertNotSame(graph, cache.getGraph("car", carFilter,
+				OneWayMode.TRAVEL_FORWARD));
+	}
+
+	@Test
+	public void testDisposeStopsListening() {
+		RoutingGraph graph = cache.getGraph("car", carFilter,
+				OneWayMode.TRAVEL_FORWARD);
+		cache.dispose();
+		RoutingGraph graph2 = cache.getGraph("car", carFilter,
+				OneWayMode.TRAVEL_FORWARD);
+		Assert.assertNotSame(graph, graph2);
+		map.fireMapDataEvent(new MapEvent(map, MapEvent.Type.MAP_CLEARED));
+		Assert.assertSame(graph2, cache.getGraph("car", carFilter,
+				OneWayMode.TRAVEL_FORWARD));
+	}
+}
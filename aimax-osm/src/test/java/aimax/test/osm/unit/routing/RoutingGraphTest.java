@@ -0,0 +1,176 @@
+package aimax.test.osm.unit.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aima.core.search.framework.SearchForActions;
+import aima.core.search.framework.qsearch.GraphSearch;
+import aima.core.search.informed.AStarSearch;
+import aimax.osm.data.MapWayAttFilter;
+import aimax.osm.data.MapWayFilter;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.routing.OsmFunctions.OneWayMode;
+import aimax.osm.routing.OsmMoveAction;
+import aimax.osm.routing.OsmSldHeuristicFunction;
+import aimax.osm.routing.RouteCalculator;
+import aimax.osm.routing.RouteFindingProblem;
+import aimax.osm.routing.RoutingGraph;
+import aimax.osm.routing.RoutingGraphSearch;
+import aimax.test.osm.unit.TestMaps;
+
+public class RoutingGraphTest {
+	private static final int SIZE = 20;
+
+	private OsmMap map;
+	private MapWayFilter carFilter;
+
+	@Before
+	public void setUp() {
+		map = TestMaps.createGridMap(SIZE, 7);
+		carFilter = MapWayAttFilter.createCarWayFilter();
+	}
+
+	@Test
+	public void testCompile() {
+		RoutingGraph graph = RoutingGraph.compile(map, carFilter,
+				OneWayMode.TRAVEL_FORWARD);
+		// junctions and row ends; the two corners of the first column
+		// only connect two ways and are part of chains
+		int nodeCount = 0;
+		for (int row = 0; row < SIZE; row++) {
+			for (int col = 0; col < SIZE; col++) {
+				RoutingGraph.Location loc = graph.locate(map.getNode(TestMaps
+						.getNodeId(SIZE, row, col)));
+				boolean corner = col == 0 && (row == 0 || row == SIZE - 1);
+				Assert.assertEquals(!corner && (col % 3 == 0 || col == SIZE - 1),
+						loc.isNode());
+				if (loc.isNode())
+					nodeCount++;
+			}
+		}
+		Assert.assertEquals(nodeCount, graph.getNodeCount());
+		for (int i = 0; i < graph.getNodeCount(); i++)
+			Assert.assertEquals(i, graph.getNodeIndex(graph.getNode(i)));
+
+		MapNode chainNode = map.getNode(TestMaps.getNodeId(SIZE, 0, 1));
+		RoutingGraph.Location loc = graph.locate(chainNode);
+		Assert.assertFalse(loc.isNode());
+		Assert.assertTrue(loc.getOffset() > 0f);
+		Assert.assertTrue(loc.getOffset() < loc.getChainLength());
+	}
+
+	@Test
+	public void testEdgeWeightsAreChainLengths() {
+		RoutingGraph graph = RoutingGraph.compile(map, carFilter,
+				OneWayMode.IGNORE);
+		for (int e = 0; e < graph.getEdgeCount(); e++) {
+			List<MapNode> nodes = graph.getEdgeNodes(e);
+			Assert.assertSame(graph.getNode(graph.getEdgeSource(e)),
+					nodes.get(0));
+			Assert.assertSame(graph.getNode(graph.getEdgeTarget(e)),
+					nodes.get(nodes.size() - 1));
+			Assert.assertEquals(Position.getTrackLengthKM(nodes),
+					graph.getEdgeWeight(e), 1e-5);
+		}
+	}
+
+	@Test
+	public void testSearchMatchesAStar() {
+		checkSearchMatchesAStar(OneWayMode.TRAVEL_FORWARD);
+		checkSearchMatchesAStar(OneWayMode.IGNORE);
+	}
+
+	@Test
+	public void testOneWays() {
+		RoutingGraph graph = RoutingGraph.compile(map, carFilter,
+				OneWayMode.TRAVEL_FORWARD);
+		RoutingGraphSearch search = new RoutingGraphSearch(graph);
+		// row 1 is a one-way street from column 0 to the last column
+		MapNode a = map.getNode(TestMaps.getNodeId(SIZE, 1, 1));
+		MapNode b = map.getNode(TestMaps.getNodeId(SIZE, 1, 2));
+		List<MapNode> path = search.findPath(a, b);
+		Assert.assertEquals(2, path.size());
+		path = search.findPath(b, a);
+		Assert.assertTrue(path.size() > 2);
+		Assert.assertTrue(search.getPathCost() > Position.getTrackLengthKM(
+				twoNodes(b, a)));
+	}
+
+	@Test
+	public void testRouteCalculatorMatchesAStar() {
+		RouteCalculator graphCalculator = new RouteCalculator();
+		RouteCalculator searchCalculator = new RouteCalculator();
+		searchCalculator.setRoutingGraphEnabled(false);
+		Random random = new Random(3);
+		for (int taskSelection = 0; taskSelection < 2; taskSelection++) {
+			for (int i = 0; i < 20; i++) {
+				List<MapNode> markers = new ArrayList<>();
+				for (int j = 0; j < 3; j++)
+					markers.add(map.getNode(TestMaps.getNodeId(SIZE,
+							random.nextInt(SIZE), random.nextInt(SIZE))));
+				List<Position> expected = searchCalculator.calculateRoute(
+						markers, map, taskSelection);
+				List<Position> actual = graphCalculator.calculateRoute(
+						markers, map, taskSelection);
+				Assert.assertFalse(actual.isEmpty());
+				Assert.assertEquals(getLength(expected), getLength(actual),
+						1e-4);
+			}
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void checkSearchMatchesAStar(OneWayMode oneWayMode) {
+		RoutingGraph graph = RoutingGraph.compile(map, carFilter, oneWayMode);
+		RoutingGraphSearch search = new RoutingGraphSearch(graph);
+		Random random = new Random(5);
+		for (int i = 0; i < 50; i++) {
+			MapNode from = map.getNode(TestMaps.getNodeId(SIZE,
+					random.nextInt(SIZE), random.nextInt(SIZE - 1)));
+			MapNode to = map.getNode(TestMaps.getNodeId(SIZE,
+					random.nextInt(SIZE), random.nextInt(SIZE - 1)));
+			SearchForActions<MapNode, OsmMoveAction> aStar = new AStarSearch<>(
+					new GraphSearch<>(), new OsmSldHeuristicFunction(to));
+			Optional<List<OsmMoveAction>> actions = aStar
+					.findActions(new RouteFindingProblem(from, to, carFilter,
+							oneWayMode == OneWayMode.IGNORE));
+			List<MapNode> path = search.findPath(from, to);
+			Assert.assertTrue(actions.isPresent());
+			Assert.assertNotNull(path);
+			Assert.assertSame(from, path.get(0));
+			Assert.assertSame(to, path.get(path.size() - 1));
+			double expected = 0;
+			for (OsmMoveAction action : actions.get())
+				expected += action.getTravelDistance();
+			Assert.assertEquals(expected, search.getPathCost(), 1e-4);
+			Assert.assertEquals(expected, Position.getTrackLengthKM(path), 1e-4);
+		}
+	}
+
+	private static List<MapNode> twoNodes(MapNode a, MapNode b) {
+		List<MapNode> result = new ArrayList<>();
+		result.add(a);
+		result.add(b);
+		return result;
+	}
+
+	private static double getLength(List<Position> positions) {
+		double result = 0;
+		for (int i = 1; i < positions.size(); i++)
+			result += Position.getDistKM(positions.get(i - 1).getLat(),
+					positions.get(i - 1).getLon(), positions.get(i).getLat(),
+					positions.get(i).getLon());
+		return result;
+	}
+}
@@ -0,0 +1,11 @@
+package aimax.test.osm.unit.routing;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+@RunWith(Suite.class)
+@Suite.SuiteClasses({ RoutingGraphTest.class, RoutingGraphCacheTest.class,
+		ContractionHierarchyTest.class, LandmarksTest.class,
+		MapMatcherTest.class })
+public class RoutingTestSuite {
+}